@@ -0,0 +1,406 @@
+/*
+ * This file is part of HE_Mesh, a library for creating and manipulating meshes.
+ * It is dedicated to the public domain. To the extent possible under law,
+ * I , Frederik Vanhoutte, have waived all copyright and related or neighboring
+ * rights.
+ *
+ * This work is published from Belgium. (http://creativecommons.org/publicdomain/zero/1.0/)
+ *
+ */
+
+package wblut.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Library-wide execution service for data-parallel work. All multi-threaded
+ * code paths share one work-stealing ForkJoinPool instead of creating and
+ * shutting down a thread pool per call. Work is expressed as an index range
+ * that is split recursively until the pieces are small enough, idle workers
+ * steal the remaining halves. Nested calls run inside the same pool.
+ *
+ * Parallel execution can be turned off globally, in which case all work runs
+ * inline on the calling thread.
+ *
+ * Changing the parallelism publishes a new pool atomically. Calls that already
+ * hold the old pool finish in it, the old pool is shut down when the last of
+ * them returns.
+ *
+ */
+public class WB_ParallelExecutor {
+
+	private static final WB_ParallelExecutor executor = new WB_ParallelExecutor();
+	private final AtomicReference<PoolHandle> pool;
+	private volatile int parallelism;
+	private volatile boolean parallel;
+	private volatile int minimumRange;
+
+	/**
+	 *
+	 */
+	protected WB_ParallelExecutor() {
+		parallelism = Runtime.getRuntime().availableProcessors();
+		parallel = true;
+		minimumRange = 256;
+		pool = new AtomicReference<PoolHandle>();
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public static WB_ParallelExecutor instance() {
+		return executor;
+	}
+
+	/**
+	 * Set the number of worker threads. The pool is recreated lazily on next
+	 * use, work running in the old pool is allowed to finish. A value of 1
+	 * effectively turns off parallel execution.
+	 *
+	 * @param parallelism
+	 */
+	public synchronized void setParallelism(final int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism should be at least 1.");
+		}
+		if (parallelism != this.parallelism) {
+			this.parallelism = parallelism;
+			final PoolHandle old = pool.getAndSet(null);
+			if (old != null) {
+				old.retire();
+			}
+		}
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Turn parallel execution on or off.
+	 *
+	 * @param b
+	 */
+	public void setParallel(final boolean b) {
+		parallel = b;
+	}
+
+	/**
+	 *
+	 *
+	 * @return true if work is actually distributed over multiple threads
+	 */
+	public boolean isParallel() {
+		return parallel && parallelism > 1;
+	}
+
+	/**
+	 * Ranges smaller than this are never split.
+	 *
+	 * @param n
+	 */
+	public void setMinimumRange(final int n) {
+		minimumRange = Math.max(1, n);
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public int getMinimumRange() {
+		return minimumRange;
+	}
+
+	/**
+	 * The shared pool, created on first use. The pool is shut down after a
+	 * change of parallelism, use {@link #invoke(ForkJoinTask)} to run work
+	 * rather than submitting to the pool directly.
+	 *
+	 * @return
+	 */
+	public ForkJoinPool getPool() {
+		return getHandle().pool;
+	}
+
+	private PoolHandle getHandle() {
+		PoolHandle handle = pool.get();
+		while (handle == null) {
+			synchronized (this) {
+				handle = pool.get();
+				if (handle == null) {
+					handle = new PoolHandle(new ForkJoinPool(parallelism));
+					pool.set(handle);
+				}
+			}
+		}
+		return handle;
+	}
+
+	/**
+	 * Get the current pool and register a user. The pool is not shut down
+	 * before the matching release().
+	 *
+	 * @return
+	 */
+	private PoolHandle acquire() {
+		while (true) {
+			final PoolHandle handle = getHandle();
+			handle.users.incrementAndGet();
+			if (pool.get() == handle) {
+				return handle;
+			}
+			// retired between get and increment
+			handle.release();
+		}
+	}
+
+	/**
+	 * Run action over the index range [start, end).
+	 *
+	 * @param start
+	 *            first index, inclusive
+	 * @param end
+	 *            last index, exclusive
+	 * @param action
+	 */
+	public void forRange(final int start, final int end, final WB_RangeAction action) {
+		if (end <= start) {
+			return;
+		}
+		final int grain = getGrain(end - start);
+		if (end - start <= grain) {
+			action.run(start, end);
+			return;
+		}
+		invoke(new RangeActionTask(start, end, grain, action));
+	}
+
+	/**
+	 * Run action over the index range [start, end), splitting the range down
+	 * to pieces of grain indices. Use a small grain for few, expensive items.
+	 *
+	 * @param start
+	 *            first index, inclusive
+	 * @param end
+	 *            last index, exclusive
+	 * @param action
+	 * @param grain
+	 *            largest range that is not split further
+	 */
+	public void forRange(final int start, final int end, final WB_RangeAction action, final int grain) {
+		if (end <= start) {
+			return;
+		}
+		final int g = isParallel() ? Math.max(1, grain) : end - start;
+		if (end - start <= g) {
+			action.run(start, end);
+			return;
+		}
+		invoke(new RangeActionTask(start, end, g, action));
+	}
+
+	/**
+	 * Collect the results of collector over the index range [start, end). The
+	 * partial results are concatenated in index order.
+	 *
+	 * @param start
+	 *            first index, inclusive
+	 * @param end
+	 *            last index, exclusive
+	 * @param collector
+	 * @return
+	 */
+	public <T> List<T> collect(final int start, final int end, final WB_RangeCollector<T> collector) {
+		if (end <= start) {
+			return new ArrayList<T>();
+		}
+		final int grain = getGrain(end - start);
+		if (end - start <= grain) {
+			return collector.collect(start, end);
+		}
+		final int chunks = (end - start + grain - 1) / grain;
+		// one slot per chunk, set only by the task running that chunk
+		final List<List<T>> partial = new ArrayList<List<T>>(Collections.nCopies(chunks, (List<T>) null));
+		invoke(new RangeActionTask(0, chunks, 1, new WB_RangeAction() {
+			@Override
+			public void run(final int first, final int last) {
+				for (int c = first; c < last; c++) {
+					partial.set(c, collector.collect(start + c * grain, Math.min(end, start + (c + 1) * grain)));
+				}
+			}
+		}));
+		int size = 0;
+		for (final List<T> list : partial) {
+			size += list.size();
+		}
+		final List<T> result = new ArrayList<T>(size);
+		for (final List<T> list : partial) {
+			result.addAll(list);
+		}
+		return result;
+	}
+
+	/**
+	 * Apply function to all elements of stream, the results are in encounter
+	 * order. The pipeline runs in parallel in the shared pool, parallel
+	 * streams fork their work into the pool they are started from. If
+	 * parallel execution is off, the stream runs sequentially on the calling
+	 * thread.
+	 *
+	 * @param stream
+	 * @param function
+	 * @return
+	 */
+	public <S, T> List<T> map(final Stream<S> stream, final Function<? super S, ? extends T> function) {
+		if (!isParallel()) {
+			return stream.sequential().<T> map(function).collect(Collectors.<T> toList());
+		}
+		final Stream<S> s = stream.parallel();
+		return invoke(ForkJoinTask.adapt(new Callable<List<T>>() {
+			@Override
+			public List<T> call() {
+				return s.<T> map(function).collect(Collectors.<T> toList());
+			}
+		}));
+	}
+
+	/**
+	 * Run a task in the shared pool. Calls from inside the pool are executed
+	 * directly, their subtasks are forked into the same pool. If parallel
+	 * execution is off, the task runs on the calling thread. Tasks should
+	 * only fork when {@link #isParallel()} is true.
+	 *
+	 * @param task
+	 * @return
+	 */
+	public <T> T invoke(final ForkJoinTask<T> task) {
+		if (!isParallel()) {
+			return task.invoke();
+		}
+		final PoolHandle handle = acquire();
+		try {
+			if (ForkJoinTask.getPool() == handle.pool) {
+				return task.invoke();
+			}
+			return handle.pool.invoke(task);
+		} finally {
+			handle.release();
+		}
+	}
+
+	private int getGrain(final int n) {
+		if (!isParallel()) {
+			return n;
+		}
+		return Math.max(minimumRange, n / (4 * parallelism));
+	}
+
+	/**
+	 * Work over an index range.
+	 */
+	public interface WB_RangeAction {
+		/**
+		 *
+		 *
+		 * @param start
+		 *            first index, inclusive
+		 * @param end
+		 *            last index, exclusive
+		 */
+		public void run(int start, int end);
+	}
+
+	/**
+	 * Work over an index range that produces a list of results.
+	 *
+	 * @param <T>
+	 */
+	public interface WB_RangeCollector<T> {
+		/**
+		 *
+		 *
+		 * @param start
+		 *            first index, inclusive
+		 * @param end
+		 *            last index, exclusive
+		 * @return
+		 */
+		public List<T> collect(int start, int end);
+	}
+
+	/**
+	 * A pool with a count of the calls running in it. A retired pool is shut
+	 * down as soon as it has no users left.
+	 */
+	static class PoolHandle {
+		final ForkJoinPool pool;
+		final AtomicInteger users;
+		volatile boolean retired;
+
+		PoolHandle(final ForkJoinPool pool) {
+			this.pool = pool;
+			users = new AtomicInteger();
+			retired = false;
+		}
+
+		void release() {
+			if (users.decrementAndGet() == 0 && retired) {
+				pool.shutdown();
+			}
+		}
+
+		void retire() {
+			retired = true;
+			if (users.get() == 0) {
+				pool.shutdown();
+			}
+		}
+	}
+
+	static class RangeActionTask extends RecursiveAction {
+		private static final long serialVersionUID = 6317391451123745382L;
+		final int start;
+		final int end;
+		final int grain;
+		final WB_RangeAction action;
+
+		RangeActionTask(final int start, final int end, final int grain, final WB_RangeAction action) {
+			this.start = start;
+			this.end = end;
+			this.grain = grain;
+			this.action = action;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= grain) {
+				action.run(start, end);
+				return;
+			}
+			final int mid = (start + end) >>> 1;
+			final RangeActionTask right = new RangeActionTask(mid, end, grain, action);
+			right.fork();
+			new RangeActionTask(start, mid, grain, action).compute();
+			right.join();
+		}
+	}
+}
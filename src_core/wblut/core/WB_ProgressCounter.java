@@ -56,7 +56,7 @@ public class WB_ProgressCounter {
 	public void increment(final int inc) {
 		count += inc;
 		if (count >= nextUpdate) {
-			while (nextUpdate <= count) {
+			while (nextUpdate <= count && currentPercentage < 100) {
 				currentPercentage += percentageStep;
 				nextUpdate = (int) (limit * 0.01 * (currentPercentage + percentageStep));
 			}
@@ -0,0 +1,1209 @@
+/*
+ * This file is part of HE_Mesh, a library for creating and manipulating meshes.
+ * It is dedicated to the public domain. To the extent possible under law,
+ * I , Frederik Vanhoutte, have waived all copyright and related or neighboring
+ * rights.
+ *
+ * This work is published from Belgium. (http://creativecommons.org/publicdomain/zero/1.0/)
+ *
+ */
+
+package wblut.geom;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import gnu.trove.list.array.TIntArrayList;
+import javolution.util.FastTable;
+import wblut.core.WB_ParallelExecutor;
+import wblut.core.WB_ParallelExecutor.WB_RangeAction;
+import wblut.core.WB_ProgressTracker;
+import wblut.hemesh.HE_Face;
+import wblut.hemesh.HE_Halfedge;
+import wblut.hemesh.HE_Mesh;
+import wblut.hemesh.HE_Vertex;
+
+/**
+ * Bounding volume hierarchy over the faces of a mesh, an alternative for
+ * WB_AABBTree. The tree is built top-down with a binned surface area
+ * heuristic, large subtrees are built in parallel. Nodes are stored in flat
+ * arrays: 6 floats of bounds per node, rounded outwards, and 2 ints per node,
+ * either the index of the first child and 0, or the offset and number of faces
+ * in the primitive list. Queries use a per-thread stack and don't allocate
+ * during traversal.
+ *
+ * After moving vertices without changing the connectivity, refit() updates the
+ * bounds without rebuilding. Refitting while other threads query the tree is
+ * not safe.
+ */
+public class WB_BVH {
+	private static final int BINS = 16;
+	private static final int PARALLEL_BUILD = 4096;
+	private static final int MAX_SAH_DEPTH = 48;
+	private static final int RAY = 0;
+	private static final int LINE = 1;
+	private static final int SEGMENT = 2;
+	private static final int POINT = 3;
+	private static final int BOX = 4;
+	private static final int PLANE = 5;
+	private static final int CLOSEST_HIT = 0;
+	private static final int ANY_HIT = 1;
+	private static final int COUNT_HITS = 2;
+	private static final int PACKET = 32;
+
+	private final HE_Face[] faces;
+	private final int maxNumberOfFaces;
+	private final double[] faceBounds;
+	private final int[] primitives;
+	private float[] bounds;
+	private int[] nodes;
+	private int numberOfNodes;
+	private final AtomicInteger depth;
+	private final ThreadLocal<int[]> stacks;
+
+	public static final WB_ProgressTracker tracker = WB_ProgressTracker.instance();
+
+	/**
+	 *
+	 *
+	 * @param mesh
+	 */
+	public WB_BVH(final HE_Mesh mesh) {
+		this(mesh, 4);
+	}
+
+	/**
+	 *
+	 *
+	 * @param mesh
+	 * @param mnof
+	 *            maximum number of faces in a leaf
+	 */
+	public WB_BVH(final HE_Mesh mesh, final int mnof) {
+		faces = mesh.getFacesAsArray();
+		maxNumberOfFaces = Math.max(1, mnof);
+		faceBounds = new double[6 * faces.length];
+		primitives = new int[faces.length];
+		depth = new AtomicInteger();
+		stacks = new ThreadLocal<int[]>();
+		buildTree();
+	}
+
+	private void buildTree() {
+		tracker.setStatus(this, "Starting WB_BVH construction. Max. number of faces per node: " + maxNumberOfFaces,
+				+1);
+		final int n = faces.length;
+		final double[] centers = new double[3 * n];
+		WB_ParallelExecutor.instance().forRange(0, n, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				for (int i = start; i < end; i++) {
+					updateFaceBounds(i);
+					centers[3 * i] = 0.5 * (faceBounds[6 * i] + faceBounds[6 * i + 3]);
+					centers[3 * i + 1] = 0.5 * (faceBounds[6 * i + 1] + faceBounds[6 * i + 4]);
+					centers[3 * i + 2] = 0.5 * (faceBounds[6 * i + 2] + faceBounds[6 * i + 5]);
+					primitives[i] = i;
+				}
+			}
+		});
+		bounds = new float[6 * Math.max(1, 2 * n - 1)];
+		nodes = new int[2 * Math.max(1, 2 * n - 1)];
+		if (n == 0) {
+			numberOfNodes = 0;
+		} else {
+			final AtomicInteger counter = new AtomicInteger(1);
+			WB_ParallelExecutor.instance().invoke(new BuildTask(0, 0, n, 0, centers, counter));
+			numberOfNodes = counter.get();
+		}
+		tracker.setStatus(this, "Exiting WB_BVH construction.", -1);
+	}
+
+	/**
+	 * Update the bounds of all nodes after the vertices of the mesh have moved.
+	 * The faces and their connectivity should be unchanged.
+	 */
+	public void refit() {
+		final WB_ParallelExecutor executor = WB_ParallelExecutor.instance();
+		executor.forRange(0, faces.length, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				for (int i = start; i < end; i++) {
+					updateFaceBounds(i);
+				}
+			}
+		});
+		executor.forRange(0, numberOfNodes, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				for (int node = start; node < end; node++) {
+					if (nodes[2 * node + 1] > 0) {
+						setLeafBounds(node);
+					}
+				}
+			}
+		});
+		// children are always stored after their parent
+		for (int node = numberOfNodes - 1; node >= 0; node--) {
+			if (nodes[2 * node + 1] == 0) {
+				final int a = 6 * nodes[2 * node];
+				final int b = a + 6;
+				final int id = 6 * node;
+				for (int k = 0; k < 3; k++) {
+					bounds[id + k] = Math.min(bounds[a + k], bounds[b + k]);
+					bounds[id + k + 3] = Math.max(bounds[a + k + 3], bounds[b + k + 3]);
+				}
+			}
+		}
+	}
+
+	private void updateFaceBounds(final int i) {
+		double minx = Double.POSITIVE_INFINITY, miny = Double.POSITIVE_INFINITY, minz = Double.POSITIVE_INFINITY;
+		double maxx = Double.NEGATIVE_INFINITY, maxy = Double.NEGATIVE_INFINITY, maxz = Double.NEGATIVE_INFINITY;
+		final HE_Halfedge start = faces[i].getHalfedge();
+		if (start != null) {
+			HE_Halfedge he = start;
+			HE_Vertex v;
+			do {
+				v = he.getVertex();
+				minx = Math.min(minx, v.xd());
+				miny = Math.min(miny, v.yd());
+				minz = Math.min(minz, v.zd());
+				maxx = Math.max(maxx, v.xd());
+				maxy = Math.max(maxy, v.yd());
+				maxz = Math.max(maxz, v.zd());
+				he = he.getNextInFace();
+			} while (he != start);
+		} else {
+			minx = miny = minz = maxx = maxy = maxz = 0;
+		}
+		faceBounds[6 * i] = minx;
+		faceBounds[6 * i + 1] = miny;
+		faceBounds[6 * i + 2] = minz;
+		faceBounds[6 * i + 3] = maxx;
+		faceBounds[6 * i + 4] = maxy;
+		faceBounds[6 * i + 5] = maxz;
+	}
+
+	private void setLeafBounds(final int node) {
+		final double[] box = new double[] { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+				Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+				Double.NEGATIVE_INFINITY };
+		final int first = nodes[2 * node];
+		final int last = first + nodes[2 * node + 1];
+		for (int k = first; k < last; k++) {
+			include(box, faceBounds, 6 * primitives[k]);
+		}
+		setBounds(node, box);
+	}
+
+	private void setBounds(final int node, final double[] box) {
+		final int id = 6 * node;
+		for (int k = 0; k < 3; k++) {
+			bounds[id + k] = down(box[k]);
+			bounds[id + k + 3] = up(box[k + 3]);
+		}
+	}
+
+	private static void include(final double[] box, final double[] values, final int offset) {
+		for (int k = 0; k < 3; k++) {
+			if (values[offset + k] < box[k]) {
+				box[k] = values[offset + k];
+			}
+			if (values[offset + k + 3] > box[k + 3]) {
+				box[k + 3] = values[offset + k + 3];
+			}
+		}
+	}
+
+	private static double area(final double[] box, final int offset) {
+		final double dx = box[offset + 3] - box[offset];
+		final double dy = box[offset + 4] - box[offset + 1];
+		final double dz = box[offset + 5] - box[offset + 2];
+		if (dx < 0 || dy < 0 || dz < 0) {
+			return 0;
+		}
+		return dx * dy + dy * dz + dz * dx;
+	}
+
+	private static float down(final double v) {
+		final float f = (float) v;
+		return f > v ? Math.nextDown(f) : f;
+	}
+
+	private static float up(final double v) {
+		final float f = (float) v;
+		return f < v ? Math.nextUp(f) : f;
+	}
+
+	private void updateDepth(final int d) {
+		int current = depth.get();
+		while (d > current && !depth.compareAndSet(current, d)) {
+			current = depth.get();
+		}
+	}
+
+	/**
+	 * Builds the subtree of one node. Subtrees with enough faces are built as
+	 * separate tasks.
+	 */
+	private class BuildTask extends RecursiveAction {
+		private static final long serialVersionUID = -3279518290163823512L;
+		final int node;
+		final int start;
+		final int end;
+		final int level;
+		final double[] centers;
+		final AtomicInteger counter;
+
+		BuildTask(final int node, final int start, final int end, final int level, final double[] centers,
+				final AtomicInteger counter) {
+			this.node = node;
+			this.start = start;
+			this.end = end;
+			this.level = level;
+			this.centers = centers;
+			this.counter = counter;
+		}
+
+		@Override
+		protected void compute() {
+			build(node, start, end, level);
+		}
+
+		private void build(final int node, final int start, final int end, final int level) {
+			final double[] box = new double[] { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+					Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+					Double.NEGATIVE_INFINITY };
+			final double[] cbox = box.clone();
+			int f;
+			for (int k = start; k < end; k++) {
+				f = primitives[k];
+				include(box, faceBounds, 6 * f);
+				for (int j = 0; j < 3; j++) {
+					cbox[j] = Math.min(cbox[j], centers[3 * f + j]);
+					cbox[j + 3] = Math.max(cbox[j + 3], centers[3 * f + j]);
+				}
+			}
+			setBounds(node, box);
+			final int n = end - start;
+			if (n <= maxNumberOfFaces) {
+				nodes[2 * node] = start;
+				nodes[2 * node + 1] = n;
+				updateDepth(level);
+				return;
+			}
+			int mid = -1;
+			if (level < MAX_SAH_DEPTH) {
+				mid = splitSAH(start, end, cbox);
+			}
+			if (mid <= start || mid >= end) {
+				mid = (start + end) >>> 1;
+			}
+			final int child = counter.getAndAdd(2);
+			nodes[2 * node] = child;
+			nodes[2 * node + 1] = 0;
+			if (n > PARALLEL_BUILD && WB_ParallelExecutor.instance().isParallel()) {
+				invokeAll(new BuildTask(child, start, mid, level + 1, centers, counter),
+						new BuildTask(child + 1, mid, end, level + 1, centers, counter));
+			} else {
+				build(child, start, mid, level + 1);
+				build(child + 1, mid, end, level + 1);
+			}
+		}
+
+		/**
+		 * Find the best split over all axes with binned SAH and partition the
+		 * primitives.
+		 *
+		 * @return index of the first primitive on the right side, -1 if all
+		 *         centers coincide
+		 */
+		private int splitSAH(final int start, final int end, final double[] cbox) {
+			final int[] counts = new int[BINS];
+			final double[] binBounds = new double[6 * BINS];
+			final double[] rightArea = new double[BINS];
+			final double[] sweep = new double[6];
+			double bestCost = Double.POSITIVE_INFINITY;
+			int bestAxis = -1;
+			int bestBin = -1;
+			for (int axis = 0; axis < 3; axis++) {
+				final double extent = cbox[axis + 3] - cbox[axis];
+				if (!(extent > 0)) {
+					continue;
+				}
+				final double scale = BINS / extent;
+				java.util.Arrays.fill(counts, 0);
+				for (int b = 0; b < BINS; b++) {
+					resetBox(binBounds, 6 * b);
+				}
+				int f;
+				for (int k = start; k < end; k++) {
+					f = primitives[k];
+					final int b = bin(centers[3 * f + axis], cbox[axis], scale);
+					counts[b]++;
+					include(binBounds, 6 * b, faceBounds, 6 * f);
+				}
+				resetBox(sweep, 0);
+				for (int b = BINS - 1; b > 0; b--) {
+					include(sweep, 0, binBounds, 6 * b);
+					rightArea[b] = area(sweep, 0);
+				}
+				resetBox(sweep, 0);
+				int left = 0;
+				for (int b = 0; b < BINS - 1; b++) {
+					include(sweep, 0, binBounds, 6 * b);
+					left += counts[b];
+					if (left == 0 || left == end - start) {
+						continue;
+					}
+					final double cost = area(sweep, 0) * left + rightArea[b + 1] * (end - start - left);
+					if (cost < bestCost) {
+						bestCost = cost;
+						bestAxis = axis;
+						bestBin = b;
+					}
+				}
+			}
+			if (bestAxis < 0) {
+				return -1;
+			}
+			final double scale = BINS / (cbox[bestAxis + 3] - cbox[bestAxis]);
+			int i = start;
+			int j = end - 1;
+			int tmp;
+			while (i <= j) {
+				if (bin(centers[3 * primitives[i] + bestAxis], cbox[bestAxis], scale) <= bestBin) {
+					i++;
+				} else {
+					tmp = primitives[i];
+					primitives[i] = primitives[j];
+					primitives[j] = tmp;
+					j--;
+				}
+			}
+			return i;
+		}
+	}
+
+	private static int bin(final double c, final double min, final double scale) {
+		final int b = (int) ((c - min) * scale);
+		return b < 0 ? 0 : b >= BINS ? BINS - 1 : b;
+	}
+
+	private static void resetBox(final double[] box, final int offset) {
+		box[offset] = box[offset + 1] = box[offset + 2] = Double.POSITIVE_INFINITY;
+		box[offset + 3] = box[offset + 4] = box[offset + 5] = Double.NEGATIVE_INFINITY;
+	}
+
+	private static void include(final double[] box, final int offset, final double[] values, final int voffset) {
+		for (int k = 0; k < 3; k++) {
+			if (values[voffset + k] < box[offset + k]) {
+				box[offset + k] = values[voffset + k];
+			}
+			if (values[voffset + k + 3] > box[offset + k + 3]) {
+				box[offset + k + 3] = values[voffset + k + 3];
+			}
+		}
+	}
+
+	/**
+	 *
+	 *
+	 * @return number of nodes
+	 */
+	public int getNumberOfNodes() {
+		return numberOfNodes;
+	}
+
+	/**
+	 *
+	 *
+	 * @return level of the deepest leaf
+	 */
+	public int getDepth() {
+		return depth.get();
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public int getNumberOfFaces() {
+		return faces.length;
+	}
+
+	/**
+	 * Face with index i, as used by the index based queries.
+	 *
+	 * @param i
+	 * @return
+	 */
+	public HE_Face getFace(final int i) {
+		return faces[i];
+	}
+
+	/**
+	 * Bounds of the root node.
+	 *
+	 * @return
+	 */
+	public WB_AABB getAABB() {
+		if (numberOfNodes == 0) {
+			return new WB_AABB();
+		}
+		return new WB_AABB(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+	}
+
+	private int[] getStack() {
+		int[] stack = stacks.get();
+		if (stack == null || stack.length < depth.get() + 2) {
+			stack = new int[Math.max(64, depth.get() + 2)];
+			stacks.set(stack);
+		}
+		return stack;
+	}
+
+	/**
+	 * Faces whose bounding box is hit by the ray.
+	 *
+	 * @param R
+	 * @return
+	 */
+	public List<HE_Face> getFaces(final WB_Ray R) {
+		return toFaces(query(RAY, R.origin.xd(), R.origin.yd(), R.origin.zd(), R.direction.xd(), R.direction.yd(),
+				R.direction.zd(), 0, new TIntArrayList()));
+	}
+
+	/**
+	 * Faces whose bounding box is hit by the segment.
+	 *
+	 * @param S
+	 * @return
+	 */
+	public List<HE_Face> getFaces(final WB_Segment S) {
+		return toFaces(query(SEGMENT, S.origin.xd(), S.origin.yd(), S.origin.zd(), S.direction.xd(), S.direction.yd(),
+				S.direction.zd(), S.getLength(), new TIntArrayList()));
+	}
+
+	/**
+	 * Faces whose bounding box is hit by the line.
+	 *
+	 * @param L
+	 * @return
+	 */
+	public List<HE_Face> getFaces(final WB_Line L) {
+		return toFaces(query(LINE, L.origin.xd(), L.origin.yd(), L.origin.zd(), L.direction.xd(), L.direction.yd(),
+				L.direction.zd(), 0, new TIntArrayList()));
+	}
+
+	/**
+	 * Faces whose bounding box contains the point.
+	 *
+	 * @param p
+	 * @return
+	 */
+	public List<HE_Face> getFaces(final WB_Coord p) {
+		return toFaces(query(POINT, p.xd(), p.yd(), p.zd(), 0, 0, 0, 0, new TIntArrayList()));
+	}
+
+	/**
+	 * Faces whose bounding box overlaps the AABB.
+	 *
+	 * @param AABB
+	 * @return
+	 */
+	public List<HE_Face> getFaces(final WB_AABB AABB) {
+		return toFaces(query(BOX, AABB.getMinX(), AABB.getMinY(), AABB.getMinZ(), AABB.getMaxX(), AABB.getMaxY(),
+				AABB.getMaxZ(), 0, new TIntArrayList()));
+	}
+
+	/**
+	 * Faces whose bounding box straddles the plane.
+	 *
+	 * @param P
+	 * @return
+	 */
+	public List<HE_Face> getFaces(final WB_Plane P) {
+		final WB_Vector n = P.getNormal();
+		return toFaces(query(PLANE, n.xd(), n.yd(), n.zd(), 0, 0, 0, P.d(), new TIntArrayList()));
+	}
+
+	private List<HE_Face> toFaces(final TIntArrayList indices) {
+		final List<HE_Face> result = new FastTable<HE_Face>();
+		for (int i = 0; i < indices.size(); i++) {
+			result.add(faces[indices.getQuick(i)]);
+		}
+		return result;
+	}
+
+	/**
+	 * Collect the indices of all faces in leaves that pass the test.
+	 */
+	private TIntArrayList query(final int type, final double a, final double b, final double c, final double d,
+			final double e, final double f, final double g, final TIntArrayList result) {
+		if (numberOfNodes == 0) {
+			return result;
+		}
+		final int[] stack = getStack();
+		final double ia = 1.0 / d, ib = 1.0 / e, ic = 1.0 / f;
+		int top = 0;
+		stack[top++] = 0;
+		int node;
+		boolean hit;
+		while (top > 0) {
+			node = stack[--top];
+			final int id = 6 * node;
+			switch (type) {
+			case RAY:
+				hit = slab(id, a, b, c, ia, ib, ic, 0, Double.POSITIVE_INFINITY) < Double.POSITIVE_INFINITY;
+				break;
+			case LINE:
+				hit = slab(id, a, b, c, ia, ib, ic, Double.NEGATIVE_INFINITY,
+						Double.POSITIVE_INFINITY) < Double.POSITIVE_INFINITY;
+				break;
+			case SEGMENT:
+				hit = slab(id, a, b, c, ia, ib, ic, 0, g) < Double.POSITIVE_INFINITY;
+				break;
+			case POINT:
+				hit = a >= bounds[id] && b >= bounds[id + 1] && c >= bounds[id + 2] && a <= bounds[id + 3]
+						&& b <= bounds[id + 4] && c <= bounds[id + 5];
+				break;
+			case BOX:
+				hit = d >= bounds[id] && e >= bounds[id + 1] && f >= bounds[id + 2] && a <= bounds[id + 3]
+						&& b <= bounds[id + 4] && c <= bounds[id + 5];
+				break;
+			default:
+				final double cx = 0.5 * ((double) bounds[id] + bounds[id + 3]);
+				final double cy = 0.5 * ((double) bounds[id + 1] + bounds[id + 4]);
+				final double cz = 0.5 * ((double) bounds[id + 2] + bounds[id + 5]);
+				final double r = (bounds[id + 3] - cx) * Math.abs(a) + (bounds[id + 4] - cy) * Math.abs(b)
+						+ (bounds[id + 5] - cz) * Math.abs(c);
+				hit = Math.abs(a * cx + b * cy + c * cz - g) <= r;
+			}
+			if (!hit) {
+				continue;
+			}
+			if (nodes[2 * node + 1] > 0) {
+				final int first = nodes[2 * node];
+				final int last = first + nodes[2 * node + 1];
+				for (int k = first; k < last; k++) {
+					result.add(primitives[k]);
+				}
+			} else {
+				stack[top++] = nodes[2 * node] + 1;
+				stack[top++] = nodes[2 * node];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Entry parameter of a ray with a node, positive infinity if it misses the
+	 * node within [tmin, tmax].
+	 */
+	private double slab(final int id, final double ox, final double oy, final double oz, final double idx,
+			final double idy, final double idz, final double tmin, final double tmax) {
+		double tn = tmin, tf = tmax;
+		double t1 = (bounds[id] - ox) * idx;
+		double t2 = (bounds[id + 3] - ox) * idx;
+		double tmp;
+		if (t1 > t2) {
+			tmp = t1;
+			t1 = t2;
+			t2 = tmp;
+		}
+		// comparisons with NaN, a ray in the plane of a slab, are ignored
+		if (t1 > tn) {
+			tn = t1;
+		}
+		if (t2 < tf) {
+			tf = t2;
+		}
+		t1 = (bounds[id + 1] - oy) * idy;
+		t2 = (bounds[id + 4] - oy) * idy;
+		if (t1 > t2) {
+			tmp = t1;
+			t1 = t2;
+			t2 = tmp;
+		}
+		if (t1 > tn) {
+			tn = t1;
+		}
+		if (t2 < tf) {
+			tf = t2;
+		}
+		t1 = (bounds[id + 2] - oz) * idz;
+		t2 = (bounds[id + 5] - oz) * idz;
+		if (t1 > t2) {
+			tmp = t1;
+			t1 = t2;
+			t2 = tmp;
+		}
+		if (t1 > tn) {
+			tn = t1;
+		}
+		if (t2 < tf) {
+			tf = t2;
+		}
+		return tn <= tf ? tn : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Closest face hit by the ray o+t*d with tmin &lt;= t &lt;= tmax. Children
+	 * are visited front to back and pruned by the closest hit so far.
+	 *
+	 * @param ox
+	 * @param oy
+	 * @param oz
+	 * @param dx
+	 * @param dy
+	 * @param dz
+	 * @param tmin
+	 * @param tmax
+	 * @param hit
+	 *            if not null, hit[0] is set to the parameter t of the hit
+	 * @return index of the face, -1 if nothing is hit
+	 */
+	public int getClosestHit(final double ox, final double oy, final double oz, final double dx, final double dy,
+			final double dz, final double tmin, final double tmax, final double[] hit) {
+		if (numberOfNodes == 0) {
+			return -1;
+		}
+		final int[] stack = getStack();
+		final double idx = 1.0 / dx, idy = 1.0 / dy, idz = 1.0 / dz;
+		double best = tmax;
+		int bestFace = -1;
+		if (slab(0, ox, oy, oz, idx, idy, idz, tmin, best) == Double.POSITIVE_INFINITY) {
+			return -1;
+		}
+		int top = 0;
+		stack[top++] = 0;
+		int node;
+		while (top > 0) {
+			node = stack[--top];
+			if (nodes[2 * node + 1] > 0) {
+				final int first = nodes[2 * node];
+				final int last = first + nodes[2 * node + 1];
+				for (int k = first; k < last; k++) {
+					final double t = intersect(faces[primitives[k]], ox, oy, oz, dx, dy, dz, null);
+					if (t >= tmin && t <= best) {
+						best = t;
+						bestFace = primitives[k];
+					}
+				}
+			} else {
+				final int a = nodes[2 * node];
+				final double ta = slab(6 * a, ox, oy, oz, idx, idy, idz, tmin, best);
+				final double tb = slab(6 * a + 6, ox, oy, oz, idx, idy, idz, tmin, best);
+				if (ta <= tb) {
+					if (tb < Double.POSITIVE_INFINITY) {
+						stack[top++] = a + 1;
+					}
+					if (ta < Double.POSITIVE_INFINITY) {
+						stack[top++] = a;
+					}
+				} else {
+					if (ta < Double.POSITIVE_INFINITY) {
+						stack[top++] = a;
+					}
+					stack[top++] = a + 1;
+				}
+			}
+		}
+		if (bestFace >= 0 && hit != null) {
+			hit[0] = best;
+		}
+		return bestFace;
+	}
+
+	/**
+	 * Number of faces hit by the ray o+t*d with tmin &lt;= t &lt;= tmax.
+	 *
+	 * @param ox
+	 * @param oy
+	 * @param oz
+	 * @param dx
+	 * @param dy
+	 * @param dz
+	 * @param tmin
+	 * @param tmax
+	 * @return
+	 */
+	public int countHits(final double ox, final double oy, final double oz, final double dx, final double dy,
+			final double dz, final double tmin, final double tmax) {
+		if (numberOfNodes == 0) {
+			return 0;
+		}
+		final int[] stack = getStack();
+		final double idx = 1.0 / dx, idy = 1.0 / dy, idz = 1.0 / dz;
+		int count = 0;
+		int top = 0;
+		stack[top++] = 0;
+		int node;
+		while (top > 0) {
+			node = stack[--top];
+			if (slab(6 * node, ox, oy, oz, idx, idy, idz, tmin, tmax) == Double.POSITIVE_INFINITY) {
+				continue;
+			}
+			if (nodes[2 * node + 1] > 0) {
+				final int first = nodes[2 * node];
+				final int last = first + nodes[2 * node + 1];
+				for (int k = first; k < last; k++) {
+					final double t = intersect(faces[primitives[k]], ox, oy, oz, dx, dy, dz, null);
+					if (t >= tmin && t <= tmax) {
+						count++;
+					}
+				}
+			} else {
+				stack[top++] = nodes[2 * node] + 1;
+				stack[top++] = nodes[2 * node];
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Cast a batch of rays o+t*d, tmin &lt;= t &lt;= tmax. Consecutive rays are
+	 * traced together in packets that share one traversal of the hierarchy,
+	 * packets are distributed over all cores. Rays with similar origins and
+	 * directions should be stored next to each other.
+	 *
+	 * @param origins
+	 *            3 values per ray
+	 * @param directions
+	 *            3 values per ray, or 3 values shared by all rays
+	 * @param tmin
+	 * @param tmax
+	 * @param anyHit
+	 *            stop at the first hit found instead of the closest one, for
+	 *            visibility queries
+	 * @param faceIndex
+	 *            output, index of the face hit, -1 for a miss
+	 * @param t
+	 *            output, parameter of the hit, can be null
+	 * @param barycentric
+	 *            output, 2 values per ray, see intersect(), can be null
+	 */
+	public void castRays(final double[] origins, final double[] directions, final double tmin, final double tmax,
+			final boolean anyHit, final int[] faceIndex, final double[] t, final double[] barycentric) {
+		trace(origins, directions, tmin, tmax, anyHit ? ANY_HIT : CLOSEST_HIT, faceIndex, t, barycentric);
+	}
+
+	/**
+	 * Count the faces hit by a batch of rays o+t*d, tmin &lt;= t &lt;= tmax.
+	 *
+	 * @param origins
+	 *            3 values per ray
+	 * @param directions
+	 *            3 values per ray, or 3 values shared by all rays
+	 * @param tmin
+	 * @param tmax
+	 * @param counts
+	 *            output
+	 */
+	public void countHits(final double[] origins, final double[] directions, final double tmin, final double tmax,
+			final int[] counts) {
+		trace(origins, directions, tmin, tmax, COUNT_HITS, counts, null, null);
+	}
+
+	private void trace(final double[] origins, final double[] directions, final double tmin, final double tmax,
+			final int mode, final int[] result, final double[] t, final double[] barycentric) {
+		final int n = origins.length / 3;
+		if (directions.length != 3 && directions.length < 3 * n) {
+			throw new IllegalArgumentException("Expected 3 or " + 3 * n + " direction values.");
+		}
+		WB_ParallelExecutor.instance().forRange(0, (n + PACKET - 1) / PACKET, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				final Packet packet = new Packet(depth.get() + 2);
+				for (int p = start; p < end; p++) {
+					final int first = p * PACKET;
+					packet.trace(origins, directions, first, Math.min(PACKET, n - first), tmin, tmax, mode, result, t,
+							barycentric);
+				}
+			}
+		}, 1);
+	}
+
+	/**
+	 * Scratch space for tracing one packet of rays. A node is intersected with
+	 * the rays of the packet starting from the first ray that hit its parent,
+	 * rays that miss are skipped for the whole subtree.
+	 */
+	private class Packet {
+		final double[] ox = new double[PACKET], oy = new double[PACKET], oz = new double[PACKET];
+		final double[] dx = new double[PACKET], dy = new double[PACKET], dz = new double[PACKET];
+		final double[] ix = new double[PACKET], iy = new double[PACKET], iz = new double[PACKET];
+		final double[] best = new double[PACKET];
+		final double[] u = new double[PACKET], v = new double[PACKET];
+		final int[] face = new int[PACKET];
+		final boolean[] done = new boolean[PACKET];
+		final int[] stackNode;
+		final int[] stackRay;
+		final double[] uv = new double[2];
+
+		Packet(final int size) {
+			stackNode = new int[size];
+			stackRay = new int[size];
+		}
+
+		void trace(final double[] origins, final double[] directions, final int first, final int count,
+				final double tmin, final double tmax, final int mode, final int[] result, final double[] t,
+				final double[] barycentric) {
+			final boolean shared = directions.length == 3;
+			int id;
+			for (int r = 0; r < count; r++) {
+				id = 3 * (first + r);
+				ox[r] = origins[id];
+				oy[r] = origins[id + 1];
+				oz[r] = origins[id + 2];
+				id = shared ? 0 : id;
+				dx[r] = directions[id];
+				dy[r] = directions[id + 1];
+				dz[r] = directions[id + 2];
+				ix[r] = 1.0 / dx[r];
+				iy[r] = 1.0 / dy[r];
+				iz[r] = 1.0 / dz[r];
+				best[r] = tmax;
+				face[r] = mode == COUNT_HITS ? 0 : -1;
+				done[r] = false;
+			}
+			if (numberOfNodes > 0) {
+				if (isCoherent(count)) {
+					traverse(0, count, tmin, mode);
+				} else {
+					for (int r = 0; r < count; r++) {
+						traverse(r, tmin, mode);
+					}
+				}
+			}
+			for (int r = 0; r < count; r++) {
+				result[first + r] = face[r];
+				if (t != null) {
+					t[first + r] = face[r] < 0 || mode == COUNT_HITS ? Double.NaN : best[r];
+				}
+				if (barycentric != null) {
+					barycentric[2 * (first + r)] = face[r] < 0 ? Double.NaN : u[r];
+					barycentric[2 * (first + r) + 1] = face[r] < 0 ? Double.NaN : v[r];
+				}
+			}
+		}
+
+		/**
+		 * Rays are traced as a packet only if their directions lie in the same
+		 * octant, otherwise they visit too many nodes that most rays miss.
+		 */
+		private boolean isCoherent(final int count) {
+			final boolean sx = dx[0] < 0, sy = dy[0] < 0, sz = dz[0] < 0;
+			for (int r = 1; r < count; r++) {
+				if (dx[r] < 0 != sx || dy[r] < 0 != sy || dz[r] < 0 != sz) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Trace a single ray of the packet.
+		 */
+		private void traverse(final int r, final double tmin, final int mode) {
+			final double x = ox[r], y = oy[r], z = oz[r], ux = ix[r], uy = iy[r], uz = iz[r];
+			if (slab(0, x, y, z, ux, uy, uz, tmin, best[r]) == Double.POSITIVE_INFINITY) {
+				return;
+			}
+			int top = 0;
+			stackNode[top++] = 0;
+			int node;
+			while (top > 0) {
+				node = stackNode[--top];
+				if (nodes[2 * node + 1] > 0) {
+					intersectLeaf(node, r, r + 1, tmin, mode);
+					if (done[r]) {
+						return;
+					}
+				} else {
+					final int a = nodes[2 * node];
+					final double ta = slab(6 * a, x, y, z, ux, uy, uz, tmin, best[r]);
+					final double tb = slab(6 * a + 6, x, y, z, ux, uy, uz, tmin, best[r]);
+					if (ta <= tb) {
+						if (tb < Double.POSITIVE_INFINITY) {
+							stackNode[top++] = a + 1;
+						}
+						if (ta < Double.POSITIVE_INFINITY) {
+							stackNode[top++] = a;
+						}
+					} else {
+						if (ta < Double.POSITIVE_INFINITY) {
+							stackNode[top++] = a;
+						}
+						stackNode[top++] = a + 1;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Trace rays [from, count) as a packet.
+		 */
+		private void traverse(final int from, final int count, final double tmin, final int mode) {
+			int top = 0;
+			stackNode[top] = 0;
+			stackRay[top++] = from;
+			int node, k;
+			while (top > 0) {
+				node = stackNode[--top];
+				k = stackRay[top];
+				final int box = 6 * node;
+				while (k < count && (done[k]
+						|| slab(box, ox[k], oy[k], oz[k], ix[k], iy[k], iz[k], tmin, best[k]) == Double.POSITIVE_INFINITY)) {
+					k++;
+				}
+				if (k == count) {
+					continue;
+				}
+				if (nodes[2 * node + 1] > 0) {
+					intersectLeaf(node, k, count, tmin, mode);
+				} else {
+					final int a = nodes[2 * node];
+					final double ta = slab(6 * a, ox[k], oy[k], oz[k], ix[k], iy[k], iz[k], tmin, best[k]);
+					final double tb = slab(6 * a + 6, ox[k], oy[k], oz[k], ix[k], iy[k], iz[k], tmin, best[k]);
+					// the nearer child for the first active ray is visited first
+					stackNode[top] = ta <= tb ? a + 1 : a;
+					stackRay[top++] = k;
+					stackNode[top] = ta <= tb ? a : a + 1;
+					stackRay[top++] = k;
+				}
+			}
+		}
+
+		private void intersectLeaf(final int node, final int k, final int count, final double tmin, final int mode) {
+			final int box = 6 * node;
+			final int firstPrimitive = nodes[2 * node];
+			final int lastPrimitive = firstPrimitive + nodes[2 * node + 1];
+			double hit;
+			for (int r = k; r < count; r++) {
+				if (done[r] || r > k
+						&& slab(box, ox[r], oy[r], oz[r], ix[r], iy[r], iz[r], tmin, best[r]) == Double.POSITIVE_INFINITY) {
+					continue;
+				}
+				for (int p = firstPrimitive; p < lastPrimitive; p++) {
+					hit = intersect(faces[primitives[p]], ox[r], oy[r], oz[r], dx[r], dy[r], dz[r], uv);
+					if (hit >= tmin && hit <= best[r]) {
+						if (mode == COUNT_HITS) {
+							face[r]++;
+							continue;
+						}
+						best[r] = hit;
+						face[r] = primitives[p];
+						u[r] = uv[0];
+						v[r] = uv[1];
+						if (mode == ANY_HIT) {
+							done[r] = true;
+							break;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Closest face hit by a ray.
+	 *
+	 * @param R
+	 * @return
+	 */
+	public HE_Face getClosestFace(final WB_Ray R) {
+		final int i = getClosestHit(R.origin.xd(), R.origin.yd(), R.origin.zd(), R.direction.xd(), R.direction.yd(),
+				R.direction.zd(), 0, Double.POSITIVE_INFINITY, null);
+		return i < 0 ? null : faces[i];
+	}
+
+	/**
+	 * Intersection of the line o+t*d with a face. Triangles use the
+	 * Moller-Trumbore test, other faces are intersected with the plane through
+	 * their center with the Newell normal, followed by a crossing test.
+	 *
+	 * @param uv
+	 *            if not null, receives the barycentric coordinates of the hit
+	 *            relative to the second and third vertex of a triangle, NaN for
+	 *            other faces
+	 * @return parameter t, NaN if there is no intersection
+	 */
+	static double intersect(final HE_Face face, final double ox, final double oy, final double oz, final double dx,
+			final double dy, final double dz, final double[] uv) {
+		final HE_Halfedge start = face.getHalfedge();
+		if (start == null) {
+			return Double.NaN;
+		}
+		final HE_Halfedge he1 = start.getNextInFace();
+		final HE_Halfedge he2 = he1.getNextInFace();
+		if (he2.getNextInFace() == start) {
+			final HE_Vertex v0 = start.getVertex(), v1 = he1.getVertex(), v2 = he2.getVertex();
+			final double e1x = v1.xd() - v0.xd(), e1y = v1.yd() - v0.yd(), e1z = v1.zd() - v0.zd();
+			final double e2x = v2.xd() - v0.xd(), e2y = v2.yd() - v0.yd(), e2z = v2.zd() - v0.zd();
+			final double px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+			final double det = e1x * px + e1y * py + e1z * pz;
+			if (det == 0) {
+				return Double.NaN;
+			}
+			final double inv = 1.0 / det;
+			final double sx = ox - v0.xd(), sy = oy - v0.yd(), sz = oz - v0.zd();
+			final double u = (sx * px + sy * py + sz * pz) * inv;
+			if (u < 0 || u > 1) {
+				return Double.NaN;
+			}
+			final double qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+			final double v = (dx * qx + dy * qy + dz * qz) * inv;
+			if (v < 0 || u + v > 1) {
+				return Double.NaN;
+			}
+			if (uv != null) {
+				uv[0] = u;
+				uv[1] = v;
+			}
+			return (e2x * qx + e2y * qy + e2z * qz) * inv;
+		}
+		double nx = 0, ny = 0, nz = 0;
+		double cx = 0, cy = 0, cz = 0;
+		int n = 0;
+		HE_Halfedge he = start;
+		HE_Vertex a, b;
+		do {
+			a = he.getVertex();
+			b = he.getNextInFace().getVertex();
+			cx += a.xd();
+			cy += a.yd();
+			cz += a.zd();
+			n++;
+			nx += (a.yd() - b.yd()) * (a.zd() + b.zd());
+			ny += (a.zd() - b.zd()) * (a.xd() + b.xd());
+			nz += (a.xd() - b.xd()) * (a.yd() + b.yd());
+			he = he.getNextInFace();
+		} while (he != start);
+		final double denom = nx * dx + ny * dy + nz * dz;
+		if (denom == 0) {
+			return Double.NaN;
+		}
+		// plane through the face center, as HE_Face.getPlane()
+		final double t = (nx * (cx / n - ox) + ny * (cy / n - oy) + nz * (cz / n - oz)) / denom;
+		final double hx = ox + t * dx, hy = oy + t * dy, hz = oz + t * dz;
+		// project on the plane with the largest normal component
+		final double ax = Math.abs(nx), ay = Math.abs(ny), az = Math.abs(nz);
+		final int drop = ax >= ay && ax >= az ? 0 : ay >= az ? 1 : 2;
+		final double pu = drop == 0 ? hy : hx;
+		final double pv = drop == 2 ? hy : hz;
+		boolean inside = false;
+		double au, av, bu, bv;
+		he = start;
+		do {
+			a = he.getVertex();
+			b = he.getNextInFace().getVertex();
+			au = drop == 0 ? a.yd() : a.xd();
+			av = drop == 2 ? a.yd() : a.zd();
+			bu = drop == 0 ? b.yd() : b.xd();
+			bv = drop == 2 ? b.yd() : b.zd();
+			if (av > pv != bv > pv && pu < (bu - au) * (pv - av) / (bv - av) + au) {
+				inside = !inside;
+			}
+			he = he.getNextInFace();
+		} while (he != start);
+		if (uv != null) {
+			uv[0] = uv[1] = Double.NaN;
+		}
+		return inside ? t : Double.NaN;
+	}
+
+	/**
+	 * Closest point on the mesh.
+	 *
+	 * @param p
+	 * @return
+	 */
+	public WB_Coord getClosestPoint(final WB_Coord p) {
+		final Object[] result = closest(p);
+		return result == null ? null : (WB_Coord) result[1];
+	}
+
+	/**
+	 * Face containing the closest point on the mesh.
+	 *
+	 * @param p
+	 * @return
+	 */
+	public HE_Face getClosestFace(final WB_Coord p) {
+		final Object[] result = closest(p);
+		return result == null ? null : (HE_Face) result[0];
+	}
+
+	private Object[] closest(final WB_Coord p) {
+		if (numberOfNodes == 0) {
+			return null;
+		}
+		final int[] stack = getStack();
+		final double px = p.xd(), py = p.yd(), pz = p.zd();
+		double best = Double.POSITIVE_INFINITY;
+		HE_Face bestFace = null;
+		WB_Coord bestPoint = null;
+		int top = 0;
+		stack[top++] = 0;
+		int node;
+		while (top > 0) {
+			node = stack[--top];
+			if (sqDistance(6 * node, px, py, pz) > best) {
+				continue;
+			}
+			if (nodes[2 * node + 1] > 0) {
+				final int first = nodes[2 * node];
+				final int last = first + nodes[2 * node + 1];
+				for (int k = first; k < last; k++) {
+					final HE_Face f = faces[primitives[k]];
+					final int id = 6 * primitives[k];
+					if (sqDistance(faceBounds, id, px, py, pz) > best) {
+						continue;
+					}
+					final WB_Coord q = f.getClosestPoint(p);
+					final double d2 = WB_GeometryOp3D.getSqDistance3D(p, q);
+					if (d2 < best) {
+						best = d2;
+						bestFace = f;
+						bestPoint = q;
+					}
+				}
+			} else {
+				final int a = nodes[2 * node];
+				if (sqDistance(6 * a, px, py, pz) <= sqDistance(6 * a + 6, px, py, pz)) {
+					stack[top++] = a + 1;
+					stack[top++] = a;
+				} else {
+					stack[top++] = a;
+					stack[top++] = a + 1;
+				}
+			}
+		}
+		return new Object[] { bestFace, bestPoint };
+	}
+
+	private double sqDistance(final int id, final double px, final double py, final double pz) {
+		double d2 = 0, d;
+		d = px < bounds[id] ? bounds[id] - px : px > bounds[id + 3] ? px - bounds[id + 3] : 0;
+		d2 += d * d;
+		d = py < bounds[id + 1] ? bounds[id + 1] - py : py > bounds[id + 4] ? py - bounds[id + 4] : 0;
+		d2 += d * d;
+		d = pz < bounds[id + 2] ? bounds[id + 2] - pz : pz > bounds[id + 5] ? pz - bounds[id + 5] : 0;
+		return d2 + d * d;
+	}
+
+	private static double sqDistance(final double[] box, final int id, final double px, final double py,
+			final double pz) {
+		double d2 = 0, d;
+		d = px < box[id] ? box[id] - px : px > box[id + 3] ? px - box[id + 3] : 0;
+		d2 += d * d;
+		d = py < box[id + 1] ? box[id + 1] - py : py > box[id + 4] ? py - box[id + 4] : 0;
+		d2 += d * d;
+		d = pz < box[id + 2] ? box[id + 2] - pz : pz > box[id + 5] ? pz - box[id + 5] : 0;
+		return d2 + d * d;
+	}
+}
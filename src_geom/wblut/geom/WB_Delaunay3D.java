@@ -0,0 +1,743 @@
+/*
+ * This file is part of HE_Mesh, a library for creating and manipulating meshes.
+ * It is dedicated to the public domain. To the extent possible under law,
+ * I , Frederik Vanhoutte, have waived all copyright and related or neighboring
+ * rights.
+ *
+ * This work is published from Belgium. (http://creativecommons.org/publicdomain/zero/1.0/)
+ *
+ */
+
+package wblut.geom;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import wblut.core.WB_ParallelExecutor;
+import wblut.core.WB_ParallelExecutor.WB_RangeAction;
+
+/**
+ * 3D Delaunay triangulation by incremental Bowyer-Watson insertion.
+ *
+ * Points are inserted in a biased randomized insertion order (BRIO): random
+ * rounds of doubling size, each round sorted along a Hilbert curve, so each
+ * point is located by a short walk from the previous one. Tetrahedra are
+ * stored as four vertex indices and four neighbor indices in flat int arrays.
+ * The convex hull is closed with ghost tetrahedra sharing an infinite vertex,
+ * so points outside the current hull need no special case. All decisions use
+ * the exact predicates in WB_Predicates.
+ *
+ * Points coinciding with an already inserted point are skipped, see
+ * getDuplicate(int). If all points are coplanar, the triangulation is empty.
+ */
+public class WB_Delaunay3D {
+	/** Index of the infinite vertex. */
+	private static final int INFINITE = -1;
+	/** First vertex of a deleted tetrahedron. */
+	private static final int DELETED = -2;
+	private final double[] coords;
+	private final int n;
+	/** Vertices per tetrahedron, positively oriented. */
+	private int[] tv;
+	/** Neighbor per tetrahedron, neighbor i is opposite vertex i. */
+	private int[] tn;
+	private int nt;
+	private int[] free;
+	private int nfree;
+	/** Conflict marks: +insertion in the cavity, -insertion tested. */
+	private int[] marks;
+	private int insertion;
+	private int last;
+	private final int[] duplicate;
+	private long seed;
+	// cavity scratch
+	private int[] stack;
+	private int[] cavity;
+	private int ncavity;
+	private int[] boundaryVertices;
+	private int[] boundaryNeighbor;
+	private int[] boundaryBackFace;
+	private int[] boundaryFace;
+	private int nboundary;
+	private long[] faceKeys;
+	private int[] faceValues;
+	private int[] faceMarks;
+	// result
+	private int[] tetrahedra;
+	private int[] neighbors;
+
+	/**
+	 *
+	 *
+	 * @param coords
+	 *            x, y and z of each point, 3n values
+	 */
+	public WB_Delaunay3D(final double[] coords) {
+		this.coords = coords;
+		n = coords.length / 3;
+		duplicate = new int[n];
+		Arrays.fill(duplicate, -1);
+		final int capacity = Math.max(64, 8 * n);
+		tv = new int[4 * capacity];
+		tn = new int[4 * capacity];
+		marks = new int[capacity];
+		free = new int[64];
+		stack = new int[64];
+		cavity = new int[64];
+		boundaryVertices = new int[4 * 64];
+		boundaryNeighbor = new int[64];
+		boundaryBackFace = new int[64];
+		boundaryFace = new int[64];
+		faceKeys = new long[256];
+		faceValues = new int[256];
+		faceMarks = new int[256];
+		seed = 0x2545F4914F6CDD1DL;
+		build();
+	}
+
+	/**
+	 *
+	 *
+	 * @param points
+	 */
+	public WB_Delaunay3D(final WB_Coord[] points) {
+		this(toArray(Arrays.asList(points)));
+	}
+
+	/**
+	 *
+	 *
+	 * @param points
+	 */
+	public WB_Delaunay3D(final Collection<? extends WB_Coord> points) {
+		this(toArray(points));
+	}
+
+	/**
+	 * Triangulation in which points within a distance of an earlier point in
+	 * the input are treated as duplicates of that point.
+	 *
+	 * @param coords
+	 *            x, y and z of each point, 3n values
+	 * @param tolerance
+	 *            distance below which points are merged, 0 for coinciding
+	 *            points only
+	 */
+	public WB_Delaunay3D(final double[] coords, final double tolerance) {
+		this(merge(coords, tolerance));
+	}
+
+	/**
+	 *
+	 *
+	 * @param points
+	 * @param tolerance
+	 *            distance below which points are merged, 0 for coinciding
+	 *            points only
+	 */
+	public WB_Delaunay3D(final WB_Coord[] points, final double tolerance) {
+		this(merge(toArray(Arrays.asList(points)), tolerance));
+	}
+
+	/**
+	 *
+	 *
+	 * @param points
+	 * @param tolerance
+	 *            distance below which points are merged, 0 for coinciding
+	 *            points only
+	 */
+	public WB_Delaunay3D(final Collection<? extends WB_Coord> points, final double tolerance) {
+		this(merge(toArray(points), tolerance));
+	}
+
+	/**
+	 * Copy of the coordinates with each point that lies within the tolerance
+	 * of an earlier point moved onto the first such point, so that insertion
+	 * skips it as a duplicate of that point.
+	 */
+	private static double[] merge(final double[] coords, final double tolerance) {
+		if (!(tolerance > 0)) {
+			return coords;
+		}
+		final int n = coords.length / 3;
+		final double[] result = coords.clone();
+		final WB_SpatialHash hash = new WB_SpatialHash(tolerance, Math.max(1, n));
+		// hash index of each kept point to its index in the input
+		final int[] kept = new int[n];
+		final int[] near = new int[1];
+		for (int i = 0; i < n; i++) {
+			if (hash.getRange(coords[3 * i], coords[3 * i + 1], coords[3 * i + 2], tolerance, near) > 0) {
+				System.arraycopy(coords, 3 * kept[near[0]], result, 3 * i, 3);
+			} else {
+				kept[hash.insert(coords[3 * i], coords[3 * i + 1], coords[3 * i + 2])] = i;
+			}
+		}
+		return result;
+	}
+
+	private static double[] toArray(final Collection<? extends WB_Coord> points) {
+		final double[] coords = new double[3 * points.size()];
+		int i = 0;
+		for (final WB_Coord p : points) {
+			coords[i++] = p.xd();
+			coords[i++] = p.yd();
+			coords[i++] = p.zd();
+		}
+		return coords;
+	}
+
+	/**
+	 * Tetrahedra, 4 point indices each, orient3D of each tetrahedron is
+	 * positive.
+	 *
+	 * @return
+	 */
+	public int[] getTetrahedra() {
+		return tetrahedra;
+	}
+
+	/**
+	 * Neighbors of the tetrahedra, 4 each, neighbor i is opposite vertex i. -1
+	 * for a face on the convex hull.
+	 *
+	 * @return
+	 */
+	public int[] getNeighbors() {
+		return neighbors;
+	}
+
+	/**
+	 *
+	 *
+	 * @return number of tetrahedra
+	 */
+	public int getNumberOfTetrahedra() {
+		return tetrahedra.length / 4;
+	}
+
+	/**
+	 *
+	 *
+	 * @param i
+	 * @return index of the point that coincides with point i and was inserted
+	 *         before it, -1 if point i is a vertex of the triangulation. The
+	 *         insertion order is randomized, the index can be higher than i.
+	 */
+	public int getDuplicate(final int i) {
+		return duplicate[i];
+	}
+
+	/**
+	 * Triangulation with tetrahedra, neighbors, unique triangles and unique
+	 * edges.
+	 *
+	 * @return
+	 */
+	public WB_Triangulation3D getTriangulation() {
+		final int m = tetrahedra.length / 4;
+		int nf = 0;
+		for (int t = 0; t < m; t++) {
+			for (int i = 0; i < 4; i++) {
+				if (neighbors[4 * t + i] < t) {
+					nf++;
+				}
+			}
+		}
+		final int[] triangles = new int[3 * nf];
+		int f = 0;
+		for (int t = 0; t < m; t++) {
+			for (int i = 0; i < 4; i++) {
+				if (neighbors[4 * t + i] < t) {
+					for (int j = 1; j < 4; j++) {
+						triangles[f++] = tetrahedra[4 * t + (i + j & 3)];
+					}
+				}
+			}
+		}
+		final long[] keys = new long[6 * m];
+		final WB_ParallelExecutor executor = WB_ParallelExecutor.instance();
+		executor.forRange(0, m, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				int k;
+				for (int t = start; t < end; t++) {
+					k = 6 * t;
+					for (int i = 0; i < 3; i++) {
+						for (int j = i + 1; j < 4; j++) {
+							keys[k++] = edgeKey(tetrahedra[4 * t + i], tetrahedra[4 * t + j]);
+						}
+					}
+				}
+			}
+		});
+		if (executor.isParallel()) {
+			Arrays.parallelSort(keys);
+		} else {
+			Arrays.sort(keys);
+		}
+		int ne = 0;
+		for (int k = 0; k < keys.length; k++) {
+			if (k == 0 || keys[k] != keys[k - 1]) {
+				keys[ne++] = keys[k];
+			}
+		}
+		final int[] edges = new int[2 * ne];
+		for (int e = 0; e < ne; e++) {
+			edges[2 * e] = (int) (keys[e] >>> 32);
+			edges[2 * e + 1] = (int) keys[e];
+		}
+		return new WB_Triangulation3D(tetrahedra, neighbors, triangles, edges);
+	}
+
+	/**
+	 * Circumcenters of the tetrahedra, computed in parallel.
+	 *
+	 * @return x, y and z of each circumcenter
+	 */
+	public double[] getCircumcenters() {
+		final int m = tetrahedra.length / 4;
+		final double[] result = new double[3 * m];
+		WB_ParallelExecutor.instance().forRange(0, m, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				int a, b, c, d;
+				for (int t = start; t < end; t++) {
+					a = 3 * tetrahedra[4 * t];
+					b = 3 * tetrahedra[4 * t + 1];
+					c = 3 * tetrahedra[4 * t + 2];
+					d = 3 * tetrahedra[4 * t + 3];
+					final double bx = coords[b] - coords[a], by = coords[b + 1] - coords[a + 1],
+							bz = coords[b + 2] - coords[a + 2];
+					final double cx = coords[c] - coords[a], cy = coords[c + 1] - coords[a + 1],
+							cz = coords[c + 2] - coords[a + 2];
+					final double dx = coords[d] - coords[a], dy = coords[d + 1] - coords[a + 1],
+							dz = coords[d + 2] - coords[a + 2];
+					final double b2 = bx * bx + by * by + bz * bz;
+					final double c2 = cx * cx + cy * cy + cz * cz;
+					final double d2 = dx * dx + dy * dy + dz * dz;
+					final double cdx = cy * dz - cz * dy, cdy = cz * dx - cx * dz, cdz = cx * dy - cy * dx;
+					final double dbx = dy * bz - dz * by, dby = dz * bx - dx * bz, dbz = dx * by - dy * bx;
+					final double bcx = by * cz - bz * cy, bcy = bz * cx - bx * cz, bcz = bx * cy - by * cx;
+					final double inv = 0.5 / (bx * cdx + by * cdy + bz * cdz);
+					result[3 * t] = coords[a] + (b2 * cdx + c2 * dbx + d2 * bcx) * inv;
+					result[3 * t + 1] = coords[a + 1] + (b2 * cdy + c2 * dby + d2 * bcy) * inv;
+					result[3 * t + 2] = coords[a + 2] + (b2 * cdz + c2 * dbz + d2 * bcz) * inv;
+				}
+			}
+		});
+		return result;
+	}
+
+	private static long edgeKey(final int u, final int v) {
+		return u < v ? (long) u << 32 | v : (long) v << 32 | u;
+	}
+
+	private void build() {
+		tetrahedra = new int[0];
+		neighbors = new int[0];
+		if (n < 4) {
+			return;
+		}
+		final int[] order = getInsertionOrder();
+		final int[] first = getFirstTetrahedron(order);
+		if (first == null) {
+			return;
+		}
+		createFirstTetrahedron(first);
+		for (final int p : order) {
+			if (p != first[0] && p != first[1] && p != first[2] && p != first[3]) {
+				insert(p);
+			}
+		}
+		// compact the finite tetrahedra
+		final int[] index = new int[nt];
+		int m = 0;
+		for (int t = 0; t < nt; t++) {
+			index[t] = isFinite(t) ? m++ : -1;
+		}
+		tetrahedra = new int[4 * m];
+		neighbors = new int[4 * m];
+		for (int t = 0; t < nt; t++) {
+			if (index[t] >= 0) {
+				for (int i = 0; i < 4; i++) {
+					tetrahedra[4 * index[t] + i] = tv[4 * t + i];
+					neighbors[4 * index[t] + i] = index[tn[4 * t + i]];
+				}
+			}
+		}
+		tv = null;
+		tn = null;
+		marks = null;
+	}
+
+	/**
+	 * BRIO: each point goes to the last round with probability 1/2, to the
+	 * round before with probability 1/4, ... Rounds are inserted first to
+	 * last, in Hilbert order within a round.
+	 */
+	private int[] getInsertionOrder() {
+		final int[] hilbert = WB_SpaceFillingCurve.getOrder(coords, true);
+		final Random random = new Random(n);
+		final int[] round = new int[n];
+		int rounds = 1;
+		for (int i = 0; i < n; i++) {
+			int r = 0;
+			while (r < 30 && random.nextBoolean()) {
+				r++;
+			}
+			round[i] = r;
+			rounds = Math.max(rounds, r + 1);
+		}
+		// counting sort on the round, most coin flips first
+		final int[] start = new int[rounds + 1];
+		for (int i = 0; i < n; i++) {
+			start[rounds - round[i]]++;
+		}
+		for (int r = 0; r < rounds; r++) {
+			start[r + 1] += start[r];
+		}
+		final int[] order = new int[n];
+		for (final int i : hilbert) {
+			order[start[rounds - 1 - round[i]]++] = i;
+		}
+		return order;
+	}
+
+	/**
+	 * First four affinely independent points in insertion order.
+	 */
+	private int[] getFirstTetrahedron(final int[] order) {
+		final int a = order[0];
+		int b = -1, c = -1, d = -1;
+		for (final int p : order) {
+			if (b == -1) {
+				if (!same(a, p)) {
+					b = p;
+				}
+			} else if (c == -1) {
+				if (!collinear(a, b, p)) {
+					c = p;
+				}
+			} else if (orient(a, b, c, p) != 0) {
+				d = p;
+				break;
+			}
+		}
+		if (d == -1) {
+			return null;
+		}
+		return orient(a, b, c, d) > 0 ? new int[] { a, b, c, d } : new int[] { b, a, c, d };
+	}
+
+	private boolean same(final int a, final int b) {
+		return coords[3 * a] == coords[3 * b] && coords[3 * a + 1] == coords[3 * b + 1]
+				&& coords[3 * a + 2] == coords[3 * b + 2];
+	}
+
+	private boolean collinear(final int a, final int b, final int c) {
+		for (int i = 0; i < 3; i++) {
+			final int j = (i + 1) % 3;
+			if (WB_Predicates.orient2D(coords[3 * a + i], coords[3 * a + j], coords[3 * b + i], coords[3 * b + j],
+					coords[3 * c + i], coords[3 * c + j]) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private double orient(final int a, final int b, final int c, final int d) {
+		return WB_Predicates.orient3D(coords[3 * a], coords[3 * a + 1], coords[3 * a + 2], coords[3 * b],
+				coords[3 * b + 1], coords[3 * b + 2], coords[3 * c], coords[3 * c + 1], coords[3 * c + 2], coords[3 * d],
+				coords[3 * d + 1], coords[3 * d + 2]);
+	}
+
+	/**
+	 * Orientation of tetrahedron t with vertex i replaced by p.
+	 */
+	private double orient(final int t, final int i, final int p) {
+		final int a = i == 0 ? p : tv[4 * t];
+		final int b = i == 1 ? p : tv[4 * t + 1];
+		final int c = i == 2 ? p : tv[4 * t + 2];
+		final int d = i == 3 ? p : tv[4 * t + 3];
+		return orient(a, b, c, d);
+	}
+
+	private double inSphere(final int t, final int p) {
+		final int a = 3 * tv[4 * t], b = 3 * tv[4 * t + 1], c = 3 * tv[4 * t + 2], d = 3 * tv[4 * t + 3];
+		return WB_Predicates.inSphere3D(coords[a], coords[a + 1], coords[a + 2], coords[b], coords[b + 1],
+				coords[b + 2], coords[c], coords[c + 1], coords[c + 2], coords[d], coords[d + 1], coords[d + 2],
+				coords[3 * p], coords[3 * p + 1], coords[3 * p + 2]);
+	}
+
+	private boolean isFinite(final int t) {
+		return tv[4 * t] >= 0 && tv[4 * t + 1] >= 0 && tv[4 * t + 2] >= 0 && tv[4 * t + 3] >= 0;
+	}
+
+	/**
+	 * Position of the infinite vertex in t, -1 if t is finite.
+	 */
+	private int infinite(final int t) {
+		for (int i = 0; i < 4; i++) {
+			if (tv[4 * t + i] == INFINITE) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int nextRandom() {
+		seed ^= seed << 13;
+		seed ^= seed >>> 7;
+		seed ^= seed << 17;
+		return (int) (seed >>> 33);
+	}
+
+	private int newTetrahedron() {
+		if (nfree > 0) {
+			return free[--nfree];
+		}
+		if (nt == marks.length) {
+			final int capacity = 2 * nt;
+			tv = Arrays.copyOf(tv, 4 * capacity);
+			tn = Arrays.copyOf(tn, 4 * capacity);
+			marks = Arrays.copyOf(marks, capacity);
+		}
+		return nt++;
+	}
+
+	/**
+	 * The finite tetrahedron and four ghost tetrahedra on its faces. A ghost
+	 * tetrahedron is positively oriented if its infinite vertex is taken as a
+	 * point far beyond its finite face.
+	 */
+	private void createFirstTetrahedron(final int[] first) {
+		final int t = newTetrahedron();
+		System.arraycopy(first, 0, tv, 0, 4);
+		final int[] ghosts = new int[4];
+		for (int i = 0; i < 4; i++) {
+			final int g = newTetrahedron();
+			ghosts[i] = g;
+			for (int j = 0; j < 4; j++) {
+				tv[4 * g + j] = j == i ? INFINITE : first[j];
+			}
+			// replacing the vertex by a point beyond the face flips the
+			// orientation, swap two finite vertices to restore it
+			final int j = i == 0 ? 1 : 0;
+			final int k = i == 3 ? 2 : 3;
+			final int tmp = tv[4 * g + j];
+			tv[4 * g + j] = tv[4 * g + k];
+			tv[4 * g + k] = tmp;
+			tn[4 * t + i] = g;
+			tn[4 * g + i] = t;
+		}
+		// ghosts g_i and g_j share the face with the infinite vertex and the
+		// two vertices other than first[i] and first[j]
+		for (int i = 0; i < 4; i++) {
+			final int g = ghosts[i];
+			for (int f = 0; f < 4; f++) {
+				if (tv[4 * g + f] == INFINITE) {
+					continue;
+				}
+				// the face opposite first[j] in g_i is shared with g_j
+				final int v = tv[4 * g + f];
+				for (int j = 0; j < 4; j++) {
+					if (first[j] == v) {
+						tn[4 * g + f] = ghosts[j];
+					}
+				}
+			}
+		}
+		last = t;
+	}
+
+	/**
+	 * Walk from the last created tetrahedron towards p.
+	 *
+	 * @return finite tetrahedron containing p, or a ghost tetrahedron whose
+	 *         face p lies beyond
+	 */
+	private int locate(final int p) {
+		int t = last;
+		if (tv[4 * t] == DELETED) {
+			t = 0;
+			while (tv[4 * t] == DELETED) {
+				t++;
+			}
+		}
+		int inf = infinite(t);
+		if (inf >= 0) {
+			t = tn[4 * t + inf];
+		}
+		walk: while (true) {
+			final int start = nextRandom() & 3;
+			for (int k = 0; k < 4; k++) {
+				final int i = start + k & 3;
+				if (orient(t, i, p) < 0) {
+					t = tn[4 * t + i];
+					inf = infinite(t);
+					if (inf >= 0) {
+						return t;
+					}
+					continue walk;
+				}
+			}
+			return t;
+		}
+	}
+
+	private boolean inConflict(final int t, final int p) {
+		final int inf = infinite(t);
+		if (inf < 0) {
+			return inSphere(t, p) > 0;
+		}
+		final double o = orient(t, inf, p);
+		if (o != 0) {
+			return o > 0;
+		}
+		// p in the plane of the hull face: in conflict if inside its
+		// circumcircle, i.e. inside the circumsphere of the finite neighbor
+		return inSphere(tn[4 * t + inf], p) > 0;
+	}
+
+	private void insert(final int p) {
+		final int start = locate(p);
+		if (infinite(start) < 0) {
+			for (int i = 0; i < 4; i++) {
+				if (same(tv[4 * start + i], p)) {
+					duplicate[p] = tv[4 * start + i];
+					return;
+				}
+			}
+		}
+		insertion++;
+		findCavity(start, p);
+		// delete the cavity, then fill it with new tetrahedra joining p to
+		// its boundary faces
+		for (int c = 0; c < ncavity; c++) {
+			if (nfree == free.length) {
+				free = Arrays.copyOf(free, 2 * nfree);
+			}
+			free[nfree++] = cavity[c];
+			tv[4 * cavity[c]] = DELETED;
+		}
+		ensureFaceTable(3 * nboundary);
+		for (int b = 0; b < nboundary; b++) {
+			final int t = newTetrahedron();
+			marks[t] = 0;
+			System.arraycopy(boundaryVertices, 4 * b, tv, 4 * t, 4);
+			final int i = boundaryFace[b];
+			final int nb = boundaryNeighbor[b];
+			tn[4 * t + i] = nb;
+			tn[4 * nb + boundaryBackFace[b]] = t;
+			for (int f = 0; f < 4; f++) {
+				if (f != i) {
+					linkFace(t, f, i);
+				}
+			}
+			last = t;
+		}
+	}
+
+	/**
+	 * Breadth-first search for all tetrahedra in conflict with p, starting
+	 * from a tetrahedron in conflict. Collects the boundary faces of the
+	 * cavity and the vertices of the tetrahedra that will replace them.
+	 */
+	private void findCavity(final int start, final int p) {
+		ncavity = 0;
+		nboundary = 0;
+		int top = 0;
+		stack[top++] = start;
+		marks[start] = insertion;
+		while (top > 0) {
+			final int t = stack[--top];
+			if (ncavity == cavity.length) {
+				cavity = Arrays.copyOf(cavity, 2 * ncavity);
+			}
+			cavity[ncavity++] = t;
+			for (int i = 0; i < 4; i++) {
+				final int nb = tn[4 * t + i];
+				if (marks[nb] == insertion) {
+					continue;
+				}
+				if (marks[nb] != -insertion && inConflict(nb, p)) {
+					marks[nb] = insertion;
+					if (top == stack.length) {
+						stack = Arrays.copyOf(stack, 2 * top);
+					}
+					stack[top++] = nb;
+				} else {
+					marks[nb] = -insertion;
+					addBoundaryFace(t, i, nb, p);
+				}
+			}
+		}
+	}
+
+	private void addBoundaryFace(final int t, final int i, final int nb, final int p) {
+		if (nboundary == boundaryNeighbor.length) {
+			final int capacity = 2 * nboundary;
+			boundaryVertices = Arrays.copyOf(boundaryVertices, 4 * capacity);
+			boundaryNeighbor = Arrays.copyOf(boundaryNeighbor, capacity);
+			boundaryBackFace = Arrays.copyOf(boundaryBackFace, capacity);
+			boundaryFace = Arrays.copyOf(boundaryFace, capacity);
+		}
+		for (int j = 0; j < 4; j++) {
+			boundaryVertices[4 * nboundary + j] = j == i ? p : tv[4 * t + j];
+			if (tn[4 * nb + j] == t) {
+				boundaryBackFace[nboundary] = j;
+			}
+		}
+		boundaryNeighbor[nboundary] = nb;
+		boundaryFace[nboundary] = i;
+		nboundary++;
+	}
+
+	private void ensureFaceTable(final int faces) {
+		if (faceKeys.length < 2 * faces) {
+			int size = faceKeys.length;
+			while (size < 2 * faces) {
+				size *= 2;
+			}
+			faceKeys = new long[size];
+			faceValues = new int[size];
+			faceMarks = new int[size];
+		}
+	}
+
+	/**
+	 * Pair face f of new tetrahedron t, which contains p at position i, with
+	 * the other new tetrahedron sharing it. Both faces are identified by the
+	 * edge opposite p.
+	 */
+	private void linkFace(final int t, final int f, final int i) {
+		int u = -1, v = -1;
+		for (int j = 0; j < 4; j++) {
+			if (j != f && j != i) {
+				if (u == -1) {
+					u = tv[4 * t + j];
+				} else {
+					v = tv[4 * t + j];
+				}
+			}
+		}
+		// the infinite vertex is -1, shift to keep keys non-negative
+		final long key = edgeKey(u + 1, v + 1);
+		final int mask = faceKeys.length - 1;
+		int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 32) & mask;
+		while (faceMarks[slot] == insertion) {
+			if (faceKeys[slot] == key) {
+				final int other = faceValues[slot];
+				tn[4 * t + f] = other >>> 2;
+				tn[other] = t;
+				return;
+			}
+			slot = slot + 1 & mask;
+		}
+		faceMarks[slot] = insertion;
+		faceKeys[slot] = key;
+		faceValues[slot] = 4 * t + f;
+	}
+}
@@ -0,0 +1,555 @@
+/*
+ * This file is part of HE_Mesh, a library for creating and manipulating meshes.
+ * It is dedicated to the public domain. To the extent possible under law,
+ * I , Frederik Vanhoutte, have waived all copyright and related or neighboring
+ * rights.
+ *
+ * This work is published from Belgium. (http://creativecommons.org/publicdomain/zero/1.0/)
+ *
+ */
+
+package wblut.geom;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+import wblut.core.WB_ParallelExecutor;
+import wblut.core.WB_ParallelExecutor.WB_RangeAction;
+
+/**
+ * Static KD-tree over a fixed set of 3D points, an alternative for WB_KDTree
+ * when all points are known in advance. The tree is built top-down by median
+ * partitioning along the axis of largest extent, large subtrees are built in
+ * parallel. The tree is balanced and implicit: node i has children 2i+1 and
+ * 2i+2 and covers a fixed range of the points, so only the split axis and
+ * value are stored per node. The points are copied in tree order.
+ *
+ * Queries return the index of the points in the original input. They don't
+ * allocate and write their results into arrays owned by the caller. Batch
+ * queries run across cores through WB_ParallelExecutor.
+ */
+public class WB_KDTreeStatic {
+	private static final int DEFAULT_LEAF_SIZE = 8;
+	private static final int PARALLEL_BUILD = 8192;
+	private final int n;
+	private final int leafSize;
+	/** Coordinates in tree order, 3 per point. */
+	private final double[] points;
+	/** Original index of each point in tree order. */
+	private final int[] indices;
+	/** Split axis per node, -1 for a leaf. */
+	private final byte[] splitAxis;
+	private final double[] splitValue;
+
+	/**
+	 *
+	 *
+	 * @param coords
+	 *            x, y and z of each point, 3n values
+	 */
+	public WB_KDTreeStatic(final double[] coords) {
+		this(coords, DEFAULT_LEAF_SIZE);
+	}
+
+	/**
+	 *
+	 *
+	 * @param coords
+	 *            x, y and z of each point, 3n values
+	 * @param leafSize
+	 *            maximum number of points in a leaf
+	 */
+	public WB_KDTreeStatic(final double[] coords, final int leafSize) {
+		n = coords.length / 3;
+		this.leafSize = Math.max(1, leafSize);
+		int depth = 0;
+		for (int size = n; size > this.leafSize; size = size + 1 >>> 1) {
+			depth++;
+		}
+		final int numberOfNodes = (1 << depth + 1) - 1;
+		splitAxis = new byte[numberOfNodes];
+		splitValue = new double[numberOfNodes];
+		indices = new int[n];
+		for (int i = 0; i < n; i++) {
+			indices[i] = i;
+		}
+		if (n > 0) {
+			WB_ParallelExecutor.instance().invoke(new BuildTask(0, 0, n, coords));
+		}
+		points = new double[3 * n];
+		WB_ParallelExecutor.instance().forRange(0, n, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				for (int i = start; i < end; i++) {
+					points[3 * i] = coords[3 * indices[i]];
+					points[3 * i + 1] = coords[3 * indices[i] + 1];
+					points[3 * i + 2] = coords[3 * indices[i] + 2];
+				}
+			}
+		});
+	}
+
+	/**
+	 *
+	 *
+	 * @param points
+	 */
+	public WB_KDTreeStatic(final List<? extends WB_Coord> points) {
+		this(toArray(points.toArray(new WB_Coord[points.size()])), DEFAULT_LEAF_SIZE);
+	}
+
+	/**
+	 *
+	 *
+	 * @param points
+	 */
+	public WB_KDTreeStatic(final WB_Coord[] points) {
+		this(toArray(points), DEFAULT_LEAF_SIZE);
+	}
+
+	private static double[] toArray(final WB_Coord[] points) {
+		final double[] coords = new double[3 * points.length];
+		for (int i = 0; i < points.length; i++) {
+			coords[3 * i] = points[i].xd();
+			coords[3 * i + 1] = points[i].yd();
+			coords[3 * i + 2] = points[i].zd();
+		}
+		return coords;
+	}
+
+	/**
+	 *
+	 *
+	 * @return number of points
+	 */
+	public int size() {
+		return n;
+	}
+
+	private class BuildTask extends RecursiveAction {
+		private static final long serialVersionUID = 4305437287930522785L;
+		final int node;
+		final int start;
+		final int end;
+		final double[] coords;
+
+		BuildTask(final int node, final int start, final int end, final double[] coords) {
+			this.node = node;
+			this.start = start;
+			this.end = end;
+			this.coords = coords;
+		}
+
+		@Override
+		protected void compute() {
+			build(node, start, end);
+		}
+
+		private void build(final int node, final int start, final int end) {
+			if (end - start <= leafSize) {
+				splitAxis[node] = -1;
+				return;
+			}
+			double minx = Double.POSITIVE_INFINITY, miny = Double.POSITIVE_INFINITY, minz = Double.POSITIVE_INFINITY;
+			double maxx = Double.NEGATIVE_INFINITY, maxy = Double.NEGATIVE_INFINITY, maxz = Double.NEGATIVE_INFINITY;
+			int p;
+			for (int i = start; i < end; i++) {
+				p = 3 * indices[i];
+				minx = Math.min(minx, coords[p]);
+				maxx = Math.max(maxx, coords[p]);
+				miny = Math.min(miny, coords[p + 1]);
+				maxy = Math.max(maxy, coords[p + 1]);
+				minz = Math.min(minz, coords[p + 2]);
+				maxz = Math.max(maxz, coords[p + 2]);
+			}
+			final int axis = maxx - minx >= maxy - miny ? maxx - minx >= maxz - minz ? 0 : 2
+					: maxy - miny >= maxz - minz ? 1 : 2;
+			final int mid = start + end >>> 1;
+			select(start, end, mid, axis);
+			splitAxis[node] = (byte) axis;
+			splitValue[node] = coords[3 * indices[mid] + axis];
+			if (end - start > PARALLEL_BUILD && WB_ParallelExecutor.instance().isParallel()) {
+				invokeAll(new BuildTask(2 * node + 1, start, mid, coords),
+						new BuildTask(2 * node + 2, mid, end, coords));
+			} else {
+				build(2 * node + 1, start, mid);
+				build(2 * node + 2, mid, end);
+			}
+		}
+
+		/**
+		 * Partially sort indices[start..end) so that the k-th point along the
+		 * axis is in place, with no larger points before it and no smaller
+		 * points after it.
+		 */
+		private void select(int start, int end, final int k, final int axis) {
+			int i, j, tmp;
+			double pivot;
+			while (end - start > 1) {
+				pivot = median(coords[3 * indices[start] + axis], coords[3 * indices[start + end >>> 1] + axis],
+						coords[3 * indices[end - 1] + axis]);
+				i = start;
+				j = end - 1;
+				while (i <= j) {
+					while (coords[3 * indices[i] + axis] < pivot) {
+						i++;
+					}
+					while (coords[3 * indices[j] + axis] > pivot) {
+						j--;
+					}
+					if (i <= j) {
+						tmp = indices[i];
+						indices[i] = indices[j];
+						indices[j] = tmp;
+						i++;
+						j--;
+					}
+				}
+				if (k <= j) {
+					end = j + 1;
+				} else if (k >= i) {
+					start = i;
+				} else {
+					return;
+				}
+			}
+		}
+
+		private double median(final double a, final double b, final double c) {
+			return a < b ? b < c ? b : a < c ? c : a : a < c ? a : b < c ? c : b;
+		}
+	}
+
+	private double d2(final int i, final double x, final double y, final double z) {
+		final double dx = points[3 * i] - x;
+		final double dy = points[3 * i + 1] - y;
+		final double dz = points[3 * i + 2] - z;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	private double coordinate(final int axis, final double x, final double y, final double z) {
+		return axis == 0 ? x : axis == 1 ? y : z;
+	}
+
+	/**
+	 * Index of the point nearest to (x,y,z).
+	 *
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return index of the point in the input, -1 if the tree is empty
+	 */
+	public int getNearestNeighbor(final double x, final double y, final double z) {
+		return n == 0 ? -1 : indices[nearest(0, 0, n, x, y, z, -1)];
+	}
+
+	/**
+	 *
+	 *
+	 * @param p
+	 * @return index of the point nearest to p, -1 if the tree is empty
+	 */
+	public int getNearestNeighbor(final WB_Coord p) {
+		return getNearestNeighbor(p.xd(), p.yd(), p.zd());
+	}
+
+	/**
+	 * Search a subtree for a point nearer than best, positions in tree order.
+	 */
+	private int nearest(final int node, final int start, final int end, final double x, final double y,
+			final double z, int best) {
+		if (splitAxis[node] < 0) {
+			double bestd2 = best < 0 ? Double.POSITIVE_INFINITY : d2(best, x, y, z);
+			double d2;
+			for (int i = start; i < end; i++) {
+				d2 = d2(i, x, y, z);
+				if (d2 < bestd2) {
+					bestd2 = d2;
+					best = i;
+				}
+			}
+			return best;
+		}
+		final int mid = start + end >>> 1;
+		final double diff = coordinate(splitAxis[node], x, y, z) - splitValue[node];
+		if (diff < 0) {
+			best = nearest(2 * node + 1, start, mid, x, y, z, best);
+			if (diff * diff < d2(best, x, y, z)) {
+				best = nearest(2 * node + 2, mid, end, x, y, z, best);
+			}
+		} else {
+			best = nearest(2 * node + 2, mid, end, x, y, z, best);
+			if (diff * diff < d2(best, x, y, z)) {
+				best = nearest(2 * node + 1, start, mid, x, y, z, best);
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * The k points nearest to (x,y,z), nearest first.
+	 *
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @param k
+	 * @param result
+	 *            receives the indices of the points in result[offset] to
+	 *            result[offset+k-1], -1 if there are less than k points
+	 * @param d2
+	 *            receives the squared distances, infinite if there are less
+	 *            than k points
+	 * @param offset
+	 * @return number of points found, min(k, size())
+	 */
+	public int getNearestNeighbors(final double x, final double y, final double z, final int k, final int[] result,
+			final double[] d2, final int offset) {
+		int count = n == 0 || k <= 0 ? 0 : nearest(0, 0, n, x, y, z, k, result, d2, offset, 0);
+		// heapsort the max-heap, nearest first
+		int tmp;
+		double tmpd;
+		for (int last = count - 1; last > 0; last--) {
+			tmp = result[offset];
+			result[offset] = result[offset + last];
+			result[offset + last] = tmp;
+			tmpd = d2[offset];
+			d2[offset] = d2[offset + last];
+			d2[offset + last] = tmpd;
+			siftDown(result, d2, offset, 0, last);
+		}
+		for (int i = 0; i < count; i++) {
+			result[offset + i] = indices[result[offset + i]];
+		}
+		for (int i = count; i < k; i++) {
+			result[offset + i] = -1;
+			d2[offset + i] = Double.POSITIVE_INFINITY;
+		}
+		return count;
+	}
+
+	/**
+	 *
+	 *
+	 * @param p
+	 * @param k
+	 * @param result
+	 * @param d2
+	 * @return number of points found, min(k, size())
+	 */
+	public int getNearestNeighbors(final WB_Coord p, final int k, final int[] result, final double[] d2) {
+		return getNearestNeighbors(p.xd(), p.yd(), p.zd(), k, result, d2, 0);
+	}
+
+	/**
+	 * Search a subtree for the k nearest points, kept as a max-heap of tree
+	 * positions in result/d2.
+	 */
+	private int nearest(final int node, final int start, final int end, final double x, final double y,
+			final double z, final int k, final int[] heap, final double[] heapd2, final int offset, int count) {
+		if (splitAxis[node] < 0) {
+			double d2;
+			for (int i = start; i < end; i++) {
+				d2 = d2(i, x, y, z);
+				if (count < k) {
+					// sift up
+					int c = count++;
+					int parent;
+					while (c > 0 && heapd2[offset + (parent = c - 1 >> 1)] < d2) {
+						heap[offset + c] = heap[offset + parent];
+						heapd2[offset + c] = heapd2[offset + parent];
+						c = parent;
+					}
+					heap[offset + c] = i;
+					heapd2[offset + c] = d2;
+				} else if (d2 < heapd2[offset]) {
+					heap[offset] = i;
+					heapd2[offset] = d2;
+					siftDown(heap, heapd2, offset, 0, count);
+				}
+			}
+			return count;
+		}
+		final int mid = start + end >>> 1;
+		final double diff = coordinate(splitAxis[node], x, y, z) - splitValue[node];
+		final boolean left = diff < 0;
+		count = nearest(left ? 2 * node + 1 : 2 * node + 2, left ? start : mid, left ? mid : end, x, y, z, k, heap,
+				heapd2, offset, count);
+		if (count < k || diff * diff < heapd2[offset]) {
+			count = nearest(left ? 2 * node + 2 : 2 * node + 1, left ? mid : start, left ? end : mid, x, y, z, k,
+					heap, heapd2, offset, count);
+		}
+		return count;
+	}
+
+	private static void siftDown(final int[] heap, final double[] heapd2, final int offset, int c, final int size) {
+		final int item = heap[offset + c];
+		final double itemd2 = heapd2[offset + c];
+		int child;
+		while ((child = 2 * c + 1) < size) {
+			if (child + 1 < size && heapd2[offset + child + 1] > heapd2[offset + child]) {
+				child++;
+			}
+			if (heapd2[offset + child] <= itemd2) {
+				break;
+			}
+			heap[offset + c] = heap[offset + child];
+			heapd2[offset + c] = heapd2[offset + child];
+			c = child;
+		}
+		heap[offset + c] = item;
+		heapd2[offset + c] = itemd2;
+	}
+
+	/**
+	 * Points within a distance of (x,y,z), in no particular order.
+	 *
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @param radius
+	 * @param result
+	 *            receives the indices of the points, null to only count them.
+	 *            If there are more points than fit, the array is filled and the
+	 *            total number is returned.
+	 * @return number of points within the distance
+	 */
+	public int getRange(final double x, final double y, final double z, final double radius, final int[] result) {
+		return n == 0 ? 0 : range(0, 0, n, x, y, z, radius * radius, result, 0, result == null ? 0 : result.length, 0);
+	}
+
+	/**
+	 *
+	 *
+	 * @param p
+	 * @param radius
+	 * @param result
+	 * @return number of points within the distance
+	 */
+	public int getRange(final WB_Coord p, final double radius, final int[] result) {
+		return getRange(p.xd(), p.yd(), p.zd(), radius, result);
+	}
+
+	private int range(final int node, final int start, final int end, final double x, final double y,
+			final double z, final double r2, final int[] result, final int offset, final int capacity, int count) {
+		if (splitAxis[node] < 0) {
+			for (int i = start; i < end; i++) {
+				if (d2(i, x, y, z) <= r2) {
+					if (count < capacity) {
+						result[offset + count] = indices[i];
+					}
+					count++;
+				}
+			}
+			return count;
+		}
+		final int mid = start + end >>> 1;
+		final double diff = coordinate(splitAxis[node], x, y, z) - splitValue[node];
+		if (diff <= 0 || diff * diff <= r2) {
+			count = range(2 * node + 1, start, mid, x, y, z, r2, result, offset, capacity, count);
+		}
+		if (diff >= 0 || diff * diff <= r2) {
+			count = range(2 * node + 2, mid, end, x, y, z, r2, result, offset, capacity, count);
+		}
+		return count;
+	}
+
+	/**
+	 * Nearest point for each of a batch of query points, in parallel.
+	 *
+	 * @param queries
+	 *            x, y and z of each query, 3q values
+	 * @param result
+	 *            receives the index of the nearest point for each query, at
+	 *            least q values
+	 */
+	public void getNearestNeighbors(final double[] queries, final int[] result) {
+		WB_ParallelExecutor.instance().forRange(0, queries.length / 3, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				for (int q = start; q < end; q++) {
+					result[q] = getNearestNeighbor(queries[3 * q], queries[3 * q + 1], queries[3 * q + 2]);
+				}
+			}
+		});
+	}
+
+	/**
+	 * The k nearest points for each of a batch of query points, in parallel.
+	 *
+	 * @param queries
+	 *            x, y and z of each query, 3q values
+	 * @param k
+	 * @param result
+	 *            receives the indices of the k nearest points of query i,
+	 *            nearest first, in result[k*i] to result[k*i+k-1], at least k*q
+	 *            values. -1 if there are less than k points.
+	 * @param d2
+	 *            receives the squared distances, at least k*q values, or null
+	 */
+	public void getNearestNeighbors(final double[] queries, final int k, final int[] result, final double[] d2) {
+		WB_ParallelExecutor.instance().forRange(0, queries.length / 3, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				if (d2 != null) {
+					for (int q = start; q < end; q++) {
+						getNearestNeighbors(queries[3 * q], queries[3 * q + 1], queries[3 * q + 2], k, result, d2,
+								k * q);
+					}
+				} else {
+					// one scratch buffer per range, not per query
+					final int[] indices = new int[k];
+					final double[] distances = new double[k];
+					for (int q = start; q < end; q++) {
+						getNearestNeighbors(queries[3 * q], queries[3 * q + 1], queries[3 * q + 2], k, indices,
+								distances, 0);
+						System.arraycopy(indices, 0, result, k * q, k);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * The points within a distance of each of a batch of query points, in
+	 * parallel. The points near query i are result[offsets[i]] to
+	 * result[offsets[i+1]-1].
+	 *
+	 * @param queries
+	 *            x, y and z of each query, 3q values
+	 * @param radius
+	 * @param offsets
+	 *            receives the start of the points of each query, at least q+1
+	 *            values
+	 * @return indices of the points near each query
+	 */
+	public int[] getRange(final double[] queries, final double radius, final int[] offsets) {
+		final int nq = queries.length / 3;
+		final WB_ParallelExecutor executor = WB_ParallelExecutor.instance();
+		executor.forRange(0, nq, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				for (int q = start; q < end; q++) {
+					offsets[q + 1] = getRange(queries[3 * q], queries[3 * q + 1], queries[3 * q + 2], radius, null);
+				}
+			}
+		});
+		offsets[0] = 0;
+		for (int q = 0; q < nq; q++) {
+			offsets[q + 1] += offsets[q];
+		}
+		final int[] result = new int[offsets[nq]];
+		if (n > 0) {
+			final double r2 = radius * radius;
+			executor.forRange(0, nq, new WB_RangeAction() {
+				@Override
+				public void run(final int start, final int end) {
+					for (int q = start; q < end; q++) {
+						range(0, 0, n, queries[3 * q], queries[3 * q + 1], queries[3 * q + 2], r2, result, offsets[q],
+								offsets[q + 1] - offsets[q], 0);
+					}
+				}
+			});
+		}
+		return result;
+	}
+}
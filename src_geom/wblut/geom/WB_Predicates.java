@@ -1,17 +1,31 @@
-
 package wblut.geom;
 
-import wblut.math.WB_DoubleDouble;
-
+/**
+ * Geometric predicates. orient2D, inCircle2D, orient3D and inSphere3D are
+ * exact: a floating-point filter decides the easy cases, the rest is evaluated
+ * with Shewchuk's expansion arithmetic. Expansions drop their zero components,
+ * so they stay short for inputs with few significant bits, like grids. The
+ * exact evaluation uses a per-thread workspace and doesn't allocate.
+ */
 public class WB_Predicates {
 	public WB_Predicates() {
 
 	}
 
-	private static double orientErrorBound = -1;
-	private static double insphereErrorBound = -1;
-	private static double orientErrorBound2D = -1;
-	private static double incircleErrorBound2D = -1;
+	/** Half the machine epsilon, 2^-53. */
+	private static final double epsilon = findMachEpsilon();
+	/** Splits a double in two halves with half the precision, 2^27+1. */
+	private static final double splitter = (1L << (1 - Math.getExponent(epsilon)) / 2) + 1.0;
+	private static final double orientErrorBound = (7.0 + 56.0 * epsilon) * epsilon;
+	private static final double insphereErrorBound = (16.0 + 224.0 * epsilon) * epsilon;
+	private static final double orientErrorBound2D = (3.0 + 16.0 * epsilon) * epsilon;
+	private static final double incircleErrorBound2D = (10.0 + 96.0 * epsilon) * epsilon;
+	private static final ThreadLocal<Expansions> workspace = new ThreadLocal<Expansions>() {
+		@Override
+		protected Expansions initialValue() {
+			return new Expansions();
+		}
+	};
 
 	private static double findMachEpsilon() {
 		double epsilon, check, lastcheck;
@@ -25,17 +39,6 @@ public class WB_Predicates {
 		return epsilon;
 	}
 
-	/**
-	 *
-	 */
-	private static void init() {
-		final double epsilon = findMachEpsilon();
-		orientErrorBound = (7.0 + 56.0 * epsilon) * epsilon;
-		insphereErrorBound = (16.0 + 224.0 * epsilon) * epsilon;
-		orientErrorBound2D = (3.0 + 16.0 * epsilon) * epsilon;
-		incircleErrorBound2D = (10.0 + 96.0 * epsilon) * epsilon;
-	}
-
 	// >0 if pa,pb,pc ccw
 	// <0 if pa,pb,pc cw
 	// =0 if colinear
@@ -48,13 +51,26 @@ public class WB_Predicates {
 	 * @return
 	 */
 	public static double orient2D(final WB_Coord pa, final WB_Coord pb, final WB_Coord pc) {
-		if (orientErrorBound2D == -1) {
-			init();
-		}
+		return orient2D(pa.xd(), pa.yd(), pb.xd(), pb.yd(), pc.xd(), pc.yd());
+	}
+
+	/**
+	 *
+	 *
+	 * @param ax
+	 * @param ay
+	 * @param bx
+	 * @param by
+	 * @param cx
+	 * @param cy
+	 * @return 1, 0 or -1
+	 */
+	public static double orient2D(final double ax, final double ay, final double bx, final double by,
+			final double cx, final double cy) {
 		double detleft, detright, det;
 		double detsum, errbound;
-		detleft = (pa.xd() - pc.xd()) * (pb.yd() - pc.yd());
-		detright = (pa.yd() - pc.yd()) * (pb.xd() - pc.xd());
+		detleft = (ax - cx) * (by - cy);
+		detright = (ay - cy) * (bx - cx);
 		det = detleft - detright;
 		if (detleft > 0.0) {
 			if (detright <= 0.0) {
@@ -75,65 +91,51 @@ public class WB_Predicates {
 		if (det >= errbound || -det >= errbound) {
 			return Math.signum(det);
 		}
-		return orientDD2D(pa, pb, pc);
+		return workspace.get().orient2D(ax, ay, bx, by, cx, cy);
 	}
 
+	// >0 if pd inside circle through pa,pb,pc (if ccw)
+	// <0 if pd outside circle through pa,pb,pc (if ccw)
+	// =0 if on circle
 	/**
 	 *
 	 *
 	 * @param pa
 	 * @param pb
 	 * @param pc
+	 * @param pd
 	 * @return
 	 */
-	private static double orientDD2D(final WB_Coord pa, final WB_Coord pb, final WB_Coord pc) {
-		WB_DoubleDouble ax, ay, bx, by, cx, cy;
-		WB_DoubleDouble acx, bcx, acy, bcy;
-		WB_DoubleDouble detleft, detright, det;
-		det = WB_DoubleDouble.valueOf(0.0);
-		ax = WB_DoubleDouble.valueOf(pa.xd());
-		ay = WB_DoubleDouble.valueOf(pa.yd());
-		bx = WB_DoubleDouble.valueOf(pb.xd());
-		by = WB_DoubleDouble.valueOf(pb.yd());
-		cx = WB_DoubleDouble.valueOf(pc.xd());
-		cy = WB_DoubleDouble.valueOf(pc.yd());
-		acx = ax.add(cx.negate());
-		bcx = bx.add(cx.negate());
-		acy = ay.add(cy.negate());
-		bcy = by.add(cy.negate());
-		detleft = acx.multiply(bcy);
-		detright = acy.multiply(bcx);
-		det = detleft.add(detright.negate());
-		return det.compareTo(WB_DoubleDouble.ZERO);
+	public static double inCircle2D(final WB_Coord pa, final WB_Coord pb, final WB_Coord pc, final WB_Coord pd) {
+		return inCircle2D(pa.xd(), pa.yd(), pb.xd(), pb.yd(), pc.xd(), pc.yd(), pd.xd(), pd.yd());
 	}
 
-	// >0 if pd inside circle through pa,pb,pc (if ccw)
-	// <0 if pd outside circle through pa,pb,pc (if ccw)
-	// =0 if on circle
 	/**
 	 *
 	 *
-	 * @param pa
-	 * @param pb
-	 * @param pc
-	 * @param pd
-	 * @return
+	 * @param ax
+	 * @param ay
+	 * @param bx
+	 * @param by
+	 * @param cx
+	 * @param cy
+	 * @param dx
+	 * @param dy
+	 * @return 1, 0 or -1
 	 */
-	public static double inCircle2D(final WB_Coord pa, final WB_Coord pb, final WB_Coord pc, final WB_Coord pd) {
-		if (incircleErrorBound2D == -1) {
-			init();
-		}
+	public static double inCircle2D(final double ax, final double ay, final double bx, final double by,
+			final double cx, final double cy, final double dx, final double dy) {
 		double adx, ady, bdx, bdy, cdx, cdy;
 		double bdxcdy, cdxbdy, cdxady, adxcdy, adxbdy, bdxady;
 		double alift, blift, clift;
 		double det;
 		double permanent, errbound;
-		adx = pa.xd() - pd.xd();
-		bdx = pb.xd() - pd.xd();
-		cdx = pc.xd() - pd.xd();
-		ady = pa.yd() - pd.yd();
-		bdy = pb.yd() - pd.yd();
-		cdy = pc.yd() - pd.yd();
+		adx = ax - dx;
+		bdx = bx - dx;
+		cdx = cx - dx;
+		ady = ay - dy;
+		bdy = by - dy;
+		cdy = cy - dy;
 		bdxcdy = bdx * cdy;
 		cdxbdy = cdx * bdy;
 		alift = adx * adx + ady * ady;
@@ -167,11 +169,13 @@ public class WB_Predicates {
 		if (det > errbound || -det > errbound) {
 			return Math.signum(det);
 		}
-		return incircleDD2D(pa, pb, pc, pd);
+		return workspace.get().inCircle2D(ax, ay, bx, by, cx, cy, dx, dy);
 	}
 
+	// >0 if pd below plane defined by pa,pb,pc
+	// <0 if above (pa,pb,pc are ccw viewed from above)
+	// = 0 if on plane
 	/**
-	 *
 	 *
 	 * @param pa
 	 * @param pb
@@ -179,69 +183,34 @@ public class WB_Predicates {
 	 * @param pd
 	 * @return
 	 */
-	private static double incircleDD2D(final WB_Coord pa, final WB_Coord pb, final WB_Coord pc, final WB_Coord pd) {
-		WB_DoubleDouble ax, ay, bx, by, cx, cy, dx, dy;
-		WB_DoubleDouble adx, ady, bdx, bdy, cdx, cdy;
-		WB_DoubleDouble bdxcdy, cdxbdy, cdxady, adxcdy, adxbdy, bdxady;
-		WB_DoubleDouble alift, blift, clift;
-		WB_DoubleDouble det;
-		det = WB_DoubleDouble.valueOf(0.0);
-		ax = WB_DoubleDouble.valueOf(pa.xd());
-		ay = WB_DoubleDouble.valueOf(pa.yd());
-		bx = WB_DoubleDouble.valueOf(pb.xd());
-		by = WB_DoubleDouble.valueOf(pb.yd());
-		cx = WB_DoubleDouble.valueOf(pc.xd());
-		cy = WB_DoubleDouble.valueOf(pc.yd());
-		dx = WB_DoubleDouble.valueOf(pd.xd());
-		dy = WB_DoubleDouble.valueOf(pd.yd());
-		dx = dx.negate();
-		dy = dy.negate();
-		adx = ax.add(dx);
-		bdx = bx.add(dx);
-		cdx = cx.add(dx);
-		ady = ay.add(dy);
-		bdy = by.add(dy);
-		cdy = cy.add(dy);
-		bdxcdy = bdx.multiply(cdy);
-		cdxbdy = cdx.multiply(bdy);
-		cdxady = cdx.multiply(ady);
-		adxcdy = adx.multiply(cdy);
-		adxbdy = adx.multiply(bdy);
-		bdxady = bdx.multiply(ady);
-		adx = adx.multiply(adx);
-		ady = ady.multiply(ady);
-		alift = adx.add(ady);
-		bdx = bdx.multiply(bdx);
-		bdy = bdy.multiply(bdy);
-		blift = bdx.add(bdy);
-		cdx = cdx.multiply(cdx);
-		cdy = cdy.multiply(cdy);
-		clift = cdx.add(cdy);
-		alift = alift.multiply(bdxcdy.add(cdxbdy.negate()));
-		blift = blift.multiply(cdxady.add(adxcdy.negate()));
-		clift = clift.multiply(adxbdy.add(bdxady.negate()));
-		det = alift.add(blift).add(clift);
-		return det.compareTo(WB_DoubleDouble.ZERO);
+	public static double orient3D(final WB_Coord pa, final WB_Coord pb, final WB_Coord pc, final WB_Coord pd) {
+		return orient3D(pa.xd(), pa.yd(), pa.zd(), pb.xd(), pb.yd(), pb.zd(), pc.xd(), pc.yd(), pc.zd(), pd.xd(),
+				pd.yd(), pd.zd());
 	}
 
-	// >0 if pd below plane defined by pa,pb,pc
-	// <0 if above (pa,pb,pc are ccw viewed from above)
-	// = 0 if on plane
 	/**
 	 *
-	 * @param pa
-	 * @param pb
-	 * @param pc
-	 * @param pd
-	 * @return
+	 *
+	 * @param ax
+	 * @param ay
+	 * @param az
+	 * @param bx
+	 * @param by
+	 * @param bz
+	 * @param cx
+	 * @param cy
+	 * @param cz
+	 * @param dx
+	 * @param dy
+	 * @param dz
+	 * @return 1, 0 or -1
 	 */
-	public static double orient3D(final WB_Coord pa, final WB_Coord pb, final WB_Coord pc, final WB_Coord pd) {
-		if (orientErrorBound == -1) {
-			init();
-		}
-		final double adx = pa.xd() - pd.xd(), bdx = pb.xd() - pd.xd(), cdx = pc.xd() - pd.xd();
-		final double ady = pa.yd() - pd.yd(), bdy = pb.yd() - pd.yd(), cdy = pc.yd() - pd.yd();
-		double adz = pa.zd() - pd.zd(), bdz = pb.zd() - pd.zd(), cdz = pc.zd() - pd.zd();
+	public static double orient3D(final double ax, final double ay, final double az, final double bx,
+			final double by, final double bz, final double cx, final double cy, final double cz, final double dx,
+			final double dy, final double dz) {
+		final double adx = ax - dx, bdx = bx - dx, cdx = cx - dx;
+		final double ady = ay - dy, bdy = by - dy, cdy = cy - dy;
+		double adz = az - dz, bdz = bz - dz, cdz = cz - dz;
 		double adxbdy = adx * bdy;
 		double adybdx = ady * bdx;
 		double adxcdy = adx * cdy;
@@ -281,47 +250,10 @@ public class WB_Predicates {
 		}
 		double errbound = (adxbdy + adybdx) * cdz + (adxcdy + adycdx) * bdz + (bdxcdy + bdycdx) * adz;
 		errbound *= orientErrorBound;
-		if (det >= errbound) {
-			return det > 0 ? 1 : det == 0 ? 0 : -1;
-		} else if (-det >= errbound) {
-			return det > 0 ? 1 : det == 0 ? 0 : -1;
-		} else {
-			return orientDD3D(pa, pb, pc, pd);
+		if (det > errbound || -det > errbound) {
+			return det > 0 ? 1 : -1;
 		}
-	}
-
-	private static double orientDD3D(final WB_Coord pa, final WB_Coord pb, final WB_Coord pc, final WB_Coord pd) {
-		WB_DoubleDouble ax, ay, az, bx, by, bz, cx, cy, cz, dx, dy, dz;
-		WB_DoubleDouble adx, bdx, cdx, ady, bdy, cdy, adz, bdz, cdz;
-		WB_DoubleDouble m1, m2, m3;
-		WB_DoubleDouble det;
-		det = WB_DoubleDouble.ZERO;
-		ax = new WB_DoubleDouble(pa.xd());
-		ay = new WB_DoubleDouble(pa.yd());
-		az = new WB_DoubleDouble(pa.zd());
-		bx = new WB_DoubleDouble(pb.xd());
-		by = new WB_DoubleDouble(pb.yd());
-		bz = new WB_DoubleDouble(pb.zd());
-		cx = new WB_DoubleDouble(pc.xd());
-		cy = new WB_DoubleDouble(pc.yd());
-		cz = new WB_DoubleDouble(pc.zd());
-		dx = new WB_DoubleDouble(pd.xd()).negate();
-		dy = new WB_DoubleDouble(pd.yd()).negate();
-		dz = new WB_DoubleDouble(pd.zd()).negate();
-		adx = ax.add(dx);
-		bdx = bx.add(dx);
-		cdx = cx.add(dx);
-		ady = ay.add(dy);
-		bdy = by.add(dy);
-		cdy = cy.add(dy);
-		adz = az.add(dz);
-		bdz = bz.add(dz);
-		cdz = cz.add(dz);
-		m1 = adx.multiply(bdy).subtract(ady.multiply(bdx));
-		m2 = adx.multiply(cdy).subtract(ady.multiply(cdx));
-		m3 = bdx.multiply(cdy).subtract(bdy.multiply(cdx));
-		det = m1.multiply(cdz).add(m3.multiply(adz)).subtract(m2.multiply(bdz));
-		return det.compareTo(WB_DoubleDouble.ZERO);
+		return workspace.get().orient3D(ax, ay, az, bx, by, bz, cx, cy, cz, dx, dy, dz);
 	}
 
 	// >0 if pe inside sphere through pa,pb,pc,pd (if orient3d(pa,pb,pc,pd)>0))
@@ -338,9 +270,33 @@ public class WB_Predicates {
 	 */
 	public static double inSphere3D(final WB_Coord pa, final WB_Coord pb, final WB_Coord pc, final WB_Coord pd,
 			final WB_Coord pe) {
-		if (insphereErrorBound == -1) {
-			init();
-		}
+		return inSphere3D(pa.xd(), pa.yd(), pa.zd(), pb.xd(), pb.yd(), pb.zd(), pc.xd(), pc.yd(), pc.zd(), pd.xd(),
+				pd.yd(), pd.zd(), pe.xd(), pe.yd(), pe.zd());
+	}
+
+	/**
+	 *
+	 *
+	 * @param ax
+	 * @param ay
+	 * @param az
+	 * @param bx
+	 * @param by
+	 * @param bz
+	 * @param cx
+	 * @param cy
+	 * @param cz
+	 * @param dx
+	 * @param dy
+	 * @param dz
+	 * @param ex
+	 * @param ey
+	 * @param ez
+	 * @return 1, 0 or -1
+	 */
+	public static double inSphere3D(final double ax, final double ay, final double az, final double bx,
+			final double by, final double bz, final double cx, final double cy, final double cz, final double dx,
+			final double dy, final double dz, final double ex, final double ey, final double ez) {
 		double aex, bex, cex, dex;
 		double aey, bey, cey, dey;
 		double aez, bez, cez, dez;
@@ -355,18 +311,18 @@ public class WB_Predicates {
 		double aexceyplus, cexaeyplus, bexdeyplus, dexbeyplus;
 		double det;
 		double permanent, errbound;
-		aex = pa.xd() - pe.xd();
-		bex = pb.xd() - pe.xd();
-		cex = pc.xd() - pe.xd();
-		dex = pd.xd() - pe.xd();
-		aey = pa.yd() - pe.yd();
-		bey = pb.yd() - pe.yd();
-		cey = pc.yd() - pe.yd();
-		dey = pd.yd() - pe.yd();
-		aez = pa.zd() - pe.zd();
-		bez = pb.zd() - pe.zd();
-		cez = pc.zd() - pe.zd();
-		dez = pd.zd() - pe.zd();
+		aex = ax - ex;
+		bex = bx - ex;
+		cex = cx - ex;
+		dex = dx - ex;
+		aey = ay - ey;
+		bey = by - ey;
+		cey = cy - ey;
+		dey = dy - ey;
+		aez = az - ez;
+		bez = bz - ez;
+		cez = cz - ez;
+		dez = dz - ez;
 		aexbey = aex * bey;
 		bexaey = bex * aey;
 		ab = aexbey - bexaey;
@@ -420,79 +376,385 @@ public class WB_Predicates {
 						+ (aexbeyplus + bexaeyplus) * cezplus) * dlift;
 		errbound = insphereErrorBound * permanent;
 		if (det > errbound || -det > errbound) {
-			return det > 0 ? 1 : det == 0 ? 0 : -1;
+			return det > 0 ? 1 : -1;
 		}
-		return insphereDD3D(pa, pb, pc, pd, pe);
+		return workspace.get().inSphere3D(ax, ay, az, bx, by, bz, cx, cy, cz, dx, dy, dz, ex, ey, ez);
 	}
 
-	private static double insphereDD3D(final WB_Coord pa, final WB_Coord pb, final WB_Coord pc, final WB_Coord pd,
-			final WB_Coord pe) {
-		WB_DoubleDouble ax, ay, az, bx, by, bz, cx, cy, cz, dx, dy, dz, ex, ey, ez;
-		WB_DoubleDouble aex, bex, cex, dex;
-		WB_DoubleDouble aey, bey, cey, dey;
-		WB_DoubleDouble aez, bez, cez, dez;
-		WB_DoubleDouble aexbey, bexaey, bexcey, cexbey, cexdey, dexcey, dexaey, aexdey;
-		WB_DoubleDouble aexcey, cexaey, bexdey, dexbey;
-		WB_DoubleDouble alift, blift, clift, dlift;
-		WB_DoubleDouble ab, bc, cd, da, ac, bd;
-		WB_DoubleDouble abc, bcd, cda, dab;
-		WB_DoubleDouble det;
-		det = WB_DoubleDouble.ZERO;
-		ax = new WB_DoubleDouble(pa.xd());
-		ay = new WB_DoubleDouble(pa.yd());
-		az = new WB_DoubleDouble(pa.zd());
-		bx = new WB_DoubleDouble(pb.xd());
-		by = new WB_DoubleDouble(pb.yd());
-		bz = new WB_DoubleDouble(pb.zd());
-		cx = new WB_DoubleDouble(pc.xd());
-		cy = new WB_DoubleDouble(pc.yd());
-		cz = new WB_DoubleDouble(pc.zd());
-		dx = new WB_DoubleDouble(pd.xd());
-		dy = new WB_DoubleDouble(pd.yd());
-		dz = new WB_DoubleDouble(pd.zd());
-		ex = new WB_DoubleDouble(pe.xd()).negate();
-		ey = new WB_DoubleDouble(pe.yd()).negate();
-		ez = new WB_DoubleDouble(pe.zd()).negate();
-		aex = ax.add(ex);
-		bex = bx.add(ex);
-		cex = cx.add(ex);
-		dex = dx.add(ex);
-		aey = ay.add(ey);
-		bey = by.add(ey);
-		cey = cy.add(ey);
-		dey = dy.add(ey);
-		aez = az.add(ez);
-		bez = bz.add(ez);
-		cez = cz.add(ez);
-		dez = dz.add(ez);
-		aexbey = aex.multiply(bey);
-		bexaey = bex.multiply(aey);
-		ab = aexbey.subtract(bexaey);
-		bexcey = bex.multiply(cey);
-		cexbey = cex.multiply(bey);
-		bc = bexcey.subtract(cexbey);
-		cexdey = cex.multiply(dey);
-		dexcey = dex.multiply(cey);
-		cd = cexdey.subtract(dexcey);
-		dexaey = dex.multiply(aey);
-		aexdey = aex.multiply(dey);
-		da = dexaey.subtract(aexdey);
-		aexcey = aex.multiply(cey);
-		cexaey = cex.multiply(aey);
-		ac = aexcey.subtract(cexaey);
-		bexdey = bex.multiply(dey);
-		dexbey = dex.multiply(bey);
-		bd = bexdey.subtract(dexbey);
-		abc = aez.multiply(bc).add(cez.multiply(ab)).subtract(bez.multiply(ac));
-		bcd = bez.multiply(cd).add(dez.multiply(bc)).subtract(cez.multiply(bd));
-		cda = cez.multiply(da).add(aez.multiply(cd)).subtract(dez.multiply(ac));
-		dab = dez.multiply(ab).add(bez.multiply(da)).subtract(aez.multiply(bd));
-		alift = aex.sqr().add(aey.sqr()).add(aez.sqr());
-		blift = bex.sqr().add(bey.sqr()).add(bez.sqr());
-		clift = cex.sqr().add(cey.sqr()).add(cez.sqr());
-		dlift = dex.sqr().add(dey.sqr()).add(dez.sqr());
-		det = dlift.multiply(abc).subtract(clift.multiply(dab)).add(blift.multiply(cda)).subtract(alift.multiply(bcd));
-		return det.compareTo(WB_DoubleDouble.ZERO);
+	/**
+	 * Exact evaluation of the predicates with Shewchuk's expansion arithmetic.
+	 * An expansion is a sum of non-overlapping doubles ordered by increasing
+	 * magnitude, its sign is the sign of the last component. Buffers are sized
+	 * for the longest expansions and reused, one instance per thread.
+	 */
+	private static class Expansions {
+		private final double[][] minors = new double[10][4];
+		private final double[] t8a = new double[8];
+		private final double[] t8b = new double[8];
+		private final double[] t16 = new double[16];
+		private final double[][] triples = new double[10][24];
+		private final double[] t48a = new double[48];
+		private final double[] t48b = new double[48];
+		private final double[] t96 = new double[96];
+		private final double[] t192 = new double[192];
+		private final double[] x384 = new double[384];
+		private final double[] y384 = new double[384];
+		private final double[] z384 = new double[384];
+		private final double[] xy768 = new double[768];
+		private final double[][] dets = new double[5][1152];
+		private final double[] ab2304 = new double[2304];
+		private final double[] cd2304 = new double[2304];
+		private final double[] cde3456 = new double[3456];
+		private final double[] det5760 = new double[5760];
+
+		/**
+		 * Roundoff error of x=a+b.
+		 */
+		private static double twoSumTail(final double a, final double b, final double x) {
+			final double bvirt = x - a;
+			final double avirt = x - bvirt;
+			return a - avirt + (b - bvirt);
+		}
+
+		/**
+		 * Roundoff error of x=a-b.
+		 */
+		private static double twoDiffTail(final double a, final double b, final double x) {
+			final double bvirt = a - x;
+			final double avirt = x + bvirt;
+			return a - avirt + (bvirt - b);
+		}
+
+		/**
+		 * Roundoff error of x=a*b, splitting both factors.
+		 */
+		private static double twoProductTail(final double a, final double b, final double x) {
+			double c = splitter * a;
+			final double ahi = c - (c - a);
+			final double alo = a - ahi;
+			c = splitter * b;
+			final double bhi = c - (c - b);
+			final double blo = b - bhi;
+			return alo * blo - (x - ahi * bhi - alo * bhi - ahi * blo);
+		}
+
+		/**
+		 * h=a*b-c*d as a 4-component expansion.
+		 */
+		private static void twoTwoDiff(final double a, final double b, final double c, final double d,
+				final double[] h) {
+			final double a1 = a * b;
+			final double a0 = twoProductTail(a, b, a1);
+			final double b1 = c * d;
+			final double b0 = twoProductTail(c, d, b1);
+			double i = a0 - b0;
+			h[0] = twoDiffTail(a0, b0, i);
+			final double j = a1 + i;
+			final double t0 = twoSumTail(a1, i, j);
+			i = t0 - b1;
+			h[1] = twoDiffTail(t0, b1, i);
+			h[3] = j + i;
+			h[2] = twoSumTail(j, i, h[3]);
+		}
+
+		/**
+		 * h=e*b, zero components are removed. h can't be e.
+		 *
+		 * @return length of h
+		 */
+		private static int scale(final double[] e, final int elen, final double b, final double[] h) {
+			double c = splitter * b;
+			final double bhi = c - (c - b);
+			final double blo = b - bhi;
+			double enow = e[0];
+			double q = enow * b;
+			c = splitter * enow;
+			double ahi = c - (c - enow);
+			double alo = enow - ahi;
+			double hh = alo * blo - (q - ahi * bhi - alo * bhi - ahi * blo);
+			int hindex = 0;
+			if (hh != 0) {
+				h[hindex++] = hh;
+			}
+			double product1, product0, sum;
+			for (int eindex = 1; eindex < elen; eindex++) {
+				enow = e[eindex];
+				product1 = enow * b;
+				c = splitter * enow;
+				ahi = c - (c - enow);
+				alo = enow - ahi;
+				product0 = alo * blo - (product1 - ahi * bhi - alo * bhi - ahi * blo);
+				sum = q + product0;
+				hh = twoSumTail(q, product0, sum);
+				if (hh != 0) {
+					h[hindex++] = hh;
+				}
+				q = product1 + sum;
+				hh = sum - (q - product1);
+				if (hh != 0) {
+					h[hindex++] = hh;
+				}
+			}
+			if (q != 0.0 || hindex == 0) {
+				h[hindex++] = q;
+			}
+			return hindex;
+		}
+
+		/**
+		 * h=e+f, zero components are removed. h can't be e or f.
+		 *
+		 * @return length of h
+		 */
+		private static int sum(final double[] e, final int elen, final double[] f, final int flen, final double[] h) {
+			double enow = e[0];
+			double fnow = f[0];
+			int eindex = 0, findex = 0;
+			double q, qnew, hh;
+			if (fnow > enow == fnow > -enow) {
+				q = enow;
+				enow = ++eindex < elen ? e[eindex] : 0;
+			} else {
+				q = fnow;
+				fnow = ++findex < flen ? f[findex] : 0;
+			}
+			int hindex = 0;
+			if (eindex < elen && findex < flen) {
+				if (fnow > enow == fnow > -enow) {
+					qnew = enow + q;
+					hh = q - (qnew - enow);
+					enow = ++eindex < elen ? e[eindex] : 0;
+				} else {
+					qnew = fnow + q;
+					hh = q - (qnew - fnow);
+					fnow = ++findex < flen ? f[findex] : 0;
+				}
+				q = qnew;
+				if (hh != 0.0) {
+					h[hindex++] = hh;
+				}
+				while (eindex < elen && findex < flen) {
+					if (fnow > enow == fnow > -enow) {
+						qnew = q + enow;
+						hh = twoSumTail(q, enow, qnew);
+						enow = ++eindex < elen ? e[eindex] : 0;
+					} else {
+						qnew = q + fnow;
+						hh = twoSumTail(q, fnow, qnew);
+						fnow = ++findex < flen ? f[findex] : 0;
+					}
+					q = qnew;
+					if (hh != 0.0) {
+						h[hindex++] = hh;
+					}
+				}
+			}
+			while (eindex < elen) {
+				qnew = q + enow;
+				hh = twoSumTail(q, enow, qnew);
+				enow = ++eindex < elen ? e[eindex] : 0;
+				q = qnew;
+				if (hh != 0.0) {
+					h[hindex++] = hh;
+				}
+			}
+			while (findex < flen) {
+				qnew = q + fnow;
+				hh = twoSumTail(q, fnow, qnew);
+				fnow = ++findex < flen ? f[findex] : 0;
+				q = qnew;
+				if (hh != 0.0) {
+					h[hindex++] = hh;
+				}
+			}
+			if (q != 0.0 || hindex == 0) {
+				h[hindex++] = q;
+			}
+			return hindex;
+		}
+
+		private static void negate(final double[] e, final int elen) {
+			for (int i = 0; i < elen; i++) {
+				e[i] = -e[i];
+			}
+		}
+
+		private static double sign(final double[] e, final int elen) {
+			final double last = e[elen - 1];
+			return last > 0 ? 1 : last < 0 ? -1 : 0;
+		}
+
+		/**
+		 * h=e+f+g, of three 4-component expansions.
+		 *
+		 * @return length of h
+		 */
+		private int sum(final double[] e, final double[] f, final double[] g, final double[] h) {
+			final int len = sum(e, 4, f, 4, t8a);
+			return sum(t8a, len, g, 4, h);
+		}
+
+		/**
+		 * h=e*a+f*b+g*c, of three 4-component expansions.
+		 *
+		 * @return length of h
+		 */
+		private int scaleSum(final double[] e, final double a, final double[] f, final double b, final double[] g,
+				final double c, final double[] h) {
+			int alen = scale(e, 4, a, t8a);
+			final int blen = scale(f, 4, b, t8b);
+			final int len = sum(t8a, alen, t8b, blen, t16);
+			alen = scale(g, 4, c, t8a);
+			return sum(t8a, alen, t16, len, h);
+		}
+
+		/**
+		 * h=e*(x*x+y*y).
+		 *
+		 * @return length of h
+		 */
+		private int lift(final double[] e, final int elen, final double x, final double y, final double[] h) {
+			int len = scale(e, elen, x, t192);
+			final int xlen = scale(t192, len, x, x384);
+			len = scale(e, elen, y, t192);
+			final int ylen = scale(t192, len, y, y384);
+			return sum(x384, xlen, y384, ylen, h);
+		}
+
+		/**
+		 * h=e*(x*x+y*y+z*z).
+		 *
+		 * @return length of h
+		 */
+		private int lift(final double[] e, final int elen, final double x, final double y, final double z,
+				final double[] h) {
+			final int xylen = lift(e, elen, x, y, xy768);
+			int len = scale(e, elen, z, t192);
+			final int zlen = scale(t192, len, z, z384);
+			return sum(xy768, xylen, z384, zlen, h);
+		}
+
+		double orient2D(final double ax, final double ay, final double bx, final double by, final double cx,
+				final double cy) {
+			final double[] aterms = minors[0], bterms = minors[1], cterms = minors[2];
+			twoTwoDiff(ax, by, ax, cy, aterms);
+			twoTwoDiff(bx, cy, bx, ay, bterms);
+			twoTwoDiff(cx, ay, cx, by, cterms);
+			final int len = sum(aterms, bterms, cterms, t16);
+			return sign(t16, len);
+		}
+
+		double inCircle2D(final double ax, final double ay, final double bx, final double by, final double cx,
+				final double cy, final double dx, final double dy) {
+			final double[] ab = minors[0], bc = minors[1], cd = minors[2], da = minors[3], ac = minors[4],
+					bd = minors[5];
+			twoTwoDiff(ax, by, bx, ay, ab);
+			twoTwoDiff(bx, cy, cx, by, bc);
+			twoTwoDiff(cx, dy, dx, cy, cd);
+			twoTwoDiff(dx, ay, ax, dy, da);
+			twoTwoDiff(ax, cy, cx, ay, ac);
+			twoTwoDiff(bx, dy, dx, by, bd);
+			final double[] abc = triples[0], bcd = triples[1], cda = triples[2], dab = triples[3];
+			final int cdalen = sum(cd, da, ac, cda);
+			final int dablen = sum(da, ab, bd, dab);
+			negate(bd, 4);
+			negate(ac, 4);
+			final int abclen = sum(ab, bc, ac, abc);
+			final int bcdlen = sum(bc, cd, bd, bcd);
+			final int alen = lift(bcd, bcdlen, ax, ay, dets[0]);
+			final int blen = lift(cda, cdalen, bx, by, dets[1]);
+			negate(dets[1], blen);
+			final int clen = lift(dab, dablen, cx, cy, dets[2]);
+			final int dlen = lift(abc, abclen, dx, dy, dets[3]);
+			negate(dets[3], dlen);
+			final int ablen = sum(dets[0], alen, dets[1], blen, ab2304);
+			final int cdlen = sum(dets[2], clen, dets[3], dlen, cd2304);
+			final int len = sum(ab2304, ablen, cd2304, cdlen, det5760);
+			return sign(det5760, len);
+		}
+
+		double orient3D(final double ax, final double ay, final double az, final double bx, final double by,
+				final double bz, final double cx, final double cy, final double cz, final double dx, final double dy,
+				final double dz) {
+			final double[] ab = minors[0], bc = minors[1], cd = minors[2], da = minors[3], ac = minors[4],
+					bd = minors[5];
+			twoTwoDiff(ax, by, bx, ay, ab);
+			twoTwoDiff(bx, cy, cx, by, bc);
+			twoTwoDiff(cx, dy, dx, cy, cd);
+			twoTwoDiff(dx, ay, ax, dy, da);
+			twoTwoDiff(ax, cy, cx, ay, ac);
+			twoTwoDiff(bx, dy, dx, by, bd);
+			final double[] abc = triples[0], bcd = triples[1], cda = triples[2], dab = triples[3];
+			final int cdalen = sum(cd, da, ac, cda);
+			final int dablen = sum(da, ab, bd, dab);
+			negate(bd, 4);
+			negate(ac, 4);
+			final int abclen = sum(ab, bc, ac, abc);
+			final int bcdlen = sum(bc, cd, bd, bcd);
+			final int alen = scale(bcd, bcdlen, az, dets[0]);
+			final int blen = scale(cda, cdalen, -bz, dets[1]);
+			final int clen = scale(dab, dablen, cz, dets[2]);
+			final int dlen = scale(abc, abclen, -dz, dets[3]);
+			final int ablen = sum(dets[0], alen, dets[1], blen, ab2304);
+			final int cdlen = sum(dets[2], clen, dets[3], dlen, cd2304);
+			final int len = sum(ab2304, ablen, cd2304, cdlen, det5760);
+			return sign(det5760, len);
+		}
+
+		double inSphere3D(final double ax, final double ay, final double az, final double bx, final double by,
+				final double bz, final double cx, final double cy, final double cz, final double dx, final double dy,
+				final double dz, final double ex, final double ey, final double ez) {
+			final double[] ab = minors[0], bc = minors[1], cd = minors[2], de = minors[3], ea = minors[4],
+					ac = minors[5], bd = minors[6], ce = minors[7], da = minors[8], eb = minors[9];
+			twoTwoDiff(ax, by, bx, ay, ab);
+			twoTwoDiff(bx, cy, cx, by, bc);
+			twoTwoDiff(cx, dy, dx, cy, cd);
+			twoTwoDiff(dx, ey, ex, dy, de);
+			twoTwoDiff(ex, ay, ax, ey, ea);
+			twoTwoDiff(ax, cy, cx, ay, ac);
+			twoTwoDiff(bx, dy, dx, by, bd);
+			twoTwoDiff(cx, ey, ex, cy, ce);
+			twoTwoDiff(dx, ay, ax, dy, da);
+			twoTwoDiff(ex, by, bx, ey, eb);
+			final double[] abc = triples[0], bcd = triples[1], cde = triples[2], dea = triples[3], eab = triples[4],
+					abd = triples[5], bce = triples[6], cda = triples[7], deb = triples[8], eac = triples[9];
+			final int abclen = scaleSum(bc, az, ac, -bz, ab, cz, abc);
+			final int bcdlen = scaleSum(cd, bz, bd, -cz, bc, dz, bcd);
+			final int cdelen = scaleSum(de, cz, ce, -dz, cd, ez, cde);
+			final int dealen = scaleSum(ea, dz, da, -ez, de, az, dea);
+			final int eablen = scaleSum(ab, ez, eb, -az, ea, bz, eab);
+			final int abdlen = scaleSum(bd, az, da, bz, ab, dz, abd);
+			final int bcelen = scaleSum(ce, bz, eb, cz, bc, ez, bce);
+			final int cdalen = scaleSum(da, cz, ac, dz, cd, az, cda);
+			final int deblen = scaleSum(eb, dz, bd, ez, de, bz, deb);
+			final int eaclen = scaleSum(ac, ez, ce, az, ea, cz, eac);
+			final int alen = lift(cde, cdelen, bce, bcelen, deb, deblen, bcd, bcdlen, ax, ay, az, dets[0]);
+			final int blen = lift(dea, dealen, cda, cdalen, eac, eaclen, cde, cdelen, bx, by, bz, dets[1]);
+			final int clen = lift(eab, eablen, deb, deblen, abd, abdlen, dea, dealen, cx, cy, cz, dets[2]);
+			final int dlen = lift(abc, abclen, eac, eaclen, bce, bcelen, eab, eablen, dx, dy, dz, dets[3]);
+			final int elen = lift(bcd, bcdlen, abd, abdlen, cda, cdalen, abc, abclen, ex, ey, ez, dets[4]);
+			final int ablen = sum(dets[0], alen, dets[1], blen, ab2304);
+			final int cdlen = sum(dets[2], clen, dets[3], dlen, cd2304);
+			final int cdelen2 = sum(cd2304, cdlen, dets[4], elen, cde3456);
+			final int len = sum(ab2304, ablen, cde3456, cdelen2, det5760);
+			return sign(det5760, len);
+		}
+
+		/**
+		 * h=((p+q)-(r+s))*(x*x+y*y+z*z), one 4x4 cofactor of the insphere
+		 * determinant.
+		 *
+		 * @return length of h
+		 */
+		private int lift(final double[] p, final int plen, final double[] q, final int qlen, final double[] r,
+				final int rlen, final double[] s, final int slen, final double x, final double y, final double z,
+				final double[] h) {
+			final int alen = sum(p, plen, q, qlen, t48a);
+			final int blen = sum(r, rlen, s, slen, t48b);
+			negate(t48b, blen);
+			final int len = sum(t48a, alen, t48b, blen, t96);
+			return lift(t96, len, x, y, z, h);
+		}
 	}
 
 	/**
@@ -0,0 +1,177 @@
+/*
+ * This file is part of HE_Mesh, a library for creating and manipulating meshes.
+ * It is dedicated to the public domain. To the extent possible under law,
+ * I , Frederik Vanhoutte, have waived all copyright and related or neighboring
+ * rights.
+ *
+ * This work is published from Belgium. (http://creativecommons.org/publicdomain/zero/1.0/)
+ *
+ */
+
+package wblut.geom;
+
+import java.util.Arrays;
+
+import wblut.core.WB_ParallelExecutor;
+import wblut.core.WB_ParallelExecutor.WB_RangeAction;
+
+/**
+ * Morton (Z-order) and Hilbert curves through a 3D grid, and the order of a
+ * set of points along them. Points close together on a curve are close
+ * together in space, the Hilbert curve never jumps between non-adjacent cells.
+ */
+public class WB_SpaceFillingCurve {
+	/** Maximum number of bits per coordinate, 3*21 bits fit in a long. */
+	public static final int MAX_BITS = 21;
+
+	private WB_SpaceFillingCurve() {
+	}
+
+	/**
+	 * Position along the Morton curve, the bits of x, y and z interleaved, x
+	 * most significant.
+	 *
+	 * @param x
+	 *            0 <= x < 2^21
+	 * @param y
+	 *            0 <= y < 2^21
+	 * @param z
+	 *            0 <= z < 2^21
+	 * @return
+	 */
+	public static long getMortonIndex(final int x, final int y, final int z) {
+		return spread(x) << 2 | spread(y) << 1 | spread(z);
+	}
+
+	/**
+	 * Position along the Hilbert curve through a grid of 2^bits cells per axis,
+	 * using Skilling's transpose algorithm.
+	 *
+	 * @param x
+	 *            0 <= x < 2^bits
+	 * @param y
+	 *            0 <= y < 2^bits
+	 * @param z
+	 *            0 <= z < 2^bits
+	 * @param bits
+	 *            1 <= bits <= 21
+	 * @return
+	 */
+	public static long getHilbertIndex(int x, int y, int z, final int bits) {
+		int t;
+		for (int q = 1 << bits - 1; q > 1; q >>= 1) {
+			final int p = q - 1;
+			if ((x & q) != 0) {
+				x ^= p;
+			}
+			if ((y & q) != 0) {
+				x ^= p;
+			} else {
+				t = (x ^ y) & p;
+				x ^= t;
+				y ^= t;
+			}
+			if ((z & q) != 0) {
+				x ^= p;
+			} else {
+				t = (x ^ z) & p;
+				x ^= t;
+				z ^= t;
+			}
+		}
+		y ^= x;
+		z ^= y;
+		t = 0;
+		for (int q = 1 << bits - 1; q > 1; q >>= 1) {
+			if ((z & q) != 0) {
+				t ^= q - 1;
+			}
+		}
+		return getMortonIndex(x ^ t, y ^ t, z ^ t);
+	}
+
+	private static long spread(final int v) {
+		long x = v & 0x1fffffL;
+		x = (x | x << 32) & 0x1f00000000ffffL;
+		x = (x | x << 16) & 0x1f0000ff0000ffL;
+		x = (x | x << 8) & 0x100f00f00f00f00fL;
+		x = (x | x << 4) & 0x10c30c30c30c30c3L;
+		x = (x | x << 2) & 0x1249249249249249L;
+		return x;
+	}
+
+	/**
+	 * Order of n points along a curve through their bounding box. The curve
+	 * position and the point index are packed in one long and sorted as
+	 * primitives, so the grid resolution drops as n grows: 20 bits per axis for
+	 * a few points, 13 bits per axis for 2^24 points. Points in the same
+	 * cell keep their relative order. Keys are computed, and sorted, in
+	 * parallel if WB_ParallelExecutor is parallel. Points with NaN coordinates
+	 * are put in the first cell.
+	 *
+	 * @param coords
+	 *            x, y and z of each point, 3n values
+	 * @param hilbert
+	 *            true for the Hilbert curve, false for the Morton curve
+	 * @return indices of the points in curve order
+	 */
+	public static int[] getOrder(final double[] coords, final boolean hilbert) {
+		final int n = coords.length / 3;
+		final int indexBits = n < 2 ? 1 : 32 - Integer.numberOfLeadingZeros(n - 1);
+		final int bits = Math.min(MAX_BITS, (63 - indexBits) / 3);
+		double minx = Double.POSITIVE_INFINITY, miny = Double.POSITIVE_INFINITY, minz = Double.POSITIVE_INFINITY;
+		double maxx = Double.NEGATIVE_INFINITY, maxy = Double.NEGATIVE_INFINITY, maxz = Double.NEGATIVE_INFINITY;
+		// comparisons rather than Math.min/max, NaN coordinates are skipped
+		for (int i = 0; i < 3 * n; i += 3) {
+			if (coords[i] < minx) {
+				minx = coords[i];
+			}
+			if (coords[i] > maxx) {
+				maxx = coords[i];
+			}
+			if (coords[i + 1] < miny) {
+				miny = coords[i + 1];
+			}
+			if (coords[i + 1] > maxy) {
+				maxy = coords[i + 1];
+			}
+			if (coords[i + 2] < minz) {
+				minz = coords[i + 2];
+			}
+			if (coords[i + 2] > maxz) {
+				maxz = coords[i + 2];
+			}
+		}
+		final double cells = (1 << bits) - 1;
+		final double extent = Math.max(maxx - minx, Math.max(maxy - miny, maxz - minz));
+		final double scale = extent > 0 && extent < Double.POSITIVE_INFINITY ? cells / extent : 0;
+		final double ox = minx, oy = miny, oz = minz;
+		final long[] keys = new long[n];
+		final WB_ParallelExecutor executor = WB_ParallelExecutor.instance();
+		executor.forRange(0, n, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				int x, y, z;
+				long index;
+				for (int i = start; i < end; i++) {
+					x = (int) ((coords[3 * i] - ox) * scale);
+					y = (int) ((coords[3 * i + 1] - oy) * scale);
+					z = (int) ((coords[3 * i + 2] - oz) * scale);
+					index = hilbert ? getHilbertIndex(x, y, z, bits) : getMortonIndex(x, y, z);
+					keys[i] = index << indexBits | i;
+				}
+			}
+		});
+		if (executor.isParallel()) {
+			Arrays.parallelSort(keys);
+		} else {
+			Arrays.sort(keys);
+		}
+		final int[] order = new int[n];
+		final long mask = (1L << indexBits) - 1;
+		for (int i = 0; i < n; i++) {
+			order[i] = (int) (keys[i] & mask);
+		}
+		return order;
+	}
+}
@@ -0,0 +1,411 @@
+/*
+ * This file is part of HE_Mesh, a library for creating and manipulating meshes.
+ * It is dedicated to the public domain. To the extent possible under law,
+ * I , Frederik Vanhoutte, have waived all copyright and related or neighboring
+ * rights.
+ *
+ * This work is published from Belgium. (http://creativecommons.org/publicdomain/zero/1.0/)
+ *
+ */
+
+package wblut.geom;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import wblut.core.WB_ParallelExecutor;
+import wblut.core.WB_ParallelExecutor.WB_RangeAction;
+
+/**
+ * Spatial hash of 3D points for fixed-radius neighbor search. Space is divided
+ * in cubic cells, each cell is hashed to one of a fixed number of buckets.
+ * Points are stored as primitive indices: the points passed to the constructor
+ * keep their index in the input, inserted points get the next free index.
+ *
+ * Points passed to the constructor are sorted into their buckets with a
+ * counting sort, the cell hashes are computed in parallel. Points can be
+ * inserted concurrently from several threads, up to the capacity given at
+ * construction. Queries don't allocate and can run concurrently with inserts,
+ * a point is visible to queries once its insert has returned. Queries are
+ * fastest for radii up to the cell size.
+ */
+public class WB_SpatialHash {
+	private final double cellSize;
+	private final double inv;
+	private final int shift;
+	private final int capacity;
+	/** First slot in each bucket, -1 if empty. */
+	private final AtomicIntegerArray heads;
+	/** Next slot in the same bucket, -1 at the end. */
+	private final int[] next;
+	/** Coordinates per slot, 3 per point. */
+	private final double[] points;
+	/** Index of the point in each slot. */
+	private final int[] indices;
+	private final AtomicInteger size;
+
+	/**
+	 * Empty spatial hash.
+	 *
+	 * @param cellSize
+	 *            size of a cell, typically the query radius
+	 * @param capacity
+	 *            maximum number of points
+	 */
+	public WB_SpatialHash(final double cellSize, final int capacity) {
+		this(new double[0], cellSize, capacity);
+	}
+
+	/**
+	 *
+	 *
+	 * @param coords
+	 *            x, y and z of each point, 3n values
+	 * @param cellSize
+	 *            size of a cell, typically the query radius
+	 */
+	public WB_SpatialHash(final double[] coords, final double cellSize) {
+		this(coords, cellSize, coords.length / 3);
+	}
+
+	/**
+	 *
+	 *
+	 * @param coords
+	 *            x, y and z of each point, 3n values
+	 * @param cellSize
+	 *            size of a cell, typically the query radius
+	 * @param capacity
+	 *            maximum number of points, including the n points in coords
+	 */
+	public WB_SpatialHash(final double[] coords, final double cellSize, final int capacity) {
+		if (!(cellSize > 0) || cellSize == Double.POSITIVE_INFINITY) {
+			throw new IllegalArgumentException("Cell size should be larger than 0.");
+		}
+		final int n = coords.length / 3;
+		if (capacity < n) {
+			throw new IllegalArgumentException("Capacity should be at least the number of points.");
+		}
+		this.cellSize = cellSize;
+		inv = 1.0 / cellSize;
+		this.capacity = capacity;
+		int bits = 4;
+		while (bits < 30 && 1 << bits < capacity) {
+			bits++;
+		}
+		shift = 64 - bits;
+		next = new int[capacity];
+		points = new double[3 * capacity];
+		indices = new int[capacity];
+		final int[] buckets = new int[n];
+		final WB_ParallelExecutor executor = WB_ParallelExecutor.instance();
+		executor.forRange(0, n, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				for (int i = start; i < end; i++) {
+					buckets[i] = bucket(cell(coords[3 * i]), cell(coords[3 * i + 1]), cell(coords[3 * i + 2]));
+				}
+			}
+		});
+		// counting sort, points in the same bucket keep their order
+		final int[] bucketStart = new int[(1 << bits) + 1];
+		for (int i = 0; i < n; i++) {
+			bucketStart[buckets[i] + 1]++;
+		}
+		for (int b = 0; b < 1 << bits; b++) {
+			bucketStart[b + 1] += bucketStart[b];
+		}
+		final int[] fill = Arrays.copyOf(bucketStart, 1 << bits);
+		for (int i = 0; i < n; i++) {
+			indices[fill[buckets[i]]++] = i;
+		}
+		executor.forRange(0, n, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				int i;
+				for (int s = start; s < end; s++) {
+					i = indices[s];
+					points[3 * s] = coords[3 * i];
+					points[3 * s + 1] = coords[3 * i + 1];
+					points[3 * s + 2] = coords[3 * i + 2];
+					next[s] = s + 1 < n && buckets[indices[s + 1]] == buckets[i] ? s + 1 : -1;
+				}
+			}
+		});
+		final int[] first = new int[1 << bits];
+		for (int b = 0; b < 1 << bits; b++) {
+			first[b] = bucketStart[b] == bucketStart[b + 1] ? -1 : bucketStart[b];
+		}
+		heads = new AtomicIntegerArray(first);
+		size = new AtomicInteger(n);
+	}
+
+	private long cell(final double c) {
+		return (long) Math.floor(c * inv);
+	}
+
+	private int bucket(final long i, final long j, final long k) {
+		return (int) ((i * 0x9E3779B97F4A7C15L ^ j * 0xC2B2AE3D27D4EB4FL ^ k * 0x165667B19E3779F9L)
+				* 0xBF58476D1CE4E5B9L >>> shift);
+	}
+
+	/**
+	 *
+	 *
+	 * @return size of a cell
+	 */
+	public double getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 *
+	 *
+	 * @return maximum number of points
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 *
+	 *
+	 * @return number of points, including points whose insert has not
+	 *         returned yet
+	 */
+	public int size() {
+		return Math.min(size.get(), capacity);
+	}
+
+	/**
+	 * Add a point. Thread-safe.
+	 *
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return index of the new point
+	 * @throws IllegalStateException
+	 *             if the hash is full
+	 */
+	public int insert(final double x, final double y, final double z) {
+		final int slot = size.getAndIncrement();
+		if (slot >= capacity) {
+			throw new IllegalStateException("Spatial hash is full, capacity is " + capacity + ".");
+		}
+		points[3 * slot] = x;
+		points[3 * slot + 1] = y;
+		points[3 * slot + 2] = z;
+		indices[slot] = slot;
+		final int b = bucket(cell(x), cell(y), cell(z));
+		int head;
+		// the point is published by the CAS, after its slot is written
+		do {
+			head = heads.get(b);
+			next[slot] = head;
+		} while (!heads.compareAndSet(b, head, slot));
+		return slot;
+	}
+
+	/**
+	 *
+	 *
+	 * @param p
+	 * @return index of the new point
+	 */
+	public int insert(final WB_Coord p) {
+		return insert(p.xd(), p.yd(), p.zd());
+	}
+
+	/**
+	 * Points within a distance of (x,y,z), in no particular order.
+	 *
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @param radius
+	 * @param result
+	 *            receives the indices of the points, null to only count them.
+	 *            If there are more points than fit, the array is filled and the
+	 *            total number is returned.
+	 * @return number of points within the distance
+	 */
+	public int getRange(final double x, final double y, final double z, final double radius, final int[] result) {
+		final double r2 = radius * radius;
+		final int cap = result == null ? 0 : result.length;
+		int count = 0;
+		final long minx = cell(x - radius), maxx = cell(x + radius);
+		final long miny = cell(y - radius), maxy = cell(y + radius);
+		final long minz = cell(z - radius), maxz = cell(z + radius);
+		if (((double) maxx - minx + 1) * ((double) maxy - miny + 1) * ((double) maxz - minz + 1) > heads.length()) {
+			// more cells than buckets, check every point. Only points
+			// reachable from a bucket head are visited, a slot claimed by a
+			// concurrent insert is not visible until its point is written.
+			int s;
+			for (int b = 0; b < heads.length(); b++) {
+				s = heads.get(b);
+				while (s != -1) {
+					if (d2(s, x, y, z) <= r2) {
+						if (count < cap) {
+							result[count] = indices[s];
+						}
+						count++;
+					}
+					s = next[s];
+				}
+			}
+			return count;
+		}
+		// offsets rather than cell coordinates as loop variables, cells
+		// saturate at Long.MAX_VALUE for very large coordinates
+		final int spanx = (int) (maxx - minx), spany = (int) (maxy - miny), spanz = (int) (maxz - minz);
+		long i, j, k;
+		int s;
+		for (int di = 0; di <= spanx; di++) {
+			i = minx + di;
+			for (int dj = 0; dj <= spany; dj++) {
+				j = miny + dj;
+				for (int dk = 0; dk <= spanz; dk++) {
+					k = minz + dk;
+					s = heads.get(bucket(i, j, k));
+					while (s != -1) {
+						// skip points from other cells hashed to the same
+						// bucket, they are found from their own cell
+						if (d2(s, x, y, z) <= r2 && inCell(s, i, j, k)) {
+							if (count < cap) {
+								result[count] = indices[s];
+							}
+							count++;
+						}
+						s = next[s];
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 *
+	 *
+	 * @param p
+	 * @param radius
+	 * @param result
+	 * @return number of points within the distance
+	 */
+	public int getRange(final WB_Coord p, final double radius, final int[] result) {
+		return getRange(p.xd(), p.yd(), p.zd(), radius, result);
+	}
+
+	/**
+	 * Closest point closer than a tolerance to (x,y,z).
+	 *
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @param tolerance
+	 * @return index of the closest point, -1 if no point is closer than the
+	 *         tolerance
+	 */
+	public int getClosest(final double x, final double y, final double z, final double tolerance) {
+		double mind2 = tolerance * tolerance;
+		int closest = -1;
+		final long minx = cell(x - tolerance), maxx = cell(x + tolerance);
+		final long miny = cell(y - tolerance), maxy = cell(y + tolerance);
+		final long minz = cell(z - tolerance), maxz = cell(z + tolerance);
+		double d2;
+		if (((double) maxx - minx + 1) * ((double) maxy - miny + 1) * ((double) maxz - minz + 1) > heads.length()) {
+			int s;
+			for (int b = 0; b < heads.length(); b++) {
+				s = heads.get(b);
+				while (s != -1) {
+					d2 = d2(s, x, y, z);
+					if (d2 < mind2) {
+						mind2 = d2;
+						closest = s;
+					}
+					s = next[s];
+				}
+			}
+			return closest == -1 ? -1 : indices[closest];
+		}
+		final int spanx = (int) (maxx - minx), spany = (int) (maxy - miny), spanz = (int) (maxz - minz);
+		int s;
+		for (int di = 0; di <= spanx; di++) {
+			for (int dj = 0; dj <= spany; dj++) {
+				for (int dk = 0; dk <= spanz; dk++) {
+					s = heads.get(bucket(minx + di, miny + dj, minz + dk));
+					while (s != -1) {
+						d2 = d2(s, x, y, z);
+						if (d2 < mind2) {
+							mind2 = d2;
+							closest = s;
+						}
+						s = next[s];
+					}
+				}
+			}
+		}
+		return closest == -1 ? -1 : indices[closest];
+	}
+
+	/**
+	 *
+	 *
+	 * @param p
+	 * @param tolerance
+	 * @return index of the closest point, -1 if no point is closer than the
+	 *         tolerance
+	 */
+	public int getClosest(final WB_Coord p, final double tolerance) {
+		return getClosest(p.xd(), p.yd(), p.zd(), tolerance);
+	}
+
+	private double d2(final int s, final double x, final double y, final double z) {
+		final double dx = points[3 * s] - x;
+		final double dy = points[3 * s + 1] - y;
+		final double dz = points[3 * s + 2] - z;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	private boolean inCell(final int s, final long i, final long j, final long k) {
+		return cell(points[3 * s]) == i && cell(points[3 * s + 1]) == j && cell(points[3 * s + 2]) == k;
+	}
+
+	/**
+	 * Weld points closer than a tolerance. Points are processed in order, a
+	 * point is merged with the closest earlier unique point closer than the
+	 * tolerance, or becomes a new unique point.
+	 *
+	 * @param coords
+	 *            x, y and z of each point, 3n values
+	 * @param tolerance
+	 *            larger than 0
+	 * @param weld
+	 *            receives the unique point of each point, at least n values
+	 * @param source
+	 *            receives the first point of each unique point, at least n
+	 *            values
+	 * @return number of unique points
+	 */
+	public static int weld(final double[] coords, final double tolerance, final int[] weld, final int[] source) {
+		final int n = coords.length / 3;
+		final WB_SpatialHash hash = new WB_SpatialHash(tolerance, n);
+		int nu = 0;
+		int u;
+		double x, y, z;
+		for (int i = 0; i < n; i++) {
+			x = coords[3 * i];
+			y = coords[3 * i + 1];
+			z = coords[3 * i + 2];
+			u = hash.getClosest(x, y, z, tolerance);
+			if (u == -1) {
+				u = hash.insert(x, y, z);
+				source[u] = i;
+				nu++;
+			}
+			weld[i] = u;
+		}
+		return nu;
+	}
+}
@@ -26,6 +26,11 @@ public class WB_Triangulation3D {
 	 */
 	private int[] _edges;
 
+	/**
+	 *
+	 */
+	private int[] _neighbors;
+
 	/**
 	 *
 	 */
@@ -44,6 +49,22 @@ public class WB_Triangulation3D {
 		_edges = edges;
 	}
 
+	/**
+	 *
+	 * @param tetra
+	 * @param neighbors
+	 *            4 per tetrahedron, neighbor i is opposite vertex i, -1 on the
+	 *            convex hull
+	 * @param triangles
+	 * @param edges
+	 */
+	public WB_Triangulation3D(final int[] tetra, final int[] neighbors, final int[] triangles, final int[] edges) {
+		_tetrahedra = tetra;
+		_neighbors = neighbors;
+		_triangles = triangles;
+		_edges = edges;
+	}
+
 	/**
 	 *
 	 *
@@ -75,4 +96,13 @@ public class WB_Triangulation3D {
 	public int[] getEdges() {
 		return _edges;
 	}
+
+	/**
+	 *
+	 *
+	 * @return neighbors of the tetrahedra, null if not available
+	 */
+	public int[] getNeighbors() {
+		return _neighbors;
+	}
 }
\ No newline at end of file
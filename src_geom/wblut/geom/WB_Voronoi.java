@@ -10,9 +10,9 @@
 package wblut.geom;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.Set;
 
 import com.vividsolutions.jts.algorithm.ConvexHull;
 import com.vividsolutions.jts.geom.Coordinate;
@@ -24,13 +24,7 @@ import com.vividsolutions.jts.geom.Polygon;
 import com.vividsolutions.jts.triangulate.DelaunayTriangulationBuilder;
 import com.vividsolutions.jts.triangulate.quadedge.QuadEdgeSubdivision;
 
-import gnu.trove.set.TIntSet;
-import gnu.trove.set.hash.TIntHashSet;
 import javolution.util.FastTable;
-import wblut.external.Delaunay.WB_Delaunay;
-import wblut.external.ProGAL.CTetrahedron;
-import wblut.external.ProGAL.CVertex;
-import wblut.external.ProGAL.DelaunayComplex;
 
 /**
  *
@@ -50,31 +44,12 @@ public class WB_Voronoi {
 	 * @param n
 	 * @param aabb
 	 * @param precision
+	 *            points closer than this to an earlier point share its cell
 	 * @return
 	 */
 	public static List<WB_VoronoiCell3D> getVoronoi3D(final WB_Coord[] points, final int n, final WB_AABB aabb,
 			final double precision) {
-		final WB_Delaunay triangulation = WB_Delaunay.getTriangulation3D(points, precision);
-		final int nv = Math.min(n, points.length);
-		if (nv <= 4) {
-			return getVoronoi3DBruteForce(points, nv, aabb);
-		}
-		final List<WB_VoronoiCell3D> result = new FastTable<WB_VoronoiCell3D>();
-		for (int i = 0; i < nv; i++) {
-			final int[] tetras = triangulation.Vertices[i];
-			final List<WB_Point> hullpoints = new ArrayList<WB_Point>();
-			for (int t = 0; t < tetras.length; t++) {
-				hullpoints.add(triangulation.circumcenters[tetras[t]]);
-			}
-			final WB_VoronoiCell3D vor = new WB_VoronoiCell3D(hullpoints, geometryfactory.createPoint(points[i]), i);
-			if (vor.cell != null) {
-				vor.constrain(aabb);
-			}
-			if (vor.cell != null) {
-				result.add(vor);
-			}
-		}
-		return result;
+		return getVoronoi3D(Arrays.asList(points), n, aabb, precision);
 	}
 
 	/**
@@ -84,33 +59,16 @@ public class WB_Voronoi {
 	 * @param n
 	 * @param aabb
 	 * @param precision
+	 *            points closer than this to an earlier point share its cell
 	 * @return
 	 */
-	public static List<WB_VoronoiCell3D> getVoronoi3D(final List<? extends WB_Coord> points, final int n,
+	public static List<WB_VoronoiCell3D> getVoronoi3D(final List<? extends WB_Coord> points, int n,
 			final WB_AABB aabb, final double precision) {
-		final WB_Delaunay triangulation = WB_Delaunay.getTriangulation3D(points, precision);
-		final int nv = Math.min(n, points.size());
-		if (nv <= 4) {
-			return getVoronoi3DBruteForce(points, nv, aabb);
+		n = Math.min(n, points.size());
+		if (n <= 4) {
+			return getVoronoi3DBruteForce(points, n, aabb);
 		}
-		final List<WB_VoronoiCell3D> result = new FastTable<WB_VoronoiCell3D>();
-		for (int i = 0; i < nv; i++) {
-			final int[] tetras = triangulation.Vertices[i];
-			final List<WB_Point> hullpoints = new ArrayList<WB_Point>();
-			for (int t = 0; t < tetras.length; t++) {
-				hullpoints.add(triangulation.circumcenters[tetras[t]]);
-			}
-			hullpoints.add(new WB_Point(points.get(i)));
-			final WB_VoronoiCell3D vor = new WB_VoronoiCell3D(hullpoints, geometryfactory.createPoint(points.get(i)),
-					i);
-			if (vor.cell != null) {
-				vor.constrain(aabb);
-			}
-			if (vor.cell != null) {
-				result.add(vor);
-			}
-		}
-		return result;
+		return getVoronoi3D(points, n, aabb, new WB_Delaunay3D(points, precision));
 	}
 
 	/**
@@ -163,40 +121,7 @@ public class WB_Voronoi {
 		if (nv <= 4) {
 			return getVoronoi3DBruteForce(points, nv, aabb);
 		}
-		final int n = points.length;
-		final List<wblut.external.ProGAL.Point> tmppoints = new ArrayList<wblut.external.ProGAL.Point>(n);
-		final WB_KDTreeInteger<WB_Coord> tree = new WB_KDTreeInteger<WB_Coord>();
-		for (int i = 0; i < n; i++) {
-			tmppoints.add(new wblut.external.ProGAL.Point(points[i].xd(), points[i].yd(), points[i].zd()));
-			tree.add(points[i], i);
-		}
-		final DelaunayComplex dc = new DelaunayComplex(tmppoints);
-		final List<CVertex> vertices = dc.getVertices();
-		final List<WB_VoronoiCell3D> result = new FastTable<WB_VoronoiCell3D>();
-		for (int i = 0; i < nv; i++) {
-			final CVertex v = vertices.get(i);
-			final Set<CTetrahedron> vertexhull = dc.getVertexHull(v);
-			final List<WB_Point> hullpoints = new ArrayList<WB_Point>();
-			for (final CTetrahedron tetra : vertexhull) {
-				// if (!tetra.containsBigPoint()) {
-				hullpoints.add(toPoint(tetra.circumcenter()));
-				// }
-			}
-			final List<WB_Point> finalpoints = new FastTable<WB_Point>();
-			for (int j = 0; j < hullpoints.size(); j++) {
-				finalpoints.add(geometryfactory.createPoint(hullpoints.get(j)));
-			}
-			final int index = tree.getNearestNeighbor(toPoint(v)).value;
-			final WB_VoronoiCell3D vor = new WB_VoronoiCell3D(finalpoints, geometryfactory.createPoint(points[index]),
-					index);
-			if (aabb != null) {
-				vor.constrain(aabb);
-			}
-			if (vor.cell != null) {
-				result.add(vor);
-			}
-		}
-		return result;
+		return getVoronoi3D(Arrays.asList(points), nv, aabb);
 	}
 
 	/**
@@ -214,29 +139,7 @@ public class WB_Voronoi {
 		} else if (nv == 4) {
 			return new int[][] { { 1, 2, 3 }, { 0, 2, 3 }, { 0, 1, 3 }, { 0, 1, 2 } };
 		}
-		final List<wblut.external.ProGAL.Point> tmppoints = new ArrayList<wblut.external.ProGAL.Point>(nv);
-		final WB_KDTreeInteger<WB_Coord> tree = new WB_KDTreeInteger<WB_Coord>();
-		for (int i = 0; i < nv; i++) {
-			tmppoints.add(new wblut.external.ProGAL.Point(points[i].xd(), points[i].yd(), points[i].zd()));
-			tree.add(points[i], i);
-		}
-		final DelaunayComplex dc = new DelaunayComplex(tmppoints);
-		final List<CVertex> vertices = dc.getVertices();
-		final int[][] ns = new int[nv][];
-		for (int i = 0; i < nv; i++) {
-			final CVertex v = vertices.get(i);
-			final Set<CTetrahedron> vertexhull = dc.getVertexHull(v);
-			final TIntSet neighbors = new TIntHashSet();
-			for (final CTetrahedron tetra : vertexhull) {
-				for (int j = 0; j < 4; j++) {
-					if (!tetra.getPoint(j).isBigpoint()) {
-						neighbors.add(tree.getNearestNeighbor(toPoint(tetra.getPoint(j))).value);
-					}
-				}
-			}
-			ns[i] = neighbors.toArray();
-		}
-		return ns;
+		return getVoronoi3DNeighbors(Arrays.asList(points));
 	}
 
 	/**
@@ -254,29 +157,35 @@ public class WB_Voronoi {
 		} else if (nv == 4) {
 			return new int[][] { { 1, 2, 3 }, { 0, 2, 3 }, { 0, 1, 3 }, { 0, 1, 2 } };
 		}
-		final List<wblut.external.ProGAL.Point> tmppoints = new ArrayList<wblut.external.ProGAL.Point>(nv);
-		final WB_KDTreeInteger<WB_Coord> tree = new WB_KDTreeInteger<WB_Coord>();
-		WB_Coord p;
+		final WB_Delaunay3D delaunay = new WB_Delaunay3D(points);
+		final int[] edges = delaunay.getTriangulation().getEdges();
+		final int[] start = new int[nv + 1];
+		for (final int v : edges) {
+			start[v + 1]++;
+		}
 		for (int i = 0; i < nv; i++) {
-			p = points.get(i);
-			tmppoints.add(new wblut.external.ProGAL.Point(p.xd(), p.yd(), p.zd()));
-			tree.add(p, i);
+			start[i + 1] += start[i];
 		}
-		final DelaunayComplex dc = new DelaunayComplex(tmppoints);
-		final List<CVertex> vertices = dc.getVertices();
+		// as before, each point is listed as its own first neighbor
 		final int[][] ns = new int[nv][];
+		final int[] fill = new int[nv];
 		for (int i = 0; i < nv; i++) {
-			final CVertex v = vertices.get(i);
-			final Set<CTetrahedron> vertexhull = dc.getVertexHull(v);
-			final TIntSet neighbors = new TIntHashSet();
-			for (final CTetrahedron tetra : vertexhull) {
-				for (int j = 0; j < 4; j++) {
-					if (!tetra.getPoint(j).isBigpoint()) {
-						neighbors.add(tree.getNearestNeighbor(toPoint(tetra.getPoint(j))).value);
-					}
-				}
+			ns[i] = new int[start[i + 1] - start[i] + 1];
+			ns[i][fill[i]++] = i;
+		}
+		for (int e = 0; e < edges.length; e += 2) {
+			ns[edges[e]][fill[edges[e]]++] = edges[e + 1];
+			ns[edges[e + 1]][fill[edges[e + 1]]++] = edges[e];
+		}
+		// a duplicate point shares the neighbors of the point it coincides
+		// with
+		int q;
+		for (int i = 0; i < nv; i++) {
+			q = delaunay.getDuplicate(i);
+			if (q >= 0) {
+				ns[i] = ns[q].clone();
+				ns[i][0] = i;
 			}
-			ns[i] = neighbors.toArray();
 		}
 		return ns;
 	}
@@ -306,35 +215,60 @@ public class WB_Voronoi {
 		if (nv <= 4) {
 			return getVoronoi3DBruteForce(points, nv, aabb);
 		}
+		return getVoronoi3D(points, nv, aabb, new WB_Delaunay3D(points));
+	}
+
+	/**
+	 * Cells of the first nv points, from the Delaunay triangulation of all
+	 * points.
+	 */
+	private static List<WB_VoronoiCell3D> getVoronoi3D(final List<? extends WB_Coord> points, final int nv,
+			final WB_AABB aabb, final WB_Delaunay3D delaunay) {
+		final int m = delaunay.getNumberOfTetrahedra();
+		if (m == 0) {
+			return getVoronoi3DBruteForce(points, nv, aabb);
+		}
+		final int[] tetrahedra = delaunay.getTetrahedra();
+		final int[] neighbors = delaunay.getNeighbors();
+		final double[] centers = delaunay.getCircumcenters();
+		// tetrahedra incident to each point
 		final int n = points.size();
-		final List<wblut.external.ProGAL.Point> tmppoints = new ArrayList<wblut.external.ProGAL.Point>(n);
-		final WB_KDTreeInteger<WB_Coord> tree = new WB_KDTreeInteger<WB_Coord>();
-		int i = 0;
-		for (final WB_Coord p : points) {
-			tmppoints.add(new wblut.external.ProGAL.Point(p.xd(), p.yd(), p.zd()));
-			tree.add(p, i++);
+		final int[] start = new int[n + 1];
+		for (final int v : tetrahedra) {
+			start[v + 1]++;
+		}
+		for (int i = 0; i < n; i++) {
+			start[i + 1] += start[i];
+		}
+		final int[] incident = new int[start[n]];
+		final int[] fill = Arrays.copyOf(start, n);
+		for (int k = 0; k < tetrahedra.length; k++) {
+			incident[fill[tetrahedra[k]]++] = k >> 2;
 		}
-		final DelaunayComplex dc = new DelaunayComplex(tmppoints);
-		final List<CVertex> vertices = dc.getVertices();
+		// cells on the convex hull are unbounded, they are closed with points
+		// far out along the Voronoi edges dual to the hull faces
+		final WB_AABB box = new WB_AABB(points);
+		final double far = 1000.0 * (box.getWidth() + box.getHeight() + box.getDepth());
 		final List<WB_VoronoiCell3D> result = new FastTable<WB_VoronoiCell3D>();
-		for (i = 0; i < nv; i++) {
-			final CVertex v = vertices.get(i);
-			final Set<CTetrahedron> vertexhull = dc.getVertexHull(v);
-			v.getAdjacentTriangles();
-			final List<WB_Point> hullpoints = new ArrayList<WB_Point>();
-			for (final CTetrahedron tetra : vertexhull) {
-				// if (!tetra.containsBigPoint()) {
-				hullpoints.add(toPoint(tetra.circumcenter()));
-				// }
-			}
-			final List<WB_Point> finalpoints = new FastTable<WB_Point>();
-			for (int j = 0; j < hullpoints.size(); j++) {
-				finalpoints.add(geometryfactory.createPoint(hullpoints.get(j)));
+		int t, v;
+		for (int i = 0; i < nv; i++) {
+			// a duplicate point gets the cell of the point it coincides with
+			v = delaunay.getDuplicate(i) < 0 ? i : delaunay.getDuplicate(i);
+			final List<WB_Point> hullpoints = new FastTable<WB_Point>();
+			for (int k = start[v]; k < start[v + 1]; k++) {
+				t = incident[k];
+				hullpoints.add(geometryfactory.createPoint(centers[3 * t], centers[3 * t + 1], centers[3 * t + 2]));
+				for (int f = 0; f < 4; f++) {
+					if (neighbors[4 * t + f] == -1 && tetrahedra[4 * t + f] != v) {
+						final WB_Vector normal = getOutwardNormal(points, tetrahedra, t, f);
+						hullpoints.add(geometryfactory.createPoint(centers[3 * t] + far * normal.xd(),
+								centers[3 * t + 1] + far * normal.yd(), centers[3 * t + 2] + far * normal.zd()));
+					}
+				}
 			}
-			final int index = tree.getNearestNeighbor(toPoint(v)).value;
-			final WB_VoronoiCell3D vor = new WB_VoronoiCell3D(finalpoints,
-					geometryfactory.createPoint(points.get(index)), index);
-			if (vor.cell != null) {
+			final WB_VoronoiCell3D vor = new WB_VoronoiCell3D(hullpoints, geometryfactory.createPoint(points.get(i)),
+					i);
+			if (aabb != null) {
 				vor.constrain(aabb);
 			}
 			if (vor.cell != null) {
@@ -344,6 +278,23 @@ public class WB_Voronoi {
 		return result;
 	}
 
+	/**
+	 * Unit normal of face f of tetrahedron t, pointing away from vertex f.
+	 */
+	private static WB_Vector getOutwardNormal(final List<? extends WB_Coord> points, final int[] tetrahedra,
+			final int t, final int f) {
+		final WB_Coord a = points.get(tetrahedra[4 * t + (f + 1 & 3)]);
+		final WB_Coord b = points.get(tetrahedra[4 * t + (f + 2 & 3)]);
+		final WB_Coord c = points.get(tetrahedra[4 * t + (f + 3 & 3)]);
+		final WB_Coord d = points.get(tetrahedra[4 * t + f]);
+		final WB_Vector normal = new WB_Vector(b).subSelf(a).crossSelf(new WB_Vector(c).subSelf(a));
+		if (normal.dot(new WB_Vector(d).subSelf(a)) > 0) {
+			normal.mulSelf(-1);
+		}
+		normal.normalizeSelf();
+		return normal;
+	}
+
 	/**
 	 *
 	 *
@@ -398,7 +349,6 @@ public class WB_Voronoi {
 			if (vor.cell != null) {
 				result.add(vor);
 			}
-			result.add(vor);
 		}
 		return result;
 	}
@@ -470,7 +420,6 @@ public class WB_Voronoi {
 			if (vor.cell != null) {
 				result.add(vor);
 			}
-			result.add(vor);
 		}
 		return result;
 	}
@@ -486,16 +435,6 @@ public class WB_Voronoi {
 		return getVoronoi3DBruteForce(points, points.length, aabb);
 	}
 
-	/**
-	 *
-	 *
-	 * @param v
-	 * @return
-	 */
-	private static WB_Point toPoint(final wblut.external.ProGAL.Point v) {
-		return geometryfactory.createPoint(v.x(), v.y(), v.z());
-	}
-
 	/**
 	 *
 	 *
@@ -35,4 +35,17 @@ abstract public class HEM_Modifier extends HE_Machine {
 	 */
 	@Override
 	public abstract HE_Mesh apply(final HE_Selection selection);
+
+	/**
+	 * Apply the modifier to a compact mesh. Only modifiers that move vertices
+	 * without changing connectivity support this, the others throw an
+	 * UnsupportedOperationException. Only the coordinates are written,
+	 * connectivity shared with a copy stays shared.
+	 *
+	 * @param mesh
+	 * @return mesh
+	 */
+	public HE_CompactMesh apply(final HE_CompactMesh mesh) {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " needs a HE_Mesh.");
+	}
 }
@@ -0,0 +1,1330 @@
+/*
+ * This file is part of HE_Mesh, a library for creating and manipulating meshes.
+ * It is dedicated to the public domain. To the extent possible under law,
+ * I , Frederik Vanhoutte, have waived all copyright and related or neighboring
+ * rights.
+ *
+ * This work is published from Belgium. (http://creativecommons.org/publicdomain/zero/1.0/)
+ *
+ */
+package wblut.hemesh;
+
+import java.util.Arrays;
+
+import wblut.geom.WB_Coord;
+import wblut.geom.WB_Point;
+
+/**
+ * Named per-element data stored in primitive arrays. An attribute is added to
+ * a HE_MeshStructure for its vertices, faces or halfedges. The values are kept
+ * in columns aligned with the element sets of the structure: adding an
+ * element appends the default value, removing an element moves the value of
+ * the last element into the hole, exactly like the set itself. Element sets
+ * without attributes carry no extra storage.
+ *
+ * Values can be accessed per element, by element index, or in bulk with
+ * toArray(). The index and the order of toArray() follow the iteration order
+ * of the structure, e.g. vItr(), fItr() and heItr().
+ *
+ * Values follow their element when the element sets are rebuilt, e.g. when
+ * unused elements are cleaned, and when halfedges are paired or unpaired.
+ * Elements that are removed and added again get the default value.
+ *
+ * @param <E>
+ *            HE_Vertex, HE_Face or HE_Halfedge
+ */
+public abstract class HE_Attribute<E extends HE_Element> {
+
+	/**
+	 * Name of the int attribute used as color by the writers and renderer.
+	 */
+	public static final String COLOR = "color";
+
+	/**
+	 * Name of the vec3 attribute used as texture coordinate.
+	 */
+	public static final String UVW = "uvw";
+
+	private final String name;
+	Column[] columns;
+	/** Columns kept by detach, for reuse by reattach. */
+	private Column[] detached;
+
+	/**
+	 *
+	 *
+	 * @param name
+	 */
+	protected HE_Attribute(final String name) {
+		if (name == null) {
+			throw new IllegalArgumentException("Attribute name can't be null.");
+		}
+		this.name = name;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public final String getName() {
+		return name;
+	}
+
+	/**
+	 * Number of values per element.
+	 *
+	 * @return
+	 */
+	public abstract int getStride();
+
+	/**
+	 *
+	 *
+	 * @return true if the attribute is part of a mesh structure
+	 */
+	public final boolean isBound() {
+		return columns != null;
+	}
+
+	/**
+	 * Number of elements.
+	 *
+	 * @return
+	 */
+	public final int size() {
+		checkBound();
+		int n = 0;
+		for (final Column c : columns) {
+			n += c.owner.size();
+		}
+		return n;
+	}
+
+	/**
+	 * Index of the element, -1 if the element is not part of the structure.
+	 *
+	 * @param e
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public final int indexOf(final E e) {
+		checkBound();
+		int offset = 0;
+		for (final Column c : columns) {
+			final int i = ((HE_RAS<E>) c.owner).indexOf(e);
+			if (i >= 0) {
+				return offset + i;
+			}
+			offset += c.owner.size();
+		}
+		return -1;
+	}
+
+	/**
+	 * All values as double, stride values per element, in element order.
+	 *
+	 * @return
+	 */
+	public abstract double[] toDoubleArray();
+
+	/**
+	 * Find column and position of an element, packed in a long.
+	 *
+	 * @param e
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	final long locate(final E e) {
+		checkBound();
+		for (int k = 0; k < columns.length; k++) {
+			final int i = ((HE_RAS<E>) columns[k].owner).indexOf(e);
+			if (i >= 0) {
+				return (long) k << 32 | i;
+			}
+		}
+		throw new IllegalArgumentException("Element is not part of the structure of attribute " + name + ".");
+	}
+
+	/**
+	 * Find column and position of an element index, packed in a long.
+	 *
+	 * @param index
+	 * @return
+	 */
+	final long locate(final int index) {
+		checkBound();
+		int i = index;
+		if (i >= 0) {
+			for (int k = 0; k < columns.length; k++) {
+				final int n = columns[k].owner.size();
+				if (i < n) {
+					return (long) k << 32 | i;
+				}
+				i -= n;
+			}
+		}
+		throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+	}
+
+	static int column(final long location) {
+		return (int) (location >>> 32);
+	}
+
+	static int position(final long location) {
+		return (int) location;
+	}
+
+	private void checkBound() {
+		if (columns == null) {
+			throw new IllegalStateException("Attribute " + name + " is not part of a mesh structure.");
+		}
+	}
+
+	/**
+	 * Create one column per element set and attach it.
+	 *
+	 * @param sets
+	 */
+	final void bind(final HE_RAS<?>[] sets) {
+		if (columns != null) {
+			throw new IllegalArgumentException("Attribute " + name + " is already part of a mesh structure.");
+		}
+		columns = new Column[sets.length];
+		for (int k = 0; k < sets.length; k++) {
+			final Column c = createColumn();
+			c.owner = sets[k];
+			final int n = sets[k].size();
+			c.ensureCapacity(n);
+			for (int i = 0; i < n; i++) {
+				c.reset(i);
+			}
+			sets[k].addColumn(c);
+			columns[k] = c;
+		}
+	}
+
+	/**
+	 * Detach the columns from their element sets.
+	 */
+	final void unbind() {
+		if (columns != null) {
+			for (final Column c : columns) {
+				c.owner.removeColumn(c);
+			}
+			columns = null;
+		}
+	}
+
+	/**
+	 * Detach the columns from their element sets but keep their storage for
+	 * reattach. The structure no longer updates the values.
+	 */
+	final void detach() {
+		if (columns != null) {
+			final Column[] c = columns;
+			unbind();
+			detached = c;
+		}
+	}
+
+	/**
+	 * Attach the columns kept by detach to element sets, without resetting
+	 * the values: positions hold whatever was stored before. Only for
+	 * attributes that can recognize stale values, like the generation stamps
+	 * of HE_Traversal. Binds new columns if nothing was detached.
+	 *
+	 * @param sets
+	 */
+	final void reattach(final HE_RAS<?>[] sets) {
+		if (detached == null || detached.length != sets.length) {
+			detached = null;
+			bind(sets);
+			return;
+		}
+		if (columns != null) {
+			throw new IllegalArgumentException("Attribute " + name + " is already part of a mesh structure.");
+		}
+		columns = detached;
+		detached = null;
+		for (int k = 0; k < sets.length; k++) {
+			final Column c = columns[k];
+			c.owner = sets[k];
+			c.ensureCapacity(sets[k].size());
+			sets[k].addColumn(c);
+		}
+	}
+
+	/**
+	 * Copy all values from an attribute of the same type whose element sets
+	 * have the same sizes and order.
+	 *
+	 * @param source
+	 */
+	final void copyValues(final HE_Attribute<E> source) {
+		for (int k = 0; k < columns.length; k++) {
+			columns[k].copyAll(source.columns[k], columns[k].owner.size());
+		}
+	}
+
+	/**
+	 * Copy the value of one element of source, an attribute of the same type,
+	 * to an element of this attribute.
+	 *
+	 * @param source
+	 * @param from
+	 * @param to
+	 */
+	final void copyValue(final HE_Attribute<E> source, final E from, final E to) {
+		final long f = source.locate(from);
+		final long t = locate(to);
+		final Column c = source.columns[column(f)];
+		c.stash(position(f), 0);
+		columns[column(t)].unstash(c, 0, position(t));
+	}
+
+	/**
+	 * Create a new unbound attribute with the same name, type and default.
+	 *
+	 * @return
+	 */
+	abstract HE_Attribute<E> create();
+
+	abstract Column createColumn();
+
+	/**
+	 * Storage of the values of one element set. Positions match the element
+	 * positions in the owning HE_RAS.
+	 */
+	static abstract class Column {
+		HE_RAS<?> owner;
+
+		/**
+		 * Make room for n elements.
+		 *
+		 * @param n
+		 */
+		abstract void ensureCapacity(int n);
+
+		/**
+		 * Set the value at position i to the default, growing the storage if
+		 * needed.
+		 *
+		 * @param i
+		 */
+		abstract void reset(int i);
+
+		/**
+		 *
+		 *
+		 * @param from
+		 * @param to
+		 */
+		abstract void move(int from, int to);
+
+		/**
+		 * Keep the value at position i aside in one of two slots.
+		 *
+		 * @param i
+		 * @param slot
+		 */
+		abstract void stash(int i, int slot);
+
+		/**
+		 * Restore a value kept aside in source, a column of the same
+		 * attribute, to position i.
+		 *
+		 * @param source
+		 * @param slot
+		 * @param i
+		 */
+		abstract void unstash(Column source, int slot, int i);
+
+		/**
+		 * Copy the first n values of source, a column of the same type.
+		 *
+		 * @param source
+		 * @param n
+		 */
+		abstract void copyAll(Column source, int n);
+
+		/**
+		 * The backing array.
+		 *
+		 * @return
+		 */
+		abstract Object data();
+
+		/**
+		 * Rebuild the storage for n elements. The value of element i is taken
+		 * from position index[i] of sources[set[i]], the backing arrays of
+		 * columns of the same attribute, or the default if set[i] is -1.
+		 *
+		 * @param sources
+		 * @param set
+		 * @param index
+		 * @param n
+		 */
+		abstract void remap(Object[] sources, int[] set, int[] index, int n);
+
+		/**
+		 * Shrink the storage to n elements.
+		 *
+		 * @param n
+		 */
+		abstract void trimToSize(int n);
+
+		static int grow(final int length, final int n) {
+			return Math.max(n, Math.max(16, length + (length >> 1)));
+		}
+	}
+
+	/**
+	 * Attribute with one int per element.
+	 *
+	 * @param <E>
+	 */
+	public static class HE_IntAttribute<E extends HE_Element> extends HE_Attribute<E> {
+		private final int defaultValue;
+
+		/**
+		 *
+		 *
+		 * @param name
+		 */
+		public HE_IntAttribute(final String name) {
+			this(name, 0);
+		}
+
+		/**
+		 *
+		 *
+		 * @param name
+		 * @param defaultValue
+		 *            value of newly added elements
+		 */
+		public HE_IntAttribute(final String name, final int defaultValue) {
+			super(name);
+			this.defaultValue = defaultValue;
+		}
+
+		@Override
+		public int getStride() {
+			return 1;
+		}
+
+		/**
+		 *
+		 *
+		 * @return
+		 */
+		public int getDefault() {
+			return defaultValue;
+		}
+
+		/**
+		 *
+		 *
+		 * @param e
+		 * @return
+		 */
+		public int get(final E e) {
+			final long l = locate(e);
+			return ((IntColumn) columns[column(l)]).data[position(l)];
+		}
+
+		/**
+		 *
+		 *
+		 * @param e
+		 * @param value
+		 */
+		public void set(final E e, final int value) {
+			final long l = locate(e);
+			((IntColumn) columns[column(l)]).data[position(l)] = value;
+		}
+
+		/**
+		 * Set the value of an element and return the previous one, with a
+		 * single lookup.
+		 *
+		 * @param e
+		 * @param value
+		 * @return
+		 */
+		int getAndSet(final E e, final int value) {
+			final long l = locate(e);
+			final int[] data = ((IntColumn) columns[column(l)]).data;
+			final int result = data[position(l)];
+			data[position(l)] = value;
+			return result;
+		}
+
+		/**
+		 *
+		 *
+		 * @param index
+		 *            element index
+		 * @return
+		 */
+		public int get(final int index) {
+			final long l = locate(index);
+			return ((IntColumn) columns[column(l)]).data[position(l)];
+		}
+
+		/**
+		 *
+		 *
+		 * @param index
+		 *            element index
+		 * @param value
+		 */
+		public void set(final int index, final int value) {
+			final long l = locate(index);
+			((IntColumn) columns[column(l)]).data[position(l)] = value;
+		}
+
+		/**
+		 * Set all values to value.
+		 *
+		 * @param value
+		 */
+		public void fill(final int value) {
+			for (final Column c : columns) {
+				Arrays.fill(((IntColumn) c).data, 0, c.owner.size(), value);
+			}
+		}
+
+		/**
+		 * All values in element order.
+		 *
+		 * @return
+		 */
+		public int[] toArray() {
+			final int[] result = new int[size()];
+			int offset = 0;
+			for (final Column c : columns) {
+				final int n = c.owner.size();
+				System.arraycopy(((IntColumn) c).data, 0, result, offset, n);
+				offset += n;
+			}
+			return result;
+		}
+
+		/**
+		 * Set all values, in element order.
+		 *
+		 * @param values
+		 */
+		public void set(final int[] values) {
+			if (values.length != size()) {
+				throw new IllegalArgumentException("Expected " + size() + " values, got " + values.length + ".");
+			}
+			int offset = 0;
+			for (final Column c : columns) {
+				final int n = c.owner.size();
+				System.arraycopy(values, offset, ((IntColumn) c).data, 0, n);
+				offset += n;
+			}
+		}
+
+		@Override
+		public double[] toDoubleArray() {
+			final int[] values = toArray();
+			final double[] result = new double[values.length];
+			for (int i = 0; i < values.length; i++) {
+				result[i] = values[i];
+			}
+			return result;
+		}
+
+		@Override
+		HE_Attribute<E> create() {
+			return new HE_IntAttribute<E>(getName(), defaultValue);
+		}
+
+		@Override
+		Column createColumn() {
+			return new IntColumn(defaultValue);
+		}
+
+		static class IntColumn extends Column {
+			private final int defaultValue;
+			int[] data = new int[0];
+			final int[] stash = new int[2];
+
+			IntColumn(final int defaultValue) {
+				this.defaultValue = defaultValue;
+			}
+
+			@Override
+			void ensureCapacity(final int n) {
+				if (n > data.length) {
+					data = Arrays.copyOf(data, grow(data.length, n));
+				}
+			}
+
+			@Override
+			void reset(final int i) {
+				if (i >= data.length) {
+					ensureCapacity(i + 1);
+				}
+				data[i] = defaultValue;
+			}
+
+			@Override
+			void move(final int from, final int to) {
+				data[to] = data[from];
+			}
+
+			@Override
+			void stash(final int i, final int slot) {
+				stash[slot] = data[i];
+			}
+
+			@Override
+			void unstash(final Column source, final int slot, final int i) {
+				data[i] = ((IntColumn) source).stash[slot];
+			}
+
+			@Override
+			void copyAll(final Column source, final int n) {
+				ensureCapacity(n);
+				System.arraycopy(((IntColumn) source).data, 0, data, 0, n);
+			}
+
+			@Override
+			Object data() {
+				return data;
+			}
+
+			@Override
+			void remap(final Object[] sources, final int[] set, final int[] index, final int n) {
+				final int[] result = new int[Math.max(n, 16)];
+				for (int i = 0; i < n; i++) {
+					result[i] = set[i] < 0 ? defaultValue : ((int[]) sources[set[i]])[index[i]];
+				}
+				data = result;
+			}
+
+			@Override
+			void trimToSize(final int n) {
+				data = Arrays.copyOf(data, n);
+			}
+		}
+	}
+
+	/**
+	 * Attribute with one float per element.
+	 *
+	 * @param <E>
+	 */
+	public static class HE_FloatAttribute<E extends HE_Element> extends HE_Attribute<E> {
+		private final float defaultValue;
+
+		/**
+		 *
+		 *
+		 * @param name
+		 */
+		public HE_FloatAttribute(final String name) {
+			this(name, 0f);
+		}
+
+		/**
+		 *
+		 *
+		 * @param name
+		 * @param defaultValue
+		 *            value of newly added elements
+		 */
+		public HE_FloatAttribute(final String name, final float defaultValue) {
+			super(name);
+			this.defaultValue = defaultValue;
+		}
+
+		@Override
+		public int getStride() {
+			return 1;
+		}
+
+		/**
+		 *
+		 *
+		 * @return
+		 */
+		public float getDefault() {
+			return defaultValue;
+		}
+
+		/**
+		 *
+		 *
+		 * @param e
+		 * @return
+		 */
+		public float get(final E e) {
+			final long l = locate(e);
+			return ((FloatColumn) columns[column(l)]).data[position(l)];
+		}
+
+		/**
+		 *
+		 *
+		 * @param e
+		 * @param value
+		 */
+		public void set(final E e, final float value) {
+			final long l = locate(e);
+			((FloatColumn) columns[column(l)]).data[position(l)] = value;
+		}
+
+		/**
+		 *
+		 *
+		 * @param index
+		 *            element index
+		 * @return
+		 */
+		public float get(final int index) {
+			final long l = locate(index);
+			return ((FloatColumn) columns[column(l)]).data[position(l)];
+		}
+
+		/**
+		 *
+		 *
+		 * @param index
+		 *            element index
+		 * @param value
+		 */
+		public void set(final int index, final float value) {
+			final long l = locate(index);
+			((FloatColumn) columns[column(l)]).data[position(l)] = value;
+		}
+
+		/**
+		 * Set all values to value.
+		 *
+		 * @param value
+		 */
+		public void fill(final float value) {
+			for (final Column c : columns) {
+				Arrays.fill(((FloatColumn) c).data, 0, c.owner.size(), value);
+			}
+		}
+
+		/**
+		 * All values in element order.
+		 *
+		 * @return
+		 */
+		public float[] toArray() {
+			final float[] result = new float[size()];
+			int offset = 0;
+			for (final Column c : columns) {
+				final int n = c.owner.size();
+				System.arraycopy(((FloatColumn) c).data, 0, result, offset, n);
+				offset += n;
+			}
+			return result;
+		}
+
+		/**
+		 * Set all values, in element order.
+		 *
+		 * @param values
+		 */
+		public void set(final float[] values) {
+			if (values.length != size()) {
+				throw new IllegalArgumentException("Expected " + size() + " values, got " + values.length + ".");
+			}
+			int offset = 0;
+			for (final Column c : columns) {
+				final int n = c.owner.size();
+				System.arraycopy(values, offset, ((FloatColumn) c).data, 0, n);
+				offset += n;
+			}
+		}
+
+		@Override
+		public double[] toDoubleArray() {
+			final float[] values = toArray();
+			final double[] result = new double[values.length];
+			for (int i = 0; i < values.length; i++) {
+				result[i] = values[i];
+			}
+			return result;
+		}
+
+		@Override
+		HE_Attribute<E> create() {
+			return new HE_FloatAttribute<E>(getName(), defaultValue);
+		}
+
+		@Override
+		Column createColumn() {
+			return new FloatColumn(defaultValue);
+		}
+
+		static class FloatColumn extends Column {
+			private final float defaultValue;
+			float[] data = new float[0];
+			final float[] stash = new float[2];
+
+			FloatColumn(final float defaultValue) {
+				this.defaultValue = defaultValue;
+			}
+
+			@Override
+			void ensureCapacity(final int n) {
+				if (n > data.length) {
+					data = Arrays.copyOf(data, grow(data.length, n));
+				}
+			}
+
+			@Override
+			void reset(final int i) {
+				if (i >= data.length) {
+					ensureCapacity(i + 1);
+				}
+				data[i] = defaultValue;
+			}
+
+			@Override
+			void move(final int from, final int to) {
+				data[to] = data[from];
+			}
+
+			@Override
+			void stash(final int i, final int slot) {
+				stash[slot] = data[i];
+			}
+
+			@Override
+			void unstash(final Column source, final int slot, final int i) {
+				data[i] = ((FloatColumn) source).stash[slot];
+			}
+
+			@Override
+			void copyAll(final Column source, final int n) {
+				ensureCapacity(n);
+				System.arraycopy(((FloatColumn) source).data, 0, data, 0, n);
+			}
+
+			@Override
+			Object data() {
+				return data;
+			}
+
+			@Override
+			void remap(final Object[] sources, final int[] set, final int[] index, final int n) {
+				final float[] result = new float[Math.max(n, 16)];
+				for (int i = 0; i < n; i++) {
+					result[i] = set[i] < 0 ? defaultValue : ((float[]) sources[set[i]])[index[i]];
+				}
+				data = result;
+			}
+
+			@Override
+			void trimToSize(final int n) {
+				data = Arrays.copyOf(data, n);
+			}
+		}
+	}
+
+	/**
+	 * Attribute with one double per element.
+	 *
+	 * @param <E>
+	 */
+	public static class HE_DoubleAttribute<E extends HE_Element> extends HE_Attribute<E> {
+		private final double defaultValue;
+
+		/**
+		 *
+		 *
+		 * @param name
+		 */
+		public HE_DoubleAttribute(final String name) {
+			this(name, 0.0);
+		}
+
+		/**
+		 *
+		 *
+		 * @param name
+		 * @param defaultValue
+		 *            value of newly added elements
+		 */
+		public HE_DoubleAttribute(final String name, final double defaultValue) {
+			super(name);
+			this.defaultValue = defaultValue;
+		}
+
+		@Override
+		public int getStride() {
+			return 1;
+		}
+
+		/**
+		 *
+		 *
+		 * @return
+		 */
+		public double getDefault() {
+			return defaultValue;
+		}
+
+		/**
+		 *
+		 *
+		 * @param e
+		 * @return
+		 */
+		public double get(final E e) {
+			final long l = locate(e);
+			return ((DoubleColumn) columns[column(l)]).data[position(l)];
+		}
+
+		/**
+		 *
+		 *
+		 * @param e
+		 * @param value
+		 */
+		public void set(final E e, final double value) {
+			final long l = locate(e);
+			((DoubleColumn) columns[column(l)]).data[position(l)] = value;
+		}
+
+		/**
+		 *
+		 *
+		 * @param index
+		 *            element index
+		 * @return
+		 */
+		public double get(final int index) {
+			final long l = locate(index);
+			return ((DoubleColumn) columns[column(l)]).data[position(l)];
+		}
+
+		/**
+		 *
+		 *
+		 * @param index
+		 *            element index
+		 * @param value
+		 */
+		public void set(final int index, final double value) {
+			final long l = locate(index);
+			((DoubleColumn) columns[column(l)]).data[position(l)] = value;
+		}
+
+		/**
+		 * Set all values to value.
+		 *
+		 * @param value
+		 */
+		public void fill(final double value) {
+			for (final Column c : columns) {
+				Arrays.fill(((DoubleColumn) c).data, 0, c.owner.size(), value);
+			}
+		}
+
+		/**
+		 * All values in element order.
+		 *
+		 * @return
+		 */
+		public double[] toArray() {
+			final double[] result = new double[size()];
+			int offset = 0;
+			for (final Column c : columns) {
+				final int n = c.owner.size();
+				System.arraycopy(((DoubleColumn) c).data, 0, result, offset, n);
+				offset += n;
+			}
+			return result;
+		}
+
+		/**
+		 * Set all values, in element order.
+		 *
+		 * @param values
+		 */
+		public void set(final double[] values) {
+			if (values.length != size()) {
+				throw new IllegalArgumentException("Expected " + size() + " values, got " + values.length + ".");
+			}
+			int offset = 0;
+			for (final Column c : columns) {
+				final int n = c.owner.size();
+				System.arraycopy(values, offset, ((DoubleColumn) c).data, 0, n);
+				offset += n;
+			}
+		}
+
+		@Override
+		public double[] toDoubleArray() {
+			return toArray();
+		}
+
+		@Override
+		HE_Attribute<E> create() {
+			return new HE_DoubleAttribute<E>(getName(), defaultValue);
+		}
+
+		@Override
+		Column createColumn() {
+			return new DoubleColumn(defaultValue);
+		}
+
+		static class DoubleColumn extends Column {
+			private final double defaultValue;
+			double[] data = new double[0];
+			final double[] stash = new double[2];
+
+			DoubleColumn(final double defaultValue) {
+				this.defaultValue = defaultValue;
+			}
+
+			@Override
+			void ensureCapacity(final int n) {
+				if (n > data.length) {
+					data = Arrays.copyOf(data, grow(data.length, n));
+				}
+			}
+
+			@Override
+			void reset(final int i) {
+				if (i >= data.length) {
+					ensureCapacity(i + 1);
+				}
+				data[i] = defaultValue;
+			}
+
+			@Override
+			void move(final int from, final int to) {
+				data[to] = data[from];
+			}
+
+			@Override
+			void stash(final int i, final int slot) {
+				stash[slot] = data[i];
+			}
+
+			@Override
+			void unstash(final Column source, final int slot, final int i) {
+				data[i] = ((DoubleColumn) source).stash[slot];
+			}
+
+			@Override
+			void copyAll(final Column source, final int n) {
+				ensureCapacity(n);
+				System.arraycopy(((DoubleColumn) source).data, 0, data, 0, n);
+			}
+
+			@Override
+			Object data() {
+				return data;
+			}
+
+			@Override
+			void remap(final Object[] sources, final int[] set, final int[] index, final int n) {
+				final double[] result = new double[Math.max(n, 16)];
+				for (int i = 0; i < n; i++) {
+					result[i] = set[i] < 0 ? defaultValue : ((double[]) sources[set[i]])[index[i]];
+				}
+				data = result;
+			}
+
+			@Override
+			void trimToSize(final int n) {
+				data = Arrays.copyOf(data, n);
+			}
+		}
+	}
+
+	/**
+	 * Attribute with three doubles per element, e.g. a texture coordinate or a
+	 * displacement. The values are interleaved: x0, y0, z0, x1, y1, z1,...
+	 *
+	 * @param <E>
+	 */
+	public static class HE_Vec3Attribute<E extends HE_Element> extends HE_Attribute<E> {
+		private final double dx, dy, dz;
+
+		/**
+		 *
+		 *
+		 * @param name
+		 */
+		public HE_Vec3Attribute(final String name) {
+			this(name, 0.0, 0.0, 0.0);
+		}
+
+		/**
+		 *
+		 *
+		 * @param name
+		 * @param x
+		 *            default x value of newly added elements
+		 * @param y
+		 *            default y value
+		 * @param z
+		 *            default z value
+		 */
+		public HE_Vec3Attribute(final String name, final double x, final double y, final double z) {
+			super(name);
+			dx = x;
+			dy = y;
+			dz = z;
+		}
+
+		@Override
+		public int getStride() {
+			return 3;
+		}
+
+		/**
+		 *
+		 *
+		 * @param e
+		 * @return
+		 */
+		public WB_Point get(final E e) {
+			final long l = locate(e);
+			final double[] data = ((Vec3Column) columns[column(l)]).data;
+			final int i = 3 * position(l);
+			return new WB_Point(data[i], data[i + 1], data[i + 2]);
+		}
+
+		/**
+		 *
+		 *
+		 * @param e
+		 * @param component
+		 *            0, 1 or 2
+		 * @return
+		 */
+		public double get(final E e, final int component) {
+			final long l = locate(e);
+			return ((Vec3Column) columns[column(l)]).data[3 * position(l) + component];
+		}
+
+		/**
+		 * Copy the value into result, without allocating.
+		 *
+		 * @param e
+		 * @param result
+		 *            array of at least 3 doubles
+		 */
+		public void get(final E e, final double[] result) {
+			final long l = locate(e);
+			System.arraycopy(((Vec3Column) columns[column(l)]).data, 3 * position(l), result, 0, 3);
+		}
+
+		/**
+		 *
+		 *
+		 * @param e
+		 * @param x
+		 * @param y
+		 * @param z
+		 */
+		public void set(final E e, final double x, final double y, final double z) {
+			final long l = locate(e);
+			final double[] data = ((Vec3Column) columns[column(l)]).data;
+			final int i = 3 * position(l);
+			data[i] = x;
+			data[i + 1] = y;
+			data[i + 2] = z;
+		}
+
+		/**
+		 *
+		 *
+		 * @param e
+		 * @param value
+		 */
+		public void set(final E e, final WB_Coord value) {
+			set(e, value.xd(), value.yd(), value.zd());
+		}
+
+		/**
+		 *
+		 *
+		 * @param index
+		 *            element index
+		 * @return
+		 */
+		public WB_Point get(final int index) {
+			final long l = locate(index);
+			final double[] data = ((Vec3Column) columns[column(l)]).data;
+			final int i = 3 * position(l);
+			return new WB_Point(data[i], data[i + 1], data[i + 2]);
+		}
+
+		/**
+		 *
+		 *
+		 * @param index
+		 *            element index
+		 * @param x
+		 * @param y
+		 * @param z
+		 */
+		public void set(final int index, final double x, final double y, final double z) {
+			final long l = locate(index);
+			final double[] data = ((Vec3Column) columns[column(l)]).data;
+			final int i = 3 * position(l);
+			data[i] = x;
+			data[i + 1] = y;
+			data[i + 2] = z;
+		}
+
+		/**
+		 * Set all values to (x,y,z).
+		 *
+		 * @param x
+		 * @param y
+		 * @param z
+		 */
+		public void fill(final double x, final double y, final double z) {
+			for (final Column c : columns) {
+				final double[] data = ((Vec3Column) c).data;
+				final int n = 3 * c.owner.size();
+				for (int i = 0; i < n; i += 3) {
+					data[i] = x;
+					data[i + 1] = y;
+					data[i + 2] = z;
+				}
+			}
+		}
+
+		/**
+		 * All values in element order, interleaved.
+		 *
+		 * @return
+		 */
+		public double[] toArray() {
+			final double[] result = new double[3 * size()];
+			int offset = 0;
+			for (final Column c : columns) {
+				final int n = 3 * c.owner.size();
+				System.arraycopy(((Vec3Column) c).data, 0, result, offset, n);
+				offset += n;
+			}
+			return result;
+		}
+
+		/**
+		 * Set all values, in element order, interleaved.
+		 *
+		 * @param values
+		 */
+		public void set(final double[] values) {
+			if (values.length != 3 * size()) {
+				throw new IllegalArgumentException("Expected " + 3 * size() + " values, got " + values.length + ".");
+			}
+			int offset = 0;
+			for (final Column c : columns) {
+				final int n = 3 * c.owner.size();
+				System.arraycopy(values, offset, ((Vec3Column) c).data, 0, n);
+				offset += n;
+			}
+		}
+
+		@Override
+		public double[] toDoubleArray() {
+			return toArray();
+		}
+
+		@Override
+		HE_Attribute<E> create() {
+			return new HE_Vec3Attribute<E>(getName(), dx, dy, dz);
+		}
+
+		@Override
+		Column createColumn() {
+			return new Vec3Column(dx, dy, dz);
+		}
+
+		static class Vec3Column extends Column {
+			private final double dx, dy, dz;
+			double[] data = new double[0];
+			final double[] stash = new double[6];
+
+			Vec3Column(final double dx, final double dy, final double dz) {
+				this.dx = dx;
+				this.dy = dy;
+				this.dz = dz;
+			}
+
+			@Override
+			void ensureCapacity(final int n) {
+				if (3 * n > data.length) {
+					data = Arrays.copyOf(data, 3 * grow(data.length / 3, n));
+				}
+			}
+
+			@Override
+			void reset(final int i) {
+				if (3 * i >= data.length) {
+					ensureCapacity(i + 1);
+				}
+				data[3 * i] = dx;
+				data[3 * i + 1] = dy;
+				data[3 * i + 2] = dz;
+			}
+
+			@Override
+			void move(final int from, final int to) {
+				System.arraycopy(data, 3 * from, data, 3 * to, 3);
+			}
+
+			@Override
+			void stash(final int i, final int slot) {
+				System.arraycopy(data, 3 * i, stash, 3 * slot, 3);
+			}
+
+			@Override
+			void unstash(final Column source, final int slot, final int i) {
+				System.arraycopy(((Vec3Column) source).stash, 3 * slot, data, 3 * i, 3);
+			}
+
+			@Override
+			void copyAll(final Column source, final int n) {
+				ensureCapacity(n);
+				System.arraycopy(((Vec3Column) source).data, 0, data, 0, 3 * n);
+			}
+
+			@Override
+			Object data() {
+				return data;
+			}
+
+			@Override
+			void remap(final Object[] sources, final int[] set, final int[] index, final int n) {
+				final double[] result = new double[3 * Math.max(n, 16)];
+				for (int i = 0; i < n; i++) {
+					if (set[i] < 0) {
+						result[3 * i] = dx;
+						result[3 * i + 1] = dy;
+						result[3 * i + 2] = dz;
+					} else {
+						System.arraycopy((double[]) sources[set[i]], 3 * index[i], result, 3 * i, 3);
+					}
+				}
+				data = result;
+			}
+
+			@Override
+			void trimToSize(final int n) {
+				data = Arrays.copyOf(data, 3 * n);
+			}
+		}
+	}
+}
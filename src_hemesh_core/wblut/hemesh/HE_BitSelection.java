@@ -0,0 +1,630 @@
+/*
+ * This file is part of HE_Mesh, a library for creating and manipulating meshes.
+ * It is dedicated to the public domain. To the extent possible under law,
+ * I , Frederik Vanhoutte, have waived all copyright and related or neighboring
+ * rights.
+ *
+ * This work is published from Belgium. (http://creativecommons.org/publicdomain/zero/1.0/)
+ *
+ */
+package wblut.hemesh;
+
+import java.util.BitSet;
+import java.util.List;
+
+import javolution.util.FastTable;
+import wblut.core.WB_ParallelExecutor;
+import wblut.core.WB_ParallelExecutor.WB_RangeAction;
+
+/**
+ * Selection of faces, vertices and halfedges of a mesh stored as bitsets over
+ * the element indices of the parent mesh. Union, subtraction and intersection
+ * work a word at a time. The selected faces that border unselected faces or
+ * the mesh boundary are tracked, grow, shrink and surround only visit those
+ * and their neighbors, not the whole selection. They select the same faces
+ * as the methods of HE_Selection.
+ *
+ * Face neighbors are looked up once, on the first grow, shrink, surround or
+ * outer edge query, and kept in flat arrays. Indices of mesh elements change
+ * when the mesh is modified, a bit selection is only valid as long as the
+ * parent mesh is not. Use toSelection() to get an HE_Selection.
+ *
+ * @author Frederik Vanhoutte (W:Blut)
+ *
+ */
+public class HE_BitSelection {
+	private final HE_Mesh parent;
+	private final BitSet faces;
+	private final BitSet vertices;
+	private final BitSet halfedges;
+	/** Selected faces with an unselected or missing neighbor, null if unknown. */
+	private BitSet boundary;
+	/**
+	 * Face neighbors: the neighbors of face i, one per halfedge starting at
+	 * its first halfedge, are neighbors[offsets[i]] to neighbors[offsets[i+1]],
+	 * -1 across a boundary.
+	 */
+	private int[] offsets;
+	private int[] neighbors;
+
+	/**
+	 * Empty selection.
+	 *
+	 * @param parent
+	 */
+	public HE_BitSelection(final HE_Mesh parent) {
+		this.parent = parent;
+		faces = new BitSet(parent.getNumberOfFaces());
+		vertices = new BitSet(parent.getNumberOfVertices());
+		halfedges = new BitSet(parent.getNumberOfHalfedges());
+		boundary = new BitSet();
+	}
+
+	/**
+	 * Selection of the same elements as an HE_Selection.
+	 *
+	 * @param selection
+	 */
+	public HE_BitSelection(final HE_Selection selection) {
+		this(selection.parent);
+		HE_FaceIterator fItr = selection.fItr();
+		while (fItr.hasNext()) {
+			add(fItr.next());
+		}
+		HE_VertexIterator vItr = selection.vItr();
+		while (vItr.hasNext()) {
+			add(vItr.next());
+		}
+		HE_HalfedgeIterator heItr = selection.heItr();
+		while (heItr.hasNext()) {
+			add(heItr.next());
+		}
+	}
+
+	/**
+	 * Copy of a bit selection, sharing the face neighbors.
+	 *
+	 * @param selection
+	 */
+	public HE_BitSelection(final HE_BitSelection selection) {
+		parent = selection.parent;
+		faces = (BitSet) selection.faces.clone();
+		vertices = (BitSet) selection.vertices.clone();
+		halfedges = (BitSet) selection.halfedges.clone();
+		boundary = selection.boundary == null ? null : (BitSet) selection.boundary.clone();
+		offsets = selection.offsets;
+		neighbors = selection.neighbors;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public HE_Mesh getParent() {
+		return parent;
+	}
+
+	/**
+	 * Get the selection as HE_Selection.
+	 *
+	 * @return new HE_Selection of the parent mesh
+	 */
+	public HE_Selection toSelection() {
+		final HE_Selection selection = new HE_Selection(parent);
+		selection.addFaces(getFaces());
+		selection.addVertices(getVertices());
+		selection.addHalfedges(getHalfedges());
+		return selection;
+	}
+
+	/**
+	 *
+	 *
+	 * @return selected faces in index order
+	 */
+	public List<HE_Face> getFaces() {
+		final List<HE_Face> result = new FastTable<HE_Face>();
+		for (int i = faces.nextSetBit(0); i >= 0; i = faces.nextSetBit(i + 1)) {
+			result.add(parent.getFaceWithIndex(i));
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 *
+	 * @return selected vertices in index order
+	 */
+	public List<HE_Vertex> getVertices() {
+		final List<HE_Vertex> result = new FastTable<HE_Vertex>();
+		for (int i = vertices.nextSetBit(0); i >= 0; i = vertices.nextSetBit(i + 1)) {
+			result.add(parent.getVertexWithIndex(i));
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 *
+	 * @return selected halfedges in index order
+	 */
+	public List<HE_Halfedge> getHalfedges() {
+		final List<HE_Halfedge> result = new FastTable<HE_Halfedge>();
+		for (int i = halfedges.nextSetBit(0); i >= 0; i = halfedges.nextSetBit(i + 1)) {
+			result.add(parent.getHalfedgeWithIndex(i));
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 *
+	 * @return indices of the selected faces
+	 */
+	public int[] getFaceIndices() {
+		return faces.stream().toArray();
+	}
+
+	/**
+	 *
+	 *
+	 * @return indices of the selected vertices
+	 */
+	public int[] getVertexIndices() {
+		return vertices.stream().toArray();
+	}
+
+	/**
+	 *
+	 *
+	 * @return indices of the selected halfedges
+	 */
+	public int[] getHalfedgeIndices() {
+		return halfedges.stream().toArray();
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public int getNumberOfFaces() {
+		return faces.cardinality();
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public int getNumberOfVertices() {
+		return vertices.cardinality();
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public int getNumberOfHalfedges() {
+		return halfedges.cardinality();
+	}
+
+	/**
+	 *
+	 *
+	 * @param f
+	 */
+	public void add(final HE_Face f) {
+		final int i = parent.getIndex(f);
+		if (i >= 0 && !faces.get(i)) {
+			faces.set(i);
+			boundary = null;
+		}
+	}
+
+	/**
+	 *
+	 *
+	 * @param v
+	 */
+	public void add(final HE_Vertex v) {
+		final int i = parent.getIndex(v);
+		if (i >= 0) {
+			vertices.set(i);
+		}
+	}
+
+	/**
+	 *
+	 *
+	 * @param he
+	 */
+	public void add(final HE_Halfedge he) {
+		final int i = parent.getIndex(he);
+		if (i >= 0) {
+			halfedges.set(i);
+		}
+	}
+
+	/**
+	 *
+	 *
+	 * @param f
+	 */
+	public void remove(final HE_Face f) {
+		final int i = parent.getIndex(f);
+		if (i >= 0 && faces.get(i)) {
+			faces.clear(i);
+			boundary = null;
+		}
+	}
+
+	/**
+	 *
+	 *
+	 * @param v
+	 */
+	public void remove(final HE_Vertex v) {
+		final int i = parent.getIndex(v);
+		if (i >= 0) {
+			vertices.clear(i);
+		}
+	}
+
+	/**
+	 *
+	 *
+	 * @param he
+	 */
+	public void remove(final HE_Halfedge he) {
+		final int i = parent.getIndex(he);
+		if (i >= 0) {
+			halfedges.clear(i);
+		}
+	}
+
+	/**
+	 *
+	 *
+	 * @param f
+	 * @return
+	 */
+	public boolean contains(final HE_Face f) {
+		final int i = parent.getIndex(f);
+		return i >= 0 && faces.get(i);
+	}
+
+	/**
+	 *
+	 *
+	 * @param v
+	 * @return
+	 */
+	public boolean contains(final HE_Vertex v) {
+		final int i = parent.getIndex(v);
+		return i >= 0 && vertices.get(i);
+	}
+
+	/**
+	 *
+	 *
+	 * @param he
+	 * @return
+	 */
+	public boolean contains(final HE_Halfedge he) {
+		final int i = parent.getIndex(he);
+		return i >= 0 && halfedges.get(i);
+	}
+
+	/**
+	 * Select all faces.
+	 */
+	public void selectAllFaces() {
+		faces.set(0, parent.getNumberOfFaces());
+		boundary = null;
+	}
+
+	/**
+	 * Clear the selection.
+	 */
+	public void clear() {
+		faces.clear();
+		vertices.clear();
+		halfedges.clear();
+		boundary = new BitSet();
+	}
+
+	/**
+	 * Add the elements of another selection of the same mesh.
+	 *
+	 * @param sel
+	 */
+	public void union(final HE_BitSelection sel) {
+		checkParent(sel);
+		faces.or(sel.faces);
+		vertices.or(sel.vertices);
+		halfedges.or(sel.halfedges);
+		boundary = null;
+	}
+
+	/**
+	 * Remove the elements of another selection of the same mesh.
+	 *
+	 * @param sel
+	 */
+	public void subtract(final HE_BitSelection sel) {
+		checkParent(sel);
+		faces.andNot(sel.faces);
+		vertices.andNot(sel.vertices);
+		halfedges.andNot(sel.halfedges);
+		boundary = null;
+	}
+
+	/**
+	 * Remove the elements that are not in another selection of the same mesh.
+	 *
+	 * @param sel
+	 */
+	public void intersect(final HE_BitSelection sel) {
+		checkParent(sel);
+		faces.and(sel.faces);
+		vertices.and(sel.vertices);
+		halfedges.and(sel.halfedges);
+		boundary = null;
+	}
+
+	/**
+	 * Invert the face selection.
+	 */
+	public void invertFaces() {
+		faces.flip(0, parent.getNumberOfFaces());
+		boundary = null;
+	}
+
+	/**
+	 * Invert the vertex selection.
+	 */
+	public void invertVertices() {
+		vertices.flip(0, parent.getNumberOfVertices());
+	}
+
+	/**
+	 * Invert the halfedge selection.
+	 */
+	public void invertHalfedges() {
+		halfedges.flip(0, parent.getNumberOfHalfedges());
+	}
+
+	private void checkParent(final HE_BitSelection sel) {
+		if (sel.parent != parent) {
+			throw new IllegalArgumentException("Selections belong to different meshes.");
+		}
+	}
+
+	/**
+	 * Grow face selection outwards by one face.
+	 */
+	public void grow() {
+		final BitSet front = getBoundary();
+		final BitSet layer = getOutsideNeighbors(front);
+		faces.or(layer);
+		front.or(layer);
+		removeInnerFaces(front);
+		boundary = front;
+	}
+
+	/**
+	 * Grow face selection outwards.
+	 *
+	 * @param n
+	 *            number of faces to grow
+	 */
+	public void grow(final int n) {
+		for (int i = 0; i < n; i++) {
+			grow();
+		}
+	}
+
+	/**
+	 * Shrink face selection inwards by one face.
+	 */
+	public void shrink() {
+		final BitSet removed = getBoundary();
+		faces.andNot(removed);
+		// only faces next to a removed face can have become boundary faces
+		final BitSet front = new BitSet(faces.length());
+		int g;
+		for (int f = removed.nextSetBit(0); f >= 0; f = removed.nextSetBit(f + 1)) {
+			for (int k = offsets[f]; k < offsets[f + 1]; k++) {
+				g = neighbors[k];
+				if (g >= 0 && faces.get(g)) {
+					front.set(g);
+				}
+			}
+		}
+		boundary = front;
+	}
+
+	/**
+	 * Shrink face selection inwards.
+	 *
+	 * @param n
+	 *            number of faces to shrink
+	 */
+	public void shrink(final int n) {
+		for (int i = 0; i < n; i++) {
+			shrink();
+		}
+	}
+
+	/**
+	 * Select faces surrounding current face selection.
+	 */
+	public void surround() {
+		final BitSet layer = getOutsideNeighbors(getBoundary());
+		faces.clear();
+		faces.or(layer);
+		// every face of the layer borders the previous selection
+		boundary = layer;
+	}
+
+	/**
+	 * Select faces surrounding current face selection at a distance of n-1
+	 * faces.
+	 *
+	 * @param n
+	 *            distance to current selection
+	 */
+	public void surround(final int n) {
+		grow(n - 1);
+		surround();
+	}
+
+	/**
+	 * Get the edges between selected and unselected faces, or on the mesh
+	 * boundary, found by visiting the boundary faces of the selection only.
+	 *
+	 * @return outer edges
+	 */
+	public List<HE_Halfedge> getOuterEdges() {
+		final BitSet front = getBoundary();
+		final List<HE_Halfedge> result = new FastTable<HE_Halfedge>();
+		HE_Halfedge he;
+		HE_Face face;
+		int k, g;
+		for (int f = front.nextSetBit(0); f >= 0; f = front.nextSetBit(f + 1)) {
+			face = parent.getFaceWithIndex(f);
+			he = face.getHalfedge();
+			k = offsets[f];
+			do {
+				g = neighbors[k++];
+				if (g < 0 || !faces.get(g)) {
+					result.add(he.isEdge() || he.getPair() == null ? he : he.getPair());
+				}
+				he = he.getNextInFace();
+			} while (he != face.getHalfedge());
+		}
+		return result;
+	}
+
+	/**
+	 * Select all vertices of the selected faces.
+	 */
+	public void collectVertices() {
+		HE_Face face;
+		HE_Halfedge he;
+		for (int f = faces.nextSetBit(0); f >= 0; f = faces.nextSetBit(f + 1)) {
+			face = parent.getFaceWithIndex(f);
+			he = face.getHalfedge();
+			if (he == null) {
+				continue;
+			}
+			do {
+				vertices.set(parent.getIndex(he.getVertex()));
+				he = he.getNextInFace();
+			} while (he != face.getHalfedge());
+		}
+	}
+
+	/**
+	 * Select all halfedges of the selected faces.
+	 */
+	public void collectHalfedges() {
+		HE_Face face;
+		HE_Halfedge he;
+		for (int f = faces.nextSetBit(0); f >= 0; f = faces.nextSetBit(f + 1)) {
+			face = parent.getFaceWithIndex(f);
+			he = face.getHalfedge();
+			if (he == null) {
+				continue;
+			}
+			do {
+				halfedges.set(parent.getIndex(he));
+				he = he.getNextInFace();
+			} while (he != face.getHalfedge());
+		}
+	}
+
+	/**
+	 * Unselected neighbors of a set of faces.
+	 */
+	private BitSet getOutsideNeighbors(final BitSet front) {
+		final BitSet layer = new BitSet(faces.length());
+		int g;
+		for (int f = front.nextSetBit(0); f >= 0; f = front.nextSetBit(f + 1)) {
+			for (int k = offsets[f]; k < offsets[f + 1]; k++) {
+				g = neighbors[k];
+				if (g >= 0 && !faces.get(g)) {
+					layer.set(g);
+				}
+			}
+		}
+		return layer;
+	}
+
+	/**
+	 * Clear the faces that have only selected neighbors.
+	 */
+	private void removeInnerFaces(final BitSet set) {
+		int k, end;
+		for (int f = set.nextSetBit(0); f >= 0; f = set.nextSetBit(f + 1)) {
+			for (k = offsets[f], end = offsets[f + 1]; k < end; k++) {
+				if (neighbors[k] < 0 || !faces.get(neighbors[k])) {
+					break;
+				}
+			}
+			if (k == end) {
+				set.clear(f);
+			}
+		}
+	}
+
+	private BitSet getBoundary() {
+		buildNeighbors();
+		if (boundary == null) {
+			boundary = (BitSet) faces.clone();
+			removeInnerFaces(boundary);
+		}
+		return boundary;
+	}
+
+	private void buildNeighbors() {
+		final int nf = parent.getNumberOfFaces();
+		if (offsets != null) {
+			if (offsets.length != nf + 1) {
+				throw new IllegalStateException("Parent mesh was modified after the selection was made.");
+			}
+			return;
+		}
+		final int[] offsets = new int[nf + 1];
+		for (int i = 0; i < nf; i++) {
+			offsets[i + 1] = offsets[i] + parent.getFaceWithIndex(i).getFaceOrder();
+		}
+		final int[] neighbors = new int[offsets[nf]];
+		WB_ParallelExecutor.instance().forRange(0, nf, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				HE_Face face;
+				HE_Halfedge he;
+				int k;
+				for (int i = start; i < end; i++) {
+					face = parent.getFaceWithIndex(i);
+					he = face.getHalfedge();
+					k = offsets[i];
+					if (he == null) {
+						continue;
+					}
+					do {
+						neighbors[k++] = he.getPair() == null || he.getPair().getFace() == null ? -1
+								: parent.getIndex(he.getPair().getFace());
+						he = he.getNextInFace();
+					} while (he != face.getHalfedge());
+				}
+			}
+		});
+		this.offsets = offsets;
+		this.neighbors = neighbors;
+	}
+}
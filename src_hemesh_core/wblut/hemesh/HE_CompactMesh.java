@@ -0,0 +1,1393 @@
+/*
+ * This file is part of HE_Mesh, a library for creating and manipulating meshes.
+ * It is dedicated to the public domain. To the extent possible under law,
+ * I , Frederik Vanhoutte, have waived all copyright and related or neighboring
+ * rights.
+ *
+ * This work is published from Belgium. (http://creativecommons.org/publicdomain/zero/1.0/)
+ *
+ */
+package wblut.hemesh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import wblut.geom.WB_AABB;
+import wblut.geom.WB_Coord;
+import wblut.geom.WB_MutableCoord;
+
+/**
+ * Compact index-based half-edge data structure. Connectivity is stored in
+ * primitive int arrays, coordinates in a single double[]. Elements are plain
+ * indices, no per-element objects are created. Lightweight, reusable handles
+ * give object-like access to a single element.
+ *
+ * A halfedge without a face (outer boundary) has face index -1. An unpaired
+ * halfedge has pair index -1.
+ *
+ * This is a side structure for code that works on flat arrays, not an
+ * alternative backend for HE_Mesh. Only the methods of this class and the
+ * modifiers that just move vertices, see {@link #modify(HEM_Modifier)}, work
+ * on it directly. Circulators, HET_MeshOp, the HEC_ and HES_ classes and all
+ * other HEM_ classes need a HE_Mesh, and {@link #toMesh()} rebuilds the full
+ * object graph.
+ *
+ * Conversion from and back to HE_Mesh is lossless for connectivity,
+ * positions, labels, element keys and the values of the vertex, face and
+ * halfedge attributes. The order of vertices, faces and halfedges is kept.
+ * Internal labels, texture coordinates and texture ids are not stored.
+ * Elements added to the compact mesh get new keys and default attribute
+ * values. A mesh recreated with toMesh() has the same keys as its source, the
+ * two should not be mixed.
+ *
+ * {@link #copy()} shares all storage with the copy. Coordinates, connectivity
+ * and labels are three separate groups, each is cloned by the first write
+ * into it, on either side of the copy. A copy that only has its vertices moved
+ * never duplicates its connectivity. Applying a vertex-only modifier to a copy,
+ * e.g. copy().modify(new HEM_Noise()), clones the coordinates and nothing else.
+ *
+ * @author Frederik Vanhoutte (W:Blut)
+ *
+ */
+public class HE_CompactMesh {
+	/** Vertex coordinates, x0,y0,z0,x1,y1,z1,... */
+	protected double[] vertexCoords;
+	/** Outgoing halfedge per vertex. */
+	protected int[] vertexHalfedge;
+	protected int[] vertexLabels;
+	/** Next halfedge in face. */
+	protected int[] halfedgeNext;
+	/** Paired halfedge. */
+	protected int[] halfedgePair;
+	/** Start vertex of halfedge. */
+	protected int[] halfedgeVertex;
+	/** Face of halfedge, -1 for outer boundary halfedges. */
+	protected int[] halfedgeFace;
+	protected int[] halfedgeLabels;
+	/** Halfedge per face. */
+	protected int[] faceHalfedge;
+	protected int[] faceLabels;
+	/** Keys of the source elements, -1 for elements added later. */
+	protected long[] vertexKeys;
+	protected long[] halfedgeKeys;
+	protected long[] faceKeys;
+	// attributes of the source, unbound prototypes and values in element order
+	private List<HE_Attribute<HE_Vertex>> vertexAttributes;
+	private List<HE_Attribute.Column> vertexAttributeValues;
+	private List<HE_Attribute<HE_Halfedge>> halfedgeAttributes;
+	private List<HE_Attribute.Column> halfedgeAttributeValues;
+	private List<HE_Attribute<HE_Face>> faceAttributes;
+	private List<HE_Attribute.Column> faceAttributeValues;
+	private int capturedVertices;
+	private int capturedHalfedges;
+	private int capturedFaces;
+	protected int numberOfVertices;
+	protected int numberOfHalfedges;
+	protected int numberOfFaces;
+	// storage groups still shared with a copy, cloned before the next write
+	private boolean sharedCoords;
+	private boolean sharedConnectivity;
+	private boolean sharedLabels;
+
+	/**
+	 * Instantiates a new empty HE_CompactMesh.
+	 */
+	public HE_CompactMesh() {
+		this(16, 64, 16);
+	}
+
+	/**
+	 * Instantiates a new empty HE_CompactMesh with pre-sized storage.
+	 *
+	 * @param vertexCapacity
+	 * @param halfedgeCapacity
+	 * @param faceCapacity
+	 */
+	public HE_CompactMesh(final int vertexCapacity, final int halfedgeCapacity, final int faceCapacity) {
+		final int nv = Math.max(1, vertexCapacity);
+		final int nhe = Math.max(1, halfedgeCapacity);
+		final int nf = Math.max(1, faceCapacity);
+		vertexCoords = new double[3 * nv];
+		vertexHalfedge = new int[nv];
+		vertexLabels = new int[nv];
+		vertexKeys = new long[nv];
+		halfedgeNext = new int[nhe];
+		halfedgePair = new int[nhe];
+		halfedgeVertex = new int[nhe];
+		halfedgeFace = new int[nhe];
+		halfedgeLabels = new int[nhe];
+		halfedgeKeys = new long[nhe];
+		faceHalfedge = new int[nf];
+		faceLabels = new int[nf];
+		faceKeys = new long[nf];
+		clearAttributes();
+		numberOfVertices = 0;
+		numberOfHalfedges = 0;
+		numberOfFaces = 0;
+	}
+
+	/**
+	 * Instantiates a new HE_CompactMesh with the contents of a mesh structure.
+	 * Element indices follow the iteration order of the source: vItr(),
+	 * heItr() and fItr().
+	 *
+	 * @param mesh
+	 */
+	public HE_CompactMesh(final HE_MeshStructure mesh) {
+		this(mesh.getNumberOfVertices(), mesh.getNumberOfHalfedges(), mesh.getNumberOfFaces());
+		set(mesh);
+	}
+
+	/**
+	 * Copy sharing the storage of this mesh.
+	 *
+	 * @param mesh
+	 */
+	private HE_CompactMesh(final HE_CompactMesh mesh) {
+		vertexCoords = mesh.vertexCoords;
+		vertexHalfedge = mesh.vertexHalfedge;
+		vertexLabels = mesh.vertexLabels;
+		halfedgeNext = mesh.halfedgeNext;
+		halfedgePair = mesh.halfedgePair;
+		halfedgeVertex = mesh.halfedgeVertex;
+		halfedgeFace = mesh.halfedgeFace;
+		halfedgeLabels = mesh.halfedgeLabels;
+		faceHalfedge = mesh.faceHalfedge;
+		faceLabels = mesh.faceLabels;
+		vertexKeys = mesh.vertexKeys;
+		halfedgeKeys = mesh.halfedgeKeys;
+		faceKeys = mesh.faceKeys;
+		// captured attribute values are never written, only replaced
+		vertexAttributes = mesh.vertexAttributes;
+		vertexAttributeValues = mesh.vertexAttributeValues;
+		halfedgeAttributes = mesh.halfedgeAttributes;
+		halfedgeAttributeValues = mesh.halfedgeAttributeValues;
+		faceAttributes = mesh.faceAttributes;
+		faceAttributeValues = mesh.faceAttributeValues;
+		capturedVertices = mesh.capturedVertices;
+		capturedHalfedges = mesh.capturedHalfedges;
+		capturedFaces = mesh.capturedFaces;
+		numberOfVertices = mesh.numberOfVertices;
+		numberOfHalfedges = mesh.numberOfHalfedges;
+		numberOfFaces = mesh.numberOfFaces;
+		sharedCoords = mesh.sharedCoords = true;
+		sharedConnectivity = mesh.sharedConnectivity = true;
+		sharedLabels = mesh.sharedLabels = true;
+	}
+
+	/**
+	 * Copy-on-write copy. No storage is duplicated until either mesh is
+	 * modified: the first write into coordinates, connectivity or labels
+	 * clones only that group. Not thread-safe, the source and the copy
+	 * should not be used concurrently while they still share storage.
+	 *
+	 * @return copy with the same elements
+	 */
+	public HE_CompactMesh copy() {
+		return new HE_CompactMesh(this);
+	}
+
+	/**
+	 * Apply a modifier that only moves vertices, such as HEM_Noise or
+	 * HEM_Twist. Other modifiers throw an UnsupportedOperationException.
+	 *
+	 * @param modifier
+	 * @return self
+	 */
+	public HE_CompactMesh modify(final HEM_Modifier modifier) {
+		modifier.apply(this);
+		return this;
+	}
+
+	private void ownCoords() {
+		if (sharedCoords) {
+			vertexCoords = vertexCoords.clone();
+			sharedCoords = false;
+		}
+	}
+
+	private void ownConnectivity() {
+		if (sharedConnectivity) {
+			vertexHalfedge = vertexHalfedge.clone();
+			halfedgeNext = halfedgeNext.clone();
+			halfedgePair = halfedgePair.clone();
+			halfedgeVertex = halfedgeVertex.clone();
+			halfedgeFace = halfedgeFace.clone();
+			faceHalfedge = faceHalfedge.clone();
+			vertexKeys = vertexKeys.clone();
+			halfedgeKeys = halfedgeKeys.clone();
+			faceKeys = faceKeys.clone();
+			sharedConnectivity = false;
+		}
+	}
+
+	private void ownLabels() {
+		if (sharedLabels) {
+			vertexLabels = vertexLabels.clone();
+			halfedgeLabels = halfedgeLabels.clone();
+			faceLabels = faceLabels.clone();
+			sharedLabels = false;
+		}
+	}
+
+	/**
+	 * Replace the contents with those of a mesh structure.
+	 *
+	 * @param mesh
+	 * @return self
+	 */
+	public HE_CompactMesh set(final HE_MeshStructure mesh) {
+		clear();
+		ensureCapacity(mesh.getNumberOfVertices(), mesh.getNumberOfHalfedges(), mesh.getNumberOfFaces());
+		ownCoords();
+		ownConnectivity();
+		ownLabels();
+		final TLongIntMap vertexIndices = new TLongIntHashMap(mesh.getNumberOfVertices(), 0.5f, -1L, -1);
+		final TLongIntMap halfedgeIndices = new TLongIntHashMap(mesh.getNumberOfHalfedges(), 0.5f, -1L, -1);
+		final TLongIntMap faceIndices = new TLongIntHashMap(mesh.getNumberOfFaces(), 0.5f, -1L, -1);
+		HE_Vertex v;
+		final Iterator<HE_Vertex> vItr = mesh.vItr();
+		while (vItr.hasNext()) {
+			v = vItr.next();
+			vertexIndices.put(v.key(), addVertex(v.xd(), v.yd(), v.zd()));
+			vertexLabels[numberOfVertices - 1] = v.getLabel();
+			vertexKeys[numberOfVertices - 1] = v.key();
+		}
+		HE_Halfedge he;
+		Iterator<HE_Halfedge> heItr = mesh.heItr();
+		while (heItr.hasNext()) {
+			he = heItr.next();
+			halfedgeIndices.put(he.key(), addHalfedge());
+			halfedgeLabels[numberOfHalfedges - 1] = he.getLabel();
+			halfedgeKeys[numberOfHalfedges - 1] = he.key();
+		}
+		HE_Face f;
+		final Iterator<HE_Face> fItr = mesh.fItr();
+		while (fItr.hasNext()) {
+			f = fItr.next();
+			faceIndices.put(f.key(), addFace());
+			faceLabels[numberOfFaces - 1] = f.getLabel();
+			faceKeys[numberOfFaces - 1] = f.key();
+		}
+		int i = 0;
+		heItr = mesh.heItr();
+		while (heItr.hasNext()) {
+			he = heItr.next();
+			halfedgeNext[i] = he.getNextInFace() == null ? -1 : halfedgeIndices.get(he.getNextInFace().key());
+			halfedgePair[i] = he.getPair() == null ? -1 : halfedgeIndices.get(he.getPair().key());
+			halfedgeVertex[i] = he.getVertex() == null ? -1 : vertexIndices.get(he.getVertex().key());
+			halfedgeFace[i] = he.getFace() == null ? -1 : faceIndices.get(he.getFace().key());
+			i++;
+		}
+		i = 0;
+		final Iterator<HE_Vertex> svItr = mesh.vItr();
+		while (svItr.hasNext()) {
+			v = svItr.next();
+			vertexHalfedge[i++] = v.getHalfedge() == null ? -1 : halfedgeIndices.get(v.getHalfedge().key());
+		}
+		i = 0;
+		final Iterator<HE_Face> sfItr = mesh.fItr();
+		while (sfItr.hasNext()) {
+			f = sfItr.next();
+			faceHalfedge[i++] = f.getHalfedge() == null ? -1 : halfedgeIndices.get(f.getHalfedge().key());
+		}
+		for (final HE_Attribute<HE_Vertex> attribute : mesh.getVertexAttributes()) {
+			vertexAttributes.add(attribute.create());
+			vertexAttributeValues.add(capture(attribute));
+		}
+		for (final HE_Attribute<HE_Halfedge> attribute : mesh.getHalfedgeAttributes()) {
+			halfedgeAttributes.add(attribute.create());
+			halfedgeAttributeValues.add(capture(attribute));
+		}
+		for (final HE_Attribute<HE_Face> attribute : mesh.getFaceAttributes()) {
+			faceAttributes.add(attribute.create());
+			faceAttributeValues.add(capture(attribute));
+		}
+		capturedVertices = numberOfVertices;
+		capturedHalfedges = numberOfHalfedges;
+		capturedFaces = numberOfFaces;
+		return this;
+	}
+
+	/**
+	 * All values of a bound attribute in one column, in element order.
+	 *
+	 * @param attribute
+	 * @return
+	 */
+	private static HE_Attribute.Column capture(final HE_Attribute<?> attribute) {
+		final HE_Attribute.Column[] columns = attribute.columns;
+		final Object[] sources = new Object[columns.length];
+		final int n = attribute.size();
+		final int[] set = new int[n];
+		final int[] index = new int[n];
+		int i = 0;
+		for (int k = 0; k < columns.length; k++) {
+			sources[k] = columns[k].data();
+			for (int j = 0; j < columns[k].owner.size(); j++) {
+				set[i] = k;
+				index[i++] = j;
+			}
+		}
+		final HE_Attribute.Column result = attribute.createColumn();
+		result.remap(sources, set, index, n);
+		return result;
+	}
+
+	/**
+	 * Fill the columns of a bound attribute from captured values. Position j
+	 * of column k holds the element with compact index elements[k][j].
+	 * Elements beyond the captured values get the default.
+	 *
+	 * @param attribute
+	 * @param values
+	 * @param elements
+	 * @param counts
+	 *            number of elements per column
+	 * @param captured
+	 *            number of captured values
+	 */
+	private static void restore(final HE_Attribute<?> attribute, final HE_Attribute.Column values,
+			final int[][] elements, final int[] counts, final int captured) {
+		final Object[] sources = new Object[] { values.data() };
+		for (int k = 0; k < attribute.columns.length; k++) {
+			final int n = counts[k];
+			final int[] set = new int[n];
+			for (int j = 0; j < n; j++) {
+				set[j] = elements[k][j] < captured ? 0 : -1;
+			}
+			attribute.columns[k].remap(sources, set, elements[k], n);
+		}
+	}
+
+	private void clearAttributes() {
+		vertexAttributes = new ArrayList<HE_Attribute<HE_Vertex>>();
+		vertexAttributeValues = new ArrayList<HE_Attribute.Column>();
+		halfedgeAttributes = new ArrayList<HE_Attribute<HE_Halfedge>>();
+		halfedgeAttributeValues = new ArrayList<HE_Attribute.Column>();
+		faceAttributes = new ArrayList<HE_Attribute<HE_Face>>();
+		faceAttributeValues = new ArrayList<HE_Attribute.Column>();
+		capturedVertices = 0;
+		capturedHalfedges = 0;
+		capturedFaces = 0;
+	}
+
+	/**
+	 * Remove all elements and attributes. Storage is retained.
+	 */
+	public void clear() {
+		clearAttributes();
+		numberOfVertices = 0;
+		numberOfHalfedges = 0;
+		numberOfFaces = 0;
+	}
+
+	/**
+	 * Grow storage to hold at least the given number of elements.
+	 *
+	 * @param vertexCapacity
+	 * @param halfedgeCapacity
+	 * @param faceCapacity
+	 */
+	public void ensureCapacity(final int vertexCapacity, final int halfedgeCapacity, final int faceCapacity) {
+		if (vertexCapacity > vertexHalfedge.length) {
+			final int n = grow(vertexHalfedge.length, vertexCapacity);
+			vertexCoords = Arrays.copyOf(vertexCoords, 3 * n);
+			vertexHalfedge = Arrays.copyOf(vertexHalfedge, n);
+			vertexLabels = Arrays.copyOf(vertexLabels, n);
+			vertexKeys = Arrays.copyOf(vertexKeys, n);
+		}
+		if (halfedgeCapacity > halfedgeNext.length) {
+			final int n = grow(halfedgeNext.length, halfedgeCapacity);
+			halfedgeNext = Arrays.copyOf(halfedgeNext, n);
+			halfedgePair = Arrays.copyOf(halfedgePair, n);
+			halfedgeVertex = Arrays.copyOf(halfedgeVertex, n);
+			halfedgeFace = Arrays.copyOf(halfedgeFace, n);
+			halfedgeLabels = Arrays.copyOf(halfedgeLabels, n);
+			halfedgeKeys = Arrays.copyOf(halfedgeKeys, n);
+		}
+		if (faceCapacity > faceHalfedge.length) {
+			final int n = grow(faceHalfedge.length, faceCapacity);
+			faceHalfedge = Arrays.copyOf(faceHalfedge, n);
+			faceLabels = Arrays.copyOf(faceLabels, n);
+			faceKeys = Arrays.copyOf(faceKeys, n);
+		}
+	}
+
+	private static int grow(final int current, final int required) {
+		return Math.max(required, current + (current >> 1) + 1);
+	}
+
+	/**
+	 * Release unused storage.
+	 */
+	public void trimToSize() {
+		final int nv = Math.max(1, numberOfVertices);
+		final int nhe = Math.max(1, numberOfHalfedges);
+		final int nf = Math.max(1, numberOfFaces);
+		vertexCoords = Arrays.copyOf(vertexCoords, 3 * nv);
+		vertexHalfedge = Arrays.copyOf(vertexHalfedge, nv);
+		vertexLabels = Arrays.copyOf(vertexLabels, nv);
+		vertexKeys = Arrays.copyOf(vertexKeys, nv);
+		halfedgeNext = Arrays.copyOf(halfedgeNext, nhe);
+		halfedgePair = Arrays.copyOf(halfedgePair, nhe);
+		halfedgeVertex = Arrays.copyOf(halfedgeVertex, nhe);
+		halfedgeFace = Arrays.copyOf(halfedgeFace, nhe);
+		halfedgeLabels = Arrays.copyOf(halfedgeLabels, nhe);
+		halfedgeKeys = Arrays.copyOf(halfedgeKeys, nhe);
+		faceHalfedge = Arrays.copyOf(faceHalfedge, nf);
+		faceLabels = Arrays.copyOf(faceLabels, nf);
+		faceKeys = Arrays.copyOf(faceKeys, nf);
+		sharedCoords = false;
+		sharedConnectivity = false;
+		sharedLabels = false;
+	}
+
+	/**
+	 * Add a vertex. Its halfedge is unset.
+	 *
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return index of new vertex
+	 */
+	public int addVertex(final double x, final double y, final double z) {
+		if (numberOfVertices == vertexHalfedge.length) {
+			ensureCapacity(numberOfVertices + 1, 0, 0);
+		}
+		ownCoords();
+		ownConnectivity();
+		ownLabels();
+		final int i = numberOfVertices++;
+		vertexCoords[3 * i] = x;
+		vertexCoords[3 * i + 1] = y;
+		vertexCoords[3 * i + 2] = z;
+		vertexHalfedge[i] = -1;
+		vertexLabels[i] = -1;
+		vertexKeys[i] = -1;
+		return i;
+	}
+
+	/**
+	 * Add a vertex. Its halfedge is unset.
+	 *
+	 * @param c
+	 * @return index of new vertex
+	 */
+	public int addVertex(final WB_Coord c) {
+		return addVertex(c.xd(), c.yd(), c.zd());
+	}
+
+	/**
+	 * Add an unlinked halfedge.
+	 *
+	 * @return index of new halfedge
+	 */
+	public int addHalfedge() {
+		if (numberOfHalfedges == halfedgeNext.length) {
+			ensureCapacity(0, numberOfHalfedges + 1, 0);
+		}
+		ownConnectivity();
+		ownLabels();
+		final int i = numberOfHalfedges++;
+		halfedgeNext[i] = -1;
+		halfedgePair[i] = -1;
+		halfedgeVertex[i] = -1;
+		halfedgeFace[i] = -1;
+		halfedgeLabels[i] = -1;
+		halfedgeKeys[i] = -1;
+		return i;
+	}
+
+	/**
+	 * Add a face. Its halfedge is unset.
+	 *
+	 * @return index of new face
+	 */
+	public int addFace() {
+		if (numberOfFaces == faceHalfedge.length) {
+			ensureCapacity(0, 0, numberOfFaces + 1);
+		}
+		ownConnectivity();
+		ownLabels();
+		final int i = numberOfFaces++;
+		faceHalfedge[i] = -1;
+		faceLabels[i] = -1;
+		faceKeys[i] = -1;
+		return i;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public final int getNumberOfVertices() {
+		return numberOfVertices;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public final int getNumberOfHalfedges() {
+		return numberOfHalfedges;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public final int getNumberOfFaces() {
+		return numberOfFaces;
+	}
+
+	/**
+	 * Number of edges, counted as paired halfedges plus unpaired halfedges.
+	 *
+	 * @return
+	 */
+	public final int getNumberOfEdges() {
+		int n = 0;
+		for (int he = 0; he < numberOfHalfedges; he++) {
+			final int p = halfedgePair[he];
+			if (p < 0 || he < p) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Direct access to the coordinate array x0,y0,z0,x1,y1,z1,... Only the
+	 * first 3*getNumberOfVertices() values are in use. The array can be
+	 * written to, coordinates still shared with a copy are cloned first.
+	 *
+	 * @return
+	 */
+	public final double[] getVertexCoords() {
+		ownCoords();
+		return vertexCoords;
+	}
+
+	public final double xd(final int v) {
+		return vertexCoords[3 * v];
+	}
+
+	public final double yd(final int v) {
+		return vertexCoords[3 * v + 1];
+	}
+
+	public final double zd(final int v) {
+		return vertexCoords[3 * v + 2];
+	}
+
+	/**
+	 *
+	 *
+	 * @param v
+	 * @param x
+	 * @param y
+	 * @param z
+	 */
+	public final void setVertex(final int v, final double x, final double y, final double z) {
+		ownCoords();
+		vertexCoords[3 * v] = x;
+		vertexCoords[3 * v + 1] = y;
+		vertexCoords[3 * v + 2] = z;
+	}
+
+	/**
+	 *
+	 *
+	 * @param he
+	 * @return
+	 */
+	public final int getNextInFace(final int he) {
+		return halfedgeNext[he];
+	}
+
+	/**
+	 * Previous halfedge in face, found by cycling through the face.
+	 *
+	 * @param he
+	 * @return
+	 */
+	public final int getPrevInFace(final int he) {
+		int prev = he;
+		int next = halfedgeNext[he];
+		while (next != he && next >= 0) {
+			prev = next;
+			next = halfedgeNext[next];
+		}
+		return prev;
+	}
+
+	/**
+	 *
+	 *
+	 * @param he
+	 * @return
+	 */
+	public final int getPair(final int he) {
+		return halfedgePair[he];
+	}
+
+	/**
+	 * Next outgoing halfedge around the start vertex of he, -1 if he is
+	 * unpaired.
+	 *
+	 * @param he
+	 * @return
+	 */
+	public final int getNextInVertex(final int he) {
+		final int p = halfedgePair[he];
+		return p < 0 ? -1 : halfedgeNext[p];
+	}
+
+	/**
+	 *
+	 *
+	 * @param he
+	 * @return
+	 */
+	public final int getVertex(final int he) {
+		return halfedgeVertex[he];
+	}
+
+	/**
+	 *
+	 *
+	 * @param he
+	 * @return
+	 */
+	public final int getEndVertex(final int he) {
+		return halfedgeVertex[halfedgeNext[he]];
+	}
+
+	/**
+	 *
+	 *
+	 * @param he
+	 * @return
+	 */
+	public final int getFace(final int he) {
+		return halfedgeFace[he];
+	}
+
+	/**
+	 *
+	 *
+	 * @param v
+	 * @return
+	 */
+	public final int getVertexHalfedge(final int v) {
+		return vertexHalfedge[v];
+	}
+
+	/**
+	 *
+	 *
+	 * @param f
+	 * @return
+	 */
+	public final int getFaceHalfedge(final int f) {
+		return faceHalfedge[f];
+	}
+
+	public final void setNext(final int he, final int hen) {
+		ownConnectivity();
+		halfedgeNext[he] = hen;
+	}
+
+	/**
+	 * Pair two halfedges.
+	 *
+	 * @param he1
+	 * @param he2
+	 */
+	public final void setPair(final int he1, final int he2) {
+		ownConnectivity();
+		halfedgePair[he1] = he2;
+		halfedgePair[he2] = he1;
+	}
+
+	public final void setVertex(final int he, final int v) {
+		ownConnectivity();
+		halfedgeVertex[he] = v;
+	}
+
+	public final void setFace(final int he, final int f) {
+		ownConnectivity();
+		halfedgeFace[he] = f;
+	}
+
+	public final void setVertexHalfedge(final int v, final int he) {
+		ownConnectivity();
+		vertexHalfedge[v] = he;
+	}
+
+	public final void setFaceHalfedge(final int f, final int he) {
+		ownConnectivity();
+		faceHalfedge[f] = he;
+	}
+
+	public final int getVertexLabel(final int v) {
+		return vertexLabels[v];
+	}
+
+	public final void setVertexLabel(final int v, final int label) {
+		ownLabels();
+		vertexLabels[v] = label;
+	}
+
+	public final int getHalfedgeLabel(final int he) {
+		return halfedgeLabels[he];
+	}
+
+	public final void setHalfedgeLabel(final int he, final int label) {
+		ownLabels();
+		halfedgeLabels[he] = label;
+	}
+
+	public final int getFaceLabel(final int f) {
+		return faceLabels[f];
+	}
+
+	public final void setFaceLabel(final int f, final int label) {
+		ownLabels();
+		faceLabels[f] = label;
+	}
+
+	/**
+	 * Number of halfedges in face.
+	 *
+	 * @param f
+	 * @return
+	 */
+	public final int getFaceOrder(final int f) {
+		final int start = faceHalfedge[f];
+		if (start < 0) {
+			return 0;
+		}
+		int n = 0;
+		int he = start;
+		do {
+			n++;
+			he = halfedgeNext[he];
+		} while (he != start);
+		return n;
+	}
+
+	/**
+	 * Number of outgoing halfedges of vertex. Stops at an unpaired halfedge.
+	 *
+	 * @param v
+	 * @return
+	 */
+	public final int getVertexOrder(final int v) {
+		final int start = vertexHalfedge[v];
+		if (start < 0) {
+			return 0;
+		}
+		int n = 0;
+		int he = start;
+		do {
+			n++;
+			he = getNextInVertex(he);
+		} while (he != start && he >= 0);
+		return n;
+	}
+
+	/**
+	 * Write the vertex indices of a face into a buffer.
+	 *
+	 * @param f
+	 *            face index
+	 * @param result
+	 *            buffer, should be at least getFaceOrder(f) long
+	 * @return number of vertices written
+	 */
+	public final int getFaceVertices(final int f, final int[] result) {
+		final int start = faceHalfedge[f];
+		if (start < 0) {
+			return 0;
+		}
+		int n = 0;
+		int he = start;
+		do {
+			result[n++] = halfedgeVertex[he];
+			he = halfedgeNext[he];
+		} while (he != start);
+		return n;
+	}
+
+	/**
+	 * Write the indices of the neighboring vertices into a buffer.
+	 *
+	 * @param v
+	 *            vertex index
+	 * @param result
+	 *            buffer, should be at least getVertexOrder(v) long
+	 * @return number of neighbors written
+	 */
+	public final int getNeighborVertices(final int v, final int[] result) {
+		final int start = vertexHalfedge[v];
+		if (start < 0) {
+			return 0;
+		}
+		int n = 0;
+		int he = start;
+		do {
+			result[n++] = getEndVertex(he);
+			he = getNextInVertex(he);
+		} while (he != start && he >= 0);
+		return n;
+	}
+
+	/**
+	 *
+	 *
+	 * @param v
+	 * @return
+	 */
+	public final boolean isBoundaryVertex(final int v) {
+		final int start = vertexHalfedge[v];
+		if (start < 0) {
+			return false;
+		}
+		int he = start;
+		do {
+			if (halfedgeFace[he] < 0) {
+				return true;
+			}
+			he = getNextInVertex(he);
+		} while (he != start && he >= 0);
+		return he < 0;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public WB_AABB getAABB() {
+		final WB_AABB aabb = new WB_AABB();
+		for (int v = 0; v < numberOfVertices; v++) {
+			aabb.expandToInclude(vertexCoords[3 * v], vertexCoords[3 * v + 1], vertexCoords[3 * v + 2]);
+		}
+		return aabb;
+	}
+
+	/**
+	 * Get the faces as arrays of vertex indices.
+	 *
+	 * @return
+	 */
+	public int[][] getFacesAsInt() {
+		final int[][] result = new int[numberOfFaces][];
+		for (int f = 0; f < numberOfFaces; f++) {
+			result[f] = new int[getFaceOrder(f)];
+			getFaceVertices(f, result[f]);
+		}
+		return result;
+	}
+
+	/**
+	 * Create a HE_Mesh with the same elements, keys and attributes. Element
+	 * order is preserved.
+	 *
+	 * @return
+	 */
+	public HE_Mesh toMesh() {
+		final HE_Mesh mesh = new HE_Mesh();
+		final HE_Vertex[] vertices = new HE_Vertex[numberOfVertices];
+		for (int v = 0; v < numberOfVertices; v++) {
+			vertices[v] = new HE_Vertex(vertexKeys[v], vertexCoords[3 * v], vertexCoords[3 * v + 1],
+					vertexCoords[3 * v + 2]);
+			vertices[v].setLabel(vertexLabels[v]);
+		}
+		final HE_Halfedge[] halfedges = new HE_Halfedge[numberOfHalfedges];
+		for (int he = 0; he < numberOfHalfedges; he++) {
+			halfedges[he] = new HE_Halfedge(halfedgeKeys[he]);
+			halfedges[he].setLabel(halfedgeLabels[he]);
+		}
+		final HE_Face[] faces = new HE_Face[numberOfFaces];
+		for (int f = 0; f < numberOfFaces; f++) {
+			faces[f] = new HE_Face(faceKeys[f]);
+			faces[f].setLabel(faceLabels[f]);
+			if (faceHalfedge[f] >= 0) {
+				faces[f]._setHalfedge(halfedges[faceHalfedge[f]]);
+			}
+		}
+		for (int v = 0; v < numberOfVertices; v++) {
+			if (vertexHalfedge[v] >= 0) {
+				vertices[v]._setHalfedge(halfedges[vertexHalfedge[v]]);
+			}
+		}
+		HE_Halfedge he;
+		for (int i = 0; i < numberOfHalfedges; i++) {
+			he = halfedges[i];
+			if (halfedgeNext[i] >= 0) {
+				he._setNext(halfedges[halfedgeNext[i]]);
+				halfedges[halfedgeNext[i]]._setPrev(he);
+			}
+			if (halfedgePair[i] >= 0) {
+				he._setPair(halfedges[halfedgePair[i]]);
+			}
+			if (halfedgeVertex[i] >= 0) {
+				he._setVertex(vertices[halfedgeVertex[i]]);
+			}
+			if (halfedgeFace[i] >= 0) {
+				he._setFace(faces[halfedgeFace[i]]);
+			}
+		}
+		mesh.addVertices(vertices);
+		mesh.addFaces(faces);
+		mesh.addHalfedges(halfedges);
+		restoreAttributes(mesh, halfedges);
+		return mesh;
+	}
+
+	/**
+	 * Add the captured attributes to a mesh created by toMesh().
+	 *
+	 * @param mesh
+	 * @param halfedges
+	 */
+	private void restoreAttributes(final HE_Mesh mesh, final HE_Halfedge[] halfedges) {
+		if (!vertexAttributes.isEmpty()) {
+			final int[][] elements = new int[][] { identity(numberOfVertices) };
+			final int[] counts = new int[] { numberOfVertices };
+			for (int a = 0; a < vertexAttributes.size(); a++) {
+				restore(mesh.addVertexAttribute(vertexAttributes.get(a).create()), vertexAttributeValues.get(a),
+						elements, counts, capturedVertices);
+			}
+		}
+		if (!faceAttributes.isEmpty()) {
+			final int[][] elements = new int[][] { identity(numberOfFaces) };
+			final int[] counts = new int[] { numberOfFaces };
+			for (int a = 0; a < faceAttributes.size(); a++) {
+				restore(mesh.addFaceAttribute(faceAttributes.get(a).create()), faceAttributeValues.get(a), elements,
+						counts, capturedFaces);
+			}
+		}
+		if (!halfedgeAttributes.isEmpty()) {
+			// the halfedges were added in index order and classified like
+			// HE_MeshStructure.add(HE_Halfedge): edges, other paired halfedges,
+			// unpaired halfedges
+			final int[][] elements = new int[3][numberOfHalfedges];
+			final int[] counts = new int[3];
+			int k;
+			for (int he = 0; he < numberOfHalfedges; he++) {
+				k = halfedges[he].getPair() == null ? 2 : halfedges[he].isEdge() ? 0 : 1;
+				elements[k][counts[k]++] = he;
+			}
+			for (int a = 0; a < halfedgeAttributes.size(); a++) {
+				restore(mesh.addHalfedgeAttribute(halfedgeAttributes.get(a).create()),
+						halfedgeAttributeValues.get(a), elements, counts, capturedHalfedges);
+			}
+		}
+	}
+
+	private static int[] identity(final int n) {
+		final int[] result = new int[n];
+		for (int i = 0; i < n; i++) {
+			result[i] = i;
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 *
+	 * @param v
+	 *            vertex index
+	 * @return new handle for vertex v
+	 */
+	public HE_CompactVertex getVertexHandle(final int v) {
+		return new HE_CompactVertex(this, v);
+	}
+
+	/**
+	 *
+	 *
+	 * @param he
+	 *            halfedge index
+	 * @return new handle for halfedge he
+	 */
+	public HE_CompactHalfedge getHalfedgeHandle(final int he) {
+		return new HE_CompactHalfedge(this, he);
+	}
+
+	/**
+	 *
+	 *
+	 * @param f
+	 *            face index
+	 * @return new handle for face f
+	 */
+	public HE_CompactFace getFaceHandle(final int f) {
+		return new HE_CompactFace(this, f);
+	}
+
+	/**
+	 * Flyweight view of a single vertex. The handle can be moved to another
+	 * vertex with {@link #setIndex(int)}, so one instance can be reused for a
+	 * complete traversal. Coordinate access reads and writes the backing
+	 * array directly.
+	 */
+	public static class HE_CompactVertex implements WB_MutableCoord {
+		private final HE_CompactMesh mesh;
+		private int index;
+
+		/**
+		 *
+		 *
+		 * @param mesh
+		 * @param index
+		 */
+		public HE_CompactVertex(final HE_CompactMesh mesh, final int index) {
+			this.mesh = mesh;
+			this.index = index;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public HE_CompactVertex setIndex(final int index) {
+			this.index = index;
+			return this;
+		}
+
+		public int getHalfedge() {
+			return mesh.vertexHalfedge[index];
+		}
+
+		public int getVertexOrder() {
+			return mesh.getVertexOrder(index);
+		}
+
+		public int getNeighborVertices(final int[] result) {
+			return mesh.getNeighborVertices(index, result);
+		}
+
+		public boolean isBoundary() {
+			return mesh.isBoundaryVertex(index);
+		}
+
+		@Override
+		public double xd() {
+			return mesh.vertexCoords[3 * index];
+		}
+
+		@Override
+		public double yd() {
+			return mesh.vertexCoords[3 * index + 1];
+		}
+
+		@Override
+		public double zd() {
+			return mesh.vertexCoords[3 * index + 2];
+		}
+
+		@Override
+		public double wd() {
+			return 1;
+		}
+
+		@Override
+		public double getd(final int i) {
+			if (i >= 0 && i < 3) {
+				return mesh.vertexCoords[3 * index + i];
+			}
+			if (i == 3) {
+				return 1;
+			}
+			return Double.NaN;
+		}
+
+		@Override
+		public float xf() {
+			return (float) xd();
+		}
+
+		@Override
+		public float yf() {
+			return (float) yd();
+		}
+
+		@Override
+		public float zf() {
+			return (float) zd();
+		}
+
+		@Override
+		public float wf() {
+			return 1;
+		}
+
+		@Override
+		public float getf(final int i) {
+			return (float) getd(i);
+		}
+
+		@Override
+		public void setX(final double x) {
+			mesh.ownCoords();
+			mesh.vertexCoords[3 * index] = x;
+		}
+
+		@Override
+		public void setY(final double y) {
+			mesh.ownCoords();
+			mesh.vertexCoords[3 * index + 1] = y;
+		}
+
+		@Override
+		public void setZ(final double z) {
+			mesh.ownCoords();
+			mesh.vertexCoords[3 * index + 2] = z;
+		}
+
+		@Override
+		public void setW(final double w) {
+		}
+
+		@Override
+		public void setCoord(final int i, final double v) {
+			if (i >= 0 && i < 3) {
+				mesh.ownCoords();
+				mesh.vertexCoords[3 * index + i] = v;
+			}
+		}
+
+		@Override
+		public void set(final WB_Coord p) {
+			mesh.setVertex(index, p.xd(), p.yd(), p.zd());
+		}
+
+		@Override
+		public void set(final double x, final double y) {
+			mesh.setVertex(index, x, y, 0);
+		}
+
+		@Override
+		public void set(final double x, final double y, final double z) {
+			mesh.setVertex(index, x, y, z);
+		}
+
+		@Override
+		public void set(final double x, final double y, final double z, final double w) {
+			mesh.setVertex(index, x, y, z);
+		}
+
+		@Override
+		public int compareTo(final WB_Coord p) {
+			int cmp = Double.compare(xd(), p.xd());
+			if (cmp != 0) {
+				return cmp;
+			}
+			cmp = Double.compare(yd(), p.yd());
+			if (cmp != 0) {
+				return cmp;
+			}
+			return Double.compare(zd(), p.zd());
+		}
+
+		@Override
+		public String toString() {
+			return "HE_CompactVertex " + index + " [x=" + xd() + ", y=" + yd() + ", z=" + zd() + "]";
+		}
+	}
+
+	/**
+	 * Flyweight view of a single halfedge. Navigation methods move the handle
+	 * in place and return it, allowing allocation-free traversal:
+	 * <code>he.nextInFace().pair()</code>.
+	 */
+	public static class HE_CompactHalfedge {
+		private final HE_CompactMesh mesh;
+		private int index;
+
+		/**
+		 *
+		 *
+		 * @param mesh
+		 * @param index
+		 */
+		public HE_CompactHalfedge(final HE_CompactMesh mesh, final int index) {
+			this.mesh = mesh;
+			this.index = index;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public HE_CompactHalfedge setIndex(final int index) {
+			this.index = index;
+			return this;
+		}
+
+		public boolean isValid() {
+			return index >= 0;
+		}
+
+		public int getVertex() {
+			return mesh.halfedgeVertex[index];
+		}
+
+		public int getEndVertex() {
+			return mesh.getEndVertex(index);
+		}
+
+		public int getFace() {
+			return mesh.halfedgeFace[index];
+		}
+
+		public int getNextInFace() {
+			return mesh.halfedgeNext[index];
+		}
+
+		public int getPair() {
+			return mesh.halfedgePair[index];
+		}
+
+		/**
+		 * Move to next halfedge in face.
+		 *
+		 * @return self
+		 */
+		public HE_CompactHalfedge nextInFace() {
+			index = mesh.halfedgeNext[index];
+			return this;
+		}
+
+		/**
+		 * Move to previous halfedge in face.
+		 *
+		 * @return self
+		 */
+		public HE_CompactHalfedge prevInFace() {
+			index = mesh.getPrevInFace(index);
+			return this;
+		}
+
+		/**
+		 * Move to paired halfedge.
+		 *
+		 * @return self
+		 */
+		public HE_CompactHalfedge pair() {
+			index = mesh.halfedgePair[index];
+			return this;
+		}
+
+		/**
+		 * Move to next outgoing halfedge around the start vertex.
+		 *
+		 * @return self
+		 */
+		public HE_CompactHalfedge nextInVertex() {
+			index = mesh.getNextInVertex(index);
+			return this;
+		}
+
+		public boolean isOuterBoundary() {
+			return mesh.halfedgeFace[index] < 0;
+		}
+
+		public double getLength() {
+			final int v0 = 3 * mesh.halfedgeVertex[index];
+			final int v1 = 3 * mesh.getEndVertex(index);
+			final double[] c = mesh.vertexCoords;
+			final double dx = c[v1] - c[v0];
+			final double dy = c[v1 + 1] - c[v0 + 1];
+			final double dz = c[v1 + 2] - c[v0 + 2];
+			return Math.sqrt(dx * dx + dy * dy + dz * dz);
+		}
+
+		@Override
+		public String toString() {
+			return "HE_CompactHalfedge " + index + " [vertex=" + getVertex() + ", face=" + getFace() + "]";
+		}
+	}
+
+	/**
+	 * Flyweight view of a single face.
+	 */
+	public static class HE_CompactFace {
+		private final HE_CompactMesh mesh;
+		private int index;
+
+		/**
+		 *
+		 *
+		 * @param mesh
+		 * @param index
+		 */
+		public HE_CompactFace(final HE_CompactMesh mesh, final int index) {
+			this.mesh = mesh;
+			this.index = index;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public HE_CompactFace setIndex(final int index) {
+			this.index = index;
+			return this;
+		}
+
+		public int getHalfedge() {
+			return mesh.faceHalfedge[index];
+		}
+
+		public int getFaceOrder() {
+			return mesh.getFaceOrder(index);
+		}
+
+		public int getFaceVertices(final int[] result) {
+			return mesh.getFaceVertices(index, result);
+		}
+
+		/**
+		 * Write the area-weighted face normal into result[offset..offset+2],
+		 * Newell's method.
+		 *
+		 * @param result
+		 * @param offset
+		 */
+		public void getNonNormFaceNormal(final double[] result, final int offset) {
+			final double[] c = mesh.vertexCoords;
+			double nx = 0, ny = 0, nz = 0;
+			final int start = mesh.faceHalfedge[index];
+			int he = start;
+			do {
+				final int p = 3 * mesh.halfedgeVertex[he];
+				final int q = 3 * mesh.getEndVertex(he);
+				nx += (c[p + 1] - c[q + 1]) * (c[p + 2] + c[q + 2]);
+				ny += (c[p + 2] - c[q + 2]) * (c[p] + c[q]);
+				nz += (c[p] - c[q]) * (c[p + 1] + c[q + 1]);
+				he = mesh.halfedgeNext[he];
+			} while (he != start);
+			result[offset] = 0.5 * nx;
+			result[offset + 1] = 0.5 * ny;
+			result[offset + 2] = 0.5 * nz;
+		}
+
+		@Override
+		public String toString() {
+			return "HE_CompactFace " + index + " [order=" + getFaceOrder() + "]";
+		}
+	}
+}
@@ -16,7 +16,15 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 public abstract class HE_Element {
 
-	protected static AtomicLong currentKey = new AtomicLong(0);
+	/** Number of keys a thread claims from the shared counter at a time. */
+	static final int KEY_BLOCK_SIZE = 1024;
+	private static final AtomicLong currentKey = new AtomicLong(0);
+	private static final ThreadLocal<KeySource> keySource = new ThreadLocal<KeySource>() {
+		@Override
+		protected KeySource initialValue() {
+			return new KeySource();
+		}
+	};
 	protected final long key;
 	protected long labels;
 
@@ -24,10 +32,68 @@ public abstract class HE_Element {
 	 *
 	 */
 	public HE_Element() {
-		key = currentKey.getAndAdd(1);
+		key = nextKey();
+		labels = mergeLabels(-1, -1);
+	}
+
+	/**
+	 * Element with a given key, used to recreate elements that were stored
+	 * outside a mesh.
+	 *
+	 * @param key
+	 *            key of the element, a new key is taken if negative
+	 */
+	HE_Element(final long key) {
+		this.key = key < 0 ? nextKey() : key;
 		labels = mergeLabels(-1, -1);
 	}
 
+	/**
+	 * Per-thread key state: the active key space, if any, or else the
+	 * remainder of the block of keys claimed from the shared counter.
+	 */
+	private static final class KeySource {
+		long next;
+		long end;
+		HE_KeySpace space;
+	}
+
+	private static long nextKey() {
+		final KeySource source = keySource.get();
+		if (source.space != null) {
+			return source.space.nextKey();
+		}
+		if (source.next == source.end) {
+			source.next = currentKey.getAndAdd(KEY_BLOCK_SIZE);
+			source.end = source.next + KEY_BLOCK_SIZE;
+		}
+		return source.next++;
+	}
+
+	/**
+	 * Create all elements on the calling thread with keys from a key space.
+	 * Elements created on other threads are not affected.
+	 *
+	 * @param space
+	 *            key space, null to return to the shared counter
+	 * @return the previously active key space, to restore afterwards
+	 */
+	public static HE_KeySpace useKeySpace(final HE_KeySpace space) {
+		final KeySource source = keySource.get();
+		final HE_KeySpace previous = source.space;
+		source.space = space;
+		return previous;
+	}
+
+	/**
+	 *
+	 *
+	 * @return the key space active on the calling thread, or null
+	 */
+	public static HE_KeySpace getActiveKeySpace() {
+		return keySource.get().space;
+	}
+
 	private static long mergeLabels(final int internal, final int external) {
 		return (long) internal << 32 | external & 0xffffffffL;
 
@@ -46,6 +46,11 @@ public class HE_Face extends HE_MeshElement implements Comparable<HE_Face> {
 	WB_Coord normal;
 	WB_Point center;
 	WB_AABB aabb;
+	private double area = Double.NaN;
+	/** Last change to the connectivity of the face. */
+	long stamp;
+	/** Time the cached derived geometry was computed. */
+	long cacheStamp;
 
 	/**
 	 * Instantiates a new HE_Face.
@@ -58,6 +63,20 @@ public class HE_Face extends HE_MeshElement implements Comparable<HE_Face> {
 		aabb = null;
 	}
 
+	/**
+	 * Instantiates a new HE_Face with a given key.
+	 *
+	 * @param key
+	 *            key of the face, a new key is taken if negative
+	 */
+	HE_Face(final long key) {
+		super(key);
+		triangles = null;
+		normal = null;
+		center = null;
+		aabb = null;
+	}
+
 	/**
 	 *
 	 *
@@ -163,22 +182,25 @@ public class HE_Face extends HE_MeshElement implements Comparable<HE_Face> {
 	 * @return
 	 */
 	public WB_Coord getFaceCenter() {
-		if (center != null) {
-			return center;
-		}
 		if (_halfedge == null) {
 			return null;
 		}
+		validateCache();
+		WB_Point c = center;
+		if (c != null) {
+			return c;
+		}
 		HE_Halfedge he = _halfedge;
-		center = new WB_Point();
-		int c = 0;
+		c = new WB_Point();
+		int n = 0;
 		do {
-			center.addSelf(he.getVertex());
-			c++;
+			c.addSelf(he.getVertex());
+			n++;
 			he = he.getNextInFace();
 		} while (he != _halfedge);
-		center.divSelf(c);
-		return center;
+		c.divSelf(n);
+		center = c;
+		return c;
 	}
 
 	/**
@@ -188,22 +210,10 @@ public class HE_Face extends HE_MeshElement implements Comparable<HE_Face> {
 	 * @return
 	 */
 	public WB_Coord getFaceCenter(final double d) {
-		if (center != null) {
-			return center.addMul(d, getFaceNormal());
-		}
 		if (_halfedge == null) {
 			return null;
 		}
-		HE_Halfedge he = _halfedge;
-		center = new WB_Point();
-		int c = 0;
-		do {
-			center.addSelf(he.getVertex());
-			c++;
-			he = he.getNextInFace();
-		} while (he != _halfedge);
-		center.divSelf(c);
-		return center.addMul(d, getFaceNormal());
+		return WB_Point.addMul(getFaceCenter(), d, getFaceNormal());
 	}
 
 	/**
@@ -212,10 +222,13 @@ public class HE_Face extends HE_MeshElement implements Comparable<HE_Face> {
 	 * @return
 	 */
 	public WB_Coord getFaceNormal() {
-		if (normal == null) {
-			normal = HET_MeshOp.getFaceNormal(this);
+		validateCache();
+		WB_Coord n = normal;
+		if (n == null) {
+			n = HET_MeshOp.getFaceNormal(this);
+			normal = n;
 		}
-		return normal;
+		return n;
 	}
 
 	/**
@@ -233,7 +246,13 @@ public class HE_Face extends HE_MeshElement implements Comparable<HE_Face> {
 	 * @return
 	 */
 	public double getFaceArea() {
-		return HET_MeshOp.getFaceArea(this);
+		validateCache();
+		double a = area;
+		if (a != a) {
+			a = HET_MeshOp.getFaceArea(this);
+			area = a;
+		}
+		return a;
 	}
 
 	/**
@@ -267,17 +286,30 @@ public class HE_Face extends HE_MeshElement implements Comparable<HE_Face> {
 
 	public List<HE_Vertex> getFaceVertices() {
 		final FastTable<HE_Vertex> fv = new FastTable<HE_Vertex>();
-		if (_halfedge == null) {
+		if (getFaceVertices(fv) == 0) {
 			return fv;
 		}
+		return fv.unmodifiable();
+	}
+
+	/**
+	 * Get the vertices of the face, reusing a list instead of allocating one.
+	 *
+	 * @param result
+	 *            cleared and filled with the vertices
+	 * @return number of vertices
+	 */
+	public int getFaceVertices(final List<HE_Vertex> result) {
+		result.clear();
+		if (_halfedge == null) {
+			return 0;
+		}
 		HE_Halfedge he = _halfedge;
 		do {
-
-			fv.add(he.getVertex());
-
+			result.add(he.getVertex());
 			he = he.getNextInFace();
 		} while (he != _halfedge);
-		return fv.unmodifiable();
+		return result.size();
 	}
 
 	/**
@@ -325,17 +357,32 @@ public class HE_Face extends HE_MeshElement implements Comparable<HE_Face> {
 	 */
 	public List<HE_Halfedge> getFaceHalfedges() {
 		final FastTable<HE_Halfedge> fhe = new FastTable<HE_Halfedge>();
-		if (_halfedge == null) {
+		if (getFaceHalfedges(fhe) == 0) {
 			return fhe;
 		}
+		return fhe.unmodifiable();
+	}
+
+	/**
+	 * Get the halfedges of the face, reusing a list instead of allocating one.
+	 *
+	 * @param result
+	 *            cleared and filled with the halfedges
+	 * @return number of halfedges
+	 */
+	public int getFaceHalfedges(final List<HE_Halfedge> result) {
+		result.clear();
+		if (_halfedge == null) {
+			return 0;
+		}
 		HE_Halfedge he = _halfedge;
 		do {
-			if (!fhe.contains(he)) {
-				fhe.add(he);
+			if (!result.contains(he)) {
+				result.add(he);
 			}
 			he = he.getNextInFace();
 		} while (he != _halfedge);
-		return fhe.unmodifiable();
+		return result.size();
 	}
 
 	/**
@@ -370,23 +417,38 @@ public class HE_Face extends HE_MeshElement implements Comparable<HE_Face> {
 	 */
 	public List<HE_Halfedge> getFaceEdges() {
 		final FastTable<HE_Halfedge> fe = new FastTable<HE_Halfedge>();
-		if (_halfedge == null) {
+		if (getFaceEdges(fe) == 0) {
 			return fe;
 		}
+		return fe.unmodifiable();
+	}
+
+	/**
+	 * Get the edges of the face, reusing a list instead of allocating one.
+	 *
+	 * @param result
+	 *            cleared and filled with the edges
+	 * @return number of edges
+	 */
+	public int getFaceEdges(final List<HE_Halfedge> result) {
+		result.clear();
+		if (_halfedge == null) {
+			return 0;
+		}
 		HE_Halfedge he = _halfedge;
 		do {
 			if (he.isEdge()) {
-				if (!fe.contains(he)) {
-					fe.add(he);
+				if (!result.contains(he)) {
+					result.add(he);
 				}
 			} else {
-				if (!fe.contains(he.getPair())) {
-					fe.add(he.getPair());
+				if (!result.contains(he.getPair())) {
+					result.add(he.getPair());
 				}
 			}
 			he = he.getNextInFace();
 		} while (he != _halfedge);
-		return fe.unmodifiable();
+		return result.size();
 	}
 
 	/**
@@ -425,6 +487,7 @@ public class HE_Face extends HE_MeshElement implements Comparable<HE_Face> {
 	 */
 	protected void _setHalfedge(final HE_Halfedge halfedge) {
 		_halfedge = halfedge;
+		stamp = currentStamp();
 	}
 
 	/**
@@ -445,6 +508,7 @@ public class HE_Face extends HE_MeshElement implements Comparable<HE_Face> {
 	 */
 	protected void _clearHalfedge() {
 		_halfedge = null;
+		stamp = currentStamp();
 	}
 
 	/**
@@ -500,6 +564,7 @@ public class HE_Face extends HE_MeshElement implements Comparable<HE_Face> {
 				}
 			} while (he != _halfedge);
 			_halfedge = leftmost;
+			stamp = currentStamp();
 		}
 	}
 
@@ -542,8 +607,10 @@ public class HE_Face extends HE_MeshElement implements Comparable<HE_Face> {
 	 * @return
 	 */
 	public int[] getTriangles(final boolean optimize) {
-		if (triangles != null) {
-			return triangles;
+		validateCache();
+		final int[] tris = triangles;
+		if (tris != null) {
+			return tris;
 		}
 		final int fo = getFaceOrder();
 		if (fo < 3) {
@@ -589,17 +656,19 @@ public class HE_Face extends HE_MeshElement implements Comparable<HE_Face> {
 	 * @return
 	 */
 	public WB_AABB getAABB() {
-		if (aabb != null) {
-			return aabb;
+		validateCache();
+		WB_AABB box = aabb;
+		if (box != null) {
+			return box;
 		}
-
-		aabb = new WB_AABB();
+		box = new WB_AABB();
 		HE_Halfedge he = getHalfedge();
 		do {
-			aabb.expandToInclude(he.getVertex());
+			box.expandToInclude(he.getVertex());
 			he = he.getNextInFace();
 		} while (he != getHalfedge());
-		return aabb;
+		aabb = box;
+		return box;
 	}
 
 	/**
@@ -687,19 +756,35 @@ public class HE_Face extends HE_MeshElement implements Comparable<HE_Face> {
 		if (getHalfedge() == null) {
 			return ff;
 		}
+		getNeighborFaces(ff);
+		return ff.unmodifiable();
+	}
+
+	/**
+	 * Get the neighboring faces, reusing a list instead of allocating one.
+	 *
+	 * @param result
+	 *            cleared and filled with the neighbors
+	 * @return number of neighbors
+	 */
+	public int getNeighborFaces(final List<HE_Face> result) {
+		result.clear();
+		if (getHalfedge() == null) {
+			return 0;
+		}
 		HE_Halfedge he = getHalfedge();
 		do {
 			final HE_Halfedge hep = he.getPair();
 			if (hep != null && hep.getFace() != null) {
 				if (hep.getFace() != this) {
-					if (!ff.contains(hep.getFace())) {
-						ff.add(hep.getFace());
+					if (!result.contains(hep.getFace())) {
+						result.add(hep.getFace());
 					}
 				}
 			}
 			he = he.getNextInFace();
 		} while (he != getHalfedge());
-		return ff.unmodifiable();
+		return result.size();
 	}
 
 	/*
@@ -779,6 +864,7 @@ public class HE_Face extends HE_MeshElement implements Comparable<HE_Face> {
 	@Override
 	public void clear() {
 		_halfedge = null;
+		stamp = currentStamp();
 	}
 
 	/**
@@ -833,12 +919,81 @@ public class HE_Face extends HE_MeshElement implements Comparable<HE_Face> {
 		textureId = i;
 	}
 
+	/**
+	 * Discard the cached normal, center, area, bounding box and triangulation.
+	 */
 	public void update() {
+		resetCache(0);
+	}
+
+	/**
+	 * Check whether neither the face nor any of its vertices changed since t.
+	 *
+	 * @param t
+	 * @return
+	 */
+	boolean isUnchangedSince(final long t) {
+		if (stamp >= t) {
+			return false;
+		}
+		final HE_Halfedge start = _halfedge;
+		if (start == null) {
+			return true;
+		}
+		HE_Halfedge he = start;
+		do {
+			if (he.getVertex() == null || he.getVertex().stamp >= t) {
+				return false;
+			}
+			he = he.getNextInFace();
+		} while (he != null && he != start);
+		return he != null;
+	}
+
+	/**
+	 * Recompute stale derived geometry, stamping new values with t.
+	 *
+	 * @param t
+	 */
+	void updateCache(final long t) {
+		if (!isUnmodifiedSince(cacheStamp)) {
+			if (isUnchangedSince(cacheStamp)) {
+				cacheStamp = t;
+			} else {
+				resetCache(t);
+			}
+		}
+		if (_halfedge != null) {
+			getFaceNormal();
+			getFaceCenter();
+			getFaceArea();
+		}
+	}
+
+	/**
+	 * Nothing changed anywhere since the values were cached: valid without
+	 * looking at the vertices. Otherwise check the face, and if unchanged,
+	 * restamp the cache so the next call takes the fast path again.
+	 */
+	private void validateCache() {
+		if (isUnmodifiedSince(cacheStamp)) {
+			return;
+		}
+		final long t = nextStamp();
+		if (isUnchangedSince(cacheStamp)) {
+			cacheStamp = t;
+		} else {
+			resetCache(t);
+		}
+	}
+
+	private void resetCache(final long t) {
 		triangles = null;
 		normal = null;
 		center = null;
 		aabb = null;
-
+		area = Double.NaN;
+		cacheStamp = t;
 	}
 
 	public WB_Coord getClosestPoint(final WB_Coord p) {
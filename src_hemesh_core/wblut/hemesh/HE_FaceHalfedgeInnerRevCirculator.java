@@ -19,7 +19,7 @@ public class HE_FaceHalfedgeInnerRevCirculator implements Iterator<HE_Halfedge>
 	/**
 	 *
 	 */
-	private final HE_Halfedge _start;
+	private HE_Halfedge _start;
 
 	/**
 	 *
@@ -36,6 +36,19 @@ public class HE_FaceHalfedgeInnerRevCirculator implements Iterator<HE_Halfedge>
 		_current = null;
 	}
 
+	/**
+	 * Restart the circulator around another face, to reuse it without
+	 * allocating a new one.
+	 *
+	 * @param f
+	 * @return this circulator
+	 */
+	public HE_FaceHalfedgeInnerRevCirculator reset(final HE_Face f) {
+		_start = f.getHalfedge();
+		_current = null;
+		return this;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
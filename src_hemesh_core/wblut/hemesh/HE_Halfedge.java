@@ -50,6 +50,22 @@ public class HE_Halfedge extends HE_MeshElement implements Comparable<HE_Halfedg
 		_face = null;
 	}
 
+	/**
+	 * Instantiates a new HE_Halfedge with a given key.
+	 *
+	 * @param key
+	 *            key of the halfedge, a new key is taken if negative
+	 */
+	HE_Halfedge(final long key) {
+		super(key);
+		uvw = null;
+		_vertex = null;
+		_pair = null;
+		_next = null;
+		_prev = null;
+		_face = null;
+	}
+
 	/**
 	 * Get key.
 	 *
@@ -169,7 +185,9 @@ public class HE_Halfedge extends HE_MeshElement implements Comparable<HE_Halfedg
 	 *            next halfedge
 	 */
 	protected void _setNext(final HE_Halfedge he) {
+		touch();
 		_next = he;
+		touch();
 	}
 
 	/**
@@ -179,7 +197,9 @@ public class HE_Halfedge extends HE_MeshElement implements Comparable<HE_Halfedg
 	 *            next halfedge
 	 */
 	protected void _setPrev(final HE_Halfedge he) {
+		touch();
 		_prev = he;
+		touch();
 	}
 
 	/**
@@ -189,7 +209,29 @@ public class HE_Halfedge extends HE_MeshElement implements Comparable<HE_Halfedg
 	 *            halfedge to pair
 	 */
 	protected void _setPair(final HE_Halfedge he) {
+		touch();
 		_pair = he;
+		touch();
+	}
+
+	/**
+	 * Mark the face and the vertices whose derived geometry depends on this
+	 * halfedge as modified.
+	 */
+	private void touch() {
+		final long t = currentStamp();
+		if (_vertex != null) {
+			_vertex.stamp = t;
+		}
+		if (_face != null) {
+			_face.stamp = t;
+		}
+		if (_next != null && _next._vertex != null) {
+			_next._vertex.stamp = t;
+		}
+		if (_pair != null && _pair._vertex != null) {
+			_pair._vertex.stamp = t;
+		}
 	}
 
 	/**
@@ -314,7 +356,9 @@ public class HE_Halfedge extends HE_MeshElement implements Comparable<HE_Halfedg
 	 *            the new face
 	 */
 	protected void _setFace(final HE_Face face) {
+		touch();
 		_face = face;
+		touch();
 	}
 
 	/**
@@ -342,7 +386,9 @@ public class HE_Halfedge extends HE_MeshElement implements Comparable<HE_Halfedg
 	 *            the new vertex
 	 */
 	protected void _setVertex(final HE_Vertex vertex) {
+		touch();
 		_vertex = vertex;
+		touch();
 	}
 
 	/**
@@ -364,35 +410,45 @@ public class HE_Halfedge extends HE_MeshElement implements Comparable<HE_Halfedg
 	 * Clear next.
 	 */
 	protected void _clearNext() {
+		touch();
 		_next = null;
+		touch();
 	}
 
 	/**
 	 * Clear prev.
 	 */
 	protected void _clearPrev() {
+		touch();
 		_prev = null;
+		touch();
 	}
 
 	/**
 	 * Clear pair.
 	 */
 	protected void _clearPair() {
+		touch();
 		_pair = null;
+		touch();
 	}
 
 	/**
 	 * Clear face.
 	 */
 	protected void _clearFace() {
+		touch();
 		_face = null;
+		touch();
 	}
 
 	/**
 	 * Clear vertex.
 	 */
 	protected void _clearVertex() {
+		touch();
 		_vertex = null;
+		touch();
 	}
 
 	/**
@@ -642,6 +698,7 @@ public class HE_Halfedge extends HE_MeshElement implements Comparable<HE_Halfedg
 	 */
 	@Override
 	protected void clear() {
+		touch();
 		_face = null;
 		_next = null;
 		_pair = null;
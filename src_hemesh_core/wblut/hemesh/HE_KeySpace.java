@@ -0,0 +1,86 @@
+/*
+ * This file is part of HE_Mesh, a library for creating and manipulating meshes.
+ * It is dedicated to the public domain. To the extent possible under law,
+ * I , Frederik Vanhoutte, have waived all copyright and related or neighboring
+ * rights.
+ *
+ * This work is published from Belgium. (http://creativecommons.org/publicdomain/zero/1.0/)
+ *
+ */
+package wblut.hemesh;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deterministic source of element keys. While a key space is active on a
+ * thread, see {@link HE_Element#useKeySpace(HE_KeySpace)} and
+ * {@link HE_MeshStructure#setKeySpace(HE_KeySpace)}, every element created on
+ * that thread takes the next key of the space. Replaying the same operations
+ * in a new key space with the same id reproduces the same keys.
+ *
+ * Each id owns a range of 2^38 keys, disjoint from the keys handed out by the
+ * shared counter and from the ranges of other ids. Elements created in two key
+ * spaces with the same id should not be mixed in one mesh.
+ *
+ * @author Frederik Vanhoutte (W:Blut)
+ *
+ */
+public class HE_KeySpace {
+	static final int ID_BITS = 24;
+	static final int KEY_BITS = 38;
+	private static final long FIRST_KEY = 1L << ID_BITS + KEY_BITS;
+	private final int id;
+	private final long first;
+	private final AtomicLong next;
+
+	/**
+	 *
+	 *
+	 * @param id
+	 *            0 <= id < 2^24
+	 */
+	public HE_KeySpace(final int id) {
+		if (id < 0 || id >= 1 << ID_BITS) {
+			throw new IllegalArgumentException("Key space id should be between 0 and " + ((1 << ID_BITS) - 1) + ".");
+		}
+		this.id = id;
+		first = FIRST_KEY | (long) id << KEY_BITS;
+		next = new AtomicLong(first);
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Number of keys handed out by this key space.
+	 *
+	 * @return
+	 */
+	public long getNumberOfKeys() {
+		return next.get() - first;
+	}
+
+	long nextKey() {
+		final long key = next.getAndIncrement();
+		if (key - first >= 1L << KEY_BITS) {
+			throw new IllegalStateException("Key space " + id + " is exhausted.");
+		}
+		return key;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "HE_KeySpace " + id + ": " + getNumberOfKeys() + " keys";
+	}
+}
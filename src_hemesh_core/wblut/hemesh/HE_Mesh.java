@@ -21,6 +21,7 @@ import wblut.geom.WB_Frame;
 import wblut.geom.WB_GeometryOp3D;
 import wblut.geom.WB_KDTree;
 import wblut.geom.WB_KDTree.WB_KDEntry;
+import wblut.geom.WB_KDTreeStatic;
 import wblut.geom.WB_Mesh;
 import wblut.geom.WB_MeshCreator;
 import wblut.geom.WB_Point;
@@ -85,12 +86,41 @@ public class HE_Mesh extends HE_MeshStructure {
 	}
 
 	/**
-	 * Deep copy of mesh.
+	 *
+	 *
+	 * @param mesh
+	 */
+	public HE_Mesh(final HE_CompactMesh mesh) {
+		super();
+		final HE_Mesh result = mesh.toMesh();
+		setNoCopy(result);
+		for (final HE_Attribute<HE_Vertex> attribute : result.getVertexAttributes()) {
+			addVertexAttribute(attribute.create()).copyValues(attribute);
+		}
+		for (final HE_Attribute<HE_Face> attribute : result.getFaceAttributes()) {
+			addFaceAttribute(attribute.create()).copyValues(attribute);
+		}
+		for (final HE_Attribute<HE_Halfedge> attribute : result.getHalfedgeAttributes()) {
+			final HE_Attribute<HE_Halfedge> copy = addHalfedgeAttribute(attribute.create());
+			final HE_HalfedgeIterator heItr = heItr();
+			HE_Halfedge he;
+			while (heItr.hasNext()) {
+				he = heItr.next();
+				copy.copyValue(attribute, he, he);
+			}
+		}
+	}
+
+	/**
+	 * Deep copy of mesh. To apply a modifier that only moves vertices, such
+	 * as HEM_Noise or HEM_Twist, to a copy without duplicating connectivity,
+	 * use {@link HE_CompactMesh#copy()} and
+	 * {@link HE_CompactMesh#modify(HEM_Modifier)}.
 	 *
 	 * @return copy as new HE_Mesh
 	 */
 	public HE_Mesh copy() {
-		return new HE_Mesh(new HEC_Copy(this));
+		return new HEC_Copy(this).setCorrelation(false).create();
 	}
 
 	/**
@@ -99,7 +129,7 @@ public class HE_Mesh extends HE_MeshStructure {
 	 * @return copy as new HE_Mesh
 	 */
 	public HE_Mesh get() {
-		return new HE_Mesh(new HEC_Copy(this));
+		return new HEC_Copy(this).setCorrelation(false).create();
 	}
 
 	/**
@@ -122,6 +152,7 @@ public class HE_Mesh extends HE_MeshStructure {
 	 *            HE_Mesh to be duplicated
 	 */
 	void setNoCopy(final HE_Mesh target) {
+		endTransactions();
 		replaceVertices(target);
 		replaceFaces(target);
 		replaceHalfedges(target);
@@ -136,6 +167,7 @@ public class HE_Mesh extends HE_MeshStructure {
 	 * @return self
 	 */
 	public HE_Mesh modify(final HEM_Modifier modifier) {
+		final HE_KeySpace previous = enterKeySpace();
 		HE_Mesh copy = get();
 		try {
 			modifier.apply(this);
@@ -143,6 +175,8 @@ public class HE_Mesh extends HE_MeshStructure {
 		} catch (Exception e) {
 			System.out.println("HEM_Modifier failed. Resetting mesh");
 			setNoCopy(copy);
+		} finally {
+			exitKeySpace(previous);
 		}
 		return this;
 	}
@@ -155,6 +189,7 @@ public class HE_Mesh extends HE_MeshStructure {
 	 * @return self
 	 */
 	public HE_Mesh subdivide(final HES_Subdividor subdividor) {
+		final HE_KeySpace previous = enterKeySpace();
 		HE_Mesh copy = get();
 		try {
 			subdividor.apply(this);
@@ -162,6 +197,8 @@ public class HE_Mesh extends HE_MeshStructure {
 		} catch (Exception e) {
 			System.out.println("HEM_Subdividor failed. Resetting mesh");
 			setNoCopy(copy);
+		} finally {
+			exitKeySpace(previous);
 		}
 		return this;
 	}
@@ -177,6 +214,7 @@ public class HE_Mesh extends HE_MeshStructure {
 	 * @return self
 	 */
 	public HE_Mesh subdivide(final HES_Subdividor subdividor, final int rep) {
+		final HE_KeySpace previous = enterKeySpace();
 		HE_Mesh copy = get();
 		try {
 			for (int i = 0; i < rep; i++) {
@@ -186,6 +224,8 @@ public class HE_Mesh extends HE_MeshStructure {
 		} catch (Exception e) {
 			System.out.println("HEM_Subdividor failed. Resetting mesh");
 			setNoCopy(copy);
+		} finally {
+			exitKeySpace(previous);
 		}
 		return this;
 	}
@@ -215,6 +255,7 @@ public class HE_Mesh extends HE_MeshStructure {
 	 * @return the h e_ mesh
 	 */
 	public HE_Mesh simplify(final HES_Simplifier simplifier) {
+		final HE_KeySpace previous = enterKeySpace();
 		HE_Mesh copy = get();
 		try {
 			simplifier.apply(this);
@@ -222,6 +263,8 @@ public class HE_Mesh extends HE_MeshStructure {
 		} catch (Exception e) {
 			System.out.println("HEM_Simplifier failed. Resetting mesh");
 			setNoCopy(copy);
+		} finally {
+			exitKeySpace(previous);
 		}
 		return this;
 	}
@@ -249,6 +292,15 @@ public class HE_Mesh extends HE_MeshStructure {
 		return gf.createMesh(getVerticesAsCoord(), getFacesAsInt());
 	}
 
+	/**
+	 * Compact index-based copy of the mesh.
+	 *
+	 * @return
+	 */
+	public HE_CompactMesh toCompactMesh() {
+		return new HE_CompactMesh(this);
+	}
+
 	/**
 	 * Gets the frame.
 	 *
@@ -1333,6 +1385,46 @@ public class HE_Mesh extends HE_MeshStructure {
 		return tree;
 	}
 
+	/**
+	 * Return a static KD-tree containing all face centers. The tree returns
+	 * face indices, see getFaceWithIndex(int).
+	 *
+	 * @return WB_KDTreeStatic
+	 */
+	public WB_KDTreeStatic getStaticFaceTree() {
+		final double[] coords = new double[3 * getNumberOfFaces()];
+		final Iterator<HE_Face> fItr = fItr();
+		WB_Coord c;
+		int i = 0;
+		while (fItr.hasNext()) {
+			c = fItr.next().getFaceCenter();
+			coords[i++] = c.xd();
+			coords[i++] = c.yd();
+			coords[i++] = c.zd();
+		}
+		return new WB_KDTreeStatic(coords);
+	}
+
+	/**
+	 * Return a static KD-tree containing all vertices. The tree returns vertex
+	 * indices, see getVertexWithIndex(int).
+	 *
+	 * @return WB_KDTreeStatic
+	 */
+	public WB_KDTreeStatic getStaticVertexTree() {
+		final double[] coords = new double[3 * getNumberOfVertices()];
+		final Iterator<HE_Vertex> vItr = vItr();
+		HE_Vertex v;
+		int i = 0;
+		while (vItr.hasNext()) {
+			v = vItr.next();
+			coords[i++] = v.xd();
+			coords[i++] = v.yd();
+			coords[i++] = v.zd();
+		}
+		return new WB_KDTreeStatic(coords);
+	}
+
 	/**
 	 * Return the closest vertex on the mesh.
 	 *
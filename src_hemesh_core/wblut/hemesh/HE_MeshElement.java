@@ -9,6 +9,8 @@
  */
 package wblut.hemesh;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import wblut.core.WB_ProgressTracker;
 import wblut.geom.WB_GeometryFactory;
 
@@ -17,11 +19,23 @@ import wblut.geom.WB_GeometryFactory;
  */
 public abstract class HE_MeshElement extends HE_Element {
 
-	protected volatile boolean visited;
+	protected boolean visited;
 	protected final static WB_GeometryFactory gf = new WB_GeometryFactory();
 	protected final static WB_ProgressTracker tracker = WB_ProgressTracker.instance();
 	protected boolean visible;
 	protected int color;
+	/**
+	 * Modification clock shared by all meshes. Vertices and faces record the
+	 * current value whenever their position or connectivity changes, cached
+	 * derived geometry records a fresh value when it is computed. A cached
+	 * value is valid as long as it is more recent than all its inputs.
+	 */
+	private static final AtomicLong modificationClock = new AtomicLong();
+	/**
+	 * Most recent stamp recorded by a modification. Caches more recent than
+	 * this are valid without checking their inputs.
+	 */
+	private static final AtomicLong lastModification = new AtomicLong();
 
 	/**
 	 *
@@ -35,21 +49,77 @@ public abstract class HE_MeshElement extends HE_Element {
 
 	/**
 	 *
+	 *
+	 * @param key
+	 *            key of the element, a new key is taken if negative
+	 */
+	HE_MeshElement(final long key) {
+		super(key);
+		visited = false;
+		visible = true;
+		color = -1;
+	}
+
+	/**
+	 * Stamp for an element that was just modified. Only writes to shared
+	 * state for the first modification after the clock advanced.
+	 *
+	 * @return
+	 */
+	static long currentStamp() {
+		final long t = modificationClock.get();
+		long last;
+		while ((last = lastModification.get()) < t && !lastModification.compareAndSet(last, t)) {
+		}
+		return t;
+	}
+
+	/**
+	 * Stamp for derived values that are about to be computed, more recent
+	 * than all modifications so far. The clock only advances if there were
+	 * modifications since the last advance, so a pass over many elements
+	 * doesn't contend on it.
+	 *
+	 * @return
+	 */
+	static long nextStamp() {
+		final long t = modificationClock.get();
+		return lastModification.get() < t ? t : modificationClock.incrementAndGet();
+	}
+
+	/**
+	 * Check whether nothing was modified at or after t, in any mesh.
+	 *
+	 * @param t
+	 * @return
+	 */
+	static boolean isUnmodifiedSince(final long t) {
+		return lastModification.get() < t;
+	}
+
+	/**
+	 *
+	 * @deprecated Use {@link HE_MeshStructure#beginTraversal()}
 	 */
+	@Deprecated
 	public void clearVisited() {
 		visited = false;
 	}
 
 	/**
 	 *
+	 * @deprecated Use {@link HE_MeshStructure#beginTraversal()}
 	 */
+	@Deprecated
 	public void setVisited() {
 		visited = true;
 	}
 
 	/**
 	 *
+	 * @deprecated Use {@link HE_MeshStructure#beginTraversal()}
 	 */
+	@Deprecated
 	public void setVisited(final boolean b) {
 		visited = b;
 	}
@@ -58,7 +128,9 @@ public abstract class HE_MeshElement extends HE_Element {
 	 *
 	 *
 	 * @return
+	 * @deprecated Use {@link HE_MeshStructure#beginTraversal()}
 	 */
+	@Deprecated
 	public boolean isVisited() {
 		return visited;
 	}
@@ -9,11 +9,16 @@
  */
 package wblut.hemesh;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import gnu.trove.iterator.TLongObjectIterator;
 import gnu.trove.map.TLongIntMap;
@@ -22,6 +27,8 @@ import gnu.trove.map.hash.TLongIntHashMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
 import javolution.util.FastMap;
 import javolution.util.FastTable;
+import wblut.core.WB_ParallelExecutor;
+import wblut.core.WB_ParallelExecutor.WB_RangeAction;
 import wblut.core.WB_ProgressCounter;
 import wblut.geom.WB_AABB;
 import wblut.geom.WB_Coord;
@@ -30,7 +37,9 @@ import wblut.geom.WB_GeometryOp3D;
 import wblut.geom.WB_Point;
 import wblut.geom.WB_Polygon;
 import wblut.geom.WB_Segment;
+import wblut.geom.WB_SpaceFillingCurve;
 import wblut.geom.WB_Sphere;
+import wblut.hemesh.HE_RAS.HE_RASPrimitive;
 import wblut.hemesh.HE_RAS.HE_RASTrove;
 
 /**
@@ -51,20 +60,504 @@ public class HE_MeshStructure extends HE_MeshElement {
 	protected HE_RAS<HE_Halfedge> edges;
 	protected HE_RAS<HE_Halfedge> unpairedHalfedges;
 	protected HE_RAS<HE_Face> faces;
+	private boolean primitiveIndex = true;
+	private int transactionDepth;
+	private List<HE_Halfedge> pendingHalfedges;
+	private List<HE_Attribute<HE_Vertex>> vertexAttributes;
+	private List<HE_Attribute<HE_Face>> faceAttributes;
+	private List<HE_Attribute<HE_Halfedge>> halfedgeAttributes;
+	private List<HE_Traversal> idleTraversals;
+	private HE_KeySpace keySpace;
 
 	/**
 	 * Instantiates a new HE_MeshStructure.
 	 */
 	public HE_MeshStructure() {
 		super();
-		vertices = new HE_RAS.HE_RASTrove<HE_Vertex>();
-		halfedges = new HE_RAS.HE_RASTrove<HE_Halfedge>();
-		edges = new HE_RAS.HE_RASTrove<HE_Halfedge>();
-		unpairedHalfedges = new HE_RAS.HE_RASTrove<HE_Halfedge>();
-		faces = new HE_RAS.HE_RASTrove<HE_Face>();
+		vertices = createRAS(0);
+		halfedges = createRAS(0);
+		edges = createRAS(0);
+		unpairedHalfedges = createRAS(0);
+		faces = createRAS(0);
 
 	}
 
+	/**
+	 * Create an empty element set of the type used by this structure.
+	 *
+	 * @param n
+	 *            expected number of elements
+	 * @return
+	 */
+	protected <E extends HE_Element> HE_RAS<E> createRAS(final int n) {
+		return primitiveIndex ? new HE_RASPrimitive<E>(n) : new HE_RASTrove<E>();
+	}
+
+	/**
+	 * Select the element index. By default, the elements are indexed by a
+	 * single open addressing table of primitive keys, HE_RASPrimitive. If
+	 * false, the Trove based HE_RASTrove is used. Existing elements are kept,
+	 * in the same order.
+	 *
+	 * @param b
+	 * @return
+	 */
+	public HE_MeshStructure setPrimitiveIndex(final boolean b) {
+		if (b != primitiveIndex) {
+			primitiveIndex = b;
+			vertices = convert(vertices);
+			halfedges = convert(halfedges);
+			edges = convert(edges);
+			unpairedHalfedges = convert(unpairedHalfedges);
+			faces = convert(faces);
+		}
+		return this;
+	}
+
+	/**
+	 *
+	 *
+	 * @return true if the elements are indexed by HE_RASPrimitive
+	 */
+	public boolean isPrimitiveIndex() {
+		return primitiveIndex;
+	}
+
+	/**
+	 * Give this mesh its own deterministic key space. Elements created while
+	 * the mesh is modified, subdivided or simplified take their keys from it,
+	 * so repeating the same operations in a fresh key space with the same id
+	 * reproduces the same keys.
+	 *
+	 * @param space
+	 *            key space, null to use the shared counter
+	 * @return
+	 */
+	public HE_MeshStructure setKeySpace(final HE_KeySpace space) {
+		keySpace = space;
+		return this;
+	}
+
+	/**
+	 *
+	 *
+	 * @return the key space of this mesh, or null
+	 */
+	public HE_KeySpace getKeySpace() {
+		return keySpace;
+	}
+
+	/**
+	 * Activate the key space of this mesh on the calling thread, if it has
+	 * one.
+	 *
+	 * @return the key space to restore with exitKeySpace
+	 */
+	HE_KeySpace enterKeySpace() {
+		return keySpace == null ? getActiveKeySpace() : useKeySpace(keySpace);
+	}
+
+	/**
+	 *
+	 *
+	 * @param previous
+	 *            key space returned by enterKeySpace
+	 */
+	void exitKeySpace(final HE_KeySpace previous) {
+		useKeySpace(previous);
+	}
+
+	private <E extends HE_Element> HE_RAS<E> convert(final HE_RAS<E> source) {
+		final HE_RAS<E> result = createRAS(source.size());
+		result.addAll(source);
+		source.transferColumns(result);
+		return result;
+	}
+
+	/**
+	 * Replace an element set by an empty one, attributes move along.
+	 *
+	 * @param source
+	 * @return
+	 */
+	private <E extends HE_Element> HE_RAS<E> renew(final HE_RAS<E> source) {
+		final HE_RAS<E> result = createRAS(0);
+		source.transferColumns(result);
+		return result;
+	}
+
+	/**
+	 * Start a batch of topology edits. Until the matching
+	 * {@link #commitTransaction()}, halfedges that are added, paired or
+	 * unpaired are kept in the general halfedge set and only marked. Their
+	 * classification as edge, halfedge or unpaired halfedge is reconciled once
+	 * at commit. During a transaction all elements can be added, removed,
+	 * linked and looked up as usual, but the edge and unpaired halfedge
+	 * collections, iterators and counts are not up to date.
+	 *
+	 * Transactions can be nested, only the outermost commit reconciles.
+	 */
+	public void beginTransaction() {
+		if (transactionDepth++ == 0) {
+			pendingHalfedges = new ArrayList<HE_Halfedge>();
+		}
+	}
+
+	/**
+	 * End a batch of topology edits started with {@link #beginTransaction()}.
+	 */
+	public void commitTransaction() {
+		if (transactionDepth == 0) {
+			throw new IllegalStateException("No transaction in progress.");
+		}
+		if (--transactionDepth == 0) {
+			reconcileHalfedges();
+			pendingHalfedges = null;
+		}
+	}
+
+	/**
+	 * Close all open transactions, e.g. when an edit failed halfway and the
+	 * matching commits were never reached.
+	 */
+	public void endTransactions() {
+		if (transactionDepth > 0) {
+			transactionDepth = 0;
+			reconcileHalfedges();
+			pendingHalfedges = null;
+		}
+	}
+
+	/**
+	 *
+	 *
+	 * @return true if a transaction is in progress
+	 */
+	public boolean isInTransaction() {
+		return transactionDepth > 0;
+	}
+
+	/**
+	 * Mark a halfedge for reclassification at commit, adding it to the
+	 * structure if necessary.
+	 *
+	 * @param he
+	 */
+	private void touch(final HE_Halfedge he) {
+		if (!contains(he)) {
+			halfedges.add(he);
+		}
+		pendingHalfedges.add(he);
+	}
+
+	/**
+	 * Move all marked halfedges to the set matching their current pairing.
+	 * Halfedges can be marked more than once, or removed after marking, the
+	 * checks take care of both.
+	 */
+	private void reconcileHalfedges() {
+		HE_RAS<HE_Halfedge> target;
+		for (final HE_Halfedge he : pendingHalfedges) {
+			if (he.getPair() == null) {
+				target = unpairedHalfedges;
+			} else if (he.isEdge()) {
+				target = edges;
+			} else {
+				target = halfedges;
+			}
+			if (!target.contains(he) && contains(he)) {
+				final HE_RAS<HE_Halfedge> source = stash(he, 0);
+				remove(he);
+				target.add(he);
+				unstash(he, source, 0);
+			}
+		}
+	}
+
+	/**
+	 * Keep the halfedge attribute values of he aside before it is moved to
+	 * another halfedge set.
+	 *
+	 * @param he
+	 * @param slot
+	 *            0 or 1
+	 * @return the set holding he, null if there is nothing to keep
+	 */
+	private HE_RAS<HE_Halfedge> stash(final HE_Halfedge he, final int slot) {
+		// attributes and traversal marks are bound to all three sets
+		if (edges.columns == null) {
+			return null;
+		}
+		HE_RAS<HE_Halfedge> source = edges;
+		int i = source.indexOf(he);
+		if (i < 0) {
+			source = halfedges;
+			i = source.indexOf(he);
+		}
+		if (i < 0) {
+			source = unpairedHalfedges;
+			i = source.indexOf(he);
+		}
+		if (i < 0) {
+			return null;
+		}
+		source.stashColumns(i, slot);
+		return source;
+	}
+
+	/**
+	 * Restore the halfedge attribute values of he after it was moved.
+	 *
+	 * @param he
+	 * @param source
+	 *            the set returned by stash
+	 * @param slot
+	 */
+	private void unstash(final HE_Halfedge he, final HE_RAS<HE_Halfedge> source, final int slot) {
+		if (source == null) {
+			return;
+		}
+		for (final HE_RAS<HE_Halfedge> target : getHalfedgeSets()) {
+			final int i = target.indexOf(he);
+			if (i >= 0) {
+				target.unstashColumns(source, slot, i);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * The halfedge sets in iteration order.
+	 *
+	 * @return
+	 */
+	private HE_RAS<HE_Halfedge>[] getHalfedgeSets() {
+		@SuppressWarnings("unchecked")
+		final HE_RAS<HE_Halfedge>[] sets = (HE_RAS<HE_Halfedge>[]) new HE_RAS<?>[] { edges, halfedges,
+				unpairedHalfedges };
+		return sets;
+	}
+
+	/**
+	 * Add a vertex attribute. Existing vertices get the default value.
+	 *
+	 * @param attribute
+	 *            a new attribute, not yet part of any structure
+	 * @return attribute
+	 */
+	public <A extends HE_Attribute<HE_Vertex>> A addVertexAttribute(final A attribute) {
+		vertexAttributes = addAttribute(vertexAttributes, attribute, new HE_RAS<?>[] { vertices });
+		return attribute;
+	}
+
+	/**
+	 * Add a face attribute. Existing faces get the default value.
+	 *
+	 * @param attribute
+	 *            a new attribute, not yet part of any structure
+	 * @return attribute
+	 */
+	public <A extends HE_Attribute<HE_Face>> A addFaceAttribute(final A attribute) {
+		faceAttributes = addAttribute(faceAttributes, attribute, new HE_RAS<?>[] { faces });
+		return attribute;
+	}
+
+	/**
+	 * Add a halfedge attribute. Existing halfedges get the default value. The
+	 * value follows the halfedge when it is paired or unpaired.
+	 *
+	 * @param attribute
+	 *            a new attribute, not yet part of any structure
+	 * @return attribute
+	 */
+	public <A extends HE_Attribute<HE_Halfedge>> A addHalfedgeAttribute(final A attribute) {
+		halfedgeAttributes = addAttribute(halfedgeAttributes, attribute, getHalfedgeSets());
+		return attribute;
+	}
+
+	private static <E extends HE_Element> List<HE_Attribute<E>> addAttribute(List<HE_Attribute<E>> attributes,
+			final HE_Attribute<E> attribute, final HE_RAS<?>[] sets) {
+		if (getAttribute(attributes, attribute.getName()) != null) {
+			throw new IllegalArgumentException("Attribute " + attribute.getName() + " already exists.");
+		}
+		attribute.bind(sets);
+		if (attributes == null) {
+			attributes = new ArrayList<HE_Attribute<E>>();
+		}
+		attributes.add(attribute);
+		return attributes;
+	}
+
+	/**
+	 *
+	 *
+	 * @param name
+	 * @return vertex attribute, null if there is no attribute with this name
+	 */
+	public HE_Attribute<HE_Vertex> getVertexAttribute(final String name) {
+		return getAttribute(vertexAttributes, name);
+	}
+
+	/**
+	 *
+	 *
+	 * @param name
+	 * @return face attribute, null if there is no attribute with this name
+	 */
+	public HE_Attribute<HE_Face> getFaceAttribute(final String name) {
+		return getAttribute(faceAttributes, name);
+	}
+
+	/**
+	 *
+	 *
+	 * @param name
+	 * @return halfedge attribute, null if there is no attribute with this name
+	 */
+	public HE_Attribute<HE_Halfedge> getHalfedgeAttribute(final String name) {
+		return getAttribute(halfedgeAttributes, name);
+	}
+
+	private static <E extends HE_Element> HE_Attribute<E> getAttribute(final List<HE_Attribute<E>> attributes,
+			final String name) {
+		if (attributes != null) {
+			for (final HE_Attribute<E> attribute : attributes) {
+				if (attribute.getName().equals(name)) {
+					return attribute;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 *
+	 *
+	 * @return unmodifiable list of all vertex attributes
+	 */
+	public List<HE_Attribute<HE_Vertex>> getVertexAttributes() {
+		return getAttributes(vertexAttributes);
+	}
+
+	/**
+	 *
+	 *
+	 * @return unmodifiable list of all face attributes
+	 */
+	public List<HE_Attribute<HE_Face>> getFaceAttributes() {
+		return getAttributes(faceAttributes);
+	}
+
+	/**
+	 *
+	 *
+	 * @return unmodifiable list of all halfedge attributes
+	 */
+	public List<HE_Attribute<HE_Halfedge>> getHalfedgeAttributes() {
+		return getAttributes(halfedgeAttributes);
+	}
+
+	private static <E extends HE_Element> List<HE_Attribute<E>> getAttributes(
+			final List<HE_Attribute<E>> attributes) {
+		if (attributes == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(attributes);
+	}
+
+	/**
+	 * Remove a vertex attribute and release its storage.
+	 *
+	 * @param name
+	 * @return removed attribute, null if there is no attribute with this name
+	 */
+	public HE_Attribute<HE_Vertex> removeVertexAttribute(final String name) {
+		final HE_Attribute<HE_Vertex> attribute = getAttribute(vertexAttributes, name);
+		vertexAttributes = removeAttribute(vertexAttributes, attribute);
+		return attribute;
+	}
+
+	/**
+	 * Remove a face attribute and release its storage.
+	 *
+	 * @param name
+	 * @return removed attribute, null if there is no attribute with this name
+	 */
+	public HE_Attribute<HE_Face> removeFaceAttribute(final String name) {
+		final HE_Attribute<HE_Face> attribute = getAttribute(faceAttributes, name);
+		faceAttributes = removeAttribute(faceAttributes, attribute);
+		return attribute;
+	}
+
+	/**
+	 * Remove a halfedge attribute and release its storage.
+	 *
+	 * @param name
+	 * @return removed attribute, null if there is no attribute with this name
+	 */
+	public HE_Attribute<HE_Halfedge> removeHalfedgeAttribute(final String name) {
+		final HE_Attribute<HE_Halfedge> attribute = getAttribute(halfedgeAttributes, name);
+		halfedgeAttributes = removeAttribute(halfedgeAttributes, attribute);
+		return attribute;
+	}
+
+	private static <E extends HE_Element> List<HE_Attribute<E>> removeAttribute(
+			final List<HE_Attribute<E>> attributes, final HE_Attribute<E> attribute) {
+		if (attribute == null) {
+			return attributes;
+		}
+		attribute.unbind();
+		attributes.remove(attribute);
+		return attributes.isEmpty() ? null : attributes;
+	}
+
+	/**
+	 * Start a traversal, with all elements unmarked. Traversals that have
+	 * ended are reused with their storage, so this usually needs no
+	 * allocation or clearing pass. Call {@link HE_Traversal#end()} when done.
+	 *
+	 * @return
+	 */
+	public synchronized HE_Traversal beginTraversal() {
+		final HE_Traversal traversal = idleTraversals == null || idleTraversals.isEmpty() ? new HE_Traversal(this)
+				: idleTraversals.remove(idleTraversals.size() - 1);
+		traversal.start();
+		return traversal;
+	}
+
+	/**
+	 * Keep an ended traversal for reuse.
+	 *
+	 * @param traversal
+	 */
+	synchronized void endTraversal(final HE_Traversal traversal) {
+		traversal.detach();
+		if (idleTraversals == null) {
+			idleTraversals = new ArrayList<HE_Traversal>();
+		}
+		idleTraversals.add(traversal);
+	}
+
+	/**
+	 * Release the storage kept for reuse by ended traversals.
+	 */
+	public synchronized void releaseTraversals() {
+		idleTraversals = null;
+	}
+
+	/**
+	 * Release storage of the element sets that is not needed for the current
+	 * number of elements, e.g. after removing a large part of the mesh.
+	 */
+	public void trimToSize() {
+		releaseTraversals();
+		vertices.trimToSize();
+		halfedges.trimToSize();
+		edges.trimToSize();
+		unpairedHalfedges.trimToSize();
+		faces.trimToSize();
+	}
+
 	/**
 	 * Instantiates a new HE_MeshStructure and populate it with a shallow copy
 	 * of mesh structure as parameter.
@@ -264,7 +757,9 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 *            halfedge to add
 	 */
 	public final void add(final HE_Halfedge he) {
-		if (he.getPair() == null) {
+		if (transactionDepth > 0) {
+			touch(he);
+		} else if (he.getPair() == null) {
 			unpairedHalfedges.add(he);
 		} else if (he.isEdge()) {
 			edges.add(he);
@@ -302,6 +797,7 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 *            faces to add as HE_Face[]
 	 */
 	public final void addFaces(final HE_Face[] faces) {
+		this.faces.ensureCapacity(this.faces.size() + faces.length);
 		for (final HE_Face face : faces) {
 			add(face);
 		}
@@ -314,6 +810,7 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 *            faces to add as Collection<? extends HE_Face>
 	 */
 	public final void addFaces(final Collection<? extends HE_Face> faces) {
+		this.faces.ensureCapacity(this.faces.size() + faces.size());
 		for (HE_Face f : faces) {
 			add(f);
 		}
@@ -325,6 +822,7 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 * @param source
 	 */
 	public final void addFaces(final HE_MeshStructure source) {
+		faces.ensureCapacity(faces.size() + source.faces.size());
 		faces.addAll(source.faces);
 	}
 
@@ -335,6 +833,7 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 *            halfedges to add as HE_Halfedge[]
 	 */
 	public final void addHalfedges(final HE_Halfedge[] halfedges) {
+		reserveHalfedges(Arrays.asList(halfedges));
 		for (final HE_Halfedge halfedge : halfedges) {
 			add(halfedge);
 		}
@@ -347,6 +846,7 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 *            halfedges to add as Collection<? extends HE_Halfedge>
 	 */
 	public final void addHalfedges(final Collection<? extends HE_Halfedge> halfedges) {
+		reserveHalfedges(halfedges);
 		for (HE_Halfedge he : halfedges) {
 			add(he);
 		}
@@ -358,18 +858,43 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 * @param source
 	 */
 	public final void addHalfedges(final HE_MeshStructure source) {
+		halfedges.ensureCapacity(halfedges.size() + source.halfedges.size());
+		edges.ensureCapacity(edges.size() + source.edges.size());
+		unpairedHalfedges.ensureCapacity(unpairedHalfedges.size() + source.unpairedHalfedges.size());
 		halfedges.addAll(source.halfedges);
 		edges.addAll(source.edges);
 		unpairedHalfedges.addAll(source.unpairedHalfedges);
 
 	}
 
+	/**
+	 * Grow the halfedge sets once for a bulk add, halfedges are distributed
+	 * over three sets so count them first.
+	 *
+	 * @param halfedges
+	 */
+	private void reserveHalfedges(final Collection<? extends HE_Halfedge> halfedges) {
+		int ne = 0;
+		int nu = 0;
+		for (final HE_Halfedge he : halfedges) {
+			if (he.getPair() == null) {
+				nu++;
+			} else if (he.isEdge()) {
+				ne++;
+			}
+		}
+		this.halfedges.ensureCapacity(this.halfedges.size() + halfedges.size() - ne - nu);
+		edges.ensureCapacity(edges.size() + ne);
+		unpairedHalfedges.ensureCapacity(unpairedHalfedges.size() + nu);
+	}
+
 	/**
 	 *
 	 *
 	 * @param source
 	 */
 	public final void addEdges(final HE_MeshStructure source) {
+		edges.ensureCapacity(edges.size() + source.edges.size());
 		edges.addAll(source.edges);
 	}
 
@@ -380,6 +905,7 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 *            vertices to add as HE_Vertex[]
 	 */
 	public final void addVertices(final HE_Vertex[] vertices) {
+		this.vertices.ensureCapacity(this.vertices.size() + vertices.length);
 		for (final HE_Vertex vertex : vertices) {
 			add(vertex);
 		}
@@ -391,6 +917,7 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 * @param source
 	 */
 	public final void addVertices(final HE_MeshStructure source) {
+		vertices.ensureCapacity(vertices.size() + source.vertices.size());
 		vertices.addAll(source.vertices);
 	}
 
@@ -401,6 +928,7 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 *            vertices to add as Collection<? extends HE_Vertex>
 	 */
 	public final void addVertices(final Collection<? extends HE_Vertex> vertices) {
+		this.vertices.ensureCapacity(this.vertices.size() + vertices.size());
 		for (HE_Vertex v : vertices) {
 			add(v);
 		}
@@ -525,17 +1053,30 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 * Clear faces.
 	 */
 	public final void clearFaces() {
-		faces = new HE_RASTrove<HE_Face>();
+		faces = renew(faces);
 	}
 
 	/**
 	 * Clear halfedges.
 	 */
 	public final void clearHalfedges() {
-		halfedges = new HE_RASTrove<HE_Halfedge>();
-		edges = new HE_RASTrove<HE_Halfedge>();
-		unpairedHalfedges = new HE_RASTrove<HE_Halfedge>();
+		final HE_RAS<HE_Halfedge>[] old = getHalfedgeSets();
+		resetHalfedges();
+		old[0].transferColumns(edges);
+		old[1].transferColumns(halfedges);
+		old[2].transferColumns(unpairedHalfedges);
+	}
 
+	/**
+	 * Replace the halfedge sets by empty ones, without attributes.
+	 */
+	private void resetHalfedges() {
+		halfedges = createRAS(0);
+		edges = createRAS(0);
+		unpairedHalfedges = createRAS(0);
+		if (transactionDepth > 0) {
+			pendingHalfedges.clear();
+		}
 	}
 
 	/**
@@ -543,7 +1084,7 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 */
 	protected final void clearEdges() {
 
-		edges = new HE_RASTrove<HE_Halfedge>();
+		edges = renew(edges);
 
 	}
 
@@ -551,7 +1092,7 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 * Clear vertices.
 	 */
 	public final void clearVertices() {
-		vertices = new HE_RASTrove<HE_Vertex>();
+		vertices = renew(vertices);
 	}
 
 	/**
@@ -803,14 +1344,35 @@ public class HE_MeshStructure extends HE_MeshElement {
 		return vertices.indexOf(v);
 	}
 
+	/**
+	 * Index of a halfedge, as used by getHalfedgeWithIndex().
+	 *
+	 * @param he
+	 * @return index, or -1 if the halfedge is not part of this structure
+	 */
+	public final int getIndex(final HE_Halfedge he) {
+		int i = edges.indexOf(he);
+		if (i >= 0) {
+			return i;
+		}
+		i = halfedges.indexOf(he);
+		if (i >= 0) {
+			return edges.size() + i;
+		}
+		i = unpairedHalfedges.indexOf(he);
+		return i < 0 ? -1 : edges.size() + halfedges.size() + i;
+	}
+
 	/**
 	 *
 	 *
 	 * @param mesh
 	 */
 	protected final void replaceFaces(final HE_Mesh mesh) {
-		clearFaces();
+		final HE_RAS<HE_Face> old = faces;
+		faces = createRAS(mesh.faces.size());
 		addFaces(mesh);
+		HE_RAS.keepColumns(old, faces);
 	}
 
 	/**
@@ -820,10 +1382,10 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 *            faces to replace with as HE_Face[]
 	 */
 	protected final void replaceFaces(final HE_Face[] faces) {
-		clearFaces();
-		for (final HE_Face face : faces) {
-			add(face);
-		}
+		final HE_RAS<HE_Face> old = this.faces;
+		this.faces = createRAS(faces.length);
+		addFaces(faces);
+		HE_RAS.keepColumns(old, this.faces);
 	}
 
 	/**
@@ -833,8 +1395,10 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 *            faces to replace with as Collection<? extends HE_Face>
 	 */
 	protected final void replaceFaces(final Collection<? extends HE_Face> faces) {
-		clearFaces();
+		final HE_RAS<HE_Face> old = this.faces;
+		this.faces = createRAS(faces.size());
 		addFaces(faces);
+		HE_RAS.keepColumns(old, this.faces);
 	}
 
 	/**
@@ -843,8 +1407,10 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 * @param mesh
 	 */
 	protected final void replaceVertices(final HE_Mesh mesh) {
-		clearVertices();
+		final HE_RAS<HE_Vertex> old = vertices;
+		vertices = createRAS(mesh.vertices.size());
 		addVertices(mesh);
+		HE_RAS.keepColumns(old, vertices);
 	}
 
 	/**
@@ -854,10 +1420,10 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 *            vertices to replace with as HE_Vertex[]
 	 */
 	protected final void replaceVertices(final HE_Vertex[] vertices) {
-		clearVertices();
-		for (final HE_Vertex vertice : vertices) {
-			add(vertice);
-		}
+		final HE_RAS<HE_Vertex> old = this.vertices;
+		this.vertices = createRAS(vertices.length);
+		addVertices(vertices);
+		HE_RAS.keepColumns(old, this.vertices);
 	}
 
 	/**
@@ -867,8 +1433,10 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 *            vertices to replace with as Collection<? extends HE_Vertex>
 	 */
 	protected final void replaceVertices(final Collection<? extends HE_Vertex> vertices) {
-		clearVertices();
+		final HE_RAS<HE_Vertex> old = this.vertices;
+		this.vertices = createRAS(vertices.size());
 		addVertices(vertices);
+		HE_RAS.keepColumns(old, this.vertices);
 	}
 
 	/**
@@ -877,13 +1445,17 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 * @param mesh
 	 */
 	protected final void replaceHalfedges(final HE_Mesh mesh) {
-		clearHalfedges();
+		final HE_RAS<HE_Halfedge>[] old = getHalfedgeSets();
+		resetHalfedges();
+		halfedges.ensureCapacity(mesh.halfedges.size());
+		edges.ensureCapacity(mesh.edges.size());
+		unpairedHalfedges.ensureCapacity(mesh.unpairedHalfedges.size());
 		HE_HalfedgeIterator heItr = mesh.heItr();
 		while (heItr.hasNext()) {
 			add(heItr.next());
 
 		}
-
+		HE_RAS.keepColumns(old, getHalfedgeSets());
 	}
 
 	/**
@@ -893,11 +1465,10 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 *            halfedges to replace with as HE_Halfedge[]
 	 */
 	protected final void replaceHalfedges(final HE_Halfedge[] halfedges) {
-		clearHalfedges();
-
-		for (final HE_Halfedge halfedge : halfedges) {
-			add(halfedge);
-		}
+		final HE_RAS<HE_Halfedge>[] old = getHalfedgeSets();
+		resetHalfedges();
+		addHalfedges(halfedges);
+		HE_RAS.keepColumns(old, getHalfedgeSets());
 	}
 
 	/**
@@ -907,10 +1478,10 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 *            halfedges to replace with as Collection<? extends HE_Halfedge>
 	 */
 	protected final void replaceHalfedges(final Collection<? extends HE_Halfedge> halfedges) {
-		clearHalfedges();
-
+		final HE_RAS<HE_Halfedge>[] old = getHalfedgeSets();
+		resetHalfedges();
 		addHalfedges(halfedges);
-
+		HE_RAS.keepColumns(old, getHalfedgeSets());
 	}
 
 	/**
@@ -949,6 +1520,80 @@ public class HE_MeshStructure extends HE_MeshElement {
 		return new HE_FaceIterator(faces);
 	}
 
+	/**
+	 * Sequential stream of the vertices, in index order. Use parallel() for a
+	 * parallel pipeline, the vertices are split by index without copying. The
+	 * mesh should not be modified while the stream is evaluated.
+	 *
+	 * @return
+	 */
+	public Stream<HE_Vertex> vertexStream() {
+		return StreamSupport.stream(vertices.spliterator(), false);
+	}
+
+	/**
+	 * Sequential stream of the faces, in index order.
+	 *
+	 * @return
+	 */
+	public Stream<HE_Face> faceStream() {
+		return StreamSupport.stream(faces.spliterator(), false);
+	}
+
+	/**
+	 * Sequential stream of all halfedges, in index order.
+	 *
+	 * @return
+	 */
+	public Stream<HE_Halfedge> halfedgeStream() {
+		return StreamSupport.stream(new HE_RAS.HE_RASSpliterator<HE_Halfedge>(getHalfedgeSets()), false);
+	}
+
+	/**
+	 * Sequential stream of the edges, one halfedge per edge, in index order.
+	 *
+	 * @return
+	 */
+	public Stream<HE_Halfedge> edgeStream() {
+		return StreamSupport.stream(edges.spliterator(), false);
+	}
+
+	/**
+	 * Stream of the vertex indices, for use with getVertexWithIndex().
+	 *
+	 * @return
+	 */
+	public IntStream vertexIndexStream() {
+		return IntStream.range(0, vertices.size());
+	}
+
+	/**
+	 * Stream of the face indices, for use with getFaceWithIndex().
+	 *
+	 * @return
+	 */
+	public IntStream faceIndexStream() {
+		return IntStream.range(0, faces.size());
+	}
+
+	/**
+	 * Stream of the halfedge indices, for use with getHalfedgeWithIndex().
+	 *
+	 * @return
+	 */
+	public IntStream halfedgeIndexStream() {
+		return IntStream.range(0, edges.size() + halfedges.size() + unpairedHalfedges.size());
+	}
+
+	/**
+	 * Stream of the edge indices, for use with getEdgeWithIndex().
+	 *
+	 * @return
+	 */
+	public IntStream edgeIndexStream() {
+		return IntStream.range(0, edges.size());
+	}
+
 	/**
 	 * Link face to halfedge
 	 *
@@ -983,12 +1628,23 @@ public class HE_MeshStructure extends HE_MeshElement {
 	 * @param he2
 	 */
 	public void setPair(final HE_Halfedge he1, final HE_Halfedge he2) {
+		if (transactionDepth > 0) {
+			he1._setPair(he2);
+			he2._setPair(he1);
+			touch(he1);
+			touch(he2);
+			return;
+		}
+		final HE_RAS<HE_Halfedge> source1 = stash(he1, 0);
+		final HE_RAS<HE_Halfedge> source2 = stash(he2, 1);
 		remove(he1);
 		remove(he2);
 		he1._setPair(he2);
 		he2._setPair(he1);
 		add(he1);
 		add(he2);
+		unstash(he1, source1, 0);
+		unstash(he2, source2, 1);
 	}
 
 	/**
@@ -1002,12 +1658,23 @@ public class HE_MeshStructure extends HE_MeshElement {
 			return;
 		}
 		HE_Halfedge hep = he.getPair();
+		if (transactionDepth > 0) {
+			he._clearPair();
+			hep._clearPair();
+			touch(he);
+			touch(hep);
+			return;
+		}
+		final HE_RAS<HE_Halfedge> source1 = stash(he, 0);
+		final HE_RAS<HE_Halfedge> source2 = stash(hep, 1);
 		remove(he);
 		remove(hep);
 		he._clearPair();
 		hep._clearPair();
 		add(he);
 		add(hep);
+		unstash(he, source1, 0);
+		unstash(hep, source2, 1);
 	}
 
 	/**
@@ -1149,6 +1816,73 @@ public class HE_MeshStructure extends HE_MeshElement {
 		addVertices(sortedVertices);
 	}
 
+	/**
+	 * Renumber vertices, faces and halfedges along a Hilbert curve through
+	 * their positions.
+	 */
+	public void sortSpatially() {
+		sortSpatially(true);
+	}
+
+	/**
+	 * Renumber vertices, faces and halfedges along a space-filling curve
+	 * through their positions: vertex positions, face centers and halfedge
+	 * midpoints. Afterwards the index and iteration order of each element set
+	 * follow the curve, so elements visited one after the other are also close
+	 * in space. Keys and attribute values are kept. A copy of the sorted mesh
+	 * allocates its elements in the same order, which keeps them close in
+	 * memory as well.
+	 *
+	 * @param hilbert
+	 *            true for the Hilbert curve, false for the Morton curve
+	 */
+	public void sortSpatially(final boolean hilbert) {
+		vertices = sortSpatially(vertices, hilbert);
+		faces = sortSpatially(faces, hilbert);
+		edges = sortSpatially(edges, hilbert);
+		halfedges = sortSpatially(halfedges, hilbert);
+		unpairedHalfedges = sortSpatially(unpairedHalfedges, hilbert);
+	}
+
+	private <E extends HE_Element> HE_RAS<E> sortSpatially(final HE_RAS<E> set, final boolean hilbert) {
+		final int n = set.size();
+		final double[] coords = new double[3 * n];
+		WB_ParallelExecutor.instance().forRange(0, n, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				WB_Coord c;
+				for (int i = start; i < end; i++) {
+					c = getPosition(set.get(i));
+					if (c == null) {
+						coords[3 * i] = coords[3 * i + 1] = coords[3 * i + 2] = Double.NaN;
+					} else {
+						coords[3 * i] = c.xd();
+						coords[3 * i + 1] = c.yd();
+						coords[3 * i + 2] = c.zd();
+					}
+				}
+			}
+		});
+		final int[] order = WB_SpaceFillingCurve.getOrder(coords, hilbert);
+		final HE_RAS<E> result = createRAS(n);
+		for (final int i : order) {
+			result.add(set.get(i));
+		}
+		HE_RAS.keepColumns(set, result);
+		return result;
+	}
+
+	private static WB_Coord getPosition(final HE_Element e) {
+		if (e instanceof HE_Vertex) {
+			return (HE_Vertex) e;
+		} else if (e instanceof HE_Face) {
+			return ((HE_Face) e).getFaceCenter();
+		}
+		final HE_Halfedge he = (HE_Halfedge) e;
+		final WB_Coord c = he.getHalfedgeCenter();
+		return c == null ? he.getVertex() : c;
+	}
+
 	/**
 	 * Set vertex positions to values in a 2D array. If length of array is not
 	 * the same as number of vertices, nothing happens.
@@ -2454,7 +3188,7 @@ public class HE_MeshStructure extends HE_MeshElement {
 		tracker.setStatus(this, "Detecting and uncapping boundary edges.", 0);
 
 		List<HE_Halfedge> halfedges = getHalfedges();
-		final HE_RAS<HE_Halfedge> keep = new HE_RASTrove<HE_Halfedge>();
+		final HE_RAS<HE_Halfedge> keep = createRAS(0);
 		for (HE_Halfedge he : halfedges) {
 
 			if (he.getFace() == null) {
@@ -2483,32 +3217,38 @@ public class HE_MeshStructure extends HE_MeshElement {
 		HE_Halfedge he1, he2;
 		WB_ProgressCounter counter = new WB_ProgressCounter(nuh, 10);
 		tracker.setStatus(this, "Capping unpaired halfedges.", counter);
-		for (int i = 0; i < nuh; i++) {
-			he1 = unpairedHalfedges.get(i);
-			he2 = new HE_Halfedge();
-			setVertex(he2, he1.getNextInFace().getVertex());
-			setPair(he1, he2);
-			newHalfedges[i] = he2;
-			add(he2);
-			counter.increment();
-		}
-		counter = new WB_ProgressCounter(nuh, 10);
-		tracker.setStatus(this, "Cycling new halfedges.", counter);
-		for (int i = 0; i < nuh; i++) {
-			he1 = newHalfedges[i];
-			if (he1.getNextInFace() == null) {
-				for (int j = 0; j < nuh; j++) {
-					he2 = newHalfedges[j];
-					if (!he2.isVisited()) {
-						if (he2.getVertex() == he1.getPair().getVertex()) {
-							setNext(he1, he2);
-							he2.setVisited();
-							break;
+		beginTransaction();
+		try {
+			for (int i = 0; i < nuh; i++) {
+				he1 = unpairedHalfedges.get(i);
+				he2 = new HE_Halfedge();
+				setVertex(he2, he1.getNextInFace().getVertex());
+				setPair(he1, he2);
+				newHalfedges[i] = he2;
+				add(he2);
+				counter.increment();
+			}
+			counter = new WB_ProgressCounter(nuh, 10);
+			tracker.setStatus(this, "Cycling new halfedges.", counter);
+			final boolean[] linked = new boolean[nuh];
+			for (int i = 0; i < nuh; i++) {
+				he1 = newHalfedges[i];
+				if (he1.getNextInFace() == null) {
+					for (int j = 0; j < nuh; j++) {
+						he2 = newHalfedges[j];
+						if (!linked[j]) {
+							if (he2.getVertex() == he1.getPair().getVertex()) {
+								setNext(he1, he2);
+								linked[j] = true;
+								break;
+							}
 						}
 					}
 				}
+				counter.increment();
 			}
-			counter.increment();
+		} finally {
+			commitTransaction();
 		}
 		tracker.setStatus(this, "Processed unpaired halfedges.", -1);
 	}
@@ -2599,35 +3339,40 @@ public class HE_MeshStructure extends HE_MeshElement {
 		final TLongObjectIterator<VertexInfo> vitr = vertexLists.iterator();
 		VertexInfo vInfo;
 		final List<HE_Halfedge> mismatchedHalfedges = new FastTable<HE_Halfedge>();
-		while (vitr.hasNext()) {
-			vitr.advance();
-			vInfo = vitr.value();
-			for (int i = 0; i < vInfo.out.size(); i++) {
-				he = vInfo.out.get(i);
-				if (he.getPair() == null) {
-					for (int j = 0; j < vInfo.in.size(); j++) {
-						he2 = vInfo.in.get(j);
-						if (he2.getPair() == null) {
-							if (he.getVertex() == he2.getNextInFace().getVertex()
-									&& he2.getVertex() == he.getNextInFace().getVertex()) {
-								setPair(he, he2);
-								break;
+		beginTransaction();
+		try {
+			while (vitr.hasNext()) {
+				vitr.advance();
+				vInfo = vitr.value();
+				for (int i = 0; i < vInfo.out.size(); i++) {
+					he = vInfo.out.get(i);
+					if (he.getPair() == null) {
+						for (int j = 0; j < vInfo.in.size(); j++) {
+							he2 = vInfo.in.get(j);
+							if (he2.getPair() == null) {
+								if (he.getVertex() == he2.getNextInFace().getVertex()
+										&& he2.getVertex() == he.getNextInFace().getVertex()) {
+									setPair(he, he2);
+									break;
+								}
 							}
 						}
-					}
-					for (int j = 0; j < vInfo.out.size(); j++) {
-						he2 = vInfo.out.get(j);
-						if (he2 != he && he2.getPair() == null) {
-							if (he.getNextInFace().getVertex() == he2.getNextInFace().getVertex()) {
-								mismatchedHalfedges.add(he);
-								mismatchedHalfedges.add(he2);
-								break;
+						for (int j = 0; j < vInfo.out.size(); j++) {
+							he2 = vInfo.out.get(j);
+							if (he2 != he && he2.getPair() == null) {
+								if (he.getNextInFace().getVertex() == he2.getNextInFace().getVertex()) {
+									mismatchedHalfedges.add(he);
+									mismatchedHalfedges.add(he2);
+									break;
+								}
 							}
 						}
 					}
 				}
+				counter.increment();
 			}
-			counter.increment();
+		} finally {
+			commitTransaction();
 		}
 		tracker.setStatus(this, "Processed unpaired halfedges.", -1);
 		return mismatchedHalfedges;
@@ -2685,34 +3430,39 @@ public class HE_MeshStructure extends HE_MeshElement {
 		tracker.setStatus(this, "Pairing unpaired halfedges per vertex.", counter);
 		final TLongObjectIterator<VertexInfo> vitr = vertexLists.iterator();
 		VertexInfo vInfo;
-		while (vitr.hasNext()) {
-			vitr.advance();
-			vInfo = vitr.value();
-			for (int i = 0; i < vInfo.out.size(); i++) {
-				he = vInfo.out.get(i);
-				if (he.getPair() == null) {
-					for (int j = 0; j < vInfo.in.size(); j++) {
-						he2 = vInfo.in.get(j);
-						if (he2.getPair() == null) {
-							if (he.getVertex() == he2.getNextInFace().getVertex()
-									&& he2.getVertex() == he.getNextInFace().getVertex()) {
-								setPair(he, he2);
-								break;
+		beginTransaction();
+		try {
+			while (vitr.hasNext()) {
+				vitr.advance();
+				vInfo = vitr.value();
+				for (int i = 0; i < vInfo.out.size(); i++) {
+					he = vInfo.out.get(i);
+					if (he.getPair() == null) {
+						for (int j = 0; j < vInfo.in.size(); j++) {
+							he2 = vInfo.in.get(j);
+							if (he2.getPair() == null) {
+								if (he.getVertex() == he2.getNextInFace().getVertex()
+										&& he2.getVertex() == he.getNextInFace().getVertex()) {
+									setPair(he, he2);
+									break;
+								}
 							}
 						}
-					}
-					for (int j = 0; j < vInfo.out.size(); j++) {
-						he2 = vInfo.out.get(j);
-						if (he2 != he && he2.getPair() == null) {
-							if (he.getNextInFace().getVertex() == he2.getNextInFace().getVertex()) {
-								System.out.println("Two identical halfedges found!");
-								break;
+						for (int j = 0; j < vInfo.out.size(); j++) {
+							he2 = vInfo.out.get(j);
+							if (he2 != he && he2.getPair() == null) {
+								if (he.getNextInFace().getVertex() == he2.getNextInFace().getVertex()) {
+									System.out.println("Two identical halfedges found!");
+									break;
+								}
 							}
 						}
 					}
 				}
+				counter.increment();
 			}
-			counter.increment();
+		} finally {
+			commitTransaction();
 		}
 		tracker.setStatus(this, "Processed unpaired halfedges.", -1);
 	}
@@ -2783,8 +3533,11 @@ public class HE_MeshStructure extends HE_MeshElement {
 	}
 
 	/**
-		 *
-		 */
+	 * Clear the visited flag of all elements.
+	 *
+	 * @deprecated Use {@link #beginTraversal()}, it doesn't need clearing
+	 */
+	@Deprecated
 	public void clearVisitedElements() {
 		final HE_FaceIterator fitr = fItr();
 		while (fitr.hasNext()) {
@@ -2828,4 +3581,31 @@ public class HE_MeshStructure extends HE_MeshElement {
 		}
 	}
 
+	/**
+	 * Bring the cached normals, centers and areas of all faces and vertices up
+	 * to date. Only elements whose position or connectivity changed since their
+	 * values were last computed are recalculated. Faces are done first, in
+	 * parallel, vertex normals and areas reuse the face values.
+	 */
+	public void updateDerivedGeometry() {
+		final long t = HE_MeshElement.nextStamp();
+		final WB_ParallelExecutor executor = WB_ParallelExecutor.instance();
+		executor.forRange(0, faces.size(), new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				for (int i = start; i < end; i++) {
+					faces.get(i).updateCache(t);
+				}
+			}
+		});
+		executor.forRange(0, vertices.size(), new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				for (int i = start; i < end; i++) {
+					vertices.get(i).updateCache(t);
+				}
+			}
+		});
+	}
+
 }
@@ -14,11 +14,18 @@ package wblut.hemesh;
  * Combines advantages of an ArrayList - random access, sizeable -
  * with those of a HashMap - fast lookup, unique members -.
  */
+import java.util.AbstractList;
 import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 import gnu.trove.map.TLongIntMap;
 import gnu.trove.map.hash.TLongIntHashMap;
@@ -150,6 +157,327 @@ public abstract class HE_RAS<E extends HE_Element> extends AbstractSet<E> {
 	 */
 	protected abstract List<E> getObjects();
 
+	/**
+	 * Spliterator that splits the index range of the set, without copying the
+	 * elements. The set should not be modified while it is traversed.
+	 *
+	 * @return
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		@SuppressWarnings("unchecked")
+		final HE_RAS<E>[] sets = (HE_RAS<E>[]) new HE_RAS<?>[] { this };
+		return new HE_RASSpliterator<E>(sets);
+	}
+
+	/**
+	 * Hint that the set will hold at least n elements. Implementations can use
+	 * this to grow their storage once instead of repeatedly.
+	 *
+	 * @param n
+	 */
+	public void ensureCapacity(final int n) {
+		if (columns != null) {
+			for (final HE_Attribute.Column c : columns) {
+				c.ensureCapacity(n);
+			}
+		}
+	}
+
+	/**
+	 * Release storage that is not needed for the current elements.
+	 */
+	public void trimToSize() {
+		if (columns != null) {
+			for (final HE_Attribute.Column c : columns) {
+				c.trimToSize(size());
+			}
+		}
+	}
+
+	/**
+	 * Attribute columns aligned with the element positions, null as long as no
+	 * attribute uses this set.
+	 */
+	List<HE_Attribute.Column> columns;
+
+	final void addColumn(final HE_Attribute.Column column) {
+		if (columns == null) {
+			columns = new ArrayList<HE_Attribute.Column>();
+		}
+		columns.add(column);
+	}
+
+	final void removeColumn(final HE_Attribute.Column column) {
+		if (columns != null) {
+			columns.remove(column);
+			if (columns.isEmpty()) {
+				columns = null;
+			}
+		}
+	}
+
+	/**
+	 * Called by implementations after an element is added at position i.
+	 *
+	 * @param i
+	 */
+	final void columnsAdded(final int i) {
+		if (columns != null) {
+			for (final HE_Attribute.Column c : columns) {
+				c.reset(i);
+			}
+		}
+	}
+
+	/**
+	 * Called by implementations when the element at position from moves to
+	 * position to.
+	 *
+	 * @param from
+	 * @param to
+	 */
+	final void columnsMoved(final int from, final int to) {
+		if (columns != null) {
+			for (final HE_Attribute.Column c : columns) {
+				c.move(from, to);
+			}
+		}
+	}
+
+	/**
+	 * Keep the attribute values of the element at position i aside.
+	 *
+	 * @param i
+	 * @param slot
+	 *            0 or 1
+	 */
+	final void stashColumns(final int i, final int slot) {
+		if (columns != null) {
+			for (final HE_Attribute.Column c : columns) {
+				c.stash(i, slot);
+			}
+		}
+	}
+
+	/**
+	 * Restore attribute values kept aside by source, a set with the same
+	 * attributes, to position i.
+	 *
+	 * @param source
+	 * @param slot
+	 * @param i
+	 */
+	final void unstashColumns(final HE_RAS<E> source, final int slot, final int i) {
+		if (columns != null) {
+			for (int j = 0; j < columns.size(); j++) {
+				columns.get(j).unstash(source.columns.get(j), slot, i);
+			}
+		}
+	}
+
+	/**
+	 * Hand the attribute columns of source over to target, a set rebuilt from
+	 * (part of) the same elements. Values of elements that remain are kept,
+	 * other elements get the default.
+	 *
+	 * @param source
+	 * @param target
+	 */
+	static <E extends HE_Element> void keepColumns(final HE_RAS<E> source, final HE_RAS<E> target) {
+		if (source.columns == null) {
+			return;
+		}
+		keepColumns(new HE_RAS<?>[] { source }, new HE_RAS<?>[] { target });
+	}
+
+	/**
+	 * Hand the attribute columns of several sets over to the sets replacing
+	 * them. An element can end up in another set than before, e.g. halfedges
+	 * rebuilt as edges, so all sources are searched. All sources have the same
+	 * attributes.
+	 *
+	 * @param sources
+	 * @param targets
+	 */
+	@SuppressWarnings("unchecked")
+	static <E extends HE_Element> void keepColumns(final HE_RAS<?>[] sources, final HE_RAS<?>[] targets) {
+		if (sources[0].columns == null) {
+			return;
+		}
+		final int na = sources[0].columns.size();
+		final Object[][] data = new Object[na][sources.length];
+		for (int j = 0; j < na; j++) {
+			for (int k = 0; k < sources.length; k++) {
+				data[j][k] = sources[k].columns.get(j).data();
+			}
+		}
+		for (int t = 0; t < targets.length; t++) {
+			final HE_RAS<E> target = (HE_RAS<E>) targets[t];
+			final int n = target.size();
+			final int[] set = new int[n];
+			final int[] index = new int[n];
+			for (int i = 0; i < n; i++) {
+				final E e = target.get(i);
+				set[i] = -1;
+				for (int k = 0; k < sources.length; k++) {
+					final int id = ((HE_RAS<E>) sources[k]).indexOf(e);
+					if (id >= 0) {
+						set[i] = k;
+						index[i] = id;
+						break;
+					}
+				}
+			}
+			for (int j = 0; j < na; j++) {
+				sources[t].columns.get(j).remap(data[j], set, index, n);
+			}
+		}
+		for (int t = 0; t < targets.length; t++) {
+			((HE_RAS<E>) sources[t]).transferColumns((HE_RAS<E>) targets[t]);
+		}
+	}
+
+	/**
+	 * Hand the attribute columns over to a set replacing this one. Values are
+	 * kept, they are only meaningful if target holds the same elements in the
+	 * same order.
+	 *
+	 * @param target
+	 */
+	final void transferColumns(final HE_RAS<E> target) {
+		if (columns != null) {
+			target.columns = columns;
+			for (final HE_Attribute.Column c : columns) {
+				c.owner = target;
+				c.ensureCapacity(target.size());
+			}
+			columns = null;
+		}
+	}
+
+	/**
+	 * Sized spliterator over one or more sets, traversed as if they were
+	 * concatenated. Splitting halves the remaining index range.
+	 *
+	 * @param <E>
+	 */
+	static class HE_RASSpliterator<E extends HE_Element> implements Spliterator<E> {
+		private final HE_RAS<? extends E>[] sets;
+		/** First index of each set, followed by the total size. */
+		private final int[] offsets;
+		private int index;
+		private final int fence;
+		private int set;
+
+		/**
+		 *
+		 *
+		 * @param sets
+		 */
+		HE_RASSpliterator(final HE_RAS<? extends E>[] sets) {
+			this.sets = sets;
+			offsets = new int[sets.length + 1];
+			for (int i = 0; i < sets.length; i++) {
+				offsets[i + 1] = offsets[i] + sets[i].size();
+			}
+			index = 0;
+			fence = offsets[sets.length];
+			set = 0;
+			findSet();
+		}
+
+		private HE_RASSpliterator(final HE_RAS<? extends E>[] sets, final int[] offsets, final int index,
+				final int fence, final int set) {
+			this.sets = sets;
+			this.offsets = offsets;
+			this.index = index;
+			this.fence = fence;
+			this.set = set;
+		}
+
+		private void findSet() {
+			while (set < sets.length - 1 && index >= offsets[set + 1]) {
+				set++;
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.Spliterator#tryAdvance(java.util.function.Consumer)
+		 */
+		@Override
+		public boolean tryAdvance(final Consumer<? super E> action) {
+			if (index >= fence) {
+				return false;
+			}
+			findSet();
+			action.accept(sets[set].get(index - offsets[set]));
+			index++;
+			return true;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.Spliterator#forEachRemaining(java.util.function.
+		 * Consumer)
+		 */
+		@Override
+		public void forEachRemaining(final Consumer<? super E> action) {
+			while (index < fence) {
+				findSet();
+				final HE_RAS<? extends E> ras = sets[set];
+				final int offset = offsets[set];
+				final int end = Math.min(fence, offsets[set + 1]);
+				for (int i = index; i < end; i++) {
+					action.accept(ras.get(i - offset));
+				}
+				index = end;
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.Spliterator#trySplit()
+		 */
+		@Override
+		public Spliterator<E> trySplit() {
+			final int lo = index;
+			final int mid = lo + fence >>> 1;
+			if (lo >= mid) {
+				return null;
+			}
+			findSet();
+			final HE_RASSpliterator<E> prefix = new HE_RASSpliterator<E>(sets, offsets, lo, mid, set);
+			index = mid;
+			findSet();
+			return prefix;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.Spliterator#estimateSize()
+		 */
+		@Override
+		public long estimateSize() {
+			return fence - index;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.Spliterator#characteristics()
+		 */
+		@Override
+		public int characteristics() {
+			return ORDERED | SIZED | SUBSIZED | NONNULL | DISTINCT;
+		}
+	}
+
 	/**
 	 *
 	 *
@@ -208,6 +536,7 @@ public abstract class HE_RAS<E extends HE_Element> extends AbstractSet<E> {
 			}
 			if (indices.putIfAbsent(item.key, objects.size()) < 0) {
 				objects.add(item);
+				columnsAdded(objects.size() - 1);
 				return true;
 			}
 			return false;
@@ -231,6 +560,7 @@ public abstract class HE_RAS<E extends HE_Element> extends AbstractSet<E> {
 			if (id < objects.size()) {
 				indices.put(last.key, id);
 				objects.set(id, last);
+				columnsMoved(objects.size(), id);
 			}
 			return res;
 		}
@@ -352,7 +682,35 @@ public abstract class HE_RAS<E extends HE_Element> extends AbstractSet<E> {
 		 */
 		@Override
 		public Iterator<E> iterator() {
-			return objects.iterator();
+			return new Iterator<E>() {
+				int cursor = 0;
+				int last = -1;
+
+				@Override
+				public boolean hasNext() {
+					return cursor < objects.size();
+				}
+
+				@Override
+				public E next() {
+					if (cursor >= objects.size()) {
+						throw new NoSuchElementException();
+					}
+					last = cursor;
+					return objects.get(cursor++);
+				}
+
+				@Override
+				public void remove() {
+					if (last < 0) {
+						throw new IllegalStateException();
+					}
+					// the last element moves into the hole, visit it next
+					removeAt(last);
+					cursor = last;
+					last = -1;
+				}
+			};
 		}
 
 		/*
@@ -426,6 +784,7 @@ public abstract class HE_RAS<E extends HE_Element> extends AbstractSet<E> {
 			}
 			if (indices.putIfAbsent(item.key, objects.size()) == null) {
 				objects.add(item);
+				columnsAdded(objects.size() - 1);
 				return true;
 			}
 			return false;
@@ -450,6 +809,7 @@ public abstract class HE_RAS<E extends HE_Element> extends AbstractSet<E> {
 			if (id < objects.size()) {
 				indices.put(last.key, id);
 				objects.set(id, last);
+				columnsMoved(objects.size(), id);
 			}
 			return res;
 		}
@@ -575,7 +935,35 @@ public abstract class HE_RAS<E extends HE_Element> extends AbstractSet<E> {
 		 */
 		@Override
 		public Iterator<E> iterator() {
-			return objects.iterator();
+			return new Iterator<E>() {
+				int cursor = 0;
+				int last = -1;
+
+				@Override
+				public boolean hasNext() {
+					return cursor < objects.size();
+				}
+
+				@Override
+				public E next() {
+					if (cursor >= objects.size()) {
+						throw new NoSuchElementException();
+					}
+					last = cursor;
+					return objects.get(cursor++);
+				}
+
+				@Override
+				public void remove() {
+					if (last < 0) {
+						throw new IllegalStateException();
+					}
+					// the last element moves into the hole, visit it next
+					removeAt(last);
+					cursor = last;
+					last = -1;
+				}
+			};
 		}
 
 		/*
@@ -588,4 +976,438 @@ public abstract class HE_RAS<E extends HE_Element> extends AbstractSet<E> {
 			return objects.unmodifiable();
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Random access set backed by an element array and a single open
+	 * addressing table of primitive keys and indices. Lookups don't box, there
+	 * is one table to update per operation and removal is O(1): the hole is
+	 * filled with the last element, as in HE_RASTrove, and the table uses
+	 * backward shift deletion instead of tombstones.
+	 *
+	 * @param <E>
+	 */
+	public static class HE_RASPrimitive<E extends HE_Element> extends HE_RAS<E> {
+		private static final int MIN_TABLE = 16;
+		private Object[] objects;
+		private int size;
+		private long[] tableKeys;
+		private int[] tableIndices;
+		private int mask;
+		private int shift;
+
+		/**
+		 *
+		 */
+		public HE_RASPrimitive() {
+			this(10);
+		}
+
+		/**
+		 *
+		 *
+		 * @param n
+		 *            expected number of elements
+		 */
+		public HE_RASPrimitive(final int n) {
+			objects = new Object[Math.max(n, 10)];
+			allocateTable(tableSizeFor(n));
+		}
+
+		/**
+		 *
+		 *
+		 * @param items
+		 */
+		public HE_RASPrimitive(final Collection<E> items) {
+			this(items.size());
+			for (final E e : items) {
+				add(e);
+			}
+		}
+
+		private static int tableSizeFor(final int n) {
+			int capacity = MIN_TABLE;
+			while (capacity < 2 * n && capacity < 1 << 30) {
+				capacity <<= 1;
+			}
+			return capacity;
+		}
+
+		private void allocateTable(final int capacity) {
+			tableKeys = new long[capacity];
+			tableIndices = new int[capacity];
+			Arrays.fill(tableIndices, -1);
+			mask = capacity - 1;
+			shift = 64 - Integer.numberOfTrailingZeros(capacity);
+		}
+
+		private int home(final long key) {
+			return (int) (key * 0x9E3779B97F4A7C15L >>> shift);
+		}
+
+		/**
+		 * Slot holding key, or -(free slot)-1 if the key is absent.
+		 */
+		private int find(final long key) {
+			int slot = home(key);
+			while (tableIndices[slot] >= 0) {
+				if (tableKeys[slot] == key) {
+					return slot;
+				}
+				slot = slot + 1 & mask;
+			}
+			return -slot - 1;
+		}
+
+		private void delete(final int slot) {
+			int hole = slot;
+			int next = slot + 1 & mask;
+			while (tableIndices[next] >= 0) {
+				// move the entry back if the hole lies between its home and its slot
+				if ((next - home(tableKeys[next]) & mask) >= (next - hole & mask)) {
+					tableKeys[hole] = tableKeys[next];
+					tableIndices[hole] = tableIndices[next];
+					hole = next;
+				}
+				next = next + 1 & mask;
+			}
+			tableIndices[hole] = -1;
+		}
+
+		private void rehash(final int capacity) {
+			allocateTable(capacity);
+			long key;
+			int slot;
+			for (int i = 0; i < size; i++) {
+				key = ((HE_Element) objects[i]).key;
+				slot = home(key);
+				while (tableIndices[slot] >= 0) {
+					slot = slot + 1 & mask;
+				}
+				tableKeys[slot] = key;
+				tableIndices[slot] = i;
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see wblut.hemesh.HE_RAS#ensureCapacity(int)
+		 */
+		@Override
+		public void ensureCapacity(final int n) {
+			if (n > objects.length) {
+				objects = Arrays.copyOf(objects, Math.max(n, objects.length + (objects.length >> 1)));
+			}
+			if (2 * n > tableIndices.length) {
+				rehash(tableSizeFor(Math.max(n, 2 * size)));
+			}
+			super.ensureCapacity(n);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see wblut.hemesh.HE_RAS#trimToSize()
+		 */
+		@Override
+		public void trimToSize() {
+			objects = Arrays.copyOf(objects, Math.max(size, 10));
+			if (tableSizeFor(size) < tableIndices.length) {
+				rehash(tableSizeFor(size));
+			}
+			super.trimToSize();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see wblut.hemesh.HE_RAS#add(wblut.hemesh.HE_Element)
+		 */
+		@Override
+		public boolean add(final E item) {
+			if (item == null) {
+				return false;
+			}
+			int slot = find(item.key);
+			if (slot >= 0) {
+				return false;
+			}
+			if (size == objects.length || 2 * (size + 1) > tableIndices.length) {
+				ensureCapacity(size + 1);
+				slot = find(item.key);
+			}
+			slot = -slot - 1;
+			tableKeys[slot] = item.key;
+			tableIndices[slot] = size;
+			objects[size++] = item;
+			columnsAdded(size - 1);
+			return true;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.AbstractCollection#addAll(java.util.Collection)
+		 */
+		@Override
+		public boolean addAll(final Collection<? extends E> items) {
+			ensureCapacity(size + items.size());
+			boolean changed = false;
+			for (final E e : items) {
+				changed |= add(e);
+			}
+			return changed;
+		}
+
+		/**
+		 * Override element at position <code>id</code> with last element.
+		 *
+		 * @param id
+		 * @return
+		 */
+		@Override
+		@SuppressWarnings("unchecked")
+		public E removeAt(final int id) {
+			if (id >= size) {
+				return null;
+			}
+			final E res = (E) objects[id];
+			delete(find(res.key));
+			final HE_Element last = (HE_Element) objects[--size];
+			objects[size] = null;
+			// skip filling the hole if last is removed
+			if (id < size) {
+				objects[id] = last;
+				tableIndices[find(last.key)] = id;
+				columnsMoved(size, id);
+			}
+			return res;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see wblut.hemesh.HE_RAS#remove(wblut.hemesh.HE_Element)
+		 */
+		@Override
+		public boolean remove(final E item) {
+			if (item == null) {
+				return false;
+			}
+			final int slot = find(item.key);
+			if (slot < 0) {
+				return false;
+			}
+			removeAt(tableIndices[slot]);
+			return true;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.AbstractCollection#remove(java.lang.Object)
+		 */
+		@Override
+		@SuppressWarnings("unchecked")
+		public boolean remove(final Object o) {
+			return o instanceof HE_Element && remove((E) o);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.AbstractSet#removeAll(java.util.Collection)
+		 */
+		@Override
+		public boolean removeAll(final Collection<?> items) {
+			boolean changed = false;
+			for (final Object o : items) {
+				changed |= remove(o);
+			}
+			return changed;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.AbstractCollection#clear()
+		 */
+		@Override
+		public void clear() {
+			Arrays.fill(objects, 0, size, null);
+			Arrays.fill(tableIndices, -1);
+			size = 0;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see wblut.hemesh.HE_RAS#get(int)
+		 */
+		@Override
+		@SuppressWarnings("unchecked")
+		public E get(final int i) {
+			if (i < 0 || i >= size) {
+				throw new IndexOutOfBoundsException("Index: " + i + ", size: " + size);
+			}
+			return (E) objects[i];
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see wblut.hemesh.HE_RAS#getByIndex(int)
+		 */
+		@Override
+		public E getWithIndex(final int i) {
+			return get(i);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see wblut.hemesh.HE_RAS#getByKey(java.lang.Long)
+		 */
+		@Override
+		@SuppressWarnings("unchecked")
+		public E getWithKey(final long key) {
+			final int slot = find(key);
+			if (slot < 0) {
+				return null;
+			}
+			return (E) objects[tableIndices[slot]];
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see wblut.hemesh.HE_RAS#getIndex(wblut.hemesh.HE_Element)
+		 */
+		@Override
+		public int indexOf(final E object) {
+			final int slot = find(object.key);
+			return slot < 0 ? -1 : tableIndices[slot];
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see wblut.hemesh.HE_RAS#pollRandom(java.util.Random)
+		 */
+		@Override
+		public E pollRandom(final Random rnd) {
+			if (size == 0) {
+				return null;
+			}
+			return removeAt(rnd.nextInt(size));
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see wblut.hemesh.HE_RAS#size()
+		 */
+		@Override
+		public int size() {
+			return size;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see wblut.hemesh.HE_RAS#contains(wblut.hemesh.HE_Element)
+		 */
+		@Override
+		public boolean contains(final E object) {
+			if (object == null) {
+				return false;
+			}
+			return find(object.key) >= 0;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.AbstractCollection#contains(java.lang.Object)
+		 */
+		@Override
+		public boolean contains(final Object o) {
+			return o instanceof HE_Element && find(((HE_Element) o).key) >= 0;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see wblut.hemesh.HE_RAS#containsKey(java.lang.Long)
+		 */
+		@Override
+		public boolean containsKey(final Long key) {
+			return find(key) >= 0;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see wblut.hemesh.HE_RAS#iterator()
+		 */
+		@Override
+		public Iterator<E> iterator() {
+			return new Iterator<E>() {
+				int cursor = 0;
+				int last = -1;
+
+				@Override
+				public boolean hasNext() {
+					return cursor < size;
+				}
+
+				@Override
+				@SuppressWarnings("unchecked")
+				public E next() {
+					if (cursor >= size) {
+						throw new NoSuchElementException();
+					}
+					last = cursor;
+					return (E) objects[cursor++];
+				}
+
+				@Override
+				public void remove() {
+					if (last < 0) {
+						throw new IllegalStateException();
+					}
+					// the last element moves into the hole, visit it next
+					removeAt(last);
+					cursor = last;
+					last = -1;
+				}
+			};
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see wblut.hemesh.HE_RAS#getObjects()
+		 */
+		@Override
+		public List<E> getObjects() {
+			return new ObjectView();
+		}
+
+		/**
+		 * Unmodifiable live view of the elements.
+		 */
+		private class ObjectView extends AbstractList<E> implements RandomAccess {
+			@Override
+			public E get(final int index) {
+				return HE_RASPrimitive.this.get(index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		}
+	}
+}
@@ -52,8 +52,13 @@ public class HE_Selection extends HE_MeshStructure {
 	 * @return self
 	 */
 	public HE_Mesh modify(final HEM_Modifier modifier) {
-		modifier.apply(this);
-		update();
+		final HE_KeySpace previous = parent.enterKeySpace();
+		try {
+			modifier.apply(this);
+			update();
+		} finally {
+			parent.exitKeySpace(previous);
+		}
 		return this.parent;
 	}
 
@@ -65,8 +70,13 @@ public class HE_Selection extends HE_MeshStructure {
 	 * @return self
 	 */
 	public HE_Mesh subdivide(final HES_Subdividor subdividor) {
-		subdividor.apply(this);
-		update();
+		final HE_KeySpace previous = parent.enterKeySpace();
+		try {
+			subdividor.apply(this);
+			update();
+		} finally {
+			parent.exitKeySpace(previous);
+		}
 		return this.parent;
 	}
 
@@ -81,10 +91,14 @@ public class HE_Selection extends HE_MeshStructure {
 	 * @return self
 	 */
 	public HE_Mesh subdivide(final HES_Subdividor subdividor, final int rep) {
-
-		for (int i = 0; i < rep; i++) {
-			subdividor.apply(this);
-			update();
+		final HE_KeySpace previous = parent.enterKeySpace();
+		try {
+			for (int i = 0; i < rep; i++) {
+				subdividor.apply(this);
+				update();
+			}
+		} finally {
+			parent.exitKeySpace(previous);
 		}
 		return this.parent;
 	}
@@ -97,8 +111,13 @@ public class HE_Selection extends HE_MeshStructure {
 	 * @return the h e_ mesh
 	 */
 	public HE_Mesh simplify(final HES_Simplifier simplifier) {
-		simplifier.apply(this);
-		update();
+		final HE_KeySpace previous = parent.enterKeySpace();
+		try {
+			simplifier.apply(this);
+			update();
+		} finally {
+			parent.exitKeySpace(previous);
+		}
 		return this.parent;
 	}
 
@@ -471,8 +490,9 @@ public class HE_Selection extends HE_MeshStructure {
 	 * Grow face selection outwards by one face.
 	 */
 	public void grow() {
-		final List<HE_Face> currentFaces = getFaces();
-
+		// getFaces() is a live view, iterate over a copy
+		final List<HE_Face> currentFaces = new FastTable<HE_Face>();
+		currentFaces.addAll(getFaces());
 		for (HE_Face f : currentFaces) {
 			addFaces(f.getNeighborFaces());
 		}
@@ -494,18 +514,22 @@ public class HE_Selection extends HE_MeshStructure {
 	 * Grow face selection inwards by one face.
 	 */
 	public void shrink() {
+		// collect all faces on the outer edges first, removing them while
+		// checking would test later edges against the partly shrunk selection
 		final List<HE_Halfedge> outerEdges = getOuterEdges();
+		final FastTable<HE_Face> outerFaces = new FastTable<HE_Face>();
 		for (int i = 0; i < outerEdges.size(); i++) {
 			final HE_Halfedge e = outerEdges.get(i);
 			final HE_Face f1 = e.getFace();
 			final HE_Face f2 = e.getPair().getFace();
-			if (f1 == null || !contains(f1)) {
-				remove(f2);
+			if (f1 != null && contains(f1)) {
+				outerFaces.add(f1);
 			}
-			if (f2 == null || !contains(f2)) {
-				remove(f1);
+			if (f2 != null && contains(f2)) {
+				outerFaces.add(f2);
 			}
 		}
+		removeFaces(outerFaces);
 	}
 
 	/**
@@ -525,11 +549,8 @@ public class HE_Selection extends HE_MeshStructure {
 	 */
 	public void surround() {
 		final FastTable<HE_Face> currentFaces = new FastTable<HE_Face>();
-		HE_FaceIterator fItr = fItr();
-		HE_Face f;
-		while (fItr.hasNext()) {
-			f = fItr.next();
-			currentFaces.add(f);
+		currentFaces.addAll(getFaces());
+		for (HE_Face f : currentFaces) {
 			addFaces(f.getNeighborFaces());
 		}
 		removeFaces(currentFaces);
@@ -0,0 +1,207 @@
+/*
+ * This file is part of HE_Mesh, a library for creating and manipulating meshes.
+ * It is dedicated to the public domain. To the extent possible under law,
+ * I , Frederik Vanhoutte, have waived all copyright and related or neighboring
+ * rights.
+ *
+ * This work is published from Belgium. (http://creativecommons.org/publicdomain/zero/1.0/)
+ *
+ */
+package wblut.hemesh;
+
+import wblut.hemesh.HE_Attribute.HE_IntAttribute;
+
+/**
+ * Visited marks for one traversal of a mesh structure, e.g. a flood fill over
+ * faces. Obtain one with {@link HE_MeshStructure#beginTraversal()} and hand it
+ * back with {@link #end()}.
+ *
+ * The marks are generation stamps in int arrays that follow the element sets
+ * of the structure, like attributes. An element is marked if its stamp equals
+ * the current generation, so starting a new traversal is a counter increment
+ * instead of a pass over the mesh to clear flags. Each traversal has its own
+ * arrays: several traversals can run at the same time, on different threads,
+ * as long as the structure itself isn't modified concurrently.
+ *
+ * Elements can be added and removed during a traversal, new elements are
+ * unmarked.
+ */
+public class HE_Traversal {
+	private final HE_MeshStructure structure;
+	private final HE_IntAttribute<HE_Vertex> vertexMarks;
+	private final HE_IntAttribute<HE_Face> faceMarks;
+	private final HE_IntAttribute<HE_Halfedge> halfedgeMarks;
+	private int generation;
+	private boolean active;
+
+	/**
+	 *
+	 *
+	 * @param structure
+	 */
+	HE_Traversal(final HE_MeshStructure structure) {
+		this.structure = structure;
+		vertexMarks = new HE_IntAttribute<HE_Vertex>("traversal");
+		faceMarks = new HE_IntAttribute<HE_Face>("traversal");
+		halfedgeMarks = new HE_IntAttribute<HE_Halfedge>("traversal");
+		generation = 0;
+	}
+
+	/**
+	 * Start with all elements unmarked. The marks are attached to the
+	 * structure only while the traversal is active. Stamps left from an
+	 * earlier use are all older than the new generation, so reusing the
+	 * storage needs no clearing pass.
+	 */
+	void start() {
+		attach();
+		active = true;
+		restart();
+	}
+
+	private void attach() {
+		vertexMarks.reattach(new HE_RAS<?>[] { structure.vertices });
+		faceMarks.reattach(new HE_RAS<?>[] { structure.faces });
+		halfedgeMarks.reattach(new HE_RAS<?>[] { structure.edges, structure.halfedges, structure.unpairedHalfedges });
+	}
+
+	/**
+	 * Unmark all elements and continue using this traversal.
+	 */
+	public void restart() {
+		checkActive();
+		generation++;
+		if (generation == 0) {
+			// stamps wrapped around, start over with new storage. Clearing
+			// only the current elements would keep stale stamps beyond them,
+			// these come back with elements added while detached.
+			vertexMarks.unbind();
+			faceMarks.unbind();
+			halfedgeMarks.unbind();
+			attach();
+			generation = 1;
+		}
+	}
+
+	/**
+	 * Set the current generation. Only used to test the wrap around.
+	 *
+	 * @param generation
+	 */
+	void setGeneration(final int generation) {
+		this.generation = generation;
+	}
+
+	/**
+	 * Hand the traversal back to its structure. It can't be used afterwards.
+	 */
+	public void end() {
+		checkActive();
+		active = false;
+		structure.endTraversal(this);
+	}
+
+	/**
+	 * Detach the marks from the structure, keeping their storage for the
+	 * next start. An idle traversal costs nothing when elements are added or
+	 * removed.
+	 */
+	void detach() {
+		vertexMarks.detach();
+		faceMarks.detach();
+		halfedgeMarks.detach();
+	}
+
+	private void checkActive() {
+		if (!active) {
+			throw new IllegalStateException("Traversal has ended.");
+		}
+	}
+
+	/**
+	 * Mark vertex.
+	 *
+	 * @param v
+	 * @return true if the vertex wasn't marked yet
+	 */
+	public boolean mark(final HE_Vertex v) {
+		return vertexMarks.getAndSet(v, generation) != generation;
+	}
+
+	/**
+	 *
+	 *
+	 * @param v
+	 * @return
+	 */
+	public boolean isMarked(final HE_Vertex v) {
+		return vertexMarks.get(v) == generation;
+	}
+
+	/**
+	 *
+	 *
+	 * @param v
+	 */
+	public void unmark(final HE_Vertex v) {
+		vertexMarks.set(v, 0);
+	}
+
+	/**
+	 * Mark face.
+	 *
+	 * @param f
+	 * @return true if the face wasn't marked yet
+	 */
+	public boolean mark(final HE_Face f) {
+		return faceMarks.getAndSet(f, generation) != generation;
+	}
+
+	/**
+	 *
+	 *
+	 * @param f
+	 * @return
+	 */
+	public boolean isMarked(final HE_Face f) {
+		return faceMarks.get(f) == generation;
+	}
+
+	/**
+	 *
+	 *
+	 * @param f
+	 */
+	public void unmark(final HE_Face f) {
+		faceMarks.set(f, 0);
+	}
+
+	/**
+	 * Mark halfedge.
+	 *
+	 * @param he
+	 * @return true if the halfedge wasn't marked yet
+	 */
+	public boolean mark(final HE_Halfedge he) {
+		return halfedgeMarks.getAndSet(he, generation) != generation;
+	}
+
+	/**
+	 *
+	 *
+	 * @param he
+	 * @return
+	 */
+	public boolean isMarked(final HE_Halfedge he) {
+		return halfedgeMarks.get(he) == generation;
+	}
+
+	/**
+	 *
+	 *
+	 * @param he
+	 */
+	public void unmark(final HE_Halfedge he) {
+		halfedgeMarks.set(he, 0);
+	}
+}
@@ -41,6 +41,13 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 	private HE_Halfedge _halfedge;
 
 	private HE_TextureCoordinate uvw = null;
+	/** Last change to position or connectivity. */
+	long stamp;
+	/** Time the cached derived geometry was computed. */
+	long cacheStamp;
+	private WB_Coord normal;
+	private double area = Double.NaN;
+	private double curvature = Double.NaN;
 
 	/**
 	 * Instantiates a new HE_Vertex.
@@ -80,6 +87,21 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 		uvw = null;
 	}
 
+	/**
+	 * Instantiates a new HE_Vertex with a given key.
+	 *
+	 * @param key
+	 *            key of the vertex, a new key is taken if negative
+	 * @param x
+	 * @param y
+	 * @param z
+	 */
+	HE_Vertex(final long key, final double x, final double y, final double z) {
+		super(key);
+		pos = new WB_Point(x, y, z);
+		uvw = null;
+	}
+
 	/**
 	 *
 	 *
@@ -198,6 +220,7 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 	 */
 	protected void _setHalfedge(final HE_Halfedge halfedge) {
 		_halfedge = halfedge;
+		stamp = currentStamp();
 	}
 
 	/**
@@ -208,6 +231,7 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 	 */
 	public void set(final HE_Vertex v) {
 		pos.set(v);
+		stamp = currentStamp();
 	}
 
 	/**
@@ -248,6 +272,7 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 	 */
 	protected void _clearHalfedge() {
 		_halfedge = null;
+		stamp = currentStamp();
 	}
 
 	/**
@@ -266,18 +291,30 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 	 */
 	public List<HE_Halfedge> getHalfedgeStar() {
 		final List<HE_Halfedge> vhe = new FastTable<HE_Halfedge>();
+		getHalfedgeStar(vhe);
+		return vhe;
+	}
+
+	/**
+	 * Get halfedges in vertex, reusing a list instead of allocating one.
+	 *
+	 * @param result
+	 *            cleared and filled with the outgoing halfedges
+	 * @return number of halfedges
+	 */
+	public int getHalfedgeStar(final List<HE_Halfedge> result) {
+		result.clear();
 		if (getHalfedge() == null) {
-			return vhe;
+			return 0;
 		}
 		HE_Halfedge he = getHalfedge();
-
 		do {
-			if (!vhe.contains(he)) {
-				vhe.add(he);
+			if (!result.contains(he)) {
+				result.add(he);
 			}
 			he = he.getNextInVertex();
 		} while (he != getHalfedge());
-		return vhe;
+		return result.size();
 	}
 
 	/**
@@ -287,23 +324,36 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 	 */
 	public List<HE_Halfedge> getEdgeStar() {
 		final List<HE_Halfedge> ve = new FastTable<HE_Halfedge>();
+		getEdgeStar(ve);
+		return ve;
+	}
+
+	/**
+	 * Get edges in vertex, reusing a list instead of allocating one.
+	 *
+	 * @param result
+	 *            cleared and filled with the edges
+	 * @return number of edges
+	 */
+	public int getEdgeStar(final List<HE_Halfedge> result) {
+		result.clear();
 		if (getHalfedge() == null) {
-			return ve;
+			return 0;
 		}
 		HE_Halfedge he = getHalfedge();
 		do {
 			if (he.isEdge()) {
-				if (!ve.contains(he)) {
-					ve.add(he);
+				if (!result.contains(he)) {
+					result.add(he);
 				}
 			} else {
-				if (!ve.contains(he.getPair())) {
-					ve.add(he.getPair());
+				if (!result.contains(he.getPair())) {
+					result.add(he.getPair());
 				}
 			}
 			he = he.getNextInVertex();
 		} while (he != getHalfedge());
-		return ve;
+		return result.size();
 	}
 
 	/**
@@ -313,19 +363,32 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 	 */
 	public List<HE_Face> getFaceStar() {
 		final List<HE_Face> vf = new FastTable<HE_Face>();
+		getFaceStar(vf);
+		return vf;
+	}
+
+	/**
+	 * Get faces in vertex, reusing a list instead of allocating one.
+	 *
+	 * @param result
+	 *            cleared and filled with the faces
+	 * @return number of faces
+	 */
+	public int getFaceStar(final List<HE_Face> result) {
+		result.clear();
 		if (getHalfedge() == null) {
-			return vf;
+			return 0;
 		}
 		HE_Halfedge he = getHalfedge();
 		do {
 			if (he.getFace() != null) {
-				if (!vf.contains(he.getFace())) {
-					vf.add(he.getFace());
+				if (!result.contains(he.getFace())) {
+					result.add(he.getFace());
 				}
 			}
 			he = he.getNextInVertex();
 		} while (he != getHalfedge());
-		return vf;
+		return result.size();
 	}
 
 	/**
@@ -335,18 +398,31 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 	 */
 	public List<HE_Vertex> getNeighborVertices() {
 		final List<HE_Vertex> vv = new FastTable<HE_Vertex>();
+		getNeighborVertices(vv);
+		return vv;
+	}
+
+	/**
+	 * Get neighboring vertices, reusing a list instead of allocating one.
+	 *
+	 * @param result
+	 *            cleared and filled with the neighbors
+	 * @return number of neighbors
+	 */
+	public int getNeighborVertices(final List<HE_Vertex> result) {
+		result.clear();
 		if (getHalfedge() == null) {
-			return vv;
+			return 0;
 		}
 		HE_Halfedge he = getHalfedge();
 		do {
 			final HE_Halfedge hen = he.getNextInFace();
-			if (hen.getVertex() != this && !vv.contains(hen.getVertex())) {
-				vv.add(hen.getVertex());
+			if (hen.getVertex() != this && !result.contains(hen.getVertex())) {
+				result.add(hen.getVertex());
 			}
 			he = he.getNextInVertex();
 		} while (he != getHalfedge());
-		return vv;
+		return result.size();
 	}
 
 	/**
@@ -430,7 +506,12 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 		if (getHalfedge() == null) {
 			return 0;
 		}
-		double result = 0;
+		validateCache();
+		double result = area;
+		if (result == result) {
+			return result;
+		}
+		result = 0;
 		int n = 0;
 		HE_Halfedge he = getHalfedge();
 		do {
@@ -440,7 +521,9 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 			}
 			he = he.getNextInVertex();
 		} while (he != getHalfedge());
-		return result / n;
+		result /= n;
+		area = result;
+		return result;
 	}
 
 	/**
@@ -568,6 +651,7 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 	@Override
 	public void setX(final double x) {
 		pos.setX(x);
+		stamp = currentStamp();
 	}
 
 	/*
@@ -578,6 +662,7 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 	@Override
 	public void setY(final double y) {
 		pos.setY(y);
+		stamp = currentStamp();
 	}
 
 	/*
@@ -588,6 +673,7 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 	@Override
 	public void setZ(final double z) {
 		pos.setZ(z);
+		stamp = currentStamp();
 	}
 
 	/*
@@ -608,6 +694,7 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 	@Override
 	public void setCoord(final int i, final double v) {
 		pos.setCoord(i, v);
+		stamp = currentStamp();
 	}
 
 	/*
@@ -618,6 +705,7 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 	@Override
 	public void set(final WB_Coord p) {
 		pos.set(p);
+		stamp = currentStamp();
 	}
 
 	/*
@@ -628,6 +716,7 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 	@Override
 	public void set(final double x, final double y) {
 		pos.set(x, y);
+		stamp = currentStamp();
 	}
 
 	/*
@@ -638,6 +727,7 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 	@Override
 	public void set(final double x, final double y, final double z) {
 		pos.set(x, y, z);
+		stamp = currentStamp();
 	}
 
 	/*
@@ -648,6 +738,7 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 	@Override
 	public void set(final double x, final double y, final double z, final double w) {
 		pos.set(x, y, z, w);
+		stamp = currentStamp();
 	}
 
 	/**
@@ -666,7 +757,13 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 	 * @return
 	 */
 	public WB_Coord getVertexNormal() {
-		return HET_MeshOp.getVertexNormal(this);
+		validateCache();
+		WB_Coord n = normal;
+		if (n == null) {
+			n = HET_MeshOp.getVertexNormal(this);
+			normal = n;
+		}
+		return n;
 	}
 
 	/**
@@ -729,7 +826,13 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 	 * @return
 	 */
 	public double getGaussianCurvature() {
-		return HET_MeshOp.getGaussianCurvature(this);
+		validateCache();
+		double k = curvature;
+		if (k != k) {
+			k = HET_MeshOp.getGaussianCurvature(this);
+			curvature = k;
+		}
+		return k;
 	}
 
 	/**
@@ -764,7 +867,7 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 	@Override
 	public void clear() {
 		_halfedge = null;
-
+		stamp = currentStamp();
 	}
 
 	/**
@@ -3000,8 +3103,85 @@ public class HE_Vertex extends HE_MeshElement implements WB_MutableCoordinateFul
 				+ getInternalLabel() + ")";
 	}
 
+	/**
+	 * Discard the cached normal, area and curvature.
+	 */
 	public void update() {
+		resetCache(0);
+	}
+
+	/**
+	 * Check whether the cached derived geometry is still valid. This is the
+	 * case if neither this vertex, nor its neighbors, nor the faces around it
+	 * changed since the cached values were computed.
+	 *
+	 * @return
+	 */
+	boolean isCacheValid() {
+		final long t = cacheStamp;
+		if (stamp >= t) {
+			return false;
+		}
+		final HE_Halfedge start = _halfedge;
+		if (start == null) {
+			return true;
+		}
+		HE_Halfedge he = start;
+		HE_Vertex end;
+		do {
+			end = he.getEndVertex();
+			if (end == null || end.stamp >= t) {
+				return false;
+			}
+			if (he.getFace() != null && !he.getFace().isUnchangedSince(t)) {
+				return false;
+			}
+			he = he.getNextInVertex();
+		} while (he != null && he != start);
+		return he != null;
+	}
+
+	/**
+	 * Recompute stale derived geometry, stamping new values with t.
+	 *
+	 * @param t
+	 */
+	void updateCache(final long t) {
+		if (!isUnmodifiedSince(cacheStamp)) {
+			if (isCacheValid()) {
+				cacheStamp = t;
+			} else {
+				resetCache(t);
+			}
+		}
+		if (_halfedge != null) {
+			getVertexNormal();
+			getVertexArea();
+		}
+	}
+
+	/**
+	 * Nothing changed anywhere since the values were cached: valid without
+	 * walking the one-ring. Otherwise check it, and if unchanged, restamp the
+	 * cache so the next call takes the fast path again.
+	 */
+	private void validateCache() {
+		if (isUnmodifiedSince(cacheStamp)) {
+			return;
+		}
+		final long t = nextStamp();
+		if (isCacheValid()) {
+			cacheStamp = t;
+		} else {
+			resetCache(t);
+		}
+	}
 
+	private void resetCache(final long t) {
+		normal = null;
+		area = Double.NaN;
+		curvature = Double.NaN;
+		cacheStamp = t;
 	}
 
 }
@@ -19,7 +19,7 @@ public class HE_VertexEdgeRevCirculator implements Iterator<HE_Halfedge> {
 	/**
 	 *
 	 */
-	private final HE_Halfedge _start;
+	private HE_Halfedge _start;
 
 	/**
 	 *
@@ -36,6 +36,19 @@ public class HE_VertexEdgeRevCirculator implements Iterator<HE_Halfedge> {
 		_current = null;
 	}
 
+	/**
+	 * Restart the circulator around another vertex, to reuse it without
+	 * allocating a new one.
+	 *
+	 * @param v
+	 * @return this circulator
+	 */
+	public HE_VertexEdgeRevCirculator reset(final HE_Vertex v) {
+		_start = v.getHalfedge();
+		_current = null;
+		return this;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -19,7 +19,7 @@ public class HE_VertexFaceRevCirculator implements Iterator<HE_Face> {
 	/**
 	 *
 	 */
-	private final HE_Halfedge _start;
+	private HE_Halfedge _start;
 
 	/**
 	 *
@@ -36,6 +36,19 @@ public class HE_VertexFaceRevCirculator implements Iterator<HE_Face> {
 		_current = null;
 	}
 
+	/**
+	 * Restart the circulator around another vertex, to reuse it without
+	 * allocating a new one.
+	 *
+	 * @param v
+	 * @return this circulator
+	 */
+	public HE_VertexFaceRevCirculator reset(final HE_Vertex v) {
+		_start = v.getHalfedge();
+		_current = null;
+		return this;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -9,14 +9,20 @@
  */
 package wblut.hemesh;
 
-import java.util.Iterator;
+import java.util.List;
 
 import gnu.trove.map.hash.TLongLongHashMap;
-import wblut.core.WB_ProgressCounter;
-import wblut.hemesh.HE_RAS.HE_RASTrove;
+import wblut.core.WB_ParallelExecutor;
+import wblut.core.WB_ParallelExecutor.WB_RangeAction;
 
 /**
- * Axis Aligned Box.
+ * Deep copy of a mesh or a selection. The elements of the source are indexed
+ * by their position in its element sets, the copies are created in one pass
+ * and linked in parallel through these indices, without intermediate maps.
+ * Vertices, faces and halfedges of the copy follow the iteration order of the
+ * source.
+ *
+ * The key correlation maps from source to copy are only built if requested.
  *
  * @author Frederik Vanhoutte (W:Blut)
  *
@@ -26,6 +32,7 @@ public class HEC_Copy extends HEC_Creator {
 	 *
 	 */
 	HE_MeshStructure source;
+	private boolean correlation;
 	public TLongLongHashMap vertexCorrelation;
 	public TLongLongHashMap faceCorrelation;
 	public TLongLongHashMap halfedgeCorrelation;
@@ -36,6 +43,7 @@ public class HEC_Copy extends HEC_Creator {
 	public HEC_Copy() {
 		super();
 		override = true;
+		correlation = true;
 	}
 
 	/**
@@ -44,9 +52,8 @@ public class HEC_Copy extends HEC_Creator {
 	 * @param source
 	 */
 	public HEC_Copy(final HE_MeshStructure source) {
-		super();
+		this();
 		setMesh(source);
-		override = true;
 	}
 
 	/**
@@ -60,6 +67,19 @@ public class HEC_Copy extends HEC_Creator {
 		return this;
 	}
 
+	/**
+	 * Build vertexCorrelation, faceCorrelation and halfedgeCorrelation, maps
+	 * from the keys of the source elements to the keys of their copies.
+	 * Default is true.
+	 *
+	 * @param b
+	 * @return
+	 */
+	public HEC_Copy setCorrelation(final boolean b) {
+		correlation = b;
+		return this;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -74,258 +94,186 @@ public class HEC_Copy extends HEC_Creator {
 			return result;
 		}
 		result.copyProperties(source);
-
 		if (source instanceof HE_Mesh) {
-			final HE_Mesh mesh = (HE_Mesh) source;
-			vertexCorrelation = new TLongLongHashMap(10, 0.5f, -1L, -1L);
-			faceCorrelation = new TLongLongHashMap(10, 0.5f, -1L, -1L);
-			halfedgeCorrelation = new TLongLongHashMap(10, 0.5f, -1L, -1L);
-			HE_Vertex rv;
-			HE_Vertex v;
-			WB_ProgressCounter counter = new WB_ProgressCounter(mesh.getNumberOfVertices(), 10);
-			tracker.setStatus(this, "Creating vertices.", counter);
-			final Iterator<HE_Vertex> vItr = mesh.vItr();
-			while (vItr.hasNext()) {
-				v = vItr.next();
-				rv = new HE_Vertex(v);
-				result.add(rv);
-				rv.copyProperties(v);
-				vertexCorrelation.put(v.key(), rv.key());
-				counter.increment();
-			}
-
-			HE_Face rf;
-			HE_Face f;
-			counter = new WB_ProgressCounter(mesh.getNumberOfFaces(), 10);
-			tracker.setStatus(this, "Creating faces.", counter);
-			final Iterator<HE_Face> fItr = mesh.fItr();
-			while (fItr.hasNext()) {
-				f = fItr.next();
-				rf = new HE_Face();
-				result.add(rf);
-				rf.copyProperties(f);
-				faceCorrelation.put(f.key(), rf.key());
-				counter.increment();
-			}
-
-			HE_Halfedge rhe;
-			HE_Halfedge he;
-			counter = new WB_ProgressCounter(mesh.getNumberOfHalfedges(), 10);
-			tracker.setStatus(this, "Creating halfedges.", counter);
-			HE_RAS<HE_Halfedge> copyHalfedges = new HE_RAS.HE_RASTrove<HE_Halfedge>();
-			final Iterator<HE_Halfedge> heItr = mesh.getHalfedges().iterator();
-			while (heItr.hasNext()) {
-				he = heItr.next();
-				rhe = new HE_Halfedge();
-				copyHalfedges.add(rhe);
-				rhe.copyProperties(he);
-				halfedgeCorrelation.put(he.key(), rhe.key());
-				counter.increment();
-			}
+			copy(source, result);
+		} else if (source instanceof HE_Selection) {
+			final HE_Selection sel = ((HE_Selection) source).get();
+			sel.completeFromFaces();
+			copy(sel, result);
+			result.capHalfedges();
+		}
+		tracker.setStatus(this, "Exiting HEC_Copy.", -1);
+		return result;
+	}
 
-			counter = new WB_ProgressCounter(mesh.getNumberOfVertices(), 10);
-			tracker.setStatus(this, "Setting vertex properties.", counter);
-			HE_Vertex sv;
-			HE_Vertex tv;
-			final Iterator<HE_Vertex> svItr = mesh.vItr();
-			final Iterator<HE_Vertex> tvItr = result.vItr();
-			Long key;
-			while (svItr.hasNext()) {
-				sv = svItr.next();
-				tv = tvItr.next();
-				tv.set(sv);
-				if (sv.getHalfedge() != null) {
-					key = halfedgeCorrelation.get(sv.getHalfedge().key());
-					if (key >= 0) {
-						result.setHalfedge(tv, copyHalfedges.getWithKey(key));
+	/**
+	 * Copy all elements of a mesh structure into an empty mesh. References to
+	 * elements outside the structure are left empty.
+	 *
+	 * @param structure
+	 * @param result
+	 */
+	private void copy(final HE_MeshStructure structure, final HE_Mesh result) {
+		final List<HE_Vertex> sourceVertices = structure.vertices.getObjects();
+		final List<HE_Face> sourceFaces = structure.faces.getObjects();
+		final List<HE_Halfedge> sourceEdges = structure.edges.getObjects();
+		final List<HE_Halfedge> sourceHalfedges = structure.halfedges.getObjects();
+		final List<HE_Halfedge> sourceUnpaired = structure.unpairedHalfedges.getObjects();
+		final int nv = sourceVertices.size();
+		final int nf = sourceFaces.size();
+		final int ne = sourceEdges.size();
+		final int nhe = sourceHalfedges.size();
+		final int nh = ne + nhe + sourceUnpaired.size();
+		final HE_Vertex[] vertices = new HE_Vertex[nv];
+		final HE_Face[] faces = new HE_Face[nf];
+		final HE_Halfedge[] halfedges = new HE_Halfedge[nh];
+		final HE_Halfedge[] originals = new HE_Halfedge[nh];
+		tracker.setStatus(this, "Creating elements.", 0);
+		// keys are handed out in this order, copies of edges keep their keys
+		// below those of their pairs
+		for (int i = 0; i < nv; i++) {
+			vertices[i] = new HE_Vertex(sourceVertices.get(i));
+		}
+		for (int i = 0; i < nf; i++) {
+			faces[i] = new HE_Face();
+		}
+		for (int i = 0; i < nh; i++) {
+			originals[i] = i < ne ? sourceEdges.get(i)
+					: i < ne + nhe ? sourceHalfedges.get(i - ne) : sourceUnpaired.get(i - ne - nhe);
+			halfedges[i] = new HE_Halfedge();
+		}
+		tracker.setStatus(this, "Linking elements.", 0);
+		final WB_ParallelExecutor executor = WB_ParallelExecutor.instance();
+		executor.forRange(0, nv, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				HE_Vertex v;
+				for (int i = start; i < end; i++) {
+					v = sourceVertices.get(i);
+					vertices[i].copyProperties(v);
+					if (v.getHalfedge() != null) {
+						final int id = indexOf(structure, v.getHalfedge(), ne, nhe);
+						if (id >= 0) {
+							vertices[i]._setHalfedge(halfedges[id]);
+						}
 					}
 				}
-				counter.increment();
 			}
-
-			counter = new WB_ProgressCounter(mesh.getNumberOfFaces(), 10);
-			tracker.setStatus(this, "Setting face properties.", counter);
-			HE_Face sf;
-			HE_Face tf;
-			final Iterator<HE_Face> sfItr = mesh.fItr();
-			final Iterator<HE_Face> tfItr = result.fItr();
-			while (sfItr.hasNext()) {
-				sf = sfItr.next();
-				tf = tfItr.next();
-				if (sf.getHalfedge() != null) {
-					key = halfedgeCorrelation.get(sf.getHalfedge().key());
-					if (key >= 0) {
-						result.setHalfedge(tf, copyHalfedges.getWithKey(key));
+		});
+		executor.forRange(0, nf, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				HE_Face f;
+				for (int i = start; i < end; i++) {
+					f = sourceFaces.get(i);
+					faces[i].copyProperties(f);
+					if (f.getHalfedge() != null) {
+						final int id = indexOf(structure, f.getHalfedge(), ne, nhe);
+						if (id >= 0) {
+							faces[i]._setHalfedge(halfedges[id]);
+						}
 					}
 				}
-				counter.increment();
 			}
-
-			counter = new WB_ProgressCounter(mesh.getNumberOfHalfedges(), 10);
-			tracker.setStatus(this, "Setting halfedge properties.", counter);
-			HE_Halfedge she;
-			HE_Halfedge the;
-			final Iterator<HE_Halfedge> sheItr = mesh.getHalfedges().iterator();
-			final Iterator<HE_Halfedge> theItr = copyHalfedges.iterator();
-			while (sheItr.hasNext()) {
-				she = sheItr.next();
-				the = theItr.next();
-				if (she.getPair() != null) {
-					key = halfedgeCorrelation.get(she.getPair().key());
-					if (key >= 0) {
-						the._setPair(copyHalfedges.getWithKey(key));
-						the.getPair()._setPair(the);
+		});
+		executor.forRange(0, nh, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				HE_Halfedge he;
+				HE_Halfedge copy;
+				int id;
+				for (int i = start; i < end; i++) {
+					he = originals[i];
+					copy = halfedges[i];
+					copy.copyProperties(he);
+					if (he.getPair() != null && (id = indexOf(structure, he.getPair(), ne, nhe)) >= 0) {
+						copy._setPair(halfedges[id]);
 					}
-				}
-				if (she.getNextInFace() != null) {
-					key = halfedgeCorrelation.get(she.getNextInFace().key());
-					if (key >= 0) {
-						the._setNext(copyHalfedges.getWithKey(key));
-						the.getNextInFace()._setPrev(the);
+					if (he.getNextInFace() != null && (id = indexOf(structure, he.getNextInFace(), ne, nhe)) >= 0) {
+						copy._setNext(halfedges[id]);
 					}
-				}
-				if (she.getVertex() != null) {
-					key = vertexCorrelation.get(she.getVertex().key());
-					if (key >= 0) {
-						result.setVertex(the, result.getVertexWithKey(key));
+					if (he.getPrevInFace() != null && (id = indexOf(structure, he.getPrevInFace(), ne, nhe)) >= 0) {
+						copy._setPrev(halfedges[id]);
 					}
-				}
-				if (she.getFace() != null) {
-					key = faceCorrelation.get(she.getFace().key());
-					if (key >= 0) {
-						result.setFace(the, result.getFaceWithKey(key));
+					if (he.getVertex() != null && (id = structure.vertices.indexOf(he.getVertex())) >= 0) {
+						copy._setVertex(vertices[id]);
+					}
+					if (he.getFace() != null && (id = structure.faces.indexOf(he.getFace())) >= 0) {
+						copy._setFace(faces[id]);
 					}
 				}
-				result.add(the);
-				counter.increment();
 			}
-
-			tracker.setStatus(this, "Exiting HEC_Copy.", -1);
-		} else if (source instanceof HE_Selection) {
-			final HE_Selection sel = ((HE_Selection) source).get();
-
-			sel.completeFromFaces();
-
-			vertexCorrelation = new TLongLongHashMap(10, 0.5f, -1L, -1L);
-			faceCorrelation = new TLongLongHashMap(10, 0.5f, -1L, -1L);
-			halfedgeCorrelation = new TLongLongHashMap(10, 0.5f, -1L, -1L);
-			HE_Vertex rv;
-			HE_Vertex v;
-			WB_ProgressCounter counter = new WB_ProgressCounter(sel.getNumberOfVertices(), 10);
-			tracker.setStatus(this, "Creating vertices.", counter);
-			final Iterator<HE_Vertex> vItr = sel.vItr();
-			while (vItr.hasNext()) {
-				v = vItr.next();
-				rv = new HE_Vertex(v);
-				result.add(rv);
-				rv.copyProperties(v);
-				vertexCorrelation.put(v.key(), rv.key());
-				counter.increment();
-			}
-			HE_Face rf;
-			HE_Face f;
-			counter = new WB_ProgressCounter(sel.getNumberOfFaces(), 10);
-			tracker.setStatus(this, "Creating faces.", counter);
-			final Iterator<HE_Face> fItr = sel.fItr();
-			while (fItr.hasNext()) {
-				f = fItr.next();
-				rf = new HE_Face();
-				result.add(rf);
-				rf.copyProperties(f);
-				faceCorrelation.put(f.key(), rf.key());
-				counter.increment();
-			}
-			HE_Halfedge rhe;
-			HE_Halfedge he;
-			counter = new WB_ProgressCounter(sel.getNumberOfHalfedges(), 10);
-			HE_RAS<HE_Halfedge> copyHalfedges = new HE_RASTrove<HE_Halfedge>();
-			tracker.setStatus(this, "Creating halfedges.", counter);
-			final Iterator<HE_Halfedge> heItr = sel.heItr();
-			while (heItr.hasNext()) {
-				he = heItr.next();
-				rhe = new HE_Halfedge();
-				copyHalfedges.add(rhe);
-				rhe.copyProperties(he);
-				halfedgeCorrelation.put(he.key(), rhe.key());
-				counter.increment();
+		});
+		result.addVertices(vertices);
+		result.addFaces(faces);
+		result.addHalfedges(halfedges);
+		if (structure == source) {
+			copyAttributes(originals, halfedges, result);
+		}
+		if (correlation) {
+			vertexCorrelation = new TLongLongHashMap(nv, 0.5f, -1L, -1L);
+			for (int i = 0; i < nv; i++) {
+				vertexCorrelation.put(sourceVertices.get(i).key(), vertices[i].key());
 			}
-			counter = new WB_ProgressCounter(sel.getNumberOfVertices(), 10);
-			tracker.setStatus(this, "Setting vertex properties.", counter);
-			HE_Vertex sv;
-			HE_Vertex tv;
-			final Iterator<HE_Vertex> svItr = sel.vItr();
-			final Iterator<HE_Vertex> tvItr = result.vItr();
-			Long key;
-			while (svItr.hasNext()) {
-				sv = svItr.next();
-				tv = tvItr.next();
-				tv.set(sv);
-				if (sv.getHalfedge() != null) {
-					key = halfedgeCorrelation.get(sv.getHalfedge().key());
-					if (key >= 0) {
-						result.setHalfedge(tv, copyHalfedges.getWithKey(key));
-					}
-				}
-				counter.increment();
+			faceCorrelation = new TLongLongHashMap(nf, 0.5f, -1L, -1L);
+			for (int i = 0; i < nf; i++) {
+				faceCorrelation.put(sourceFaces.get(i).key(), faces[i].key());
 			}
-			counter = new WB_ProgressCounter(sel.getNumberOfFaces(), 10);
-			tracker.setStatus(this, "Setting face properties.", counter);
-			HE_Face sf;
-			HE_Face tf;
-			final Iterator<HE_Face> sfItr = sel.fItr();
-			final Iterator<HE_Face> tfItr = result.fItr();
-			while (sfItr.hasNext()) {
-				sf = sfItr.next();
-				tf = tfItr.next();
-				if (sf.getHalfedge() != null) {
-					key = halfedgeCorrelation.get(sf.getHalfedge().key());
-					if (key >= 0) {
-						result.setHalfedge(tf, copyHalfedges.getWithKey(key));
-					}
-				}
-				counter.increment();
+			halfedgeCorrelation = new TLongLongHashMap(nh, 0.5f, -1L, -1L);
+			for (int i = 0; i < nh; i++) {
+				halfedgeCorrelation.put(originals[i].key(), halfedges[i].key());
 			}
-			counter = new WB_ProgressCounter(sel.getNumberOfHalfedges(), 10);
-			tracker.setStatus(this, "Setting halfedge properties.", counter);
-			HE_Halfedge she;
-			HE_Halfedge the;
-			final Iterator<HE_Halfedge> sheItr = sel.heItr();
-			final Iterator<HE_Halfedge> theItr = copyHalfedges.iterator();
-			while (sheItr.hasNext()) {
-				she = sheItr.next();
-				the = theItr.next();
-				if (she.getPair() != null) {
-					key = halfedgeCorrelation.get(she.getPair().key());
-					if (key >= 0) {
-						the._setPair(copyHalfedges.getWithKey(key));
-						the.getPair()._setPair(the);
-					}
-				}
-				if (she.getNextInFace() != null) {
-					key = halfedgeCorrelation.get(she.getNextInFace().key());
-					if (key >= 0) {
-						the._setNext(copyHalfedges.getWithKey(key));
-						the.getNextInFace()._setPrev(the);
-					}
-				}
-				if (she.getVertex() != null) {
-					key = vertexCorrelation.get(she.getVertex().key());
-					if (key >= 0) {
-						result.setVertex(the, result.getVertexWithKey(key));
-					}
-				}
-				if (she.getFace() != null) {
-					key = faceCorrelation.get(she.getFace().key());
-					if (key >= 0) {
-						result.setFace(the, result.getFaceWithKey(key));
-					}
-				}
-				result.add(the);
-				counter.increment();
+		}
+	}
+
+	/**
+	 * Add the attributes of the source mesh to the copy. Vertices and faces
+	 * are copied in order, so their values are copied in bulk. Halfedges are
+	 * redistributed over the halfedge sets of the copy and are matched one by
+	 * one.
+	 *
+	 * @param originals
+	 * @param halfedges
+	 * @param result
+	 */
+	private void copyAttributes(final HE_Halfedge[] originals, final HE_Halfedge[] halfedges, final HE_Mesh result) {
+		for (final HE_Attribute<HE_Vertex> attribute : source.getVertexAttributes()) {
+			result.addVertexAttribute(attribute.create()).copyValues(attribute);
+		}
+		for (final HE_Attribute<HE_Face> attribute : source.getFaceAttributes()) {
+			result.addFaceAttribute(attribute.create()).copyValues(attribute);
+		}
+		for (final HE_Attribute<HE_Halfedge> attribute : source.getHalfedgeAttributes()) {
+			final HE_Attribute<HE_Halfedge> copy = result.addHalfedgeAttribute(attribute.create());
+			for (int i = 0; i < originals.length; i++) {
+				copy.copyValue(attribute, originals[i], halfedges[i]);
 			}
-			result.capHalfedges();
-			tracker.setStatus(this, "Exiting HEC_Copy.", -1);
 		}
-		return result;
+	}
+
+	/**
+	 * Position of a halfedge in the iteration order of the structure: edges,
+	 * halfedges, unpaired halfedges.
+	 *
+	 * @param structure
+	 * @param he
+	 * @param ne
+	 *            number of edges
+	 * @param nhe
+	 *            number of paired non-edge halfedges
+	 * @return -1 if the halfedge is not part of the structure
+	 */
+	private static int indexOf(final HE_MeshStructure structure, final HE_Halfedge he, final int ne,
+			final int nhe) {
+		int id = structure.edges.indexOf(he);
+		if (id >= 0) {
+			return id;
+		}
+		id = structure.halfedges.indexOf(he);
+		if (id >= 0) {
+			return ne + id;
+		}
+		id = structure.unpairedHalfedges.indexOf(he);
+		return id < 0 ? -1 : ne + nhe + id;
 	}
 }
@@ -17,7 +17,8 @@ import java.util.zip.InflaterInputStream;
 import javolution.util.FastTable;
 
 /**
- *
+ * Reads a binary hemesh file. Both snapshots written by HET_MeshSnapshot and
+ * the older deflated record format are supported.
  */
 public class HEC_FromBinaryHemeshFile extends HEC_Creator {
 
@@ -65,6 +66,14 @@ public class HEC_FromBinaryHemeshFile extends HEC_Creator {
 		if (path == null) {
 			return null;
 		}
+		if (HET_MeshSnapshot.isSnapshot(path)) {
+			try {
+				return HET_MeshSnapshot.open(path).toMesh();
+			} catch (final IOException e) {
+				e.printStackTrace();
+				return null;
+			}
+		}
 		final HE_Mesh mesh = new HE_Mesh();
 		try {
 			final FileInputStream fis = new FileInputStream(path);
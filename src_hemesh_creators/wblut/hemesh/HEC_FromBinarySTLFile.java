@@ -3,9 +3,9 @@
  * It is dedicated to the public domain. To the extent possible under law,
  * I , Frederik Vanhoutte, have waived all copyright and related or neighboring
  * rights.
- * 
+ *
  * This work is published from Belgium. (http://creativecommons.org/publicdomain/zero/1.0/)
- * 
+ *
  */
 package wblut.hemesh;
 
@@ -15,33 +15,53 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.zip.GZIPInputStream;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+import wblut.core.WB_ParallelExecutor;
+import wblut.core.WB_ParallelExecutor.WB_RangeAction;
+import wblut.geom.WB_Coord;
 import wblut.geom.WB_Point;
-import wblut.geom.WB_Triangle;
 
 /**
- * 
+ * Reads a binary STL file. Uncompressed files are memory-mapped and the facets
+ * are decoded in parallel into a flat float array. Identical corners are
+ * merged in parallel before the mesh is built with HEC_FromFacelist.
  */
 public class HEC_FromBinarySTLFile extends HEC_Creator {
-    
+
+    /**
+     * Size of the header: 80 bytes of text and the number of facets.
+     */
+    private static final int HEADER = 84;
+
     /**
-     * 
+     * Size of one facet: normal, 3 vertices and 2 attribute bytes.
      */
-    private final byte[] buf = new byte[12];
-    
+    private static final int FACET = 50;
+
     /**
-     * 
+     * Maximum number of facets in one mapped region.
+     */
+    private static final int REGION = (1 << 30) / FACET;
+
+    /**
+     *
      */
     private String path;
-    
+
     /**
-     * 
+     *
      */
     private double scale;
 
     /**
-     * 
+     *
      */
     public HEC_FromBinarySTLFile() {
 	super();
@@ -51,9 +71,9 @@ public class HEC_FromBinarySTLFile extends HEC_Creator {
     }
 
     /**
-     * 
      *
-     * @param path 
+     *
+     * @param path
      */
     public HEC_FromBinarySTLFile(final String path) {
 	super();
@@ -63,10 +83,10 @@ public class HEC_FromBinarySTLFile extends HEC_Creator {
     }
 
     /**
-     * 
      *
-     * @param path 
-     * @return 
+     *
+     * @param path
+     * @return
      */
     public HEC_FromBinarySTLFile setPath(final String path) {
 	this.path = path;
@@ -74,10 +94,10 @@ public class HEC_FromBinarySTLFile extends HEC_Creator {
     }
 
     /**
-     * 
      *
-     * @param f 
-     * @return 
+     *
+     * @param f
+     * @return
      */
     public HEC_FromBinarySTLFile setScale(final double f) {
 	scale = f;
@@ -85,112 +105,223 @@ public class HEC_FromBinarySTLFile extends HEC_Creator {
     }
 
     /**
-     * 
      *
-     * @return 
+     *
+     * @param file
+     * @return
      */
-    private final double bufferToDouble() {
-	return Float.intBitsToFloat(bufferToInt());
+    private InputStream createInputStream(final File file) {
+	if (file == null) {
+	    throw new IllegalArgumentException("file can't be null");
+	}
+	try {
+	    InputStream stream = new FileInputStream(file);
+	    if (file.getName().toLowerCase().endsWith(".gz")) {
+		stream = new GZIPInputStream(stream);
+	    }
+	    return stream;
+	} catch (final IOException e) {
+	    e.printStackTrace();
+	}
+	return null;
     }
 
     /**
-     * 
+     * Read all facet vertices of a memory-mapped file. Each region of the file
+     * is mapped and decoded by the shared executor.
      *
-     * @return 
+     * @param file
+     * @return 9 floats per facet
+     * @throws IOException
      */
-    private final int bufferToInt() {
-	return byteToInt(buf[0]) | (byteToInt(buf[1]) << 8)
-		| (byteToInt(buf[2]) << 16) | (byteToInt(buf[3]) << 24);
+    private float[] readMapped(final File file) throws IOException {
+	final FileChannel channel = FileChannel.open(file.toPath(),
+		StandardOpenOption.READ);
+	try {
+	    final MappedByteBuffer header = channel.map(
+		    FileChannel.MapMode.READ_ONLY, 0, HEADER);
+	    header.order(ByteOrder.LITTLE_ENDIAN);
+	    final long available = (channel.size() - HEADER) / FACET;
+	    final int numFaces = (int) Math.min(header.getInt(80) & 0xffffffffL,
+		    available);
+	    final float[] coords = new float[9 * numFaces];
+	    for (int first = 0; first < numFaces; first += REGION) {
+		final int count = Math.min(REGION, numFaces - first);
+		final MappedByteBuffer region = channel.map(
+			FileChannel.MapMode.READ_ONLY,
+			HEADER + (long) FACET * first, (long) FACET * count);
+		final int offset = first;
+		WB_ParallelExecutor.instance().forRange(0, count,
+			new WB_RangeAction() {
+			    @Override
+			    public void run(final int start, final int end) {
+				decode(region.duplicate(), start, end, offset,
+					coords);
+			    }
+			});
+	    }
+	    return coords;
+	} finally {
+	    channel.close();
+	}
     }
 
     /**
-     * 
+     * Read all facet vertices from a stream, in blocks of facets.
      *
-     * @param b 
-     * @return 
+     * @param stream
+     * @return 9 floats per facet
+     * @throws IOException
      */
-    private final int byteToInt(final byte b) {
-	return (b < 0 ? 256 + b : b);
+    private float[] readStream(final InputStream stream) throws IOException {
+	final DataInputStream ds = new DataInputStream(
+		new BufferedInputStream(stream, 0x8000));
+	try {
+	    final byte[] block = new byte[FACET * 1024];
+	    ds.readFully(block, 0, HEADER);
+	    final int numFaces = ByteBuffer.wrap(block, 80, 4)
+		    .order(ByteOrder.LITTLE_ENDIAN).getInt();
+	    final float[] coords = new float[9 * numFaces];
+	    for (int first = 0; first < numFaces; first += 1024) {
+		final int count = Math.min(1024, numFaces - first);
+		ds.readFully(block, 0, FACET * count);
+		decode(ByteBuffer.wrap(block), 0, count, first, coords);
+	    }
+	    return coords;
+	} finally {
+	    ds.close();
+	}
     }
 
     /**
-     * 
+     * Decode facets [start, end) of buffer, skipping normals and attributes.
      *
-     * @param file 
-     * @return 
+     * @param buffer
+     * @param start
+     * @param end
+     * @param offset index of the first facet in the buffer
+     * @param coords
      */
-    private InputStream createInputStream(final File file) {
-	if (file == null) {
-	    throw new IllegalArgumentException("file can't be null");
-	}
-	try {
-	    InputStream stream = new FileInputStream(file);
-	    if (file.getName().toLowerCase().endsWith(".gz")) {
-		stream = new GZIPInputStream(stream);
+    private static void decode(final ByteBuffer buffer, final int start,
+	    final int end, final int offset, final float[] coords) {
+	buffer.order(ByteOrder.LITTLE_ENDIAN);
+	for (int i = start; i < end; i++) {
+	    final int pos = FACET * i + 12;
+	    final int id = 9 * (offset + i);
+	    for (int j = 0; j < 9; j++) {
+		// adding 0 turns -0.0 into 0.0
+		coords[id + j] = buffer.getFloat(pos + 4 * j) + 0.0f;
 	    }
-	    return stream;
-	} catch (final IOException e) {
-	    e.printStackTrace();
 	}
-	return null;
     }
 
     /**
-     * 
+     * Merge identical corners. Corners are distributed over buckets by the
+     * hash of their coordinates, the buckets are processed in parallel. Each
+     * corner is mapped onto the first corner with the same coordinates.
      *
-     * @param ds 
-     * @param result 
-     * @return 
-     * @throws IOException 
+     * @param coords
+     * @param first
+     *            output, first corner with the same coordinates
      */
-    private WB_Point readVector(final DataInputStream ds, final WB_Point result)
-	    throws IOException {
-	ds.read(buf, 0, 4);
-	result.setX(scale * bufferToDouble());
-	ds.read(buf, 0, 4);
-	result.setY(scale * bufferToDouble());
-	ds.read(buf, 0, 4);
-	result.setZ(scale * bufferToDouble());
-	return result;
+    private static void mergeCorners(final float[] coords, final int[] first) {
+	final int nc = coords.length / 3;
+	final int[] hash = new int[nc];
+	final WB_ParallelExecutor executor = WB_ParallelExecutor.instance();
+	executor.forRange(0, nc, new WB_RangeAction() {
+	    @Override
+	    public void run(final int start, final int end) {
+		for (int i = start; i < end; i++) {
+		    int h = Float.floatToIntBits(coords[3 * i]);
+		    h = 31 * h + Float.floatToIntBits(coords[3 * i + 1]);
+		    h = 31 * h + Float.floatToIntBits(coords[3 * i + 2]);
+		    h *= 0x9E3779B9;
+		    hash[i] = h ^ h >>> 16;
+		}
+	    }
+	});
+	final int nb = executor.isParallel() ? 16 * executor.getParallelism()
+		: 1;
+	// counting sort of the corners by bucket, stable in corner index
+	final int[] bucketStart = new int[nb + 1];
+	for (int i = 0; i < nc; i++) {
+	    bucketStart[(hash[i] >>> 1) % nb + 1]++;
+	}
+	for (int b = 0; b < nb; b++) {
+	    bucketStart[b + 1] += bucketStart[b];
+	}
+	final int[] order = new int[nc];
+	final int[] fill = bucketStart.clone();
+	for (int i = 0; i < nc; i++) {
+	    order[fill[(hash[i] >>> 1) % nb]++] = i;
+	}
+	final int[] chain = new int[nc];
+	executor.forRange(0, nb, new WB_RangeAction() {
+	    @Override
+	    public void run(final int start, final int end) {
+		for (int b = start; b < end; b++) {
+		    final TIntIntHashMap heads = new TIntIntHashMap(
+			    2 * (bucketStart[b + 1] - bucketStart[b]), 0.5f,
+			    0, -1);
+		    for (int k = bucketStart[b]; k < bucketStart[b + 1]; k++) {
+			final int i = order[k];
+			int j = heads.get(hash[i]);
+			while (j != -1 && (coords[3 * j] != coords[3 * i]
+				|| coords[3 * j + 1] != coords[3 * i + 1]
+				|| coords[3 * j + 2] != coords[3 * i + 2])) {
+			    j = chain[j];
+			}
+			if (j == -1) {
+			    first[i] = i;
+			    chain[i] = heads.get(hash[i]);
+			    heads.put(hash[i], i);
+			} else {
+			    first[i] = j;
+			}
+		    }
+		}
+	    }
+	});
     }
 
     /*
      * (non-Javadoc)
-     * 
+     *
      * @see wblut.hemesh.creators.HEC_Creator#createBase()
      */
     @Override
     protected HE_Mesh createBase() {
 	final File file = new File(path);
-	final InputStream stream = createInputStream(file);
-	final ArrayList<WB_Triangle> triangles = new ArrayList<WB_Triangle>();
 	try {
-	    final DataInputStream ds = new DataInputStream(
-		    new BufferedInputStream(stream, 0x8000));
-	    // read header, ignore color model
-	    for (int i = 0; i < 80; i++) {
-		ds.read();
+	    float[] coords;
+	    if (file.getName().toLowerCase().endsWith(".gz")) {
+		coords = readStream(createInputStream(file));
+	    } else {
+		coords = readMapped(file);
+	    }
+	    final int nc = coords.length / 3;
+	    final int[] first = new int[nc];
+	    mergeCorners(coords, first);
+	    // number the unique corners in order of appearance
+	    final int[] id = new int[nc];
+	    int nv = 0;
+	    for (int i = 0; i < nc; i++) {
+		id[i] = first[i] == i ? nv++ : id[first[i]];
+	    }
+	    final WB_Coord[] vertices = new WB_Coord[nv];
+	    for (int i = 0; i < nc; i++) {
+		if (first[i] == i) {
+		    vertices[id[i]] = new WB_Point(scale * coords[3 * i], scale
+			    * coords[3 * i + 1], scale * coords[3 * i + 2]);
+		}
 	    }
-	    // read num faces
-	    ds.read(buf, 0, 4);
-	    final int numFaces = bufferToInt();
-	    final WB_Point a = new WB_Point();
-	    final WB_Point b = new WB_Point();
-	    final WB_Point c = new WB_Point();
-	    for (int i = 0; i < numFaces; i++) {
-		// ignore face normal
-		ds.read(buf, 0, 12);
-		// face vertices
-		readVector(ds, a);
-		readVector(ds, b);
-		readVector(ds, c);
-		triangles.add(new WB_Triangle(a, b, c));
-		// ignore colour
-		ds.read(buf, 0, 2);
+	    final int[][] faces = new int[nc / 3][];
+	    for (int i = 0; i < faces.length; i++) {
+		faces[i] = new int[] { id[3 * i], id[3 * i + 1], id[3 * i + 2] };
 	    }
-	    final HEC_FromTriangles ft = new HEC_FromTriangles();
-	    ft.setTriangles(triangles);
-	    return new HE_Mesh(ft);
+	    final HEC_FromFacelist ffl = new HEC_FromFacelist()
+		    .setVertices(vertices).setFaces(faces).setDuplicate(true);
+	    return new HE_Mesh(ffl);
 	} catch (final IOException e) {
 	    e.printStackTrace();
 	}
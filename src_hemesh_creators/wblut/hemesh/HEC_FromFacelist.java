@@ -10,21 +10,24 @@
 package wblut.hemesh;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
-import javolution.util.FastMap;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
 import wblut.geom.WB_Coord;
-import wblut.geom.WB_KDTreeInteger;
-import wblut.geom.WB_KDTreeInteger.WB_KDEntryInteger;
 import wblut.geom.WB_Point;
+import wblut.geom.WB_SpatialHash;
 import wblut.math.WB_Epsilon;
 
 /**
  * Creates a new mesh from a list of vertices and faces. Vertices can be
- * duplicate.
+ * duplicate, vertices closer than the tolerance are merged. Halfedges are
+ * paired through a primitive hash of their (start, end) vertex indices.
+ * Non-manifold edges and vertices don't stop the creation, they are collected
+ * and can be retrieved with getNonManifoldEdges() and getNonManifoldVertices().
  *
  * @author Frederik Vanhoutte (W:Blut)
  *
@@ -45,6 +48,12 @@ public class HEC_FromFacelist extends HEC_Creator {
 
 	private boolean manifoldcheck;
 	private boolean cleanunused;
+	/** Tolerance for duplicate vertices. */
+	private double tolerance;
+	/** Non-manifold edges found in the last call to create(). */
+	private List<int[]> nonManifoldEdges;
+	/** Non-manifold vertices found in the last call to create(). */
+	private int[] nonManifoldVertices;
 
 	/**
 	 * Instantiates a new HEC_Facelist.
@@ -56,6 +65,9 @@ public class HEC_FromFacelist extends HEC_Creator {
 		duplicate = true;
 		normalcheck = false;
 		cleanunused = true;
+		tolerance = WB_Epsilon.EPSILON;
+		nonManifoldEdges = new ArrayList<int[]>();
+		nonManifoldVertices = new int[0];
 	}
 
 	/**
@@ -171,6 +183,21 @@ public class HEC_FromFacelist extends HEC_Creator {
 		return this;
 	}
 
+	/**
+	 * Set face vertex UVW from array of double: u0, v0, w0, u1, v1, w1, ...
+	 *
+	 * @param vs
+	 * @return
+	 */
+	public HEC_FromFacelist setFaceVertexUVW(final double[] vs) {
+		final int n = vs.length;
+		uvws = new WB_Point[n / 3];
+		for (int i = 0; i < n; i += 3) {
+			uvws[i / 3] = new WB_Point(vs[i], vs[i + 1], vs[i + 2]);
+		}
+		return this;
+	}
+
 	/**
 	 * Set vertex coordinates from an array of WB_point.
 	 *
@@ -221,7 +248,7 @@ public class HEC_FromFacelist extends HEC_Creator {
 		final int n = vs.length;
 		vertices = new WB_Point[n / 3];
 		for (int i = 0; i < n; i += 3) {
-			vertices[i] = new WB_Point(vs[i], vs[i + 1], vs[i + 2]);
+			vertices[i / 3] = new WB_Point(vs[i], vs[i + 1], vs[i + 2]);
 		}
 		return this;
 	}
@@ -254,7 +281,7 @@ public class HEC_FromFacelist extends HEC_Creator {
 		final int n = vs.length;
 		vertices = new WB_Point[n / 3];
 		for (int i = 0; i < n; i += 3) {
-			vertices[i] = new WB_Point(vs[i], vs[i + 1], vs[i + 2]);
+			vertices[i / 3] = new WB_Point(vs[i], vs[i + 1], vs[i + 2]);
 		}
 		return this;
 	}
@@ -364,6 +391,48 @@ public class HEC_FromFacelist extends HEC_Creator {
 		return this;
 	}
 
+	/**
+	 * Tolerance for merging duplicate vertices. Two vertices closer than this
+	 * distance are considered the same.
+	 *
+	 * @param d
+	 *            tolerance, should be larger than 0
+	 * @return self
+	 */
+	public HEC_FromFacelist setTolerance(final double d) {
+		if (d <= 0) {
+			throw new IllegalArgumentException("Tolerance should be larger than 0.");
+		}
+		tolerance = d;
+		return this;
+	}
+
+	/**
+	 * Non-manifold edges found during the last call to create(). An edge is
+	 * reported when more than two faces share it or when two faces traverse it
+	 * in the same direction. Each entry is a pair of input vertex indices
+	 * {start, end}, one entry for each surplus halfedge. These halfedges are
+	 * left unpaired and end up on a boundary.
+	 *
+	 * @return
+	 */
+	public List<int[]> getNonManifoldEdges() {
+		return nonManifoldEdges;
+	}
+
+	/**
+	 * Non-manifold vertices found during the last call to create(), as input
+	 * vertex indices in increasing order. A vertex is reported when its faces
+	 * don't form a single fan: more than one boundary gap, or several fans
+	 * meeting in the vertex. With setCheckManifold(true) these vertices are
+	 * split after creation, they are still reported.
+	 *
+	 * @return
+	 */
+	public int[] getNonManifoldVertices() {
+		return nonManifoldVertices;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -372,256 +441,448 @@ public class HEC_FromFacelist extends HEC_Creator {
 	@Override
 	protected HE_Mesh createBase() {
 		final HE_Mesh mesh = new HE_Mesh();
-		if (faces != null && vertices != null) {
-			if (faces.length == 0) {
-				return mesh;
-			}
-			final boolean useVertexUVW = vertexuvws != null && vertexuvws.length == vertices.length;
-			final boolean useFaceUVW = uvws != null && faceuvws != null && faceuvws.length == faces.length;
-			final HE_Vertex[] uniqueVertices = new HE_Vertex[vertices.length];
-			final boolean[] duplicated = new boolean[vertices.length];
-			if (duplicate) {
-				final WB_KDTreeInteger<WB_Coord> kdtree = new WB_KDTreeInteger<WB_Coord>();
-				WB_KDEntryInteger<WB_Coord>[] neighbors;
-				HE_Vertex v = new HE_Vertex(vertices[0]);
-				if (useVertexUVW) {
-					v.setUVW(vertexuvws[0]);
-				}
-				kdtree.add(v, 0);
-				uniqueVertices[0] = v;
-				duplicated[0] = false;
-				mesh.add(v);
-				for (int i = 1; i < vertices.length; i++) {
-					v = new HE_Vertex(vertices[i]);
-					if (useVertexUVW) {
-						v.setUVW(vertexuvws[i]);
-					}
-					neighbors = kdtree.getNearestNeighbors(v, 1);
-					if (neighbors[0].d2 < WB_Epsilon.SQEPSILON) {
-						uniqueVertices[i] = uniqueVertices[neighbors[0].value];
-						duplicated[i] = true;
-					} else {
-						kdtree.add(v, i);
-						uniqueVertices[i] = v;
-						mesh.add(uniqueVertices[i]);
-						duplicated[i] = false;
+		nonManifoldEdges = new ArrayList<int[]>();
+		nonManifoldVertices = new int[0];
+		if (faces == null || vertices == null || faces.length == 0) {
+			return mesh;
+		}
+		final boolean useVertexUVW = vertexuvws != null && vertexuvws.length == vertices.length;
+		final boolean useFaceUVW = uvws != null && faceuvws != null && faceuvws.length == faces.length;
+		final boolean useFaceTextures = faceTextureIds != null && faceTextureIds.length == faces.length;
+		final int nv = vertices.length;
+		// weld[i]: unique vertex of input vertex i, source[u]: first input
+		// vertex of unique vertex u
+		final int[] weld = new int[nv];
+		final int[] source = new int[nv];
+		int nu;
+		if (duplicate) {
+			tracker.setStatus(this, "Welding vertices.", 0);
+			nu = weldVertices(weld, source);
+		} else {
+			for (int i = 0; i < nv; i++) {
+				weld[i] = i;
+				source[i] = i;
+			}
+			nu = nv;
+		}
+		// Flatten faces into corner lists, removing consecutive duplicate
+		// vertices. Faces with less than 3 corners left are dropped.
+		int nc = 0;
+		for (final int[] face : faces) {
+			if (face != null) {
+				nc += face.length;
+			}
+		}
+		final int[] corners = new int[nc];
+		final int[] cornerUVW = useFaceUVW ? new int[nc] : null;
+		final int[] faceStart = new int[faces.length + 1];
+		final int[] faceLabel = new int[faces.length];
+		int nf = 0;
+		int id = 0;
+		int c = 0;
+		for (int i = 0; i < faces.length; i++) {
+			final int[] face = faces[i];
+			if (face == null) {
+				continue;
+			}
+			final int label = id++;
+			final int fl = face.length;
+			if (fl < 3) {
+				continue;
+			}
+			final int[] faceuvw = useFaceUVW ? faceuvws[i] : null;
+			final int start = c;
+			corners[c] = face[0];
+			if (useFaceUVW) {
+				cornerUVW[c] = faceuvw[0];
+			}
+			c++;
+			for (int j = 1; j < fl - 1; j++) {
+				if (weld[face[j]] != weld[face[j - 1]]) {
+					corners[c] = face[j];
+					if (useFaceUVW) {
+						cornerUVW[c] = faceuvw[j];
 					}
+					c++;
+				}
+			}
+			if (weld[face[fl - 1]] != weld[face[fl - 2]] && weld[face[fl - 1]] != weld[face[0]]) {
+				corners[c] = face[fl - 1];
+				if (useFaceUVW) {
+					cornerUVW[c] = faceuvw[fl - 1];
 				}
+				c++;
+			}
+			if (c - start > 2) {
+				faceStart[nf] = start;
+				faceLabel[nf] = label;
+				nf++;
+				faceStart[nf] = c;
 			} else {
-				HE_Vertex v;
-				for (int i = 0; i < vertices.length; i++) {
-					v = new HE_Vertex(vertices[i]);
-					if (useVertexUVW) {
-						v.setUVW(vertexuvws[i]);
-					}
-					v.setInternalLabel(i);
-					uniqueVertices[i] = v;
-					duplicated[i] = false;
-					mesh.add(uniqueVertices[i]);
+				c = start;
+			}
+		}
+		if (nf == 0) {
+			return mesh;
+		}
+		nc = c;
+		if (normalcheck) {
+			tracker.setStatus(this, "Orienting faces.", 0);
+			orientFaces(faceStart, nf, corners, cornerUVW, weld);
+		}
+		final int[] cornerFace = new int[nc];
+		final int[] next = new int[nc];
+		for (int f = 0; f < nf; f++) {
+			for (c = faceStart[f]; c < faceStart[f + 1]; c++) {
+				cornerFace[c] = f;
+				next[c] = c + 1 == faceStart[f + 1] ? faceStart[f] : c + 1;
+			}
+		}
+		// Pair halfedges through a hash of directed edges (vi,vj)
+		tracker.setStatus(this, "Pairing halfedges.", 0);
+		final TLongIntHashMap directed = new TLongIntHashMap(nc, 0.5f, Long.MIN_VALUE, -1);
+		for (c = 0; c < nc; c++) {
+			if (directed.putIfAbsent(edgeKey(weld[corners[c]], weld[corners[next[c]]]), c) != -1) {
+				nonManifoldEdges.add(new int[] { corners[c], corners[next[c]] });
+			}
+		}
+		final int[] pair = new int[nc];
+		Arrays.fill(pair, -1);
+		int nb = 0;
+		for (c = 0; c < nc; c++) {
+			if (pair[c] == -1) {
+				final int d = directed.get(edgeKey(weld[corners[next[c]]], weld[corners[c]]));
+				if (d != -1 && pair[d] == -1) {
+					pair[c] = d;
+					pair[d] = c;
+				} else {
+					nb++;
 				}
 			}
-			int id = 0;
-			HE_Halfedge he;
-			final List<Long> nmedges = new ArrayList<Long>();
-			if (normalcheck) {
-				// Create adjacency table
-				final FastMap<Long, int[]> edges = new FastMap<Long, int[]>();
-				for (int i = 0; i < faces.length; i++) {
-					final int[] face = faces[i];
-
-					final int fl = face.length;
-					for (int j = 0; j < fl; j++) {
-						final long ohash = ohash(face[j], face[(j + 1) % fl]);
-						final int[] faces = edges.get(ohash);
-						if (faces == null) {
-							edges.put(ohash, new int[] { i, -1 });
-						} else {
-							if (faces[1] > -1) {
-								nmedges.add(ohash);
-							}
-							faces[1] = i;
-						}
-					}
+		}
+		// Cap unpaired halfedges, boundary halfedge k is paired with interior
+		// halfedge boundary[k] and cycled to a boundary halfedge leaving its
+		// end vertex.
+		final int[] boundary = new int[nb];
+		int k = 0;
+		for (c = 0; c < nc; c++) {
+			if (pair[c] == -1) {
+				pair[c] = nc + k;
+				boundary[k++] = c;
+			}
+		}
+		final int[] boundaryHead = new int[nu];
+		Arrays.fill(boundaryHead, -1);
+		final int[] boundaryChain = new int[nb];
+		for (k = nb - 1; k >= 0; k--) {
+			final int u = weld[corners[next[boundary[k]]]];
+			boundaryChain[k] = boundaryHead[u];
+			boundaryHead[u] = k;
+		}
+		final int[] boundaryNext = new int[nb];
+		for (k = 0; k < nb; k++) {
+			final int u = weld[corners[boundary[k]]];
+			boundaryNext[k] = boundaryHead[u];
+			if (boundaryHead[u] != -1) {
+				boundaryHead[u] = boundaryChain[boundaryHead[u]];
+			}
+		}
+		findNonManifoldVertices(nu, nc, nb, corners, next, pair, boundary, boundaryNext, weld, source);
+		tracker.setStatus(this, "Building mesh.", 0);
+		final HE_Vertex[] uniqueVertices = new HE_Vertex[nu];
+		for (int u = 0; u < nu; u++) {
+			final HE_Vertex v = new HE_Vertex(vertices[source[u]]);
+			if (useVertexUVW) {
+				v.setUVW(vertexuvws[source[u]]);
+			}
+			if (!duplicate) {
+				v.setInternalLabel(u);
+			}
+			uniqueVertices[u] = v;
+		}
+		final HE_Halfedge[] halfedges = new HE_Halfedge[nc + nb];
+		for (int i = 0; i < nc + nb; i++) {
+			halfedges[i] = new HE_Halfedge();
+		}
+		final HE_Face[] newFaces = new HE_Face[nf];
+		for (int f = 0; f < nf; f++) {
+			final HE_Face hef = new HE_Face();
+			hef.setInternalLabel(faceLabel[f]);
+			if (useFaceTextures) {
+				hef.setTextureId(faceTextureIds[faceLabel[f]]);
+			}
+			hef._setHalfedge(halfedges[faceStart[f]]);
+			newFaces[f] = hef;
+		}
+		HE_Halfedge he;
+		for (c = 0; c < nc; c++) {
+			he = halfedges[c];
+			he._setNext(halfedges[next[c]]);
+			halfedges[next[c]]._setPrev(he);
+			he._setPair(halfedges[pair[c]]);
+			he._setVertex(uniqueVertices[weld[corners[c]]]);
+			he._setFace(newFaces[cornerFace[c]]);
+			if (useFaceUVW) {
+				he.setUVW(uvws[cornerUVW[c]]);
+			}
+			if (useVertexUVW && source[weld[corners[c]]] != corners[c]) {
+				final HE_TextureCoordinate uvw = he.getVertex().getVertexUVW();
+				final WB_Coord vuvw = vertexuvws[corners[c]];
+				if (uvw.ud() != vuvw.xd() || uvw.vd() != vuvw.yd() || uvw.wd() != vuvw.zd()) {
+					he.setUVW(vuvw);
 				}
+			}
+		}
+		for (k = 0; k < nb; k++) {
+			he = halfedges[nc + k];
+			he._setPair(halfedges[boundary[k]]);
+			he._setVertex(uniqueVertices[weld[corners[next[boundary[k]]]]]);
+			if (boundaryNext[k] != -1) {
+				he._setNext(halfedges[nc + boundaryNext[k]]);
+				halfedges[nc + boundaryNext[k]]._setPrev(he);
+			}
+		}
+		HE_Vertex[] newVertices;
+		if (cleanunused) {
+			// Only vertices used by faces, in order of first use
+			final boolean[] used = new boolean[nu];
+			newVertices = new HE_Vertex[nu];
+			int nnv = 0;
+			for (c = 0; c < nc; c++) {
+				final int u = weld[corners[c]];
+				if (!used[u]) {
+					used[u] = true;
+					newVertices[nnv++] = uniqueVertices[u];
+					uniqueVertices[u]._setHalfedge(halfedges[c]);
+				}
+			}
+			for (k = 0; k < nb; k++) {
+				he = halfedges[boundary[k]];
+				he.getVertex()._setHalfedge(he);
+			}
+			newVertices = Arrays.copyOf(newVertices, nnv);
+		} else {
+			for (c = 0; c < nc; c++) {
+				uniqueVertices[weld[corners[c]]]._setHalfedge(halfedges[c]);
+			}
+			newVertices = uniqueVertices;
+		}
+		mesh.addVertices(newVertices);
+		mesh.addFaces(newFaces);
+		mesh.addHalfedges(halfedges);
+		if (nonManifoldEdges.size() > 0) {
+			tracker.setStatus(this, "Found " + nonManifoldEdges.size() + " non-manifold edges.", 0);
+		}
+		if (nonManifoldVertices.length > 0) {
+			tracker.setStatus(this, "Found " + nonManifoldVertices.length + " non-manifold vertices.", 0);
+		}
+		if (manifoldcheck) {
+			HET_Fixer.fixNonManifoldVertices(mesh);
+		}
+		if (normalcheck) {
+			final HE_FaceIterator fitr = mesh.fItr();
+			HE_Face f;
+			HE_Face left = null;
+			WB_Coord fcleft = new WB_Point(Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
+			while (fitr.hasNext()) {
+				f = fitr.next();
+				if (f.getFaceCenter().xd() < fcleft.xd()) {
+					left = f;
+					fcleft = left.getFaceCenter();
+				}
+			}
+			final WB_Coord leftn = left.getFaceNormal();
+			if (leftn.xd() > 0) {
+				HET_MeshOp.flipFaces(mesh);
+			}
+		}
+		return mesh;
+	}
 
-				final boolean[] visited = new boolean[faces.length];
-				final LinkedList<Integer> queue = new LinkedList<Integer>();
-				boolean facesleft = false;
-				int starti = 0;
-				do {
-					queue.add(starti);
-					int temp;
-					while (!queue.isEmpty()) {
-						final Integer index = queue.poll();
-						final int[] face = faces[index];
-						final int fl = face.length;
-						visited[index] = true;
-						for (int j = 0; j < fl; j++) {
-							final long ohash = ohash(face[j], face[(j + 1) % fl]);
-							final int[] ns = edges.get(ohash);
-							if (ns != null) {
-								edges.remove(ohash);// no need to revisit
-								// previous edges
-								Integer neighbor;
-								if (ns[0] == index) {
-									neighbor = ns[1];
-								} else {
-									neighbor = ns[0];
-								}
-								if (neighbor > -1) {
-									if (visited[neighbor] == false) {
-										if (!queue.contains(neighbor)) {
-											queue.add(neighbor);
-										}
-										if (consistentOrder(j, (j + 1) % fl, face, faces[neighbor]) == -1) {
-											final int fln = faces[neighbor].length;
-											for (int k = 0; k < fln / 2; k++) {
-												temp = faces[neighbor][k];
-												faces[neighbor][k] = faces[neighbor][fln - k - 1];
-												faces[neighbor][fln - k - 1] = temp;
-											}
-										}
-										visited[neighbor] = true;
-									}
-								}
-							}
-						}
-					}
-					facesleft = false;
-					for (; starti < faces.length; starti++) {
-						if (!visited[starti]) {
-							facesleft = true;
-							break;
-						}
-					}
-				} while (facesleft);
+	/**
+	 * Walk around each vertex, halfedge 0..nc-1 are the face corners,
+	 * nc..nc+nb-1 the boundary halfedges. The vertex is manifold if the walk
+	 * visits all its outgoing halfedges and at most one of them is a boundary
+	 * halfedge.
+	 *
+	 * @param nu
+	 * @param nc
+	 * @param nb
+	 * @param corners
+	 * @param next
+	 * @param pair
+	 * @param boundary
+	 * @param boundaryNext
+	 * @param weld
+	 * @param source
+	 */
+	private void findNonManifoldVertices(final int nu, final int nc, final int nb, final int[] corners,
+			final int[] next, final int[] pair, final int[] boundary, final int[] boundaryNext, final int[] weld,
+			final int[] source) {
+		final int[] outgoing = new int[nu];
+		final int[] boundaryOutgoing = new int[nu];
+		final int[] first = new int[nu];
+		Arrays.fill(first, -1);
+		int u;
+		for (int c = 0; c < nc; c++) {
+			u = weld[corners[c]];
+			outgoing[u]++;
+			if (first[u] == -1) {
+				first[u] = c;
 			}
-			final boolean useFaceTextures = faceTextureIds != null && faceTextureIds.length == faces.length;
+		}
+		for (int k = 0; k < nb; k++) {
+			u = weld[corners[next[boundary[k]]]];
+			outgoing[u]++;
+			boundaryOutgoing[u]++;
+		}
+		final TIntArrayList result = new TIntArrayList();
+		int h, p, count;
+		for (u = 0; u < nu; u++) {
+			if (first[u] == -1) {
+				continue;
+			}
+			h = first[u];
+			count = 0;
+			do {
+				count++;
+				p = h < nc ? pair[h] : boundary[h - nc];
+				h = p < nc ? next[p] : boundaryNext[p - nc] == -1 ? -1 : nc + boundaryNext[p - nc];
+			} while (h != -1 && h != first[u] && count <= outgoing[u]);
+			if (boundaryOutgoing[u] > 1 || h != first[u] || count != outgoing[u]) {
+				result.add(source[u]);
+			}
+		}
+		result.sort();
+		nonManifoldVertices = result.toArray();
+	}
 
-			int faceid = 0;
-			for (final int[] face : faces) {
-				int[] faceuvw = null;
-				if (useFaceUVW) {
-					faceuvw = faceuvws[faceid];
+	/**
+	 * Merge vertices closer than the tolerance, see WB_SpatialHash.weld().
+	 *
+	 * @param weld
+	 *            output, unique vertex for each input vertex
+	 * @param source
+	 *            output, first input vertex for each unique vertex
+	 * @return number of unique vertices
+	 */
+	private int weldVertices(final int[] weld, final int[] source) {
+		final int nv = vertices.length;
+		final double[] coords = new double[3 * nv];
+		for (int i = 0; i < nv; i++) {
+			coords[3 * i] = vertices[i].xd();
+			coords[3 * i + 1] = vertices[i].yd();
+			coords[3 * i + 2] = vertices[i].zd();
+		}
+		return WB_SpatialHash.weld(coords, tolerance, weld, source);
+	}
+
+	/**
+	 * Make the orientation of neighboring faces consistent by a breadth-first
+	 * walk over the shared edges, reversing faces that disagree with the face
+	 * they are reached from.
+	 *
+	 * @param faceStart
+	 * @param nf
+	 * @param corners
+	 * @param cornerUVW
+	 * @param weld
+	 */
+	private void orientFaces(final int[] faceStart, final int nf, final int[] corners, final int[] cornerUVW,
+			final int[] weld) {
+		final int nc = faceStart[nf];
+		final TLongIntHashMap edgeIndex = new TLongIntHashMap(nc, 0.5f, Long.MIN_VALUE, -1);
+		final int[] edgeFaces = new int[2 * nc];
+		int ne = 0;
+		for (int f = 0; f < nf; f++) {
+			for (int c = faceStart[f]; c < faceStart[f + 1]; c++) {
+				final int n = c + 1 == faceStart[f + 1] ? faceStart[f] : c + 1;
+				final long key = undirectedKey(weld[corners[c]], weld[corners[n]]);
+				final int e = edgeIndex.putIfAbsent(key, ne);
+				if (e == -1) {
+					edgeFaces[2 * ne] = f;
+					edgeFaces[2 * ne + 1] = -1;
+					ne++;
+				} else {
+					edgeFaces[2 * e + 1] = f;
 				}
-				if (face != null) {
-					final ArrayList<HE_Halfedge> faceEdges = new ArrayList<HE_Halfedge>();
-					final HE_Face hef = new HE_Face();
-					hef.setInternalLabel(id);
-					if (useFaceTextures) {
-						hef.setTextureId(faceTextureIds[id]);
-					}
-					id++;
-					final int fl = face.length;
-					final int[] locface = new int[fl];
-					final int[] locfaceuvw = new int[fl];
-					int li = 0;
-					locface[li] = face[0];
-					if (useFaceUVW) {
-						locfaceuvw[li] = faceuvw[0];
-					}
-					li++;
-					for (int i = 1; i < fl - 1; i++) {
-						if (uniqueVertices[face[i]] != uniqueVertices[face[i - 1]]) {
-							locface[li] = face[i];
-							if (useFaceUVW) {
-								locfaceuvw[li] = faceuvw[i];
-							}
-							li++;
-						}
-					}
-					if (uniqueVertices[face[fl - 1]] != uniqueVertices[face[fl - 2]]
-							&& uniqueVertices[face[fl - 1]] != uniqueVertices[face[0]]) {
-						locface[li] = face[fl - 1];
-						if (useFaceUVW) {
-							locfaceuvw[li] = faceuvw[fl - 1];
-						}
-						li++;
+			}
+		}
+		final boolean[] edgeDone = new boolean[ne];
+		final boolean[] visited = new boolean[nf];
+		final int[] queue = new int[nf];
+		for (int start = 0; start < nf; start++) {
+			if (visited[start]) {
+				continue;
+			}
+			visited[start] = true;
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = start;
+			while (head < tail) {
+				final int f = queue[head++];
+				for (int c = faceStart[f]; c < faceStart[f + 1]; c++) {
+					final int n = c + 1 == faceStart[f + 1] ? faceStart[f] : c + 1;
+					final int a = weld[corners[c]];
+					final int b = weld[corners[n]];
+					final int e = edgeIndex.get(undirectedKey(a, b));
+					if (edgeDone[e]) {
+						continue;
 					}
-					if (li > 2) {
-						for (int i = 0; i < li; i++) {
-							he = new HE_Halfedge();
-							faceEdges.add(he);
-							mesh.setFace(he, hef);
-							if (hef.getHalfedge() == null) {
-								mesh.setHalfedge(hef, he);
-							}
-							mesh.setVertex(he, uniqueVertices[locface[i]]);
-							if (useFaceUVW) {
-								he.setUVW(uvws[locfaceuvw[i]]);
+					edgeDone[e] = true;
+					final int neighbor = edgeFaces[2 * e] == f ? edgeFaces[2 * e + 1] : edgeFaces[2 * e];
+					if (neighbor > -1 && !visited[neighbor]) {
+						if (sameDirection(a, b, faceStart[neighbor], faceStart[neighbor + 1], corners, weld)) {
+							reverse(corners, faceStart[neighbor], faceStart[neighbor + 1]);
+							if (cornerUVW != null) {
+								reverse(cornerUVW, faceStart[neighbor], faceStart[neighbor + 1]);
 							}
-							if (useVertexUVW) {
-								if (duplicated[locface[i]]) {
-									final HE_TextureCoordinate uvw = uniqueVertices[locface[i]].getVertexUVW();
-									if (uvw.ud() != vertexuvws[locface[i]].xd()
-											|| uvw.vd() != vertexuvws[locface[i]].yd()
-											|| uvw.wd() != vertexuvws[locface[i]].zd()) {
-										he.setUVW(vertexuvws[locface[i]]);
-
-									}
-								}
-							}
-							mesh.setHalfedge(he.getVertex(), he);
 						}
-						mesh.add(hef);
-						mesh.cycleHalfedges(faceEdges);
-						mesh.addHalfedges(faceEdges);
-					}
-				}
-				faceid++;
-			}
-			mesh.pairHalfedges();
-
-			if (cleanunused) {
-				mesh.cleanUnusedElementsByFace();
-			}
-			mesh.capHalfedges();
-			if (manifoldcheck) {
-				HET_Fixer.fixNonManifoldVertices(mesh);
-			}
-			if (normalcheck) {
-				final HE_FaceIterator fitr = mesh.fItr();
-				HE_Face f;
-				HE_Face left = null;
-				WB_Coord fcleft = new WB_Point(Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
-				while (fitr.hasNext()) {
-					f = fitr.next();
-					if (f.getFaceCenter().xd() < fcleft.xd()) {
-						left = f;
-						fcleft = left.getFaceCenter();
+						visited[neighbor] = true;
+						queue[tail++] = neighbor;
 					}
 				}
-				final WB_Coord leftn = left.getFaceNormal();
-				if (leftn.xd() > 0) {
-					HET_MeshOp.flipFaces(mesh);
-				}
 			}
 		}
-
-		return mesh;
 	}
 
-	private Long ohash(final int u, final int v) {
-		int lu = u;
-		int lv = v;
-		if (u > v) {
-			lu = v;
-			lv = u;
+	private boolean sameDirection(final int a, final int b, final int start, final int end, final int[] corners,
+			final int[] weld) {
+		for (int c = start; c < end; c++) {
+			final int n = c + 1 == end ? start : c + 1;
+			if (weld[corners[c]] == a && weld[corners[n]] == b) {
+				return true;
+			}
+			if (weld[corners[c]] == b && weld[corners[n]] == a) {
+				return false;
+			}
 		}
-		final long A = lu >= 0 ? 2 * lu : -2 * lu - 1;
-		final long B = lv >= 0 ? 2 * lv : -2 * lv - 1;
-		return A >= B ? A * A + A + B : A + B * B;
+		return false;
 	}
 
-	private int consistentOrder(final int i, final int j, final int[] face, final int[] neighbor) {
-		for (int k = 0; k < neighbor.length; k++) {
-			if (neighbor[k] == face[i] && neighbor[(k + 1) % neighbor.length] == face[j]) {
-				return -1;
-			}
-			if (neighbor[k] == face[j] && neighbor[(k + 1) % neighbor.length] == face[i]) {
-				return 1;
-			}
+	private static void reverse(final int[] array, final int start, final int end) {
+		int temp;
+		for (int i = start, j = end - 1; i < j; i++, j--) {
+			temp = array[i];
+			array[i] = array[j];
+			array[j] = temp;
 		}
-		return 0;
+	}
+
+	/**
+	 * Key for the directed edge (u,v). The packed indices are scrambled by an
+	 * odd multiplier, a one-to-one mapping that spreads the keys over the hash
+	 * table.
+	 *
+	 * @param u
+	 * @param v
+	 * @return
+	 */
+	private static long edgeKey(final int u, final int v) {
+		return ((long) u << 32 | v & 0xffffffffL) * 0x9E3779B97F4A7C15L;
+	}
+
+	private static long undirectedKey(final int u, final int v) {
+		return u < v ? edgeKey(u, v) : edgeKey(v, u);
 	}
 }
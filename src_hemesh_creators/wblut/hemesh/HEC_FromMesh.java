@@ -17,10 +17,9 @@ import gnu.trove.map.TLongObjectMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
 import javolution.util.FastTable;
 import wblut.geom.WB_Coord;
-import wblut.geom.WB_KDTreeInteger;
-import wblut.geom.WB_KDTreeInteger.WB_KDEntryInteger;
 import wblut.geom.WB_Mesh;
 import wblut.geom.WB_MeshCreator;
+import wblut.geom.WB_SpatialHash;
 import wblut.math.WB_Epsilon;
 
 /**
@@ -43,6 +42,8 @@ public class HEC_FromMesh extends HEC_Creator {
 	 * Check face normal consistency?.
 	 */
 	private boolean normalcheck;
+	/** Tolerance for duplicate vertices. */
+	private double tolerance;
 
 	/**
 	 * Instantiates a new HEC_Facelist �.
@@ -55,6 +56,7 @@ public class HEC_FromMesh extends HEC_Creator {
 		duplicate = true;
 		normalcheck = false;
 		override = true;
+		tolerance = WB_Epsilon.EPSILON;
 	}
 
 	/**
@@ -68,6 +70,7 @@ public class HEC_FromMesh extends HEC_Creator {
 		duplicate = true;
 		normalcheck = false;
 		override = true;
+		tolerance = WB_Epsilon.EPSILON;
 	}
 
 	/**
@@ -82,6 +85,22 @@ public class HEC_FromMesh extends HEC_Creator {
 		return this;
 	}
 
+	/**
+	 * Tolerance for merging duplicate vertices. Two vertices closer than this
+	 * distance are considered the same.
+	 *
+	 * @param d
+	 *            tolerance, should be larger than 0
+	 * @return self
+	 */
+	public HEC_FromMesh setTolerance(final double d) {
+		if (d <= 0) {
+			throw new IllegalArgumentException("Tolerance should be larger than 0.");
+		}
+		tolerance = d;
+		return this;
+	}
+
 	/**
 	 * Check face normals?.
 	 *
@@ -209,23 +228,28 @@ public class HEC_FromMesh extends HEC_Creator {
 	private List<HE_Vertex> getUniqueVertices(final HE_Mesh mesh) {
 		final List<HE_Vertex> uniqueVertices = new FastTable<HE_Vertex>();
 		if (duplicate) {
-			final WB_KDTreeInteger<WB_Coord> kdtree = new WB_KDTreeInteger<WB_Coord>();
-			WB_KDEntryInteger<WB_Coord> neighbor;
-			HE_Vertex v = new HE_Vertex(source.getVertex(0));
-			kdtree.add(source.getVertex(0), 0);
-			uniqueVertices.add(v);
-			mesh.add(v);
-			for (int i = 1; i < source.getNumberOfVertices(); i++) {
-				v = new HE_Vertex(source.getVertex(i));
-				v.setInternalLabel(i);
-				neighbor = kdtree.getNearestNeighbor(v);
-				if (neighbor.d2 < WB_Epsilon.SQEPSILON) {
-					uniqueVertices.add(uniqueVertices.get(neighbor.value));
-				} else {
-					kdtree.add(source.getVertex(i), i);
-					uniqueVertices.add(v);
-					mesh.add(uniqueVertices.get(i));
-				}
+			final int nv = source.getNumberOfVertices();
+			final double[] coords = new double[3 * nv];
+			WB_Coord p;
+			for (int i = 0; i < nv; i++) {
+				p = source.getVertex(i);
+				coords[3 * i] = p.xd();
+				coords[3 * i + 1] = p.yd();
+				coords[3 * i + 2] = p.zd();
+			}
+			final int[] weld = new int[nv];
+			final int[] first = new int[nv];
+			final int nu = WB_SpatialHash.weld(coords, tolerance, weld, first);
+			final HE_Vertex[] unique = new HE_Vertex[nu];
+			HE_Vertex v;
+			for (int u = 0; u < nu; u++) {
+				v = new HE_Vertex(source.getVertex(first[u]));
+				v.setInternalLabel(first[u]);
+				unique[u] = v;
+				mesh.add(v);
+			}
+			for (int i = 0; i < nv; i++) {
+				uniqueVertices.add(unique[weld[i]]);
 			}
 		} else {
 			HE_Vertex v;
@@ -16,8 +16,7 @@ import java.util.List;
 import javolution.util.FastTable;
 import wblut.geom.WB_Coord;
 import wblut.geom.WB_GeometryOp3D;
-import wblut.geom.WB_KDTreeInteger;
-import wblut.geom.WB_KDTreeInteger.WB_KDEntryInteger;
+import wblut.geom.WB_KDTreeStatic;
 import wblut.geom.WB_Plane;
 import wblut.geom.WB_Point;
 import wblut.geom.WB_RandomOnSphere;
@@ -241,10 +240,7 @@ public class HEC_VoronoiSphere extends HEC_Creator {
 	 * @param offset
 	 */
 	private void grow(final WB_Point[] tracers, final int index, final double offset) {
-		final WB_KDTreeInteger<WB_Coord> kdtree = new WB_KDTreeInteger<WB_Coord>();
-		for (int i = 0; i < numberOfPoints; i++) {
-			kdtree.add(points.get(i), i);
-		}
+		final WB_KDTreeStatic kdtree = new WB_KDTreeStatic(points.subList(0, numberOfPoints));
 		final WB_Point c = new WB_Point(points.get(index));
 		WB_Point p;
 		WB_Vector r;
@@ -259,8 +255,7 @@ public class HEC_VoronoiSphere extends HEC_Creator {
 				while (j == index && d2self < cutoff * cutoff) {
 					p.addSelf(stepSize * r.xd(), stepSize * r.yd(), stepSize * r.zd());
 					d2self = WB_GeometryOp3D.getSqDistance3D(p, c);
-					final WB_KDEntryInteger<WB_Coord>[] closest = kdtree.getNearestNeighbors(p, 1);
-					j = closest[0].value;
+					j = kdtree.getNearestNeighbor(p);
 				}
 				if (j != index) {
 					p.subSelf(stepSize * r.xd(), stepSize * r.yd(), stepSize * r.zd());
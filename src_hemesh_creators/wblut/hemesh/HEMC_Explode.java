@@ -58,7 +58,7 @@ public class HEMC_Explode extends HEMC_MultiCreator {
 			_numberOfMeshes = 0;
 			return result;
 		}
-		mesh.clearVisitedElements();
+		final HE_Traversal traversal = mesh.beginTraversal();
 		HE_Face start = mesh.getFaceWithIndex(0);
 		int lastfound = 0;
 		HE_Selection submesh;
@@ -67,15 +67,15 @@ public class HEMC_Explode extends HEMC_MultiCreator {
 			for (int i = lastfound; i < mesh.getNumberOfFaces(); i++) {
 				start = mesh.getFaceWithIndex(i);
 				lastfound = i;
-				if (!start.isVisited()) {// found
+				if (!traversal.isMarked(start)) {// found
 					break;
 				}
 			}
 			// reached last face, was already visited
-			if (start.isVisited()) {
+			if (traversal.isMarked(start)) {
 				break;
 			}
-			start.setVisited();// visited
+			traversal.mark(start);// visited
 			submesh = new HE_Selection(mesh);
 			submesh.add(start);
 			// find all unvisited faces connected to face
@@ -89,8 +89,7 @@ public class HEMC_Explode extends HEMC_MultiCreator {
 				for (final HE_Face f : facesToProcess) {
 					neighbors = f.getNeighborFaces();
 					for (final HE_Face neighbor : neighbors) {
-						if (!neighbor.isVisited()) {
-							neighbor.setVisited();// visited
+						if (traversal.mark(neighbor)) {// visited
 							submesh.add(neighbor);
 							newFacesToProcess.add(neighbor);
 						}
@@ -101,6 +100,7 @@ public class HEMC_Explode extends HEMC_MultiCreator {
 
 			result.add(submesh.getAsMesh());
 		} while (true);
+		traversal.end();
 		return result;
 	}
 }
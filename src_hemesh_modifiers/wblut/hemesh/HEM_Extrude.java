@@ -548,58 +548,63 @@ public class HEM_Extrude extends HEM_Modifier {
 			}
 		}
 		final List<HE_Halfedge> newhes = new FastTable<HE_Halfedge>();
-		for (int c = 0; c < outerHalfedges.size(); c++) {
-			final HE_Face fNew = new HE_Face();
-			walls.add(fNew);
-			fNew.copyProperties(f);
-			fNew.setInternalLabel(2);
-			final HE_Halfedge heOrig1 = outerHalfedges.get(c);
-			final HE_Halfedge heOrig2 = pairHalfedges.get(c);
-			final HE_Halfedge heNew1 = new HE_Halfedge();
-			final HE_Halfedge heNew2 = new HE_Halfedge();
-			final HE_Halfedge heNew3 = new HE_Halfedge();
-			final HE_Halfedge heNew4 = new HE_Halfedge();
-			HE_Halfedge hen = heOrig1.getNextInFace();
-			int cp = -1;
-			do {
-				cp = outerHalfedges.indexOf(hen);
-				hen = hen.getPair().getNextInFace();
-			} while (hen != heOrig1.getNextInFace() && cp == -1);
-			final HE_Vertex v1 = outerVertices.get(c);
-			final HE_Vertex v2 = outerVertices.get(cp);
-			final HE_Vertex v4 = extOuterVertices.get(c);
-			final HE_Vertex v3 = extOuterVertices.get(cp);
-			mesh.setVertex(heNew1, v1);
-			mesh.setHalfedge(v1, heNew1);
-			mesh.setFace(heNew1, fNew);
-			mesh.setHalfedge(fNew, heNew1);
-			mesh.setPair(heOrig2, heNew1);
-			mesh.setNext(heNew1, heNew2);
-			mesh.setVertex(heNew2, v2);
-			mesh.setHalfedge(v2, heNew2);
-			mesh.setFace(heNew2, fNew);
-			mesh.setNext(heNew2, heNew3);
-			mesh.setVertex(heNew3, v3);
-			mesh.setHalfedge(v3, heNew3);
-			mesh.setFace(heNew3, fNew);
-			mesh.setPair(heNew3, heOrig1);
-			mesh.setNext(heNew3, heNew4);
-			mesh.setVertex(heNew4, v4);
-			mesh.setHalfedge(v4, heNew4);
-			mesh.setFace(heNew4, fNew);
-			mesh.setNext(heNew4, heNew1);
-			mesh.setVertex(heOrig1, v4);
-			mesh.add(fNew);
-			mesh.add(heNew1);
-			mesh.add(heNew2);
-			mesh.add(heNew3);
-			mesh.add(heNew4);
-			newhes.add(heNew1);
-			newhes.add(heNew2);
-			newhes.add(heNew3);
-			newhes.add(heNew4);
+		mesh.beginTransaction();
+		try {
+			for (int c = 0; c < outerHalfedges.size(); c++) {
+				final HE_Face fNew = new HE_Face();
+				walls.add(fNew);
+				fNew.copyProperties(f);
+				fNew.setInternalLabel(2);
+				final HE_Halfedge heOrig1 = outerHalfedges.get(c);
+				final HE_Halfedge heOrig2 = pairHalfedges.get(c);
+				final HE_Halfedge heNew1 = new HE_Halfedge();
+				final HE_Halfedge heNew2 = new HE_Halfedge();
+				final HE_Halfedge heNew3 = new HE_Halfedge();
+				final HE_Halfedge heNew4 = new HE_Halfedge();
+				HE_Halfedge hen = heOrig1.getNextInFace();
+				int cp = -1;
+				do {
+					cp = outerHalfedges.indexOf(hen);
+					hen = hen.getPair().getNextInFace();
+				} while (hen != heOrig1.getNextInFace() && cp == -1);
+				final HE_Vertex v1 = outerVertices.get(c);
+				final HE_Vertex v2 = outerVertices.get(cp);
+				final HE_Vertex v4 = extOuterVertices.get(c);
+				final HE_Vertex v3 = extOuterVertices.get(cp);
+				mesh.setVertex(heNew1, v1);
+				mesh.setHalfedge(v1, heNew1);
+				mesh.setFace(heNew1, fNew);
+				mesh.setHalfedge(fNew, heNew1);
+				mesh.setPair(heOrig2, heNew1);
+				mesh.setNext(heNew1, heNew2);
+				mesh.setVertex(heNew2, v2);
+				mesh.setHalfedge(v2, heNew2);
+				mesh.setFace(heNew2, fNew);
+				mesh.setNext(heNew2, heNew3);
+				mesh.setVertex(heNew3, v3);
+				mesh.setHalfedge(v3, heNew3);
+				mesh.setFace(heNew3, fNew);
+				mesh.setPair(heNew3, heOrig1);
+				mesh.setNext(heNew3, heNew4);
+				mesh.setVertex(heNew4, v4);
+				mesh.setHalfedge(v4, heNew4);
+				mesh.setFace(heNew4, fNew);
+				mesh.setNext(heNew4, heNew1);
+				mesh.setVertex(heOrig1, v4);
+				mesh.add(fNew);
+				mesh.add(heNew1);
+				mesh.add(heNew2);
+				mesh.add(heNew3);
+				mesh.add(heNew4);
+				newhes.add(heNew1);
+				newhes.add(heNew2);
+				newhes.add(heNew3);
+				newhes.add(heNew4);
+			}
+			mesh.pairHalfedges(newhes);
+		} finally {
+			mesh.commitTransaction();
 		}
-		mesh.pairHalfedges(newhes);
 		return true;
 	}
 
@@ -700,58 +705,63 @@ public class HEM_Extrude extends HEM_Modifier {
 			}
 		}
 		final List<HE_Halfedge> newhes = new FastTable<HE_Halfedge>();
-		for (int c = 0; c < outerHalfedges.size(); c++) {
-			final HE_Face fNew = new HE_Face();
-			walls.add(fNew);
-			fNew.copyProperties(f);
-			fNew.setInternalLabel(2);
-			final HE_Halfedge heOrig1 = outerHalfedges.get(c);
-			final HE_Halfedge heOrig2 = pairHalfedges.get(c);
-			final HE_Halfedge heNew1 = new HE_Halfedge();
-			final HE_Halfedge heNew2 = new HE_Halfedge();
-			final HE_Halfedge heNew3 = new HE_Halfedge();
-			final HE_Halfedge heNew4 = new HE_Halfedge();
-			HE_Halfedge hen = heOrig1.getNextInFace();
-			int cp = -1;
-			do {
-				cp = outerHalfedges.indexOf(hen);
-				hen = hen.getPair().getNextInFace();
-			} while (hen != heOrig1.getNextInFace() && cp == -1);
-			final HE_Vertex v1 = outerVertices.get(c);
-			final HE_Vertex v2 = outerVertices.get(cp);
-			final HE_Vertex v4 = extOuterVertices.get(c);
-			final HE_Vertex v3 = extOuterVertices.get(cp);
-			mesh.setVertex(heNew1, v1);
-			mesh.setHalfedge(v1, heNew1);
-			mesh.setFace(heNew1, fNew);
-			mesh.setHalfedge(fNew, heNew1);
-			mesh.setPair(heNew1, heOrig2);
-			mesh.setNext(heNew1, heNew2);
-			mesh.setVertex(heNew2, v2);
-			mesh.setHalfedge(v2, heNew2);
-			mesh.setFace(heNew2, fNew);
-			mesh.setNext(heNew2, heNew3);
-			mesh.setVertex(heNew3, v3);
-			mesh.setHalfedge(v3, heNew3);
-			mesh.setFace(heNew3, fNew);
-			mesh.setPair(heNew3, heOrig1);
-			mesh.setNext(heNew3, heNew4);
-			mesh.setVertex(heNew4, v4);
-			mesh.setHalfedge(v4, heNew4);
-			mesh.setFace(heNew4, fNew);
-			mesh.setNext(heNew4, heNew1);
-			mesh.setVertex(heOrig1, v4);
-			mesh.add(fNew);
-			mesh.add(heNew1);
-			mesh.add(heNew2);
-			mesh.add(heNew3);
-			mesh.add(heNew4);
-			newhes.add(heNew1);
-			newhes.add(heNew2);
-			newhes.add(heNew3);
-			newhes.add(heNew4);
+		mesh.beginTransaction();
+		try {
+			for (int c = 0; c < outerHalfedges.size(); c++) {
+				final HE_Face fNew = new HE_Face();
+				walls.add(fNew);
+				fNew.copyProperties(f);
+				fNew.setInternalLabel(2);
+				final HE_Halfedge heOrig1 = outerHalfedges.get(c);
+				final HE_Halfedge heOrig2 = pairHalfedges.get(c);
+				final HE_Halfedge heNew1 = new HE_Halfedge();
+				final HE_Halfedge heNew2 = new HE_Halfedge();
+				final HE_Halfedge heNew3 = new HE_Halfedge();
+				final HE_Halfedge heNew4 = new HE_Halfedge();
+				HE_Halfedge hen = heOrig1.getNextInFace();
+				int cp = -1;
+				do {
+					cp = outerHalfedges.indexOf(hen);
+					hen = hen.getPair().getNextInFace();
+				} while (hen != heOrig1.getNextInFace() && cp == -1);
+				final HE_Vertex v1 = outerVertices.get(c);
+				final HE_Vertex v2 = outerVertices.get(cp);
+				final HE_Vertex v4 = extOuterVertices.get(c);
+				final HE_Vertex v3 = extOuterVertices.get(cp);
+				mesh.setVertex(heNew1, v1);
+				mesh.setHalfedge(v1, heNew1);
+				mesh.setFace(heNew1, fNew);
+				mesh.setHalfedge(fNew, heNew1);
+				mesh.setPair(heNew1, heOrig2);
+				mesh.setNext(heNew1, heNew2);
+				mesh.setVertex(heNew2, v2);
+				mesh.setHalfedge(v2, heNew2);
+				mesh.setFace(heNew2, fNew);
+				mesh.setNext(heNew2, heNew3);
+				mesh.setVertex(heNew3, v3);
+				mesh.setHalfedge(v3, heNew3);
+				mesh.setFace(heNew3, fNew);
+				mesh.setPair(heNew3, heOrig1);
+				mesh.setNext(heNew3, heNew4);
+				mesh.setVertex(heNew4, v4);
+				mesh.setHalfedge(v4, heNew4);
+				mesh.setFace(heNew4, fNew);
+				mesh.setNext(heNew4, heNew1);
+				mesh.setVertex(heOrig1, v4);
+				mesh.add(fNew);
+				mesh.add(heNew1);
+				mesh.add(heNew2);
+				mesh.add(heNew3);
+				mesh.add(heNew4);
+				newhes.add(heNew1);
+				newhes.add(heNew2);
+				newhes.add(heNew3);
+				newhes.add(heNew4);
+			}
+			mesh.pairHalfedges(newhes);
+		} finally {
+			mesh.commitTransaction();
 		}
-		mesh.pairHalfedges(newhes);
 		return true;
 	}
 
@@ -975,58 +985,63 @@ public class HEM_Extrude extends HEM_Modifier {
 			extruded.add(f);
 			f.setInternalLabel(1);
 			final List<HE_Halfedge> newhes = new FastTable<HE_Halfedge>();
-			int c = 0;
-			he = f.getHalfedge();
-			do {
-				final HE_Face fNew = new HE_Face();
-				walls.add(fNew);
-				fNew.copyProperties(f);
-				fNew.setInternalLabel(2);
-				final HE_Halfedge heOrig1 = he;
-				final HE_Halfedge heOrig2 = he.getPair();
-				final HE_Halfedge heNew1 = new HE_Halfedge();
-				final HE_Halfedge heNew2 = new HE_Halfedge();
-				final HE_Halfedge heNew3 = new HE_Halfedge();
-				final HE_Halfedge heNew4 = new HE_Halfedge();
-				final int cp = (c + 1) % faceVertices.size();
-				final HE_Vertex v1 = faceVertices.get(c);
-				final HE_Vertex v2 = faceVertices.get(cp);
-				final HE_Vertex v4 = extFaceVertices.get(c);
-				final HE_Vertex v3 = extFaceVertices.get(cp);
-				mesh.setVertex(heNew1, v1);
-				mesh.setHalfedge(v1, heNew1);
-				mesh.setFace(heNew1, fNew);
-				mesh.setHalfedge(fNew, heNew1);
-				mesh.setPair(heNew1, heOrig2);
-				mesh.setNext(heNew1, heNew2);
-				mesh.setVertex(heNew2, v2);
-				mesh.setHalfedge(v2, heNew2);
-				mesh.setFace(heNew2, fNew);
-				mesh.setNext(heNew2, heNew3);
-				mesh.setVertex(heNew3, v3);
-				mesh.setHalfedge(v3, heNew3);
-				mesh.setFace(heNew3, fNew);
-				mesh.setPair(heNew3, heOrig1);
-				mesh.setNext(heNew3, heNew4);
-				mesh.setVertex(heNew4, v4);
-				mesh.setHalfedge(v4, heNew4);
-				mesh.setFace(heNew4, fNew);
-				mesh.setNext(heNew4, heNew1);
-				mesh.setVertex(heOrig1, v4);
-				mesh.add(fNew);
-				mesh.add(v3);
-				mesh.add(heNew1);
-				mesh.add(heNew2);
-				mesh.add(heNew3);
-				mesh.add(heNew4);
-				newhes.add(heNew1);
-				newhes.add(heNew2);
-				newhes.add(heNew3);
-				newhes.add(heNew4);
-				he = he.getNextInFace();
-				c++;
-			} while (he != f.getHalfedge());
-			mesh.pairHalfedges(newhes);
+			mesh.beginTransaction();
+			try {
+				int c = 0;
+				he = f.getHalfedge();
+				do {
+					final HE_Face fNew = new HE_Face();
+					walls.add(fNew);
+					fNew.copyProperties(f);
+					fNew.setInternalLabel(2);
+					final HE_Halfedge heOrig1 = he;
+					final HE_Halfedge heOrig2 = he.getPair();
+					final HE_Halfedge heNew1 = new HE_Halfedge();
+					final HE_Halfedge heNew2 = new HE_Halfedge();
+					final HE_Halfedge heNew3 = new HE_Halfedge();
+					final HE_Halfedge heNew4 = new HE_Halfedge();
+					final int cp = (c + 1) % faceVertices.size();
+					final HE_Vertex v1 = faceVertices.get(c);
+					final HE_Vertex v2 = faceVertices.get(cp);
+					final HE_Vertex v4 = extFaceVertices.get(c);
+					final HE_Vertex v3 = extFaceVertices.get(cp);
+					mesh.setVertex(heNew1, v1);
+					mesh.setHalfedge(v1, heNew1);
+					mesh.setFace(heNew1, fNew);
+					mesh.setHalfedge(fNew, heNew1);
+					mesh.setPair(heNew1, heOrig2);
+					mesh.setNext(heNew1, heNew2);
+					mesh.setVertex(heNew2, v2);
+					mesh.setHalfedge(v2, heNew2);
+					mesh.setFace(heNew2, fNew);
+					mesh.setNext(heNew2, heNew3);
+					mesh.setVertex(heNew3, v3);
+					mesh.setHalfedge(v3, heNew3);
+					mesh.setFace(heNew3, fNew);
+					mesh.setPair(heNew3, heOrig1);
+					mesh.setNext(heNew3, heNew4);
+					mesh.setVertex(heNew4, v4);
+					mesh.setHalfedge(v4, heNew4);
+					mesh.setFace(heNew4, fNew);
+					mesh.setNext(heNew4, heNew1);
+					mesh.setVertex(heOrig1, v4);
+					mesh.add(fNew);
+					mesh.add(v3);
+					mesh.add(heNew1);
+					mesh.add(heNew2);
+					mesh.add(heNew3);
+					mesh.add(heNew4);
+					newhes.add(heNew1);
+					newhes.add(heNew2);
+					newhes.add(heNew3);
+					newhes.add(heNew4);
+					he = he.getNextInFace();
+					c++;
+				} while (he != f.getHalfedge());
+				mesh.pairHalfedges(newhes);
+			} finally {
+				mesh.commitTransaction();
+			}
 			final List<HE_Halfedge> edgesToRemove = new FastTable<HE_Halfedge>();
 			for (int i = 0; i < newhes.size(); i++) {
 				final HE_Halfedge e = newhes.get(i);
@@ -42,7 +42,6 @@ public class HEM_FlipFaces extends HEM_Modifier {
 		HE_Halfedge[] prevHe;
 		HE_TextureCoordinate[] nextHeUVW;
 		HE_Halfedge he;
-		mesh.clearVisitedElements();
 		prevHe = new HE_Halfedge[mesh.getNumberOfHalfedges()];
 		nextHeUVW = new HE_TextureCoordinate[mesh.getNumberOfHalfedges()];
 		int i = 0;
@@ -109,7 +108,6 @@ public class HEM_FlipFaces extends HEM_Modifier {
 		HE_Halfedge[] prevHe;
 		HE_TextureCoordinate[] nextHeUVW;
 		HE_Halfedge he;
-		selection.parent.clearVisitedElements();
 		prevHe = new HE_Halfedge[selection.getNumberOfHalfedges()];
 		nextHeUVW = new HE_TextureCoordinate[selection.getNumberOfHalfedges()];
 		int i = 0;
@@ -244,90 +244,95 @@ public class HEM_Lattice extends HEM_Modifier {
 		counter = new WB_ProgressCounter(nf, 10);
 
 		tracker.setStatus(this, "Connecting outer and inner faces.", counter);
-		for (int i = 0; i < nf; i++) {
-			fo = origFaces[i];
-			final Long innerKey = faceCorrelation.get(fo.key());
-			if (extm.extruded.contains(fo)) {
-				fi = mesh.getFaceWithKey(innerKey);
-				if (obulge != 0) {
-					no = fo.getFaceNormal();
-					fo.push(WB_Vector.mul(no, obulge));
-				}
-				if (ibulge != 0) {
-					ni = fi.getFaceNormal();
-					fi.push(WB_Vector.mul(ni, ibulge));
-				}
-				final int nvo = fo.getFaceOrder();
-				final int nvi = fi.getFaceOrder();
-				hei = fi.getFaceHalfedges();
-				viPos = new WB_Point[nvi];
-				for (int j = 0; j < nvi; j++) {
-					viPos[j] = new WB_Point(hei.get(j).getVertex());
-				}
-				poly = gf.createSimplePolygon(viPos);
-				heo = fo.getFaceHalfedges();
-				for (int j = 0; j < nvo; j++) {
-					heoc = heo.get(j);
-					heon = heo.get((j + 1) % nvo);
-					final int cic = poly.closestIndex(heoc.getVertex());
-					final int cin = poly.closestIndex(heon.getVertex());
-					heic = hei.get(cin);
-					hein = hei.get(cic);
-					heio = new HE_Halfedge();
-					heoi = new HE_Halfedge();
-					fNew = new HE_Face();
-					mesh.setVertex(heoi, heon.getVertex());
-					mesh.setVertex(heio, hein.getVertex());
-					mesh.setNext(heoc, heoi);
+		mesh.beginTransaction();
+		try {
+			for (int i = 0; i < nf; i++) {
+				fo = origFaces[i];
+				final Long innerKey = faceCorrelation.get(fo.key());
+				if (extm.extruded.contains(fo)) {
+					fi = mesh.getFaceWithKey(innerKey);
+					if (obulge != 0) {
+						no = fo.getFaceNormal();
+						fo.push(WB_Vector.mul(no, obulge));
+					}
+					if (ibulge != 0) {
+						ni = fi.getFaceNormal();
+						fi.push(WB_Vector.mul(ni, ibulge));
+					}
+					final int nvo = fo.getFaceOrder();
+					final int nvi = fi.getFaceOrder();
+					hei = fi.getFaceHalfedges();
+					viPos = new WB_Point[nvi];
+					for (int j = 0; j < nvi; j++) {
+						viPos[j] = new WB_Point(hei.get(j).getVertex());
+					}
+					poly = gf.createSimplePolygon(viPos);
+					heo = fo.getFaceHalfedges();
+					for (int j = 0; j < nvo; j++) {
+						heoc = heo.get(j);
+						heon = heo.get((j + 1) % nvo);
+						final int cic = poly.closestIndex(heoc.getVertex());
+						final int cin = poly.closestIndex(heon.getVertex());
+						heic = hei.get(cin);
+						hein = hei.get(cic);
+						heio = new HE_Halfedge();
+						heoi = new HE_Halfedge();
+						fNew = new HE_Face();
+						mesh.setVertex(heoi, heon.getVertex());
+						mesh.setVertex(heio, hein.getVertex());
+						mesh.setNext(heoc, heoi);
 
-					mesh.setFace(heoc, fNew);
-					if (cic == cin) {
-						mesh.setNext(heoi, heio);
-						mesh.setFace(heoi, fNew);
-					} else {
-						mesh.setNext(heoi, heic);
-						mesh.setFace(heoi, fNew);
-						mesh.setNext(heic, heio);
-						mesh.setFace(heic, fNew);
+						mesh.setFace(heoc, fNew);
+						if (cic == cin) {
+							mesh.setNext(heoi, heio);
+							mesh.setFace(heoi, fNew);
+						} else {
+							mesh.setNext(heoi, heic);
+							mesh.setFace(heoi, fNew);
+							mesh.setNext(heic, heio);
+							mesh.setFace(heic, fNew);
+						}
+						mesh.setNext(heio, heoc);
+						mesh.setFace(heio, fNew);
+						mesh.setHalfedge(fNew, heoc);
+						mesh.add(heio);
+						mesh.add(heoi);
+						mesh.add(fNew);
+						mesh.remove(fo);
+						mesh.remove(fi);
 					}
-					mesh.setNext(heio, heoc);
-					mesh.setFace(heio, fNew);
-					mesh.setHalfedge(fNew, heoc);
-					mesh.add(heio);
-					mesh.add(heoi);
-					mesh.add(fNew);
-					mesh.remove(fo);
-					mesh.remove(fi);
 				}
+				counter.increment();
 			}
-			counter.increment();
-		}
-		counter = new WB_ProgressCounter(heCorrelation.size(), 10);
+			counter = new WB_ProgressCounter(heCorrelation.size(), 10);
 
-		tracker.setStatus(this, "Connecting outer and inner boundaries.", counter);
-		final Iterator<Map.Entry<Long, Long>> it = heCorrelation.entrySet().iterator();
-		while (it.hasNext()) {
-			final Map.Entry<Long, Long> pairs = it.next();
-			he1 = mesh.getHalfedgeWithKey(pairs.getKey());
-			he2 = mesh.getHalfedgeWithKey(pairs.getValue());
-			heio = new HE_Halfedge();
-			heoi = new HE_Halfedge();
-			mesh.add(heio);
-			mesh.add(heoi);
-			mesh.setVertex(heio, he1.getPair().getVertex());
-			mesh.setVertex(heoi, he2.getPair().getVertex());
-			mesh.setNext(he1, heio);
-			mesh.setNext(heio, he2);
-			mesh.setNext(he2, heoi);
-			mesh.setNext(heoi, he1);
-			fNew = new HE_Face();
-			mesh.add(fNew);
-			mesh.setHalfedge(fNew, he1);
-			mesh.setFace(he1, fNew);
-			mesh.setFace(he2, fNew);
-			mesh.setFace(heio, fNew);
-			mesh.setFace(heoi, fNew);
-			counter.increment();
+			tracker.setStatus(this, "Connecting outer and inner boundaries.", counter);
+			final Iterator<Map.Entry<Long, Long>> it = heCorrelation.entrySet().iterator();
+			while (it.hasNext()) {
+				final Map.Entry<Long, Long> pairs = it.next();
+				he1 = mesh.getHalfedgeWithKey(pairs.getKey());
+				he2 = mesh.getHalfedgeWithKey(pairs.getValue());
+				heio = new HE_Halfedge();
+				heoi = new HE_Halfedge();
+				mesh.add(heio);
+				mesh.add(heoi);
+				mesh.setVertex(heio, he1.getPair().getVertex());
+				mesh.setVertex(heoi, he2.getPair().getVertex());
+				mesh.setNext(he1, heio);
+				mesh.setNext(heio, he2);
+				mesh.setNext(he2, heoi);
+				mesh.setNext(heoi, he1);
+				fNew = new HE_Face();
+				mesh.add(fNew);
+				mesh.setHalfedge(fNew, he1);
+				mesh.setFace(he1, fNew);
+				mesh.setFace(he2, fNew);
+				mesh.setFace(heio, fNew);
+				mesh.setFace(heoi, fNew);
+				counter.increment();
+			}
+		} finally {
+			mesh.commitTransaction();
 		}
 		mesh.pairHalfedges();
 		if (d < 0) {
@@ -413,89 +418,94 @@ public class HEM_Lattice extends HEM_Modifier {
 		counter = new WB_ProgressCounter(nf, 10);
 
 		tracker.setStatus(this, "Connecting outer and inner faces.", counter);
-		for (int i = 0; i < nf; i++) {
-			fo = origFaces[i];
-			final Long innerKey = faceCorrelation.get(fo.key());
-			if (extm.extruded.contains(fo)) {
-				fi = selection.parent.getFaceWithKey(innerKey);
-				if (obulge != 0) {
-					no = fo.getFaceNormal();
-					fo.push(WB_Vector.mul(no, obulge));
-				}
-				if (ibulge != 0) {
-					ni = fi.getFaceNormal();
-					fi.push(WB_Vector.mul(ni, ibulge));
-				}
-				final int nvo = fo.getFaceOrder();
-				final int nvi = fi.getFaceOrder();
-				hei = fi.getFaceHalfedges();
-				viPos = new WB_Point[nvi];
-				for (int j = 0; j < nvi; j++) {
-					viPos[j] = new WB_Point(hei.get(j).getVertex());
-				}
-				poly = gf.createSimplePolygon(viPos);
-				heo = fo.getFaceHalfedges();
-				for (int j = 0; j < nvo; j++) {
-					heoc = heo.get(j);
-					heon = heo.get((j + 1) % nvo);
-					final int cic = poly.closestIndex(heoc.getVertex());
-					final int cin = poly.closestIndex(heon.getVertex());
-					heic = hei.get(cin);
-					hein = hei.get(cic);
-					heio = new HE_Halfedge();
-					heoi = new HE_Halfedge();
-					fNew = new HE_Face();
-					selection.parent.setVertex(heoi, heon.getVertex());
-					selection.parent.setVertex(heio, hein.getVertex());
-					selection.parent.setNext(heoc, heoi);
-					selection.parent.setFace(heoc, fNew);
-					if (cic == cin) {
-						selection.parent.setNext(heoi, heio);
-						selection.parent.setFace(heoi, fNew);
-					} else {
-						selection.parent.setNext(heoi, heic);
-						selection.parent.setFace(heoi, fNew);
-						selection.parent.setNext(heic, heio);
-						selection.parent.setFace(heic, fNew);
+		selection.parent.beginTransaction();
+		try {
+			for (int i = 0; i < nf; i++) {
+				fo = origFaces[i];
+				final Long innerKey = faceCorrelation.get(fo.key());
+				if (extm.extruded.contains(fo)) {
+					fi = selection.parent.getFaceWithKey(innerKey);
+					if (obulge != 0) {
+						no = fo.getFaceNormal();
+						fo.push(WB_Vector.mul(no, obulge));
+					}
+					if (ibulge != 0) {
+						ni = fi.getFaceNormal();
+						fi.push(WB_Vector.mul(ni, ibulge));
+					}
+					final int nvo = fo.getFaceOrder();
+					final int nvi = fi.getFaceOrder();
+					hei = fi.getFaceHalfedges();
+					viPos = new WB_Point[nvi];
+					for (int j = 0; j < nvi; j++) {
+						viPos[j] = new WB_Point(hei.get(j).getVertex());
+					}
+					poly = gf.createSimplePolygon(viPos);
+					heo = fo.getFaceHalfedges();
+					for (int j = 0; j < nvo; j++) {
+						heoc = heo.get(j);
+						heon = heo.get((j + 1) % nvo);
+						final int cic = poly.closestIndex(heoc.getVertex());
+						final int cin = poly.closestIndex(heon.getVertex());
+						heic = hei.get(cin);
+						hein = hei.get(cic);
+						heio = new HE_Halfedge();
+						heoi = new HE_Halfedge();
+						fNew = new HE_Face();
+						selection.parent.setVertex(heoi, heon.getVertex());
+						selection.parent.setVertex(heio, hein.getVertex());
+						selection.parent.setNext(heoc, heoi);
+						selection.parent.setFace(heoc, fNew);
+						if (cic == cin) {
+							selection.parent.setNext(heoi, heio);
+							selection.parent.setFace(heoi, fNew);
+						} else {
+							selection.parent.setNext(heoi, heic);
+							selection.parent.setFace(heoi, fNew);
+							selection.parent.setNext(heic, heio);
+							selection.parent.setFace(heic, fNew);
+						}
+						selection.parent.setNext(heio, heoc);
+						selection.parent.setFace(heio, fNew);
+						selection.parent.setHalfedge(fNew, heoc);
+						selection.parent.add(heio);
+						selection.parent.add(heoi);
+						selection.parent.add(fNew);
+						selection.parent.remove(fo);
+						selection.parent.remove(fi);
 					}
-					selection.parent.setNext(heio, heoc);
-					selection.parent.setFace(heio, fNew);
-					selection.parent.setHalfedge(fNew, heoc);
-					selection.parent.add(heio);
-					selection.parent.add(heoi);
-					selection.parent.add(fNew);
-					selection.parent.remove(fo);
-					selection.parent.remove(fi);
 				}
+				counter.increment();
 			}
-			counter.increment();
-		}
-		counter = new WB_ProgressCounter(heCorrelation.size(), 10);
+			counter = new WB_ProgressCounter(heCorrelation.size(), 10);
 
-		tracker.setStatus(this, "Connecting outer and inner boundaries.", counter);
-		final Iterator<Map.Entry<Long, Long>> it = heCorrelation.entrySet().iterator();
-		while (it.hasNext()) {
-			final Map.Entry<Long, Long> pairs = it.next();
-			he1 = selection.parent.getHalfedgeWithKey(pairs.getKey());
-			he2 = selection.parent.getHalfedgeWithKey(pairs.getValue());
-			heio = new HE_Halfedge();
-			heoi = new HE_Halfedge();
-			selection.parent.add(heio);
-			selection.parent.add(heoi);
-			selection.parent.setVertex(heio, he1.getPair().getVertex());
-			selection.parent.setVertex(heoi, he2.getPair().getVertex());
-			selection.parent.setNext(he1, heio);
-			selection.parent.setNext(heio, he2);
-			selection.parent.setNext(he2, heoi);
-			selection.parent.setNext(heoi, he1);
-			fNew = new HE_Face();
-			selection.parent.add(fNew);
-			selection.parent.setHalfedge(fNew, he1);
-			selection.parent.setFace(he1, fNew);
-			selection.parent.setFace(he2, fNew);
-			selection.parent.setFace(heio, fNew);
-			selection.parent.setFace(heoi, fNew);
-			counter.increment();
+			tracker.setStatus(this, "Connecting outer and inner boundaries.", counter);
+			final Iterator<Map.Entry<Long, Long>> it = heCorrelation.entrySet().iterator();
+			while (it.hasNext()) {
+				final Map.Entry<Long, Long> pairs = it.next();
+				he1 = selection.parent.getHalfedgeWithKey(pairs.getKey());
+				he2 = selection.parent.getHalfedgeWithKey(pairs.getValue());
+				heio = new HE_Halfedge();
+				heoi = new HE_Halfedge();
+				selection.parent.add(heio);
+				selection.parent.add(heoi);
+				selection.parent.setVertex(heio, he1.getPair().getVertex());
+				selection.parent.setVertex(heoi, he2.getPair().getVertex());
+				selection.parent.setNext(he1, heio);
+				selection.parent.setNext(heio, he2);
+				selection.parent.setNext(he2, heoi);
+				selection.parent.setNext(heoi, he1);
+				fNew = new HE_Face();
+				selection.parent.add(fNew);
+				selection.parent.setHalfedge(fNew, he1);
+				selection.parent.setFace(he1, fNew);
+				selection.parent.setFace(he2, fNew);
+				selection.parent.setFace(heio, fNew);
+				selection.parent.setFace(heoi, fNew);
+				counter.increment();
+			}
+		} finally {
+			selection.parent.commitTransaction();
 		}
 		selection.parent.pairHalfedges();
 		if (d < 0) {
@@ -9,14 +9,8 @@
  */
 package wblut.hemesh;
 
-import java.util.Iterator;
-import java.util.List;
-
 import wblut.core.WB_ProgressCounter;
 import wblut.geom.WB_AABB;
-import wblut.geom.WB_Coord;
-import wblut.geom.WB_Point;
-import wblut.geom.WB_Vector;
 
 /**
  *
@@ -106,49 +100,18 @@ public class HEM_MeanCurvatureSmooth extends HEM_Modifier {
 		if (autoRescale) {
 			box = mesh.getAABB();
 		}
-		final WB_Coord[] newPositions = new WB_Coord[mesh.getNumberOfVertices()];
 		if (iter < 1) {
 			iter = 1;
 		}
-		WB_ProgressCounter counter = new WB_ProgressCounter(iter * mesh.getNumberOfVertices(), 10);
+		final HET_SmoothingEngine engine = new HET_SmoothingEngine(mesh, keepBoundary);
+		WB_ProgressCounter counter = new WB_ProgressCounter(iter * engine.getNumberOfVertices(), 10);
 
 		tracker.setStatus(this, "Smoothing vertices.", counter);
 		for (int r = 0; r < iter; r++) {
-			Iterator<HE_Vertex> vItr = mesh.vItr();
-			HE_Vertex v;
-			int id = 0;
-			WB_Point p;
-			while (vItr.hasNext()) {
-				v = vItr.next();
-				if (v.isBoundary() && keepBoundary) {
-					newPositions[id] = v;
-				} else {
-					p = new WB_Point();
-					double factor = 0;
-					HE_Halfedge he = v.getHalfedge();
-					do {
-						double cotana = he.getPrevInFace().getCotan();
-						double cotanb = he.getPair().getPrevInFace().getCotan();
-						p.addMulSelf(cotana + cotanb, WB_Vector.sub(he.getEndVertex(), v));
-						factor += cotana + cotanb;
-
-						he = he.getNextInVertex();
-					} while (he != v.getHalfedge());
-					newPositions[id] = p.mulSelf(lambda / factor).addSelf(v);
-
-				}
-				id++;
-				System.out.println();
-			}
-			vItr = mesh.vItr();
-			id = 0;
-			while (vItr.hasNext()) {
-				vItr.next().set(newPositions[id]);
-				id++;
-				counter.increment();
-			}
+			engine.smoothMeanCurvature(lambda);
+			counter.increment(engine.getNumberOfVertices());
 		}
-
+		engine.apply();
 		if (autoRescale) {
 			mesh.fitInAABB(box);
 		}
@@ -170,49 +133,18 @@ public class HEM_MeanCurvatureSmooth extends HEM_Modifier {
 		if (autoRescale) {
 			box = selection.parent.getAABB();
 		}
-		final WB_Coord[] newPositions = new WB_Coord[selection.getNumberOfVertices()];
 		if (iter < 1) {
 			iter = 1;
 		}
-		WB_ProgressCounter counter = new WB_ProgressCounter(iter * selection.getNumberOfVertices(), 10);
+		final HET_SmoothingEngine engine = new HET_SmoothingEngine(selection, keepBoundary);
+		WB_ProgressCounter counter = new WB_ProgressCounter(iter * engine.getNumberOfVertices(), 10);
 
 		tracker.setStatus(this, "Smoothing vertices.", counter);
 		for (int r = 0; r < iter; r++) {
-			Iterator<HE_Vertex> vItr = selection.vItr();
-			HE_Vertex v;
-			HE_Vertex n;
-			List<HE_Vertex> neighbors;
-			int id = 0;
-			while (vItr.hasNext()) {
-				v = vItr.next();
-				final WB_Point p = new WB_Point();
-				if (v.isBoundary() && keepBoundary) {
-					newPositions[id] = v;
-				} else {
-					neighbors = v.getNeighborVertices();
-					final Iterator<HE_Vertex> nItr = neighbors.iterator();
-					while (nItr.hasNext()) {
-						n = nItr.next();
-						if (!selection.contains(n)) {
-							nItr.remove();
-						}
-					}
-
-					for (int i = 0; i < neighbors.size(); i++) {
-						p.addMulSelf(lambda / neighbors.size(), neighbors.get(i));
-					}
-					newPositions[id] = p.addMulSelf(1.0 - lambda, v);
-				}
-				id++;
-			}
-			vItr = selection.vItr();
-			id = 0;
-			while (vItr.hasNext()) {
-				vItr.next().set(newPositions[id]);
-				id++;
-				counter.increment();
-			}
+			engine.smooth(lambda);
+			counter.increment(engine.getNumberOfVertices());
 		}
+		engine.apply();
 		if (autoRescale) {
 			selection.parent.fitInAABB(box);
 		}
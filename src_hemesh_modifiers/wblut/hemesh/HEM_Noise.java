@@ -94,6 +94,29 @@ public class HEM_Noise extends HEM_Modifier {
 		return mesh;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see wblut.hemesh.HEM_Modifier#apply(wblut.hemesh.HE_CompactMesh)
+	 */
+	@Override
+	public HE_CompactMesh apply(final HE_CompactMesh mesh) {
+		rs.reset();
+		if ((d == null)) {
+			return mesh;
+		}
+		final double[] coords = mesh.getVertexCoords();
+		WB_Vector n;
+		for (int i = 0; i < 3 * mesh.getNumberOfVertices(); i += 3) {
+			n = rs.nextVector();
+			n.mulSelf(d.evaluate(coords[i], coords[i + 1], coords[i + 2]));
+			coords[i] += n.xd();
+			coords[i + 1] += n.yd();
+			coords[i + 2] += n.zd();
+		}
+		return mesh;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
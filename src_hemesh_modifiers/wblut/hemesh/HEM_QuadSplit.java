@@ -73,82 +73,87 @@ public class HEM_QuadSplit extends HEM_Modifier {
 		final HE_Selection orig = HE_Selection.selectAllFaces(mesh);
 		orig.collectVertices();
 		orig.collectEdgesByFace();
-		selectionOut.addVertices(HET_MeshOp.splitEdges(mesh).getVerticesAsArray());
-		final HE_Face[] faces = mesh.getFacesAsArray();
-		HE_Vertex vi = new HE_Vertex();
-		counter = new WB_ProgressCounter(n, 10);
-		tracker.setStatus(this, "Splitting faces into quads.", counter);
-		for (i = 0; i < n; i++) {
-			f = faces[i];
-			vi = new HE_Vertex(faceCenters[i]);
-			vi.setInternalLabel(2);
-			double u = 0;
-			double v = 0;
-			double w = 0;
-			HE_Halfedge he = f.getHalfedge();
-			boolean hasTexture = true;
-			do {
-				if (!he.getVertex().hasUVW(f)) {
-					hasTexture = false;
-					break;
+		mesh.beginTransaction();
+		try {
+			selectionOut.addVertices(HET_MeshOp.splitEdges(mesh).getVerticesAsArray());
+			final HE_Face[] faces = mesh.getFacesAsArray();
+			HE_Vertex vi = new HE_Vertex();
+			counter = new WB_ProgressCounter(n, 10);
+			tracker.setStatus(this, "Splitting faces into quads.", counter);
+			for (i = 0; i < n; i++) {
+				f = faces[i];
+				vi = new HE_Vertex(faceCenters[i]);
+				vi.setInternalLabel(2);
+				double u = 0;
+				double v = 0;
+				double w = 0;
+				HE_Halfedge he = f.getHalfedge();
+				boolean hasTexture = true;
+				do {
+					if (!he.getVertex().hasUVW(f)) {
+						hasTexture = false;
+						break;
+					}
+					u += he.getVertex().getUVW(f).ud();
+					v += he.getVertex().getUVW(f).vd();
+					w += he.getVertex().getUVW(f).wd();
+					he = he.getNextInFace();
+				} while (he != f.getHalfedge());
+				if (hasTexture) {
+					final double ifo = 1.0 / f.getFaceOrder();
+					vi.setUVW(u * ifo, v * ifo, w * ifo);
 				}
-				u += he.getVertex().getUVW(f).ud();
-				v += he.getVertex().getUVW(f).vd();
-				w += he.getVertex().getUVW(f).wd();
-				he = he.getNextInFace();
-			} while (he != f.getHalfedge());
-			if (hasTexture) {
-				final double ifo = 1.0 / f.getFaceOrder();
-				vi.setUVW(u * ifo, v * ifo, w * ifo);
-			}
-			mesh.add(vi);
-			selectionOut.add(vi);
-			HE_Halfedge startHE = f.getHalfedge();
-			while (orig.contains(startHE.getVertex())) {
-				startHE = startHE.getNextInFace();
-			}
-			he = startHE;
-			final HE_Halfedge[] he0 = new HE_Halfedge[faceOrders[i]];
-			final HE_Halfedge[] he1 = new HE_Halfedge[faceOrders[i]];
-			final HE_Halfedge[] he2 = new HE_Halfedge[faceOrders[i]];
-			final HE_Halfedge[] he3 = new HE_Halfedge[faceOrders[i]];
-			int c = 0;
-			do {
-				HE_Face fc;
-				if (c == 0) {
-					fc = f;
-				} else {
-					fc = new HE_Face();
-					fc.copyProperties(f);
-					mesh.add(fc);
+				mesh.add(vi);
+				selectionOut.add(vi);
+				HE_Halfedge startHE = f.getHalfedge();
+				while (orig.contains(startHE.getVertex())) {
+					startHE = startHE.getNextInFace();
 				}
-				he0[c] = he;
-				mesh.setFace(he, fc);
-				mesh.setHalfedge(fc, he);
-				he1[c] = he.getNextInFace();
-				he2[c] = new HE_Halfedge();
-				he3[c] = new HE_Halfedge();
+				he = startHE;
+				final HE_Halfedge[] he0 = new HE_Halfedge[faceOrders[i]];
+				final HE_Halfedge[] he1 = new HE_Halfedge[faceOrders[i]];
+				final HE_Halfedge[] he2 = new HE_Halfedge[faceOrders[i]];
+				final HE_Halfedge[] he3 = new HE_Halfedge[faceOrders[i]];
+				int c = 0;
+				do {
+					HE_Face fc;
+					if (c == 0) {
+						fc = f;
+					} else {
+						fc = new HE_Face();
+						fc.copyProperties(f);
+						mesh.add(fc);
+					}
+					he0[c] = he;
+					mesh.setFace(he, fc);
+					mesh.setHalfedge(fc, he);
+					he1[c] = he.getNextInFace();
+					he2[c] = new HE_Halfedge();
+					he3[c] = new HE_Halfedge();
 
-				mesh.setVertex(he2[c], he.getNextInFace().getNextInFace().getVertex());
-				if (he2[c].getVertex().hasHalfedgeUVW(f)) {
-					he2[c].setUVW(he2[c].getVertex().getHalfedgeUVW(f));
+					mesh.setVertex(he2[c], he.getNextInFace().getNextInFace().getVertex());
+					if (he2[c].getVertex().hasHalfedgeUVW(f)) {
+						he2[c].setUVW(he2[c].getVertex().getHalfedgeUVW(f));
+					}
+					mesh.setVertex(he3[c], vi);
+					mesh.setNext(he2[c], he3[c]);
+					mesh.setNext(he3[c], he);
+					mesh.setFace(he1[c], fc);
+					mesh.setFace(he2[c], fc);
+					mesh.setFace(he3[c], fc);
+					mesh.add(he2[c]);
+					mesh.add(he3[c]);
+					c++;
+					he = he.getNextInFace().getNextInFace();
+				} while (he != startHE);
+				mesh.setHalfedge(vi, he3[0]);
+				for (int j = 0; j < c; j++) {
+					mesh.setNext(he1[j], he2[j]);
 				}
-				mesh.setVertex(he3[c], vi);
-				mesh.setNext(he2[c], he3[c]);
-				mesh.setNext(he3[c], he);
-				mesh.setFace(he1[c], fc);
-				mesh.setFace(he2[c], fc);
-				mesh.setFace(he3[c], fc);
-				mesh.add(he2[c]);
-				mesh.add(he3[c]);
-				c++;
-				he = he.getNextInFace().getNextInFace();
-			} while (he != startHE);
-			mesh.setHalfedge(vi, he3[0]);
-			for (int j = 0; j < c; j++) {
-				mesh.setNext(he1[j], he2[j]);
+				counter.increment();
 			}
-			counter.increment();
+		} finally {
+			mesh.commitTransaction();
 		}
 		mesh.pairHalfedges();
 
@@ -184,84 +189,89 @@ public class HEM_QuadSplit extends HEM_Modifier {
 		orig.addFaces(sel.getFacesAsArray());
 		orig.collectVertices();
 		orig.collectEdgesByFace();
-		selectionOut.addVertices(HET_MeshOp.splitEdges(orig).getVertices());
-		final HE_Face[] faces = sel.getFacesAsArray();
-		counter = new WB_ProgressCounter(n, 10);
-		tracker.setStatus(this, "Splitting faces into quads.", counter);
-		for (i = 0; i < n; i++) {
-			face = faces[i];
-			final HE_Vertex vi = new HE_Vertex(faceCenters[i]);
-			sel.parent.add(vi);
-			vi.setInternalLabel(2);
-			double u = 0;
-			double v = 0;
-			double w = 0;
-			HE_Halfedge he = face.getHalfedge();
-			boolean hasTexture = true;
-			do {
-				if (!he.getVertex().hasUVW(face)) {
-					hasTexture = false;
-					break;
+		sel.parent.beginTransaction();
+		try {
+			selectionOut.addVertices(HET_MeshOp.splitEdges(orig).getVertices());
+			final HE_Face[] faces = sel.getFacesAsArray();
+			counter = new WB_ProgressCounter(n, 10);
+			tracker.setStatus(this, "Splitting faces into quads.", counter);
+			for (i = 0; i < n; i++) {
+				face = faces[i];
+				final HE_Vertex vi = new HE_Vertex(faceCenters[i]);
+				sel.parent.add(vi);
+				vi.setInternalLabel(2);
+				double u = 0;
+				double v = 0;
+				double w = 0;
+				HE_Halfedge he = face.getHalfedge();
+				boolean hasTexture = true;
+				do {
+					if (!he.getVertex().hasUVW(face)) {
+						hasTexture = false;
+						break;
+					}
+					u += he.getVertex().getUVW(face).ud();
+					v += he.getVertex().getUVW(face).vd();
+					w += he.getVertex().getUVW(face).wd();
+					he = he.getNextInFace();
+				} while (he != face.getHalfedge());
+				if (hasTexture) {
+					final double ifo = 1.0 / face.getFaceOrder();
+					vi.setUVW(u * ifo, v * ifo, w * ifo);
 				}
-				u += he.getVertex().getUVW(face).ud();
-				v += he.getVertex().getUVW(face).vd();
-				w += he.getVertex().getUVW(face).wd();
-				he = he.getNextInFace();
-			} while (he != face.getHalfedge());
-			if (hasTexture) {
-				final double ifo = 1.0 / face.getFaceOrder();
-				vi.setUVW(u * ifo, v * ifo, w * ifo);
-			}
-			selectionOut.add(vi);
-			HE_Halfedge startHE = face.getHalfedge();
-			while (orig.contains(startHE.getVertex())) {
-				startHE = startHE.getNextInFace();
-			}
-			he = startHE;
-			final HE_Halfedge[] he0 = new HE_Halfedge[faceOrders[i]];
-			final HE_Halfedge[] he1 = new HE_Halfedge[faceOrders[i]];
-			final HE_Halfedge[] he2 = new HE_Halfedge[faceOrders[i]];
-			final HE_Halfedge[] he3 = new HE_Halfedge[faceOrders[i]];
-			int c = 0;
-			do {
-				HE_Face f;
-				if (c == 0) {
-					f = face;
-				} else {
-					f = new HE_Face();
-					sel.parent.add(f);
-					f.copyProperties(face);
-					sel.add(f);
+				selectionOut.add(vi);
+				HE_Halfedge startHE = face.getHalfedge();
+				while (orig.contains(startHE.getVertex())) {
+					startHE = startHE.getNextInFace();
 				}
-				he0[c] = he;
-				sel.parent.setFace(he, f);
-				sel.parent.setHalfedge(f, he);
-				he1[c] = he.getNextInFace();
-				he2[c] = new HE_Halfedge();
-				he3[c] = new HE_Halfedge();
+				he = startHE;
+				final HE_Halfedge[] he0 = new HE_Halfedge[faceOrders[i]];
+				final HE_Halfedge[] he1 = new HE_Halfedge[faceOrders[i]];
+				final HE_Halfedge[] he2 = new HE_Halfedge[faceOrders[i]];
+				final HE_Halfedge[] he3 = new HE_Halfedge[faceOrders[i]];
+				int c = 0;
+				do {
+					HE_Face f;
+					if (c == 0) {
+						f = face;
+					} else {
+						f = new HE_Face();
+						sel.parent.add(f);
+						f.copyProperties(face);
+						sel.add(f);
+					}
+					he0[c] = he;
+					sel.parent.setFace(he, f);
+					sel.parent.setHalfedge(f, he);
+					he1[c] = he.getNextInFace();
+					he2[c] = new HE_Halfedge();
+					he3[c] = new HE_Halfedge();
 
-				sel.parent.setVertex(he2[c], he.getNextInFace().getNextInFace().getVertex());
-				if (he2[c].getVertex().hasHalfedgeUVW(face)) {
-					he2[c].setUVW(he2[c].getVertex().getHalfedgeUVW(face));
-				}
-				sel.parent.setVertex(he3[c], vi);
-				sel.parent.setNext(he2[c], he3[c]);
-				sel.parent.setNext(he3[c], he);
+					sel.parent.setVertex(he2[c], he.getNextInFace().getNextInFace().getVertex());
+					if (he2[c].getVertex().hasHalfedgeUVW(face)) {
+						he2[c].setUVW(he2[c].getVertex().getHalfedgeUVW(face));
+					}
+					sel.parent.setVertex(he3[c], vi);
+					sel.parent.setNext(he2[c], he3[c]);
+					sel.parent.setNext(he3[c], he);
 
-				sel.parent.setFace(he1[c], f);
-				sel.parent.setFace(he2[c], f);
-				sel.parent.setFace(he3[c], f);
-				sel.parent.add(he2[c]);
-				sel.parent.add(he3[c]);
-				c++;
-				he = he.getNextInFace().getNextInFace();
-			} while (he != startHE);
-			sel.parent.setHalfedge(vi, he3[0]);
-			for (int j = 0; j < c; j++) {
-				sel.parent.setNext(he1[j], he2[j]);
+					sel.parent.setFace(he1[c], f);
+					sel.parent.setFace(he2[c], f);
+					sel.parent.setFace(he3[c], f);
+					sel.parent.add(he2[c]);
+					sel.parent.add(he3[c]);
+					c++;
+					he = he.getNextInFace().getNextInFace();
+				} while (he != startHE);
+				sel.parent.setHalfedge(vi, he3[0]);
+				for (int j = 0; j < c; j++) {
+					sel.parent.setNext(he1[j], he2[j]);
 
+				}
+				counter.increment();
 			}
-			counter.increment();
+		} finally {
+			sel.parent.commitTransaction();
 		}
 		sel.parent.pairHalfedges();
 		tracker.setStatus(this, "Exiting HEM_QuadSplit.", -1);
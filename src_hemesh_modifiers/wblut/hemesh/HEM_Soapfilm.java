@@ -14,6 +14,7 @@ import java.util.List;
 
 import gnu.trove.map.TLongObjectMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
+import javolution.util.FastTable;
 import wblut.geom.WB_AABB;
 import wblut.geom.WB_Coord;
 import wblut.geom.WB_GeometryOp3D;
@@ -35,6 +36,9 @@ public class HEM_Soapfilm extends HEM_Modifier {
 	 */
 	private int iter;
 
+	/** Buffer reused by the per-vertex star queries. */
+	private final List<HE_Halfedge> star = new FastTable<HE_Halfedge>();
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -154,7 +158,8 @@ public class HEM_Soapfilm extends HEM_Modifier {
 	 */
 	private WB_Point minDirichletEnergy(final HE_Vertex v) {
 		final WB_Point result = new WB_Point();
-		final List<HE_Halfedge> hes = v.getHalfedgeStar();
+		final List<HE_Halfedge> hes = star;
+		v.getHalfedgeStar(hes);
 		HE_Vertex neighbor;
 		HE_Vertex corner;
 		HE_Halfedge he;
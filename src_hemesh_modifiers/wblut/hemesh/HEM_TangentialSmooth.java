@@ -9,16 +9,8 @@
  */
 package wblut.hemesh;
 
-import static wblut.geom.WB_GeometryOp3D.projectOnPlane;
-
-import java.util.Iterator;
-import java.util.List;
-
 import wblut.core.WB_ProgressCounter;
 import wblut.geom.WB_AABB;
-import wblut.geom.WB_Coord;
-import wblut.geom.WB_Plane;
-import wblut.geom.WB_Point;
 
 /**
  *
@@ -108,45 +100,18 @@ public class HEM_TangentialSmooth extends HEM_Modifier {
 		if (autoRescale) {
 			box = mesh.getAABB();
 		}
-		final WB_Coord[] newPositions = new WB_Coord[mesh.getNumberOfVertices()];
 		if (iter < 1) {
 			iter = 1;
 		}
-		WB_ProgressCounter counter = new WB_ProgressCounter(iter * mesh.getNumberOfVertices(), 10);
+		final HET_SmoothingEngine engine = new HET_SmoothingEngine(mesh, keepBoundary);
+		WB_ProgressCounter counter = new WB_ProgressCounter(iter * engine.getNumberOfVertices(), 10);
+
 		tracker.setStatus(this, "Smoothing vertices.", counter);
 		for (int r = 0; r < iter; r++) {
-			Iterator<HE_Vertex> vItr = mesh.vItr();
-			HE_Vertex v;
-			List<HE_Vertex> neighbors;
-			int id = 0;
-			WB_Point p;
-			WB_Plane tangent;
-			while (vItr.hasNext()) {
-				v = vItr.next();
-				tangent = new WB_Plane(v, v.getVertexAngleNormal());
-
-				if (v.isBoundary() && keepBoundary) {
-					newPositions[id] = v;
-				} else {
-					p = new WB_Point(v);
-					neighbors = v.getNeighborVertices();
-					p.mulSelf(1 - lambda);
-					for (int i = 0; i < neighbors.size(); i++) {
-						p.addMulSelf(lambda / neighbors.size(), neighbors.get(i));
-					}
-					newPositions[id] = projectOnPlane(p, tangent);
-				}
-				id++;
-			}
-			vItr = mesh.vItr();
-			id = 0;
-			while (vItr.hasNext()) {
-				vItr.next().set(newPositions[id]);
-				id++;
-				counter.increment();
-			}
+			engine.smoothTangential(lambda);
+			counter.increment(engine.getNumberOfVertices());
 		}
-
+		engine.apply();
 		if (autoRescale) {
 			mesh.fitInAABB(box);
 		}
@@ -168,51 +133,18 @@ public class HEM_TangentialSmooth extends HEM_Modifier {
 		if (autoRescale) {
 			box = selection.parent.getAABB();
 		}
-		final WB_Coord[] newPositions = new WB_Coord[selection.getNumberOfVertices()];
 		if (iter < 1) {
 			iter = 1;
 		}
-		WB_ProgressCounter counter = new WB_ProgressCounter(iter * selection.getNumberOfVertices(), 10);
+		final HET_SmoothingEngine engine = new HET_SmoothingEngine(selection, keepBoundary);
+		WB_ProgressCounter counter = new WB_ProgressCounter(iter * engine.getNumberOfVertices(), 10);
+
 		tracker.setStatus(this, "Smoothing vertices.", counter);
-		WB_Plane tangent;
 		for (int r = 0; r < iter; r++) {
-			Iterator<HE_Vertex> vItr = selection.vItr();
-			HE_Vertex v;
-			HE_Vertex n;
-			List<HE_Vertex> neighbors;
-			int id = 0;
-			while (vItr.hasNext()) {
-				v = vItr.next();
-				tangent = new WB_Plane(v, v.getVertexAngleNormal());
-				final WB_Point p = new WB_Point();
-				if (v.isBoundary() && keepBoundary) {
-					newPositions[id] = v;
-				} else {
-					neighbors = v.getNeighborVertices();
-					final Iterator<HE_Vertex> nItr = neighbors.iterator();
-					while (nItr.hasNext()) {
-						n = nItr.next();
-						if (!selection.contains(n)) {
-							nItr.remove();
-						}
-					}
-
-					for (int i = 0; i < neighbors.size(); i++) {
-						p.addMulSelf(lambda / neighbors.size(), neighbors.get(i));
-					}
-					newPositions[id] = projectOnPlane(p.addMulSelf(1.0 - lambda, v), tangent);
-				}
-				id++;
-			}
-			vItr = selection.vItr();
-			id = 0;
-			while (vItr.hasNext()) {
-				vItr.next().set(newPositions[id]);
-				id++;
-				counter.increment();
-			}
+			engine.smoothTangential(lambda);
+			counter.increment(engine.getNumberOfVertices());
 		}
-
+		engine.apply();
 		if (autoRescale) {
 			selection.parent.fitInAABB(box);
 		}
@@ -89,9 +89,14 @@ public class HEM_TriSplit extends HEM_Modifier {
 		final int n = selection.getNumberOfFaces();
 		WB_ProgressCounter counter = new WB_ProgressCounter(n, 10);
 		tracker.setStatus(this, "Splitting faces.", counter);
-		for (int i = 0; i < n; i++) {
-			selectionOut.add(splitFaceTri(faces[i], d, selection.parent));
-			counter.increment();
+		selection.parent.beginTransaction();
+		try {
+			for (int i = 0; i < n; i++) {
+				selectionOut.add(splitFaceTri(faces[i], d, selection.parent));
+				counter.increment();
+			}
+		} finally {
+			selection.parent.commitTransaction();
 		}
 		selection.add(selectionOut);
 	}
@@ -12,14 +12,9 @@ package wblut.hemesh;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-
-import javolution.util.FastTable;
+
+import wblut.core.WB_ParallelExecutor;
+import wblut.core.WB_ParallelExecutor.WB_RangeCollector;
 import wblut.core.WB_ProgressCounter;
 
 /**
@@ -57,9 +52,14 @@ public class HEM_TriangulateMT extends HEM_Modifier {
 		tracker.setStatus(this, "Triangulating faces.", counter);
 		Iterator<int[]> tpf=trisPerFace.iterator();
 		HE_FaceIterator fItr=mesh.fItr();
-		for (int i=0;i<n;i++){
-			triangulateNoPairing(fItr.next(), mesh,tpf.next());
-			counter.increment();
+		mesh.beginTransaction();
+		try {
+			for (int i=0;i<n;i++){
+				triangulateNoPairing(fItr.next(), mesh,tpf.next());
+				counter.increment();
+			}
+		} finally {
+			mesh.commitTransaction();
 		}
 		mesh.pairHalfedges();
 		mesh.capHalfedges();
@@ -86,11 +86,16 @@ public class HEM_TriangulateMT extends HEM_Modifier {
 
 
 		HE_FaceIterator fItr=selection.fItr();
-		for (int i=0;i<n;i++){
+		selection.parent.beginTransaction();
+		try {
+			for (int i=0;i<n;i++){
 
-			triangulateNoPairing(fItr.next(), selection.parent,tpf.next());
+				triangulateNoPairing(fItr.next(), selection.parent,tpf.next());
 
-			counter.increment();
+				counter.increment();
+			}
+		} finally {
+			selection.parent.commitTransaction();
 		}
 		selection.parent.pairHalfedges();
 		selection.parent.capHalfedges();
@@ -162,78 +167,33 @@ public class HEM_TriangulateMT extends HEM_Modifier {
 	 * @return
 	 */
 	private List<int[]> triangulate(final List<HE_Face> faces){
-
-		List<int[]> tris=new FastTable<int[]>();
-		try {
-			int threadCount = Runtime.getRuntime().availableProcessors();
-			int dfaces = faces.size() / threadCount;
-			if(dfaces<1024){
-				dfaces=1024;
-				threadCount=(int)Math.ceil(faces.size()/1024.0);
-
-			}
-			final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
-			final List<Future<ArrayList<int[]>>>  list=new ArrayList<Future<ArrayList<int[]>>>();
-			int i = 0;
-			for (i = 0; i < (threadCount - 1); i++) {
-				final Callable<ArrayList<int[]>> runner = new TriangulateRunner(dfaces * i, (dfaces * (i + 1)) - 1,i,faces);
-				list.add(executor.submit(runner));
-			}
-			final Callable<ArrayList<int[]>> runner = new TriangulateRunner(dfaces * i, faces.size() - 1,i,faces);
-			list.add(executor.submit(runner));
-
-
-			for (Future<ArrayList<int[]>> future : list) {
-				tris.addAll(future.get());
-			}
-
-
-
-			executor.shutdown();
-
-		}catch(final InterruptedException ex) {
-			ex.printStackTrace();
-		} catch(final ExecutionException ex) {
-			ex.printStackTrace();
-		}
-		return tris;
+		return WB_ParallelExecutor.instance().collect(0, faces.size(), new TriangulateRunner(faces));
 	}
 
 	/**
 	 *
 	 */
-	class TriangulateRunner implements Callable<ArrayList<int[]>>{
-		int start;
-		int end;
-		int id;
-		int[] triangles;
+	class TriangulateRunner implements WB_RangeCollector<int[]>{
 		List<HE_Face> faces;
 
 		/**
 		 *
 		 *
-		 * @param s
-		 * @param e
-		 * @param id
 		 * @param faces
 		 */
-		TriangulateRunner(final int s, final int e,final int id,final List<HE_Face> faces) {
-			start = s;
-			end = e;
-			this.id=id;
+		TriangulateRunner(final List<HE_Face> faces) {
 			this.faces=faces;
 		}
 
 
 		/* (non-Javadoc)
-		 * @see java.util.concurrent.Callable#call()
+		 * @see wblut.core.WB_ParallelExecutor.WB_RangeCollector#collect(int, int)
 		 */
 		@Override
-		public ArrayList<int[]> call() {
-			ArrayList<int[]> tris=new ArrayList<int[]>();
-			ListIterator<HE_Face> itr=faces.listIterator(start);
-			for (int i = start; i <= end; i++) {
-				tris.add(itr.next().getTriangles());
+		public List<int[]> collect(final int start, final int end) {
+			ArrayList<int[]> tris=new ArrayList<int[]>(end - start);
+			for (int i = start; i < end; i++) {
+				tris.add(faces.get(i).getTriangles());
 
 			}
 			return tris;
@@ -14,6 +14,7 @@ import java.util.Iterator;
 import wblut.geom.WB_Coord;
 import wblut.geom.WB_GeometryOp3D;
 import wblut.geom.WB_Line;
+import wblut.geom.WB_Point;
 import wblut.geom.WB_Vector;
 
 /**
@@ -108,6 +109,28 @@ public class HEM_Twist extends HEM_Modifier {
 		return mesh;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see wblut.hemesh.HEM_Modifier#apply(wblut.hemesh.HE_CompactMesh)
+	 */
+	@Override
+	public HE_CompactMesh apply(final HE_CompactMesh mesh) {
+		if ((twistAxis != null) && (angleFactor != 0)) {
+			final double[] coords = mesh.getVertexCoords();
+			final WB_Point p = new WB_Point();
+			for (int i = 0; i < 3 * mesh.getNumberOfVertices(); i += 3) {
+				p.set(coords[i], coords[i + 1], coords[i + 2]);
+				final double d = WB_GeometryOp3D.getDistance3D(p, twistAxis);
+				p.rotateAboutAxisSelf(d * angleFactor, twistAxis.getOrigin(), twistAxis.getDirection());
+				coords[i] = p.xd();
+				coords[i + 1] = p.yd();
+				coords[i + 2] = p.zd();
+			}
+		}
+		return mesh;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -15,7 +15,8 @@ import java.util.Iterator;
 import java.util.List;
 
 import javolution.util.FastMap;
-import wblut.core.WB_ProgressCounter;
+import wblut.core.WB_ParallelExecutor;
+import wblut.core.WB_ParallelExecutor.WB_RangeAction;
 import wblut.geom.WB_Coord;
 import wblut.geom.WB_GeometryFactory;
 import wblut.geom.WB_GeometryOp3D;
@@ -107,115 +108,457 @@ public class HES_CatmullClark extends HES_Subdividor {
 	@Override
 	public HE_Mesh apply(final HE_Mesh mesh) {
 		tracker.setStatus(this, "Starting HES_CatmullClark", +1);
-		mesh.resetVertexInternalLabels();
-		final HashMap<Long, WB_Point> avgFC = new HashMap<Long, WB_Point>();
-		HE_Vertex v;
-		Iterator<HE_Vertex> vItr = mesh.vItr();
-		HE_Halfedge he;
-		WB_Point p;
-		WB_ProgressCounter counter = new WB_ProgressCounter(mesh.getNumberOfVertices(), 10);
-		tracker.setStatus(this, "Creating averaged face center points.", counter);
+		applyFast(mesh);
+		tracker.setStatus(this, "Exiting HEM_CatmullClark.", -1);
+		return mesh;
+	}
+
+	/**
+	 * Catmull-Clark subdivision on flat arrays. All new positions are
+	 * calculated from the original mesh with parallel stencils. Every face
+	 * corner becomes a quad, the connectivity of the refined mesh follows from
+	 * index arithmetic: the child quad of corner c has halfedges 4c..4c+3,
+	 * 4c leaving the original vertex. Boundary halfedges are split in two,
+	 * stored after the quad halfedges. The mesh is rebuilt once at the end,
+	 * original vertices, faces and halfedges are reused. Child faces have the
+	 * same order, start halfedge and reused original as with HEM_QuadSplit.
+	 *
+	 * Vertices: original vertices [0,nv), edge points [nv,nv+ne), face points
+	 * [nv+ne,nv+ne+nf).
+	 *
+	 * @param mesh
+	 */
+	private void applyFast(final HE_Mesh mesh) {
+		final int nv = mesh.getNumberOfVertices();
+		final int nh = mesh.getNumberOfHalfedges();
+		final int nf = mesh.getNumberOfFaces();
+		tracker.setStatus(this, "Indexing mesh.", 0);
+		final HE_CompactMesh cm = new HE_CompactMesh(mesh);
+		final double[] coords = cm.vertexCoords;
+		final int[] next = cm.halfedgeNext;
+		final int[] pair = cm.halfedgePair;
+		final int[] vert = cm.halfedgeVertex;
+		final int[] face = cm.halfedgeFace;
+		final int[] vertexHalfedge = cm.vertexHalfedge;
+		final int[] faceHalfedge = cm.faceHalfedge;
+		final HE_Vertex[] vertices = new HE_Vertex[nv];
+		final HE_Halfedge[] halfedges = new HE_Halfedge[nh];
+		final HE_Face[] faces = new HE_Face[nf];
+		int i = 0;
+		final Iterator<HE_Vertex> vItr = mesh.vItr();
 		while (vItr.hasNext()) {
-			v = vItr.next();
-			he = v.getHalfedge();
-			final WB_Point afc = new WB_Point();
-			int c = 0;
+			vertices[i++] = vItr.next();
+		}
+		i = 0;
+		final Iterator<HE_Halfedge> heItr = mesh.heItr();
+		while (heItr.hasNext()) {
+			halfedges[i++] = heItr.next();
+		}
+		i = 0;
+		final Iterator<HE_Face> fItr = mesh.fItr();
+		while (fItr.hasNext()) {
+			faces[i++] = fItr.next();
+		}
+		// corners in face order, boundary halfedges and edges
+		final int[] prev = new int[nh];
+		final int[] corner = new int[nh];
+		final int[] boundaryIndex = new int[nh];
+		final int[] edge = new int[nh];
+		final int[] cornerFace = new int[nh];
+		final int[] cornerHalfedge = new int[nh];
+		final int[] edgeHalfedge = new int[nh];
+		int nc = 0;
+		int he;
+		for (int f = 0; f < nf; f++) {
+			he = faceHalfedge[f];
 			do {
-				if (he.getFace() != null) {
-					afc.addSelf(he.getFace().getFaceCenter());
-					c++;
+				cornerFace[nc] = f;
+				cornerHalfedge[nc] = he;
+				corner[he] = nc++;
+				prev[next[he]] = he;
+				he = next[he];
+			} while (he != faceHalfedge[f]);
+		}
+		int nb = 0;
+		int edgeCount = 0;
+		for (he = 0; he < nh; he++) {
+			if (face[he] == -1) {
+				boundaryIndex[he] = nb++;
+				prev[next[he]] = he;
+			}
+			if (pair[he] == -1 || he < pair[he]) {
+				edgeHalfedge[edgeCount] = he;
+				edge[he] = edgeCount;
+				if (pair[he] != -1) {
+					edge[pair[he]] = edgeCount;
 				}
-				he = he.getNextInVertex();
-			} while (he != v.getHalfedge());
-			afc.divSelf(c);
-			avgFC.put(v.key(), afc);
-			counter.increment();
+				edgeCount++;
+			}
 		}
-		HET_MeshOp.splitFacesQuad(mesh);
-		final FastMap<Long, WB_Coord> newPositions = new FastMap<Long, WB_Coord>();
-		final HE_Selection all = HE_Selection.selectAllFaces(mesh);
-		final List<HE_Vertex> boundary = all.getOuterVertices();
-		final List<HE_Vertex> inner = all.getInnerVertices();
-		counter = new WB_ProgressCounter(inner.size(), 10);
-		tracker.setStatus(this, "Creating new positions for inner vertices.", counter);
-		HE_Vertex n;
-		List<HE_Vertex> neighbors;
-		vItr = inner.iterator();
-		while (vItr.hasNext()) {
-			v = vItr.next();
-			if (v.getInternalLabel() == -1) {
-				p = avgFC.get(v.key());
-				neighbors = v.getNeighborVertices();
-				final int order = neighbors.size();
-				final double io = 1.0 / order;
-				for (int i = 0; i < order; i++) {
-					n = neighbors.get(i);
-					p.addSelf(2.0 * io * n.xd(), 2.0 * io * n.yd(), 2.0 * io * n.zd());
+		final int numberOfCorners = nc;
+		final int numberOfBoundaryHalfedges = nb;
+		final int ne = edgeCount;
+		final int nnv = nv + ne + nf;
+		final int[] boundaryHalfedge = new int[nb];
+		for (he = 0; he < nh; he++) {
+			if (face[he] == -1) {
+				boundaryHalfedge[boundaryIndex[he]] = he;
+			}
+		}
+		final boolean[] boundaryEdge = new boolean[ne];
+		final boolean[] boundaryVertex = new boolean[nv];
+		for (int e = 0; e < ne; e++) {
+			he = edgeHalfedge[e];
+			if (face[he] == -1 || pair[he] == -1 || face[pair[he]] == -1) {
+				boundaryEdge[e] = true;
+				boundaryVertex[vert[he]] = true;
+				boundaryVertex[vert[next[he]]] = true;
+			}
+		}
+		// blend factors are evaluated in the original positions of vertices
+		// and edge midpoints, the parameter is not assumed to be thread-safe
+		final double[] blend = new double[nv + ne];
+		for (int v = 0; v < nv; v++) {
+			blend[v] = blendFactor.evaluate(coords[3 * v], coords[3 * v + 1], coords[3 * v + 2]);
+		}
+		final double[] newCoords = new double[3 * nnv];
+		WB_ParallelExecutor.instance().forRange(0, ne, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				int a, b;
+				for (int e = start; e < end; e++) {
+					a = 3 * vert[edgeHalfedge[e]];
+					b = 3 * vert[next[edgeHalfedge[e]]];
+					newCoords[3 * (nv + e)] = 0.5 * coords[a] + 0.5 * coords[b];
+					newCoords[3 * (nv + e) + 1] = 0.5 * coords[a + 1] + 0.5 * coords[b + 1];
+					newCoords[3 * (nv + e) + 2] = 0.5 * coords[a + 2] + 0.5 * coords[b + 2];
 				}
-				p.addMulSelf(order - 3, v);
-				p.divSelf(order);
-				newPositions.put(v.key(),
-						gf.createInterpolatedPoint(v, p, blendFactor.evaluate(v.xd(), v.yd(), v.zd())));
-			} else {
-				p = new WB_Point();
-				neighbors = v.getNeighborVertices();
-				final int order = neighbors.size();
-				boolean edgePoint = false;
-				for (int i = 0; i < order; i++) {
-					n = neighbors.get(i);
-					p.addSelf(n);
-					if (n.getInternalLabel() == -1) {
-						edgePoint = true;
+			}
+		});
+		for (int e = 0; e < ne; e++) {
+			blend[nv + e] = blendFactor.evaluate(newCoords[3 * (nv + e)], newCoords[3 * (nv + e) + 1],
+					newCoords[3 * (nv + e) + 2]);
+		}
+		WB_ParallelExecutor.instance().forRange(0, nf, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				int h, o, c;
+				double x, y, z;
+				for (int f = start; f < end; f++) {
+					x = y = z = 0;
+					c = 0;
+					h = faceHalfedge[f];
+					do {
+						o = 3 * vert[h];
+						x += coords[o];
+						y += coords[o + 1];
+						z += coords[o + 2];
+						c++;
+						h = next[h];
+					} while (h != faceHalfedge[f]);
+					o = 3 * (nv + ne + f);
+					newCoords[o] = x / c;
+					newCoords[o + 1] = y / c;
+					newCoords[o + 2] = z / c;
+				}
+			}
+		});
+		// edge points, from the original positions and the face points
+		final double[] edgeCoords = new double[3 * ne];
+		WB_ParallelExecutor.instance().forRange(0, ne, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				int h, a, b, fa, fb, m;
+				double x, y, z, t;
+				for (int e = start; e < end; e++) {
+					h = edgeHalfedge[e];
+					m = 3 * (nv + e);
+					a = 3 * vert[h];
+					b = 3 * vert[next[h]];
+					if (boundaryEdge[e]) {
+						if (keepBoundary) {
+							x = newCoords[m];
+							y = newCoords[m + 1];
+							z = newCoords[m + 2];
+						} else {
+							x = (newCoords[m] + coords[a] + coords[b]) / 3.0;
+							y = (newCoords[m + 1] + coords[a + 1] + coords[b + 1]) / 3.0;
+							z = (newCoords[m + 2] + coords[a + 2] + coords[b + 2]) / 3.0;
+						}
+					} else {
+						fa = 3 * (nv + ne + face[h]);
+						fb = 3 * (nv + ne + face[pair[h]]);
+						x = 0.25 * (coords[a] + coords[b] + newCoords[fa] + newCoords[fb]);
+						y = 0.25 * (coords[a + 1] + coords[b + 1] + newCoords[fa + 1] + newCoords[fb + 1]);
+						z = 0.25 * (coords[a + 2] + coords[b + 2] + newCoords[fa + 2] + newCoords[fb + 2]);
 					}
+					t = blend[nv + e];
+					edgeCoords[3 * e] = (1.0 - t) * newCoords[m] + t * x;
+					edgeCoords[3 * e + 1] = (1.0 - t) * newCoords[m + 1] + t * y;
+					edgeCoords[3 * e + 2] = (1.0 - t) * newCoords[m + 2] + t * z;
 				}
-				p.divSelf(order);
-				if (edgePoint) {
-					newPositions.put(v.key(),
-							gf.createInterpolatedPoint(v, p, blendFactor.evaluate(v.xd(), v.yd(), v.zd())));
-				} else {
-					newPositions.put(v.key(), v);
+			}
+		});
+		// vertex points
+		WB_ParallelExecutor.instance().forRange(0, nv, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				int h, h0, m, fc, order, nbe, e;
+				double fx, fy, fz, ex, ey, ez, x, y, z, t;
+				for (int v = start; v < end; v++) {
+					x = coords[3 * v];
+					y = coords[3 * v + 1];
+					z = coords[3 * v + 2];
+					h0 = vertexHalfedge[v];
+					if (h0 == -1 || boundaryVertex[v] && keepBoundary) {
+						newCoords[3 * v] = x;
+						newCoords[3 * v + 1] = y;
+						newCoords[3 * v + 2] = z;
+						continue;
+					}
+					fx = fy = fz = ex = ey = ez = 0;
+					fc = order = nbe = 0;
+					h = h0;
+					do {
+						e = edge[h];
+						m = 3 * (nv + e);
+						if (boundaryVertex[v]) {
+							if (boundaryEdge[e]) {
+								ex += newCoords[m];
+								ey += newCoords[m + 1];
+								ez += newCoords[m + 2];
+								nbe++;
+							}
+						} else {
+							ex += newCoords[m];
+							ey += newCoords[m + 1];
+							ez += newCoords[m + 2];
+							order++;
+							m = 3 * (nv + ne + face[h]);
+							fx += newCoords[m];
+							fy += newCoords[m + 1];
+							fz += newCoords[m + 2];
+							fc++;
+						}
+						if (pair[h] == -1) {
+							break;
+						}
+						h = next[pair[h]];
+					} while (h != h0);
+					t = blend[v];
+					if (boundaryVertex[v]) {
+						if (nbe > 1) {
+							ex = (x + ex) / (nbe + 1);
+							ey = (y + ey) / (nbe + 1);
+							ez = (z + ez) / (nbe + 1);
+							x = (1.0 - t) * x + t * ex;
+							y = (1.0 - t) * y + t * ey;
+							z = (1.0 - t) * z + t * ez;
+						}
+					} else {
+						ex = (fx / fc + 2.0 * ex / order + (order - 3) * x) / order;
+						ey = (fy / fc + 2.0 * ey / order + (order - 3) * y) / order;
+						ez = (fz / fc + 2.0 * ez / order + (order - 3) * z) / order;
+						x = (1.0 - t) * x + t * ex;
+						y = (1.0 - t) * y + t * ey;
+						z = (1.0 - t) * z + t * ez;
+					}
+					newCoords[3 * v] = x;
+					newCoords[3 * v + 1] = y;
+					newCoords[3 * v + 2] = z;
 				}
 			}
-			counter.increment();
+		});
+		System.arraycopy(edgeCoords, 0, newCoords, 3 * nv, 3 * ne);
+		// refined connectivity
+		tracker.setStatus(this, "Building refined mesh.", 0);
+		final int nnh = 4 * numberOfCorners + 2 * numberOfBoundaryHalfedges;
+		final int B = 4 * numberOfCorners;
+		final int[] newNext = new int[nnh];
+		final int[] newPair = new int[nnh];
+		final int[] newVertex = new int[nnh];
+		final int[] newFace = new int[nnh];
+		final int[] newVertexHalfedge = new int[nnv];
+		// child faces as created by HEM_QuadSplit: the original face is reused
+		// for the corner after its halfedge, the other children follow all
+		// original faces, face by face
+		final int[] childFace = new int[numberOfCorners];
+		int nextChild = nf;
+		for (int f = 0; f < nf; f++) {
+			final int first = next[faceHalfedge[f]];
+			childFace[corner[first]] = f;
+			he = next[first];
+			while (he != first) {
+				childFace[corner[he]] = nextChild++;
+				he = next[he];
+			}
 		}
-		counter = new WB_ProgressCounter(boundary.size(), 10);
-		tracker.setStatus(this, "Creating new positions for boundary vertices.", counter);
-		vItr = boundary.iterator();
-		while (vItr.hasNext()) {
-			v = vItr.next();
-			if (keepBoundary) {
-				newPositions.put(v.key(), v);
+		WB_ParallelExecutor.instance().forRange(0, numberOfCorners, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				int h, hp, p;
+				for (int c = start; c < end; c++) {
+					h = cornerHalfedge[c];
+					hp = prev[h];
+					newVertex[4 * c] = vert[h];
+					newVertex[4 * c + 1] = nv + edge[h];
+					newVertex[4 * c + 2] = nv + ne + cornerFace[c];
+					newVertex[4 * c + 3] = nv + edge[hp];
+					newNext[4 * c] = 4 * c + 1;
+					newNext[4 * c + 1] = 4 * c + 2;
+					newNext[4 * c + 2] = 4 * c + 3;
+					newNext[4 * c + 3] = 4 * c;
+					p = pair[h];
+					newPair[4 * c] = p == -1 ? -1
+							: face[p] == -1 ? B + 2 * boundaryIndex[p] + 1 : 4 * corner[next[p]] + 3;
+					newPair[4 * c + 1] = 4 * corner[next[h]] + 2;
+					newPair[4 * c + 2] = 4 * corner[hp] + 1;
+					p = pair[hp];
+					newPair[4 * c + 3] = p == -1 ? -1 : face[p] == -1 ? B + 2 * boundaryIndex[p] : 4 * corner[p];
+					newFace[4 * c] = newFace[4 * c + 1] = newFace[4 * c + 2] = newFace[4 * c + 3] = childFace[c];
+				}
+			}
+		});
+		for (int k = 0; k < numberOfBoundaryHalfedges; k++) {
+			final int b = boundaryHalfedge[k];
+			final int p = pair[b];
+			newVertex[B + 2 * k] = vert[b];
+			newVertex[B + 2 * k + 1] = nv + edge[b];
+			newNext[B + 2 * k] = B + 2 * k + 1;
+			newNext[B + 2 * k + 1] = B + 2 * boundaryIndex[next[b]];
+			newPair[B + 2 * k] = p == -1 || face[p] == -1 ? -1 : 4 * corner[next[p]] + 3;
+			newPair[B + 2 * k + 1] = p == -1 || face[p] == -1 ? -1 : 4 * corner[p];
+			newFace[B + 2 * k] = newFace[B + 2 * k + 1] = -1;
+		}
+		for (int v = 0; v < nv; v++) {
+			he = vertexHalfedge[v];
+			newVertexHalfedge[v] = he == -1 ? -1 : face[he] == -1 ? B + 2 * boundaryIndex[he] : 4 * corner[he];
+		}
+		for (int e = 0; e < ne; e++) {
+			he = edgeHalfedge[e];
+			newVertexHalfedge[nv + e] = face[he] == -1 ? B + 2 * boundaryIndex[he] + 1 : 4 * corner[he] + 1;
+		}
+		for (int f = 0; f < nf; f++) {
+			newVertexHalfedge[nv + ne + f] = 4 * corner[faceHalfedge[f]] + 2;
+		}
+		// elements, the originals are reused for the first part of each split
+		// halfedge and for the first child of each face
+		final HE_Vertex[] newVertices = new HE_Vertex[nnv];
+		for (int v = 0; v < nnv; v++) {
+			newVertices[v] = v < nv ? vertices[v] : new HE_Vertex();
+			newVertices[v].set(newCoords[3 * v], newCoords[3 * v + 1], newCoords[3 * v + 2]);
+			newVertices[v].setInternalLabel(v < nv ? -1 : v < nv + ne ? 1 : 2);
+		}
+		final HE_Halfedge[] newHalfedges = new HE_Halfedge[nnh];
+		final HE_Face[] newFaces = new HE_Face[numberOfCorners];
+		for (int c = 0; c < numberOfCorners; c++) {
+			he = cornerHalfedge[c];
+			newHalfedges[4 * c] = halfedges[he];
+			newHalfedges[4 * c + 1] = new HE_Halfedge();
+			newHalfedges[4 * c + 2] = new HE_Halfedge();
+			newHalfedges[4 * c + 3] = createSecondHalf(halfedges, prev[he], he, vert, coords);
+			if (childFace[c] < nf) {
+				newFaces[childFace[c]] = faces[cornerFace[c]];
+				newFaces[childFace[c]].update();
 			} else {
-				p = new WB_Point(v);
-				neighbors = v.getNeighborVertices();
-				double c = 1;
-				int nc = 0;
-				for (int i = 0; i < neighbors.size(); i++) {
-					n = neighbors.get(i);
-					if (boundary.contains(n)) {
-						p.addSelf(n);
-						nc++;
-						c++;
-					}
+				newFaces[childFace[c]] = new HE_Face();
+				newFaces[childFace[c]].copyProperties(faces[cornerFace[c]]);
+			}
+		}
+		for (int k = 0; k < numberOfBoundaryHalfedges; k++) {
+			he = boundaryHalfedge[k];
+			newHalfedges[B + 2 * k] = halfedges[he];
+			newHalfedges[B + 2 * k + 1] = createSecondHalf(halfedges, he, next[he], vert, coords);
+		}
+		// texture coordinates as assigned by HEM_QuadSplit: the halfedge
+		// leaving an edge point toward the face point takes the UVW of the
+		// second half of the split edge, face points get the average UVW
+		HE_TextureCoordinate uvw;
+		double tu, tv, tw;
+		boolean hasTexture;
+		int order;
+		for (int f = 0; f < nf; f++) {
+			he = faceHalfedge[f];
+			hasTexture = true;
+			tu = tv = tw = 0;
+			order = 0;
+			do {
+				newHalfedges[4 * corner[he] + 1].setUVW(newHalfedges[4 * corner[next[he]] + 3].getUVW());
+				if (hasTexture && halfedges[he].hasUVW()) {
+					uvw = halfedges[he].getUVW();
+					tu += uvw.ud();
+					tv += uvw.vd();
+					tw += uvw.wd();
+					uvw = newHalfedges[4 * corner[next[he]] + 3].getUVW();
+					tu += uvw.ud();
+					tv += uvw.vd();
+					tw += uvw.wd();
+				} else {
+					hasTexture = false;
 				}
-				newPositions.put(v.key(), nc > 1 ? gf.createInterpolatedPoint(v, p.scaleSelf(1.0 / c),
-						blendFactor.evaluate(v.xd(), v.yd(), v.zd())) : v);
+				order += 2;
+				he = next[he];
+			} while (he != faceHalfedge[f]);
+			if (hasTexture) {
+				final double ifo = 1.0 / order;
+				newVertices[nv + ne + f].setUVW(tu * ifo, tv * ifo, tw * ifo);
 			}
-			counter.increment();
 		}
-		tracker.setStatus(this, "Setting new positions.", 0);
-		vItr = inner.iterator();
-		while (vItr.hasNext()) {
-			v = vItr.next();
-			v.set(newPositions.get(v.key()));
+		WB_ParallelExecutor.instance().forRange(0, nnh, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				HE_Halfedge h;
+				for (int k = start; k < end; k++) {
+					h = newHalfedges[k];
+					h._setNext(newHalfedges[newNext[k]]);
+					newHalfedges[newNext[k]]._setPrev(h);
+					h._setPair(newPair[k] == -1 ? null : newHalfedges[newPair[k]]);
+					h._setVertex(newVertices[newVertex[k]]);
+					h._setFace(newFace[k] == -1 ? null : newFaces[newFace[k]]);
+				}
+			}
+		});
+		for (int v = 0; v < nnv; v++) {
+			newVertices[v]._setHalfedge(newVertexHalfedge[v] == -1 ? null : newHalfedges[newVertexHalfedge[v]]);
 		}
-		vItr = boundary.iterator();
-		while (vItr.hasNext()) {
-			v = vItr.next();
-			v.set(newPositions.get(v.key()));
+		for (int c = 0; c < numberOfCorners; c++) {
+			// start at the edge point before the original vertex
+			newFaces[childFace[c]]._setHalfedge(newHalfedges[4 * c + 3]);
 		}
-		tracker.setStatus(this, "Exiting HEM_CatmullClark.", -1);
-		return mesh;
+		// replace rather than clear and add, attribute values of the reused
+		// elements are kept
+		mesh.replaceVertices(newVertices);
+		mesh.replaceFaces(newFaces);
+		mesh.replaceHalfedges(newHalfedges);
+	}
+
+	/**
+	 * Second half of a halfedge split at its midpoint, same properties and
+	 * texture coordinates as HET_MeshOp.splitEdge.
+	 *
+	 * @param halfedges
+	 * @param he
+	 * @param hen
+	 *            next halfedge in face
+	 * @param vert
+	 * @param coords
+	 * @return
+	 */
+	private static HE_Halfedge createSecondHalf(final HE_Halfedge[] halfedges, final int he, final int hen,
+			final int[] vert, final double[] coords) {
+		final HE_Halfedge result = new HE_Halfedge();
+		result.copyProperties(halfedges[he]);
+		if (halfedges[he].hasUVW() && halfedges[hen].hasUVW()) {
+			final int a = 3 * vert[he];
+			final int b = 3 * vert[hen];
+			final double mx = 0.5 * coords[a] + 0.5 * coords[b];
+			final double my = 0.5 * coords[a + 1] + 0.5 * coords[b + 1];
+			final double mz = 0.5 * coords[a + 2] + 0.5 * coords[b + 2];
+			final double d0 = WB_GeometryOp3D.getDistance3D(coords[a], coords[a + 1], coords[a + 2], mx, my, mz);
+			final double d1 = WB_GeometryOp3D.getDistance3D(coords[b], coords[b + 1], coords[b + 2], mx, my, mz);
+			result.setUVW(new HE_TextureCoordinate(d1 / (d0 + d1), halfedges[he].getUVW(), halfedges[hen].getUVW()));
+		}
+		return result;
 	}
 
 	/*
@@ -265,13 +608,13 @@ public class HES_CatmullClark extends HES_Subdividor {
 			}
 		}
 		HE_Vertex n;
-		List<HE_Vertex> neighbors;
+		final List<HE_Vertex> neighbors = new ArrayList<HE_Vertex>();
 		vItr = inner.iterator();
 		while (vItr.hasNext()) {
 			v = vItr.next();
 			if (v.getInternalLabel() == -1) {
 				p = avgFC.get(v.key());
-				neighbors = v.getNeighborVertices();
+				v.getNeighborVertices(neighbors);
 				final int order = neighbors.size();
 				final double io = 1.0 / order;
 				for (int i = 0; i < order; i++) {
@@ -284,7 +627,7 @@ public class HES_CatmullClark extends HES_Subdividor {
 						gf.createInterpolatedPoint(v, p, blendFactor.evaluate(v.xd(), v.yd(), v.zd())));
 			} else {
 				p = new WB_Point();
-				neighbors = v.getNeighborVertices();
+				v.getNeighborVertices(neighbors);
 				final int order = neighbors.size();
 				boolean edgePoint = false;
 				for (int i = 0; i < order; i++) {
@@ -310,7 +653,7 @@ public class HES_CatmullClark extends HES_Subdividor {
 				newPositions.put(v.key(), v);
 			} else {
 				p = new WB_Point(v);
-				neighbors = v.getNeighborVertices();
+				v.getNeighborVertices(neighbors);
 				double c = 1;
 				int nc = 0;
 				for (int i = 0; i < neighbors.size(); i++) {
@@ -326,7 +669,7 @@ public class HES_CatmullClark extends HES_Subdividor {
 			}
 		}
 		List<WB_Plane> planes;
-		List<HE_Face> faceStar;
+		final List<HE_Face> faceStar = new ArrayList<HE_Face>();
 		HE_Face f;
 		WB_Plane P;
 		vItr = outer.iterator();
@@ -336,7 +679,7 @@ public class HES_CatmullClark extends HES_Subdividor {
 			if (keepEdges) {
 				newPositions.put(v.key(), v);
 			} else {
-				faceStar = v.getFaceStar();
+				v.getFaceStar(faceStar);
 				for (int i = 0; i < faceStar.size(); i++) {
 					f = faceStar.get(i);
 					if (!selection.contains(f)) {
@@ -354,7 +697,7 @@ public class HES_CatmullClark extends HES_Subdividor {
 					}
 				}
 				p = new WB_Point(v);
-				neighbors = v.getNeighborVertices();
+				v.getNeighborVertices(neighbors);
 				double c = 1;
 				int nc = 0;
 				for (int i = 0; i < neighbors.size(); i++) {
@@ -95,13 +95,13 @@ public class HES_Smooth extends HES_Subdividor {
 		final List<HE_Vertex> inner = all.getInnerVertices();
 		HE_Vertex v;
 		HE_Vertex n;
-		List<HE_Vertex> neighbors;
+		final List<HE_Vertex> neighbors = new ArrayList<HE_Vertex>();
 		int id = 0;
 		Iterator<HE_Vertex> vItr = inner.iterator();
 		while (vItr.hasNext()) {
 			v = vItr.next();
 			final WB_Point p = new WB_Point(v);
-			neighbors = v.getNeighborVertices();
+			v.getNeighborVertices(neighbors);
 			p.mulSelf(origWeight);
 			double c = origWeight;
 			for (int i = 0; i < neighbors.size(); i++) {
@@ -119,7 +119,7 @@ public class HES_Smooth extends HES_Subdividor {
 				newPositions[id] = v;
 			} else {
 				final WB_Point p = new WB_Point(v);
-				neighbors = v.getNeighborVertices();
+				v.getNeighborVertices(neighbors);
 				p.mulSelf(origWeight);
 				double c = origWeight;
 				int nc = 0;
@@ -173,13 +173,13 @@ public class HES_Smooth extends HES_Subdividor {
 			}
 		}
 		HE_Vertex n;
-		List<HE_Vertex> neighbors;
+		final List<HE_Vertex> neighbors = new ArrayList<HE_Vertex>();
 		int id = 0;
 		vItr = inner.iterator();
 		while (vItr.hasNext()) {
 			v = vItr.next();
 			final WB_Point p = new WB_Point(v);
-			neighbors = v.getNeighborVertices();
+			v.getNeighborVertices(neighbors);
 			p.mulSelf(origWeight);
 			double c = origWeight;
 			for (int i = 0; i < neighbors.size(); i++) {
@@ -197,7 +197,7 @@ public class HES_Smooth extends HES_Subdividor {
 				newPositions.add(v);
 			} else {
 				final WB_Point p = new WB_Point(v);
-				neighbors = v.getNeighborVertices();
+				v.getNeighborVertices(neighbors);
 				p.mulSelf(origWeight);
 				double c = origWeight;
 				int nc = 0;
@@ -220,7 +220,7 @@ public class HES_Smooth extends HES_Subdividor {
 				newPositions.add(v);
 			} else {
 				final WB_Point p = new WB_Point(v);
-				neighbors = v.getNeighborVertices();
+				v.getNeighborVertices(neighbors);
 				p.mulSelf(origWeight);
 				double c = origWeight;
 				int nc = 0;
@@ -37,6 +37,12 @@ public class HES_TriDecLimit extends HES_Simplifier {
 	 *
 	 */
 	private Heap heap;
+	/** Buffers reused by the neighborhood queries. */
+	private final List<HE_Vertex> neighbors = new FastTable<HE_Vertex>();
+	private final List<HE_Halfedge> star = new FastTable<HE_Halfedge>();
+	private final List<HE_Face> faceStar = new FastTable<HE_Face>();
+	private final List<HE_Vertex> vineighbors = new FastTable<HE_Vertex>();
+	private final List<HE_Vertex> vfneighbors = new FastTable<HE_Vertex>();
 	/**
 	 *
 	 */
@@ -89,6 +95,7 @@ public class HES_TriDecLimit extends HES_Simplifier {
 	public static double[] getVertexColor(final HE_Mesh mesh) {
 		final HE_VertexIterator vItr = mesh.vItr();
 		final double[] values = new double[mesh.getNumberOfVertices()];
+		final List<HE_Face> faces = new FastTable<HE_Face>();
 		double min = Double.POSITIVE_INFINITY;
 		double max = Double.NEGATIVE_INFINITY;
 		HE_Vertex v;
@@ -96,7 +103,7 @@ public class HES_TriDecLimit extends HES_Simplifier {
 		int i = 0;
 		while (vItr.hasNext()) {
 			v = vItr.next();
-			vvi = visualImportance(v);
+			vvi = visualImportance(v, faces);
 			values[i++] = vvi;
 			if (vvi < min) {
 				min = vvi;
@@ -133,7 +140,6 @@ public class HES_TriDecLimit extends HES_Simplifier {
 		buildHeap(_mesh);
 		HE_Vertex v;
 		Entry entry;
-		List<HE_Vertex> vertices;
 		WB_ProgressCounter pcounter = new WB_ProgressCounter(mesh.getNumberOfVertices(), 10);
 		tracker.setStatus(this, "Removing vertices.", pcounter);
 		double lastcost = 0;
@@ -145,14 +151,14 @@ public class HES_TriDecLimit extends HES_Simplifier {
 				valid = mesh.contains(v) && entry.version == v.getInternalLabel();
 			} while (heap.size() > 0 && !valid);
 			if (valid) {
-				vertices = v.getNeighborVertices();
+				v.getNeighborVertices(neighbors);
 				// vertices.addAll(v.getNextNeighborVertices());
 				if (HET_MeshOp.collapseHalfedge(_mesh, v.getHalfedge())) {
 					lastcost = vertexCost.get(v.key());
 					if (lastcost <= limit) {
 						vertexCost.remove(v.key());
 						counter++;
-						updateHeap(vertices, null);
+						updateHeap(neighbors, null);
 					}
 				}
 			}
@@ -183,7 +189,6 @@ public class HES_TriDecLimit extends HES_Simplifier {
 		buildHeap(_mesh);
 		HE_Vertex v;
 		Entry entry;
-		List<HE_Vertex> vertices;
 		WB_ProgressCounter pcounter = new WB_ProgressCounter(selection.getNumberOfVertices(), 10);
 		tracker.setStatus(this, "Removing vertices.", pcounter);
 		double lastcost = 0;
@@ -195,7 +200,7 @@ public class HES_TriDecLimit extends HES_Simplifier {
 				valid = selection.contains(v) && _mesh.contains(v) && entry.version == v.getInternalLabel();
 			} while (heap.size() > 0 && !valid);
 			if (valid) {
-				vertices = v.getNeighborVertices();
+				v.getNeighborVertices(neighbors);
 				// vertices.addAll(v.getNextNeighborVertices());
 				if (HET_MeshOp.collapseHalfedge(_mesh, v.getHalfedge())) {
 					lastcost = vertexCost.get(v.key());
@@ -204,7 +209,7 @@ public class HES_TriDecLimit extends HES_Simplifier {
 						vertexCost.remove(v.key());
 						selection.remove(v);
 						counter++;
-						updateHeap(vertices, _mesh);
+						updateHeap(neighbors, _mesh);
 					}
 				}
 			}
@@ -230,15 +235,15 @@ public class HES_TriDecLimit extends HES_Simplifier {
 		double min;
 		double c;
 		HE_Halfedge minhe;
-		List<HE_Halfedge> vstar;
+		final List<HE_Halfedge> vstar = star;
 		HE_Vertex v;
 		double vvi;
 		while (vItr.hasNext()) {
 			v = vItr.next();
 			v.setInternalLabel(counter);
-			vvi = visualImportance(v);
+			vvi = visualImportance(v, faceStar);
 			if (vvi < Double.POSITIVE_INFINITY) {
-				vstar = v.getHalfedgeStar();
+				v.getHalfedgeStar(vstar);
 				minhe = vstar.get(0);
 				min = Double.POSITIVE_INFINITY;
 				if (v.isBoundary()) { // Only consider collapsing along boundary
@@ -283,14 +288,14 @@ public class HES_TriDecLimit extends HES_Simplifier {
 		double min;
 		double c;
 		HE_Halfedge minhe;
-		List<HE_Halfedge> vstar;
+		final List<HE_Halfedge> vstar = star;
 		double vvi;
 		for (final HE_Vertex v : vertices) {
 			if (selection == null || selection.contains(v)) {
-				vvi = visualImportance(v);
+				vvi = visualImportance(v, faceStar);
 				v.setInternalLabel(counter);
 				vertexCost.remove(v.key());
-				vstar = v.getHalfedgeStar();
+				v.getHalfedgeStar(vstar);
 				minhe = vstar.get(0);
 				min = Double.POSITIVE_INFINITY;
 				if (v.isBoundary()) { // Only consider collapsing along boundary
@@ -328,10 +333,11 @@ public class HES_TriDecLimit extends HES_Simplifier {
 	 *
 	 *
 	 * @param v
+	 * @param faces
 	 * @return
 	 */
-	private static double visualImportance(final HE_Vertex v) {
-		final List<HE_Face> faces = v.getFaceStar();
+	private static double visualImportance(final HE_Vertex v, final List<HE_Face> faces) {
+		v.getFaceStar(faces);
 		final WB_Vector nom = new WB_Vector();
 		double denom = 0.0;
 		double A;
@@ -362,8 +368,8 @@ public class HES_TriDecLimit extends HES_Simplifier {
 	private double halfedgeCollapseCost(final HE_Halfedge he) {
 		final HE_Face f = he.getFace();
 		final HE_Face fp = he.getPair().getFace();
-		final List<HE_Vertex> vineighbors = he.getVertex().getNeighborVertices();
-		final List<HE_Vertex> vfneighbors = he.getEndVertex().getNeighborVertices();
+		he.getVertex().getNeighborVertices(vineighbors);
+		he.getEndVertex().getNeighborVertices(vfneighbors);
 		int shared = 0;
 		final int max = f == null || fp == null ? 1 : 2;
 		for (final HE_Vertex vi : vineighbors) {
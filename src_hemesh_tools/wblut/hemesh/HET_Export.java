@@ -9,7 +9,10 @@
  */
 package wblut.hemesh;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -220,6 +223,21 @@ public class HET_Export {
 		}
 	}
 
+	/**
+	 * Saves the mesh as binary STL into a buffer, e.g. a memory-mapped file.
+	 * The buffer should have HET_WriterSTL.getByteSize(mesh.getNumberOfFaces())
+	 * bytes remaining.
+	 *
+	 * @param mesh
+	 * @param buffer
+	 */
+	public static void saveToSTL(final HE_Mesh mesh, final ByteBuffer buffer) {
+		final HET_WriterSTL stl = new HET_WriterSTL(HET_WriterSTL.NONE, HET_WriterSTL.DEFAULT_BUFFER);
+		stl.beginSave(buffer, mesh.getNumberOfFaces());
+		saveToSTLWithFaceColor(mesh, stl);
+		stl.endSave();
+	}
+
 	/**
 	 * Saves the mesh as simpleMesh format to the given file path. Existing
 	 * files will be overwritten. The file gives the vertex coordinates and an
@@ -340,11 +358,10 @@ public class HET_Export {
 	}
 
 	/**
-	 * Saves the mesh as binary hemesh format to the given file path. Existing
-	 * files will be overwritten. The file contains the vertex coordinates and
-	 * all half-edge interconnection information. About the same size of a
-	 * simpleMesh but a lot quicker to rebuild. Due to compression about half as
-	 * fast as an ordinary hemesh file but only a third in size.
+	 * Saves the mesh as binary hemesh snapshot to the given file path. Existing
+	 * files will be overwritten. The file contains the vertex coordinates, all
+	 * half-edge interconnection information, labels, colors and UVWs as
+	 * contiguous arrays that are memory-mapped on load.
 	 *
 	 * @param mesh
 	 *            the mesh
@@ -353,87 +370,29 @@ public class HET_Export {
 	 * @param name
 	 */
 	public static void saveToBinaryHemesh(final HE_Mesh mesh, final String path, final String name) {
-		final HET_WriterBinaryHemesh hem = new HET_WriterBinaryHemesh();
-		hem.beginSave(path, name);
-		final TLongIntMap vertexKeys = new TLongIntHashMap(10, 0.5f, -1L, -1);
-		Iterator<HE_Vertex> vItr = mesh.vItr();
-		int i = 0;
-		while (vItr.hasNext()) {
-			vertexKeys.put(vItr.next().key(), i);
-			i++;
-		}
-		final TLongIntMap halfedgeKeys = new TLongIntHashMap(10, 0.5f, -1L, -1);
-		Iterator<HE_Halfedge> heItr = mesh.heItr();
-		i = 0;
-		while (heItr.hasNext()) {
-			halfedgeKeys.put(heItr.next().key(), i);
-			i++;
-		}
-		final TLongIntMap faceKeys = new TLongIntHashMap(10, 0.5f, -1L, -1);
-		Iterator<HE_Face> fItr = mesh.fItr();
-		i = 0;
-		while (fItr.hasNext()) {
-			faceKeys.put(fItr.next().key(), i);
-			i++;
-		}
-		hem.sizes(mesh.getNumberOfVertices(), mesh.getNumberOfHalfedges(), mesh.getNumberOfFaces());
-		vItr = mesh.vItr();
-		HE_Vertex v;
-		Integer heid;
-		while (vItr.hasNext()) {
-			v = vItr.next();
-			if (v.getHalfedge() == null) {
-				heid = -1;
-			} else {
-				heid = halfedgeKeys.get(v.getHalfedge().key());
-
-			}
-			hem.vertex(v, heid);
-		}
-		heItr = mesh.heItr();
-		HE_Halfedge he;
-		Integer vid, henextid, hepairid, fid;
-		while (heItr.hasNext()) {
-			he = heItr.next();
-			if (he.getVertex() == null) {
-				vid = -1;
-			} else {
-				vid = vertexKeys.get(he.getVertex().key());
-
-			}
-			if (he.getNextInFace() == null) {
-				henextid = -1;
-			} else {
-				henextid = halfedgeKeys.get(he.getNextInFace().key());
-
-			}
-			if (he.getPair() == null) {
-				hepairid = -1;
-			} else {
-				hepairid = halfedgeKeys.get(he.getPair().key());
-
-			}
-			if (he.getFace() == null) {
-				fid = -1;
-			} else {
-				fid = faceKeys.get(he.getFace().key());
-
-			}
-			hem.halfedge(he, vid, henextid, hepairid, fid);
-		}
-		fItr = mesh.fItr();
-		HE_Face f;
-		while (fItr.hasNext()) {
-			f = fItr.next();
-			if (f.getHalfedge() == null) {
-				heid = -1;
-			} else {
-				heid = halfedgeKeys.get(f.getHalfedge().key());
+		saveToBinaryHemesh(mesh, path, name, false);
+	}
 
-			}
-			hem.face(f, heid);
+	/**
+	 * Saves the mesh as binary hemesh snapshot to the given file path. Existing
+	 * files will be overwritten. Compressed files are smaller but can't be
+	 * mapped directly.
+	 *
+	 * @param mesh
+	 *            the mesh
+	 * @param path
+	 *            the path
+	 * @param name
+	 * @param compress
+	 *            deflate each block
+	 */
+	public static void saveToBinaryHemesh(final HE_Mesh mesh, final String path, final String name,
+			final boolean compress) {
+		try {
+			HET_MeshSnapshot.save(mesh, new File(path, name + ".binhemesh").getPath(), compress);
+		} catch (final IOException e) {
+			e.printStackTrace();
 		}
-		hem.endSave();
 	}
 
 	/**
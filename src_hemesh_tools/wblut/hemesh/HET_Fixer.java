@@ -6,16 +6,12 @@ package wblut.hemesh;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 import gnu.trove.map.TLongObjectMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
 import javolution.util.FastTable;
+import wblut.core.WB_ParallelExecutor;
+import wblut.core.WB_ParallelExecutor.WB_RangeCollector;
 import wblut.core.WB_ProgressCounter;
 import wblut.core.WB_ProgressTracker;
 import wblut.geom.WB_AABB;
@@ -171,6 +167,24 @@ public class HET_Fixer {
 		}
 	}
 
+	/**
+	 * Merge vertices closer than a tolerance, closing cracks between faces
+	 * that share an edge but not its vertices. The mesh is rebuilt from its
+	 * face list, vertices that are not part of a face are removed.
+	 *
+	 * @param mesh
+	 * @param d
+	 *            tolerance, should be larger than 0
+	 */
+	public static void weldVertices(final HE_Mesh mesh, final double d) {
+		if (mesh.getNumberOfFaces() == 0) {
+			return;
+		}
+		final HEC_FromFacelist ffl = new HEC_FromFacelist().setVertices(mesh.getVerticesAsCoord())
+				.setFaces(mesh.getFacesAsInt()).setTolerance(d);
+		mesh.setNoCopy(new HE_Mesh(ffl));
+	}
+
 	/**
 	 *
 	 *
@@ -451,68 +465,23 @@ public class HET_Fixer {
 	 */
 	private static List<HET_SelfIntersectionResult> checkSelfIntersection(final List<HE_Face> faces,
 			final WB_AABBTree tree) {
-
-		List<HET_SelfIntersectionResult> selfints = new FastTable<HET_SelfIntersectionResult>();
-		try {
-			int threadCount = Runtime.getRuntime().availableProcessors();
-			int dfaces = faces.size() / threadCount;
-			if (dfaces < 1024) {
-				dfaces = 1024;
-				threadCount = (int) Math.ceil(faces.size() / 1024.0);
-
-			}
-			final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
-			final List<Future<List<HET_SelfIntersectionResult>>> list = new ArrayList<Future<List<HET_SelfIntersectionResult>>>();
-			int i = 0;
-			for (i = 0; i < threadCount - 1; i++) {
-				final Callable<List<HET_SelfIntersectionResult>> runner = new SelfIntersectionChecker(dfaces * i,
-						dfaces * (i + 1) - 1, i, faces, tree);
-
-				list.add(executor.submit(runner));
-			}
-			final Callable<List<HET_SelfIntersectionResult>> runner = new SelfIntersectionChecker(dfaces * i,
-					faces.size() - 1, i, faces, tree);
-			list.add(executor.submit(runner));
-
-			for (Future<List<HET_SelfIntersectionResult>> future : list) {
-				selfints.addAll(future.get());
-			}
-
-			executor.shutdown();
-
-		} catch (final InterruptedException ex) {
-			ex.printStackTrace();
-		} catch (final ExecutionException ex) {
-			ex.printStackTrace();
-		}
-		return selfints;
+		return WB_ParallelExecutor.instance().collect(0, faces.size(), new SelfIntersectionChecker(faces, tree));
 	}
 
 	/**
 	 *
 	 */
-	static class SelfIntersectionChecker implements Callable<List<HET_SelfIntersectionResult>> {
-		int start;
-		int end;
-		int id;
-		int[] triangles;
+	static class SelfIntersectionChecker implements WB_RangeCollector<HET_SelfIntersectionResult> {
 		List<HE_Face> faces;
 		WB_AABBTree tree;
 
 		/**
 		 *
 		 *
-		 * @param s
-		 * @param e
-		 * @param id
 		 * @param faces
 		 * @param tree
 		 */
-		public SelfIntersectionChecker(final int s, final int e, final int id, final List<HE_Face> faces,
-				final WB_AABBTree tree) {
-			start = s;
-			end = e;
-			this.id = id;
+		public SelfIntersectionChecker(final List<HE_Face> faces, final WB_AABBTree tree) {
 			this.faces = faces;
 			this.tree = tree;
 		}
@@ -520,15 +489,14 @@ public class HET_Fixer {
 		/*
 		 * (non-Javadoc)
 		 *
-		 * @see java.util.concurrent.Callable#call()
+		 * @see wblut.core.WB_ParallelExecutor.WB_RangeCollector#collect(int,
+		 * int)
 		 */
 		@Override
-		public List<HET_SelfIntersectionResult> call() {
+		public List<HET_SelfIntersectionResult> collect(final int start, final int end) {
 			ArrayList<HET_SelfIntersectionResult> selfints = new ArrayList<HET_SelfIntersectionResult>();
-			ListIterator<HE_Face> itr = faces.listIterator(start);
-			for (int i = start; i <= end; i++) {
-				selfints.addAll(checkSelfIntersection(itr.next(), tree));
-
+			for (int i = start; i < end; i++) {
+				selfints.addAll(checkSelfIntersection(faces.get(i), tree));
 			}
 			return selfints;
 		}
@@ -20,6 +20,7 @@ import wblut.core.WB_ProgressTracker;
 import wblut.geom.WB_AABB;
 import wblut.geom.WB_AABBTree;
 import wblut.geom.WB_AABBTree.WB_AABBNode;
+import wblut.geom.WB_BVH;
 import wblut.geom.WB_Classification;
 import wblut.geom.WB_Coord;
 import wblut.geom.WB_CoordinateSystem3D;
@@ -310,8 +311,13 @@ public class HET_MeshOp {
 		final HE_Selection selectionOut = new HE_Selection(mesh);
 		final HE_Halfedge[] edges = mesh.getEdgesAsArray();
 		final int n = edges.length;
-		for (int i = 0; i < n; i++) {
-			selectionOut.add(splitEdge(mesh, edges[i], 0.5));
+		mesh.beginTransaction();
+		try {
+			for (int i = 0; i < n; i++) {
+				selectionOut.add(splitEdge(mesh, edges[i], 0.5));
+			}
+		} finally {
+			mesh.commitTransaction();
 		}
 		return selectionOut;
 	}
@@ -330,10 +336,15 @@ public class HET_MeshOp {
 		final HE_Selection selectionOut = new HE_Selection(mesh);
 		final HE_Halfedge[] edges = mesh.getEdgesAsArray();
 		final int n = mesh.getNumberOfEdges();
-		for (int i = 0; i < n; i++) {
-			final WB_Point p = new WB_Point(edges[i].getEdgeNormal());
-			p.mulSelf(offset).addSelf(edges[i].getHalfedgeCenter());
-			selectionOut.add(splitEdge(mesh, edges[i], p));
+		mesh.beginTransaction();
+		try {
+			for (int i = 0; i < n; i++) {
+				final WB_Point p = new WB_Point(edges[i].getEdgeNormal());
+				p.mulSelf(offset).addSelf(edges[i].getHalfedgeCenter());
+				selectionOut.add(splitEdge(mesh, edges[i], p));
+			}
+		} finally {
+			mesh.commitTransaction();
 		}
 		return selectionOut;
 	}
@@ -347,12 +358,17 @@ public class HET_MeshOp {
 	 */
 	public static HE_Selection splitEdges(final HE_Selection selection) {
 		final HE_Selection selectionOut = new HE_Selection(selection.parent);
-		selection.collectEdgesByFace();
-		final Iterator<HE_Halfedge> eItr = selection.heItr();
-		while (eItr.hasNext()) {
-			selectionOut.add(splitEdge(selection.parent, eItr.next(), 0.5));
+		selection.parent.beginTransaction();
+		try {
+			selection.collectEdgesByFace();
+			final Iterator<HE_Halfedge> eItr = selection.heItr();
+			while (eItr.hasNext()) {
+				selectionOut.add(splitEdge(selection.parent, eItr.next(), 0.5));
+			}
+			selection.addHalfedges(selectionOut.getEdgesAsArray());
+		} finally {
+			selection.parent.commitTransaction();
 		}
-		selection.addHalfedges(selectionOut.getEdgesAsArray());
 		return selectionOut;
 	}
 
@@ -368,16 +384,21 @@ public class HET_MeshOp {
 	 */
 	public static HE_Selection splitEdges(final HE_Selection selection, final double offset) {
 		final HE_Selection selectionOut = new HE_Selection(selection.parent);
-		selection.collectEdgesByFace();
-		final Iterator<HE_Halfedge> eItr = selection.heItr();
-		HE_Halfedge e;
-		while (eItr.hasNext()) {
-			e = eItr.next();
-			final WB_Point p = new WB_Point(e.getEdgeNormal());
-			p.mulSelf(offset).addSelf(e.getHalfedgeCenter());
-			selectionOut.add(splitEdge(selection.parent, e, p));
-		}
-		selection.addHalfedges(selectionOut.getEdgesAsArray());
+		selection.parent.beginTransaction();
+		try {
+			selection.collectEdgesByFace();
+			final Iterator<HE_Halfedge> eItr = selection.heItr();
+			HE_Halfedge e;
+			while (eItr.hasNext()) {
+				e = eItr.next();
+				final WB_Point p = new WB_Point(e.getEdgeNormal());
+				p.mulSelf(offset).addSelf(e.getHalfedgeCenter());
+				selectionOut.add(splitEdge(selection.parent, e, p));
+			}
+			selection.addHalfedges(selectionOut.getEdgesAsArray());
+		} finally {
+			selection.parent.commitTransaction();
+		}
 		return selectionOut;
 	}
 
@@ -688,31 +709,354 @@ public class HET_MeshOp {
 	 */
 	public static HE_Selection splitFacesHybrid(final HE_Mesh mesh) {
 		final HE_Selection selectionOut = new HE_Selection(mesh);
-		final int n = mesh.getNumberOfFaces();
-		final WB_Coord[] faceCenters = new WB_Coord[n];
-		final int[] faceOrders = new int[n];
-		HE_Face f;
-		int i = 0;
-		final Iterator<HE_Face> fItr = mesh.fItr();
-		while (fItr.hasNext()) {
-			f = fItr.next();
-			faceCenters[i] = f.getFaceCenter();
-			faceOrders[i] = f.getFaceOrder();
-			i++;
-		}
-		final HE_Selection orig = new HE_Selection(mesh);
-		orig.addFaces(mesh.getFacesAsArray());
-		orig.collectVertices();
-		orig.collectEdgesByFace();
-		selectionOut.addVertices(splitEdges(mesh).getVerticesAsArray());
-		final HE_Face[] faces = mesh.getFacesAsArray();
-		HE_Vertex vi = new HE_Vertex();
-		int fo;
-		for (i = 0; i < n; i++) {
-			f = faces[i];
-			fo = f.getFaceOrder() / 2;
-			if (fo == 3) {
-				HE_Halfedge startHE = f.getHalfedge();
+		mesh.beginTransaction();
+		try {
+			final int n = mesh.getNumberOfFaces();
+			final WB_Coord[] faceCenters = new WB_Coord[n];
+			final int[] faceOrders = new int[n];
+			HE_Face f;
+			int i = 0;
+			final Iterator<HE_Face> fItr = mesh.fItr();
+			while (fItr.hasNext()) {
+				f = fItr.next();
+				faceCenters[i] = f.getFaceCenter();
+				faceOrders[i] = f.getFaceOrder();
+				i++;
+			}
+			final HE_Selection orig = new HE_Selection(mesh);
+			orig.addFaces(mesh.getFacesAsArray());
+			orig.collectVertices();
+			orig.collectEdgesByFace();
+			selectionOut.addVertices(splitEdges(mesh).getVerticesAsArray());
+			final HE_Face[] faces = mesh.getFacesAsArray();
+			HE_Vertex vi = new HE_Vertex();
+			int fo;
+			for (i = 0; i < n; i++) {
+				f = faces[i];
+				fo = f.getFaceOrder() / 2;
+				if (fo == 3) {
+					HE_Halfedge startHE = f.getHalfedge();
+					while (orig.contains(startHE.getVertex())) {
+						startHE = startHE.getNextInFace();
+					}
+					HE_Halfedge he = startHE;
+					final HE_Halfedge[] hec = new HE_Halfedge[faceOrders[i]];
+					final HE_Halfedge[] he0 = new HE_Halfedge[faceOrders[i]];
+					final HE_Halfedge[] he1 = new HE_Halfedge[faceOrders[i]];
+					final HE_Halfedge[] he2 = new HE_Halfedge[faceOrders[i]];
+					final HE_TextureCoordinate[] textures = new HE_TextureCoordinate[fo];
+					int c = 0;
+					do {
+						textures[c++] = he.hasUVW() ? he.getUVW() : null;
+						he = he.getNextInFace().getNextInFace();
+					} while (he != startHE);
+					c = 0;
+					do {
+						final HE_Face fn = new HE_Face();
+						fn.copyProperties(f);
+						mesh.add(fn);
+						he0[c] = he;
+						mesh.setFace(he, fn);
+						mesh.setHalfedge(fn, he);
+						he1[c] = he.getNextInFace();
+						he2[c] = new HE_Halfedge();
+						hec[c] = new HE_Halfedge();
+
+						mesh.setVertex(hec[c], he.getVertex());
+						if (textures[c] != null) {
+							hec[c].setUVW(textures[c]);
+						}
+						mesh.setPair(hec[c], he2[c]);
+
+						mesh.setFace(hec[c], f);
+						mesh.setVertex(he2[c], he.getNextInFace().getNextInFace().getVertex());
+						if (textures[(c + 1) % fo] != null) {
+							he2[c].setUVW(textures[(c + 1) % fo]);
+						}
+						mesh.setNext(he2[c], he0[c]);
+						mesh.setFace(he1[c], fn);
+						mesh.setFace(he2[c], fn);
+						mesh.add(he2[c]);
+						mesh.add(hec[c]);
+						c++;
+						he = he.getNextInFace().getNextInFace();
+					} while (he != startHE);
+					mesh.setHalfedge(f, hec[0]);
+					for (int j = 0; j < c; j++) {
+						mesh.setNext(he1[j], he2[j]);
+						mesh.setNext(hec[j], hec[(j + 1) % c]);
+					}
+				} else if (fo > 3) {
+					vi = new HE_Vertex(faceCenters[i]);
+					vi.setInternalLabel(2);
+					double u = 0;
+					double v = 0;
+					double w = 0;
+					HE_Halfedge he = f.getHalfedge();
+					boolean hasTexture = true;
+					do {
+						if (!he.getVertex().hasUVW(f)) {
+							hasTexture = false;
+							break;
+						}
+						u += he.getVertex().getUVW(f).ud();
+						v += he.getVertex().getUVW(f).vd();
+						w += he.getVertex().getUVW(f).wd();
+						he = he.getNextInFace();
+					} while (he != f.getHalfedge());
+					if (hasTexture) {
+						final double ifo = 1.0 / f.getFaceOrder();
+						vi.setUVW(u * ifo, v * ifo, w * ifo);
+					}
+					mesh.add(vi);
+					selectionOut.add(vi);
+					HE_Halfedge startHE = f.getHalfedge();
+					while (orig.contains(startHE.getVertex())) {
+						startHE = startHE.getNextInFace();
+					}
+					he = startHE;
+					final HE_Halfedge[] he0 = new HE_Halfedge[faceOrders[i]];
+					final HE_Halfedge[] he1 = new HE_Halfedge[faceOrders[i]];
+					final HE_Halfedge[] he2 = new HE_Halfedge[faceOrders[i]];
+					final HE_Halfedge[] he3 = new HE_Halfedge[faceOrders[i]];
+					int c = 0;
+					do {
+						HE_Face fc;
+						if (c == 0) {
+							fc = f;
+						} else {
+							fc = new HE_Face();
+							fc.copyProperties(f);
+							mesh.add(fc);
+						}
+						he0[c] = he;
+						mesh.setFace(he, fc);
+						mesh.setHalfedge(fc, he);
+						he1[c] = he.getNextInFace();
+						he2[c] = new HE_Halfedge();
+						he3[c] = new HE_Halfedge();
+						mesh.add(he2[c]);
+						mesh.add(he3[c]);
+						mesh.setVertex(he2[c], he.getNextInFace().getNextInFace().getVertex());
+						if (he2[c].getVertex().hasHalfedgeUVW(f)) {
+							he2[c].setUVW(he2[c].getVertex().getHalfedgeUVW(f));
+						}
+						mesh.setVertex(he3[c], vi);
+						mesh.setNext(he2[c], he3[c]);
+						mesh.setNext(he3[c], he);
+						mesh.setFace(he1[c], fc);
+						mesh.setFace(he2[c], fc);
+						mesh.setFace(he3[c], fc);
+						c++;
+						he = he.getNextInFace().getNextInFace();
+					} while (he != startHE);
+					mesh.setHalfedge(vi, he3[0]);
+					for (int j = 0; j < c; j++) {
+						mesh.setNext(he1[j], he2[j]);
+					}
+				}
+			}
+		} finally {
+			mesh.commitTransaction();
+		}
+		mesh.pairHalfedges();
+		return selectionOut;
+	}
+
+	/**
+	 * Hybrid split faces: midsplit for triangles, quad split otherwise.
+	 *
+	 * @param sel
+	 *            the sel
+	 * @return selection of new faces and new vertices
+	 */
+	public static HE_Selection splitFacesHybrid(final HE_Selection sel) {
+		final HE_Selection selectionOut = new HE_Selection(sel.parent);
+		sel.parent.beginTransaction();
+		try {
+			final int n = sel.getNumberOfFaces();
+			final WB_Coord[] faceCenters = new WB_Coord[n];
+			final int[] faceOrders = new int[n];
+			HE_Face f;
+			int i = 0;
+			final Iterator<HE_Face> fItr = sel.fItr();
+			while (fItr.hasNext()) {
+				f = fItr.next();
+				faceCenters[i] = f.getFaceCenter();
+				faceOrders[i] = f.getFaceOrder();
+				i++;
+			}
+			final HE_Selection orig = new HE_Selection(sel.parent);
+			orig.addFaces(sel.getFacesAsArray());
+			orig.collectVertices();
+			orig.collectEdgesByFace();
+			selectionOut.addVertices(splitEdges(sel.parent).getVerticesAsArray());
+			final HE_Face[] faces = sel.getFacesAsArray();
+			HE_Vertex vi = new HE_Vertex();
+			int fo;
+			for (i = 0; i < n; i++) {
+				f = faces[i];
+				fo = f.getFaceOrder() / 2;
+				if (fo == 3) {
+					HE_Halfedge startHE = f.getHalfedge();
+					while (orig.contains(startHE.getVertex())) {
+						startHE = startHE.getNextInFace();
+					}
+					HE_Halfedge he = startHE;
+					final HE_Halfedge[] hec = new HE_Halfedge[faceOrders[i]];
+					final HE_Halfedge[] he0 = new HE_Halfedge[faceOrders[i]];
+					final HE_Halfedge[] he1 = new HE_Halfedge[faceOrders[i]];
+					final HE_Halfedge[] he2 = new HE_Halfedge[faceOrders[i]];
+					final HE_TextureCoordinate[] textures = new HE_TextureCoordinate[fo];
+					int c = 0;
+					do {
+						textures[c++] = he.hasUVW() ? he.getUVW() : null;
+						he = he.getNextInFace().getNextInFace();
+					} while (he != startHE);
+					c = 0;
+					do {
+						final HE_Face fn = new HE_Face();
+						fn.copyProperties(f);
+						sel.parent.add(fn);
+						sel.add(fn);
+						he0[c] = he;
+						sel.parent.setFace(he, fn);
+						sel.parent.setHalfedge(fn, he);
+						he1[c] = he.getNextInFace();
+						he2[c] = new HE_Halfedge();
+						hec[c] = new HE_Halfedge();
+
+						sel.parent.setVertex(hec[c], he.getVertex());
+						if (textures[c] != null) {
+							hec[c].setUVW(textures[c]);
+						}
+						sel.parent.setPair(hec[c], he2[c]);
+
+						sel.parent.setFace(hec[c], f);
+						sel.parent.setVertex(he2[c], he.getNextInFace().getNextInFace().getVertex());
+						if (textures[(c + 1) % fo] != null) {
+							he2[c].setUVW(textures[(c + 1) % fo]);
+						}
+						sel.parent.setNext(he2[c], he0[c]);
+						sel.parent.setFace(he1[c], fn);
+						sel.parent.setFace(he2[c], fn);
+						sel.parent.add(he2[c]);
+						sel.parent.add(hec[c]);
+						c++;
+						he = he.getNextInFace().getNextInFace();
+					} while (he != startHE);
+					sel.parent.setHalfedge(f, hec[0]);
+					for (int j = 0; j < c; j++) {
+						sel.parent.setNext(he1[j], he2[j]);
+						sel.parent.setNext(hec[j], hec[(j + 1) % c]);
+					}
+				} else if (fo > 3) {
+					vi = new HE_Vertex(faceCenters[i]);
+					vi.setInternalLabel(2);
+					double u = 0;
+					double v = 0;
+					double w = 0;
+					HE_Halfedge he = f.getHalfedge();
+					boolean hasTexture = true;
+					do {
+						if (!he.getVertex().hasUVW(f)) {
+							hasTexture = false;
+							break;
+						}
+						u += he.getVertex().getUVW(f).ud();
+						v += he.getVertex().getUVW(f).vd();
+						w += he.getVertex().getUVW(f).wd();
+						he = he.getNextInFace();
+					} while (he != f.getHalfedge());
+					if (hasTexture) {
+						final double ifo = 1.0 / f.getFaceOrder();
+						vi.setUVW(u * ifo, v * ifo, w * ifo);
+					}
+					sel.parent.add(vi);
+					selectionOut.add(vi);
+					HE_Halfedge startHE = f.getHalfedge();
+					while (orig.contains(startHE.getVertex())) {
+						startHE = startHE.getNextInFace();
+					}
+					he = startHE;
+					final HE_Halfedge[] he0 = new HE_Halfedge[faceOrders[i]];
+					final HE_Halfedge[] he1 = new HE_Halfedge[faceOrders[i]];
+					final HE_Halfedge[] he2 = new HE_Halfedge[faceOrders[i]];
+					final HE_Halfedge[] he3 = new HE_Halfedge[faceOrders[i]];
+					int c = 0;
+					do {
+						HE_Face fc;
+						if (c == 0) {
+							fc = f;
+						} else {
+							fc = new HE_Face();
+							fc.copyProperties(f);
+							sel.parent.add(fc);
+							sel.add(fc);
+						}
+						he0[c] = he;
+						sel.parent.setFace(he, fc);
+						sel.parent.setHalfedge(fc, he);
+						he1[c] = he.getNextInFace();
+						he2[c] = new HE_Halfedge();
+						he3[c] = new HE_Halfedge();
+						sel.parent.add(he2[c]);
+						sel.parent.add(he3[c]);
+						sel.parent.setVertex(he2[c], he.getNextInFace().getNextInFace().getVertex());
+						if (he2[c].getVertex().hasHalfedgeUVW(f)) {
+							he2[c].setUVW(he2[c].getVertex().getHalfedgeUVW(f));
+						}
+						sel.parent.setVertex(he3[c], vi);
+						sel.parent.setNext(he2[c], he3[c]);
+						sel.parent.setNext(he3[c], he);
+						sel.parent.setFace(he1[c], fc);
+						sel.parent.setFace(he2[c], fc);
+						sel.parent.setFace(he3[c], fc);
+						c++;
+						he = he.getNextInFace().getNextInFace();
+					} while (he != startHE);
+					sel.parent.setHalfedge(vi, he3[0]);
+					for (int j = 0; j < c; j++) {
+						sel.parent.setNext(he1[j], he2[j]);
+					}
+				}
+			}
+		} finally {
+			sel.parent.commitTransaction();
+		}
+		sel.parent.pairHalfedges();
+		return selectionOut;
+	}
+
+	/**
+	 * Midedge split faces.
+	 *
+	 * @param mesh
+	 * @return selection of new faces and new vertices
+	 */
+	public static HE_Selection splitFacesMidEdge(final HE_Mesh mesh) {
+		final HE_Selection selectionOut = new HE_Selection(mesh);
+		mesh.beginTransaction();
+		try {
+			final int n = mesh.getNumberOfFaces();
+			final int[] faceOrders = new int[n];
+			HE_Face face;
+			int i = 0;
+			final Iterator<HE_Face> fItr = mesh.fItr();
+			while (fItr.hasNext()) {
+				face = fItr.next();
+				faceOrders[i] = face.getFaceOrder();
+				i++;
+			}
+			final HE_Selection orig = new HE_Selection(mesh);
+			orig.addFaces(mesh.getFacesAsArray());
+			orig.collectVertices();
+			orig.collectEdgesByFace();
+			selectionOut.addVertices(splitEdges(mesh).getVerticesAsArray());
+			final HE_Face[] faces = mesh.getFacesAsArray();
+			for (i = 0; i < n; i++) {
+				face = faces[i];
+				HE_Halfedge startHE = face.getHalfedge();
 				while (orig.contains(startHE.getVertex())) {
 					startHE = startHE.getNextInFace();
 				}
@@ -721,6 +1065,7 @@ public class HET_MeshOp {
 				final HE_Halfedge[] he0 = new HE_Halfedge[faceOrders[i]];
 				final HE_Halfedge[] he1 = new HE_Halfedge[faceOrders[i]];
 				final HE_Halfedge[] he2 = new HE_Halfedge[faceOrders[i]];
+				final int fo = face.getFaceOrder() / 2;
 				final HE_TextureCoordinate[] textures = new HE_TextureCoordinate[fo];
 				int c = 0;
 				do {
@@ -728,13 +1073,12 @@ public class HET_MeshOp {
 					he = he.getNextInFace().getNextInFace();
 				} while (he != startHE);
 				c = 0;
+				he = startHE;
 				do {
-					final HE_Face fn = new HE_Face();
-					fn.copyProperties(f);
-					mesh.add(fn);
+					final HE_Face f = new HE_Face();
+					f.copyProperties(face);
+					mesh.add(f);
 					he0[c] = he;
-					mesh.setFace(he, fn);
-					mesh.setHalfedge(fn, he);
 					he1[c] = he.getNextInFace();
 					he2[c] = new HE_Halfedge();
 					hec[c] = new HE_Halfedge();
@@ -744,133 +1088,150 @@ public class HET_MeshOp {
 						hec[c].setUVW(textures[c]);
 					}
 					mesh.setPair(hec[c], he2[c]);
-
-					mesh.setFace(hec[c], f);
+					mesh.setFace(hec[c], face);
 					mesh.setVertex(he2[c], he.getNextInFace().getNextInFace().getVertex());
 					if (textures[(c + 1) % fo] != null) {
 						he2[c].setUVW(textures[(c + 1) % fo]);
 					}
 					mesh.setNext(he2[c], he0[c]);
-					mesh.setFace(he1[c], fn);
-					mesh.setFace(he2[c], fn);
+					mesh.setFace(he0[c], f);
+					mesh.setHalfedge(f, he0[c]);
+					mesh.setFace(he1[c], f);
+					mesh.setFace(he2[c], f);
 					mesh.add(he2[c]);
 					mesh.add(hec[c]);
 					c++;
 					he = he.getNextInFace().getNextInFace();
 				} while (he != startHE);
-				mesh.setHalfedge(f, hec[0]);
+				mesh.setHalfedge(face, hec[0]);
 				for (int j = 0; j < c; j++) {
 					mesh.setNext(he1[j], he2[j]);
 					mesh.setNext(hec[j], hec[(j + 1) % c]);
 				}
-			} else if (fo > 3) {
-				vi = new HE_Vertex(faceCenters[i]);
-				vi.setInternalLabel(2);
-				double u = 0;
-				double v = 0;
-				double w = 0;
-				HE_Halfedge he = f.getHalfedge();
-				boolean hasTexture = true;
-				do {
-					if (!he.getVertex().hasUVW(f)) {
-						hasTexture = false;
-						break;
-					}
-					u += he.getVertex().getUVW(f).ud();
-					v += he.getVertex().getUVW(f).vd();
-					w += he.getVertex().getUVW(f).wd();
-					he = he.getNextInFace();
-				} while (he != f.getHalfedge());
-				if (hasTexture) {
-					final double ifo = 1.0 / f.getFaceOrder();
-					vi.setUVW(u * ifo, v * ifo, w * ifo);
-				}
-				mesh.add(vi);
-				selectionOut.add(vi);
-				HE_Halfedge startHE = f.getHalfedge();
+			}
+		} finally {
+			mesh.commitTransaction();
+		}
+		return selectionOut;
+	}
+
+	/**
+	 * Mid edge split selected faces.
+	 *
+	 * @param selection
+	 *            selection to split
+	 * @return selection of new faces and new vertices
+	 */
+	public static HE_Selection splitFacesMidEdge(final HE_Selection selection) {
+		final HE_Selection selectionOut = new HE_Selection(selection.parent);
+		selection.parent.beginTransaction();
+		try {
+			final int n = selection.getNumberOfFaces();
+			final int[] faceOrders = new int[n];
+			HE_Face face;
+			final Iterator<HE_Face> fItr = selection.fItr();
+			int i = 0;
+			while (fItr.hasNext()) {
+				face = fItr.next();
+				faceOrders[i] = face.getFaceOrder();
+				i++;
+			}
+			final HE_Selection orig = new HE_Selection(selection.parent);
+			orig.addFaces(selection.getFacesAsArray());
+			orig.collectVertices();
+			orig.collectEdgesByFace();
+			selectionOut.addVertices(HET_MeshOp.splitEdges(orig).getVerticesAsArray());
+			final HE_Face[] faces = selection.getFacesAsArray();
+			for (i = 0; i < n; i++) {
+				face = faces[i];
+				HE_Halfedge startHE = face.getHalfedge();
 				while (orig.contains(startHE.getVertex())) {
 					startHE = startHE.getNextInFace();
 				}
-				he = startHE;
+				HE_Halfedge he = startHE;
+				final HE_Halfedge[] hec = new HE_Halfedge[faceOrders[i]];
 				final HE_Halfedge[] he0 = new HE_Halfedge[faceOrders[i]];
 				final HE_Halfedge[] he1 = new HE_Halfedge[faceOrders[i]];
 				final HE_Halfedge[] he2 = new HE_Halfedge[faceOrders[i]];
-				final HE_Halfedge[] he3 = new HE_Halfedge[faceOrders[i]];
+				final int fo = face.getFaceOrder() / 2;
+				final HE_TextureCoordinate[] textures = new HE_TextureCoordinate[fo];
 				int c = 0;
 				do {
-					HE_Face fc;
-					if (c == 0) {
-						fc = f;
-					} else {
-						fc = new HE_Face();
-						fc.copyProperties(f);
-						mesh.add(fc);
-					}
+					textures[c++] = he.hasUVW() ? he.getUVW() : null;
+					he = he.getNextInFace().getNextInFace();
+				} while (he != startHE);
+				c = 0;
+				do {
+					final HE_Face f = new HE_Face();
+					selection.parent.add(f);
+					f.copyProperties(face);
+					selection.add(f);
 					he0[c] = he;
-					mesh.setFace(he, fc);
-					mesh.setHalfedge(fc, he);
+					selection.parent.setFace(he, f);
+					selection.parent.setHalfedge(f, he);
 					he1[c] = he.getNextInFace();
 					he2[c] = new HE_Halfedge();
-					he3[c] = new HE_Halfedge();
-					mesh.add(he2[c]);
-					mesh.add(he3[c]);
-					mesh.setVertex(he2[c], he.getNextInFace().getNextInFace().getVertex());
-					if (he2[c].getVertex().hasHalfedgeUVW(f)) {
-						he2[c].setUVW(he2[c].getVertex().getHalfedgeUVW(f));
+					hec[c] = new HE_Halfedge();
+
+					selection.parent.setVertex(hec[c], he.getVertex());
+					if (textures[c] != null) {
+						hec[c].setUVW(textures[c]);
+					}
+					selection.parent.setPair(hec[c], he2[c]);
+					selection.parent.setFace(hec[c], face);
+					selection.parent.setVertex(he2[c], he.getNextInFace().getNextInFace().getVertex());
+					if (textures[(c + 1) % fo] != null) {
+						he2[c].setUVW(textures[(c + 1) % fo]);
 					}
-					mesh.setVertex(he3[c], vi);
-					mesh.setNext(he2[c], he3[c]);
-					mesh.setNext(he3[c], he);
-					mesh.setFace(he1[c], fc);
-					mesh.setFace(he2[c], fc);
-					mesh.setFace(he3[c], fc);
+					selection.parent.setNext(he2[c], he0[c]);
+					selection.parent.setFace(he1[c], f);
+					selection.parent.setFace(he2[c], f);
+					selection.parent.add(he2[c]);
+					selection.parent.add(hec[c]);
 					c++;
 					he = he.getNextInFace().getNextInFace();
 				} while (he != startHE);
-				mesh.setHalfedge(vi, he3[0]);
+				selection.parent.setHalfedge(face, hec[0]);
 				for (int j = 0; j < c; j++) {
-					mesh.setNext(he1[j], he2[j]);
+					selection.parent.setNext(he1[j], he2[j]);
+					selection.parent.setNext(hec[j], hec[(j + 1) % c]);
 				}
 			}
+		} finally {
+			selection.parent.commitTransaction();
 		}
-		mesh.pairHalfedges();
 		return selectionOut;
 	}
 
 	/**
-	 * Hybrid split faces: midsplit for triangles, quad split otherwise.
+	 * Mid edge split faces.
 	 *
-	 * @param sel
-	 *            the sel
+	 * @param mesh
 	 * @return selection of new faces and new vertices
 	 */
-	public static HE_Selection splitFacesHybrid(final HE_Selection sel) {
-		final HE_Selection selectionOut = new HE_Selection(sel.parent);
-		final int n = sel.getNumberOfFaces();
-		final WB_Coord[] faceCenters = new WB_Coord[n];
-		final int[] faceOrders = new int[n];
-		HE_Face f;
-		int i = 0;
-		final Iterator<HE_Face> fItr = sel.fItr();
-		while (fItr.hasNext()) {
-			f = fItr.next();
-			faceCenters[i] = f.getFaceCenter();
-			faceOrders[i] = f.getFaceOrder();
-			i++;
-		}
-		final HE_Selection orig = new HE_Selection(sel.parent);
-		orig.addFaces(sel.getFacesAsArray());
-		orig.collectVertices();
-		orig.collectEdgesByFace();
-		selectionOut.addVertices(splitEdges(sel.parent).getVerticesAsArray());
-		final HE_Face[] faces = sel.getFacesAsArray();
-		HE_Vertex vi = new HE_Vertex();
-		int fo;
-		for (i = 0; i < n; i++) {
-			f = faces[i];
-			fo = f.getFaceOrder() / 2;
-			if (fo == 3) {
-				HE_Halfedge startHE = f.getHalfedge();
+	public static HE_Selection splitFacesMidEdgeHole(final HE_Mesh mesh) {
+		final HE_Selection selectionOut = new HE_Selection(mesh);
+		mesh.beginTransaction();
+		try {
+			final int n = mesh.getNumberOfFaces();
+			final int[] faceOrders = new int[n];
+			HE_Face face;
+			int i = 0;
+			final Iterator<HE_Face> fItr = mesh.fItr();
+			while (fItr.hasNext()) {
+				face = fItr.next();
+				faceOrders[i] = face.getFaceOrder();
+				i++;
+			}
+			final HE_Selection orig = new HE_Selection(mesh);
+			orig.addFaces(mesh.getFacesAsArray());
+			orig.collectVertices();
+			orig.collectEdgesByFace();
+			selectionOut.addVertices(splitEdges(mesh).getVerticesAsArray());
+			final HE_Face[] faces = mesh.getFacesAsArray();
+			for (i = 0; i < n; i++) {
+				face = faces[i];
+				HE_Halfedge startHE = face.getHalfedge();
 				while (orig.contains(startHE.getVertex())) {
 					startHE = startHE.getNextInFace();
 				}
@@ -879,6 +1240,7 @@ public class HET_MeshOp {
 				final HE_Halfedge[] he0 = new HE_Halfedge[faceOrders[i]];
 				final HE_Halfedge[] he1 = new HE_Halfedge[faceOrders[i]];
 				final HE_Halfedge[] he2 = new HE_Halfedge[faceOrders[i]];
+				final int fo = face.getFaceOrder() / 2;
 				final HE_TextureCoordinate[] textures = new HE_TextureCoordinate[fo];
 				int c = 0;
 				do {
@@ -887,442 +1249,131 @@ public class HET_MeshOp {
 				} while (he != startHE);
 				c = 0;
 				do {
-					final HE_Face fn = new HE_Face();
-					fn.copyProperties(f);
-					sel.parent.add(fn);
-					sel.add(fn);
+					final HE_Face f = new HE_Face();
+					f.copyProperties(face);
+					mesh.add(f);
 					he0[c] = he;
-					sel.parent.setFace(he, fn);
-					sel.parent.setHalfedge(fn, he);
+					mesh.setFace(he, f);
+					mesh.setHalfedge(f, he);
 					he1[c] = he.getNextInFace();
 					he2[c] = new HE_Halfedge();
 					hec[c] = new HE_Halfedge();
 
-					sel.parent.setVertex(hec[c], he.getVertex());
+					mesh.setVertex(hec[c], he.getVertex());
 					if (textures[c] != null) {
 						hec[c].setUVW(textures[c]);
 					}
-					sel.parent.setPair(hec[c], he2[c]);
-
-					sel.parent.setFace(hec[c], f);
-					sel.parent.setVertex(he2[c], he.getNextInFace().getNextInFace().getVertex());
+					mesh.setPair(hec[c], he2[c]);
+					mesh.setFace(hec[c], face);
+					mesh.setVertex(he2[c], he.getNextInFace().getNextInFace().getVertex());
 					if (textures[(c + 1) % fo] != null) {
 						he2[c].setUVW(textures[(c + 1) % fo]);
 					}
-					sel.parent.setNext(he2[c], he0[c]);
-					sel.parent.setFace(he1[c], fn);
-					sel.parent.setFace(he2[c], fn);
-					sel.parent.add(he2[c]);
-					sel.parent.add(hec[c]);
+					mesh.setNext(he2[c], he0[c]);
+					mesh.setFace(he1[c], f);
+					mesh.setFace(he2[c], f);
+					mesh.add(he2[c]);
+					mesh.add(hec[c]);
 					c++;
 					he = he.getNextInFace().getNextInFace();
 				} while (he != startHE);
-				sel.parent.setHalfedge(f, hec[0]);
+				mesh.setHalfedge(face, hec[0]);
 				for (int j = 0; j < c; j++) {
-					sel.parent.setNext(he1[j], he2[j]);
-					sel.parent.setNext(hec[j], hec[(j + 1) % c]);
-				}
-			} else if (fo > 3) {
-				vi = new HE_Vertex(faceCenters[i]);
-				vi.setInternalLabel(2);
-				double u = 0;
-				double v = 0;
-				double w = 0;
-				HE_Halfedge he = f.getHalfedge();
-				boolean hasTexture = true;
-				do {
-					if (!he.getVertex().hasUVW(f)) {
-						hasTexture = false;
-						break;
-					}
-					u += he.getVertex().getUVW(f).ud();
-					v += he.getVertex().getUVW(f).vd();
-					w += he.getVertex().getUVW(f).wd();
-					he = he.getNextInFace();
-				} while (he != f.getHalfedge());
-				if (hasTexture) {
-					final double ifo = 1.0 / f.getFaceOrder();
-					vi.setUVW(u * ifo, v * ifo, w * ifo);
+					mesh.setNext(he1[j], he2[j]);
+					mesh.setNext(hec[j], hec[(j + 1) % c]);
 				}
-				sel.parent.add(vi);
-				selectionOut.add(vi);
-				HE_Halfedge startHE = f.getHalfedge();
+				mesh.deleteFace(face);
+			}
+		} finally {
+			mesh.commitTransaction();
+		}
+		return selectionOut;
+	}
+
+	/**
+	 *
+	 *
+	 * @param selection
+	 * @return
+	 */
+	public static HE_Selection splitFacesMidEdgeHole(final HE_Selection selection) {
+		final HE_Selection selectionOut = new HE_Selection(selection.parent);
+		selection.parent.beginTransaction();
+		try {
+			final int n = selection.getNumberOfFaces();
+			final int[] faceOrders = new int[n];
+			HE_Face face;
+			final Iterator<HE_Face> fItr = selection.fItr();
+			int i = 0;
+			while (fItr.hasNext()) {
+				face = fItr.next();
+				faceOrders[i] = face.getFaceOrder();
+				i++;
+			}
+			final HE_Selection orig = new HE_Selection(selection.parent);
+			orig.addFaces(selection.getFacesAsArray());
+			orig.collectVertices();
+			orig.collectEdgesByFace();
+			selectionOut.addVertices(splitEdges(orig).getVerticesAsArray());
+			final HE_Face[] faces = selection.getFacesAsArray();
+			for (i = 0; i < n; i++) {
+				face = faces[i];
+				HE_Halfedge startHE = face.getHalfedge();
 				while (orig.contains(startHE.getVertex())) {
 					startHE = startHE.getNextInFace();
 				}
-				he = startHE;
+				HE_Halfedge he = startHE;
+				final HE_Halfedge[] hec = new HE_Halfedge[faceOrders[i]];
 				final HE_Halfedge[] he0 = new HE_Halfedge[faceOrders[i]];
 				final HE_Halfedge[] he1 = new HE_Halfedge[faceOrders[i]];
 				final HE_Halfedge[] he2 = new HE_Halfedge[faceOrders[i]];
-				final HE_Halfedge[] he3 = new HE_Halfedge[faceOrders[i]];
+				final int fo = face.getFaceOrder() / 2;
+				final HE_TextureCoordinate[] textures = new HE_TextureCoordinate[fo];
 				int c = 0;
 				do {
-					HE_Face fc;
-					if (c == 0) {
-						fc = f;
-					} else {
-						fc = new HE_Face();
-						fc.copyProperties(f);
-						sel.parent.add(fc);
-						sel.add(fc);
-					}
+					textures[c++] = he.hasUVW() ? he.getUVW() : null;
+					he = he.getNextInFace().getNextInFace();
+				} while (he != startHE);
+				c = 0;
+				do {
+					final HE_Face f = new HE_Face();
+					selection.parent.add(f);
+					f.copyProperties(face);
+					selection.add(f);
 					he0[c] = he;
-					sel.parent.setFace(he, fc);
-					sel.parent.setHalfedge(fc, he);
+					selection.parent.setFace(he, f);
+					selection.parent.setHalfedge(f, he);
 					he1[c] = he.getNextInFace();
 					he2[c] = new HE_Halfedge();
-					he3[c] = new HE_Halfedge();
-					sel.parent.add(he2[c]);
-					sel.parent.add(he3[c]);
-					sel.parent.setVertex(he2[c], he.getNextInFace().getNextInFace().getVertex());
-					if (he2[c].getVertex().hasHalfedgeUVW(f)) {
-						he2[c].setUVW(he2[c].getVertex().getHalfedgeUVW(f));
+					hec[c] = new HE_Halfedge();
+
+					selection.parent.setVertex(hec[c], he.getVertex());
+					if (textures[c] != null) {
+						hec[c].setUVW(textures[c]);
+					}
+					selection.parent.setPair(hec[c], he2[c]);
+					selection.parent.setFace(hec[c], face);
+					selection.parent.setVertex(he2[c], he.getNextInFace().getNextInFace().getVertex());
+					if (textures[(c + 1) % fo] != null) {
+						he2[c].setUVW(textures[(c + 1) % fo]);
 					}
-					sel.parent.setVertex(he3[c], vi);
-					sel.parent.setNext(he2[c], he3[c]);
-					sel.parent.setNext(he3[c], he);
-					sel.parent.setFace(he1[c], fc);
-					sel.parent.setFace(he2[c], fc);
-					sel.parent.setFace(he3[c], fc);
+					selection.parent.setNext(he2[c], he0[c]);
+					selection.parent.setFace(he1[c], f);
+					selection.parent.setFace(he2[c], f);
+					selection.parent.add(he2[c]);
+					selection.parent.add(hec[c]);
 					c++;
 					he = he.getNextInFace().getNextInFace();
 				} while (he != startHE);
-				sel.parent.setHalfedge(vi, he3[0]);
+				selection.parent.setHalfedge(face, hec[0]);
 				for (int j = 0; j < c; j++) {
-					sel.parent.setNext(he1[j], he2[j]);
-				}
-			}
-		}
-		sel.parent.pairHalfedges();
-		return selectionOut;
-	}
-
-	/**
-	 * Midedge split faces.
-	 *
-	 * @param mesh
-	 * @return selection of new faces and new vertices
-	 */
-	public static HE_Selection splitFacesMidEdge(final HE_Mesh mesh) {
-		final HE_Selection selectionOut = new HE_Selection(mesh);
-		final int n = mesh.getNumberOfFaces();
-		final int[] faceOrders = new int[n];
-		HE_Face face;
-		int i = 0;
-		final Iterator<HE_Face> fItr = mesh.fItr();
-		while (fItr.hasNext()) {
-			face = fItr.next();
-			faceOrders[i] = face.getFaceOrder();
-			i++;
-		}
-		final HE_Selection orig = new HE_Selection(mesh);
-		orig.addFaces(mesh.getFacesAsArray());
-		orig.collectVertices();
-		orig.collectEdgesByFace();
-		selectionOut.addVertices(splitEdges(mesh).getVerticesAsArray());
-		final HE_Face[] faces = mesh.getFacesAsArray();
-		for (i = 0; i < n; i++) {
-			face = faces[i];
-			HE_Halfedge startHE = face.getHalfedge();
-			while (orig.contains(startHE.getVertex())) {
-				startHE = startHE.getNextInFace();
-			}
-			HE_Halfedge he = startHE;
-			final HE_Halfedge[] hec = new HE_Halfedge[faceOrders[i]];
-			final HE_Halfedge[] he0 = new HE_Halfedge[faceOrders[i]];
-			final HE_Halfedge[] he1 = new HE_Halfedge[faceOrders[i]];
-			final HE_Halfedge[] he2 = new HE_Halfedge[faceOrders[i]];
-			final int fo = face.getFaceOrder() / 2;
-			final HE_TextureCoordinate[] textures = new HE_TextureCoordinate[fo];
-			int c = 0;
-			do {
-				textures[c++] = he.hasUVW() ? he.getUVW() : null;
-				he = he.getNextInFace().getNextInFace();
-			} while (he != startHE);
-			c = 0;
-			he = startHE;
-			do {
-				final HE_Face f = new HE_Face();
-				f.copyProperties(face);
-				mesh.add(f);
-				he0[c] = he;
-				he1[c] = he.getNextInFace();
-				he2[c] = new HE_Halfedge();
-				hec[c] = new HE_Halfedge();
-
-				mesh.setVertex(hec[c], he.getVertex());
-				if (textures[c] != null) {
-					hec[c].setUVW(textures[c]);
-				}
-				mesh.setPair(hec[c], he2[c]);
-				mesh.setFace(hec[c], face);
-				mesh.setVertex(he2[c], he.getNextInFace().getNextInFace().getVertex());
-				if (textures[(c + 1) % fo] != null) {
-					he2[c].setUVW(textures[(c + 1) % fo]);
+					selection.parent.setNext(he1[j], he2[j]);
+					selection.parent.setNext(hec[j], hec[(j + 1) % c]);
 				}
-				mesh.setNext(he2[c], he0[c]);
-				mesh.setFace(he0[c], f);
-				mesh.setHalfedge(f, he0[c]);
-				mesh.setFace(he1[c], f);
-				mesh.setFace(he2[c], f);
-				mesh.add(he2[c]);
-				mesh.add(hec[c]);
-				c++;
-				he = he.getNextInFace().getNextInFace();
-			} while (he != startHE);
-			mesh.setHalfedge(face, hec[0]);
-			for (int j = 0; j < c; j++) {
-				mesh.setNext(he1[j], he2[j]);
-				mesh.setNext(hec[j], hec[(j + 1) % c]);
+				selection.parent.deleteFace(face);
 			}
-		}
-		return selectionOut;
-	}
-
-	/**
-	 * Mid edge split selected faces.
-	 *
-	 * @param selection
-	 *            selection to split
-	 * @return selection of new faces and new vertices
-	 */
-	public static HE_Selection splitFacesMidEdge(final HE_Selection selection) {
-		final HE_Selection selectionOut = new HE_Selection(selection.parent);
-		final int n = selection.getNumberOfFaces();
-		final int[] faceOrders = new int[n];
-		HE_Face face;
-		final Iterator<HE_Face> fItr = selection.fItr();
-		int i = 0;
-		while (fItr.hasNext()) {
-			face = fItr.next();
-			faceOrders[i] = face.getFaceOrder();
-			i++;
-		}
-		final HE_Selection orig = new HE_Selection(selection.parent);
-		orig.addFaces(selection.getFacesAsArray());
-		orig.collectVertices();
-		orig.collectEdgesByFace();
-		selectionOut.addVertices(HET_MeshOp.splitEdges(orig).getVerticesAsArray());
-		final HE_Face[] faces = selection.getFacesAsArray();
-		for (i = 0; i < n; i++) {
-			face = faces[i];
-			HE_Halfedge startHE = face.getHalfedge();
-			while (orig.contains(startHE.getVertex())) {
-				startHE = startHE.getNextInFace();
-			}
-			HE_Halfedge he = startHE;
-			final HE_Halfedge[] hec = new HE_Halfedge[faceOrders[i]];
-			final HE_Halfedge[] he0 = new HE_Halfedge[faceOrders[i]];
-			final HE_Halfedge[] he1 = new HE_Halfedge[faceOrders[i]];
-			final HE_Halfedge[] he2 = new HE_Halfedge[faceOrders[i]];
-			final int fo = face.getFaceOrder() / 2;
-			final HE_TextureCoordinate[] textures = new HE_TextureCoordinate[fo];
-			int c = 0;
-			do {
-				textures[c++] = he.hasUVW() ? he.getUVW() : null;
-				he = he.getNextInFace().getNextInFace();
-			} while (he != startHE);
-			c = 0;
-			do {
-				final HE_Face f = new HE_Face();
-				selection.parent.add(f);
-				f.copyProperties(face);
-				selection.add(f);
-				he0[c] = he;
-				selection.parent.setFace(he, f);
-				selection.parent.setHalfedge(f, he);
-				he1[c] = he.getNextInFace();
-				he2[c] = new HE_Halfedge();
-				hec[c] = new HE_Halfedge();
-
-				selection.parent.setVertex(hec[c], he.getVertex());
-				if (textures[c] != null) {
-					hec[c].setUVW(textures[c]);
-				}
-				selection.parent.setPair(hec[c], he2[c]);
-				selection.parent.setFace(hec[c], face);
-				selection.parent.setVertex(he2[c], he.getNextInFace().getNextInFace().getVertex());
-				if (textures[(c + 1) % fo] != null) {
-					he2[c].setUVW(textures[(c + 1) % fo]);
-				}
-				selection.parent.setNext(he2[c], he0[c]);
-				selection.parent.setFace(he1[c], f);
-				selection.parent.setFace(he2[c], f);
-				selection.parent.add(he2[c]);
-				selection.parent.add(hec[c]);
-				c++;
-				he = he.getNextInFace().getNextInFace();
-			} while (he != startHE);
-			selection.parent.setHalfedge(face, hec[0]);
-			for (int j = 0; j < c; j++) {
-				selection.parent.setNext(he1[j], he2[j]);
-				selection.parent.setNext(hec[j], hec[(j + 1) % c]);
-			}
-		}
-		return selectionOut;
-	}
-
-	/**
-	 * Mid edge split faces.
-	 *
-	 * @param mesh
-	 * @return selection of new faces and new vertices
-	 */
-	public static HE_Selection splitFacesMidEdgeHole(final HE_Mesh mesh) {
-		final HE_Selection selectionOut = new HE_Selection(mesh);
-		final int n = mesh.getNumberOfFaces();
-		final int[] faceOrders = new int[n];
-		HE_Face face;
-		int i = 0;
-		final Iterator<HE_Face> fItr = mesh.fItr();
-		while (fItr.hasNext()) {
-			face = fItr.next();
-			faceOrders[i] = face.getFaceOrder();
-			i++;
-		}
-		final HE_Selection orig = new HE_Selection(mesh);
-		orig.addFaces(mesh.getFacesAsArray());
-		orig.collectVertices();
-		orig.collectEdgesByFace();
-		selectionOut.addVertices(splitEdges(mesh).getVerticesAsArray());
-		final HE_Face[] faces = mesh.getFacesAsArray();
-		for (i = 0; i < n; i++) {
-			face = faces[i];
-			HE_Halfedge startHE = face.getHalfedge();
-			while (orig.contains(startHE.getVertex())) {
-				startHE = startHE.getNextInFace();
-			}
-			HE_Halfedge he = startHE;
-			final HE_Halfedge[] hec = new HE_Halfedge[faceOrders[i]];
-			final HE_Halfedge[] he0 = new HE_Halfedge[faceOrders[i]];
-			final HE_Halfedge[] he1 = new HE_Halfedge[faceOrders[i]];
-			final HE_Halfedge[] he2 = new HE_Halfedge[faceOrders[i]];
-			final int fo = face.getFaceOrder() / 2;
-			final HE_TextureCoordinate[] textures = new HE_TextureCoordinate[fo];
-			int c = 0;
-			do {
-				textures[c++] = he.hasUVW() ? he.getUVW() : null;
-				he = he.getNextInFace().getNextInFace();
-			} while (he != startHE);
-			c = 0;
-			do {
-				final HE_Face f = new HE_Face();
-				f.copyProperties(face);
-				mesh.add(f);
-				he0[c] = he;
-				mesh.setFace(he, f);
-				mesh.setHalfedge(f, he);
-				he1[c] = he.getNextInFace();
-				he2[c] = new HE_Halfedge();
-				hec[c] = new HE_Halfedge();
-
-				mesh.setVertex(hec[c], he.getVertex());
-				if (textures[c] != null) {
-					hec[c].setUVW(textures[c]);
-				}
-				mesh.setPair(hec[c], he2[c]);
-				mesh.setFace(hec[c], face);
-				mesh.setVertex(he2[c], he.getNextInFace().getNextInFace().getVertex());
-				if (textures[(c + 1) % fo] != null) {
-					he2[c].setUVW(textures[(c + 1) % fo]);
-				}
-				mesh.setNext(he2[c], he0[c]);
-				mesh.setFace(he1[c], f);
-				mesh.setFace(he2[c], f);
-				mesh.add(he2[c]);
-				mesh.add(hec[c]);
-				c++;
-				he = he.getNextInFace().getNextInFace();
-			} while (he != startHE);
-			mesh.setHalfedge(face, hec[0]);
-			for (int j = 0; j < c; j++) {
-				mesh.setNext(he1[j], he2[j]);
-				mesh.setNext(hec[j], hec[(j + 1) % c]);
-			}
-			mesh.deleteFace(face);
-		}
-		return selectionOut;
-	}
-
-	/**
-	 *
-	 *
-	 * @param selection
-	 * @return
-	 */
-	public static HE_Selection splitFacesMidEdgeHole(final HE_Selection selection) {
-		final HE_Selection selectionOut = new HE_Selection(selection.parent);
-		final int n = selection.getNumberOfFaces();
-		final int[] faceOrders = new int[n];
-		HE_Face face;
-		final Iterator<HE_Face> fItr = selection.fItr();
-		int i = 0;
-		while (fItr.hasNext()) {
-			face = fItr.next();
-			faceOrders[i] = face.getFaceOrder();
-			i++;
-		}
-		final HE_Selection orig = new HE_Selection(selection.parent);
-		orig.addFaces(selection.getFacesAsArray());
-		orig.collectVertices();
-		orig.collectEdgesByFace();
-		selectionOut.addVertices(splitEdges(orig).getVerticesAsArray());
-		final HE_Face[] faces = selection.getFacesAsArray();
-		for (i = 0; i < n; i++) {
-			face = faces[i];
-			HE_Halfedge startHE = face.getHalfedge();
-			while (orig.contains(startHE.getVertex())) {
-				startHE = startHE.getNextInFace();
-			}
-			HE_Halfedge he = startHE;
-			final HE_Halfedge[] hec = new HE_Halfedge[faceOrders[i]];
-			final HE_Halfedge[] he0 = new HE_Halfedge[faceOrders[i]];
-			final HE_Halfedge[] he1 = new HE_Halfedge[faceOrders[i]];
-			final HE_Halfedge[] he2 = new HE_Halfedge[faceOrders[i]];
-			final int fo = face.getFaceOrder() / 2;
-			final HE_TextureCoordinate[] textures = new HE_TextureCoordinate[fo];
-			int c = 0;
-			do {
-				textures[c++] = he.hasUVW() ? he.getUVW() : null;
-				he = he.getNextInFace().getNextInFace();
-			} while (he != startHE);
-			c = 0;
-			do {
-				final HE_Face f = new HE_Face();
-				selection.parent.add(f);
-				f.copyProperties(face);
-				selection.add(f);
-				he0[c] = he;
-				selection.parent.setFace(he, f);
-				selection.parent.setHalfedge(f, he);
-				he1[c] = he.getNextInFace();
-				he2[c] = new HE_Halfedge();
-				hec[c] = new HE_Halfedge();
-
-				selection.parent.setVertex(hec[c], he.getVertex());
-				if (textures[c] != null) {
-					hec[c].setUVW(textures[c]);
-				}
-				selection.parent.setPair(hec[c], he2[c]);
-				selection.parent.setFace(hec[c], face);
-				selection.parent.setVertex(he2[c], he.getNextInFace().getNextInFace().getVertex());
-				if (textures[(c + 1) % fo] != null) {
-					he2[c].setUVW(textures[(c + 1) % fo]);
-				}
-				selection.parent.setNext(he2[c], he0[c]);
-				selection.parent.setFace(he1[c], f);
-				selection.parent.setFace(he2[c], f);
-				selection.parent.add(he2[c]);
-				selection.parent.add(hec[c]);
-				c++;
-				he = he.getNextInFace().getNextInFace();
-			} while (he != startHE);
-			selection.parent.setHalfedge(face, hec[0]);
-			for (int j = 0; j < c; j++) {
-				selection.parent.setNext(he1[j], he2[j]);
-				selection.parent.setNext(hec[j], hec[(j + 1) % c]);
-			}
-			selection.parent.deleteFace(face);
+		} finally {
+			selection.parent.commitTransaction();
 		}
 		return selectionOut;
 	}
@@ -1643,9 +1694,6 @@ public class HET_MeshOp {
 		if (mesh == null || hes == null) {
 			return newFaces;
 		}
-		for (final HE_Halfedge he : hes) {
-			he.clearVisited();
-		}
 		for (final HE_Halfedge he : hes) {
 			if (he.getFace() != null) {
 				continue;
@@ -1658,9 +1706,6 @@ public class HET_MeshOp {
 			mesh.setHalfedge(newFace, he);
 			do {
 				mesh.setFace(hen, newFace);
-				if (hes.contains(hen)) {
-					hen.setVisited();
-				}
 				hen = hen.getNextInFace();
 			} while (hen != he);
 			mesh.add(newFace);
@@ -1684,13 +1729,10 @@ public class HET_MeshOp {
 		if (face == null) {
 			return faces;
 		}
-		final HE_FaceIterator fitr = mesh.fItr();
-		while (fitr.hasNext()) {
-			fitr.next().clearVisited();
-		}
+		final HE_Traversal traversal = mesh.beginTraversal();
 		final HE_RAS<HE_Face> facesToCheck = new HE_RAS.HE_RASTrove<HE_Face>();
 		facesToCheck.add(face);
-		face.setVisited();
+		traversal.mark(face);
 		HE_Halfedge he;
 		HE_Face neighbor;
 		do {
@@ -1702,13 +1744,13 @@ public class HET_MeshOp {
 				he = heitr.next();
 				if (he.getPair() != null) {
 					neighbor = he.getPair().getFace();
-					if (neighbor != null && !neighbor.isVisited()) {
+					if (neighbor != null && traversal.mark(neighbor)) {
 						facesToCheck.add(neighbor);
-						neighbor.setVisited();
 					}
 				}
 			}
 		} while (facesToCheck.size() > 0);
+		traversal.end();
 		return faces;
 	}
 
@@ -2107,7 +2149,7 @@ public class HET_MeshOp {
 
 	public static boolean isInside(final HE_Mesh mesh, final WB_Coord p) {
 
-		return isInside(new WB_AABBTree(mesh, 1), p);
+		return isInside(new WB_BVH(mesh), p);
 	}
 
 	public static boolean isInside(final WB_AABBTree tree, final WB_Coord p) {
@@ -2460,6 +2502,340 @@ public class HET_MeshOp {
 		return p;
 	}
 
+	/**
+	 *
+	 *
+	 * @param bvh
+	 * @param ray
+	 * @return
+	 */
+	public static List<HE_FaceIntersection> getIntersection(final WB_BVH bvh, final WB_Ray ray) {
+		final List<HE_FaceIntersection> p = new FastTable<HE_FaceIntersection>();
+		for (final HE_Face face : bvh.getFaces(ray)) {
+			final HE_FaceIntersection sect = getIntersection(face, ray);
+			if (sect != null) {
+				p.add(sect);
+			}
+		}
+		return p;
+	}
+
+	/**
+	 *
+	 *
+	 * @param bvh
+	 * @param segment
+	 * @return
+	 */
+	public static List<HE_FaceIntersection> getIntersection(final WB_BVH bvh, final WB_Segment segment) {
+		final List<HE_FaceIntersection> p = new FastTable<HE_FaceIntersection>();
+		for (final HE_Face face : bvh.getFaces(segment)) {
+			final HE_FaceIntersection sect = getIntersection(face, segment);
+			if (sect != null) {
+				p.add(sect);
+			}
+		}
+		return p;
+	}
+
+	/**
+	 *
+	 *
+	 * @param bvh
+	 * @param line
+	 * @return
+	 */
+	public static List<HE_FaceIntersection> getIntersection(final WB_BVH bvh, final WB_Line line) {
+		final List<HE_FaceIntersection> p = new FastTable<HE_FaceIntersection>();
+		for (final HE_Face face : bvh.getFaces(line)) {
+			final HE_FaceIntersection sect = getIntersection(face, line);
+			if (sect != null) {
+				p.add(sect);
+			}
+		}
+		return p;
+	}
+
+	/**
+	 *
+	 *
+	 * @param bvh
+	 * @param P
+	 * @return
+	 */
+	public static List<WB_Segment> getIntersection(final WB_BVH bvh, final WB_Plane P) {
+		final List<WB_Segment> cuts = new FastTable<WB_Segment>();
+		for (final HE_Face face : bvh.getFaces(P)) {
+			cuts.addAll(WB_GeometryOp3D.getIntersection3D(face.toPolygon(), P));
+		}
+		return cuts;
+	}
+
+	/**
+	 * Check if a point is inside a closed mesh by counting the faces hit by a
+	 * ray in a random direction.
+	 *
+	 * @param bvh
+	 * @param p
+	 * @return
+	 */
+	public static boolean isInside(final WB_BVH bvh, final WB_Coord p) {
+		return isInside(bvh, new double[] { p.xd(), p.yd(), p.zd() })[0];
+	}
+
+	/**
+	 * Check for a batch of points if they are inside a closed mesh. All points
+	 * share the same random ray direction, the rays are cast in parallel.
+	 *
+	 * @param bvh
+	 * @param points
+	 * @return
+	 */
+	public static boolean[] isInside(final WB_BVH bvh, final List<? extends WB_Coord> points) {
+		final double[] coords = new double[3 * points.size()];
+		int i = 0;
+		for (final WB_Coord p : points) {
+			coords[i++] = p.xd();
+			coords[i++] = p.yd();
+			coords[i++] = p.zd();
+		}
+		return isInside(bvh, coords);
+	}
+
+	/**
+	 *
+	 *
+	 * @param mesh
+	 * @param points
+	 * @return
+	 */
+	public static boolean[] isInside(final HE_Mesh mesh, final List<? extends WB_Coord> points) {
+		return isInside(new WB_BVH(mesh), points);
+	}
+
+	/**
+	 *
+	 *
+	 * @param bvh
+	 * @param coords
+	 *            3 values per point
+	 * @return
+	 */
+	public static boolean[] isInside(final WB_BVH bvh, final double[] coords) {
+		final int n = coords.length / 3;
+		final int[] counts = new int[n];
+		bvh.countHits(coords, new double[] { Math.random() - 0.5, Math.random() - 0.5, Math.random() - 0.5 }, 0,
+				Double.POSITIVE_INFINITY, counts);
+		final boolean[] inside = new boolean[n];
+		for (int i = 0; i < n; i++) {
+			inside[i] = counts[i] % 2 == 1;
+		}
+		return inside;
+	}
+
+	/**
+	 *
+	 *
+	 * @param bvh
+	 * @param P
+	 * @return
+	 */
+	public static List<HE_Face> getPotentialIntersectedFaces(final WB_BVH bvh, final WB_Plane P) {
+		return bvh.getFaces(P);
+	}
+
+	/**
+	 *
+	 *
+	 * @param bvh
+	 * @param AABB
+	 * @return
+	 */
+	public static List<HE_Face> getPotentialIntersectedFaces(final WB_BVH bvh, final WB_AABB AABB) {
+		return bvh.getFaces(AABB);
+	}
+
+	/**
+	 *
+	 *
+	 * @param bvh
+	 * @param p
+	 * @return
+	 */
+	public static List<HE_Face> getPotentialIntersectedFaces(final WB_BVH bvh, final WB_Coord p) {
+		return bvh.getFaces(p);
+	}
+
+	/**
+	 *
+	 *
+	 * @param bvh
+	 * @param R
+	 * @return
+	 */
+	public static List<HE_Face> getPotentialIntersectedFaces(final WB_BVH bvh, final WB_Ray R) {
+		return bvh.getFaces(R);
+	}
+
+	/**
+	 *
+	 *
+	 * @param bvh
+	 * @param L
+	 * @return
+	 */
+	public static List<HE_Face> getPotentialIntersectedFaces(final WB_BVH bvh, final WB_Line L) {
+		return bvh.getFaces(L);
+	}
+
+	/**
+	 *
+	 *
+	 * @param bvh
+	 * @param segment
+	 * @return
+	 */
+	public static List<HE_Face> getPotentialIntersectedFaces(final WB_BVH bvh, final WB_Segment segment) {
+		return bvh.getFaces(segment);
+	}
+
+	/**
+	 * Closest intersection of a ray with the mesh. The hierarchy is traversed
+	 * front to back and stops descending into nodes beyond the closest hit.
+	 *
+	 * @param bvh
+	 * @param ray
+	 * @return
+	 */
+	public static HE_FaceIntersection getClosestIntersection(final WB_BVH bvh, final WB_Ray ray) {
+		final WB_Coord o = ray.getOrigin();
+		final WB_Coord d = ray.getDirection();
+		final double[] t = new double[1];
+		final int face = bvh.getClosestHit(o.xd(), o.yd(), o.zd(), d.xd(), d.yd(), d.zd(), 0,
+				Double.POSITIVE_INFINITY, t);
+		if (face < 0) {
+			return null;
+		}
+		return new HE_FaceIntersection(bvh.getFace(face),
+				new WB_Point(o.xd() + t[0] * d.xd(), o.yd() + t[0] * d.yd(), o.zd() + t[0] * d.zd()));
+	}
+
+	/**
+	 * Closest intersection of a segment with the mesh.
+	 *
+	 * @param bvh
+	 * @param segment
+	 * @return
+	 */
+	public static HE_FaceIntersection getClosestIntersection(final WB_BVH bvh, final WB_Segment segment) {
+		final WB_Coord o = segment.getOrigin();
+		final WB_Coord d = segment.getDirection();
+		final double[] t = new double[1];
+		final int face = bvh.getClosestHit(o.xd(), o.yd(), o.zd(), d.xd(), d.yd(), d.zd(), 0, segment.getLength(),
+				t);
+		if (face < 0) {
+			return null;
+		}
+		return new HE_FaceIntersection(bvh.getFace(face),
+				new WB_Point(o.xd() + t[0] * d.xd(), o.yd() + t[0] * d.yd(), o.zd() + t[0] * d.zd()));
+	}
+
+	/**
+	 *
+	 *
+	 * @param bvh
+	 * @param ray
+	 * @return
+	 */
+	public static HE_FaceIntersection getFurthestIntersection(final WB_BVH bvh, final WB_Ray ray) {
+		HE_FaceIntersection p = null;
+		final List<HE_Face> candidates = bvh.getFaces(ray);
+		double d2, d2max = -1;
+		for (final HE_Face face : candidates) {
+			final HE_FaceIntersection sect = getIntersection(face, ray);
+			if (sect != null) {
+				d2 = sect.point.getSqDistance(ray.getOrigin());
+				if (d2 > d2max) {
+					p = sect;
+					d2max = d2;
+				}
+			}
+		}
+		return p;
+	}
+
+	/**
+	 *
+	 *
+	 * @param bvh
+	 * @param line
+	 * @return
+	 */
+	public static HE_FaceIntersection getClosestIntersection(final WB_BVH bvh, final WB_Line line) {
+		HE_FaceIntersection p = null;
+		final List<HE_Face> candidates = bvh.getFaces(line);
+		double d2, d2min = Double.POSITIVE_INFINITY;
+		for (final HE_Face face : candidates) {
+			final HE_FaceIntersection sect = getIntersection(face, line);
+			if (sect != null) {
+				d2 = sect.point.getSqDistance(line.getOrigin());
+				if (d2 < d2min) {
+					p = sect;
+					d2min = d2;
+				}
+			}
+		}
+		return p;
+	}
+
+	/**
+	 *
+	 *
+	 * @param bvh
+	 * @param line
+	 * @return
+	 */
+	public static HE_FaceIntersection getFurthestIntersection(final WB_BVH bvh, final WB_Line line) {
+		HE_FaceIntersection p = null;
+		final List<HE_Face> candidates = bvh.getFaces(line);
+		double d2, d2max = -1;
+		for (final HE_Face face : candidates) {
+			final HE_FaceIntersection sect = getIntersection(face, line);
+			if (sect != null) {
+				d2 = sect.point.getSqDistance(line.getOrigin());
+				if (d2 > d2max) {
+					p = sect;
+					d2max = d2;
+				}
+			}
+		}
+		return p;
+	}
+
+	/**
+	 *
+	 *
+	 * @param bvh
+	 * @param segment
+	 * @return
+	 */
+	public static HE_FaceIntersection getFurthestIntersection(final WB_BVH bvh, final WB_Segment segment) {
+		HE_FaceIntersection p = null;
+		final List<HE_Face> candidates = bvh.getFaces(segment);
+		double d2, d2max = -1;
+		for (final HE_Face face : candidates) {
+			final HE_FaceIntersection sect = getIntersection(face, segment);
+			if (sect != null) {
+				d2 = sect.point.getSqDistance(segment.getOrigin());
+				if (d2 > d2max) {
+					p = sect;
+					d2max = d2;
+				}
+			}
+		}
+		return p;
+	}
+
 	/**
 	 *
 	 *
@@ -2468,7 +2844,7 @@ public class HET_MeshOp {
 	 * @return
 	 */
 	public static List<HE_FaceIntersection> getIntersection(final HE_Mesh mesh, final WB_Ray ray) {
-		return getIntersection(new WB_AABBTree(mesh, 10), ray);
+		return getIntersection(new WB_BVH(mesh), ray);
 	}
 
 	/**
@@ -2479,7 +2855,7 @@ public class HET_MeshOp {
 	 * @return
 	 */
 	public static List<HE_FaceIntersection> getIntersection(final HE_Mesh mesh, final WB_Segment segment) {
-		return getIntersection(new WB_AABBTree(mesh, 10), segment);
+		return getIntersection(new WB_BVH(mesh), segment);
 	}
 
 	/**
@@ -2490,7 +2866,7 @@ public class HET_MeshOp {
 	 * @return
 	 */
 	public static List<HE_FaceIntersection> getIntersection(final HE_Mesh mesh, final WB_Line line) {
-		return getIntersection(new WB_AABBTree(mesh, 10), line);
+		return getIntersection(new WB_BVH(mesh), line);
 	}
 
 	/**
@@ -2501,7 +2877,7 @@ public class HET_MeshOp {
 	 * @return
 	 */
 	public static List<WB_Segment> getIntersection(final HE_Mesh mesh, final WB_Plane P) {
-		return getIntersection(new WB_AABBTree(mesh, 10), P);
+		return getIntersection(new WB_BVH(mesh), P);
 	}
 
 	/**
@@ -2512,7 +2888,7 @@ public class HET_MeshOp {
 	 * @return
 	 */
 	public static List<HE_Face> getPotentialIntersectedFaces(final HE_Mesh mesh, final WB_Plane P) {
-		return getPotentialIntersectedFaces(new WB_AABBTree(mesh, 10), P);
+		return getPotentialIntersectedFaces(new WB_BVH(mesh), P);
 	}
 
 	/**
@@ -2523,7 +2899,7 @@ public class HET_MeshOp {
 	 * @return
 	 */
 	public static List<HE_Face> getPotentialIntersectedFaces(final HE_Mesh mesh, final WB_Ray R) {
-		return getPotentialIntersectedFaces(new WB_AABBTree(mesh, 10), R);
+		return getPotentialIntersectedFaces(new WB_BVH(mesh), R);
 	}
 
 	/**
@@ -2534,7 +2910,7 @@ public class HET_MeshOp {
 	 * @return
 	 */
 	public static List<HE_Face> getPotentialIntersectedFaces(final HE_Mesh mesh, final WB_Line L) {
-		return getPotentialIntersectedFaces(new WB_AABBTree(mesh, 10), L);
+		return getPotentialIntersectedFaces(new WB_BVH(mesh), L);
 	}
 
 	/**
@@ -2545,7 +2921,7 @@ public class HET_MeshOp {
 	 * @return
 	 */
 	public static List<HE_Face> getPotentialIntersectedFaces(final HE_Mesh mesh, final WB_Segment segment) {
-		return getPotentialIntersectedFaces(new WB_AABBTree(mesh, 10), segment);
+		return getPotentialIntersectedFaces(new WB_BVH(mesh), segment);
 	}
 
 	/**
@@ -2556,7 +2932,7 @@ public class HET_MeshOp {
 	 * @return
 	 */
 	public static HE_FaceIntersection getClosestIntersection(final HE_Mesh mesh, final WB_Ray ray) {
-		return getClosestIntersection(new WB_AABBTree(mesh, 10), ray);
+		return getClosestIntersection(new WB_BVH(mesh), ray);
 	}
 
 	/**
@@ -2567,7 +2943,7 @@ public class HET_MeshOp {
 	 * @return
 	 */
 	public static HE_FaceIntersection getFurthestIntersection(final HE_Mesh mesh, final WB_Ray ray) {
-		return getFurthestIntersection(new WB_AABBTree(mesh, 10), ray);
+		return getFurthestIntersection(new WB_BVH(mesh), ray);
 	}
 
 	/**
@@ -2578,7 +2954,7 @@ public class HET_MeshOp {
 	 * @return
 	 */
 	public static HE_FaceIntersection getClosestIntersection(final HE_Mesh mesh, final WB_Line line) {
-		return getClosestIntersection(new WB_AABBTree(mesh, 10), line);
+		return getClosestIntersection(new WB_BVH(mesh), line);
 	}
 
 	/**
@@ -2589,7 +2965,7 @@ public class HET_MeshOp {
 	 * @return
 	 */
 	public static HE_FaceIntersection getFurthestIntersection(final HE_Mesh mesh, final WB_Line line) {
-		return getFurthestIntersection(new WB_AABBTree(mesh, 10), line);
+		return getFurthestIntersection(new WB_BVH(mesh), line);
 	}
 
 	/**
@@ -2600,7 +2976,7 @@ public class HET_MeshOp {
 	 * @return
 	 */
 	public static HE_FaceIntersection getClosestIntersection(final HE_Mesh mesh, final WB_Segment segment) {
-		return getClosestIntersection(new WB_AABBTree(mesh, 10), segment);
+		return getClosestIntersection(new WB_BVH(mesh), segment);
 	}
 
 	/**
@@ -2611,7 +2987,7 @@ public class HET_MeshOp {
 	 * @return
 	 */
 	public static HE_FaceIntersection getFurthestIntersection(final HE_Mesh mesh, final WB_Segment segment) {
-		return getFurthestIntersection(new WB_AABBTree(mesh, 10), segment);
+		return getFurthestIntersection(new WB_BVH(mesh), segment);
 	}
 
 	public static WB_Classification classifyFaceToPlane3D(final HE_Face f, final WB_Plane P) {
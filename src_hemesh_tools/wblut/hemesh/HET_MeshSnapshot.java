@@ -0,0 +1,850 @@
+/*
+ * This file is part of HE_Mesh, a library for creating and manipulating meshes.
+ * It is dedicated to the public domain. To the extent possible under law,
+ * I , Frederik Vanhoutte, have waived all copyright and related or neighboring
+ * rights.
+ *
+ * This work is published from Belgium. (http://creativecommons.org/publicdomain/zero/1.0/)
+ *
+ */
+package wblut.hemesh;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import wblut.core.WB_ParallelExecutor;
+import wblut.core.WB_ParallelExecutor.WB_RangeAction;
+
+/**
+ * Versioned binary snapshot of a mesh: a fixed header, a block table and one
+ * contiguous array per attribute. Uncompressed blocks are memory-mapped and
+ * exposed as typed buffers, nothing is parsed. Blocks can optionally be
+ * deflated, these are inflated on load.
+ *
+ * Layout, all values little-endian:
+ * <ul>
+ * <li>header, 64 bytes: magic "HE_MESH\0", int version, int flags, int number
+ * of vertices, halfedges and faces, int number of blocks, reserved.</li>
+ * <li>block table, 32 bytes per block: int id, int compression, long offset,
+ * long stored size, long size.</li>
+ * <li>blocks, each starting at a multiple of 8 bytes.</li>
+ * </ul>
+ * Elements are indexed in the order of vItr(), heItr() and fItr(), -1 stands
+ * for a missing reference. Readers ignore blocks they don't know.
+ *
+ */
+public class HET_MeshSnapshot {
+	/** Current format version. */
+	public static final int VERSION = 1;
+	private static final byte[] MAGIC = { 'H', 'E', '_', 'M', 'E', 'S', 'H', 0 };
+	private static final int HEADER_SIZE = 64;
+	private static final int ENTRY_SIZE = 32;
+	private static final int NONE = 0;
+	private static final int DEFLATE = 1;
+	/** double[3*nv] */
+	public static final int VERTEX_COORDS = 1;
+	/** int[nv] */
+	public static final int VERTEX_HALFEDGE = 2;
+	/** int[nv] */
+	public static final int VERTEX_COLOR = 3;
+	/** long[nv], internal label in the high 32 bits */
+	public static final int VERTEX_LABELS = 4;
+	/** byte[nv], 1 if the vertex has a UVW */
+	public static final int VERTEX_HAS_UVW = 5;
+	/** double[3*nv] */
+	public static final int VERTEX_UVW = 6;
+	/** int[nh] */
+	public static final int HALFEDGE_NEXT = 16;
+	/** int[nh] */
+	public static final int HALFEDGE_PAIR = 17;
+	/** int[nh] */
+	public static final int HALFEDGE_VERTEX = 18;
+	/** int[nh] */
+	public static final int HALFEDGE_FACE = 19;
+	/** int[nh] */
+	public static final int HALFEDGE_COLOR = 20;
+	/** long[nh] */
+	public static final int HALFEDGE_LABELS = 21;
+	/** byte[nh], 1 if the halfedge has a UVW */
+	public static final int HALFEDGE_HAS_UVW = 22;
+	/** double[3*nh] */
+	public static final int HALFEDGE_UVW = 23;
+	/** int[nf] */
+	public static final int FACE_HALFEDGE = 32;
+	/** int[nf] */
+	public static final int FACE_COLOR = 33;
+	/** int[nf] */
+	public static final int FACE_TEXTURE_ID = 34;
+	/** long[nf] */
+	public static final int FACE_LABELS = 35;
+
+	private int version;
+	private int numberOfVertices;
+	private int numberOfHalfedges;
+	private int numberOfFaces;
+	private final TIntObjectMap<ByteBuffer> blocks;
+
+	private HET_MeshSnapshot() {
+		blocks = new TIntObjectHashMap<ByteBuffer>();
+	}
+
+	/**
+	 * Write a snapshot of a mesh to a file. Existing files are overwritten.
+	 *
+	 * @param mesh
+	 * @param path
+	 * @param compress
+	 *            deflate each block
+	 * @throws IOException
+	 */
+	public static void save(final HE_Mesh mesh, final String path, final boolean compress) throws IOException {
+		final File file = new File(path);
+		final File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		final List<Block> list = collect(mesh);
+		final int nb = list.size();
+		final Block[] blocks = list.toArray(new Block[nb]);
+		if (compress) {
+			WB_ParallelExecutor.instance().forRange(0, nb, new WB_RangeAction() {
+				@Override
+				public void run(final int start, final int end) {
+					for (int i = start; i < end; i++) {
+						blocks[i].deflate();
+					}
+				}
+			}, 1);
+		}
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + nb * ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.put(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(compress ? 1 : 0);
+		header.putInt(mesh.getNumberOfVertices());
+		header.putInt(mesh.getNumberOfHalfedges());
+		header.putInt(mesh.getNumberOfFaces());
+		header.putInt(nb);
+		header.position(HEADER_SIZE);
+		long offset = align(HEADER_SIZE + nb * ENTRY_SIZE);
+		for (final Block block : blocks) {
+			block.offset = offset;
+			header.putInt(block.id);
+			header.putInt(block.deflated == null ? NONE : DEFLATE);
+			header.putLong(offset);
+			header.putLong(block.getStoredSize());
+			header.putLong(block.getSize());
+			offset = align(offset + block.getStoredSize());
+		}
+		header.flip();
+		final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			writeFully(channel, header, 0);
+			for (final Block block : blocks) {
+				if (block.deflated == null) {
+					if (block.getSize() > 0) {
+						block.writeTo(channel.map(FileChannel.MapMode.READ_WRITE, block.offset, block.getSize()));
+					}
+				} else {
+					writeFully(channel, ByteBuffer.wrap(block.deflated, 0, block.deflatedSize), block.offset);
+				}
+			}
+			if (channel.size() < offset) {
+				writeFully(channel, ByteBuffer.allocate((int) (offset - channel.size())), channel.size());
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Open a snapshot. Uncompressed blocks are memory-mapped, compressed
+	 * blocks are inflated into memory. The header and block table are
+	 * validated against the size of the file before anything is mapped, a
+	 * truncated or corrupted file throws an IOException describing the
+	 * problem.
+	 *
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	public static HET_MeshSnapshot open(final String path) throws IOException {
+		final FileChannel channel = FileChannel.open(new File(path).toPath(), StandardOpenOption.READ);
+		try {
+			final HET_MeshSnapshot snapshot = new HET_MeshSnapshot();
+			final long fileSize = channel.size();
+			if (fileSize < MAGIC.length) {
+				throw new IOException(path + " is not a mesh snapshot.");
+			}
+			if (fileSize < HEADER_SIZE) {
+				throw invalid(path, "the header is truncated, file size " + fileSize + " < " + HEADER_SIZE + ".");
+			}
+			final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			for (int i = 0; i < MAGIC.length; i++) {
+				if (header.get(i) != MAGIC[i]) {
+					throw new IOException(path + " is not a mesh snapshot.");
+				}
+			}
+			snapshot.version = header.getInt(8);
+			if (snapshot.version > VERSION) {
+				throw new IOException("Mesh snapshot version " + snapshot.version + " is not supported.");
+			}
+			if (snapshot.version < 1) {
+				throw invalid(path, "version " + snapshot.version + " is not a valid version.");
+			}
+			snapshot.numberOfVertices = header.getInt(16);
+			snapshot.numberOfHalfedges = header.getInt(20);
+			snapshot.numberOfFaces = header.getInt(24);
+			if (snapshot.numberOfVertices < 0 || snapshot.numberOfHalfedges < 0 || snapshot.numberOfFaces < 0) {
+				throw invalid(path, "negative element count, " + snapshot.numberOfVertices + " vertices, "
+						+ snapshot.numberOfHalfedges + " halfedges, " + snapshot.numberOfFaces + " faces.");
+			}
+			final int nb = header.getInt(28);
+			final long tableEnd = HEADER_SIZE + (long) nb * ENTRY_SIZE;
+			if (nb < 0 || tableEnd > fileSize) {
+				throw invalid(path, "block table of " + nb + " blocks does not fit in file size " + fileSize + ".");
+			}
+			final ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, tableEnd - HEADER_SIZE)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			for (int i = 0; i < nb; i++) {
+				final int id = table.getInt();
+				final int compression = table.getInt();
+				final long offset = table.getLong();
+				final long stored = table.getLong();
+				final long size = table.getLong();
+				if (compression != NONE && compression != DEFLATE) {
+					throw invalid(path, "block " + id + " has unknown compression code " + compression + ".");
+				}
+				if (offset < tableEnd || stored < 0 || stored > fileSize - offset) {
+					throw invalid(path, "block " + id + " at offset " + offset + " with stored size " + stored
+							+ " lies outside the data area [" + tableEnd + ", " + fileSize + ").");
+				}
+				if (size > Integer.MAX_VALUE) {
+					throw new IOException("Mesh snapshot block " + id + " is too large.");
+				}
+				if (size < 0 || compression == NONE && stored != size) {
+					throw invalid(path, "block " + id + " has size " + size + " and stored size " + stored + ".");
+				}
+				final long expected = snapshot.getExpectedSize(id);
+				if (expected >= 0 && size != expected) {
+					throw invalid(path, "block " + id + " has size " + size + ", expected " + expected + ".");
+				}
+				final ByteBuffer data = stored == 0 ? ByteBuffer.allocate(0)
+						: channel.map(FileChannel.MapMode.READ_ONLY, offset, stored);
+				if (compression == NONE) {
+					snapshot.blocks.put(id, data.order(ByteOrder.LITTLE_ENDIAN));
+				} else {
+					try {
+						snapshot.blocks.put(id, inflate(data, (int) size).order(ByteOrder.LITTLE_ENDIAN));
+					} catch (final IOException e) {
+						throw invalid(path, "block " + id + " cannot be inflated, " + e.getMessage());
+					}
+				}
+			}
+			return snapshot;
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static IOException invalid(final String path, final String problem) {
+		return new IOException(path + " is not a valid mesh snapshot: " + problem);
+	}
+
+	/**
+	 * Size in bytes of a known block, -1 for unknown blocks.
+	 *
+	 * @param id
+	 * @return
+	 */
+	private long getExpectedSize(final int id) {
+		switch (id) {
+		case VERTEX_COORDS:
+		case VERTEX_UVW:
+			return 24L * numberOfVertices;
+		case VERTEX_HALFEDGE:
+		case VERTEX_COLOR:
+			return 4L * numberOfVertices;
+		case VERTEX_LABELS:
+			return 8L * numberOfVertices;
+		case VERTEX_HAS_UVW:
+			return numberOfVertices;
+		case HALFEDGE_NEXT:
+		case HALFEDGE_PAIR:
+		case HALFEDGE_VERTEX:
+		case HALFEDGE_FACE:
+		case HALFEDGE_COLOR:
+			return 4L * numberOfHalfedges;
+		case HALFEDGE_LABELS:
+			return 8L * numberOfHalfedges;
+		case HALFEDGE_HAS_UVW:
+			return numberOfHalfedges;
+		case HALFEDGE_UVW:
+			return 24L * numberOfHalfedges;
+		case FACE_HALFEDGE:
+		case FACE_COLOR:
+		case FACE_TEXTURE_ID:
+			return 4L * numberOfFaces;
+		case FACE_LABELS:
+			return 8L * numberOfFaces;
+		default:
+			return -1;
+		}
+	}
+
+	/**
+	 * Check if a file starts with the snapshot signature.
+	 *
+	 * @param path
+	 * @return
+	 */
+	public static boolean isSnapshot(final String path) {
+		try {
+			final FileChannel channel = FileChannel.open(new File(path).toPath(), StandardOpenOption.READ);
+			try {
+				final ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+				while (magic.hasRemaining() && channel.read(magic) > 0) {
+				}
+				for (int i = 0; i < MAGIC.length; i++) {
+					if (magic.get(i) != MAGIC[i]) {
+						return false;
+					}
+				}
+				return true;
+			} finally {
+				channel.close();
+			}
+		} catch (final IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 *
+	 *
+	 * @return format version of the file
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public int getNumberOfVertices() {
+		return numberOfVertices;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public int getNumberOfHalfedges() {
+		return numberOfHalfedges;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public int getNumberOfFaces() {
+		return numberOfFaces;
+	}
+
+	/**
+	 * Raw contents of a block, null if the snapshot doesn't contain it.
+	 *
+	 * @param id
+	 * @return little-endian view of the block
+	 */
+	public ByteBuffer getBlock(final int id) {
+		final ByteBuffer block = blocks.get(id);
+		return block == null ? null : block.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Vertex coordinates x0, y0, z0, x1, ...
+	 *
+	 * @return
+	 */
+	public DoubleBuffer getVertexCoordinates() {
+		return getDoubles(VERTEX_COORDS);
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public IntBuffer getVertexHalfedges() {
+		return getInts(VERTEX_HALFEDGE);
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public IntBuffer getHalfedgeNext() {
+		return getInts(HALFEDGE_NEXT);
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public IntBuffer getHalfedgePair() {
+		return getInts(HALFEDGE_PAIR);
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public IntBuffer getHalfedgeVertex() {
+		return getInts(HALFEDGE_VERTEX);
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public IntBuffer getHalfedgeFace() {
+		return getInts(HALFEDGE_FACE);
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public IntBuffer getFaceHalfedges() {
+		return getInts(FACE_HALFEDGE);
+	}
+
+	private DoubleBuffer getDoubles(final int id) {
+		final ByteBuffer block = getBlock(id);
+		return block == null ? null : block.asDoubleBuffer();
+	}
+
+	private IntBuffer getInts(final int id) {
+		final ByteBuffer block = getBlock(id);
+		return block == null ? null : block.asIntBuffer();
+	}
+
+	private LongBuffer getLongs(final int id) {
+		final ByteBuffer block = getBlock(id);
+		return block == null ? null : block.asLongBuffer();
+	}
+
+	/**
+	 * Create a HE_Mesh from the snapshot. Element order is preserved.
+	 *
+	 * @return
+	 */
+	public HE_Mesh toMesh() {
+		final HE_Mesh mesh = new HE_Mesh();
+		final HE_Vertex[] vertices = new HE_Vertex[numberOfVertices];
+		for (int i = 0; i < numberOfVertices; i++) {
+			vertices[i] = new HE_Vertex();
+		}
+		final HE_Halfedge[] halfedges = new HE_Halfedge[numberOfHalfedges];
+		for (int i = 0; i < numberOfHalfedges; i++) {
+			halfedges[i] = new HE_Halfedge();
+		}
+		final HE_Face[] faces = new HE_Face[numberOfFaces];
+		for (int i = 0; i < numberOfFaces; i++) {
+			faces[i] = new HE_Face();
+		}
+		final WB_ParallelExecutor executor = WB_ParallelExecutor.instance();
+		final DoubleBuffer coords = getVertexCoordinates();
+		final IntBuffer vertexHalfedge = getVertexHalfedges();
+		final IntBuffer vertexColor = getInts(VERTEX_COLOR);
+		final LongBuffer vertexLabels = getLongs(VERTEX_LABELS);
+		final ByteBuffer vertexHasUVW = getBlock(VERTEX_HAS_UVW);
+		final DoubleBuffer vertexUVW = getDoubles(VERTEX_UVW);
+		executor.forRange(0, numberOfVertices, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				HE_Vertex v;
+				for (int i = start; i < end; i++) {
+					v = vertices[i];
+					if (coords != null) {
+						v.set(coords.get(3 * i), coords.get(3 * i + 1), coords.get(3 * i + 2));
+					}
+					if (vertexHalfedge != null && vertexHalfedge.get(i) > -1) {
+						v._setHalfedge(halfedges[vertexHalfedge.get(i)]);
+					}
+					if (vertexColor != null) {
+						v.setColor(vertexColor.get(i));
+					}
+					if (vertexLabels != null) {
+						v.labels = vertexLabels.get(i);
+					}
+					if (vertexHasUVW != null && vertexUVW != null && vertexHasUVW.get(i) == 1) {
+						v.setUVW(vertexUVW.get(3 * i), vertexUVW.get(3 * i + 1), vertexUVW.get(3 * i + 2));
+					}
+				}
+			}
+		});
+		final IntBuffer next = getHalfedgeNext();
+		final IntBuffer pair = getHalfedgePair();
+		final IntBuffer vertex = getHalfedgeVertex();
+		final IntBuffer face = getHalfedgeFace();
+		final IntBuffer halfedgeColor = getInts(HALFEDGE_COLOR);
+		final LongBuffer halfedgeLabels = getLongs(HALFEDGE_LABELS);
+		final ByteBuffer halfedgeHasUVW = getBlock(HALFEDGE_HAS_UVW);
+		final DoubleBuffer halfedgeUVW = getDoubles(HALFEDGE_UVW);
+		executor.forRange(0, numberOfHalfedges, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				HE_Halfedge he;
+				for (int i = start; i < end; i++) {
+					he = halfedges[i];
+					if (next != null && next.get(i) > -1) {
+						he._setNext(halfedges[next.get(i)]);
+						// each halfedge is the next of at most one other
+						halfedges[next.get(i)]._setPrev(he);
+					}
+					if (pair != null && pair.get(i) > -1) {
+						he._setPair(halfedges[pair.get(i)]);
+					}
+					if (vertex != null && vertex.get(i) > -1) {
+						he._setVertex(vertices[vertex.get(i)]);
+					}
+					if (face != null && face.get(i) > -1) {
+						he._setFace(faces[face.get(i)]);
+					}
+					if (halfedgeColor != null) {
+						he.setColor(halfedgeColor.get(i));
+					}
+					if (halfedgeLabels != null) {
+						he.labels = halfedgeLabels.get(i);
+					}
+					if (halfedgeHasUVW != null && halfedgeUVW != null && halfedgeHasUVW.get(i) == 1) {
+						he.setUVW(halfedgeUVW.get(3 * i), halfedgeUVW.get(3 * i + 1), halfedgeUVW.get(3 * i + 2));
+					}
+				}
+			}
+		});
+		final IntBuffer faceHalfedge = getFaceHalfedges();
+		final IntBuffer faceColor = getInts(FACE_COLOR);
+		final IntBuffer faceTextureId = getInts(FACE_TEXTURE_ID);
+		final LongBuffer faceLabels = getLongs(FACE_LABELS);
+		executor.forRange(0, numberOfFaces, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				HE_Face f;
+				for (int i = start; i < end; i++) {
+					f = faces[i];
+					if (faceHalfedge != null && faceHalfedge.get(i) > -1) {
+						f._setHalfedge(halfedges[faceHalfedge.get(i)]);
+					}
+					if (faceColor != null) {
+						f.setColor(faceColor.get(i));
+					}
+					if (faceTextureId != null) {
+						f.setTextureId(faceTextureId.get(i));
+					}
+					if (faceLabels != null) {
+						f.labels = faceLabels.get(i);
+					}
+				}
+			}
+		});
+		mesh.addVertices(vertices);
+		mesh.addFaces(faces);
+		mesh.addHalfedges(halfedges);
+		return mesh;
+	}
+
+	/**
+	 * Gather the attribute arrays of a mesh.
+	 *
+	 * @param mesh
+	 * @return
+	 */
+	private static List<Block> collect(final HE_Mesh mesh) {
+		final HE_Vertex[] vertices = mesh.getVerticesAsArray();
+		final HE_Halfedge[] halfedges = new HE_Halfedge[mesh.getNumberOfHalfedges()];
+		final HE_HalfedgeIterator heItr = mesh.heItr();
+		int id = 0;
+		while (heItr.hasNext()) {
+			halfedges[id++] = heItr.next();
+		}
+		final HE_Face[] faces = mesh.getFacesAsArray();
+		final int nv = vertices.length;
+		final int nh = halfedges.length;
+		final int nf = faces.length;
+		final TLongIntMap vertexIndex = new TLongIntHashMap(nv, 0.5f, -1L, -1);
+		for (int i = 0; i < nv; i++) {
+			vertexIndex.put(vertices[i].key(), i);
+		}
+		final TLongIntMap halfedgeIndex = new TLongIntHashMap(nh, 0.5f, -1L, -1);
+		for (int i = 0; i < nh; i++) {
+			halfedgeIndex.put(halfedges[i].key(), i);
+		}
+		final TLongIntMap faceIndex = new TLongIntHashMap(nf, 0.5f, -1L, -1);
+		for (int i = 0; i < nf; i++) {
+			faceIndex.put(faces[i].key(), i);
+		}
+		final WB_ParallelExecutor executor = WB_ParallelExecutor.instance();
+		final double[] coords = new double[3 * nv];
+		final int[] vertexHalfedge = new int[nv];
+		final int[] vertexColor = new int[nv];
+		final long[] vertexLabels = new long[nv];
+		final byte[] vertexHasUVW = new byte[nv];
+		final double[] vertexUVW = new double[3 * nv];
+		final boolean[] anyVertexUVW = new boolean[1];
+		executor.forRange(0, nv, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				HE_Vertex v;
+				boolean any = false;
+				for (int i = start; i < end; i++) {
+					v = vertices[i];
+					coords[3 * i] = v.xd();
+					coords[3 * i + 1] = v.yd();
+					coords[3 * i + 2] = v.zd();
+					vertexHalfedge[i] = v.getHalfedge() == null ? -1 : halfedgeIndex.get(v.getHalfedge().key());
+					vertexColor[i] = v.getColor();
+					vertexLabels[i] = v.labels;
+					if (v.hasVertexUVW()) {
+						final HE_TextureCoordinate uvw = v.getVertexUVW();
+						vertexHasUVW[i] = 1;
+						vertexUVW[3 * i] = uvw.ud();
+						vertexUVW[3 * i + 1] = uvw.vd();
+						vertexUVW[3 * i + 2] = uvw.wd();
+						any = true;
+					}
+				}
+				if (any) {
+					anyVertexUVW[0] = true;
+				}
+			}
+		});
+		final int[] next = new int[nh];
+		final int[] pair = new int[nh];
+		final int[] vertex = new int[nh];
+		final int[] face = new int[nh];
+		final int[] halfedgeColor = new int[nh];
+		final long[] halfedgeLabels = new long[nh];
+		final byte[] halfedgeHasUVW = new byte[nh];
+		final double[] halfedgeUVW = new double[3 * nh];
+		final boolean[] anyHalfedgeUVW = new boolean[1];
+		executor.forRange(0, nh, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				HE_Halfedge he;
+				boolean any = false;
+				for (int i = start; i < end; i++) {
+					he = halfedges[i];
+					next[i] = he.getNextInFace() == null ? -1 : halfedgeIndex.get(he.getNextInFace().key());
+					pair[i] = he.getPair() == null ? -1 : halfedgeIndex.get(he.getPair().key());
+					vertex[i] = he.getVertex() == null ? -1 : vertexIndex.get(he.getVertex().key());
+					face[i] = he.getFace() == null ? -1 : faceIndex.get(he.getFace().key());
+					halfedgeColor[i] = he.getColor();
+					halfedgeLabels[i] = he.labels;
+					if (he.hasHalfedgeUVW()) {
+						final HE_TextureCoordinate uvw = he.getHalfedgeUVW();
+						halfedgeHasUVW[i] = 1;
+						halfedgeUVW[3 * i] = uvw.ud();
+						halfedgeUVW[3 * i + 1] = uvw.vd();
+						halfedgeUVW[3 * i + 2] = uvw.wd();
+						any = true;
+					}
+				}
+				if (any) {
+					anyHalfedgeUVW[0] = true;
+				}
+			}
+		});
+		final int[] faceHalfedge = new int[nf];
+		final int[] faceColor = new int[nf];
+		final int[] faceTextureId = new int[nf];
+		final long[] faceLabels = new long[nf];
+		executor.forRange(0, nf, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				HE_Face f;
+				for (int i = start; i < end; i++) {
+					f = faces[i];
+					faceHalfedge[i] = f.getHalfedge() == null ? -1 : halfedgeIndex.get(f.getHalfedge().key());
+					faceColor[i] = f.getColor();
+					faceTextureId[i] = f.getTextureId();
+					faceLabels[i] = f.labels;
+				}
+			}
+		});
+		final List<Block> blocks = new ArrayList<Block>();
+		blocks.add(new Block(VERTEX_COORDS, coords));
+		blocks.add(new Block(VERTEX_HALFEDGE, vertexHalfedge));
+		blocks.add(new Block(VERTEX_COLOR, vertexColor));
+		blocks.add(new Block(VERTEX_LABELS, vertexLabels));
+		if (anyVertexUVW[0]) {
+			blocks.add(new Block(VERTEX_HAS_UVW, vertexHasUVW));
+			blocks.add(new Block(VERTEX_UVW, vertexUVW));
+		}
+		blocks.add(new Block(HALFEDGE_NEXT, next));
+		blocks.add(new Block(HALFEDGE_PAIR, pair));
+		blocks.add(new Block(HALFEDGE_VERTEX, vertex));
+		blocks.add(new Block(HALFEDGE_FACE, face));
+		blocks.add(new Block(HALFEDGE_COLOR, halfedgeColor));
+		blocks.add(new Block(HALFEDGE_LABELS, halfedgeLabels));
+		if (anyHalfedgeUVW[0]) {
+			blocks.add(new Block(HALFEDGE_HAS_UVW, halfedgeHasUVW));
+			blocks.add(new Block(HALFEDGE_UVW, halfedgeUVW));
+		}
+		blocks.add(new Block(FACE_HALFEDGE, faceHalfedge));
+		blocks.add(new Block(FACE_COLOR, faceColor));
+		blocks.add(new Block(FACE_TEXTURE_ID, faceTextureId));
+		blocks.add(new Block(FACE_LABELS, faceLabels));
+		return blocks;
+	}
+
+	private static long align(final long offset) {
+		return offset + 7 & ~7L;
+	}
+
+	private static void writeFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+			throws IOException {
+		long pos = position;
+		while (buffer.hasRemaining()) {
+			pos += channel.write(buffer, pos);
+		}
+	}
+
+	private static ByteBuffer inflate(final ByteBuffer data, final int size) throws IOException {
+		final byte[] input = new byte[data.remaining()];
+		data.get(input);
+		final byte[] output = new byte[size];
+		final Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(input);
+			int n = 0;
+			while (n < size && !inflater.finished()) {
+				final int k = inflater.inflate(output, n, size - n);
+				if (k == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				n += k;
+			}
+			if (n != size) {
+				throw new IOException("got " + n + " of " + size + " bytes.");
+			}
+		} catch (final DataFormatException e) {
+			throw new IOException(e);
+		} finally {
+			inflater.end();
+		}
+		return ByteBuffer.wrap(output);
+	}
+
+	/**
+	 * One attribute array.
+	 */
+	static class Block {
+		final int id;
+		double[] doubles;
+		int[] ints;
+		long[] longs;
+		byte[] bytes;
+		byte[] deflated;
+		int deflatedSize;
+		long offset;
+
+		Block(final int id, final double[] values) {
+			this.id = id;
+			doubles = values;
+		}
+
+		Block(final int id, final int[] values) {
+			this.id = id;
+			ints = values;
+		}
+
+		Block(final int id, final long[] values) {
+			this.id = id;
+			longs = values;
+		}
+
+		Block(final int id, final byte[] values) {
+			this.id = id;
+			bytes = values;
+		}
+
+		long getSize() {
+			if (doubles != null) {
+				return 8L * doubles.length;
+			} else if (ints != null) {
+				return 4L * ints.length;
+			} else if (longs != null) {
+				return 8L * longs.length;
+			}
+			return bytes.length;
+		}
+
+		long getStoredSize() {
+			return deflated == null ? getSize() : deflatedSize;
+		}
+
+		void writeTo(final ByteBuffer target) {
+			target.order(ByteOrder.LITTLE_ENDIAN);
+			if (doubles != null) {
+				target.asDoubleBuffer().put(doubles);
+			} else if (ints != null) {
+				target.asIntBuffer().put(ints);
+			} else if (longs != null) {
+				target.asLongBuffer().put(longs);
+			} else {
+				target.put(bytes);
+			}
+		}
+
+		void deflate() {
+			final ByteBuffer raw = ByteBuffer.allocate((int) getSize());
+			writeTo(raw);
+			final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			try {
+				deflater.setInput(raw.array());
+				deflater.finish();
+				byte[] output = new byte[Math.max(64, raw.capacity() / 2)];
+				int n = 0;
+				while (!deflater.finished()) {
+					if (n == output.length) {
+						output = java.util.Arrays.copyOf(output, 2 * output.length);
+					}
+					n += deflater.deflate(output, n, output.length - n);
+				}
+				deflated = output;
+				deflatedSize = n;
+			} finally {
+				deflater.end();
+			}
+		}
+	}
+}
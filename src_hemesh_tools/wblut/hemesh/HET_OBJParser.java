@@ -0,0 +1,659 @@
+/*
+ * This file is part of HE_Mesh, a library for creating and manipulating meshes.
+ * It is dedicated to the public domain. To the extent possible under law,
+ * I , Frederik Vanhoutte, have waived all copyright and related or neighboring
+ * rights.
+ *
+ * This work is published from Belgium. (http://creativecommons.org/publicdomain/zero/1.0/)
+ *
+ */
+package wblut.hemesh;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import wblut.core.WB_ParallelExecutor;
+import wblut.core.WB_ParallelExecutor.WB_RangeAction;
+
+/**
+ * Streaming parser for Wavefront OBJ files. Numbers are parsed directly from
+ * the bytes of the file, without creating a String for each line. Vertices
+ * (v), texture coordinates (vt), normals (vn) and faces (f) are collected in
+ * primitive arrays, all other statements are ignored. A backslash at the end
+ * of a line continues the statement on the next line.
+ *
+ * Uncompressed files are split into line-aligned chunks that are
+ * memory-mapped and parsed in parallel by the shared executor. Compressed
+ * (.gz) files are parsed block by block as they are read.
+ *
+ */
+public class HET_OBJParser {
+	/** Nominal size of a chunk in bytes. */
+	private static final int CHUNK = 1 << 23;
+	private static final double[] POWERS = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+			1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	private double scale;
+	private double[] vertices;
+	private double[] uvws;
+	private double[] normals;
+	private int[][] faces;
+	private int[][] faceUVWs;
+
+	/**
+	 *
+	 */
+	public HET_OBJParser() {
+		scale = 1;
+		clear();
+	}
+
+	/**
+	 * Scale applied to the vertex coordinates.
+	 *
+	 * @param f
+	 * @return self
+	 */
+	public HET_OBJParser setScale(final double f) {
+		scale = f;
+		return this;
+	}
+
+	private void clear() {
+		vertices = new double[0];
+		uvws = new double[0];
+		normals = new double[0];
+		faces = new int[0][];
+		faceUVWs = new int[0][];
+	}
+
+	/**
+	 * Parse a file. Files ending in .gz are decompressed.
+	 *
+	 * @param path
+	 * @return self
+	 * @throws IOException
+	 */
+	public HET_OBJParser parse(final String path) throws IOException {
+		final File file = new File(path);
+		Chunk[] chunks;
+		if (file.getName().toLowerCase().endsWith(".gz")) {
+			final InputStream stream = new GZIPInputStream(new FileInputStream(file), 0x10000);
+			try {
+				chunks = parseStream(stream);
+			} finally {
+				stream.close();
+			}
+		} else {
+			chunks = parseMapped(file);
+		}
+		collect(chunks);
+		return this;
+	}
+
+	/**
+	 * Parse a stream, block by block.
+	 *
+	 * @param stream
+	 * @return self
+	 * @throws IOException
+	 */
+	public HET_OBJParser parse(final InputStream stream) throws IOException {
+		collect(parseStream(stream));
+		return this;
+	}
+
+	/**
+	 * Vertex coordinates: x0, y0, z0, x1, y1, z1, ... A missing z-coordinate
+	 * is 0.
+	 *
+	 * @return
+	 */
+	public double[] getVertices() {
+		return vertices;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public int getNumberOfVertices() {
+		return vertices.length / 3;
+	}
+
+	/**
+	 * Texture coordinates: u0, v0, w0, u1, v1, w1, ... Missing coordinates
+	 * are 0.
+	 *
+	 * @return
+	 */
+	public double[] getUVW() {
+		return uvws;
+	}
+
+	/**
+	 *
+	 *
+	 * @return
+	 */
+	public boolean hasTexture() {
+		return uvws.length > 0;
+	}
+
+	/**
+	 * Vertex normals: x0, y0, z0, x1, y1, z1, ...
+	 *
+	 * @return
+	 */
+	public double[] getNormals() {
+		return normals;
+	}
+
+	/**
+	 * Zero-based vertex indices of each face. Relative (negative) indices are
+	 * resolved.
+	 *
+	 * @return
+	 */
+	public int[][] getFaces() {
+		return faces;
+	}
+
+	/**
+	 * Zero-based texture coordinate indices of each face, 0 for a corner
+	 * without texture coordinate.
+	 *
+	 * @return
+	 */
+	public int[][] getFaceUVW() {
+		return faceUVWs;
+	}
+
+	/**
+	 * Map the file in line-aligned chunks and parse them in parallel.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	private Chunk[] parseMapped(final File file) throws IOException {
+		final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			final long size = channel.size();
+			final long[] bounds = new long[(int) (size / CHUNK) + 2];
+			int nc = 0;
+			bounds[0] = 0;
+			final ByteBuffer probe = ByteBuffer.allocate(4096);
+			for (long nominal = CHUNK; nominal < size; nominal += CHUNK) {
+				if (nominal <= bounds[nc]) {
+					continue;
+				}
+				final long start = nextLine(channel, nominal - 1, probe);
+				if (start < size && start > bounds[nc]) {
+					bounds[++nc] = start;
+				}
+			}
+			bounds[++nc] = size;
+			final Chunk[] chunks = new Chunk[nc];
+			final IOException[] error = new IOException[1];
+			WB_ParallelExecutor.instance().forRange(0, nc, new WB_RangeAction() {
+				@Override
+				public void run(final int start, final int end) {
+					for (int i = start; i < end; i++) {
+						try {
+							final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, bounds[i],
+									bounds[i + 1] - bounds[i]);
+							chunks[i] = new Chunk(scale);
+							chunks[i].parse(buffer, 0, buffer.limit());
+						} catch (final IOException e) {
+							error[0] = e;
+						}
+					}
+				}
+			}, 1);
+			if (error[0] != null) {
+				throw error[0];
+			}
+			return chunks;
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Position following the first line end at or after position that is not
+	 * continued by a backslash.
+	 *
+	 * @param channel
+	 * @param position
+	 * @param probe
+	 * @return
+	 * @throws IOException
+	 */
+	private static long nextLine(final FileChannel channel, final long position, final ByteBuffer probe)
+			throws IOException {
+		long pos = position;
+		while (true) {
+			probe.clear();
+			final int n = channel.read(probe, pos);
+			if (n <= 0) {
+				return channel.size();
+			}
+			for (int i = 0; i < n; i++) {
+				if (probe.get(i) == '\n' && !isContinued(channel, pos + i)) {
+					return pos + i + 1;
+				}
+			}
+			pos += n;
+		}
+	}
+
+	/**
+	 * Is the line ending at the newline at position continued, i.e. is the
+	 * last character before it, ignoring blanks, a backslash?
+	 *
+	 * @param channel
+	 * @param position
+	 * @return
+	 * @throws IOException
+	 */
+	private static boolean isContinued(final FileChannel channel, final long position) throws IOException {
+		final ByteBuffer one = ByteBuffer.allocate(1);
+		for (long p = position - 1; p >= 0; p--) {
+			one.clear();
+			channel.read(one, p);
+			final byte b = one.get(0);
+			if (b != ' ' && b != '\t' && b != '\r') {
+				return b == '\\';
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Is the line ending at the newline at position continued?
+	 *
+	 * @param block
+	 * @param position
+	 * @return
+	 */
+	private static boolean isContinued(final byte[] block, final int position) {
+		for (int p = position - 1; p >= 0; p--) {
+			final byte b = block[p];
+			if (b != ' ' && b != '\t' && b != '\r') {
+				return b == '\\';
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Read the stream in blocks, each block is cut after its last line end
+	 * and parsed as a chunk.
+	 *
+	 * @param stream
+	 * @return
+	 * @throws IOException
+	 */
+	private Chunk[] parseStream(final InputStream stream) throws IOException {
+		final List<Chunk> chunks = new ArrayList<Chunk>();
+		byte[] block = new byte[CHUNK];
+		int filled = 0;
+		while (true) {
+			final int n = stream.read(block, filled, block.length - filled);
+			if (n < 0) {
+				if (filled > 0) {
+					final Chunk chunk = new Chunk(scale);
+					chunk.parse(ByteBuffer.wrap(block), 0, filled);
+					chunks.add(chunk);
+				}
+				break;
+			}
+			filled += n;
+			if (filled == block.length) {
+				int cut = filled;
+				while (cut > 0 && (block[cut - 1] != '\n' || isContinued(block, cut - 1))) {
+					cut--;
+				}
+				if (cut == 0) {
+					// a single line longer than the block
+					block = Arrays.copyOf(block, 2 * block.length);
+					continue;
+				}
+				final Chunk chunk = new Chunk(scale);
+				chunk.parse(ByteBuffer.wrap(block), 0, cut);
+				chunks.add(chunk);
+				System.arraycopy(block, cut, block, 0, filled - cut);
+				filled -= cut;
+			}
+		}
+		return chunks.toArray(new Chunk[chunks.size()]);
+	}
+
+	/**
+	 * Concatenate the chunks. Vertex and texture coordinate indices are
+	 * converted to zero-based indices, relative indices are offset by the
+	 * number of elements in the preceding chunks.
+	 *
+	 * @param chunks
+	 */
+	private void collect(final Chunk[] chunks) {
+		final int n = chunks.length;
+		final int[] vertexOffset = new int[n + 1];
+		final int[] uvwOffset = new int[n + 1];
+		final int[] normalOffset = new int[n + 1];
+		final int[] faceOffset = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			vertexOffset[i + 1] = vertexOffset[i] + chunks[i].vertices.size();
+			uvwOffset[i + 1] = uvwOffset[i] + chunks[i].uvws.size();
+			normalOffset[i + 1] = normalOffset[i] + chunks[i].normals.size();
+			faceOffset[i + 1] = faceOffset[i] + chunks[i].faceSize.size();
+		}
+		vertices = new double[vertexOffset[n]];
+		uvws = new double[uvwOffset[n]];
+		normals = new double[normalOffset[n]];
+		faces = new int[faceOffset[n]][];
+		final boolean hasTexture = uvwOffset[n] > 0;
+		faceUVWs = hasTexture ? new int[faceOffset[n]][] : new int[0][];
+		WB_ParallelExecutor.instance().forRange(0, n, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				for (int i = start; i < end; i++) {
+					final Chunk chunk = chunks[i];
+					chunk.vertices.toArray(vertices, 0, vertexOffset[i], chunk.vertices.size());
+					chunk.uvws.toArray(uvws, 0, uvwOffset[i], chunk.uvws.size());
+					chunk.normals.toArray(normals, 0, normalOffset[i], chunk.normals.size());
+					final int vo = vertexOffset[i] / 3;
+					final int to = uvwOffset[i] / 3;
+					int c = 0;
+					for (int f = 0; f < chunk.faceSize.size(); f++) {
+						final int fl = chunk.faceSize.get(f);
+						final int[] face = new int[fl];
+						final int[] faceUVW = hasTexture ? new int[fl] : null;
+						for (int j = 0; j < fl; j++, c++) {
+							final int v = chunk.face.get(c);
+							face[j] = v > 0 ? v - 1 : v < 0 ? vo + chunk.faceRelative.get(c) : -1;
+							if (hasTexture) {
+								final int t = chunk.faceUVW.get(c);
+								faceUVW[j] = t > 0 ? t - 1 : t == 0 ? 0 : to + chunk.faceUVWRelative.get(c);
+							}
+						}
+						faces[faceOffset[i] + f] = face;
+						if (hasTexture) {
+							faceUVWs[faceOffset[i] + f] = faceUVW;
+						}
+					}
+				}
+			}
+		}, 1);
+	}
+
+	/**
+	 * Parse results of one line-aligned part of the file.
+	 */
+	static class Chunk {
+		final double scale;
+		final TDoubleArrayList vertices;
+		final TDoubleArrayList uvws;
+		final TDoubleArrayList normals;
+		/** Number of corners of each face. */
+		final TIntArrayList faceSize;
+		/** One-based vertex index of each corner, as in the file. */
+		final TIntArrayList face;
+		/**
+		 * For negative indices, the index relative to the first vertex of the
+		 * chunk.
+		 */
+		final TIntArrayList faceRelative;
+		final TIntArrayList faceUVW;
+		final TIntArrayList faceUVWRelative;
+		ByteBuffer buffer;
+		int pos;
+		int end;
+
+		Chunk(final double scale) {
+			this.scale = scale;
+			vertices = new TDoubleArrayList();
+			uvws = new TDoubleArrayList();
+			normals = new TDoubleArrayList();
+			faceSize = new TIntArrayList();
+			face = new TIntArrayList();
+			faceRelative = new TIntArrayList();
+			faceUVW = new TIntArrayList();
+			faceUVWRelative = new TIntArrayList();
+		}
+
+		/**
+		 * Parse the bytes [start, end) of buffer.
+		 *
+		 * @param buffer
+		 * @param start
+		 * @param end
+		 */
+		void parse(final ByteBuffer buffer, final int start, final int end) {
+			this.buffer = buffer;
+			this.pos = start;
+			this.end = end;
+			while (pos < end) {
+				skipBlanks();
+				if (pos < end) {
+					final byte b0 = buffer.get(pos);
+					final byte b1 = pos + 1 < end ? buffer.get(pos + 1) : (byte) '\n';
+					if (b0 == 'v' && isBlank(b1)) {
+						pos++;
+						vertices.add(scale * nextDouble());
+						vertices.add(scale * nextDouble());
+						vertices.add(scale * nextDouble());
+					} else if (b0 == 'v' && b1 == 't' && isBlank(pos + 2 < end ? buffer.get(pos + 2) : (byte) '\n')) {
+						pos += 2;
+						uvws.add(nextDouble());
+						uvws.add(nextDouble());
+						uvws.add(nextDouble());
+					} else if (b0 == 'v' && b1 == 'n' && isBlank(pos + 2 < end ? buffer.get(pos + 2) : (byte) '\n')) {
+						pos += 2;
+						normals.add(nextDouble());
+						normals.add(nextDouble());
+						normals.add(nextDouble());
+					} else if (b0 == 'f' && isBlank(b1)) {
+						pos++;
+						parseFace();
+					}
+				}
+				skipLine();
+			}
+			this.buffer = null;
+		}
+
+		private void parseFace() {
+			int fl = 0;
+			while (true) {
+				skipBlanks();
+				if (pos >= end || isEol(buffer.get(pos))) {
+					break;
+				}
+				final int v = nextInt();
+				face.add(v);
+				faceRelative.add(v < 0 ? vertices.size() / 3 + v : 0);
+				int t = 0;
+				if (pos < end && buffer.get(pos) == '/') {
+					pos++;
+					if (pos < end && isNumberStart(buffer.get(pos))) {
+						t = nextInt();
+					}
+					if (pos < end && buffer.get(pos) == '/') {
+						pos++;
+						if (pos < end && isNumberStart(buffer.get(pos))) {
+							nextInt();
+						}
+					}
+				}
+				faceUVW.add(t);
+				faceUVWRelative.add(t < 0 ? uvws.size() / 3 + t : 0);
+				fl++;
+				// skip anything else in this token
+				while (pos < end && !isBlank(buffer.get(pos)) && buffer.get(pos) != '\\') {
+					pos++;
+				}
+			}
+			faceSize.add(fl);
+		}
+
+		/**
+		 * Skip blanks and line continuations.
+		 */
+		private void skipBlanks() {
+			byte b;
+			while (pos < end) {
+				b = buffer.get(pos);
+				if (b == ' ' || b == '\t' || b == '\r') {
+					pos++;
+				} else if (b == '\\' && continuation(pos) > 0) {
+					pos = continuation(pos);
+				} else {
+					break;
+				}
+			}
+		}
+
+		private void skipLine() {
+			byte b;
+			while (pos < end && (b = buffer.get(pos)) != '\n') {
+				pos = b == '\\' && continuation(pos) > 0 ? continuation(pos) : pos + 1;
+			}
+			pos++;
+		}
+
+		/**
+		 * If the backslash at position p is a line continuation, the position
+		 * following the line end, otherwise -1.
+		 *
+		 * @param p
+		 * @return
+		 */
+		private int continuation(final int p) {
+			for (int i = p + 1; i < end; i++) {
+				final byte b = buffer.get(i);
+				if (b == '\n') {
+					return i + 1;
+				} else if (b != ' ' && b != '\t' && b != '\r') {
+					return -1;
+				}
+			}
+			return end;
+		}
+
+		private static boolean isBlank(final byte b) {
+			return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+		}
+
+		private static boolean isEol(final byte b) {
+			return b == '\n' || b == '#';
+		}
+
+		private static boolean isNumberStart(final byte b) {
+			return b >= '0' && b <= '9' || b == '-' || b == '+';
+		}
+
+		private int nextInt() {
+			boolean negative = false;
+			byte b = buffer.get(pos);
+			if (b == '-' || b == '+') {
+				negative = b == '-';
+				pos++;
+			}
+			int result = 0;
+			while (pos < end && (b = buffer.get(pos)) >= '0' && b <= '9') {
+				result = 10 * result + b - '0';
+				pos++;
+			}
+			return negative ? -result : result;
+		}
+
+		/**
+		 * Next number on the line, 0 if there is none. Up to 18 significant
+		 * digits with a small decimal exponent are converted exactly, anything
+		 * else is passed on to Double.parseDouble.
+		 *
+		 * @return
+		 */
+		private double nextDouble() {
+			skipBlanks();
+			if (pos >= end || isEol(buffer.get(pos))) {
+				return 0;
+			}
+			final int start = pos;
+			byte b = buffer.get(pos);
+			boolean negative = false;
+			if (b == '-' || b == '+') {
+				negative = b == '-';
+				pos++;
+			}
+			long mantissa = 0;
+			int digits = 0;
+			int exponent = 0;
+			boolean any = false;
+			boolean exact = true;
+			while (pos < end && (b = buffer.get(pos)) >= '0' && b <= '9') {
+				any = true;
+				if (digits < 18) {
+					mantissa = 10 * mantissa + b - '0';
+					if (mantissa > 0) {
+						digits++;
+					}
+				} else {
+					exponent++;
+					exact &= b == '0';
+				}
+				pos++;
+			}
+			if (pos < end && buffer.get(pos) == '.') {
+				pos++;
+				while (pos < end && (b = buffer.get(pos)) >= '0' && b <= '9') {
+					any = true;
+					if (digits < 18) {
+						mantissa = 10 * mantissa + b - '0';
+						if (mantissa > 0) {
+							digits++;
+						}
+						exponent--;
+					} else {
+						exact &= b == '0';
+					}
+					pos++;
+				}
+			}
+			if (any && pos < end && ((b = buffer.get(pos)) == 'e' || b == 'E')) {
+				pos++;
+				final boolean valid = pos < end && isNumberStart(buffer.get(pos));
+				final int e = valid ? nextInt() : 0;
+				exponent = Math.abs(e) > 10000 ? Integer.MAX_VALUE / 2 * Integer.signum(e) : exponent + e;
+			}
+			if (any && exact && (pos >= end || isBlank(b = buffer.get(pos)) || b == '#' || b == '\\')
+					&& mantissa < 1L << 53 && Math.abs(exponent) <= 22) {
+				final double value = exponent < 0 ? mantissa / POWERS[-exponent] : mantissa * POWERS[exponent];
+				return negative ? -value : value;
+			}
+			// nan, infinity, very long or very large numbers
+			while (pos < end && !isBlank(b = buffer.get(pos)) && b != '#' && b != '\\') {
+				pos++;
+			}
+			final byte[] token = new byte[pos - start];
+			for (int i = 0; i < token.length; i++) {
+				token[i] = buffer.get(start + i);
+			}
+			return Double.parseDouble(new String(token, StandardCharsets.ISO_8859_1));
+		}
+	}
+}
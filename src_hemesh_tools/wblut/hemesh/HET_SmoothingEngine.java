@@ -0,0 +1,522 @@
+/*
+ * This file is part of HE_Mesh, a library for creating and manipulating meshes.
+ * It is dedicated to the public domain. To the extent possible under law,
+ * I , Frederik Vanhoutte, have waived all copyright and related or neighboring
+ * rights.
+ *
+ * This work is published from Belgium. (http://creativecommons.org/publicdomain/zero/1.0/)
+ *
+ */
+
+package wblut.hemesh;
+
+import java.util.Iterator;
+import java.util.List;
+
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import javolution.util.FastTable;
+import wblut.core.WB_ParallelExecutor;
+import wblut.core.WB_ParallelExecutor.WB_RangeAction;
+import wblut.geom.WB_GeometryOp3D;
+import wblut.math.WB_Epsilon;
+
+/**
+ * Iterative vertex smoothing on flat arrays. The one-ring of every vertex is
+ * collected once into a compressed row structure, positions are kept in two
+ * double[] buffers that are swapped after each iteration. The vertices of an
+ * iteration are independent and are processed in parallel with
+ * WB_ParallelExecutor. Positions are only written back to the mesh on
+ * {@link #apply()}.
+ *
+ * The vertices of the structure are the smoothed vertices, vertices outside
+ * the structure that are needed for the one-rings are carried along but never
+ * moved. If the structure is a selection, only neighbors inside the selection
+ * count for the umbrella operator.
+ *
+ */
+public class HET_SmoothingEngine {
+
+	/**
+	 * Smoothed vertices first, followed by the vertices outside the structure
+	 * that are needed for the one-rings.
+	 */
+	private final List<HE_Vertex> vertices;
+	private final TLongIntMap index;
+
+	/**
+	 * Number of vertices in the structure, these come first.
+	 */
+	private final int numberOfVertices;
+
+	/**
+	 *
+	 */
+	private final boolean[] fixed;
+
+	/**
+	 * Only neighbors inside the structure are used.
+	 */
+	private final boolean restrict;
+
+	/**
+	 * Current and next positions, x,y,z per vertex.
+	 */
+	private double[] positions;
+	private double[] buffer;
+
+	/**
+	 * One-ring neighbors, neighbors of vertex i are
+	 * ring[ringStart[i]]...ring[ringStart[i+1]-1].
+	 */
+	private final int[] ringStart;
+	private final int[] ring;
+
+	/**
+	 * Outgoing halfedges of every vertex, built on demand: end vertex, face,
+	 * and the vertices of the two halfedges needed for the cotangent weights.
+	 */
+	private int[] starStart;
+	private int[] starEnd;
+	private int[] starFace;
+	private int[] starPrev;
+	private int[] starPrevPrev;
+	private int[] starPairPrev;
+	private int[] starPairPrevPrev;
+
+	/**
+	 * Faces incident to the vertices, built on demand.
+	 */
+	private int numberOfFaces;
+	private int[] faceStart;
+	private int[] faceVertices;
+	private double[] faceNormals;
+
+	/**
+	 *
+	 *
+	 * @param structure
+	 *            mesh or selection
+	 * @param keepBoundary
+	 *            don't move boundary vertices
+	 */
+	public HET_SmoothingEngine(final HE_MeshStructure structure, final boolean keepBoundary) {
+		restrict = !(structure instanceof HE_Mesh);
+		numberOfVertices = structure.getNumberOfVertices();
+		index = new TLongIntHashMap(10, 0.5f, -1L, -1);
+		vertices = new FastTable<HE_Vertex>();
+		Iterator<HE_Vertex> vItr = structure.vItr();
+		HE_Vertex v;
+		while (vItr.hasNext()) {
+			v = vItr.next();
+			index.put(v.getKey(), vertices.size());
+			vertices.add(v);
+		}
+		fixed = new boolean[numberOfVertices];
+		ringStart = new int[numberOfVertices + 1];
+		final FastTable<HE_Vertex> neighbors = new FastTable<HE_Vertex>();
+		int[] tmpRing = new int[6 * numberOfVertices];
+		int size = 0;
+		HE_Halfedge he;
+		HE_Vertex n;
+		for (int i = 0; i < numberOfVertices; i++) {
+			v = vertices.get(i);
+			ringStart[i] = size;
+			if (v.getHalfedge() == null) {
+				continue;
+			}
+			if (keepBoundary && v.isBoundary()) {
+				fixed[i] = true;
+				continue;
+			}
+			// same order as HE_Vertex.getNeighborVertices()
+			neighbors.clear();
+			he = v.getHalfedge();
+			do {
+				n = he.getNextInFace().getVertex();
+				if (n != v && !neighbors.contains(n) && (!restrict || structure.contains(n))) {
+					neighbors.add(n);
+				}
+				he = he.getNextInVertex();
+			} while (he != v.getHalfedge());
+			if (size + neighbors.size() > tmpRing.length) {
+				final int[] tmp = new int[Math.max(2 * tmpRing.length, size + neighbors.size())];
+				System.arraycopy(tmpRing, 0, tmp, 0, size);
+				tmpRing = tmp;
+			}
+			for (int j = 0; j < neighbors.size(); j++) {
+				tmpRing[size++] = getIndex(neighbors.get(j));
+			}
+		}
+		ringStart[numberOfVertices] = size;
+		ring = new int[size];
+		System.arraycopy(tmpRing, 0, ring, 0, size);
+		positions = new double[3 * vertices.size()];
+		for (int i = 0; i < vertices.size(); i++) {
+			v = vertices.get(i);
+			positions[3 * i] = v.xd();
+			positions[3 * i + 1] = v.yd();
+			positions[3 * i + 2] = v.zd();
+		}
+		buffer = positions.clone();
+	}
+
+	private int getIndex(final HE_Vertex v) {
+		int i = index.get(v.getKey());
+		if (i == -1) {
+			i = vertices.size();
+			index.put(v.getKey(), i);
+			vertices.add(v);
+		}
+		return i;
+	}
+
+	/**
+	 * Build the outgoing halfedges and incident faces of all vertices. New
+	 * vertices can only be encountered here if the structure is a selection,
+	 * the position buffers are grown accordingly.
+	 */
+	private void buildStar() {
+		if (starStart != null) {
+			return;
+		}
+		final TLongIntMap faceIndex = new TLongIntHashMap(10, 0.5f, -1L, -1);
+		final List<HE_Face> faces = new FastTable<HE_Face>();
+		starStart = new int[numberOfVertices + 1];
+		int capacity = 6 * numberOfVertices;
+		starEnd = new int[capacity];
+		starFace = new int[capacity];
+		starPrev = new int[capacity];
+		starPrevPrev = new int[capacity];
+		starPairPrev = new int[capacity];
+		starPairPrevPrev = new int[capacity];
+		int size = 0;
+		HE_Vertex v;
+		HE_Halfedge he;
+		HE_Face f;
+		int fi;
+		for (int i = 0; i < numberOfVertices; i++) {
+			v = vertices.get(i);
+			starStart[i] = size;
+			if (v.getHalfedge() == null || fixed[i]) {
+				continue;
+			}
+			he = v.getHalfedge();
+			do {
+				if (size == capacity) {
+					capacity *= 2;
+					starEnd = grow(starEnd, capacity);
+					starFace = grow(starFace, capacity);
+					starPrev = grow(starPrev, capacity);
+					starPrevPrev = grow(starPrevPrev, capacity);
+					starPairPrev = grow(starPairPrev, capacity);
+					starPairPrevPrev = grow(starPairPrevPrev, capacity);
+				}
+				starEnd[size] = getIndex(he.getEndVertex());
+				starPrev[size] = getIndex(he.getPrevInFace().getVertex());
+				starPrevPrev[size] = getIndex(he.getPrevInFace().getPrevInFace().getVertex());
+				starPairPrev[size] = getIndex(he.getPair().getPrevInFace().getVertex());
+				starPairPrevPrev[size] = getIndex(he.getPair().getPrevInFace().getPrevInFace().getVertex());
+				f = he.getFace();
+				if (f == null) {
+					fi = -1;
+				} else {
+					fi = faceIndex.get(f.getKey());
+					if (fi == -1) {
+						fi = faces.size();
+						faceIndex.put(f.getKey(), fi);
+						faces.add(f);
+					}
+				}
+				starFace[size] = fi;
+				size++;
+				he = he.getNextInVertex();
+			} while (he != v.getHalfedge());
+		}
+		starStart[numberOfVertices] = size;
+		numberOfFaces = faces.size();
+		faceStart = new int[numberOfFaces + 1];
+		int fvsize = 0;
+		for (int i = 0; i < numberOfFaces; i++) {
+			fvsize += faces.get(i).getFaceOrder();
+		}
+		faceVertices = new int[fvsize];
+		fvsize = 0;
+		for (int i = 0; i < numberOfFaces; i++) {
+			f = faces.get(i);
+			faceStart[i] = fvsize;
+			he = f.getHalfedge();
+			do {
+				faceVertices[fvsize++] = getIndex(he.getVertex());
+				he = he.getNextInFace();
+			} while (he != f.getHalfedge());
+		}
+		faceStart[numberOfFaces] = fvsize;
+		faceNormals = new double[3 * numberOfFaces];
+		if (vertices.size() > positions.length / 3) {
+			final double[] tmp = new double[3 * vertices.size()];
+			System.arraycopy(positions, 0, tmp, 0, positions.length);
+			HE_Vertex w;
+			for (int i = positions.length / 3; i < vertices.size(); i++) {
+				w = vertices.get(i);
+				tmp[3 * i] = w.xd();
+				tmp[3 * i + 1] = w.yd();
+				tmp[3 * i + 2] = w.zd();
+			}
+			positions = tmp;
+			buffer = tmp.clone();
+		}
+	}
+
+	private static int[] grow(final int[] array, final int capacity) {
+		final int[] tmp = new int[capacity];
+		System.arraycopy(array, 0, tmp, 0, array.length);
+		return tmp;
+	}
+
+	/**
+	 *
+	 *
+	 * @return number of vertices that are smoothed, including fixed vertices
+	 */
+	public int getNumberOfVertices() {
+		return numberOfVertices;
+	}
+
+	/**
+	 * Umbrella operator, p'=(1-lambda)*p+lambda*average of the neighbors.
+	 *
+	 * @param lambda
+	 */
+	public void smooth(final double lambda) {
+		final double[] pos = positions;
+		final double[] next = buffer;
+		WB_ParallelExecutor.instance().forRange(0, numberOfVertices, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				for (int i = start; i < end; i++) {
+					if (!fixed[i]) {
+						umbrella(i, lambda, pos, next);
+					}
+				}
+			}
+		});
+		swap();
+	}
+
+	/**
+	 * Umbrella operator followed by projection on the tangent plane of the
+	 * vertex. The tangent plane is defined by the angle-weighted vertex normal.
+	 *
+	 * @param lambda
+	 */
+	public void smoothTangential(final double lambda) {
+		buildStar();
+		updateFaceNormals();
+		final double[] pos = positions;
+		final double[] next = buffer;
+		WB_ParallelExecutor.instance().forRange(0, numberOfVertices, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				for (int i = start; i < end; i++) {
+					if (!fixed[i]) {
+						tangential(i, lambda, pos, next);
+					}
+				}
+			}
+		});
+		swap();
+	}
+
+	/**
+	 * Cotangent-weighted Laplacian, p'=p+lambda*mean curvature normal.
+	 *
+	 * @param lambda
+	 */
+	public void smoothMeanCurvature(final double lambda) {
+		buildStar();
+		final double[] pos = positions;
+		final double[] next = buffer;
+		WB_ParallelExecutor.instance().forRange(0, numberOfVertices, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				for (int i = start; i < end; i++) {
+					if (!fixed[i]) {
+						meanCurvature(i, lambda, pos, next);
+					}
+				}
+			}
+		});
+		swap();
+	}
+
+	/**
+	 * Write the current positions back to the vertices.
+	 */
+	public void apply() {
+		for (int i = 0; i < numberOfVertices; i++) {
+			if (!fixed[i]) {
+				vertices.get(i).set(positions[3 * i], positions[3 * i + 1], positions[3 * i + 2]);
+			}
+		}
+	}
+
+	/**
+	 * Vertices outside the structure and fixed vertices never change, both
+	 * buffers hold the same values for these.
+	 */
+	private void swap() {
+		final double[] tmp = positions;
+		positions = buffer;
+		buffer = tmp;
+	}
+
+	private void umbrella(final int i, final double lambda, final double[] pos, final double[] next) {
+		final int start = ringStart[i];
+		final int end = ringStart[i + 1];
+		final double f = lambda / (end - start);
+		double x = 0;
+		double y = 0;
+		double z = 0;
+		// summation order of the original HEM_Smooth, for identical results
+		if (!restrict) {
+			x = pos[3 * i] * (1.0 - lambda);
+			y = pos[3 * i + 1] * (1.0 - lambda);
+			z = pos[3 * i + 2] * (1.0 - lambda);
+		}
+		int n;
+		for (int j = start; j < end; j++) {
+			n = 3 * ring[j];
+			x = x + f * pos[n];
+			y = y + f * pos[n + 1];
+			z = z + f * pos[n + 2];
+		}
+		if (restrict) {
+			x = x + (1.0 - lambda) * pos[3 * i];
+			y = y + (1.0 - lambda) * pos[3 * i + 1];
+			z = z + (1.0 - lambda) * pos[3 * i + 2];
+		}
+		next[3 * i] = x;
+		next[3 * i + 1] = y;
+		next[3 * i + 2] = z;
+	}
+
+	private void tangential(final int i, final double lambda, final double[] pos, final double[] next) {
+		umbrella(i, lambda, pos, next);
+		final double vx = pos[3 * i];
+		final double vy = pos[3 * i + 1];
+		final double vz = pos[3 * i + 2];
+		double nx = 0;
+		double ny = 0;
+		double nz = 0;
+		double a;
+		int e, p, f;
+		for (int j = starStart[i]; j < starStart[i + 1]; j++) {
+			f = starFace[j];
+			if (f > -1) {
+				e = 3 * starEnd[j];
+				p = 3 * starPrev[j];
+				a = WB_GeometryOp3D.getAngleBetween(vx, vy, vz, pos[e], pos[e + 1], pos[e + 2], pos[p], pos[p + 1],
+						pos[p + 2]);
+				nx = nx + a * faceNormals[3 * f];
+				ny = ny + a * faceNormals[3 * f + 1];
+				nz = nz + a * faceNormals[3 * f + 2];
+			}
+		}
+		// normalized twice, once for the vertex normal, once for the plane
+		for (int k = 0; k < 2; k++) {
+			final double d = WB_GeometryOp3D.getLength3D(nx, ny, nz);
+			if (WB_Epsilon.isZero(d)) {
+				nx = ny = nz = 0;
+			} else {
+				nx = nx / d;
+				ny = ny / d;
+				nz = nz / d;
+			}
+		}
+		final double x = next[3 * i];
+		final double y = next[3 * i + 1];
+		final double z = next[3 * i + 2];
+		final double dot = WB_GeometryOp3D.dot(nx, ny, nz, x - vx, y - vy, z - vz);
+		next[3 * i] = x - nx * dot;
+		next[3 * i + 1] = y - ny * dot;
+		next[3 * i + 2] = z - nz * dot;
+	}
+
+	private void meanCurvature(final int i, final double lambda, final double[] pos, final double[] next) {
+		final double vx = pos[3 * i];
+		final double vy = pos[3 * i + 1];
+		final double vz = pos[3 * i + 2];
+		double x = 0;
+		double y = 0;
+		double z = 0;
+		double factor = 0;
+		double cotana, cotanb, w;
+		int e;
+		for (int j = starStart[i]; j < starStart[i + 1]; j++) {
+			e = starEnd[j];
+			cotana = cotan(pos, starPrev[j], i, starPrevPrev[j]);
+			cotanb = cotan(pos, starPairPrev[j], e, starPairPrevPrev[j]);
+			w = cotana + cotanb;
+			e *= 3;
+			x = x + w * (pos[e] - vx);
+			y = y + w * (pos[e + 1] - vy);
+			z = z + w * (pos[e + 2] - vz);
+			factor += w;
+		}
+		final double f = lambda / factor;
+		next[3 * i] = x * f + vx;
+		next[3 * i + 1] = y * f + vy;
+		next[3 * i + 2] = z * f + vz;
+	}
+
+	/**
+	 * Cotangent of the angle in p0, same as HE_Halfedge.getCotan().
+	 */
+	private static double cotan(final double[] pos, final int p0, final int p1, final int p2) {
+		final double ux = pos[3 * p0] - pos[3 * p1];
+		final double uy = pos[3 * p0 + 1] - pos[3 * p1 + 1];
+		final double uz = pos[3 * p0 + 2] - pos[3 * p1 + 2];
+		final double vx = pos[3 * p0] - pos[3 * p2];
+		final double vy = pos[3 * p0 + 1] - pos[3 * p2 + 1];
+		final double vz = pos[3 * p0 + 2] - pos[3 * p2 + 2];
+		return WB_GeometryOp3D.dot(ux, uy, uz, vx, vy, vz)
+				/ WB_GeometryOp3D.getLength3D(uy * vz - uz * vy, uz * vx - ux * vz, ux * vy - uy * vx);
+	}
+
+	/**
+	 * Newell normals of all incident faces, same as HE_Face.getFaceNormal().
+	 */
+	private void updateFaceNormals() {
+		final double[] pos = positions;
+		WB_ParallelExecutor.instance().forRange(0, numberOfFaces, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				int p0, p1, last;
+				double x, y, z, d;
+				for (int f = start; f < end; f++) {
+					x = y = z = 0;
+					last = faceStart[f + 1] - 1;
+					for (int j = faceStart[f]; j <= last; j++) {
+						p0 = 3 * faceVertices[j];
+						p1 = 3 * faceVertices[j == last ? faceStart[f] : j + 1];
+						x = x + (pos[p0 + 1] - pos[p1 + 1]) * (pos[p0 + 2] + pos[p1 + 2]);
+						y = y + (pos[p0 + 2] - pos[p1 + 2]) * (pos[p0] + pos[p1]);
+						z = z + (pos[p0] - pos[p1]) * (pos[p0 + 1] + pos[p1 + 1]);
+					}
+					d = WB_GeometryOp3D.getLength3D(x, y, z);
+					if (WB_Epsilon.isZero(d)) {
+						x = y = z = 0;
+					} else {
+						x = x / d;
+						y = y / d;
+						z = z / d;
+					}
+					faceNormals[3 * f] = x;
+					faceNormals[3 * f + 1] = y;
+					faceNormals[3 * f + 2] = z;
+				}
+			}
+		});
+	}
+}
@@ -166,6 +166,64 @@ public class HET_Texture {
 		}
 	}
 
+	/**
+	 * Set vertex colors according to a scalar vertex attribute, mapping
+	 * minrange to maxrange onto the palette.
+	 *
+	 * @param mesh
+	 * @param name
+	 *            name of an int, float or double vertex attribute
+	 * @param minrange
+	 * @param maxrange
+	 * @param palette
+	 */
+	public static void setVertexColorFromAttribute(final HE_Mesh mesh, final String name, final double minrange,
+			final double maxrange, final int[] palette) {
+		final double[] values = getScalarValues(mesh.getVertexAttribute(name), name);
+		final HE_VertexIterator vitr = mesh.vItr();
+		int i = 0;
+		while (vitr.hasNext()) {
+			vitr.next().setColor(palette[getPaletteIndex(values[i++], minrange, maxrange, palette.length)]);
+		}
+	}
+
+	/**
+	 * Set face colors according to a scalar face attribute, mapping minrange
+	 * to maxrange onto the palette.
+	 *
+	 * @param mesh
+	 * @param name
+	 *            name of an int, float or double face attribute
+	 * @param minrange
+	 * @param maxrange
+	 * @param palette
+	 */
+	public static void setFaceColorFromAttribute(final HE_Mesh mesh, final String name, final double minrange,
+			final double maxrange, final int[] palette) {
+		final double[] values = getScalarValues(mesh.getFaceAttribute(name), name);
+		final HE_FaceIterator fitr = mesh.fItr();
+		int i = 0;
+		while (fitr.hasNext()) {
+			fitr.next().setColor(palette[getPaletteIndex(values[i++], minrange, maxrange, palette.length)]);
+		}
+	}
+
+	private static double[] getScalarValues(final HE_Attribute<?> attribute, final String name) {
+		if (attribute == null) {
+			throw new IllegalArgumentException("No attribute " + name + ".");
+		}
+		if (attribute.getStride() != 1) {
+			throw new IllegalArgumentException("Attribute " + name + " is not a scalar attribute.");
+		}
+		return attribute.toDoubleArray();
+	}
+
+	private static int getPaletteIndex(final double value, final double minrange, final double maxrange,
+			final int n) {
+		final int index = (int) (n * (value - minrange) / (maxrange - minrange));
+		return Math.max(0, Math.min(index, n - 1));
+	}
+
 	/**
 	 * Set face colors according to the face normal normal.x: -1 to 1, red
 	 * component from 0 to 255 normal.y: -1 to 1, green component from 0 to 255
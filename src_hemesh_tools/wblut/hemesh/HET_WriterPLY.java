@@ -17,6 +17,7 @@ import java.io.OutputStream;
 import java.util.zip.GZIPOutputStream;
 
 import wblut.geom.WB_Coord;
+import wblut.hemesh.HE_Attribute.HE_IntAttribute;
 
 /**
  *
@@ -192,7 +193,23 @@ public class HET_WriterPLY {
 	}
 
 	/**
+	 * Colors of an int color attribute in element order, null if there is no
+	 * such attribute and the element colors should be used.
 	 *
+	 * @param attribute
+	 * @return
+	 */
+	private static int[] getColors(final HE_Attribute<?> attribute) {
+		if (attribute instanceof HE_IntAttribute) {
+			return ((HE_IntAttribute<?>) attribute).toArray();
+		}
+		return null;
+	}
+
+	/**
+	 * Save mesh with vertex colors. If the mesh has an int vertex attribute
+	 * named HE_Attribute.COLOR, its values are used instead of the colors of
+	 * the vertices.
 	 *
 	 * @param mesh
 	 * @param stream
@@ -222,11 +239,12 @@ public class HET_WriterPLY {
 			out.write("end_header\n".getBytes());
 			final WB_Coord[] verts = mesh.getVerticesAsArray();
 			final WB_Coord[] normals = mesh.getVertexNormals();
+			final int[] colors = getColors(mesh.getVertexAttribute(HE_Attribute.COLOR));
 			int i = 0, j = 0;
 			try {
 				final HE_VertexIterator vitr = mesh.vItr();
 				for (i = 0, j = 0; i < verts.length; i++) {
-					final int c = vitr.next().getColor();
+					final int c = colors == null ? vitr.next().getColor() : colors[i];
 					final WB_Coord v = verts[i];
 					out.write(("" + v.xf()).getBytes());
 					out.write((" " + v.yf()).getBytes());
@@ -272,7 +290,9 @@ public class HET_WriterPLY {
 	}
 
 	/**
-	 *
+	 * Save mesh with face colors. If the mesh has an int face attribute named
+	 * HE_Attribute.COLOR, its values are used instead of the colors of the
+	 * faces.
 	 *
 	 * @param mesh
 	 * @param stream
@@ -315,8 +335,10 @@ public class HET_WriterPLY {
 				}
 				final int[][] faces = mesh.getFacesAsInt();
 				final HE_FaceIterator fitr = mesh.fItr();
+				final int[] colors = getColors(mesh.getFaceAttribute(HE_Attribute.COLOR));
+				int fi = 0;
 				for (final int[] f : faces) {
-					final int c = fitr.next().getColor();
+					final int c = colors == null ? fitr.next().getColor() : colors[fi++];
 					out.write(("3 " + f[0]).getBytes());
 					out.write((" " + f[1]).getBytes());
 					out.write((" " + f[2]).getBytes());
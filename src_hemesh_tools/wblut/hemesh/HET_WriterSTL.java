@@ -10,12 +10,12 @@
 package wblut.hemesh;
 
 //Straight port from Karsten Schmidt's code
-import java.io.BufferedOutputStream;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.zip.GZIPOutputStream;
 import wblut.geom.WB_Coord;
 import wblut.geom.WB_Vector;
@@ -29,6 +29,11 @@ import wblut.geom.WB_Vector;
  * The minimal design of this exporter means it does not build an extra list of
  * faces in RAM and so is able to easily export models with millions of faces.
  *
+ * Facets are encoded in a ByteBuffer. When saving to a stream, the buffer is
+ * flushed to the stream whenever it is full. Alternatively, the facets can be
+ * written directly into a caller-supplied ByteBuffer, e.g. a memory-mapped
+ * file, see beginSave(ByteBuffer, int) and getByteSize(int).
+ *
  * http://en.wikipedia.org/wiki/STL_(file_format)
  */
 public class HET_WriterSTL {
@@ -59,15 +64,25 @@ public class HET_WriterSTL {
      */
     public static final int DEFAULT_BUFFER = 0x10000;
     
+    /**
+     * Size of one facet in bytes.
+     */
+    public static final int FACET_SIZE = 50;
+
+    /**
+     * Size of the header in bytes, including the number of facets.
+     */
+    public static final int HEADER_SIZE = 84;
+
     /**
      * 
      */
     protected OutputStream ds;
     
     /**
-     * 
+     * Buffer receiving the encoded facets.
      */
-    protected byte[] buf = new byte[4];
+    protected ByteBuffer out;
     
     /**
      * 
@@ -115,14 +130,45 @@ public class HET_WriterSTL {
      */
     public void beginSave(final OutputStream stream, final int numFaces) {
 	try {
-	    ds = new BufferedOutputStream(new DataOutputStream(stream),
-		    bufferSize);
+	    ds = stream;
+	    out = ByteBuffer.allocate(Math.max(bufferSize, HEADER_SIZE))
+		    .order(ByteOrder.LITTLE_ENDIAN);
 	    writeHeader(numFaces);
 	} catch (final Exception e) {
 	    e.printStackTrace();
 	}
     }
 
+    /**
+     * Write directly into a buffer, starting at its current position. The
+     * buffer should have at least getByteSize(numFaces) bytes remaining. Its
+     * byte order is set to little-endian. endSave() leaves the position after
+     * the last facet.
+     *
+     * @param buffer
+     * @param numFaces
+     */
+    public void beginSave(final ByteBuffer buffer, final int numFaces) {
+	try {
+	    ds = null;
+	    out = buffer;
+	    out.order(ByteOrder.LITTLE_ENDIAN);
+	    writeHeader(numFaces);
+	} catch (final Exception e) {
+	    e.printStackTrace();
+	}
+    }
+
+    /**
+     * Number of bytes in a binary STL file with numFaces facets.
+     *
+     * @param numFaces
+     * @return
+     */
+    public static long getByteSize(final int numFaces) {
+	return HEADER_SIZE + (long) FACET_SIZE * numFaces;
+    }
+
     /**
      * 
      *
@@ -182,7 +228,11 @@ public class HET_WriterSTL {
      * 
      */
     public void endSave() {
+	if (ds == null) {
+	    return;
+	}
 	try {
+	    flush();
 	    ds.flush();
 	    ds.close();
 	} catch (final Exception e) {
@@ -190,6 +240,29 @@ public class HET_WriterSTL {
 	}
     }
 
+    /**
+     * Pass the contents of the buffer to the output stream.
+     *
+     * @throws IOException
+     */
+    protected void flush() throws IOException {
+	ds.write(out.array(), 0, out.position());
+	out.clear();
+    }
+
+    /**
+     * Make room for n bytes. Only a buffer backed by a stream is flushed, a
+     * direct buffer should be large enough.
+     *
+     * @param n
+     * @throws IOException
+     */
+    protected void ensure(final int n) throws IOException {
+	if (ds != null && out.remaining() < n) {
+	    flush();
+	}
+    }
+
     /**
      * 
      *
@@ -231,18 +304,6 @@ public class HET_WriterSTL {
 	}
     }
 
-    /**
-     * 
-     *
-     * @param a 
-     */
-    private final void prepareBuffer(final int a) {
-	buf[3] = (byte) (a >>> 24);
-	buf[2] = (byte) ((a >> 16) & 0xff);
-	buf[1] = (byte) ((a >> 8) & 0xff);
-	buf[0] = (byte) (a & 0xff);
-    }
-
     /**
      * 
      *
@@ -277,8 +338,8 @@ public class HET_WriterSTL {
      * @throws IOException 
      */
     protected void writeFloat(final float a) throws IOException {
-	prepareBuffer(Float.floatToRawIntBits(a));
-	ds.write(buf, 0, 4);
+	ensure(4);
+	out.putFloat(a);
     }
 
     /**
@@ -290,7 +351,8 @@ public class HET_WriterSTL {
     protected void writeHeader(final int num) throws IOException {
 	final byte[] header = new byte[80];
 	colorModel.formatHeader(header);
-	ds.write(header, 0, 80);
+	ensure(80);
+	out.put(header, 0, 80);
 	writeInt(num);
     }
 
@@ -301,8 +363,8 @@ public class HET_WriterSTL {
      * @throws IOException 
      */
     protected void writeInt(final int a) throws IOException {
-	prepareBuffer(a);
-	ds.write(buf, 0, 4);
+	ensure(4);
+	out.putInt(a);
     }
 
     /**
@@ -327,9 +389,8 @@ public class HET_WriterSTL {
      * @throws IOException 
      */
     protected void writeShort(final int a) throws IOException {
-	buf[0] = (byte) (a & 0xff);
-	buf[1] = (byte) ((a >> 8) & 0xff);
-	ds.write(buf, 0, 2);
+	ensure(2);
+	out.putShort((short) a);
     }
 
     /**
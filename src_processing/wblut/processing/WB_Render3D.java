@@ -56,6 +56,7 @@ import wblut.geom.WB_Triangulation2D;
 import wblut.geom.WB_Triangulation3D;
 import wblut.geom.WB_Vector;
 import wblut.hemesh.HET_MeshOp;
+import wblut.hemesh.HE_Attribute.HE_IntAttribute;
 import wblut.hemesh.HE_Face;
 import wblut.hemesh.HE_FaceEdgeCirculator;
 import wblut.hemesh.HE_FaceHalfedgeInnerCirculator;
@@ -84,6 +85,9 @@ public class WB_Render3D extends WB_Render2D {
 	 */
 	private WB_GeometryFactory geometryfactory = new WB_GeometryFactory();
 
+	/** Buffer reused by the per-face draw calls. */
+	private final List<HE_Vertex> faceVertices = new ArrayList<HE_Vertex>();
+
 	public static final WB_ProgressTracker tracker = WB_ProgressTracker.instance();
 
 	/**
@@ -529,7 +533,8 @@ public class WB_Render3D extends WB_Render2D {
 		}
 		final int fo = f.getFaceOrder();
 
-		final List<HE_Vertex> vertices = f.getFaceVertices();
+		final List<HE_Vertex> vertices = faceVertices;
+		f.getFaceVertices(vertices);
 
 		if (fo < 3 || vertices.size() < 3) {
 		} else if (fo == 3) {
@@ -604,7 +609,8 @@ public class WB_Render3D extends WB_Render2D {
 		}
 		final int fo = f.getFaceOrder();
 
-		final List<HE_Vertex> vertices = f.getFaceVertices();
+		final List<HE_Vertex> vertices = faceVertices;
+		f.getFaceVertices(vertices);
 
 		if (fo < 3 || vertices.size() < 3) {
 		} else if (fo == 3) {
@@ -696,7 +702,8 @@ public class WB_Render3D extends WB_Render2D {
 			return;
 		}
 		final int fo = f.getFaceOrder();
-		final List<HE_Vertex> vertices = f.getFaceVertices();
+		final List<HE_Vertex> vertices = faceVertices;
+		f.getFaceVertices(vertices);
 		if (fo < 3 || vertices.size() < 3) {
 		} else if (fo == 3) {
 			final int[] tri = new int[] { 0, 1, 2 };
@@ -772,7 +779,8 @@ public class WB_Render3D extends WB_Render2D {
 			return;
 		}
 		final int fo = f.getFaceOrder();
-		final List<HE_Vertex> vertices = f.getFaceVertices();
+		final List<HE_Vertex> vertices = faceVertices;
+		f.getFaceVertices(vertices);
 		if (fo < 3 || vertices.size() < 3) {
 		} else if (fo == 3) {
 			final int[] tri = new int[] { 0, 1, 2 };
@@ -866,7 +874,8 @@ public class WB_Render3D extends WB_Render2D {
 		}
 		final int fo = f.getFaceOrder();
 		final int fti = f.getTextureId();
-		final List<HE_Vertex> vertices = f.getFaceVertices();
+		final List<HE_Vertex> vertices = faceVertices;
+		f.getFaceVertices(vertices);
 		if (fo < 3 || vertices.size() < 3) {
 		} else if (fo == 3) {
 			final int[] tri = new int[] { 0, 1, 2 };
@@ -1046,7 +1055,8 @@ public class WB_Render3D extends WB_Render2D {
 			home.pushStyle();
 			home.fill(f.getColor());
 			final int[] tris = f.getTriangles();
-			final List<HE_Vertex> vertices = f.getFaceVertices();
+			final List<HE_Vertex> vertices = faceVertices;
+			f.getFaceVertices(vertices);
 			HE_Vertex v0, v1, v2;
 			WB_Coord n0, n1, n2;
 			if (smooth) {
@@ -1090,7 +1100,8 @@ public class WB_Render3D extends WB_Render2D {
 			home.pushStyle();
 			home.fill(f.getColor());
 			final int[] tris = f.getTriangles();
-			final List<HE_Vertex> vertices = f.getFaceVertices();
+			final List<HE_Vertex> vertices = faceVertices;
+			f.getFaceVertices(vertices);
 			HE_Vertex v0, v1, v2;
 			WB_Coord n0, n1, n2;
 			if (smooth) {
@@ -1151,7 +1162,8 @@ public class WB_Render3D extends WB_Render2D {
 		}
 		if (f.getFaceOrder() > 2) {
 			final int[] tris = f.getTriangles();
-			final List<HE_Vertex> vertices = f.getFaceVertices();
+			final List<HE_Vertex> vertices = faceVertices;
+			f.getFaceVertices(vertices);
 			final List<HE_Halfedge> halfedges = f.getFaceHalfedges();
 			HE_Vertex v0, v1, v2;
 			WB_Coord n0, n1, n2;
@@ -1199,7 +1211,8 @@ public class WB_Render3D extends WB_Render2D {
 		}
 		if (f.getFaceOrder() > 2) {
 			final int[] tris = f.getTriangles();
-			final List<HE_Vertex> vertices = f.getFaceVertices();
+			final List<HE_Vertex> vertices = faceVertices;
+			f.getFaceVertices(vertices);
 			final List<HE_Halfedge> halfedges = f.getFaceHalfedges();
 			HE_Vertex v0, v1, v2;
 			WB_Coord n0, n1, n2;
@@ -1283,7 +1296,8 @@ public class WB_Render3D extends WB_Render2D {
 			return;
 		}
 		final int fo = f.getFaceOrder();
-		final List<HE_Vertex> vertices = f.getFaceVertices();
+		final List<HE_Vertex> vertices = faceVertices;
+		f.getFaceVertices(vertices);
 		if (fo < 3 || vertices.size() < 3) {
 		} else if (fo == 3) {
 			final WB_Coord fn = f.getFaceNormal();
@@ -1439,7 +1453,8 @@ public class WB_Render3D extends WB_Render2D {
 		}
 		if (f.getFaceOrder() > 2) {
 			final int[] tris = f.getTriangles();
-			final List<HE_Vertex> vertices = f.getFaceVertices();
+			final List<HE_Vertex> vertices = faceVertices;
+			f.getFaceVertices(vertices);
 			HE_Vertex v0, v1, v2;
 			WB_Coord n0, n1, n2;
 			if (smooth) {
@@ -1486,7 +1501,8 @@ public class WB_Render3D extends WB_Render2D {
 		}
 		if (f.getFaceOrder() > 2) {
 			final int[] tris = f.getTriangles();
-			final List<HE_Vertex> vertices = f.getFaceVertices();
+			final List<HE_Vertex> vertices = faceVertices;
+			f.getFaceVertices(vertices);
 			HE_Vertex v0, v1, v2;
 			WB_Coord n0, n1, n2;
 			if (smooth) {
@@ -1611,6 +1627,25 @@ public class WB_Render3D extends WB_Render2D {
 		home.endShape();
 	}
 
+	/**
+	 * Draw faces with the colors of a face attribute, e.g. the attribute named
+	 * HE_Attribute.COLOR.
+	 *
+	 * @param mesh
+	 * @param colors
+	 */
+	public void drawFacesFC(final HE_MeshStructure mesh, final HE_IntAttribute<HE_Face> colors) {
+		final int[] fc = colors.toArray();
+		final Iterator<HE_Face> fItr = mesh.fItr();
+		home.beginShape(PConstants.TRIANGLES);
+		int i = 0;
+		while (fItr.hasNext()) {
+			home.fill(fc[i++]);
+			drawFaceInt(fItr.next(), false);
+		}
+		home.endShape();
+	}
+
 	/**
 	 *
 	 *
@@ -1632,7 +1667,7 @@ public class WB_Render3D extends WB_Render2D {
 	 *            the mesh
 	 */
 	public void drawFacesSmooth(final HE_MeshStructure mesh) {
-
+		mesh.updateDerivedGeometry();
 		final Iterator<HE_Face> fItr = mesh.fItr();
 		home.beginShape(PConstants.TRIANGLES);
 		while (fItr.hasNext()) {
@@ -1648,7 +1683,7 @@ public class WB_Render3D extends WB_Render2D {
 	 * @param texture
 	 */
 	public void drawFacesSmooth(final HE_MeshStructure mesh, final PImage texture) {
-
+		mesh.updateDerivedGeometry();
 		final Iterator<HE_Face> fItr = mesh.fItr();
 		home.beginShape(PConstants.TRIANGLES);
 		while (fItr.hasNext()) {
@@ -1664,7 +1699,7 @@ public class WB_Render3D extends WB_Render2D {
 	 * @param textures
 	 */
 	public void drawFacesSmooth(final HE_MeshStructure mesh, final PImage[] textures) {
-
+		mesh.updateDerivedGeometry();
 		final Iterator<HE_Face> fItr = mesh.fItr();
 		while (fItr.hasNext()) {
 			drawFace(fItr.next(), textures, true);
@@ -1678,6 +1713,7 @@ public class WB_Render3D extends WB_Render2D {
 	 * @param mesh
 	 */
 	public void drawFacesSmoothFC(final HE_MeshStructure mesh) {
+		mesh.updateDerivedGeometry();
 		final Iterator<HE_Face> fItr = mesh.fItr();
 		home.beginShape(PConstants.TRIANGLES);
 		while (fItr.hasNext()) {
@@ -1692,6 +1728,7 @@ public class WB_Render3D extends WB_Render2D {
 	 * @param mesh
 	 */
 	public void drawFacesSmoothHC(final HE_MeshStructure mesh) {
+		mesh.updateDerivedGeometry();
 		final Iterator<HE_Face> fItr = mesh.fItr();
 		home.beginShape(PConstants.TRIANGLES);
 		while (fItr.hasNext()) {
@@ -1706,6 +1743,7 @@ public class WB_Render3D extends WB_Render2D {
 	 * @param mesh
 	 */
 	public void drawFacesSmoothVC(final HE_MeshStructure mesh) {
+		mesh.updateDerivedGeometry();
 		final Iterator<HE_Face> fItr = mesh.fItr();
 		home.beginShape(PConstants.TRIANGLES);
 		while (fItr.hasNext()) {
@@ -1728,6 +1766,35 @@ public class WB_Render3D extends WB_Render2D {
 		home.endShape();
 	}
 
+	/**
+	 * Draw faces with the colors of a vertex attribute, e.g. the attribute
+	 * named HE_Attribute.COLOR.
+	 *
+	 * @param mesh
+	 * @param colors
+	 */
+	public void drawFacesVC(final HE_MeshStructure mesh, final HE_IntAttribute<HE_Vertex> colors) {
+		final Iterator<HE_Face> fItr = mesh.fItr();
+		home.beginShape(PConstants.TRIANGLES);
+		HE_Face f;
+		HE_Vertex v;
+		while (fItr.hasNext()) {
+			f = fItr.next();
+			if (!f.isVisible() || f.getFaceOrder() < 3) {
+				continue;
+			}
+			final int[] tris = f.getTriangles();
+			final List<HE_Vertex> vertices = faceVertices;
+			f.getFaceVertices(vertices);
+			for (int i = 0; i < tris.length; i++) {
+				v = vertices.get(tris[i]);
+				home.fill(colors.get(v));
+				vertex(v);
+			}
+		}
+		home.endShape();
+	}
+
 	/**
 	 *
 	 *
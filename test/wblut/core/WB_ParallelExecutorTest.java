@@ -0,0 +1,180 @@
+/**
+ *
+ */
+package wblut.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import wblut.core.WB_ParallelExecutor.WB_RangeAction;
+
+/**
+ * Tests for {@link wblut.core.WB_ParallelExecutor}: inline execution when
+ * parallel execution is off and changing the parallelism while work is
+ * running.
+ */
+public class WB_ParallelExecutorTest {
+	private final WB_ParallelExecutor executor = WB_ParallelExecutor.instance();
+	private int parallelism;
+	private int minimumRange;
+
+	@Before
+	public void setUp() {
+		parallelism = executor.getParallelism();
+		minimumRange = executor.getMinimumRange();
+		executor.setParallel(true);
+		executor.setParallelism(3);
+		executor.setMinimumRange(1);
+	}
+
+	@After
+	public void tearDown() {
+		executor.setParallel(true);
+		executor.setParallelism(parallelism);
+		executor.setMinimumRange(minimumRange);
+	}
+
+	@Test
+	public void testSerialRunsOnCallingThread() {
+		executor.setParallel(false);
+		assertFalse(executor.isParallel());
+		final Thread caller = Thread.currentThread();
+		final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+		executor.forRange(0, 1000, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				threads.add(Thread.currentThread());
+			}
+		}, 1);
+		executor.forRange(0, 1000, new WB_RangeAction() {
+			@Override
+			public void run(final int start, final int end) {
+				threads.add(Thread.currentThread());
+			}
+		});
+		threads.add(executor.invoke(new RecursiveTask<Thread>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected Thread compute() {
+				return Thread.currentThread();
+			}
+		}));
+		threads.addAll(executor.map(IntStream.range(0, 1000).boxed(), new Function<Integer, Thread>() {
+			@Override
+			public Thread apply(final Integer i) {
+				return Thread.currentThread();
+			}
+		}));
+		assertEquals(1003, threads.size());
+		for (final Thread thread : threads) {
+			assertTrue(thread == caller);
+		}
+	}
+
+	@Test
+	public void testParallelismChangeWhileSubmitting() throws InterruptedException {
+		final int n = 4096;
+		final long expected = (long) n * (n - 1) / 2;
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+		final AtomicLong wrong = new AtomicLong();
+		final long stop = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1500);
+		final List<Thread> submitters = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			final Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						while (System.nanoTime() < stop) {
+							final AtomicLong sum = new AtomicLong();
+							executor.forRange(0, n, new WB_RangeAction() {
+								@Override
+								public void run(final int start, final int end) {
+									long s = 0;
+									for (int i = start; i < end; i++) {
+										s += i;
+									}
+									sum.addAndGet(s);
+								}
+							}, 16);
+							if (sum.get() != expected) {
+								wrong.incrementAndGet();
+							}
+						}
+					} catch (final Throwable e) {
+						errors.add(e);
+					}
+				}
+			};
+			submitters.add(thread);
+			thread.start();
+		}
+		int p = 2;
+		while (System.nanoTime() < stop) {
+			executor.setParallelism(p);
+			p = p == 2 ? 3 : 2;
+			Thread.yield();
+		}
+		for (final Thread thread : submitters) {
+			thread.join();
+		}
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertEquals(0, wrong.get());
+	}
+
+	@Test
+	public void testOldPoolDrainsBeforeShutdown() throws InterruptedException {
+		final ForkJoinPool old = executor.getPool();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch proceed = new CountDownLatch(1);
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+		final Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					executor.forRange(0, 64, new WB_RangeAction() {
+						@Override
+						public void run(final int start, final int end) {
+							if (start == 0) {
+								started.countDown();
+								try {
+									proceed.await();
+								} catch (final InterruptedException e) {
+									throw new RuntimeException(e);
+								}
+							}
+						}
+					}, 1);
+				} catch (final Throwable e) {
+					errors.add(e);
+				}
+			}
+		};
+		thread.start();
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		executor.setParallelism(2);
+		assertNotSame(old, executor.getPool());
+		assertFalse(old.isShutdown());
+		proceed.countDown();
+		thread.join();
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertTrue(old.isShutdown());
+	}
+}
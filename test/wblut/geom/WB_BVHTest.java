@@ -0,0 +1,245 @@
+/**
+ *
+ */
+package wblut.geom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import wblut.hemesh.HEC_Box;
+import wblut.hemesh.HEC_Geodesic;
+import wblut.hemesh.HET_MeshOp;
+import wblut.hemesh.HE_Face;
+import wblut.hemesh.HE_Mesh;
+import wblut.hemesh.HE_Vertex;
+
+/**
+ * Tests for {@link wblut.geom.WB_BVH}, queries checked against brute force
+ * over all faces.
+ */
+public class WB_BVHTest {
+
+	private static HE_Mesh sphere() {
+		return new HE_Mesh(new HEC_Geodesic().setRadius(100).setB(6).setC(0));
+	}
+
+	/** Quad faces, intersected with the general polygon test. */
+	private static HE_Mesh box() {
+		return new HE_Mesh(new HEC_Box().setWidth(100).setHeight(80).setDepth(60).setSegments(4, 3, 2));
+	}
+
+	private static double[] randomRays(final int n, final long seed) {
+		final Random random = new Random(seed);
+		final double[] rays = new double[6 * n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < 3; j++) {
+				rays[3 * i + j] = random.nextDouble() * 300.0 - 150.0;
+				rays[3 * n + 3 * i + j] = random.nextGaussian();
+			}
+		}
+		return rays;
+	}
+
+	private static int bruteForceClosest(final HE_Face[] faces, final double[] o, final double[] d, final int i,
+			final double tmin, final double tmax, final double[] hit) {
+		double best = tmax;
+		int bestFace = -1;
+		for (int f = 0; f < faces.length; f++) {
+			final double t = WB_BVH.intersect(faces[f], o[3 * i], o[3 * i + 1], o[3 * i + 2], d[3 * i], d[3 * i + 1],
+					d[3 * i + 2], null);
+			if (t >= tmin && t <= best) {
+				best = t;
+				bestFace = f;
+			}
+		}
+		hit[0] = best;
+		return bestFace;
+	}
+
+	private static int bruteForceCount(final HE_Face[] faces, final double[] o, final double[] d, final int i,
+			final double tmin, final double tmax) {
+		int count = 0;
+		for (final HE_Face face : faces) {
+			final double t = WB_BVH.intersect(face, o[3 * i], o[3 * i + 1], o[3 * i + 2], d[3 * i], d[3 * i + 1],
+					d[3 * i + 2], null);
+			if (t >= tmin && t <= tmax) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static void checkRays(final HE_Mesh mesh, final WB_BVH bvh, final long seed) {
+		final int n = 500;
+		final double[] rays = randomRays(n, seed);
+		final double[] o = new double[3 * n];
+		final double[] d = new double[3 * n];
+		System.arraycopy(rays, 0, o, 0, 3 * n);
+		System.arraycopy(rays, 3 * n, d, 0, 3 * n);
+		final HE_Face[] faces = new HE_Face[bvh.getNumberOfFaces()];
+		for (int f = 0; f < faces.length; f++) {
+			faces[f] = bvh.getFace(f);
+		}
+		assertEquals(mesh.getNumberOfFaces(), faces.length);
+		final double[] expected = new double[1];
+		final double[] hit = new double[1];
+		for (int i = 0; i < n; i++) {
+			final int face = bruteForceClosest(faces, o, d, i, 0, Double.POSITIVE_INFINITY, expected);
+			final int found = bvh.getClosestHit(o[3 * i], o[3 * i + 1], o[3 * i + 2], d[3 * i], d[3 * i + 1],
+					d[3 * i + 2], 0, Double.POSITIVE_INFINITY, hit);
+			assertEquals("Hit/miss differs from brute force.", face < 0, found < 0);
+			if (face >= 0) {
+				assertEquals("Closest hit differs from brute force.", expected[0], hit[0], 0.0);
+			}
+			assertEquals("Hit count differs from brute force.", bruteForceCount(faces, o, d, i, 0, 150),
+					bvh.countHits(o[3 * i], o[3 * i + 1], o[3 * i + 2], d[3 * i], d[3 * i + 1], d[3 * i + 2], 0, 150));
+		}
+	}
+
+	@Test
+	public void testRaysTriangles() {
+		final HE_Mesh mesh = sphere();
+		checkRays(mesh, new WB_BVH(mesh), 1);
+		checkRays(mesh, new WB_BVH(mesh, 1), 2);
+	}
+
+	@Test
+	public void testRaysPolygons() {
+		final HE_Mesh mesh = box();
+		checkRays(mesh, new WB_BVH(mesh), 3);
+	}
+
+	@Test
+	public void testBatchMatchesSingleRays() {
+		final HE_Mesh mesh = sphere();
+		final WB_BVH bvh = new WB_BVH(mesh);
+		final int n = 1000;
+		final double[] rays = randomRays(n, 4);
+		final double[] o = new double[3 * n];
+		final double[] d = new double[3 * n];
+		System.arraycopy(rays, 0, o, 0, 3 * n);
+		System.arraycopy(rays, 3 * n, d, 0, 3 * n);
+		// coherent rays in the first half: one origin, directions in one octant
+		for (int i = 0; i < n / 2; i++) {
+			o[3 * i] = o[3 * i + 1] = 0;
+			o[3 * i + 2] = -300;
+			d[3 * i] = 0.001 * (i % 23) + 0.001;
+			d[3 * i + 1] = 0.001 * (i % 19) + 0.001;
+			d[3 * i + 2] = 1;
+		}
+		final int[] faceIndex = new int[n];
+		final double[] t = new double[n];
+		final double[] barycentric = new double[2 * n];
+		final int[] anyHit = new int[n];
+		final int[] counts = new int[n];
+		bvh.castRays(o, d, 0, 1000, false, faceIndex, t, barycentric);
+		bvh.castRays(o, d, 0, 1000, true, anyHit, null, null);
+		bvh.countHits(o, d, 0, 1000, counts);
+		final double[] hit = new double[1];
+		for (int i = 0; i < n; i++) {
+			final int single = bvh.getClosestHit(o[3 * i], o[3 * i + 1], o[3 * i + 2], d[3 * i], d[3 * i + 1],
+					d[3 * i + 2], 0, 1000, hit);
+			assertEquals("Batch hit/miss differs.", single < 0, faceIndex[i] < 0);
+			assertEquals("Any-hit hit/miss differs.", single < 0, anyHit[i] < 0);
+			assertEquals(bvh.countHits(o[3 * i], o[3 * i + 1], o[3 * i + 2], d[3 * i], d[3 * i + 1], d[3 * i + 2], 0,
+					1000), counts[i]);
+			if (single >= 0) {
+				assertEquals("Batch closest hit differs.", hit[0], t[i], 0.0);
+				// the barycentric coordinates reproduce the hit point
+				final HE_Face face = bvh.getFace(faceIndex[i]);
+				final List<HE_Vertex> v = face.getFaceVertices();
+				final double u = barycentric[2 * i], w = barycentric[2 * i + 1];
+				for (int j = 0; j < 3; j++) {
+					final double p = (1 - u - w) * v.get(0).getd(j) + u * v.get(1).getd(j) + w * v.get(2).getd(j);
+					assertEquals(o[3 * i + j] + t[i] * d[3 * i + j], p, 1e-6);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testCandidateQueries() {
+		final HE_Mesh mesh = box();
+		final WB_BVH bvh = new WB_BVH(mesh, 2);
+		final Random random = new Random(5);
+		for (int q = 0; q < 100; q++) {
+			final double x = random.nextDouble() * 120 - 60, y = random.nextDouble() * 100 - 50,
+					z = random.nextDouble() * 80 - 40;
+			final WB_AABB box = new WB_AABB(x, y, z, x + 10, y + 10, z + 10);
+			final List<HE_Face> found = bvh.getFaces(box);
+			for (final HE_Face face : mesh.getFaces()) {
+				if (face.getAABB().intersects(box)) {
+					assertTrue("Face overlapping the AABB is missing.", found.contains(face));
+				}
+			}
+			final WB_Ray ray = new WB_Ray(new WB_Point(x, y, z),
+					new WB_Vector(random.nextGaussian(), random.nextGaussian(), random.nextGaussian()));
+			final HE_Face closest = bvh.getClosestFace(ray);
+			if (closest != null) {
+				assertTrue("Closest face is not a ray candidate.", bvh.getFaces(ray).contains(closest));
+			}
+		}
+	}
+
+	@Test
+	public void testClosestPoint() {
+		final HE_Mesh mesh = sphere();
+		final WB_BVH bvh = new WB_BVH(mesh);
+		final Random random = new Random(6);
+		for (int q = 0; q < 100; q++) {
+			final WB_Point p = new WB_Point(random.nextDouble() * 300 - 150, random.nextDouble() * 300 - 150,
+					random.nextDouble() * 300 - 150);
+			double expected = Double.POSITIVE_INFINITY;
+			for (final HE_Face face : mesh.getFaces()) {
+				expected = Math.min(expected,
+						WB_GeometryOp3D.getClosestPoint3D(p, face.toTriangle()).getSqDistance(p));
+			}
+			assertEquals("Closest point differs from brute force.", expected,
+					new WB_Point(bvh.getClosestPoint(p)).getSqDistance(p), 1e-6);
+		}
+	}
+
+	@Test
+	public void testRefit() {
+		final HE_Mesh mesh = sphere();
+		final WB_BVH bvh = new WB_BVH(mesh);
+		for (final HE_Vertex v : mesh.getVertices()) {
+			v.set(2 * v.xd() + 10, v.yd(), 0.5 * v.zd());
+		}
+		bvh.refit();
+		checkRays(mesh, bvh, 7);
+	}
+
+	@Test
+	public void testIsInside() {
+		final HE_Mesh mesh = box();
+		final WB_BVH bvh = new WB_BVH(mesh);
+		final Random random = new Random(8);
+		final int n = 2000;
+		final double[] coords = new double[3 * n];
+		for (int i = 0; i < 3 * n; i++) {
+			coords[i] = random.nextDouble() * 140 - 70;
+		}
+		final boolean[] inside = HET_MeshOp.isInside(bvh, coords);
+		final WB_AABB aabb = mesh.getAABB();
+		for (int i = 0; i < n; i++) {
+			final WB_Point p = new WB_Point(coords[3 * i], coords[3 * i + 1], coords[3 * i + 2]);
+			assertEquals("Point " + p + " classified wrongly.", aabb.contains(p), inside[i]);
+			assertEquals(inside[i], HET_MeshOp.isInside(bvh, p));
+		}
+	}
+
+	@Test
+	public void testEmptyMesh() {
+		final WB_BVH bvh = new WB_BVH(new HE_Mesh());
+		assertEquals(0, bvh.getNumberOfFaces());
+		assertEquals(-1, bvh.getClosestHit(0, 0, 0, 1, 0, 0, 0, 1, null));
+		assertEquals(0, bvh.countHits(0, 0, 0, 1, 0, 0, 0, 1));
+		assertTrue(bvh.getFaces(new WB_Point(0, 0, 0)).isEmpty());
+	}
+}
@@ -0,0 +1,232 @@
+/**
+ *
+ */
+package wblut.geom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link wblut.geom.WB_Delaunay3D}.
+ */
+public class WB_Delaunay3DTest {
+
+	private static double[] randomPoints(final int n, final long seed) {
+		final Random random = new Random(seed);
+		final double[] coords = new double[3 * n];
+		for (int i = 0; i < 3 * n; i++) {
+			coords[i] = random.nextDouble() * 10.0 - 5.0;
+		}
+		return coords;
+	}
+
+	/**
+	 * Integer grid with every point twice: cospherical everywhere.
+	 */
+	private static double[] gridPoints(final int size) {
+		final int m = size * size * size;
+		final double[] coords = new double[6 * m];
+		int c = 0;
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				for (int k = 0; k < size; k++) {
+					coords[c] = coords[3 * m + c] = i;
+					coords[c + 1] = coords[3 * m + c + 1] = j;
+					coords[c + 2] = coords[3 * m + c + 2] = k;
+					c += 3;
+				}
+			}
+		}
+		return coords;
+	}
+
+	private static double orient(final double[] coords, final int a, final int b, final int c, final int d) {
+		return WB_Predicates.orient3D(coords[3 * a], coords[3 * a + 1], coords[3 * a + 2], coords[3 * b],
+				coords[3 * b + 1], coords[3 * b + 2], coords[3 * c], coords[3 * c + 1], coords[3 * c + 2], coords[3 * d],
+				coords[3 * d + 1], coords[3 * d + 2]);
+	}
+
+	private static double volume(final double[] coords, final int a, final int b, final int c, final int d) {
+		final double[] u = new double[9];
+		for (int i = 0; i < 3; i++) {
+			u[i] = coords[3 * a + i] - coords[3 * d + i];
+			u[3 + i] = coords[3 * b + i] - coords[3 * d + i];
+			u[6 + i] = coords[3 * c + i] - coords[3 * d + i];
+		}
+		return (u[0] * (u[4] * u[8] - u[5] * u[7]) + u[1] * (u[5] * u[6] - u[3] * u[8])
+				+ u[2] * (u[3] * u[7] - u[4] * u[6])) / 6.0;
+	}
+
+	/**
+	 * Check orientation, neighbor symmetry, the empty sphere property and that
+	 * every point is either a vertex or a duplicate.
+	 */
+	private static void checkTriangulation(final double[] coords, final WB_Delaunay3D triangulation) {
+		final int n = coords.length / 3;
+		final int[] tetrahedra = triangulation.getTetrahedra();
+		final int[] neighbors = triangulation.getNeighbors();
+		final int m = triangulation.getNumberOfTetrahedra();
+		assertEquals(4 * m, tetrahedra.length);
+		assertEquals(4 * m, neighbors.length);
+		final boolean[] used = new boolean[n];
+		for (int t = 0; t < m; t++) {
+			final int a = tetrahedra[4 * t], b = tetrahedra[4 * t + 1], c = tetrahedra[4 * t + 2],
+					d = tetrahedra[4 * t + 3];
+			assertTrue("Tetrahedron " + t + " is not positively oriented.", orient(coords, a, b, c, d) > 0);
+			for (int i = 0; i < 4; i++) {
+				final int v = tetrahedra[4 * t + i];
+				assertEquals("Duplicate point used as vertex.", -1, triangulation.getDuplicate(v));
+				used[v] = true;
+				final int nb = neighbors[4 * t + i];
+				if (nb >= 0) {
+					int back = -1;
+					for (int j = 0; j < 4; j++) {
+						if (neighbors[4 * nb + j] == t) {
+							back = j;
+						}
+					}
+					assertTrue("Neighbor " + nb + " of " + t + " does not point back.", back >= 0);
+					for (int j = 0; j < 4; j++) {
+						if (j != i) {
+							boolean shared = false;
+							for (int k = 0; k < 4; k++) {
+								shared |= k != back && tetrahedra[4 * nb + k] == tetrahedra[4 * t + j];
+							}
+							assertTrue("Neighbors " + t + " and " + nb + " don't share a face.", shared);
+						}
+					}
+				}
+			}
+			for (int p = 0; p < n; p++) {
+				if (p != a && p != b && p != c && p != d && triangulation.getDuplicate(p) < 0) {
+					assertTrue("Point " + p + " inside circumsphere of tetrahedron " + t + ".",
+							WB_Predicates.inSphere3D(coords[3 * a], coords[3 * a + 1], coords[3 * a + 2],
+									coords[3 * b], coords[3 * b + 1], coords[3 * b + 2], coords[3 * c],
+									coords[3 * c + 1], coords[3 * c + 2], coords[3 * d], coords[3 * d + 1],
+									coords[3 * d + 2], coords[3 * p], coords[3 * p + 1], coords[3 * p + 2]) <= 0);
+				}
+			}
+		}
+		for (int p = 0; p < n; p++) {
+			if (triangulation.getDuplicate(p) < 0) {
+				assertTrue("Point " + p + " missing from the triangulation.", used[p]);
+			} else {
+				final int q = triangulation.getDuplicate(p);
+				assertEquals("Duplicate is not a vertex.", -1, triangulation.getDuplicate(q));
+				assertTrue("Duplicate does not coincide.", coords[3 * p] == coords[3 * q] && coords[3 * p + 1] == coords[3 * q + 1]
+						&& coords[3 * p + 2] == coords[3 * q + 2]);
+			}
+		}
+	}
+
+	@Test
+	public void testRandomPoints() {
+		final double[] coords = randomPoints(400, 1);
+		checkTriangulation(coords, new WB_Delaunay3D(coords));
+	}
+
+	@Test
+	public void testGridWithDuplicates() {
+		final int size = 5;
+		final double[] coords = gridPoints(size);
+		final WB_Delaunay3D triangulation = new WB_Delaunay3D(coords);
+		checkTriangulation(coords, triangulation);
+		final int m = size * size * size;
+		for (int i = 0; i < m; i++) {
+			// one of each pair is a vertex, the other refers to it
+			if (triangulation.getDuplicate(i) < 0) {
+				assertEquals(i, triangulation.getDuplicate(m + i));
+			} else {
+				assertEquals(m + i, triangulation.getDuplicate(i));
+				assertEquals(-1, triangulation.getDuplicate(m + i));
+			}
+		}
+		double total = 0;
+		final int[] tetrahedra = triangulation.getTetrahedra();
+		for (int t = 0; t < triangulation.getNumberOfTetrahedra(); t++) {
+			total += volume(coords, tetrahedra[4 * t], tetrahedra[4 * t + 1], tetrahedra[4 * t + 2],
+					tetrahedra[4 * t + 3]);
+		}
+		assertEquals("Tetrahedra don't fill the convex hull.", (size - 1) * (size - 1) * (size - 1), total, 1e-9);
+	}
+
+	/**
+	 * Points moved by less than the tolerance are duplicates of the point
+	 * they were copied from, or the other way around. The input is not
+	 * changed.
+	 */
+	@Test
+	public void testTolerance() {
+		final int n = 400, copies = 40;
+		final double[] coords = Arrays.copyOf(randomPoints(n, 3), 3 * (n + copies));
+		final Random random = new Random(4);
+		for (int i = 0; i < 3 * copies; i++) {
+			coords[3 * n + i] = coords[i] + 1e-5 * (random.nextDouble() - 0.5);
+		}
+		final double[] input = coords.clone();
+		final WB_Delaunay3D triangulation = new WB_Delaunay3D(coords, 1e-4);
+		assertTrue(Arrays.equals(input, coords));
+		final double[] exact = Arrays.copyOf(coords, 3 * n);
+		assertEquals(new WB_Delaunay3D(exact).getNumberOfTetrahedra(), triangulation.getNumberOfTetrahedra());
+		for (int i = 0; i < n + copies; i++) {
+			final int q = triangulation.getDuplicate(i);
+			if (i >= n) {
+				assertTrue(q == i - n || q < 0 && triangulation.getDuplicate(i - n) == i);
+			} else if (i >= copies) {
+				assertEquals(-1, q);
+			}
+		}
+		// below the tolerance, all points are vertices
+		final WB_Delaunay3D separate = new WB_Delaunay3D(coords, 1e-7);
+		checkTriangulation(coords, separate);
+		for (int i = 0; i < n + copies; i++) {
+			assertEquals(-1, separate.getDuplicate(i));
+		}
+	}
+
+	@Test
+	public void testHullNeighbors() {
+		// a single tetrahedron, all faces on the hull
+		final double[] coords = { 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0, 1 };
+		final WB_Delaunay3D triangulation = new WB_Delaunay3D(coords);
+		assertEquals(1, triangulation.getNumberOfTetrahedra());
+		for (int i = 0; i < 4; i++) {
+			assertEquals(-1, triangulation.getNeighbors()[i]);
+		}
+		checkTriangulation(coords, triangulation);
+	}
+
+	@Test
+	public void testPlanarInput() {
+		final Random random = new Random(2);
+		final double[] coords = new double[3 * 100];
+		for (int i = 0; i < 100; i++) {
+			final double u = random.nextDouble(), v = random.nextDouble();
+			coords[3 * i] = u;
+			coords[3 * i + 1] = v;
+			coords[3 * i + 2] = 0;
+		}
+		assertEquals(0, new WB_Delaunay3D(coords).getNumberOfTetrahedra());
+		// tilted plane z=x+2y, exact on integers
+		for (int i = 0; i < 100; i++) {
+			coords[3 * i] = random.nextInt(20);
+			coords[3 * i + 1] = random.nextInt(20);
+			coords[3 * i + 2] = coords[3 * i] + 2 * coords[3 * i + 1];
+		}
+		assertEquals(0, new WB_Delaunay3D(coords).getNumberOfTetrahedra());
+	}
+
+	@Test
+	public void testDegenerateInput() {
+		assertEquals(0, new WB_Delaunay3D(new double[0]).getNumberOfTetrahedra());
+		assertEquals(0, new WB_Delaunay3D(new double[] { 0, 0, 0, 1, 1, 1, 2, 2, 2, 3, 3, 3 })
+				.getNumberOfTetrahedra());
+		assertEquals(0, new WB_Delaunay3D(new double[] { 1, 2, 3, 1, 2, 3, 1, 2, 3, 1, 2, 3, 1, 2, 3 })
+				.getNumberOfTetrahedra());
+	}
+}
@@ -0,0 +1,182 @@
+/**
+ *
+ */
+package wblut.geom;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link wblut.geom.WB_KDTreeStatic}.
+ */
+public class WB_KDTreeStaticTest {
+
+	private static double[] randomPoints(final int n, final long seed) {
+		final Random random = new Random(seed);
+		final double[] coords = new double[3 * n];
+		for (int i = 0; i < 3 * n; i++) {
+			coords[i] = random.nextDouble() * 10.0 - 5.0;
+		}
+		return coords;
+	}
+
+	/**
+	 * Integer grid with every point twice, lots of ties and equal split
+	 * values.
+	 */
+	private static double[] gridPoints(final int size) {
+		final double[] coords = new double[6 * size * size * size];
+		int c = 0;
+		for (int copy = 0; copy < 2; copy++) {
+			for (int i = 0; i < size; i++) {
+				for (int j = 0; j < size; j++) {
+					for (int k = 0; k < size; k++) {
+						coords[c++] = i;
+						coords[c++] = j;
+						coords[c++] = k;
+					}
+				}
+			}
+		}
+		return coords;
+	}
+
+	private static double d2(final double[] coords, final int i, final double x, final double y, final double z) {
+		final double dx = coords[3 * i] - x, dy = coords[3 * i + 1] - y, dz = coords[3 * i + 2] - z;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	private static double[] sortedDistances(final double[] coords, final double x, final double y, final double z) {
+		final int n = coords.length / 3;
+		final double[] result = new double[n];
+		for (int i = 0; i < n; i++) {
+			result[i] = d2(coords, i, x, y, z);
+		}
+		Arrays.sort(result);
+		return result;
+	}
+
+	private static void checkNearestNeighbors(final double[] coords, final int leafSize, final int k,
+			final long seed) {
+		final WB_KDTreeStatic tree = new WB_KDTreeStatic(coords, leafSize);
+		final int n = coords.length / 3;
+		final Random random = new Random(seed);
+		final int[] result = new int[k];
+		final double[] d2 = new double[k];
+		for (int q = 0; q < 200; q++) {
+			final double x = random.nextDouble() * 12.0 - 6.0;
+			final double y = random.nextDouble() * 12.0 - 6.0;
+			final double z = random.nextDouble() * 12.0 - 6.0;
+			final double[] expected = sortedDistances(coords, x, y, z);
+			assertEquals("Nearest neighbor differs from brute force.", expected[0],
+					d2(coords, tree.getNearestNeighbor(x, y, z), x, y, z), 0.0);
+			final int count = tree.getNearestNeighbors(x, y, z, k, result, d2, 0);
+			assertEquals(Math.min(k, n), count);
+			for (int i = 0; i < count; i++) {
+				assertEquals("Neighbor " + i + " differs from brute force.", expected[i], d2[i], 0.0);
+				assertEquals("Distance does not belong to the returned point.", d2[i],
+						d2(coords, result[i], x, y, z), 0.0);
+			}
+			for (int i = count; i < k; i++) {
+				assertEquals(-1, result[i]);
+			}
+		}
+	}
+
+	@Test
+	public void testNearestNeighborsMatchBruteForce() {
+		checkNearestNeighbors(randomPoints(2000, 1), 8, 10, 2);
+	}
+
+	@Test
+	public void testNearestNeighborsSmallLeaves() {
+		checkNearestNeighbors(randomPoints(500, 3), 1, 7, 4);
+	}
+
+	@Test
+	public void testNearestNeighborsDuplicateGrid() {
+		checkNearestNeighbors(gridPoints(6), 4, 20, 5);
+	}
+
+	@Test
+	public void testMoreNeighborsThanPoints() {
+		checkNearestNeighbors(randomPoints(5, 6), 8, 9, 7);
+	}
+
+	@Test
+	public void testRangeMatchesBruteForce() {
+		for (final double[] coords : new double[][] { randomPoints(3000, 8), gridPoints(5) }) {
+			final WB_KDTreeStatic tree = new WB_KDTreeStatic(coords, 4);
+			final int n = coords.length / 3;
+			final Random random = new Random(9);
+			final int[] result = new int[n];
+			for (final double radius : new double[] { 0.0, 0.5, 1.0, 2.3, 20.0 }) {
+				for (int q = 0; q < 50; q++) {
+					final double x = Math.floor(random.nextDouble() * 12.0 - 6.0);
+					final double y = random.nextDouble() * 12.0 - 6.0;
+					final double z = Math.floor(random.nextDouble() * 12.0 - 6.0);
+					final int count = tree.getRange(x, y, z, radius, result);
+					assertEquals("Count-only query differs.", count, tree.getRange(x, y, z, radius, null));
+					final int[] found = Arrays.copyOf(result, count);
+					Arrays.sort(found);
+					int expected = 0;
+					for (int i = 0; i < n; i++) {
+						if (d2(coords, i, x, y, z) <= radius * radius) {
+							assertTrue("Point " + i + " missing from range query.", Arrays.binarySearch(found, i) >= 0);
+							expected++;
+						}
+					}
+					assertEquals("Range query returns wrong number of points.", expected, count);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testBatchQueriesMatchSingleQueries() {
+		final double[] coords = randomPoints(1000, 10);
+		final WB_KDTreeStatic tree = new WB_KDTreeStatic(coords);
+		final double[] queries = randomPoints(300, 11);
+		final int nq = queries.length / 3;
+		final int k = 5;
+		final int[] nearest = new int[nq];
+		tree.getNearestNeighbors(queries, nearest);
+		final int[] knn = new int[k * nq];
+		tree.getNearestNeighbors(queries, k, knn, null);
+		final int[] offsets = new int[nq + 1];
+		final int[] range = tree.getRange(queries, 0.8, offsets);
+		final int[] single = new int[k];
+		final double[] d2 = new double[k];
+		final int[] singleRange = new int[coords.length / 3];
+		for (int q = 0; q < nq; q++) {
+			final double x = queries[3 * q], y = queries[3 * q + 1], z = queries[3 * q + 2];
+			assertEquals(tree.getNearestNeighbor(x, y, z), nearest[q]);
+			tree.getNearestNeighbors(x, y, z, k, single, d2, 0);
+			assertArrayEquals(single, Arrays.copyOfRange(knn, k * q, k * q + k));
+			final int count = tree.getRange(x, y, z, 0.8, singleRange);
+			final int[] expected = Arrays.copyOf(singleRange, count);
+			final int[] batch = Arrays.copyOfRange(range, offsets[q], offsets[q + 1]);
+			Arrays.sort(expected);
+			Arrays.sort(batch);
+			assertArrayEquals(expected, batch);
+		}
+	}
+
+	@Test
+	public void testEmptyTree() {
+		final WB_KDTreeStatic tree = new WB_KDTreeStatic(new double[0]);
+		assertEquals(0, tree.size());
+		assertEquals(-1, tree.getNearestNeighbor(0, 0, 0));
+		final int[] result = new int[3];
+		final double[] d2 = new double[3];
+		assertEquals(0, tree.getNearestNeighbors(0, 0, 0, 3, result, d2, 0));
+		assertEquals(-1, result[0]);
+		assertEquals(0, tree.getRange(0, 0, 0, 1.0, result));
+	}
+}
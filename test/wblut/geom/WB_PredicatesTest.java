@@ -0,0 +1,195 @@
+/**
+ *
+ */
+package wblut.geom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link wblut.geom.WB_Predicates}, signs checked against exact
+ * BigDecimal evaluation on degenerate and nearly degenerate input.
+ */
+public class WB_PredicatesTest {
+
+	private static BigDecimal b(final double d) {
+		return new BigDecimal(d);
+	}
+
+	private static double sign(final BigDecimal d) {
+		return d.signum();
+	}
+
+	private static double exactOrient2D(final double[] p) {
+		final BigDecimal acx = b(p[0]).subtract(b(p[4])), bcx = b(p[2]).subtract(b(p[4]));
+		final BigDecimal acy = b(p[1]).subtract(b(p[5])), bcy = b(p[3]).subtract(b(p[5]));
+		return sign(acx.multiply(bcy).subtract(acy.multiply(bcx)));
+	}
+
+	private static double exactInCircle2D(final double[] p) {
+		final BigDecimal adx = b(p[0]).subtract(b(p[6])), ady = b(p[1]).subtract(b(p[7]));
+		final BigDecimal bdx = b(p[2]).subtract(b(p[6])), bdy = b(p[3]).subtract(b(p[7]));
+		final BigDecimal cdx = b(p[4]).subtract(b(p[6])), cdy = b(p[5]).subtract(b(p[7]));
+		final BigDecimal alift = adx.multiply(adx).add(ady.multiply(ady));
+		final BigDecimal blift = bdx.multiply(bdx).add(bdy.multiply(bdy));
+		final BigDecimal clift = cdx.multiply(cdx).add(cdy.multiply(cdy));
+		return sign(alift.multiply(bdx.multiply(cdy).subtract(cdx.multiply(bdy)))
+				.add(blift.multiply(cdx.multiply(ady).subtract(adx.multiply(cdy))))
+				.add(clift.multiply(adx.multiply(bdy).subtract(bdx.multiply(ady)))));
+	}
+
+	private static double exactOrient3D(final double[] p) {
+		final BigDecimal adx = b(p[0]).subtract(b(p[9])), ady = b(p[1]).subtract(b(p[10])),
+				adz = b(p[2]).subtract(b(p[11]));
+		final BigDecimal bdx = b(p[3]).subtract(b(p[9])), bdy = b(p[4]).subtract(b(p[10])),
+				bdz = b(p[5]).subtract(b(p[11]));
+		final BigDecimal cdx = b(p[6]).subtract(b(p[9])), cdy = b(p[7]).subtract(b(p[10])),
+				cdz = b(p[8]).subtract(b(p[11]));
+		return sign(adx.multiply(bdy.multiply(cdz).subtract(bdz.multiply(cdy)))
+				.add(bdx.multiply(cdy.multiply(adz).subtract(cdz.multiply(ady))))
+				.add(cdx.multiply(ady.multiply(bdz).subtract(adz.multiply(bdy)))));
+	}
+
+	private static double exactInSphere3D(final double[] p) {
+		final BigDecimal[] x = new BigDecimal[4], y = new BigDecimal[4], z = new BigDecimal[4],
+				lift = new BigDecimal[4];
+		for (int i = 0; i < 4; i++) {
+			x[i] = b(p[3 * i]).subtract(b(p[12]));
+			y[i] = b(p[3 * i + 1]).subtract(b(p[13]));
+			z[i] = b(p[3 * i + 2]).subtract(b(p[14]));
+			lift[i] = x[i].multiply(x[i]).add(y[i].multiply(y[i])).add(z[i].multiply(z[i]));
+		}
+		final BigDecimal ab = x[0].multiply(y[1]).subtract(x[1].multiply(y[0]));
+		final BigDecimal bc = x[1].multiply(y[2]).subtract(x[2].multiply(y[1]));
+		final BigDecimal cd = x[2].multiply(y[3]).subtract(x[3].multiply(y[2]));
+		final BigDecimal da = x[3].multiply(y[0]).subtract(x[0].multiply(y[3]));
+		final BigDecimal ac = x[0].multiply(y[2]).subtract(x[2].multiply(y[0]));
+		final BigDecimal bd = x[1].multiply(y[3]).subtract(x[3].multiply(y[1]));
+		final BigDecimal abc = z[0].multiply(bc).subtract(z[1].multiply(ac)).add(z[2].multiply(ab));
+		final BigDecimal bcd = z[1].multiply(cd).subtract(z[2].multiply(bd)).add(z[3].multiply(bc));
+		final BigDecimal cda = z[2].multiply(da).add(z[3].multiply(ac)).add(z[0].multiply(cd));
+		final BigDecimal dab = z[3].multiply(ab).add(z[0].multiply(bd)).add(z[1].multiply(da));
+		return sign(lift[3].multiply(abc).subtract(lift[2].multiply(dab))
+				.add(lift[1].multiply(cda).subtract(lift[0].multiply(bcd))));
+	}
+
+	/**
+	 * Coordinates from a small integer grid, scaled and translated, some of
+	 * them nudged by a few ulps. Most point sets are exactly or nearly
+	 * degenerate.
+	 */
+	private static double[] degeneratePoints(final Random random, final int n) {
+		final double scale = random.nextBoolean() ? 1.0 : 0.1;
+		final double offset = random.nextInt(3) == 0 ? 0.0 : random.nextBoolean() ? 1e6 : 1e15;
+		final double[] p = new double[n];
+		for (int i = 0; i < n; i++) {
+			p[i] = offset + scale * (random.nextInt(5) - 2);
+			// zeros are not nudged, the expansion arithmetic assumes no underflow
+			final int ulps = p[i] != 0 && random.nextInt(4) == 0 ? random.nextInt(5) - 2 : 0;
+			for (int u = 0; u < Math.abs(ulps); u++) {
+				p[i] = ulps > 0 ? Math.nextUp(p[i]) : Math.nextDown(p[i]);
+			}
+		}
+		return p;
+	}
+
+	/**
+	 * Multiples of a small integer direction, collinear up to the rounding of
+	 * each coordinate.
+	 */
+	private static double[] alongDirection(final Random random, final int n, final int dim) {
+		final double[] d = new double[dim];
+		for (int j = 0; j < dim; j++) {
+			d[j] = random.nextInt(7) - 3;
+		}
+		final double[] p = new double[n];
+		for (int i = 0; i < n / dim; i++) {
+			final double t = random.nextDouble() * 100.0;
+			for (int j = 0; j < dim; j++) {
+				p[dim * i + j] = t * d[j];
+			}
+		}
+		return p;
+	}
+
+	@Test
+	public void testOrient2D() {
+		final Random random = new Random(1);
+		for (int i = 0; i < 20000; i++) {
+			final double[] p = (i & 1) == 0 ? degeneratePoints(random, 6) : alongDirection(random, 6, 2);
+			assertEquals("orient2D sign differs from exact evaluation.", exactOrient2D(p),
+					WB_Predicates.orient2D(p[0], p[1], p[2], p[3], p[4], p[5]), 0.0);
+		}
+	}
+
+	@Test
+	public void testInCircle2D() {
+		final Random random = new Random(2);
+		for (int i = 0; i < 20000; i++) {
+			final double[] p = degeneratePoints(random, 8);
+			assertEquals("inCircle2D sign differs from exact evaluation.", exactInCircle2D(p),
+					WB_Predicates.inCircle2D(p[0], p[1], p[2], p[3], p[4], p[5], p[6], p[7]), 0.0);
+		}
+	}
+
+	@Test
+	public void testOrient3D() {
+		final Random random = new Random(3);
+		for (int i = 0; i < 20000; i++) {
+			final double[] p = (i & 1) == 0 ? degeneratePoints(random, 12) : alongDirection(random, 12, 3);
+			assertEquals("orient3D sign differs from exact evaluation.", exactOrient3D(p), WB_Predicates
+					.orient3D(p[0], p[1], p[2], p[3], p[4], p[5], p[6], p[7], p[8], p[9], p[10], p[11]), 0.0);
+		}
+	}
+
+	@Test
+	public void testInSphere3D() {
+		final Random random = new Random(4);
+		for (int i = 0; i < 20000; i++) {
+			final double[] p = degeneratePoints(random, 15);
+			assertEquals("inSphere3D sign differs from exact evaluation.", exactInSphere3D(p),
+					WB_Predicates.inSphere3D(p[0], p[1], p[2], p[3], p[4], p[5], p[6], p[7], p[8], p[9], p[10], p[11],
+							p[12], p[13], p[14]),
+					0.0);
+		}
+	}
+
+	@Test
+	public void testCocircularAndCospherical() {
+		// 3-4-5 triangles: exactly on the circle and sphere of radius 5
+		assertEquals(0.0, WB_Predicates.inCircle2D(5, 0, 0, 5, -3, 4, 4, -3), 0.0);
+		assertEquals(0.0, WB_Predicates.inSphere3D(5, 0, 0, 0, 5, 0, 0, 0, 5, -3, -4, 0, 0, 4, -3), 0.0);
+		// positively oriented, center inside
+		assertTrue(WB_Predicates.orient3D(0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0, -1) > 0);
+		assertTrue(WB_Predicates.inSphere3D(0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0, -1, 0.25, 0.25, -0.25) > 0);
+		assertTrue(WB_Predicates.inCircle2D(0, 0, 1, 0, 0, 1, 0.25, 0.25) > 0);
+		// one ulp off the circle and sphere
+		assertEquals(1.0, WB_Predicates.inCircle2D(5, 0, 0, 5, -3, 4, Math.nextDown(4.0), -3), 0.0);
+		assertEquals(-1.0, WB_Predicates.inCircle2D(5, 0, 0, 5, -3, 4, Math.nextUp(4.0), -3), 0.0);
+		assertEquals(exactInSphere3D(new double[] { 5, 0, 0, 0, 5, 0, 0, 0, 5, -3, -4, 0, 0, 4, Math.nextUp(-3.0) }),
+				WB_Predicates.inSphere3D(5, 0, 0, 0, 5, 0, 0, 0, 5, -3, -4, 0, 0, 4, Math.nextUp(-3.0)), 0.0);
+	}
+
+	@Test
+	public void testAntisymmetry() {
+		final Random random = new Random(5);
+		for (int i = 0; i < 5000; i++) {
+			final double[] p = degeneratePoints(random, 15);
+			assertEquals(-WB_Predicates.orient2D(p[0], p[1], p[2], p[3], p[4], p[5]),
+					WB_Predicates.orient2D(p[2], p[3], p[0], p[1], p[4], p[5]), 0.0);
+			assertEquals(-WB_Predicates.orient3D(p[0], p[1], p[2], p[3], p[4], p[5], p[6], p[7], p[8], p[9], p[10],
+					p[11]), WB_Predicates.orient3D(p[3], p[4], p[5], p[0], p[1], p[2], p[6], p[7], p[8], p[9], p[10],
+							p[11]),
+					0.0);
+			assertEquals(-WB_Predicates.inSphere3D(p[0], p[1], p[2], p[3], p[4], p[5], p[6], p[7], p[8], p[9], p[10],
+					p[11], p[12], p[13], p[14]), WB_Predicates.inSphere3D(p[3], p[4], p[5], p[0], p[1], p[2], p[6],
+							p[7], p[8], p[9], p[10], p[11], p[12], p[13], p[14]),
+					0.0);
+		}
+	}
+}
@@ -0,0 +1,221 @@
+/**
+ *
+ */
+package wblut.geom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import wblut.core.WB_ParallelExecutor;
+
+/**
+ * Tests for {@link wblut.geom.WB_SpaceFillingCurve}: both curves visit every
+ * cell of a grid exactly once, consecutive cells on the Hilbert curve are
+ * neighbors, and the order of a point set is a permutation that follows the
+ * curve.
+ */
+public class WB_SpaceFillingCurveTest {
+
+	private static int[] cell(final int c, final int bits) {
+		final int side = 1 << bits;
+		return new int[] { c % side, c / side % side, c / (side * side) };
+	}
+
+	private static int distance(final int[] a, final int[] b) {
+		return Math.abs(a[0] - b[0]) + Math.abs(a[1] - b[1]) + Math.abs(a[2] - b[2]);
+	}
+
+	/**
+	 * Cell at each curve position of a full grid, failing if a position is
+	 * out of range or taken twice.
+	 */
+	private static int[][] walk(final int bits, final boolean hilbert) {
+		final int n = 1 << 3 * bits;
+		final int[][] cells = new int[n][];
+		for (int c = 0; c < n; c++) {
+			final int[] p = cell(c, bits);
+			final long index = hilbert ? WB_SpaceFillingCurve.getHilbertIndex(p[0], p[1], p[2], bits)
+					: WB_SpaceFillingCurve.getMortonIndex(p[0], p[1], p[2]);
+			assertTrue("Index " + index + " out of range", index >= 0 && index < n);
+			assertTrue("Index " + index + " taken twice", cells[(int) index] == null);
+			cells[(int) index] = p;
+		}
+		return cells;
+	}
+
+	@Test
+	public void testHilbertIsPermutationOfNeighbors() {
+		for (int bits = 1; bits <= 5; bits++) {
+			final int[][] cells = walk(bits, true);
+			assertEquals(0, distance(cells[0], new int[3]));
+			for (int i = 1; i < cells.length; i++) {
+				assertEquals("Bits " + bits + ", index " + i, 1, distance(cells[i - 1], cells[i]));
+			}
+		}
+	}
+
+	/**
+	 * Blocks of the finest grid at arbitrary positions: wherever two
+	 * consecutive indices fall inside a block, their cells are neighbors.
+	 */
+	@Test
+	public void testHilbertNeighborsOnFineGrid() {
+		final Random rnd = new Random(7);
+		final int size = 6;
+		for (final int bits : new int[] { 10, 17, WB_SpaceFillingCurve.MAX_BITS }) {
+			for (int block = 0; block < 20; block++) {
+				final int ox = rnd.nextInt((1 << bits) - size), oy = rnd.nextInt((1 << bits) - size),
+						oz = rnd.nextInt((1 << bits) - size);
+				final TLongIntMap cells = new TLongIntHashMap();
+				for (int c = 0; c < size * size * size; c++) {
+					final int x = ox + c % size, y = oy + c / size % size, z = oz + c / (size * size);
+					final long index = WB_SpaceFillingCurve.getHilbertIndex(x, y, z, bits);
+					assertEquals(0, index >>> 3 * bits);
+					assertFalse(cells.containsKey(index));
+					cells.put(index, c);
+				}
+				int pairs = 0;
+				for (final long index : cells.keys()) {
+					if (cells.containsKey(index + 1)) {
+						final int a = cells.get(index), b = cells.get(index + 1);
+						assertEquals(1, distance(new int[] { a % size, a / size % size, a / (size * size) },
+								new int[] { b % size, b / size % size, b / (size * size) }));
+						pairs++;
+					}
+				}
+				assertTrue(pairs > 0);
+			}
+		}
+	}
+
+	@Test
+	public void testMortonInterleavesBits() {
+		for (int bits = 1; bits <= 4; bits++) {
+			walk(bits, false);
+		}
+		final int max = (1 << WB_SpaceFillingCurve.MAX_BITS) - 1;
+		assertEquals((1L << 3 * WB_SpaceFillingCurve.MAX_BITS) - 1, WB_SpaceFillingCurve.getMortonIndex(max, max, max));
+		assertEquals(4L, WB_SpaceFillingCurve.getMortonIndex(1, 0, 0));
+		assertEquals(2L, WB_SpaceFillingCurve.getMortonIndex(0, 1, 0));
+		assertEquals(1L, WB_SpaceFillingCurve.getMortonIndex(0, 0, 1));
+		assertEquals(1L << 62, WB_SpaceFillingCurve.getMortonIndex(1 << WB_SpaceFillingCurve.MAX_BITS - 1, 0, 0));
+	}
+
+	private static void assertPermutation(final int n, final int[] order) {
+		assertEquals(n, order.length);
+		final int[] sorted = order.clone();
+		Arrays.sort(sorted);
+		for (int i = 0; i < n; i++) {
+			assertEquals(i, sorted[i]);
+		}
+	}
+
+	/**
+	 * Centers of the cells of an 8x8x8 grid, shuffled, and the two corners of
+	 * the unit cube so the bounding box is known. Whatever the resolution of
+	 * getOrder, each center lies in the block of its cell.
+	 */
+	private static double[] gridPoints(final int[] cells) {
+		final double[] coords = new double[3 * (cells.length + 2)];
+		for (int i = 0; i < cells.length; i++) {
+			final int[] p = cell(cells[i], 3);
+			for (int k = 0; k < 3; k++) {
+				coords[3 * i + k] = (p[k] + 0.5) / 8;
+			}
+		}
+		Arrays.fill(coords, 3 * cells.length + 3, coords.length, 1.0);
+		return coords;
+	}
+
+	@Test
+	public void testOrderFollowsCurve() {
+		final int n = 512;
+		final int[] cells = new int[n];
+		for (int i = 0; i < n; i++) {
+			cells[i] = i;
+		}
+		final Random rnd = new Random(3);
+		for (int i = n - 1; i > 0; i--) {
+			final int j = rnd.nextInt(i + 1);
+			final int t = cells[i];
+			cells[i] = cells[j];
+			cells[j] = t;
+		}
+		final double[] coords = gridPoints(cells);
+		for (final boolean hilbert : new boolean[] { true, false }) {
+			final int[] order = WB_SpaceFillingCurve.getOrder(coords, hilbert);
+			assertPermutation(n + 2, order);
+			int[] previous = null;
+			for (final int i : order) {
+				if (i >= n) {
+					continue;
+				}
+				final int[] p = cell(cells[i], 3);
+				if (previous != null) {
+					if (hilbert) {
+						assertEquals(1, distance(previous, p));
+					} else {
+						assertTrue(WB_SpaceFillingCurve.getMortonIndex(previous[0], previous[1],
+								previous[2]) < WB_SpaceFillingCurve.getMortonIndex(p[0], p[1], p[2]));
+					}
+				}
+				previous = p;
+			}
+		}
+	}
+
+	/**
+	 * Random points, with duplicates, NaN coordinates and a flat box, sorted
+	 * sequentially and in parallel.
+	 */
+	@Test
+	public void testOrderIsPermutation() {
+		final WB_ParallelExecutor executor = WB_ParallelExecutor.instance();
+		final int parallelism = executor.getParallelism();
+		final int minimumRange = executor.getMinimumRange();
+		try {
+			final Random rnd = new Random(11);
+			for (final int n : new int[] { 0, 1, 2, 3, 1000, 5000 }) {
+				final double[] coords = new double[3 * n];
+				for (int i = 0; i < 3 * n; i++) {
+					coords[i] = rnd.nextDouble() * 100.0 - 50.0;
+				}
+				for (int i = 0; i + 3 < 3 * n; i += 30) {
+					System.arraycopy(coords, i, coords, i + 3, 3);
+				}
+				if (n > 10) {
+					coords[7] = Double.NaN;
+				}
+				final double[] flat = coords.clone();
+				for (int i = 2; i < 3 * n; i += 3) {
+					flat[i] = 1.0;
+				}
+				for (final double[] points : new double[][] { coords, flat }) {
+					for (final boolean hilbert : new boolean[] { true, false }) {
+						executor.setParallel(false);
+						final int[] sequential = WB_SpaceFillingCurve.getOrder(points, hilbert);
+						assertPermutation(n, sequential);
+						executor.setParallel(true);
+						executor.setParallelism(Math.max(3, parallelism));
+						executor.setMinimumRange(16);
+						assertTrue(Arrays.equals(sequential, WB_SpaceFillingCurve.getOrder(points, hilbert)));
+						executor.setParallelism(parallelism);
+						executor.setMinimumRange(minimumRange);
+					}
+				}
+			}
+		} finally {
+			executor.setParallel(true);
+			executor.setParallelism(parallelism);
+			executor.setMinimumRange(minimumRange);
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/**
+ *
+ */
+package wblut.geom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link wblut.geom.WB_SpatialHash}.
+ */
+public class WB_SpatialHashTest {
+
+	private static double[] randomPoints(final int n, final long seed) {
+		final Random random = new Random(seed);
+		final double[] coords = new double[3 * n];
+		for (int i = 0; i < 3 * n; i++) {
+			coords[i] = random.nextDouble() * 10.0 - 5.0;
+		}
+		return coords;
+	}
+
+	private static double d2(final double[] coords, final int i, final double x, final double y, final double z) {
+		final double dx = coords[3 * i] - x, dy = coords[3 * i + 1] - y, dz = coords[3 * i + 2] - z;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	@Test
+	public void testRangeMatchesBruteForce() {
+		final int n = 5000;
+		final double[] coords = randomPoints(n, 1);
+		final WB_SpatialHash hash = new WB_SpatialHash(coords, 0.5);
+		final Random random = new Random(2);
+		final int[] result = new int[n];
+		for (final double radius : new double[] { 0.1, 0.5, 1.3, 20.0 }) {
+			for (int q = 0; q < 100; q++) {
+				final double x = random.nextDouble() * 12.0 - 6.0;
+				final double y = random.nextDouble() * 12.0 - 6.0;
+				final double z = random.nextDouble() * 12.0 - 6.0;
+				final int count = hash.getRange(x, y, z, radius, result);
+				final int[] found = Arrays.copyOf(result, count);
+				Arrays.sort(found);
+				int expected = 0;
+				for (int i = 0; i < n; i++) {
+					if (d2(coords, i, x, y, z) <= radius * radius) {
+						assertTrue("Point " + i + " missing from range query.", Arrays.binarySearch(found, i) >= 0);
+						expected++;
+					}
+				}
+				assertEquals("Range query returns wrong number of points.", expected, count);
+			}
+		}
+	}
+
+	@Test
+	public void testRangeCountOnly() {
+		final double[] coords = randomPoints(1000, 3);
+		final WB_SpatialHash hash = new WB_SpatialHash(coords, 1.0);
+		final int[] result = new int[2];
+		final int count = hash.getRange(0, 0, 0, 2.0, null);
+		assertEquals("Truncated query should return the full count.", count, hash.getRange(0, 0, 0, 2.0, result));
+	}
+
+	@Test
+	public void testClosestMatchesBruteForce() {
+		final int n = 3000;
+		final double[] coords = randomPoints(n, 4);
+		final WB_SpatialHash hash = new WB_SpatialHash(0.2, n);
+		for (int i = 0; i < n; i++) {
+			assertEquals(i, hash.insert(coords[3 * i], coords[3 * i + 1], coords[3 * i + 2]));
+		}
+		final Random random = new Random(5);
+		for (int q = 0; q < 500; q++) {
+			final double x = random.nextDouble() * 10.0 - 5.0;
+			final double y = random.nextDouble() * 10.0 - 5.0;
+			final double z = random.nextDouble() * 10.0 - 5.0;
+			int expected = -1;
+			double min = 0.3 * 0.3;
+			for (int i = 0; i < n; i++) {
+				if (d2(coords, i, x, y, z) < min) {
+					min = d2(coords, i, x, y, z);
+					expected = i;
+				}
+			}
+			assertEquals("Closest point differs from brute force.", expected, hash.getClosest(x, y, z, 0.3));
+		}
+	}
+
+	@Test
+	public void testConcurrentInsert() throws InterruptedException {
+		final int threads = 4, perThread = 2000;
+		final WB_SpatialHash hash = new WB_SpatialHash(0.1, threads * perThread);
+		final Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int offset = t;
+			workers[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < perThread; i++) {
+						hash.insert(offset, i * 0.01, 0);
+					}
+				}
+			});
+			workers[t].start();
+		}
+		for (final Thread worker : workers) {
+			worker.join();
+		}
+		assertEquals(threads * perThread, hash.size());
+		for (int t = 0; t < threads; t++) {
+			for (int i = 0; i < perThread; i++) {
+				assertTrue("Inserted point not found.", hash.getClosest(t, i * 0.01, 0, 0.001) >= 0);
+			}
+		}
+	}
+
+	@Test
+	public void testWeld() {
+		final double[] coords = { 0, 0, 0, 1, 0, 0, 1e-7, 0, 0, 1, 1e-7, 0, 2, 0, 0 };
+		final int[] weld = new int[5];
+		final int[] source = new int[5];
+		assertEquals(3, WB_SpatialHash.weld(coords, 1e-6, weld, source));
+		assertEquals(weld[0], weld[2]);
+		assertEquals(weld[1], weld[3]);
+		assertEquals(0, source[weld[0]]);
+		assertEquals(1, source[weld[1]]);
+		assertEquals(4, source[weld[4]]);
+	}
+
+	@Test(timeout = 10000)
+	public void testWeldLargeCoordinates() {
+		final int[] weld = new int[2];
+		final int[] source = new int[2];
+		assertEquals(2, WB_SpatialHash.weld(new double[] { 1e13, 0, 0, 1, 1, 1 }, 1e-6, weld, source));
+		assertEquals(2, WB_SpatialHash.weld(new double[] { -1e300, 0, 0, 1e300, 1, 1 }, 1e-6, weld, source));
+	}
+
+	@Test(timeout = 10000)
+	public void testWeldNonFiniteCoordinates() {
+		final int[] weld = new int[3];
+		final int[] source = new int[3];
+		assertEquals(3, WB_SpatialHash.weld(
+				new double[] { Double.POSITIVE_INFINITY, 0, 0, 1, 1, 1, Double.NEGATIVE_INFINITY, Double.NaN, 0 },
+				1e-6, weld, source));
+	}
+}
@@ -0,0 +1,172 @@
+/**
+ *
+ */
+package wblut.geom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for the 3D Voronoi cells of {@link wblut.geom.WB_Voronoi} and the 3D
+ * triangulations of {@link wblut.geom.WB_Triangulate3D}, including the
+ * overloads that merge points closer than a given distance.
+ */
+public class WB_VoronoiTest {
+	private static final double SIZE = 100.0;
+	private static final double JITTER = 1e-4;
+	private static final double PRECISION = 1e-3;
+
+	/**
+	 * Random points, followed by copies of the first few points moved by less
+	 * than PRECISION.
+	 */
+	private static List<WB_Point> points(final int n, final int copies, final long seed) {
+		final Random random = new Random(seed);
+		final List<WB_Point> points = new ArrayList<WB_Point>();
+		for (int i = 0; i < n; i++) {
+			points.add(new WB_Point(random.nextDouble() * SIZE, random.nextDouble() * SIZE, random.nextDouble() * SIZE));
+		}
+		for (int i = 0; i < copies; i++) {
+			points.add(new WB_Point(points.get(i)).addSelf(JITTER * (random.nextDouble() - 0.5),
+					JITTER * (random.nextDouble() - 0.5), JITTER * (random.nextDouble() - 0.5)));
+		}
+		return points;
+	}
+
+	private static WB_AABB container() {
+		return new WB_AABB(-10, -10, -10, SIZE + 10, SIZE + 10, SIZE + 10);
+	}
+
+	private static double volume(final WB_Mesh mesh) {
+		final List<WB_Coord> vertices = mesh.getPoints();
+		double volume = 0;
+		for (final int[] face : mesh.getFacesAsInt()) {
+			final WB_Coord a = vertices.get(face[0]);
+			for (int i = 1; i < face.length - 1; i++) {
+				final WB_Coord b = vertices.get(face[i]), c = vertices.get(face[i + 1]);
+				volume += a.xd() * (b.yd() * c.zd() - b.zd() * c.yd()) + a.yd() * (b.zd() * c.xd() - b.xd() * c.zd())
+						+ a.zd() * (b.xd() * c.yd() - b.yd() * c.xd());
+			}
+		}
+		return Math.abs(volume) / 6.0;
+	}
+
+	private static int nearest(final List<WB_Point> points, final int n, final WB_Coord p) {
+		int result = -1;
+		double d2 = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < n; i++) {
+			final double d = WB_Point.getSqDistance3D(points.get(i), p);
+			if (d < d2) {
+				d2 = d;
+				result = i;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * One cell per point in order, each cell closest to its own point, or for
+	 * a merged copy to its original, and the cells of the distinct points
+	 * filling the container.
+	 */
+	private static void checkCells(final List<WB_VoronoiCell3D> cells, final List<WB_Point> points, final int nv,
+			final int distinct, final boolean complete) {
+		assertEquals(nv, cells.size());
+		final double[] volumes = new double[nv];
+		double total = 0;
+		for (int i = 0; i < nv; i++) {
+			final WB_VoronoiCell3D cell = cells.get(i);
+			assertEquals(i, cell.getIndex());
+			assertEquals(0, WB_Point.getDistance3D(cell.getGenerator(), points.get(i)), 0.0);
+			volumes[i] = volume(cell.getMesh());
+			assertTrue(volumes[i] > 0);
+			final int original = i < distinct ? i : i - distinct;
+			assertEquals(original, nearest(points, distinct, cell.getMesh().getCenter()));
+			if (i < distinct) {
+				total += volumes[i];
+			} else {
+				assertEquals(volumes[original], volumes[i], 1e-9 * volumes[original]);
+			}
+		}
+		if (complete) {
+			final double size = SIZE + 20;
+			assertEquals(size * size * size, total, 1e-6 * size * size * size);
+		}
+	}
+
+	@Test
+	public void testVoronoi3DWithPrecision() {
+		for (long seed = 0; seed < 3; seed++) {
+			final int n = 60, copies = 10;
+			final List<WB_Point> points = points(n, copies, seed);
+			final WB_Point[] array = points.toArray(new WB_Point[0]);
+			checkCells(WB_Voronoi.getVoronoi3D(points, n + copies, container(), PRECISION), points, n + copies, n,
+					true);
+			checkCells(WB_Voronoi.getVoronoi3D(array, n + copies, container(), PRECISION), points, n + copies, n,
+					true);
+			checkCells(WB_Voronoi.getVoronoi3D(array, container(), PRECISION), points, n + copies, n, true);
+			checkCells(WB_Voronoi.getVoronoi3D(points, 25, container(), PRECISION), points, 25, n, false);
+			// without copies, any precision below the point spacing gives the
+			// cells of the exact overload
+			final List<WB_Point> distinct = points.subList(0, n);
+			final List<WB_VoronoiCell3D> exact = WB_Voronoi.getVoronoi3D(distinct, container());
+			for (final double precision : new double[] { 0, PRECISION }) {
+				final List<WB_VoronoiCell3D> cells = WB_Voronoi.getVoronoi3D(distinct, n, container(), precision);
+				checkCells(cells, points, n, n, true);
+				for (int i = 0; i < n; i++) {
+					assertEquals(volume(exact.get(i).getMesh()), volume(cells.get(i).getMesh()), 1e-9);
+				}
+			}
+		}
+		// up to four points are handled without a triangulation
+		final List<WB_Point> few = points(4, 0, 5);
+		checkCells(WB_Voronoi.getVoronoi3D(few, 4, container(), PRECISION), few, 4, 4, true);
+	}
+
+	/**
+	 * Tetrahedra as sorted vertex quadruples, in sorted order. Either a point
+	 * or its merged copy can be the vertex, copies are replaced by the
+	 * original.
+	 */
+	private static List<String> tetrahedra(final WB_Triangulation3D triangulation, final int n) {
+		final int[] tetrahedra = triangulation.getTetrahedra();
+		final List<String> result = new ArrayList<String>();
+		for (int t = 0; t < tetrahedra.length; t += 4) {
+			final int[] tetrahedron = Arrays.copyOfRange(tetrahedra, t, t + 4);
+			for (int i = 0; i < 4; i++) {
+				if (tetrahedron[i] >= n) {
+					tetrahedron[i] -= n;
+				}
+			}
+			Arrays.sort(tetrahedron);
+			result.add(Arrays.toString(tetrahedron));
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	@Test
+	public void testTriangulate3DWithClosest() {
+		for (long seed = 0; seed < 3; seed++) {
+			final int n = 300;
+			final List<WB_Point> points = points(n, 20, seed);
+			final List<String> expected = tetrahedra(WB_Triangulate3D.triangulate3D(points.subList(0, n)), n);
+			assertTrue(expected.size() > n);
+			assertEquals(expected, tetrahedra(WB_Triangulate3D.triangulate3D(points, PRECISION), n));
+			assertEquals(expected,
+					tetrahedra(WB_Triangulate3D.triangulate3D(points.toArray(new WB_Point[0]), PRECISION), n));
+			assertEquals(expected, tetrahedra(WB_Triangulate3D.triangulate3D(points.subList(0, n), 0), n));
+			// without merging, the copies are vertices too
+			final WB_Triangulation3D unmerged = WB_Triangulate3D.triangulate3D(points, 0);
+			assertTrue(unmerged.getTetrahedra().length / 4 > expected.size());
+		}
+	}
+}
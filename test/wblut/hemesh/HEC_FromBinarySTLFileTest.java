@@ -0,0 +1,198 @@
+/**
+ *
+ */
+package wblut.hemesh;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import wblut.geom.WB_Coord;
+import wblut.hemesh.HET_WriterSTL.STLColorModel;
+
+/**
+ * Round trips through {@link HET_WriterSTL} and {@link HEC_FromBinarySTLFile}
+ * for the memory-mapped, gzip and ByteBuffer paths, and a comparison of the
+ * written bytes with the stream writer the buffered writer replaced.
+ */
+public class HEC_FromBinarySTLFileTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static HE_Mesh source() {
+		final HE_Mesh mesh = new HE_Mesh(new HEC_Geodesic().setRadius(100).setB(4).setC(2));
+		int i = 0;
+		for (final HE_Face f : mesh.getFaces()) {
+			f.setColor(0xff000000 | i++ * 0x010307);
+		}
+		return mesh;
+	}
+
+	/**
+	 * The bytes written by the previous writer, which wrote every value to a
+	 * BufferedOutputStream in little-endian order.
+	 */
+	private static byte[] legacyBytes(final HE_Mesh mesh, final STLColorModel colorModel, final float scale) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] header = new byte[80];
+		colorModel.formatHeader(header);
+		out.write(header, 0, 80);
+		writeInt(out, mesh.getNumberOfFaces());
+		final HE_FaceIterator fItr = mesh.fItr();
+		HE_Face f;
+		while (fItr.hasNext()) {
+			f = fItr.next();
+			final WB_Coord n = f.getFaceNormal();
+			writeInt(out, Float.floatToRawIntBits(n.xf()));
+			writeInt(out, Float.floatToRawIntBits(n.yf()));
+			writeInt(out, Float.floatToRawIntBits(n.zf()));
+			for (final WB_Coord v : new WB_Coord[] { f.getHalfedge().getVertex(),
+					f.getHalfedge().getNextInFace().getVertex(), f.getHalfedge().getPrevInFace().getVertex() }) {
+				writeInt(out, Float.floatToRawIntBits(v.xf() * scale));
+				writeInt(out, Float.floatToRawIntBits(v.yf() * scale));
+				writeInt(out, Float.floatToRawIntBits(v.zf() * scale));
+			}
+			final int rgb = f.getColor() != HET_WriterSTL.DEFAULT_RGB ? colorModel.formatRGB(f.getColor())
+					: colorModel.getDefaultRGB();
+			out.write(rgb & 0xff);
+			out.write(rgb >> 8 & 0xff);
+		}
+		return out.toByteArray();
+	}
+
+	private static void writeInt(final ByteArrayOutputStream out, final int a) {
+		out.write(a & 0xff);
+		out.write(a >> 8 & 0xff);
+		out.write(a >> 16 & 0xff);
+		out.write(a >>> 24);
+	}
+
+	private static byte[] streamBytes(final HE_Mesh mesh, final STLColorModel colorModel, final float scale,
+			final int bufferSize) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final HET_WriterSTL stl = new HET_WriterSTL(colorModel, bufferSize);
+		stl.setScale(scale);
+		stl.beginSave(out, mesh.getNumberOfFaces());
+		HET_Export.saveToSTLWithFaceColor(mesh, stl);
+		stl.endSave();
+		return out.toByteArray();
+	}
+
+	/**
+	 * Same faces in the same order, vertices at float precision.
+	 */
+	private static void assertSameTriangles(final HE_Mesh expected, final HE_Mesh actual) {
+		assertEquals(expected.getNumberOfFaces(), actual.getNumberOfFaces());
+		assertEquals(expected.getNumberOfVertices(), actual.getNumberOfVertices());
+		assertEquals(expected.getNumberOfEdges(), actual.getNumberOfEdges());
+		final Iterator<HE_Face> eItr = expected.fItr();
+		final Iterator<HE_Face> aItr = actual.fItr();
+		HE_Halfedge e, a;
+		while (eItr.hasNext()) {
+			e = eItr.next().getHalfedge();
+			a = aItr.next().getHalfedge();
+			for (int i = 0; i < 3; i++) {
+				assertEquals(e.getVertex().xf(), a.getVertex().xf(), 0.0f);
+				assertEquals(e.getVertex().yf(), a.getVertex().yf(), 0.0f);
+				assertEquals(e.getVertex().zf(), a.getVertex().zf(), 0.0f);
+				e = e.getNextInFace();
+				a = a.getNextInFace();
+			}
+		}
+	}
+
+	@Test
+	public void testBytesMatchPreviousWriter() {
+		final HE_Mesh mesh = source();
+		final STLColorModel[] models = { HET_WriterSTL.NONE, HET_WriterSTL.DEFAULT, HET_WriterSTL.MATERIALISE,
+				new HET_WriterSTL.MaterialiseSTLColorModel(0x336699, true) };
+		for (final STLColorModel model : models) {
+			final byte[] expected = legacyBytes(mesh, model, 1.5f);
+			assertEquals(HET_WriterSTL.getByteSize(mesh.getNumberOfFaces()), expected.length);
+			assertArrayEquals(expected, streamBytes(mesh, model, 1.5f, HET_WriterSTL.DEFAULT_BUFFER));
+			// flushes in the middle of facets
+			assertArrayEquals(expected, streamBytes(mesh, model, 1.5f, 97));
+		}
+	}
+
+	@Test
+	public void testByteBufferMatchesStream() {
+		final HE_Mesh mesh = source();
+		final ByteBuffer buffer = ByteBuffer.allocate((int) HET_WriterSTL.getByteSize(mesh.getNumberOfFaces()) + 8);
+		buffer.position(8);
+		HET_Export.saveToSTL(mesh, buffer);
+		assertEquals(buffer.capacity(), buffer.position());
+		final byte[] written = new byte[buffer.capacity() - 8];
+		buffer.position(8);
+		buffer.get(written);
+		assertArrayEquals(legacyBytes(mesh, HET_WriterSTL.NONE, 1f), written);
+	}
+
+	@Test
+	public void testMappedRoundTrip() throws IOException {
+		final HE_Mesh mesh = source();
+		final File dir = folder.newFolder();
+		HET_Export.saveToSTL(mesh, dir.getPath(), "mesh");
+		final File file = new File(dir, "mesh.stl");
+		assertArrayEquals(legacyBytes(mesh, HET_WriterSTL.NONE, 1f), Files.readAllBytes(file.toPath()));
+		assertSameTriangles(mesh, new HE_Mesh(new HEC_FromBinarySTLFile(file.getPath())));
+	}
+
+	@Test
+	public void testGzipRoundTrip() throws IOException {
+		final HE_Mesh mesh = source();
+		final File file = new File(folder.newFolder(), "mesh.stl.gz");
+		final HET_WriterSTL stl = new HET_WriterSTL();
+		stl.beginSave(HET_WriterSTL.createOutputStream(file), mesh.getNumberOfFaces());
+		HET_Export.saveToSTLWithFaceColor(mesh, stl);
+		stl.endSave();
+		assertSameTriangles(mesh, new HE_Mesh(new HEC_FromBinarySTLFile(file.getPath())));
+	}
+
+	@Test
+	public void testMappedBufferRoundTrip() throws IOException {
+		final HE_Mesh mesh = source();
+		final File file = folder.newFile("mapped.stl");
+		final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+					HET_WriterSTL.getByteSize(mesh.getNumberOfFaces()));
+			HET_Export.saveToSTL(mesh, buffer);
+			buffer.force();
+		} finally {
+			channel.close();
+		}
+		assertSameTriangles(mesh, new HE_Mesh(new HEC_FromBinarySTLFile(file.getPath())));
+	}
+
+	@Test
+	public void testScaleOnRead() throws IOException {
+		final HE_Mesh mesh = source();
+		final File dir = folder.newFolder();
+		HET_Export.saveToSTL(mesh, dir.getPath(), "mesh");
+		final HE_Mesh scaled = new HE_Mesh(new HEC_FromBinarySTLFile(new File(dir, "mesh.stl").getPath()).setScale(2));
+		final Iterator<HE_Face> eItr = mesh.fItr();
+		final Iterator<HE_Face> aItr = scaled.fItr();
+		while (eItr.hasNext()) {
+			final WB_Coord e = eItr.next().getHalfedge().getVertex();
+			final WB_Coord a = aItr.next().getHalfedge().getVertex();
+			assertEquals(2.0 * e.xf(), a.xd(), 0.0);
+			assertEquals(2.0 * e.yf(), a.yd(), 0.0);
+			assertEquals(2.0 * e.zf(), a.zd(), 0.0);
+		}
+	}
+}
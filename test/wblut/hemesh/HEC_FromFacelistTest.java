@@ -0,0 +1,205 @@
+/**
+ *
+ */
+package wblut.hemesh;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import wblut.geom.WB_Coord;
+import wblut.geom.WB_Point;
+import wblut.geom.WB_Vector;
+
+/**
+ * Tests for {@link HEC_FromFacelist}: welding of duplicate vertices,
+ * reporting of non-manifold edges and vertices, and orientation of faces.
+ */
+public class HEC_FromFacelistTest {
+	private static final double[][] CUBE_VERTICES = { { -50, -50, -50 }, { 50, -50, -50 }, { 50, 50, -50 },
+			{ -50, 50, -50 }, { -50, -50, 50 }, { 50, -50, 50 }, { 50, 50, 50 }, { -50, 50, 50 } };
+	/** Outward facing quads. */
+	private static final int[][] CUBE_FACES = { { 0, 3, 2, 1 }, { 4, 5, 6, 7 }, { 0, 1, 5, 4 }, { 2, 3, 7, 6 },
+			{ 0, 4, 7, 3 }, { 1, 2, 6, 5 } };
+
+	/**
+	 * Cube with separate vertices for every face corner, each moved by at
+	 * most offset in x, y and z.
+	 */
+	private static HEC_FromFacelist soup(final double offset) {
+		final Random random = new Random(7);
+		final WB_Coord[] vertices = new WB_Coord[24];
+		final int[][] faces = new int[6][4];
+		int i = 0;
+		for (int f = 0; f < 6; f++) {
+			for (int j = 0; j < 4; j++) {
+				final double[] v = CUBE_VERTICES[CUBE_FACES[f][j]];
+				vertices[i] = new WB_Point(v[0] + offset * (2 * random.nextDouble() - 1),
+						v[1] + offset * (2 * random.nextDouble() - 1), v[2] + offset * (2 * random.nextDouble() - 1));
+				faces[f][j] = i++;
+			}
+		}
+		return new HEC_FromFacelist().setVertices(vertices).setFaces(faces);
+	}
+
+	private static int numberOfBoundaryHalfedges(final HE_Mesh mesh) {
+		int n = 0;
+		for (final HE_Halfedge he : mesh.getHalfedges()) {
+			if (he.getFace() == null) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	private static void assertOutward(final HE_Mesh mesh) {
+		for (final HE_Face f : mesh.getFaces()) {
+			assertTrue(WB_Vector.dot(f.getFaceNormal(), f.getFaceCenter()) > 0);
+		}
+	}
+
+	@Test
+	public void testWeldWithinTolerance() {
+		final HEC_FromFacelist creator = soup(0.2e-3).setTolerance(1e-3);
+		final HE_Mesh mesh = new HE_Mesh(creator);
+		assertEquals(8, mesh.getNumberOfVertices());
+		assertEquals(6, mesh.getNumberOfFaces());
+		assertEquals(12, mesh.getNumberOfEdges());
+		assertEquals(0, numberOfBoundaryHalfedges(mesh));
+		assertTrue(creator.getNonManifoldEdges().isEmpty());
+		assertEquals(0, creator.getNonManifoldVertices().length);
+		assertTrue(HET_Diagnosis.isValidSurface(mesh));
+		assertOutward(mesh);
+	}
+
+	@Test
+	public void testNoWeldOutsideTolerance() {
+		// copies are moved by up to 0.2, most are further apart than 0.01
+		final HE_Mesh welded = new HE_Mesh(soup(0.2).setTolerance(0.01));
+		assertTrue(welded.getNumberOfVertices() > 8);
+		final HE_Mesh separate = new HE_Mesh(soup(0.2e-3).setTolerance(1e-3).setDuplicate(false));
+		assertEquals(24, separate.getNumberOfVertices());
+		assertEquals(24, numberOfBoundaryHalfedges(separate));
+	}
+
+	@Test
+	public void testWeldKeepsFirstPosition() {
+		final WB_Coord[] vertices = { new WB_Point(0, 0, 0), new WB_Point(1, 0, 0), new WB_Point(0, 1, 0),
+				new WB_Point(1e-4, 0, 0), new WB_Point(0, -1, 0) };
+		final HE_Mesh mesh = new HE_Mesh(new HEC_FromFacelist().setVertices(vertices)
+				.setFaces(new int[][] { { 0, 1, 2 }, { 1, 3, 4 } }).setTolerance(1e-3));
+		assertEquals(4, mesh.getNumberOfVertices());
+		assertEquals(5, mesh.getNumberOfEdges());
+		boolean found = false;
+		for (final HE_Vertex v : mesh.getVertices()) {
+			if (v.xd() == 0 && v.yd() == 0) {
+				found = true;
+			}
+			assertFalse(v.xd() == 1e-4);
+		}
+		assertTrue(found);
+	}
+
+	@Test
+	public void testNonManifoldEdge() {
+		// three triangles on the edge 0-1, the third one traverses it in the
+		// same direction as the first
+		final WB_Coord[] vertices = { new WB_Point(0, 0, 0), new WB_Point(1, 0, 0), new WB_Point(0, 1, 0),
+				new WB_Point(0, -1, 0), new WB_Point(0, 0, 1) };
+		final HEC_FromFacelist creator = new HEC_FromFacelist().setVertices(vertices)
+				.setFaces(new int[][] { { 0, 1, 2 }, { 1, 0, 3 }, { 0, 1, 4 } });
+		final HE_Mesh mesh = new HE_Mesh(creator);
+		assertEquals(3, mesh.getNumberOfFaces());
+		assertEquals(1, creator.getNonManifoldEdges().size());
+		assertArrayEquals(new int[] { 0, 1 }, creator.getNonManifoldEdges().get(0));
+		assertArrayEquals(new int[] { 0, 1 }, creator.getNonManifoldVertices());
+	}
+
+	@Test
+	public void testNonManifoldVertexWithBoundary() {
+		// two triangles touching in vertex 0
+		final WB_Coord[] vertices = { new WB_Point(0, 0, 0), new WB_Point(1, 0, 0), new WB_Point(1, 1, 0),
+				new WB_Point(-1, 0, 0), new WB_Point(-1, -1, 0) };
+		final HEC_FromFacelist creator = new HEC_FromFacelist().setVertices(vertices)
+				.setFaces(new int[][] { { 0, 1, 2 }, { 0, 3, 4 } });
+		new HE_Mesh(creator);
+		assertTrue(creator.getNonManifoldEdges().isEmpty());
+		assertArrayEquals(new int[] { 0 }, creator.getNonManifoldVertices());
+	}
+
+	@Test
+	public void testNonManifoldVertexClosed() {
+		// two closed tetrahedra sharing their apex, vertex 0
+		final WB_Coord[] vertices = { new WB_Point(0, 0, 0), new WB_Point(1, 0, 1), new WB_Point(0, 1, 1),
+				new WB_Point(1, 1, 1), new WB_Point(1, 0, -1), new WB_Point(0, 1, -1), new WB_Point(1, 1, -1) };
+		final int[][] faces = { { 0, 1, 2 }, { 0, 2, 3 }, { 0, 3, 1 }, { 1, 3, 2 }, { 0, 4, 5 }, { 0, 5, 6 },
+				{ 0, 6, 4 }, { 4, 6, 5 } };
+		HEC_FromFacelist creator = new HEC_FromFacelist().setVertices(vertices).setFaces(faces);
+		HE_Mesh mesh = new HE_Mesh(creator);
+		assertTrue(creator.getNonManifoldEdges().isEmpty());
+		assertArrayEquals(new int[] { 0 }, creator.getNonManifoldVertices());
+		assertEquals(7, mesh.getNumberOfVertices());
+		// split after creation, still reported
+		creator = new HEC_FromFacelist().setVertices(vertices).setFaces(faces).setCheckManifold(true);
+		mesh = new HE_Mesh(creator);
+		assertArrayEquals(new int[] { 0 }, creator.getNonManifoldVertices());
+		assertEquals(8, mesh.getNumberOfVertices());
+		assertEquals(0, numberOfBoundaryHalfedges(mesh));
+	}
+
+	@Test
+	public void testManifoldBoundaryVertex() {
+		// a single quad split in two, boundary vertices are manifold
+		final WB_Coord[] vertices = { new WB_Point(0, 0, 0), new WB_Point(1, 0, 0), new WB_Point(1, 1, 0),
+				new WB_Point(0, 1, 0) };
+		final HEC_FromFacelist creator = new HEC_FromFacelist().setVertices(vertices)
+				.setFaces(new int[][] { { 0, 1, 2 }, { 0, 2, 3 } });
+		final HE_Mesh mesh = new HE_Mesh(creator);
+		assertEquals(0, creator.getNonManifoldVertices().length);
+		assertEquals(4, numberOfBoundaryHalfedges(mesh));
+	}
+
+	private static int[][] cubeFaces(final int... reversed) {
+		final int[][] faces = new int[6][];
+		for (int f = 0; f < 6; f++) {
+			faces[f] = CUBE_FACES[f].clone();
+		}
+		for (final int f : reversed) {
+			for (int i = 0, j = 3; i < j; i++, j--) {
+				final int tmp = faces[f][i];
+				faces[f][i] = faces[f][j];
+				faces[f][j] = tmp;
+			}
+		}
+		return faces;
+	}
+
+	@Test
+	public void testInconsistentOrientationReported() {
+		final HEC_FromFacelist creator = new HEC_FromFacelist().setVertices(CUBE_VERTICES)
+				.setFaces(cubeFaces(1, 3));
+		final HE_Mesh mesh = new HE_Mesh(creator);
+		assertFalse(creator.getNonManifoldEdges().isEmpty());
+		assertTrue(numberOfBoundaryHalfedges(mesh) > 0);
+	}
+
+	@Test
+	public void testInconsistentOrientationFixed() {
+		for (final int[] reversed : new int[][] { { 1, 3 }, { 0 }, { 0, 2, 4 }, { 1, 2, 3, 4, 5 } }) {
+			final HEC_FromFacelist creator = new HEC_FromFacelist().setVertices(CUBE_VERTICES)
+					.setFaces(cubeFaces(reversed)).setCheckNormals(true);
+			final HE_Mesh mesh = new HE_Mesh(creator);
+			assertTrue(creator.getNonManifoldEdges().isEmpty());
+			assertEquals(0, creator.getNonManifoldVertices().length);
+			assertEquals(0, numberOfBoundaryHalfedges(mesh));
+			assertEquals(12, mesh.getNumberOfEdges());
+			assertTrue(HET_Diagnosis.isValidSurface(mesh));
+			assertOutward(mesh);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/**
+ *
+ */
+package wblut.hemesh;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+/**
+ * Compares the flat-array Catmull-Clark subdivision of a full mesh with the
+ * general path for selections, which splits faces with HEM_QuadSplit.
+ */
+public class HES_CatmullClarkTest {
+	private static final double TOLERANCE = 1e-9;
+
+	private static HE_Mesh fast(final HE_Mesh source, final int rep) {
+		final HE_Mesh mesh = source.copy();
+		for (int r = 0; r < rep; r++) {
+			final long[] keys = faceKeys(mesh);
+			mesh.subdivide(new HES_CatmullClark());
+			assertReused(keys, mesh);
+		}
+		return mesh;
+	}
+
+	private static HE_Mesh general(final HE_Mesh source, final int rep) {
+		final HE_Mesh mesh = source.copy();
+		for (int r = 0; r < rep; r++) {
+			final long[] keys = faceKeys(mesh);
+			new HES_CatmullClark().apply(HE_Selection.selectAllFaces(mesh));
+			assertReused(keys, mesh);
+		}
+		return mesh;
+	}
+
+	private static long[] faceKeys(final HE_Mesh mesh) {
+		final long[] keys = new long[mesh.getNumberOfFaces()];
+		int i = 0;
+		for (final HE_Face f : mesh.getFaces()) {
+			keys[i++] = f.getKey();
+		}
+		return keys;
+	}
+
+	/**
+	 * The original faces come first, in their original order.
+	 */
+	private static void assertReused(final long[] keys, final HE_Mesh mesh) {
+		final Iterator<HE_Face> fItr = mesh.fItr();
+		for (final long key : keys) {
+			assertEquals(key, fItr.next().getKey());
+		}
+	}
+
+	/**
+	 * Same faces in the same order, each starting at the same vertex.
+	 */
+	private static void assertSameFaces(final HE_Mesh expected, final HE_Mesh actual) {
+		assertEquals(expected.getNumberOfVertices(), actual.getNumberOfVertices());
+		assertEquals(expected.getNumberOfFaces(), actual.getNumberOfFaces());
+		assertEquals(expected.getNumberOfHalfedges(), actual.getNumberOfHalfedges());
+		final Iterator<HE_Face> eItr = expected.fItr();
+		final Iterator<HE_Face> aItr = actual.fItr();
+		HE_Face e, a;
+		HE_Halfedge ehe, ahe;
+		int i = 0;
+		while (eItr.hasNext()) {
+			e = eItr.next();
+			a = aItr.next();
+			assertEquals("Face " + i, e.getFaceOrder(), a.getFaceOrder());
+			ehe = e.getHalfedge();
+			ahe = a.getHalfedge();
+			do {
+				assertEquals("Face " + i, 0.0, ehe.getVertex().getDistance3D(ahe.getVertex()), TOLERANCE);
+				assertEquals("Face " + i, ehe.getVertex().getInternalLabel(), ahe.getVertex().getInternalLabel());
+				ehe = ehe.getNextInFace();
+				ahe = ahe.getNextInFace();
+			} while (ehe != e.getHalfedge());
+			i++;
+		}
+	}
+
+	@Test
+	public void testCube() {
+		final HE_Mesh cube = new HE_Mesh(new HEC_Cube().setEdge(100));
+		assertSameFaces(general(cube, 1), fast(cube, 1));
+		assertSameFaces(general(cube, 2), fast(cube, 2));
+	}
+
+	@Test
+	public void testMixedFaces() {
+		final HE_Mesh mesh = new HE_Mesh(new HEC_Dodecahedron().setEdge(50));
+		// triangles next to pentagons
+		final HE_Selection selection = new HE_Selection(mesh);
+		selection.add(mesh.getFaceWithIndex(0));
+		HET_MeshOp.splitFacesTri(selection);
+		assertSameFaces(general(mesh, 1), fast(mesh, 1));
+	}
+
+	@Test
+	public void testTriangulatedArea() {
+		// the start halfedge decides the triangulation of the non-planar quads
+		final HE_Mesh cube = new HE_Mesh(new HEC_Cube().setEdge(100));
+		final HE_Mesh expected = general(cube, 2);
+		final HE_Mesh actual = fast(cube, 2);
+		HET_MeshOp.triangulate(expected);
+		HET_MeshOp.triangulate(actual);
+		assertEquals(expected.getArea(), actual.getArea(), TOLERANCE);
+	}
+}
@@ -0,0 +1,327 @@
+/**
+ *
+ */
+package wblut.hemesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Round trips through {@link HET_MeshSnapshot} and the errors reported by
+ * open() for truncated and corrupted files.
+ */
+public class HET_MeshSnapshotTest {
+	/** Offsets in the header and in a block table entry. */
+	private static final int VERSION = 8, VERTICES = 16, BLOCKS = 28, TABLE = 64, ENTRY = 32;
+	private static final int ID = 0, COMPRESSION = 4, OFFSET = 8, STORED = 16, SIZE = 24;
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Open grid with colors, labels, texture ids and texture coordinates.
+	 */
+	private static HE_Mesh source() {
+		final HE_Mesh mesh = new HE_Mesh(new HEC_Grid(5, 3, 50, 30));
+		int i = 0;
+		for (final HE_Vertex v : mesh.getVertices()) {
+			v.setColor(0xff000000 | 0x010203 * i);
+			v.setLabel(i % 7);
+			if (i % 2 == 0) {
+				v.setUVW(0.1 * i, 0.2 * i, 0.3 * i);
+			}
+			i++;
+		}
+		for (final HE_Halfedge he : mesh.getHalfedges()) {
+			he.setColor(0xff000000 | 0x030201 * i);
+			he.setLabel(i % 5);
+			if (i % 3 == 0) {
+				he.setUVW(-0.1 * i, 0.5, 0);
+			}
+			i++;
+		}
+		for (final HE_Face f : mesh.getFaces()) {
+			f.setColor(0xff000000 | 0x020301 * i);
+			f.setLabel(i % 3);
+			f.setTextureId(i % 4);
+			i++;
+		}
+		return mesh;
+	}
+
+	private static <E extends HE_Element> Map<Long, Integer> indices(final Iterator<E> itr) {
+		final Map<Long, Integer> result = new HashMap<Long, Integer>();
+		while (itr.hasNext()) {
+			result.put(itr.next().getKey(), result.size());
+		}
+		return result;
+	}
+
+	private static int index(final Map<Long, Integer> indices, final HE_Element e) {
+		return e == null ? -1 : indices.get(e.getKey());
+	}
+
+	/**
+	 * Same elements in the same order, compared by index since the keys of a
+	 * loaded mesh are new.
+	 */
+	private static void assertSameMesh(final HE_Mesh expected, final HE_Mesh actual) {
+		assertEquals(expected.getNumberOfVertices(), actual.getNumberOfVertices());
+		assertEquals(expected.getNumberOfHalfedges(), actual.getNumberOfHalfedges());
+		assertEquals(expected.getNumberOfFaces(), actual.getNumberOfFaces());
+		final Map<Long, Integer> ehi = indices(expected.heItr()), ahi = indices(actual.heItr());
+		final Map<Long, Integer> evi = indices(expected.vItr()), avi = indices(actual.vItr());
+		final Map<Long, Integer> efi = indices(expected.fItr()), afi = indices(actual.fItr());
+		final Iterator<HE_Vertex> ev = expected.vItr(), av = actual.vItr();
+		while (ev.hasNext()) {
+			final HE_Vertex e = ev.next(), a = av.next();
+			assertEquals(0.0, e.getDistance3D(a), 0.0);
+			assertEquals(index(ehi, e.getHalfedge()), index(ahi, a.getHalfedge()));
+			assertEquals(e.getColor(), a.getColor());
+			assertEquals(e.getLabel(), a.getLabel());
+			assertEquals(e.hasVertexUVW(), a.hasVertexUVW());
+			if (e.hasVertexUVW()) {
+				assertEquals(e.getVertexUVW().ud(), a.getVertexUVW().ud(), 0.0);
+				assertEquals(e.getVertexUVW().vd(), a.getVertexUVW().vd(), 0.0);
+				assertEquals(e.getVertexUVW().wd(), a.getVertexUVW().wd(), 0.0);
+			}
+		}
+		final Iterator<HE_Halfedge> eh = expected.heItr(), ah = actual.heItr();
+		while (eh.hasNext()) {
+			final HE_Halfedge e = eh.next(), a = ah.next();
+			assertEquals(index(ehi, e.getNextInFace()), index(ahi, a.getNextInFace()));
+			assertEquals(index(ehi, e.getPrevInFace()), index(ahi, a.getPrevInFace()));
+			assertEquals(index(ehi, e.getPair()), index(ahi, a.getPair()));
+			assertEquals(index(evi, e.getVertex()), index(avi, a.getVertex()));
+			assertEquals(index(efi, e.getFace()), index(afi, a.getFace()));
+			assertEquals(e.getColor(), a.getColor());
+			assertEquals(e.getLabel(), a.getLabel());
+			assertEquals(e.hasHalfedgeUVW(), a.hasHalfedgeUVW());
+			if (e.hasHalfedgeUVW()) {
+				assertEquals(e.getHalfedgeUVW().ud(), a.getHalfedgeUVW().ud(), 0.0);
+			}
+		}
+		final Iterator<HE_Face> ef = expected.fItr(), af = actual.fItr();
+		while (ef.hasNext()) {
+			final HE_Face e = ef.next(), a = af.next();
+			assertEquals(index(ehi, e.getHalfedge()), index(ahi, a.getHalfedge()));
+			assertEquals(e.getColor(), a.getColor());
+			assertEquals(e.getLabel(), a.getLabel());
+			assertEquals(e.getTextureId(), a.getTextureId());
+		}
+	}
+
+	private byte[] save(final HE_Mesh mesh, final boolean compress) throws IOException {
+		final File file = new File(folder.getRoot(), "source" + (compress ? ".z" : "") + ".binhemesh");
+		HET_MeshSnapshot.save(mesh, file.getPath(), compress);
+		return Files.readAllBytes(file.toPath());
+	}
+
+	private String write(final byte[] bytes) throws IOException {
+		final File file = folder.newFile();
+		Files.write(file.toPath(), bytes);
+		return file.getPath();
+	}
+
+	/**
+	 * Open bytes that must be rejected, the message has to contain problem.
+	 */
+	private void assertInvalid(final byte[] bytes, final String problem) throws IOException {
+		final String path = write(bytes);
+		try {
+			HET_MeshSnapshot.open(path);
+			fail("Opened an invalid snapshot, expected \"" + problem + "\".");
+		} catch (final IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(problem));
+		}
+	}
+
+	private static ByteBuffer edit(final byte[] bytes) {
+		return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/** Table entry position of the first block with this id. */
+	private static int entry(final byte[] bytes, final int id) {
+		final ByteBuffer buffer = edit(bytes);
+		for (int i = 0; i < buffer.getInt(BLOCKS); i++) {
+			if (buffer.getInt(TABLE + i * ENTRY + ID) == id) {
+				return TABLE + i * ENTRY;
+			}
+		}
+		throw new IllegalArgumentException("No block " + id);
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		final HE_Mesh mesh = source();
+		for (final boolean compress : new boolean[] { false, true }) {
+			final String path = write(save(mesh, compress));
+			assertTrue(HET_MeshSnapshot.isSnapshot(path));
+			final HET_MeshSnapshot snapshot = HET_MeshSnapshot.open(path);
+			assertEquals(HET_MeshSnapshot.VERSION, snapshot.getVersion());
+			assertEquals(mesh.getNumberOfVertices(), snapshot.getNumberOfVertices());
+			assertEquals(mesh.getNumberOfHalfedges(), snapshot.getNumberOfHalfedges());
+			assertEquals(mesh.getNumberOfFaces(), snapshot.getNumberOfFaces());
+			assertEquals(3 * mesh.getNumberOfVertices(), snapshot.getVertexCoordinates().remaining());
+			final HE_Mesh loaded = snapshot.toMesh();
+			assertSameMesh(mesh, loaded);
+			assertSameMesh(mesh, new HE_Mesh(new HEC_FromBinaryHemeshFile(path)));
+		}
+	}
+
+	@Test
+	public void testEmptyMesh() throws IOException {
+		for (final boolean compress : new boolean[] { false, true }) {
+			final HE_Mesh loaded = HET_MeshSnapshot.open(write(save(new HE_Mesh(), compress))).toMesh();
+			assertEquals(0, loaded.getNumberOfVertices());
+			assertEquals(0, loaded.getNumberOfHalfedges());
+			assertEquals(0, loaded.getNumberOfFaces());
+		}
+	}
+
+	/**
+	 * Every prefix of a snapshot that cuts into the header, the block table
+	 * or a block is rejected with an IOException instead of failing while
+	 * mapping a block past the end of the file. Only the padding after the
+	 * last block can be dropped.
+	 */
+	@Test
+	public void testTruncatedFiles() throws IOException {
+		final HE_Mesh mesh = new HE_Mesh(new HEC_Box(10, 10, 10, 1, 1, 1));
+		for (final boolean compress : new boolean[] { false, true }) {
+			final byte[] bytes = save(mesh, compress);
+			final ByteBuffer buffer = edit(bytes);
+			final int nb = buffer.getInt(BLOCKS);
+			long dataEnd = 0;
+			for (int i = 0; i < nb; i++) {
+				final int entry = TABLE + i * ENTRY;
+				dataEnd = Math.max(dataEnd, buffer.getLong(entry + OFFSET) + buffer.getLong(entry + STORED));
+			}
+			for (int length = 0; length < bytes.length; length++) {
+				final String path = write(Arrays.copyOf(bytes, length));
+				if (length >= dataEnd) {
+					assertEquals(mesh.getNumberOfFaces(), HET_MeshSnapshot.open(path).toMesh().getNumberOfFaces());
+					continue;
+				}
+				try {
+					HET_MeshSnapshot.open(path);
+					fail("Opened a snapshot truncated to " + length + " of " + bytes.length + " bytes.");
+				} catch (final IOException e) {
+					final String problem = length < 8 ? "is not a mesh snapshot"
+							: length < TABLE ? "the header is truncated"
+									: length < TABLE + ENTRY * nb ? "block table" : "outside the data area";
+					assertTrue(length + ": " + e.getMessage(), e.getMessage().contains(problem));
+				}
+			}
+			assertNotNull(HET_MeshSnapshot.open(write(bytes)));
+		}
+	}
+
+	@Test
+	public void testCorruptedHeader() throws IOException {
+		final byte[] bytes = save(source(), false);
+		byte[] corrupt = bytes.clone();
+		corrupt[2] = 'X';
+		assertInvalid(corrupt, "is not a mesh snapshot");
+		assertFalse(HET_MeshSnapshot.isSnapshot(write(corrupt)));
+		corrupt = bytes.clone();
+		edit(corrupt).putInt(VERSION, HET_MeshSnapshot.VERSION + 1);
+		assertInvalid(corrupt, "is not supported");
+		corrupt = bytes.clone();
+		edit(corrupt).putInt(VERSION, 0);
+		assertInvalid(corrupt, "version 0");
+		corrupt = bytes.clone();
+		edit(corrupt).putInt(VERTICES, -1);
+		assertInvalid(corrupt, "negative element count");
+		corrupt = bytes.clone();
+		edit(corrupt).putInt(VERTICES, edit(bytes).getInt(VERTICES) + 1);
+		assertInvalid(corrupt, "expected");
+		corrupt = bytes.clone();
+		edit(corrupt).putInt(BLOCKS, -1);
+		assertInvalid(corrupt, "block table");
+		corrupt = bytes.clone();
+		edit(corrupt).putInt(BLOCKS, Integer.MAX_VALUE);
+		assertInvalid(corrupt, "block table");
+	}
+
+	@Test
+	public void testCorruptedBlockTable() throws IOException {
+		final byte[] bytes = save(source(), false);
+		final int coords = entry(bytes, HET_MeshSnapshot.VERTEX_COORDS);
+		final long offset = edit(bytes).getLong(coords + OFFSET);
+		byte[] corrupt = bytes.clone();
+		edit(corrupt).putInt(coords + COMPRESSION, 7);
+		assertInvalid(corrupt, "unknown compression code 7");
+		corrupt = bytes.clone();
+		edit(corrupt).putLong(coords + OFFSET, bytes.length);
+		assertInvalid(corrupt, "outside the data area");
+		corrupt = bytes.clone();
+		edit(corrupt).putLong(coords + OFFSET, 0);
+		assertInvalid(corrupt, "outside the data area");
+		corrupt = bytes.clone();
+		edit(corrupt).putLong(coords + OFFSET, Long.MAX_VALUE);
+		assertInvalid(corrupt, "outside the data area");
+		corrupt = bytes.clone();
+		edit(corrupt).putLong(coords + STORED, -8);
+		assertInvalid(corrupt, "outside the data area");
+		corrupt = bytes.clone();
+		edit(corrupt).putLong(coords + STORED, bytes.length - offset + 8);
+		assertInvalid(corrupt, "outside the data area");
+		corrupt = bytes.clone();
+		edit(corrupt).putLong(coords + SIZE, edit(bytes).getLong(coords + SIZE) + 24);
+		assertInvalid(corrupt, "stored size");
+		corrupt = bytes.clone();
+		edit(corrupt).putLong(coords + SIZE, 1L << 40);
+		assertInvalid(corrupt, "too large");
+	}
+
+	@Test
+	public void testCorruptedCompressedBlock() throws IOException {
+		final byte[] bytes = save(source(), true);
+		final int coords = entry(bytes, HET_MeshSnapshot.VERTEX_COORDS);
+		final int offset = (int) edit(bytes).getLong(coords + OFFSET);
+		final int stored = (int) edit(bytes).getLong(coords + STORED);
+		byte[] corrupt = bytes.clone();
+		Arrays.fill(corrupt, offset, offset + stored, (byte) 0x5a);
+		assertInvalid(corrupt, "cannot be inflated");
+		corrupt = bytes.clone();
+		edit(corrupt).putLong(coords + STORED, stored / 2);
+		assertInvalid(corrupt, "cannot be inflated");
+	}
+
+	@Test
+	public void testUnknownBlocksAreIgnored() throws IOException {
+		final HE_Mesh mesh = source();
+		final byte[] bytes = save(mesh, false);
+		edit(bytes).putInt(entry(bytes, HET_MeshSnapshot.VERTEX_COLOR) + ID, 99);
+		final HET_MeshSnapshot snapshot = HET_MeshSnapshot.open(write(bytes));
+		assertNull(snapshot.getBlock(HET_MeshSnapshot.VERTEX_COLOR));
+		assertEquals(4 * mesh.getNumberOfVertices(), snapshot.getBlock(99).remaining());
+		final HE_Mesh loaded = snapshot.toMesh();
+		final Iterator<HE_Vertex> ev = mesh.vItr(), av = loaded.vItr();
+		final int[] colors = new int[mesh.getNumberOfVertices()];
+		final int[] expected = new int[colors.length];
+		for (int i = 0; i < colors.length; i++) {
+			expected[i] = ev.next().getColor();
+			colors[i] = av.next().getColor();
+		}
+		assertFalse(Arrays.equals(expected, colors));
+	}
+}
@@ -0,0 +1,201 @@
+/**
+ *
+ */
+package wblut.hemesh;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Statement forms accepted by {@link HET_OBJParser}: vertex, texture and
+ * normal lines, the four face corner forms, relative indices, comments, line
+ * continuations and polygons, for streams, mapped files and gzip files.
+ */
+public class HET_OBJParserTest {
+	/** Nominal chunk size of the parser. */
+	private static final int CHUNK = 1 << 23;
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static HET_OBJParser parse(final String text) throws IOException {
+		return new HET_OBJParser().parse(new ByteArrayInputStream(text.getBytes(StandardCharsets.ISO_8859_1)));
+	}
+
+	private File write(final String name, final byte[] bytes) throws IOException {
+		final File file = folder.newFile(name);
+		final OutputStream out = name.endsWith(".gz") ? new GZIPOutputStream(new FileOutputStream(file))
+				: new FileOutputStream(file);
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static void assertFaces(final int[][] expected, final int[][] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertArrayEquals("face " + i, expected[i], actual[i]);
+		}
+	}
+
+	@Test
+	public void testVertexTextureAndNormalLines() throws IOException {
+		final HET_OBJParser parser = parse(
+				"v 1 2 3\nv -1.5 2.25\nvt 0.5 0.25\nvt 0.1 0.2 0.3\nvn 0 0 1\nvn 0 -1 0\nf 1 2 1\n");
+		assertEquals(2, parser.getNumberOfVertices());
+		assertArrayEquals(new double[] { 1, 2, 3, -1.5, 2.25, 0 }, parser.getVertices(), 0);
+		assertTrue(parser.hasTexture());
+		assertArrayEquals(new double[] { 0.5, 0.25, 0, 0.1, 0.2, 0.3 }, parser.getUVW(), 0);
+		assertArrayEquals(new double[] { 0, 0, 1, 0, -1, 0 }, parser.getNormals(), 0);
+	}
+
+	@Test
+	public void testScaleAppliesToVerticesOnly() throws IOException {
+		final HET_OBJParser parser = new HET_OBJParser().setScale(2).parse(new ByteArrayInputStream(
+				"v 1 2 3\nvt 0.5 0.5\nvn 0 0 1\n".getBytes(StandardCharsets.ISO_8859_1)));
+		assertArrayEquals(new double[] { 2, 4, 6 }, parser.getVertices(), 0);
+		assertArrayEquals(new double[] { 0.5, 0.5, 0 }, parser.getUVW(), 0);
+		assertArrayEquals(new double[] { 0, 0, 1 }, parser.getNormals(), 0);
+	}
+
+	@Test
+	public void testFaceCornerForms() throws IOException {
+		final String data = "v 0 0 0\nv 1 0 0\nv 0 1 0\nvt 0 0\nvt 1 0\nvt 0 1\nvn 0 0 1\nvn 0 0 1\nvn 0 0 1\n";
+		final HET_OBJParser parser = parse(
+				data + "f 1 2 3\nf 1/3 2/1 3/2\nf 1//1 2//2 3//3\nf 3/2/1 2/1/2 1/3/3\nf 1/2/ 2/3 3\n");
+		assertFaces(new int[][] { { 0, 1, 2 }, { 0, 1, 2 }, { 0, 1, 2 }, { 2, 1, 0 }, { 0, 1, 2 } },
+				parser.getFaces());
+		assertFaces(new int[][] { { 0, 0, 0 }, { 2, 0, 1 }, { 0, 0, 0 }, { 1, 0, 2 }, { 1, 2, 0 } },
+				parser.getFaceUVW());
+		final HET_OBJParser untextured = parse("v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1//1 2//1 3//1\n");
+		assertFalse(untextured.hasTexture());
+		assertEquals(0, untextured.getFaceUVW().length);
+		assertFaces(new int[][] { { 0, 1, 2 } }, untextured.getFaces());
+	}
+
+	@Test
+	public void testNegativeIndices() throws IOException {
+		final HET_OBJParser parser = parse("v 0 0 0\nv 1 0 0\nv 0 1 0\nvt 0 0\nvt 1 0\nf -3/-2 -2/-1 -1/-2\n"
+				+ "v 1 1 0\nvt 1 1\nf -4/-1 -1/-3 2/1\nf 1 -2 -1\n");
+		assertFaces(new int[][] { { 0, 1, 2 }, { 0, 3, 1 }, { 0, 2, 3 } }, parser.getFaces());
+		assertFaces(new int[][] { { 0, 1, 0 }, { 2, 0, 0 }, { 0, 0, 0 } }, parser.getFaceUVW());
+	}
+
+	@Test
+	public void testPolygonFaces() throws IOException {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 8; i++) {
+			sb.append("v ").append(Math.cos(i)).append(' ').append(Math.sin(i)).append(" 0\n");
+		}
+		sb.append("f 1 2 3 4 5\nf 1 2 3 4 5 6 7 8\nf\t8\t7   6 5 \nf -1 -2 -3 -4 -5 -6\n");
+		final HET_OBJParser parser = parse(sb.toString());
+		assertFaces(new int[][] { { 0, 1, 2, 3, 4 }, { 0, 1, 2, 3, 4, 5, 6, 7 }, { 7, 6, 5, 4 },
+				{ 7, 6, 5, 4, 3, 2 } }, parser.getFaces());
+		assertEquals(Math.cos(3), parser.getVertices()[9], 0);
+	}
+
+	@Test
+	public void testComments() throws IOException {
+		final HET_OBJParser parser = parse("# header\n   # indented\nv 1 2 3 # trailing\nv 4 5#6\n"
+				+ "#v 7 8 9\nv 7 8 9#\nf 1 2 3 # 4\nf 3 2 1#4\n# f 1 2 3\ng group # name\no object\nusemtl m\n");
+		assertArrayEquals(new double[] { 1, 2, 3, 4, 5, 0, 7, 8, 9 }, parser.getVertices(), 0);
+		assertFaces(new int[][] { { 0, 1, 2 }, { 2, 1, 0 } }, parser.getFaces());
+	}
+
+	@Test
+	public void testLineContinuations() throws IOException {
+		final HET_OBJParser parser = parse("v 1 \\\n 2 3\nv 4 5\\\n6\nv 7 8 9 \\  \r\n\nv 1 1 1\n"
+				+ "f 1 2 \\\n 3\nf 1/1 \\\r\n\\\n 2/1 3/1 4\n# comment \\\nf 4 3 2\nf 1 2 3 \\");
+		assertArrayEquals(new double[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 1, 1, 1 }, parser.getVertices(), 0);
+		// the continued comment swallows f 4 3 2
+		assertFaces(new int[][] { { 0, 1, 2 }, { 0, 1, 2, 3 }, { 0, 1, 2 } }, parser.getFaces());
+	}
+
+	@Test
+	public void testLineEndings() throws IOException {
+		final HET_OBJParser parser = parse("v 1 2 3\r\nv 4 5 6\r\n\r\nv 7 8 9\r\nf 1 2 3\r\nf 3/1 2/1 1/1\r\nvt 0 0");
+		assertArrayEquals(new double[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 }, parser.getVertices(), 0);
+		assertFaces(new int[][] { { 0, 1, 2 }, { 2, 1, 0 } }, parser.getFaces());
+		assertArrayEquals(new double[] { 0, 0, 0 }, parser.getUVW(), 0);
+	}
+
+	@Test
+	public void testNumbers() throws IOException {
+		final String[] numbers = { "0", "-0.5", "+.25", "1e3", "-2.5E-2", "1E+2", "3.", "0.1", "123456.789012",
+				"1234567890123456789012345", "0.1000000000000000000001", "1e-300", "-1.7976931348623157E308",
+				"4.9e-324", "NaN", "Infinity", "-Infinity", "6.02214076e23" };
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < numbers.length; i += 3) {
+			sb.append("v");
+			for (int j = i; j < i + 3; j++) {
+				sb.append(' ').append(numbers[j]);
+			}
+			sb.append('\n');
+		}
+		final double[] vertices = parse(sb.toString()).getVertices();
+		for (int i = 0; i < numbers.length; i++) {
+			assertEquals(numbers[i], Double.parseDouble(numbers[i]), vertices[i], 0);
+		}
+	}
+
+	@Test
+	public void testMappedAndCompressedFiles() throws IOException {
+		final String text = "# cube corner\nv 0 0 0\nv 1 0 0\nv 0 1 0\nv 0 0 1\nvt 0 0\nvt 1 1\n"
+				+ "f 1/1 3/2 2/1\nf 1 2 \\\n 4\nf -4 -1 -2\n";
+		final byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+		final HET_OBJParser expected = parse(text);
+		for (final String name : new String[] { "small.obj", "small.obj.gz" }) {
+			final HET_OBJParser parser = new HET_OBJParser().parse(write(name, bytes).getPath());
+			assertArrayEquals(name, expected.getVertices(), parser.getVertices(), 0);
+			assertArrayEquals(name, expected.getUVW(), parser.getUVW(), 0);
+			assertFaces(expected.getFaces(), parser.getFaces());
+			assertFaces(expected.getFaceUVW(), parser.getFaceUVW());
+		}
+		assertFaces(new int[][] { { 0, 2, 1 }, { 0, 1, 3 }, { 0, 3, 2 } }, expected.getFaces());
+	}
+
+	/**
+	 * A continued face line across the first chunk boundary, followed by a
+	 * face with relative indices to vertices of the first chunk.
+	 */
+	@Test
+	public void testContinuationAtChunkBoundary() throws IOException {
+		final byte[] head = "v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\nvt 0 0\n".getBytes(StandardCharsets.ISO_8859_1);
+		final byte[] continued = "f 1/1 2 \\\n".getBytes(StandardCharsets.ISO_8859_1);
+		final byte[] tail = " 3 4\nf -1 -2 -3\nv 2 2 2\nf -1 -2 -5\n".getBytes(StandardCharsets.ISO_8859_1);
+		final byte[] bytes = new byte[CHUNK + 4096];
+		Arrays.fill(bytes, (byte) ' ');
+		System.arraycopy(head, 0, bytes, 0, head.length);
+		// a long comment, the newline of the continued line is the last byte
+		// of the first block
+		bytes[head.length] = '#';
+		final int c = CHUNK - continued.length;
+		bytes[c - 1] = '\n';
+		System.arraycopy(continued, 0, bytes, c, continued.length);
+		System.arraycopy(tail, 0, bytes, CHUNK, tail.length);
+		bytes[bytes.length - 1] = '\n';
+		for (final String name : new String[] { "large.obj", "large.obj.gz" }) {
+			final HET_OBJParser parser = new HET_OBJParser().parse(write(name, bytes).getPath());
+			assertEquals(name, 5, parser.getNumberOfVertices());
+			assertFaces(new int[][] { { 0, 1, 2, 3 }, { 3, 2, 1 }, { 4, 3, 0 } }, parser.getFaces());
+			assertFaces(new int[][] { { 0, 0, 0, 0 }, { 0, 0, 0 }, { 0, 0, 0 } }, parser.getFaceUVW());
+		}
+	}
+}
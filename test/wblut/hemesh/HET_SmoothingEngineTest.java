@@ -0,0 +1,289 @@
+/**
+ *
+ */
+package wblut.hemesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import wblut.core.WB_ParallelExecutor;
+import wblut.geom.WB_Coord;
+import wblut.geom.WB_GeometryOp3D;
+import wblut.geom.WB_Plane;
+import wblut.geom.WB_Point;
+import wblut.geom.WB_Vector;
+
+/**
+ * Compares the smoothing modifiers, which run on {@link HET_SmoothingEngine},
+ * with the per-vertex loops they replaced. Tangential smoothing is compared
+ * with the loop using face normals computed from the current positions.
+ */
+public class HET_SmoothingEngineTest {
+	private static final double TOLERANCE = 1e-9;
+
+	private interface Reference {
+		WB_Coord smooth(HE_MeshStructure structure, HE_Vertex v);
+	}
+
+	private static HE_Mesh closedMesh() {
+		return perturb(new HE_Mesh(new HEC_Geodesic().setRadius(100).setB(3).setC(1)));
+	}
+
+	private static HE_Mesh openMesh() {
+		return perturb(new HE_Mesh(new HEC_Grid(8, 6, 160, 120)));
+	}
+
+	private static HE_Mesh perturb(final HE_Mesh mesh) {
+		final Random random = new Random(42);
+		for (final HE_Vertex v : mesh.getVertices()) {
+			v.addSelf(10 * random.nextDouble() - 5, 10 * random.nextDouble() - 5, 10 * random.nextDouble() - 5);
+		}
+		return mesh;
+	}
+
+	private static HE_Selection selection(final HE_Mesh mesh) {
+		final HE_Selection selection = new HE_Selection(mesh);
+		int i = 0;
+		for (final HE_Face f : mesh.getFaces()) {
+			if (i++ % 3 != 0) {
+				selection.add(f);
+			}
+		}
+		selection.collectVertices();
+		return selection;
+	}
+
+	/**
+	 * One iteration of the per-vertex loop: compute all new positions, then
+	 * set them.
+	 */
+	private static void iterate(final HE_MeshStructure structure, final boolean keepBoundary,
+			final Reference reference) {
+		final WB_Coord[] newPositions = new WB_Coord[structure.getNumberOfVertices()];
+		Iterator<HE_Vertex> vItr = structure.vItr();
+		HE_Vertex v;
+		int id = 0;
+		while (vItr.hasNext()) {
+			v = vItr.next();
+			newPositions[id++] = v.isBoundary() && keepBoundary ? new WB_Point(v) : reference.smooth(structure, v);
+		}
+		vItr = structure.vItr();
+		id = 0;
+		while (vItr.hasNext()) {
+			vItr.next().set(newPositions[id++]);
+		}
+	}
+
+	private static List<HE_Vertex> neighbors(final HE_MeshStructure structure, final HE_Vertex v) {
+		final List<HE_Vertex> neighbors = v.getNeighborVertices();
+		if (structure instanceof HE_Selection) {
+			final Iterator<HE_Vertex> nItr = neighbors.iterator();
+			while (nItr.hasNext()) {
+				if (!structure.contains(nItr.next())) {
+					nItr.remove();
+				}
+			}
+		}
+		return neighbors;
+	}
+
+	private static WB_Point umbrella(final HE_MeshStructure structure, final HE_Vertex v, final double lambda) {
+		final List<HE_Vertex> neighbors = neighbors(structure, v);
+		final WB_Point p;
+		if (structure instanceof HE_Selection) {
+			p = new WB_Point();
+			for (int i = 0; i < neighbors.size(); i++) {
+				p.addMulSelf(lambda / neighbors.size(), neighbors.get(i));
+			}
+			p.addMulSelf(1.0 - lambda, v);
+		} else {
+			p = new WB_Point(v).mulSelf(1.0 - lambda);
+			for (int i = 0; i < neighbors.size(); i++) {
+				p.addMulSelf(lambda / neighbors.size(), neighbors.get(i));
+			}
+		}
+		return p;
+	}
+
+	private static Reference umbrella(final double lambda) {
+		return new Reference() {
+			@Override
+			public WB_Coord smooth(final HE_MeshStructure structure, final HE_Vertex v) {
+				return umbrella(structure, v, lambda);
+			}
+		};
+	}
+
+	private static Reference tangential(final double lambda) {
+		return new Reference() {
+			@Override
+			public WB_Coord smooth(final HE_MeshStructure structure, final HE_Vertex v) {
+				// angle-weighted normal from freshly computed face normals
+				final WB_Vector normal = new WB_Vector();
+				HE_Halfedge he = v.getHalfedge();
+				do {
+					if (he.getFace() != null) {
+						normal.addMulSelf(he.getAngle(), HET_MeshOp.getFaceNormal(he.getFace()));
+					}
+					he = he.getNextInVertex();
+				} while (he != v.getHalfedge());
+				normal.normalizeSelf();
+				return WB_GeometryOp3D.projectOnPlane(umbrella(structure, v, lambda), new WB_Plane(v, normal));
+			}
+		};
+	}
+
+	private static Reference meanCurvature(final double lambda) {
+		return new Reference() {
+			@Override
+			public WB_Coord smooth(final HE_MeshStructure structure, final HE_Vertex v) {
+				final WB_Point p = new WB_Point();
+				double factor = 0;
+				HE_Halfedge he = v.getHalfedge();
+				do {
+					final double cotana = he.getPrevInFace().getCotan();
+					final double cotanb = he.getPair().getPrevInFace().getCotan();
+					p.addMulSelf(cotana + cotanb, WB_Vector.sub(he.getEndVertex(), v));
+					factor += cotana + cotanb;
+					he = he.getNextInVertex();
+				} while (he != v.getHalfedge());
+				return p.mulSelf(lambda / factor).addSelf(v);
+			}
+		};
+	}
+
+	private static void assertSamePositions(final HE_Mesh expected, final HE_Mesh actual) {
+		assertEquals(expected.getNumberOfVertices(), actual.getNumberOfVertices());
+		final Iterator<HE_Vertex> eItr = expected.vItr();
+		final Iterator<HE_Vertex> aItr = actual.vItr();
+		HE_Vertex e, a;
+		while (eItr.hasNext()) {
+			e = eItr.next();
+			a = aItr.next();
+			assertEquals(e.xd(), a.xd(), TOLERANCE);
+			assertEquals(e.yd(), a.yd(), TOLERANCE);
+			assertEquals(e.zd(), a.zd(), TOLERANCE);
+		}
+	}
+
+	private static void compare(final HE_Mesh source, final HEM_Modifier modifier, final int iterations,
+			final boolean keepBoundary, final boolean selected, final Reference... references) {
+		final HE_Mesh expected = source.copy();
+		final HE_MeshStructure structure = selected ? selection(expected) : expected;
+		for (int r = 0; r < iterations; r++) {
+			iterate(structure, keepBoundary, references[r % references.length]);
+		}
+		final WB_ParallelExecutor executor = WB_ParallelExecutor.instance();
+		final int parallelism = executor.getParallelism();
+		final int minimumRange = executor.getMinimumRange();
+		try {
+			for (final boolean parallel : new boolean[] { false, true }) {
+				// split into many small ranges, also on a single core
+				executor.setParallel(parallel);
+				executor.setParallelism(Math.max(3, parallelism));
+				executor.setMinimumRange(4);
+				final HE_Mesh actual = source.copy();
+				if (selected) {
+					modifier.apply(selection(actual));
+				} else {
+					actual.modify(modifier);
+				}
+				assertSamePositions(expected, actual);
+			}
+		} finally {
+			executor.setParallel(true);
+			executor.setParallelism(parallelism);
+			executor.setMinimumRange(minimumRange);
+		}
+	}
+
+	@Test
+	public void testSmooth() {
+		for (final HE_Mesh mesh : new HE_Mesh[] { closedMesh(), openMesh() }) {
+			for (final boolean keepBoundary : new boolean[] { false, true }) {
+				for (final boolean selected : new boolean[] { false, true }) {
+					compare(mesh, new HEM_Smooth().setIterations(3).setLambda(0.4).setKeepBoundary(keepBoundary), 3,
+							keepBoundary, selected, umbrella(0.4));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testTaubinSmooth() {
+		for (final HE_Mesh mesh : new HE_Mesh[] { closedMesh(), openMesh() }) {
+			for (final boolean keepBoundary : new boolean[] { false, true }) {
+				for (final boolean selected : new boolean[] { false, true }) {
+					compare(mesh, new HEM_TaubinSmooth().setIterations(4).setLambda(0.5).setMu(-0.53)
+							.setKeepBoundary(keepBoundary), 4, keepBoundary, selected, umbrella(0.5), umbrella(-0.53));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testTangentialSmooth() {
+		for (final HE_Mesh mesh : new HE_Mesh[] { closedMesh(), openMesh() }) {
+			for (final boolean keepBoundary : new boolean[] { false, true }) {
+				for (final boolean selected : new boolean[] { false, true }) {
+					compare(mesh, new HEM_TangentialSmooth().setIterations(3).setLambda(0.5)
+							.setKeepBoundary(keepBoundary), 3, keepBoundary, selected, tangential(0.5));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testTangentialSmoothStaysInTangentPlane() {
+		final HE_Mesh mesh = closedMesh();
+		final HE_Mesh smoothed = mesh.copy();
+		smoothed.modify(new HEM_TangentialSmooth().setIterations(1));
+		final Iterator<HE_Vertex> vItr = mesh.vItr();
+		final Iterator<HE_Vertex> sItr = smoothed.vItr();
+		HE_Vertex v;
+		while (vItr.hasNext()) {
+			v = vItr.next();
+			final WB_Vector d = WB_Vector.sub(sItr.next(), v);
+			assertEquals(0.0, d.dot(v.getVertexAngleNormal()), TOLERANCE);
+		}
+	}
+
+	@Test
+	public void testMeanCurvatureSmooth() {
+		for (final HE_Mesh mesh : new HE_Mesh[] { closedMesh(), openMesh() }) {
+			// the cotangent weights are only defined for interior vertices
+			final boolean keepBoundary = mesh.getBoundaryVertices().size() > 0;
+			compare(mesh, new HEM_MeanCurvatureSmooth().setIterations(3).setLambda(0.2).setKeepBoundary(keepBoundary),
+					3, keepBoundary, false, meanCurvature(0.2));
+			// the selection variant is the umbrella operator
+			compare(mesh, new HEM_MeanCurvatureSmooth().setIterations(2).setLambda(0.2).setKeepBoundary(keepBoundary),
+					2, keepBoundary, true, umbrella(0.2));
+		}
+	}
+
+	@Test
+	public void testBoundaryKept() {
+		final HE_Mesh mesh = openMesh();
+		final HE_Mesh smoothed = mesh.copy();
+		smoothed.modify(new HEM_Smooth().setIterations(5).setKeepBoundary(true));
+		final Iterator<HE_Vertex> vItr = mesh.vItr();
+		final Iterator<HE_Vertex> sItr = smoothed.vItr();
+		HE_Vertex v, s;
+		int boundary = 0;
+		while (vItr.hasNext()) {
+			v = vItr.next();
+			s = sItr.next();
+			if (v.isBoundary()) {
+				boundary++;
+				assertEquals(0.0, v.getDistance3D(s), 0.0);
+			}
+		}
+		assertTrue(boundary > 0);
+	}
+}
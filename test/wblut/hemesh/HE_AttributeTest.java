@@ -0,0 +1,253 @@
+/**
+ *
+ */
+package wblut.hemesh;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import wblut.hemesh.HE_Attribute.HE_DoubleAttribute;
+import wblut.hemesh.HE_Attribute.HE_FloatAttribute;
+import wblut.hemesh.HE_Attribute.HE_IntAttribute;
+import wblut.hemesh.HE_Attribute.HE_Vec3Attribute;
+
+/**
+ * Attribute columns of {@link HE_MeshStructure}: values stay with their
+ * elements when other elements are removed, removed and re-added elements
+ * start from the default, halfedge values follow pairing changes, and
+ * copies carry independent values.
+ */
+public class HE_AttributeTest {
+
+	private static HE_Mesh mesh() {
+		return new HE_Mesh(new HEC_Geodesic().setRadius(100).setB(2).setC(1));
+	}
+
+	/**
+	 * The i-th value of the column belongs to the i-th element of the set.
+	 */
+	private static <E extends HE_Element> void assertAligned(final HE_IntAttribute<E> attribute,
+			final List<E> elements) {
+		assertEquals(elements.size(), attribute.size());
+		final int[] values = attribute.toArray();
+		assertEquals(elements.size(), values.length);
+		for (int i = 0; i < elements.size(); i++) {
+			assertEquals(i, attribute.indexOf(elements.get(i)));
+			assertEquals(attribute.get(elements.get(i)), values[i]);
+			assertEquals(values[i], attribute.get(i));
+		}
+	}
+
+	@Test
+	public void testValuesSurviveRemoval() {
+		final HE_Mesh mesh = mesh();
+		final HE_IntAttribute<HE_Vertex> id = mesh.addVertexAttribute(new HE_IntAttribute<HE_Vertex>("id", -1));
+		final HE_FloatAttribute<HE_Vertex> f = mesh.addVertexAttribute(new HE_FloatAttribute<HE_Vertex>("f"));
+		final HE_DoubleAttribute<HE_Vertex> d = mesh.addVertexAttribute(new HE_DoubleAttribute<HE_Vertex>("d"));
+		final HE_Vec3Attribute<HE_Vertex> p = mesh.addVertexAttribute(new HE_Vec3Attribute<HE_Vertex>("p"));
+		final HE_IntAttribute<HE_Face> fid = mesh.addFaceAttribute(new HE_IntAttribute<HE_Face>("id", -1));
+		final Map<HE_Vertex, Integer> expected = new HashMap<HE_Vertex, Integer>();
+		int i = 0;
+		for (final HE_Vertex v : mesh.getVertices()) {
+			id.set(v, i);
+			f.set(v, i + 0.5f);
+			d.set(v, -i);
+			p.set(v, v);
+			expected.put(v, i++);
+		}
+		final Map<HE_Face, Integer> expectedFaces = new HashMap<HE_Face, Integer>();
+		i = 0;
+		for (final HE_Face face : mesh.getFaces()) {
+			fid.set(face, i);
+			expectedFaces.put(face, i++);
+		}
+		final List<HE_Vertex> vertices = new ArrayList<HE_Vertex>(mesh.getVertices());
+		final List<HE_Face> faces = new ArrayList<HE_Face>(mesh.getFaces());
+		Collections.shuffle(vertices, new Random(3));
+		Collections.shuffle(faces, new Random(4));
+		// removal moves the last value into the hole, from the front, the
+		// middle and the back of the columns
+		for (int k = 0; k < vertices.size() / 2; k++) {
+			mesh.remove(vertices.get(k));
+			expected.remove(vertices.get(k));
+		}
+		mesh.remove(mesh.getVertices().get(0));
+		mesh.remove(mesh.getVertices().get(mesh.getNumberOfVertices() - 1));
+		for (int k = 0; k < faces.size() / 3; k++) {
+			mesh.remove(faces.get(k));
+			expectedFaces.remove(faces.get(k));
+		}
+		for (final HE_Vertex v : mesh.getVertices()) {
+			final int value = expected.get(v);
+			assertEquals(value, id.get(v));
+			assertEquals(value + 0.5f, f.get(v), 0f);
+			assertEquals(-value, d.get(v), 0.0);
+			assertEquals(v.xd(), p.get(v).xd(), 0.0);
+			assertEquals(v.zd(), p.get(v, 2), 0.0);
+		}
+		assertEquals(expected.size() - 2, mesh.getNumberOfVertices());
+		for (final HE_Face face : mesh.getFaces()) {
+			assertEquals((int) expectedFaces.get(face), fid.get(face));
+		}
+		assertAligned(id, mesh.getVertices());
+		assertAligned(fid, mesh.getFaces());
+		assertEquals(mesh.getNumberOfVertices(), d.toArray().length);
+		assertEquals(3 * mesh.getNumberOfVertices(), p.toArray().length);
+	}
+
+	/**
+	 * Removed elements lose their values: adding them again, or a new
+	 * attribute under a name that was used before, starts from the default.
+	 */
+	@Test
+	public void testKeyReuseStartsFromDefault() {
+		final HE_Mesh mesh = mesh();
+		final HE_IntAttribute<HE_Vertex> id = mesh.addVertexAttribute(new HE_IntAttribute<HE_Vertex>("id", -1));
+		final HE_Vec3Attribute<HE_Vertex> p = mesh
+				.addVertexAttribute(new HE_Vec3Attribute<HE_Vertex>("p", 1, 2, 3));
+		id.fill(5);
+		p.fill(4, 5, 6);
+		final HE_Vertex v = mesh.getVertices().get(3);
+		final long key = v.getKey();
+		mesh.remove(v);
+		assertFalse(mesh.contains(v));
+		mesh.add(v);
+		assertSame(v, mesh.getVertexWithKey(key));
+		assertEquals(-1, id.get(v));
+		assertEquals(2, p.get(v).yd(), 0.0);
+		id.set(v, 7);
+		assertEquals(7, id.get(v));
+		for (final HE_Vertex u : mesh.getVertices()) {
+			if (u != v) {
+				assertEquals(5, id.get(u));
+				assertEquals(5, p.get(u).yd(), 0.0);
+			}
+		}
+		try {
+			mesh.addVertexAttribute(new HE_IntAttribute<HE_Vertex>("id", 0));
+			fail("Duplicate attribute name.");
+		} catch (final IllegalArgumentException e) {
+			assertSame(id, mesh.getVertexAttribute("id"));
+		}
+		assertSame(id, mesh.removeVertexAttribute("id"));
+		assertFalse(id.isBound());
+		assertEquals(null, mesh.getVertexAttribute("id"));
+		final HE_IntAttribute<HE_Vertex> reused = mesh
+				.addVertexAttribute(new HE_IntAttribute<HE_Vertex>("id", 9));
+		assertTrue(reused.isBound());
+		for (final HE_Vertex u : mesh.getVertices()) {
+			assertEquals(9, reused.get(u));
+		}
+		assertAligned(reused, mesh.getVertices());
+	}
+
+	/**
+	 * Halfedge values follow their halfedges when pairing moves them between
+	 * the edge, halfedge and unpaired sets, inside and outside a transaction.
+	 */
+	@Test
+	public void testHalfedgeValuesFollowPairing() {
+		final HE_Mesh mesh = mesh();
+		final HE_IntAttribute<HE_Halfedge> id = mesh
+				.addHalfedgeAttribute(new HE_IntAttribute<HE_Halfedge>("id", -1));
+		final Map<HE_Halfedge, Integer> expected = new HashMap<HE_Halfedge, Integer>();
+		int i = 0;
+		for (final HE_Halfedge he : mesh.getHalfedges()) {
+			id.set(he, i);
+			expected.put(he, i++);
+		}
+		final HE_Halfedge[] edges = mesh.getEdgesAsArray();
+		final List<HE_Halfedge[]> pairs = new ArrayList<HE_Halfedge[]>();
+		for (int k = 0; k < 20; k++) {
+			pairs.add(new HE_Halfedge[] { edges[3 * k], edges[3 * k].getPair() });
+			mesh.clearPair(edges[3 * k]);
+		}
+		mesh.beginTransaction();
+		for (int k = 20; k < 40; k++) {
+			pairs.add(new HE_Halfedge[] { edges[3 * k], edges[3 * k].getPair() });
+			mesh.clearPair(edges[3 * k]);
+		}
+		// pair some again before the commit
+		for (int k = 0; k < 30; k += 2) {
+			mesh.setPair(pairs.get(k)[0], pairs.get(k)[1]);
+		}
+		mesh.commitTransaction();
+		assertEquals(50, mesh.getUnpairedHalfedges().size());
+		for (final HE_Halfedge he : mesh.getHalfedges()) {
+			assertEquals((int) expected.get(he), id.get(he));
+		}
+		mesh.pairHalfedges();
+		assertTrue(mesh.getUnpairedHalfedges().isEmpty());
+		for (final HE_Halfedge he : mesh.getHalfedges()) {
+			assertEquals((int) expected.get(he), id.get(he));
+		}
+		assertEquals(mesh.getNumberOfHalfedges(), id.size());
+	}
+
+	/**
+	 * The copy has its own columns with the values of the corresponding
+	 * elements; changing either mesh leaves the other untouched.
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testCopy() {
+		final HE_Mesh mesh = mesh();
+		final HE_IntAttribute<HE_Vertex> id = mesh.addVertexAttribute(new HE_IntAttribute<HE_Vertex>("id", -1));
+		final HE_DoubleAttribute<HE_Face> area = mesh.addFaceAttribute(new HE_DoubleAttribute<HE_Face>("area"));
+		final HE_Vec3Attribute<HE_Halfedge> start = mesh
+				.addHalfedgeAttribute(new HE_Vec3Attribute<HE_Halfedge>("start"));
+		int i = 0;
+		for (final HE_Vertex v : mesh.getVertices()) {
+			id.set(v, 2 * i++);
+		}
+		for (final HE_Face f : mesh.getFaces()) {
+			area.set(f, f.getFaceArea());
+		}
+		for (final HE_Halfedge he : mesh.getHalfedges()) {
+			start.set(he, he.getVertex());
+		}
+		// a few holes, so the copy has unpaired halfedges
+		mesh.remove(mesh.getFaces().get(5));
+		mesh.remove(mesh.getFaces().get(0));
+		final HE_Mesh copy = mesh.copy();
+		final HE_IntAttribute<HE_Vertex> cid = (HE_IntAttribute<HE_Vertex>) copy.getVertexAttribute("id");
+		final HE_DoubleAttribute<HE_Face> carea = (HE_DoubleAttribute<HE_Face>) copy.getFaceAttribute("area");
+		final HE_Vec3Attribute<HE_Halfedge> cstart = (HE_Vec3Attribute<HE_Halfedge>) copy
+				.getHalfedgeAttribute("start");
+		assertNotSame(id, cid);
+		assertEquals(-1, cid.getDefault());
+		assertArrayEquals(id.toArray(), cid.toArray());
+		assertArrayEquals(area.toArray(), carea.toArray(), 0.0);
+		for (final HE_Halfedge he : copy.getHalfedges()) {
+			assertEquals(he.getVertex().xd(), cstart.get(he).xd(), 0.0);
+			assertEquals(he.getVertex().yd(), cstart.get(he).yd(), 0.0);
+			assertEquals(he.getVertex().zd(), cstart.get(he).zd(), 0.0);
+		}
+		assertEquals(copy.getNumberOfHalfedges(), cstart.size());
+		final int[] before = id.toArray();
+		cid.fill(0);
+		copy.remove(copy.getVertices().get(0));
+		assertArrayEquals(before, id.toArray());
+		id.set(mesh.getVertices().get(1), -5);
+		assertEquals(0, cid.get(copy.getVertices().get(1)));
+		// and back through the compact mesh
+		final HE_Mesh restored = new HE_Mesh(new HE_CompactMesh(mesh));
+		assertArrayEquals(id.toArray(), ((HE_IntAttribute<HE_Vertex>) restored.getVertexAttribute("id")).toArray());
+		assertArrayEquals(area.toArray(),
+				((HE_DoubleAttribute<HE_Face>) restored.getFaceAttribute("area")).toArray(), 0.0);
+	}
+}
@@ -0,0 +1,162 @@
+/**
+ *
+ */
+package wblut.hemesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import wblut.geom.WB_Plane;
+
+/**
+ * {@link HE_BitSelection} and {@link HE_Selection} select the same faces
+ * after grow, shrink and surround, and both match the definitions of these
+ * operations computed from a snapshot of the selection.
+ */
+public class HE_BitSelectionTest {
+
+	/**
+	 * Geodesic with a slice cut off, so faces along the cut have no neighbor
+	 * across some edges.
+	 */
+	private static HE_Mesh mesh() {
+		final HE_Mesh mesh = new HE_Mesh(new HEC_Geodesic().setRadius(100).setB(4).setC(2));
+		mesh.modify(new HEM_Slice().setPlane(new WB_Plane(0, 0, 20, 0.1, 0.2, 1)).setCap(false));
+		return mesh;
+	}
+
+	/**
+	 * A few random patches and scattered single faces.
+	 */
+	private static HE_Selection randomSelection(final HE_Mesh mesh, final Random rnd) {
+		final HE_Selection selection = new HE_Selection(mesh);
+		final List<HE_Face> faces = mesh.getFaces();
+		for (int i = 0; i < 4; i++) {
+			final HE_Selection patch = new HE_Selection(mesh);
+			patch.add(faces.get(rnd.nextInt(faces.size())));
+			patch.grow(rnd.nextInt(4));
+			selection.addFaces(patch.getFaces());
+		}
+		for (int i = 0; i < 30; i++) {
+			selection.add(faces.get(rnd.nextInt(faces.size())));
+		}
+		return selection;
+	}
+
+	private static boolean[] selected(final HE_Mesh mesh, final List<HE_Face> faces) {
+		final boolean[] result = new boolean[mesh.getNumberOfFaces()];
+		for (final HE_Face f : faces) {
+			result[mesh.getIndex(f)] = true;
+		}
+		return result;
+	}
+
+	/**
+	 * Expected result of one step, from the selection before the step only.
+	 * op is 0 for grow, 1 for shrink and 2 for surround.
+	 */
+	private static boolean[] step(final HE_Mesh mesh, final boolean[] before, final int op) {
+		final boolean[] after = new boolean[before.length];
+		for (final HE_Face f : mesh.getFaces()) {
+			final int i = mesh.getIndex(f);
+			boolean touchesSelected = false, touchesOutside = false;
+			for (final HE_Halfedge he : f.getFaceHalfedges()) {
+				final HE_Face g = he.getPair() == null ? null : he.getPair().getFace();
+				if (g == null || !before[mesh.getIndex(g)]) {
+					touchesOutside = true;
+				} else {
+					touchesSelected = true;
+				}
+			}
+			if (op == 0) {
+				after[i] = before[i] || touchesSelected;
+			} else if (op == 1) {
+				after[i] = before[i] && !touchesOutside;
+			} else {
+				after[i] = !before[i] && touchesSelected;
+			}
+		}
+		return after;
+	}
+
+	private static void assertSelected(final String message, final boolean[] expected, final HE_Mesh mesh,
+			final List<HE_Face> faces) {
+		final boolean[] actual = selected(mesh, faces);
+		int count = 0;
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(message + ", face " + i, expected[i], actual[i]);
+			if (expected[i]) {
+				count++;
+			}
+		}
+		assertEquals(message, count, faces.size());
+	}
+
+	@Test
+	public void testMatchesSelection() {
+		final HE_Mesh mesh = mesh();
+		final String[] names = { "grow", "shrink", "surround" };
+		final Random rnd = new Random(5);
+		for (int run = 0; run < 20; run++) {
+			final HE_Selection selection = randomSelection(mesh, rnd);
+			final HE_BitSelection bits = new HE_BitSelection(selection);
+			boolean[] expected = selected(mesh, selection.getFaces());
+			assertSelected("Start", expected, mesh, bits.getFaces());
+			String history = "Run " + run;
+			for (int s = 0; s < 12; s++) {
+				final int op = rnd.nextInt(3);
+				final int n = 1 + rnd.nextInt(3);
+				history += ", " + names[op] + "(" + n + ")";
+				if (op == 0) {
+					selection.grow(n);
+					bits.grow(n);
+				} else if (op == 1) {
+					selection.shrink(n);
+					bits.shrink(n);
+				} else {
+					selection.surround(n);
+					bits.surround(n);
+				}
+				// surround(n) is grow(n - 1) followed by surround()
+				for (int i = 0; i < n; i++) {
+					expected = step(mesh, expected, op == 2 && i < n - 1 ? 0 : op);
+				}
+				assertSelected(history + ", HE_Selection", expected, mesh, selection.getFaces());
+				assertSelected(history + ", HE_BitSelection", expected, mesh, bits.getFaces());
+				assertSelected(history + ", outer edges", selected(mesh, selection.getFaces()), mesh,
+						bits.toSelection().getFaces());
+				if (selection.getNumberOfFaces() == 0) {
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Outer edges of both kinds of selection are the same edges.
+	 */
+	@Test
+	public void testOuterEdges() {
+		final HE_Mesh mesh = mesh();
+		final Random rnd = new Random(9);
+		for (int run = 0; run < 10; run++) {
+			final HE_Selection selection = randomSelection(mesh, rnd);
+			final HE_BitSelection bits = new HE_BitSelection(selection);
+			bits.grow();
+			selection.grow();
+			final List<HE_Halfedge> expected = new ArrayList<HE_Halfedge>(selection.getOuterEdges());
+			final List<HE_Halfedge> actual = new ArrayList<HE_Halfedge>(bits.getOuterEdges());
+			assertTrue(expected.size() > 0);
+			assertEquals(expected.size(), actual.size());
+			for (final HE_Halfedge he : actual) {
+				assertTrue(expected.contains(he) || expected.contains(he.getPair()));
+			}
+		}
+	}
+}
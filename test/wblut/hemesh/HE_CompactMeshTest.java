@@ -0,0 +1,316 @@
+/**
+ *
+ */
+package wblut.hemesh;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import gnu.trove.set.hash.TLongHashSet;
+import wblut.geom.WB_Point;
+import wblut.hemesh.HE_Attribute.HE_DoubleAttribute;
+import wblut.hemesh.HE_Attribute.HE_IntAttribute;
+import wblut.hemesh.HE_Attribute.HE_Vec3Attribute;
+
+/**
+ * Tests for {@link wblut.hemesh.HE_CompactMesh}: the round trip from and back
+ * to HE_Mesh and the copy-on-write copy.
+ */
+public class HE_CompactMeshTest {
+
+	private static HE_CompactMesh mesh() {
+		return new HE_CompactMesh(new HE_Mesh(new HEC_Geodesic().setRadius(100).setB(4).setC(0)));
+	}
+
+	/**
+	 * Grid with labels and attributes on all elements and two unpaired
+	 * halfedges next to the faceless boundary halfedges.
+	 */
+	private static HE_Mesh openMesh() {
+		final HE_Mesh mesh = new HE_Mesh(new HEC_Grid(6, 4, 60, 40));
+		HE_Halfedge boundary = null;
+		for (final HE_Halfedge he : mesh.getHalfedges()) {
+			if (he.getFace() == null) {
+				boundary = he;
+				break;
+			}
+		}
+		mesh.clearPair(boundary);
+		decorate(mesh);
+		return mesh;
+	}
+
+	private static HE_Mesh closedMesh() {
+		final HE_Mesh mesh = new HE_Mesh(new HEC_Geodesic().setRadius(100).setB(3).setC(1));
+		decorate(mesh);
+		return mesh;
+	}
+
+	private static void decorate(final HE_Mesh mesh) {
+		final HE_IntAttribute<HE_Vertex> vi = mesh.addVertexAttribute(new HE_IntAttribute<HE_Vertex>("vi", -5));
+		final HE_DoubleAttribute<HE_Face> fd = mesh.addFaceAttribute(new HE_DoubleAttribute<HE_Face>("fd"));
+		final HE_Vec3Attribute<HE_Halfedge> hv = mesh
+				.addHalfedgeAttribute(new HE_Vec3Attribute<HE_Halfedge>("hv", 1, 2, 3));
+		int i = 0;
+		for (final HE_Vertex v : mesh.getVertices()) {
+			v.setLabel(i % 7);
+			vi.set(v, 3 * i++);
+		}
+		for (final HE_Face f : mesh.getFaces()) {
+			f.setLabel(i % 5);
+			fd.set(f, 0.5 * i++);
+		}
+		for (final HE_Halfedge he : mesh.getHalfedges()) {
+			he.setLabel(i % 3);
+			hv.set(he, i, -i, 0.25 * i);
+			i++;
+		}
+	}
+
+	private static long key(final HE_Element e) {
+		return e == null ? -1 : e.getKey();
+	}
+
+	/**
+	 * Same elements in the same order, with the same keys, connectivity,
+	 * positions, labels and attribute values.
+	 */
+	@SuppressWarnings("unchecked")
+	private static void assertSameMesh(final HE_Mesh expected, final HE_Mesh actual) {
+		assertEquals(expected.getNumberOfVertices(), actual.getNumberOfVertices());
+		assertEquals(expected.getNumberOfFaces(), actual.getNumberOfFaces());
+		assertEquals(expected.getNumberOfHalfedges(), actual.getNumberOfHalfedges());
+		assertEquals(expected.getNumberOfEdges(), actual.getNumberOfEdges());
+		assertEquals(expected.getUnpairedHalfedges().size(), actual.getUnpairedHalfedges().size());
+		final HE_IntAttribute<HE_Vertex> evi = (HE_IntAttribute<HE_Vertex>) expected.getVertexAttribute("vi");
+		final HE_IntAttribute<HE_Vertex> avi = (HE_IntAttribute<HE_Vertex>) actual.getVertexAttribute("vi");
+		final Iterator<HE_Vertex> ev = expected.vItr(), av = actual.vItr();
+		while (ev.hasNext()) {
+			final HE_Vertex e = ev.next(), a = av.next();
+			assertEquals("Vertex order or key differs.", e.getKey(), a.getKey());
+			assertEquals(key(e.getHalfedge()), key(a.getHalfedge()));
+			assertEquals(e.xd(), a.xd(), 0.0);
+			assertEquals(e.yd(), a.yd(), 0.0);
+			assertEquals(e.zd(), a.zd(), 0.0);
+			assertEquals(e.getLabel(), a.getLabel());
+			assertEquals(evi.get(e), avi.get(a));
+		}
+		final HE_DoubleAttribute<HE_Face> efd = (HE_DoubleAttribute<HE_Face>) expected.getFaceAttribute("fd");
+		final HE_DoubleAttribute<HE_Face> afd = (HE_DoubleAttribute<HE_Face>) actual.getFaceAttribute("fd");
+		final Iterator<HE_Face> ef = expected.fItr(), af = actual.fItr();
+		while (ef.hasNext()) {
+			final HE_Face e = ef.next(), a = af.next();
+			assertEquals("Face order or key differs.", e.getKey(), a.getKey());
+			assertEquals(key(e.getHalfedge()), key(a.getHalfedge()));
+			assertEquals(e.getLabel(), a.getLabel());
+			assertEquals(efd.get(e), afd.get(a), 0.0);
+		}
+		final HE_Vec3Attribute<HE_Halfedge> ehv = (HE_Vec3Attribute<HE_Halfedge>) expected
+				.getHalfedgeAttribute("hv");
+		final HE_Vec3Attribute<HE_Halfedge> ahv = (HE_Vec3Attribute<HE_Halfedge>) actual.getHalfedgeAttribute("hv");
+		final Iterator<HE_Halfedge> eh = expected.heItr(), ah = actual.heItr();
+		while (eh.hasNext()) {
+			final HE_Halfedge e = eh.next(), a = ah.next();
+			assertEquals("Halfedge order or key differs.", e.getKey(), a.getKey());
+			assertEquals(key(e.getNextInFace()), key(a.getNextInFace()));
+			assertEquals(key(e.getPrevInFace()), key(a.getPrevInFace()));
+			assertEquals(key(e.getPair()), key(a.getPair()));
+			assertEquals(key(e.getVertex()), key(a.getVertex()));
+			assertEquals(key(e.getFace()), key(a.getFace()));
+			assertEquals(e.isEdge(), a.isEdge());
+			assertEquals(e.getLabel(), a.getLabel());
+			assertEquals(0.0, ehv.get(e).getDistance(ahv.get(a)), 0.0);
+		}
+		assertFalse(av.hasNext() || af.hasNext() || ah.hasNext());
+	}
+
+	@Test
+	public void testRoundTripClosedMesh() {
+		final HE_Mesh mesh = closedMesh();
+		final HE_CompactMesh compact = mesh.toCompactMesh();
+		assertEquals(mesh.getNumberOfVertices(), compact.getNumberOfVertices());
+		assertEquals(mesh.getNumberOfHalfedges(), compact.getNumberOfHalfedges());
+		assertEquals(mesh.getNumberOfFaces(), compact.getNumberOfFaces());
+		assertEquals(mesh.getNumberOfEdges(), compact.getNumberOfEdges());
+		assertSameMesh(mesh, compact.toMesh());
+		assertSameMesh(mesh, new HE_Mesh(compact));
+	}
+
+	@Test
+	public void testRoundTripOpenMesh() {
+		final HE_Mesh mesh = openMesh();
+		assertEquals(2, mesh.getUnpairedHalfedges().size());
+		final HE_CompactMesh compact = new HE_CompactMesh(mesh);
+		int boundary = 0;
+		for (int he = 0; he < compact.getNumberOfHalfedges(); he++) {
+			if (compact.getFace(he) < 0) {
+				boundary++;
+			}
+		}
+		int expected = 0;
+		for (final HE_Halfedge he : mesh.getHalfedges()) {
+			if (he.getFace() == null) {
+				expected++;
+			}
+		}
+		assertEquals(expected, boundary);
+		final HE_Mesh result = compact.toMesh();
+		assertSameMesh(mesh, result);
+		// and once more through the recreated mesh
+		assertSameMesh(mesh, result.toCompactMesh().toMesh());
+	}
+
+	@Test
+	public void testAddedElementsGetNewKeysAndDefaults() {
+		final HE_Mesh mesh = closedMesh();
+		final HE_CompactMesh compact = mesh.toCompactMesh();
+		final int v = compact.addVertex(1, 2, 3);
+		final HE_Mesh result = compact.toMesh();
+		final TLongHashSet keys = new TLongHashSet();
+		for (final HE_Vertex vertex : mesh.getVertices()) {
+			keys.add(vertex.getKey());
+		}
+		final HE_Vertex added = result.getVertexWithIndex(v);
+		assertFalse(keys.contains(added.getKey()));
+		assertNull(added.getHalfedge());
+		assertEquals(-5, ((HE_IntAttribute<HE_Vertex>) result.getVertexAttribute("vi")).get(added));
+		assertEquals(mesh.getNumberOfVertices() + 1, result.getNumberOfVertices());
+		compact.clear();
+		assertTrue(compact.toMesh().getVertexAttributes().isEmpty());
+	}
+
+	private static void assertFaces(final int[][] expected, final HE_CompactMesh mesh) {
+		final int[][] faces = mesh.getFacesAsInt();
+		assertEquals(expected.length, faces.length);
+		for (int f = 0; f < faces.length; f++) {
+			assertArrayEquals(expected[f], faces[f]);
+		}
+	}
+
+	@Test
+	public void testCopySharesStorage() {
+		final HE_CompactMesh source = mesh();
+		final HE_CompactMesh copy = source.copy();
+		assertEquals(source.getNumberOfVertices(), copy.getNumberOfVertices());
+		assertEquals(source.getNumberOfHalfedges(), copy.getNumberOfHalfedges());
+		assertEquals(source.getNumberOfFaces(), copy.getNumberOfFaces());
+		assertTrue(source.vertexCoords == copy.vertexCoords);
+		assertTrue(source.halfedgeNext == copy.halfedgeNext);
+		assertTrue(source.faceLabels == copy.faceLabels);
+	}
+
+	@Test
+	public void testMovingVerticesKeepsConnectivityShared() {
+		final HE_CompactMesh source = mesh();
+		final double[] coords = source.getVertexCoords().clone();
+		final HE_CompactMesh copy = source.copy();
+		for (int v = 0; v < copy.getNumberOfVertices(); v++) {
+			copy.setVertex(v, 2 * copy.xd(v), copy.yd(v), copy.zd(v) + 1);
+		}
+		copy.getVertexHandle(0).setX(-1);
+		assertArrayEquals(coords, source.getVertexCoords(), 0.0);
+		assertEquals(-1, copy.xd(0), 0.0);
+		assertEquals(2 * source.xd(1), copy.xd(1), 0.0);
+		assertTrue(source.vertexCoords != copy.vertexCoords);
+		assertTrue(source.halfedgeNext == copy.halfedgeNext);
+		assertTrue(source.vertexHalfedge == copy.vertexHalfedge);
+		assertTrue(source.halfedgeLabels == copy.halfedgeLabels);
+	}
+
+	@Test
+	public void testTopologyChangeOnEitherSide() {
+		final HE_CompactMesh source = mesh();
+		final HE_CompactMesh copy = source.copy();
+		final int[][] faces = source.getFacesAsInt();
+		final int f = source.getFaceHalfedge(0);
+		final int next = source.getNextInFace(f);
+		// write into the source, the copy keeps the original connectivity
+		source.setNext(f, source.getNextInFace(next));
+		source.setFaceLabel(0, 7);
+		assertEquals(next, copy.getNextInFace(f));
+		assertEquals(-1, copy.getFaceLabel(0));
+		assertTrue(source.vertexCoords == copy.vertexCoords);
+		source.setNext(f, next);
+		assertFaces(faces, source);
+		assertFaces(faces, copy);
+		// adding elements to the copy leaves the source untouched
+		final int nv = source.getNumberOfVertices();
+		final int v = copy.addVertex(1, 2, 3);
+		copy.addFace();
+		copy.addHalfedge();
+		assertEquals(nv, v);
+		assertEquals(nv, source.getNumberOfVertices());
+		assertEquals(nv + 1, copy.getNumberOfVertices());
+		assertEquals(source.getNumberOfFaces() + 1, copy.getNumberOfFaces());
+		assertEquals(source.getNumberOfHalfedges() + 1, copy.getNumberOfHalfedges());
+	}
+
+	@Test
+	public void testCopyOfCopy() {
+		final HE_CompactMesh source = mesh();
+		final HE_CompactMesh copy = source.copy();
+		final HE_CompactMesh copy2 = copy.copy();
+		copy.setVertex(0, 1, 2, 3);
+		assertEquals(source.xd(0), copy2.xd(0), 0.0);
+		copy2.setVertex(1, 4, 5, 6);
+		assertEquals(source.xd(1), copy.xd(1), 0.0);
+		assertEquals(4, copy2.xd(1), 0.0);
+		final HE_Mesh mesh = copy2.toMesh();
+		assertEquals(source.getNumberOfFaces(), mesh.getNumberOfFaces());
+		assertEquals(source.getNumberOfHalfedges(), mesh.getNumberOfHalfedges());
+	}
+
+	private static void assertSameCoords(final HE_Mesh expected, final HE_CompactMesh actual) {
+		assertEquals(expected.getNumberOfVertices(), actual.getNumberOfVertices());
+		final Iterator<HE_Vertex> vItr = expected.vItr();
+		for (int i = 0; i < actual.getNumberOfVertices(); i++) {
+			final HE_Vertex v = vItr.next();
+			assertEquals(v.xd(), actual.xd(i), 0.0);
+			assertEquals(v.yd(), actual.yd(i), 0.0);
+			assertEquals(v.zd(), actual.zd(i), 0.0);
+		}
+	}
+
+	/**
+	 * HEM_Noise and HEM_Twist on a copy move the vertices exactly as on a
+	 * HE_Mesh, clone only the coordinates and leave the source untouched.
+	 */
+	@Test
+	public void testVertexModifiersOnCopy() {
+		final HE_Mesh mesh = new HE_Mesh(new HEC_Geodesic().setRadius(100).setB(4).setC(0));
+		final HE_CompactMesh source = new HE_CompactMesh(mesh);
+		final double[] coords = source.vertexCoords.clone();
+		final HEM_Modifier[] modifiers = { new HEM_Noise().setDistance(5).setSeed(3),
+				new HEM_Twist().setTwistAxisFromPoints(new WB_Point(0, 0, -100), new WB_Point(10, 0, 100))
+						.setAngleFactor(0.5) };
+		for (final HEM_Modifier modifier : modifiers) {
+			final HE_CompactMesh copy = source.copy();
+			assertTrue(copy == copy.modify(modifier));
+			assertTrue(copy.vertexCoords != source.vertexCoords);
+			assertTrue(copy.halfedgeNext == source.halfedgeNext);
+			assertTrue(copy.halfedgePair == source.halfedgePair);
+			assertTrue(copy.faceHalfedge == source.faceHalfedge);
+			assertTrue(copy.vertexLabels == source.vertexLabels);
+			final HE_Mesh expected = mesh.copy();
+			expected.modify(modifier);
+			assertSameCoords(expected, copy);
+			assertArrayEquals(coords, source.vertexCoords, 0.0);
+			assertFaces(source.getFacesAsInt(), copy);
+		}
+		final HE_CompactMesh copy = source.copy();
+		try {
+			copy.modify(new HEM_Extrude());
+			fail("Topology changing modifier applied to a compact mesh.");
+		} catch (final UnsupportedOperationException e) {
+			assertTrue(copy.vertexCoords == source.vertexCoords);
+		}
+	}
+}
@@ -0,0 +1,174 @@
+/**
+ *
+ */
+package wblut.hemesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import wblut.geom.WB_Coord;
+import wblut.geom.WB_Point;
+
+/**
+ * Cached derived geometry of faces and vertices: values are reused while
+ * nothing they depend on changes, and recomputed when a vertex of the face or
+ * of the one-ring moves or the connectivity changes.
+ */
+public class HE_DerivedGeometryTest {
+
+	private static HE_Mesh mesh() {
+		return new HE_Mesh(new HEC_Geodesic().setRadius(100).setB(2).setC(1));
+	}
+
+	private static void assertSameCoord(final WB_Coord expected, final WB_Coord actual) {
+		assertEquals(expected.xd(), actual.xd(), 1e-12);
+		assertEquals(expected.yd(), actual.yd(), 1e-12);
+		assertEquals(expected.zd(), actual.zd(), 1e-12);
+	}
+
+	/**
+	 * Cached values equal freshly computed ones.
+	 */
+	private static void assertUpToDate(final HE_Face f) {
+		assertSameCoord(HET_MeshOp.getFaceNormal(f), f.getFaceNormal());
+		assertEquals(HET_MeshOp.getFaceArea(f), f.getFaceArea(), 1e-9);
+	}
+
+	private static void assertUpToDate(final HE_Vertex v) {
+		assertSameCoord(HET_MeshOp.getVertexNormal(v), v.getVertexNormal());
+	}
+
+	/**
+	 * A vertex of the face, not the first halfedge's one.
+	 */
+	private static HE_Vertex secondVertex(final HE_Face f) {
+		return f.getHalfedge().getNextInFace().getVertex();
+	}
+
+	@Test
+	public void testFaceCacheFollowsVertices() {
+		final HE_Mesh mesh = mesh();
+		final HE_Face f = mesh.getFaces().get(7);
+		final WB_Coord normal = f.getFaceNormal();
+		final WB_Coord center = f.getFaceCenter();
+		assertSame(normal, f.getFaceNormal());
+		assertSame(center, f.getFaceCenter());
+		final HE_Vertex v = secondVertex(f);
+		v.set(v.xd() * 1.2, v.yd() * 1.1, v.zd() - 5);
+		assertNotSame(normal, f.getFaceNormal());
+		assertUpToDate(f);
+		final WB_Point c = new WB_Point();
+		for (final HE_Vertex u : f.getFaceVertices()) {
+			c.addSelf(u);
+		}
+		assertSameCoord(c.divSelf(f.getFaceOrder()), f.getFaceCenter());
+		// each single coordinate setter invalidates
+		final WB_Coord before = f.getFaceNormal();
+		v.setZ(v.zd() + 3);
+		assertNotSame(before, f.getFaceNormal());
+		assertUpToDate(f);
+		// moving a vertex that isn't part of the face keeps the values
+		final WB_Coord kept = f.getFaceNormal();
+		for (final HE_Vertex u : mesh.getVertices()) {
+			if (!f.getFaceVertices().contains(u)) {
+				u.addSelf(1, 2, 3);
+				break;
+			}
+		}
+		assertSame(kept, f.getFaceNormal());
+		// as does a change in another mesh
+		final HE_Mesh other = mesh();
+		other.getVertices().get(0).set(1, 2, 3);
+		assertSame(kept, f.getFaceNormal());
+		f.update();
+		assertNotSame(kept, f.getFaceNormal());
+		assertUpToDate(f);
+	}
+
+	/**
+	 * The vertex normal depends on the faces around the vertex, so it changes
+	 * with its neighbors and with the far vertices of these faces. On a quad
+	 * mesh, these aren't neighbors.
+	 */
+	@Test
+	public void testVertexCacheFollowsOneRing() {
+		final HE_Mesh mesh = mesh();
+		mesh.subdivide(new HES_CatmullClark());
+		final HE_Vertex v = mesh.getVertices().get(20);
+		WB_Coord normal = v.getVertexNormal();
+		assertSame(normal, v.getVertexNormal());
+		v.set(v.xd() + 4, v.yd(), v.zd());
+		assertNotSame(normal, v.getVertexNormal());
+		assertUpToDate(v);
+		for (final HE_Vertex n : v.getNeighborVertices()) {
+			normal = v.getVertexNormal();
+			n.set(n.xd(), n.yd() - 6, n.zd() + 2);
+			assertNotSame(normal, v.getVertexNormal());
+			assertUpToDate(v);
+		}
+		// a vertex of a neighboring face that isn't a neighbor itself
+		HE_Vertex far = null;
+		for (final HE_Face f : v.getFaceStar()) {
+			for (final HE_Vertex u : f.getFaceVertices()) {
+				if (u != v && !v.getNeighborVertices().contains(u)) {
+					far = u;
+				}
+			}
+		}
+		normal = v.getVertexNormal();
+		far.set(far.xd() * 0.5, far.yd(), far.zd());
+		assertNotSame(normal, v.getVertexNormal());
+		assertUpToDate(v);
+		// the faces around it stay consistent
+		for (final HE_Face f : v.getFaceStar()) {
+			assertUpToDate(f);
+		}
+	}
+
+	@Test
+	public void testCacheFollowsConnectivity() {
+		final HE_Mesh mesh = mesh();
+		final HE_Halfedge edge = mesh.getEdges().get(11);
+		final HE_Face f = edge.getFace();
+		final HE_Vertex v = edge.getVertex();
+		final WB_Coord normal = v.getVertexNormal();
+		final double area = f.getFaceArea();
+		final int order = f.getFaceOrder();
+		// the new vertex is off the edge, so the face becomes non-planar
+		HET_MeshOp.splitEdge(mesh, edge, new WB_Point(edge.getEdgeCenter()).mulSelf(1.3));
+		assertEquals(order + 1, f.getFaceOrder());
+		assertUpToDate(f);
+		assertEquals(HET_MeshOp.getFaceArea(f), f.getFaceArea(), 1e-9);
+		assertNotSame(normal, v.getVertexNormal());
+		assertUpToDate(v);
+		assertTrue(Math.abs(area - f.getFaceArea()) > 1e-6);
+	}
+
+	/**
+	 * updateDerivedGeometry refreshes only what changed.
+	 */
+	@Test
+	public void testUpdateDerivedGeometry() {
+		final HE_Mesh mesh = mesh();
+		mesh.updateDerivedGeometry();
+		final HE_Face f = mesh.getFaces().get(3), g = mesh.getFaces().get(mesh.getNumberOfFaces() - 1);
+		final WB_Coord fn = f.getFaceNormal(), gn = g.getFaceNormal();
+		final HE_Vertex v = secondVertex(f);
+		v.mulSelf(1.5);
+		mesh.updateDerivedGeometry();
+		assertNotSame(fn, f.getFaceNormal());
+		if (!g.getFaceVertices().contains(v)) {
+			assertSame(gn, g.getFaceNormal());
+		}
+		for (final HE_Face face : mesh.getFaces()) {
+			assertUpToDate(face);
+		}
+		for (final HE_Vertex u : mesh.getVertices()) {
+			assertUpToDate(u);
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/**
+ *
+ */
+package wblut.hemesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+
+/**
+ * Element keys: per-thread blocks from the shared counter and key spaces stay
+ * unique when many threads create elements at the same time, and key spaces
+ * are deterministic and local to their thread.
+ */
+public class HE_KeySpaceTest {
+	private static final int THREADS = 8;
+	private static final int ELEMENTS = 3 * HE_Element.KEY_BLOCK_SIZE + 17;
+	/** First key of the key space ranges, above all shared counter keys. */
+	private static final long FIRST_SPACE_KEY = 1L << HE_KeySpace.ID_BITS + HE_KeySpace.KEY_BITS;
+
+	/**
+	 * Keys of vertices, halfedges and faces created by one thread, after all
+	 * threads are released at once.
+	 */
+	private static Callable<long[]> creator(final CountDownLatch start, final HE_KeySpace space) {
+		return new Callable<long[]>() {
+			@Override
+			public long[] call() throws InterruptedException {
+				final HE_KeySpace previous = space == null ? null : HE_Element.useKeySpace(space);
+				try {
+					start.countDown();
+					start.await();
+					final long[] keys = new long[ELEMENTS];
+					for (int i = 0; i < ELEMENTS; i++) {
+						final HE_Element e = i % 3 == 0 ? new HE_Vertex() : i % 3 == 1 ? new HE_Halfedge() : new HE_Face();
+						keys[i] = e.getKey();
+					}
+					return keys;
+				} finally {
+					if (space != null) {
+						HE_Element.useKeySpace(previous);
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Run one creator per key space, null for the shared counter, and
+	 * collect all keys, failing on the first duplicate.
+	 */
+	private static TLongSet createConcurrently(final HE_KeySpace[] spaces) throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(spaces.length);
+		try {
+			final CountDownLatch start = new CountDownLatch(spaces.length);
+			final List<Future<long[]>> results = new ArrayList<Future<long[]>>();
+			for (final HE_KeySpace space : spaces) {
+				results.add(executor.submit(creator(start, space)));
+			}
+			final TLongSet all = new TLongHashSet();
+			for (int t = 0; t < spaces.length; t++) {
+				for (final long key : results.get(t).get()) {
+					if (!all.add(key)) {
+						fail("Key " + key + " handed out twice.");
+					}
+				}
+			}
+			assertEquals(spaces.length * ELEMENTS, all.size());
+			return all;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testSharedCounterUniqueAcrossThreads() throws Exception {
+		for (int round = 0; round < 5; round++) {
+			final TLongSet keys = createConcurrently(new HE_KeySpace[THREADS]);
+			for (final long key : keys.toArray()) {
+				assertTrue(key >= 0 && key < FIRST_SPACE_KEY);
+			}
+		}
+	}
+
+	@Test
+	public void testSharedKeySpaceUniqueAcrossThreads() throws Exception {
+		final HE_KeySpace space = new HE_KeySpace(3);
+		final HE_KeySpace[] spaces = new HE_KeySpace[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			spaces[t] = space;
+		}
+		final TLongSet keys = createConcurrently(spaces);
+		assertEquals(THREADS * ELEMENTS, space.getNumberOfKeys());
+		final long first = FIRST_SPACE_KEY | 3L << HE_KeySpace.KEY_BITS;
+		for (final long key : keys.toArray()) {
+			assertTrue(key >= first && key < first + THREADS * ELEMENTS);
+		}
+	}
+
+	/**
+	 * Threads on the shared counter and on key spaces with different ids at
+	 * the same time.
+	 */
+	@Test
+	public void testMixedSourcesUniqueAcrossThreads() throws Exception {
+		final HE_KeySpace[] spaces = new HE_KeySpace[THREADS];
+		for (int t = 0; t < THREADS; t += 2) {
+			spaces[t] = new HE_KeySpace(100 + t);
+		}
+		spaces[THREADS - 1] = spaces[0];
+		createConcurrently(spaces);
+	}
+
+	/**
+	 * A key space replays the same keys and is only active on the thread
+	 * that set it.
+	 */
+	@Test
+	public void testKeySpaceIsDeterministicAndThreadLocal() throws Exception {
+		final long[][] keys = new long[2][];
+		for (int run = 0; run < 2; run++) {
+			final HE_KeySpace space = new HE_KeySpace(42);
+			final HE_KeySpace previous = HE_Element.useKeySpace(space);
+			try {
+				final HE_Mesh mesh = new HE_Mesh(new HEC_Geodesic().setRadius(100).setB(2).setC(0));
+				keys[run] = new long[mesh.getNumberOfVertices() + mesh.getNumberOfFaces()];
+				int i = 0;
+				for (final HE_Vertex v : mesh.getVertices()) {
+					keys[run][i++] = v.getKey();
+				}
+				for (final HE_Face f : mesh.getFaces()) {
+					keys[run][i++] = f.getKey();
+				}
+				assertSame(space, HE_Element.getActiveKeySpace());
+				final ExecutorService executor = Executors.newSingleThreadExecutor();
+				try {
+					final long other = executor.submit(new Callable<Long>() {
+						@Override
+						public Long call() {
+							assertNull(HE_Element.getActiveKeySpace());
+							return new HE_Vertex().getKey();
+						}
+					}).get();
+					assertTrue(other < FIRST_SPACE_KEY);
+				} finally {
+					executor.shutdown();
+				}
+			} finally {
+				assertSame(space, HE_Element.useKeySpace(previous));
+			}
+		}
+		assertEquals(keys[0].length, keys[1].length);
+		for (int i = 0; i < keys[0].length; i++) {
+			assertEquals(keys[0][i], keys[1][i]);
+		}
+		assertTrue(new HE_Vertex().getKey() < FIRST_SPACE_KEY);
+		try {
+			new HE_KeySpace(1 << HE_KeySpace.ID_BITS);
+			fail("Id out of range.");
+		} catch (final IllegalArgumentException e) {
+		}
+	}
+}
@@ -0,0 +1,204 @@
+/**
+ *
+ */
+package wblut.hemesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import wblut.hemesh.HE_Attribute.HE_IntAttribute;
+
+/**
+ * Topology edit transactions of {@link HE_MeshStructure}: deferred
+ * classification of halfedges, nesting and failures halfway.
+ */
+public class HE_MeshStructureTest {
+
+	private static HE_Mesh mesh() {
+		return new HE_Mesh(new HEC_Geodesic().setRadius(100).setB(2).setC(0));
+	}
+
+	/**
+	 * Every halfedge is in exactly the set matching its pairing.
+	 */
+	private static void assertClassified(final HE_Mesh mesh) {
+		int edges = 0, unpaired = 0, inner = 0;
+		for (final HE_Halfedge he : mesh.getHalfedges()) {
+			if (he.getPair() == null) {
+				assertTrue(mesh.unpairedHalfedges.contains(he));
+				unpaired++;
+			} else if (he.isEdge()) {
+				assertTrue(mesh.edges.contains(he));
+				edges++;
+			} else {
+				assertTrue(mesh.halfedges.contains(he));
+				inner++;
+			}
+		}
+		assertEquals(edges, mesh.getNumberOfEdges());
+		assertEquals(unpaired, mesh.getUnpairedHalfedges().size());
+		assertEquals(inner, mesh.halfedges.size());
+		assertEquals(edges + unpaired + inner, mesh.getNumberOfHalfedges());
+	}
+
+	@Test
+	public void testClassificationIsDeferredUntilCommit() {
+		final HE_Mesh mesh = mesh();
+		final int nh = mesh.getNumberOfHalfedges();
+		final int ne = mesh.getNumberOfEdges();
+		final HE_Halfedge[] edges = mesh.getEdgesAsArray();
+		final HE_IntAttribute<HE_Halfedge> id = mesh
+				.addHalfedgeAttribute(new HE_IntAttribute<HE_Halfedge>("id", -1));
+		for (int i = 0; i < 3; i++) {
+			id.set(edges[i], i);
+			id.set(edges[i].getPair(), 10 + i);
+		}
+		mesh.beginTransaction();
+		assertTrue(mesh.isInTransaction());
+		mesh.clearPair(edges[0]);
+		mesh.clearPair(edges[1]);
+		// unpair and pair again, back to an edge at commit
+		final HE_Halfedge pair = edges[2].getPair();
+		mesh.clearPair(edges[2]);
+		mesh.setPair(edges[2], pair);
+		// the pairing is visible, the classification is not
+		assertEquals(null, edges[0].getPair());
+		assertEquals(ne, mesh.getNumberOfEdges());
+		assertTrue(mesh.getUnpairedHalfedges().isEmpty());
+		assertEquals(nh, mesh.getNumberOfHalfedges());
+		assertTrue(mesh.contains(edges[0]));
+		assertSame(edges[1], mesh.getHalfedgeWithKey(edges[1].getKey()));
+		mesh.commitTransaction();
+		assertFalse(mesh.isInTransaction());
+		assertEquals(nh, mesh.getNumberOfHalfedges());
+		assertEquals(ne - 2, mesh.getNumberOfEdges());
+		assertEquals(4, mesh.getUnpairedHalfedges().size());
+		assertClassified(mesh);
+		// attribute values move along with the halfedges
+		for (int i = 0; i < 3; i++) {
+			assertEquals(i, id.get(edges[i]));
+		}
+		assertEquals(12, id.get(pair));
+	}
+
+	@Test
+	public void testNestedTransactions() {
+		final HE_Mesh mesh = mesh();
+		final int ne = mesh.getNumberOfEdges();
+		final int nv = mesh.getNumberOfVertices();
+		mesh.beginTransaction();
+		// splitEdges runs its own transaction, nested in this one
+		HET_MeshOp.splitEdges(mesh);
+		assertTrue(mesh.isInTransaction());
+		assertEquals(nv + ne, mesh.getNumberOfVertices());
+		assertEquals(ne, mesh.getNumberOfEdges());
+		mesh.clearPair(mesh.getEdgesAsArray()[0]);
+		mesh.beginTransaction();
+		mesh.commitTransaction();
+		assertTrue(mesh.isInTransaction());
+		assertTrue(mesh.getUnpairedHalfedges().isEmpty());
+		mesh.commitTransaction();
+		assertFalse(mesh.isInTransaction());
+		assertEquals(2 * ne - 1, mesh.getNumberOfEdges());
+		assertEquals(2, mesh.getUnpairedHalfedges().size());
+		assertClassified(mesh);
+		try {
+			mesh.commitTransaction();
+			fail("Commit without a transaction.");
+		} catch (final IllegalStateException e) {
+			assertFalse(mesh.isInTransaction());
+		}
+	}
+
+	@Test
+	public void testSplitEdgesMatchesOutsideTransaction() {
+		final HE_Mesh mesh = mesh();
+		final int ne = mesh.getNumberOfEdges();
+		HET_MeshOp.splitEdges(mesh);
+		assertFalse(mesh.isInTransaction());
+		assertEquals(2 * ne, mesh.getNumberOfEdges());
+		assertClassified(mesh);
+		assertTrue(mesh.validate());
+	}
+
+	/**
+	 * An edit that fails inside try/finally still commits, and
+	 * endTransactions() closes transactions whose commits were skipped.
+	 */
+	@Test
+	public void testExceptionInTransaction() {
+		final HE_Mesh mesh = mesh();
+		final int ne = mesh.getNumberOfEdges();
+		final HE_Halfedge[] edges = mesh.getEdgesAsArray();
+		try {
+			mesh.beginTransaction();
+			try {
+				mesh.clearPair(edges[0]);
+				throw new IllegalArgumentException("Failed halfway.");
+			} finally {
+				mesh.commitTransaction();
+			}
+		} catch (final IllegalArgumentException e) {
+			assertEquals("Failed halfway.", e.getMessage());
+		}
+		assertFalse(mesh.isInTransaction());
+		assertEquals(ne - 1, mesh.getNumberOfEdges());
+		assertClassified(mesh);
+		try {
+			mesh.beginTransaction();
+			mesh.beginTransaction();
+			mesh.clearPair(edges[1]);
+			throw new IllegalArgumentException("Failed without commit.");
+		} catch (final IllegalArgumentException e) {
+			assertTrue(mesh.isInTransaction());
+			assertEquals(ne - 1, mesh.getNumberOfEdges());
+			mesh.endTransactions();
+		}
+		assertFalse(mesh.isInTransaction());
+		assertEquals(ne - 2, mesh.getNumberOfEdges());
+		assertClassified(mesh);
+		mesh.endTransactions();
+		assertFalse(mesh.isInTransaction());
+	}
+
+	/**
+	 * A modifier that throws inside a transaction it never commits: the mesh
+	 * is reset and no transaction stays open.
+	 */
+	@Test
+	public void testFailingModifierResetsMesh() {
+		final HE_Mesh mesh = mesh();
+		final int nv = mesh.getNumberOfVertices();
+		final int ne = mesh.getNumberOfEdges();
+		final int nf = mesh.getNumberOfFaces();
+		mesh.modify(new HEM_Modifier() {
+			@Override
+			public HE_Mesh apply(final HE_Mesh target) {
+				target.beginTransaction();
+				final List<HE_Halfedge> edges = target.getEdges();
+				target.clearPair(edges.get(0));
+				HET_MeshOp.splitEdges(target);
+				throw new IllegalStateException("Failed halfway.");
+			}
+
+			@Override
+			public HE_Mesh apply(final HE_Selection selection) {
+				return apply(selection.parent);
+			}
+		});
+		assertFalse(mesh.isInTransaction());
+		assertEquals(nv, mesh.getNumberOfVertices());
+		assertEquals(ne, mesh.getNumberOfEdges());
+		assertEquals(nf, mesh.getNumberOfFaces());
+		assertTrue(mesh.getUnpairedHalfedges().isEmpty());
+		assertClassified(mesh);
+		assertTrue(mesh.validate());
+	}
+}
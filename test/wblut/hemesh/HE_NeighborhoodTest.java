@@ -0,0 +1,258 @@
+/**
+ *
+ */
+package wblut.hemesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import wblut.geom.WB_Plane;
+
+/**
+ * Neighborhood queries that fill a caller's list, resettable circulators, and
+ * the subdividers and simplifiers that reuse their buffers across elements.
+ */
+public class HE_NeighborhoodTest {
+	private static final String[] VERTEX_CIRCULATORS = { "VertexEdge", "VertexEdgeRev", "VertexFace",
+			"VertexFaceRev", "VertexHalfedgeIn", "VertexHalfedgeInRev", "VertexHalfedgeOut", "VertexHalfedgeOutRev",
+			"VertexVertex", "VertexVertexRev" };
+	private static final String[] FACE_CIRCULATORS = { "FaceEdge", "FaceEdgeRev", "FaceFace", "FaceFaceRev",
+			"FaceHalfedgeInner", "FaceHalfedgeInnerRev", "FaceHalfedgeOuter", "FaceHalfedgeOuterRev", "FaceVertex",
+			"FaceVertexRev" };
+
+	/**
+	 * Geodesic with a slice cut off, so there are boundary vertices, plus an
+	 * isolated vertex.
+	 */
+	private static HE_Mesh openMesh() {
+		final HE_Mesh mesh = new HE_Mesh(new HEC_Geodesic().setRadius(100).setB(2).setC(1));
+		mesh.modify(new HEM_Slice().setPlane(new WB_Plane(0, 0, 30, 0.1, 0.2, 1)).setCap(false));
+		mesh.add(new HE_Vertex(0, 0, 500));
+		return mesh;
+	}
+
+	/**
+	 * List with leftovers that a fill has to clear.
+	 */
+	private static <E> List<E> dirty(final E e) {
+		final List<E> result = new ArrayList<E>();
+		result.add(e);
+		result.add(e);
+		return result;
+	}
+
+	@Test
+	public void testVertexFillMatchesList() {
+		final HE_Mesh mesh = openMesh();
+		final List<HE_Halfedge> halfedges = dirty(new HE_Halfedge());
+		final List<HE_Face> faces = dirty(new HE_Face());
+		final List<HE_Vertex> vertices = dirty(new HE_Vertex());
+		int isolated = 0, boundary = 0;
+		for (final HE_Vertex v : mesh.getVertices()) {
+			assertEquals(v.getHalfedgeStar().size(), v.getHalfedgeStar(halfedges));
+			assertEquals(v.getHalfedgeStar(), halfedges);
+			assertEquals(v.getVertexOrder(), halfedges.size());
+			assertEquals(v.getEdgeStar().size(), v.getEdgeStar(halfedges));
+			assertEquals(v.getEdgeStar(), halfedges);
+			assertEquals(v.getFaceStar().size(), v.getFaceStar(faces));
+			assertEquals(v.getFaceStar(), faces);
+			assertEquals(v.getNeighborVertices().size(), v.getNeighborVertices(vertices));
+			assertEquals(v.getNeighborVertices(), vertices);
+			if (v.getHalfedge() == null) {
+				isolated++;
+				assertTrue(halfedges.isEmpty() && faces.isEmpty() && vertices.isEmpty());
+			} else if (v.isBoundary()) {
+				boundary++;
+				assertEquals(vertices.size(), faces.size() + 1);
+			} else {
+				assertEquals(vertices.size(), faces.size());
+			}
+		}
+		assertEquals(1, isolated);
+		assertTrue(boundary > 0);
+	}
+
+	@Test
+	public void testFaceFillMatchesList() {
+		final HE_Mesh mesh = openMesh();
+		final List<HE_Halfedge> halfedges = dirty(new HE_Halfedge());
+		final List<HE_Face> faces = dirty(new HE_Face());
+		final List<HE_Vertex> vertices = dirty(new HE_Vertex());
+		for (final HE_Face f : mesh.getFaces()) {
+			assertEquals(f.getFaceOrder(), f.getFaceVertices(vertices));
+			assertEquals(f.getFaceVertices(), vertices);
+			assertEquals(f.getFaceHalfedges().size(), f.getFaceHalfedges(halfedges));
+			assertEquals(f.getFaceHalfedges(), halfedges);
+			assertEquals(f.getFaceEdges().size(), f.getFaceEdges(halfedges));
+			assertEquals(f.getFaceEdges(), halfedges);
+			assertEquals(f.getNeighborFaces().size(), f.getNeighborFaces(faces));
+			assertEquals(f.getNeighborFaces(), faces);
+		}
+		final HE_Face empty = new HE_Face();
+		assertEquals(0, empty.getFaceVertices(vertices));
+		assertTrue(vertices.isEmpty());
+		assertEquals(0, empty.getNeighborFaces(faces));
+		assertTrue(faces.isEmpty());
+	}
+
+	private static List<Object> drain(final Iterator<?> itr) {
+		final List<Object> result = new ArrayList<Object>();
+		while (itr.hasNext()) {
+			result.add(itr.next());
+		}
+		return result;
+	}
+
+	/**
+	 * One circulator of each kind, reset to every element after a partial
+	 * walk, gives the same sequence as a new one.
+	 */
+	private static <T> void assertResetMatchesNew(final String[] names, final Class<T> type, final List<T> elements)
+			throws Exception {
+		final Random rnd = new Random(1);
+		for (final String name : names) {
+			final Class<?> c = Class.forName("wblut.hemesh.HE_" + name + "Circulator");
+			final Constructor<?> create = c.getDeclaredConstructor(type);
+			final Method reset = c.getMethod("reset", type);
+			final Iterator<?> reused = (Iterator<?>) create.newInstance(elements.get(0));
+			for (final T e : elements) {
+				for (int i = rnd.nextInt(4); i > 0 && reused.hasNext(); i--) {
+					reused.next();
+				}
+				assertSame(reused, reset.invoke(reused, e));
+				assertEquals(name, drain((Iterator<?>) create.newInstance(e)), drain(reused));
+			}
+		}
+	}
+
+	@Test
+	public void testCirculatorReset() throws Exception {
+		final HE_Mesh mesh = openMesh();
+		assertResetMatchesNew(VERTEX_CIRCULATORS, HE_Vertex.class, mesh.getVertices());
+		assertResetMatchesNew(FACE_CIRCULATORS, HE_Face.class, mesh.getFaces());
+		final HE_Vertex v = mesh.getVertices().get(5);
+		assertEquals(v.getNeighborVertices(), drain(new HE_VertexVertexCirculator(mesh.getVertices().get(9)).reset(v)));
+	}
+
+	/**
+	 * Mesh with keys from a fresh key space with a fixed id, so repeated
+	 * runs make the same elements in the same order.
+	 */
+	private static HE_Mesh mesh(final boolean box) {
+		final HE_KeySpace space = new HE_KeySpace(11);
+		final HE_KeySpace previous = HE_Element.useKeySpace(space);
+		final HE_Mesh mesh;
+		try {
+			mesh = box ? new HE_Mesh(new HEC_Box().setWidth(100).setHeight(80).setDepth(60).setSegments(3, 3, 3))
+					: new HE_Mesh(new HEC_Geodesic().setRadius(100).setB(3).setC(0));
+		} finally {
+			HE_Element.useKeySpace(previous);
+		}
+		mesh.setKeySpace(space);
+		return mesh;
+	}
+
+	private static void assertSameMesh(final HE_Mesh expected, final HE_Mesh actual) {
+		assertEquals(expected.getNumberOfVertices(), actual.getNumberOfVertices());
+		assertEquals(expected.getNumberOfFaces(), actual.getNumberOfFaces());
+		assertEquals(expected.getNumberOfEdges(), actual.getNumberOfEdges());
+		final Iterator<HE_Vertex> e = expected.vItr(), a = actual.vItr();
+		while (e.hasNext()) {
+			final HE_Vertex ev = e.next(), av = a.next();
+			assertEquals(ev.xd(), av.xd(), 0.0);
+			assertEquals(ev.yd(), av.yd(), 0.0);
+			assertEquals(ev.zd(), av.zd(), 0.0);
+		}
+	}
+
+	/**
+	 * The buffers of a simplifier or subdivider carry nothing over from one
+	 * vertex, or one mesh, to the next: a reused instance gives the result of
+	 * a new one.
+	 */
+	@Test
+	public void testReusedBuffers() {
+		final HES_TriDec tridec = new HES_TriDec().setGoal(0.5);
+		mesh(false).simplify(tridec);
+		final HE_Mesh reusedTriDec = mesh(false);
+		reusedTriDec.simplify(tridec);
+		final HE_Mesh newTriDec = mesh(false);
+		newTriDec.simplify(new HES_TriDec().setGoal(0.5));
+		assertSameMesh(newTriDec, reusedTriDec);
+		assertTrue(newTriDec.getNumberOfVertices() < mesh(false).getNumberOfVertices());
+		final HES_TriDecLimit limit = new HES_TriDecLimit().setLimit(0.01);
+		mesh(false).simplify(limit);
+		final HE_Mesh reusedLimit = mesh(false);
+		reusedLimit.simplify(limit);
+		final HE_Mesh newLimit = mesh(false);
+		newLimit.simplify(new HES_TriDecLimit().setLimit(0.01));
+		assertSameMesh(newLimit, reusedLimit);
+		final HEM_Soapfilm soapfilm = new HEM_Soapfilm().setIterations(2);
+		mesh(true).modify(new HEM_Triangulate()).modify(soapfilm);
+		final HE_Mesh reusedSoap = mesh(true).modify(new HEM_Triangulate()).modify(soapfilm);
+		final HE_Mesh newSoap = mesh(true).modify(new HEM_Triangulate()).modify(new HEM_Soapfilm().setIterations(2));
+		assertSameMesh(newSoap, reusedSoap);
+		final HE_Mesh smooth = mesh(true);
+		smooth.subdivide(new HES_Smooth());
+		final HE_Mesh cc = mesh(true);
+		cc.subdivide(new HES_CatmullClark());
+		// both keep the connectivity of a planar split
+		final HE_Mesh planar = mesh(true);
+		planar.subdivide(new HES_Planar());
+		assertEquals(planar.getNumberOfVertices(), smooth.getNumberOfVertices());
+		assertEquals(planar.getNumberOfVertices(), cc.getNumberOfVertices());
+	}
+
+	/**
+	 * Catmull-Clark on a closed quad mesh moves each original vertex to
+	 * (Q + 2R + (n - 3)S) / n, computed here with the allocating queries. The
+	 * whole mesh and a selection of all faces take different paths.
+	 */
+	@Test
+	public void testCatmullClarkVertexRule() {
+		for (final boolean selected : new boolean[] { false, true }) {
+			final HE_Mesh mesh = mesh(true);
+			final List<HE_Vertex> original = new ArrayList<HE_Vertex>(mesh.getVertices());
+			final List<double[]> expected = new ArrayList<double[]>();
+			for (final HE_Vertex v : original) {
+				final int n = v.getVertexOrder();
+				final double[] q = new double[3], r = new double[3];
+				for (final HE_Face f : v.getFaceStar()) {
+					for (int i = 0; i < 3; i++) {
+						q[i] += f.getFaceCenter().getd(i) / n;
+					}
+				}
+				for (final HE_Vertex u : v.getNeighborVertices()) {
+					for (int i = 0; i < 3; i++) {
+						r[i] += 0.5 * (v.getd(i) + u.getd(i)) / n;
+					}
+				}
+				final double[] p = new double[3];
+				for (int i = 0; i < 3; i++) {
+					p[i] = (q[i] + 2 * r[i] + (n - 3) * v.getd(i)) / n;
+				}
+				expected.add(p);
+			}
+			if (selected) {
+				HE_Selection.selectAllFaces(mesh).subdivide(new HES_CatmullClark());
+			} else {
+				mesh.subdivide(new HES_CatmullClark());
+			}
+			for (int k = 0; k < original.size(); k++) {
+				for (int i = 0; i < 3; i++) {
+					assertEquals(expected.get(k)[i], original.get(k).getd(i), 1e-9);
+				}
+			}
+		}
+	}
+}
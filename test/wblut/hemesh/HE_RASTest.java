@@ -0,0 +1,232 @@
+/**
+ *
+ */
+package wblut.hemesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import wblut.geom.WB_Coord;
+import wblut.geom.WB_Plane;
+import wblut.hemesh.HE_Attribute.HE_IntAttribute;
+import wblut.hemesh.HE_RAS.HE_RASPrimitive;
+import wblut.hemesh.HE_RAS.HE_RASTrove;
+
+/**
+ * HE_RASPrimitive, the default element index, against HE_RASTrove: same
+ * contents and iteration order after add/remove churn, and the same meshes
+ * with either index selected by setPrimitiveIndex.
+ */
+public class HE_RASTest {
+
+	private static <E extends HE_Element> void assertSameOrder(final HE_RAS<E> expected, final HE_RAS<E> actual) {
+		assertEquals(expected.size(), actual.size());
+		final Iterator<E> e = expected.iterator(), a = actual.iterator();
+		for (int i = 0; i < expected.size(); i++) {
+			final E element = e.next();
+			assertSame("Order differs at " + i, element, a.next());
+			assertSame(element, actual.get(i));
+			assertEquals(i, actual.indexOf(element));
+			assertSame(element, actual.getWithKey(element.getKey()));
+		}
+		assertFalse(e.hasNext() || a.hasNext());
+	}
+
+	@Test
+	public void testChurn() {
+		final HE_Vertex[] pool = new HE_Vertex[3000];
+		for (int i = 0; i < pool.length; i++) {
+			pool[i] = new HE_Vertex(i, 0, 0);
+		}
+		final HE_RAS<HE_Vertex> trove = new HE_RASTrove<HE_Vertex>();
+		final HE_RAS<HE_Vertex> primitive = new HE_RASPrimitive<HE_Vertex>();
+		final Random rnd = new Random(11);
+		final Random pollTrove = new Random(5), pollPrimitive = new Random(5);
+		for (int step = 0; step < 40000; step++) {
+			final HE_Vertex v = pool[rnd.nextInt(pool.length)];
+			final int op = rnd.nextInt(10);
+			if (op < 5) {
+				assertEquals(trove.add(v), primitive.add(v));
+			} else if (op < 7) {
+				assertEquals(trove.remove(v), primitive.remove(v));
+			} else if (op < 8) {
+				final int i = trove.size() == 0 ? 0 : rnd.nextInt(trove.size() + 1);
+				assertSame(trove.removeAt(i), primitive.removeAt(i));
+			} else if (op < 9) {
+				assertSame(trove.pollRandom(pollTrove), primitive.pollRandom(pollPrimitive));
+			} else {
+				assertEquals(trove.contains(v), primitive.contains(v));
+				assertEquals(trove.containsKey(v.getKey()), primitive.containsKey(v.getKey()));
+			}
+			if (step % 5000 == 0) {
+				primitive.trimToSize();
+				assertSameOrder(trove, primitive);
+				primitive.ensureCapacity(2 * pool.length);
+			}
+		}
+		assertSameOrder(trove, primitive);
+		for (final HE_Vertex v : pool) {
+			assertEquals(trove.contains(v), primitive.contains(v));
+			assertEquals(trove.indexOf(v), primitive.indexOf(v));
+		}
+	}
+
+	/**
+	 * Iterator removal moves the last element into the hole in both sets and
+	 * keeps the key index up to date.
+	 */
+	@Test
+	public void testIteratorRemove() {
+		final HE_RAS<HE_Vertex> trove = new HE_RASTrove<HE_Vertex>();
+		final HE_RAS<HE_Vertex> primitive = new HE_RASPrimitive<HE_Vertex>();
+		for (int i = 0; i < 500; i++) {
+			final HE_Vertex v = new HE_Vertex(i, 0, 0);
+			trove.add(v);
+			primitive.add(v);
+		}
+		for (final HE_RAS<HE_Vertex> set : new HE_RAS[] { trove, primitive }) {
+			final Iterator<HE_Vertex> itr = set.iterator();
+			int visited = 0;
+			while (itr.hasNext()) {
+				visited++;
+				if (itr.next().xd() % 3 != 0) {
+					itr.remove();
+				}
+			}
+			assertEquals(500, visited);
+			assertEquals(167, set.size());
+		}
+		assertSameOrder(trove, primitive);
+		for (final HE_Vertex v : trove) {
+			assertEquals(0, v.xd() % 3, 0);
+		}
+	}
+
+	/**
+	 * Geodesic with an id attribute. Keys come from a fresh key space with a
+	 * fixed id, so all meshes made here get the same keys and hash based
+	 * steps in the creators and modifiers run in the same order.
+	 */
+	private static HE_Mesh mesh(final boolean primitiveIndex) {
+		final HE_KeySpace space = new HE_KeySpace(7);
+		final HE_KeySpace previous = HE_Element.useKeySpace(space);
+		final HE_Mesh mesh;
+		try {
+			mesh = new HE_Mesh(new HEC_Geodesic().setRadius(100).setB(2).setC(1));
+		} finally {
+			HE_Element.useKeySpace(previous);
+		}
+		mesh.setKeySpace(space);
+		mesh.setPrimitiveIndex(primitiveIndex);
+		final HE_IntAttribute<HE_Vertex> id = mesh.addVertexAttribute(new HE_IntAttribute<HE_Vertex>("id", -1));
+		int i = 0;
+		for (final HE_Vertex v : mesh.getVertices()) {
+			id.set(v, i++);
+		}
+		return mesh;
+	}
+
+	/**
+	 * Extrude, subdivide, slice the closed mesh, delete faces and remove
+	 * vertices.
+	 */
+	private static void churn(final HE_Mesh mesh) {
+		mesh.modify(new HEM_Extrude().setDistance(20).setChamfer(0.2));
+		mesh.subdivide(new HES_CatmullClark());
+		if (mesh.getUnpairedHalfedges().isEmpty()) {
+			mesh.modify(new HEM_Slice().setPlane(new WB_Plane(0, 0, 10, 0.2, 0.1, 1)).setCap(false));
+		}
+		final List<HE_Face> faces = mesh.getFaces();
+		for (int i = faces.size() - 1; i >= 0; i -= 7) {
+			mesh.deleteFace(faces.get(i));
+		}
+		final List<HE_Vertex> isolated = new ArrayList<HE_Vertex>();
+		for (final HE_Vertex v : mesh.getVertices()) {
+			if (v.getHalfedge() == null) {
+				isolated.add(v);
+			}
+		}
+		for (final HE_Vertex v : isolated) {
+			mesh.remove(v);
+		}
+	}
+
+	private static void assertSameCoord(final WB_Coord expected, final WB_Coord actual) {
+		assertEquals(expected.xd(), actual.xd(), 0.0);
+		assertEquals(expected.yd(), actual.yd(), 0.0);
+		assertEquals(expected.zd(), actual.zd(), 0.0);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void assertSameMesh(final HE_Mesh expected, final HE_Mesh actual) {
+		assertEquals(expected.getNumberOfVertices(), actual.getNumberOfVertices());
+		assertEquals(expected.getNumberOfHalfedges(), actual.getNumberOfHalfedges());
+		assertEquals(expected.getNumberOfFaces(), actual.getNumberOfFaces());
+		final HE_IntAttribute<HE_Vertex> eid = (HE_IntAttribute<HE_Vertex>) expected.getVertexAttribute("id");
+		final HE_IntAttribute<HE_Vertex> aid = (HE_IntAttribute<HE_Vertex>) actual.getVertexAttribute("id");
+		final Iterator<HE_Vertex> ev = expected.vItr(), av = actual.vItr();
+		while (ev.hasNext()) {
+			final HE_Vertex e = ev.next(), a = av.next();
+			assertSameCoord(e, a);
+			assertEquals(eid.get(e), aid.get(a));
+		}
+		final Iterator<HE_Face> ef = expected.fItr(), af = actual.fItr();
+		while (ef.hasNext()) {
+			final HE_Face e = ef.next(), a = af.next();
+			assertEquals(e.getFaceOrder(), a.getFaceOrder());
+			assertSameCoord(e.getHalfedge().getVertex(), a.getHalfedge().getVertex());
+		}
+		final Iterator<HE_Halfedge> eh = expected.heItr(), ah = actual.heItr();
+		while (eh.hasNext()) {
+			final HE_Halfedge e = eh.next(), a = ah.next();
+			assertSameCoord(e.getVertex(), a.getVertex());
+			assertSameCoord(e.getEndVertex(), a.getEndVertex());
+		}
+		final List<HE_Halfedge> ee = expected.getEdges(), ae = actual.getEdges();
+		assertEquals(ee.size(), ae.size());
+		for (int i = 0; i < ee.size(); i++) {
+			assertSameCoord(ee.get(i).getVertex(), ae.get(i).getVertex());
+		}
+		final List<HE_Halfedge> eu = expected.getUnpairedHalfedges(), au = actual.getUnpairedHalfedges();
+		assertEquals(eu.size(), au.size());
+		for (int i = 0; i < eu.size(); i++) {
+			assertSameCoord(eu.get(i).getVertex(), au.get(i).getVertex());
+		}
+	}
+
+	@Test
+	public void testMeshWithEitherIndex() {
+		final HE_Mesh primitive = mesh(true);
+		final HE_Mesh trove = mesh(false);
+		assertTrue(primitive.isPrimitiveIndex());
+		assertFalse(trove.isPrimitiveIndex());
+		assertSameMesh(primitive, trove);
+		churn(primitive);
+		churn(trove);
+		assertTrue(primitive.vertices instanceof HE_RASPrimitive);
+		assertTrue(trove.vertices instanceof HE_RASTrove);
+		assertTrue(trove.halfedges instanceof HE_RASTrove);
+		assertTrue(trove.faces instanceof HE_RASTrove);
+		assertSameMesh(primitive, trove);
+		// switching back and forth keeps order and attributes
+		final HE_Mesh toggled = mesh(true);
+		toggled.setPrimitiveIndex(false);
+		churn(toggled);
+		assertTrue(toggled.vertices instanceof HE_RASTrove);
+		toggled.setPrimitiveIndex(true);
+		assertTrue(toggled.vertices instanceof HE_RASPrimitive);
+		assertSameMesh(primitive, toggled);
+		churn(primitive);
+		churn(toggled);
+		assertSameMesh(primitive, toggled);
+	}
+}
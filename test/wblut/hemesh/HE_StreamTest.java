@@ -0,0 +1,241 @@
+/**
+ *
+ */
+package wblut.hemesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import wblut.geom.WB_Plane;
+import wblut.hemesh.HE_RAS.HE_RASPrimitive;
+import wblut.hemesh.HE_RAS.HE_RASSpliterator;
+
+/**
+ * Element streams of {@link HE_MeshStructure}: every split of the
+ * spliterators covers each element exactly once and in index order, and
+ * parallel pipelines give the same results as sequential ones.
+ */
+public class HE_StreamTest {
+
+	/**
+	 * Geodesic with a slice cut off and a few edges unpaired, so there are
+	 * boundary halfedges and all three halfedge sets are used.
+	 */
+	private static HE_Mesh mesh() {
+		final HE_Mesh mesh = new HE_Mesh(new HEC_Geodesic().setRadius(100).setB(4).setC(2));
+		mesh.modify(new HEM_Slice().setPlane(new WB_Plane(0, 0, 20, 0.1, 0.2, 1)).setCap(false));
+		final HE_Halfedge[] edges = mesh.getEdgesAsArray();
+		for (int i = 0; i < edges.length; i += 97) {
+			mesh.clearPair(edges[i]);
+		}
+		return mesh;
+	}
+
+	/**
+	 * Split recursively at random depths and advance the parts with a random
+	 * mix of tryAdvance and forEachRemaining. The parts are prefixes, so
+	 * visiting them depth first gives the encounter order.
+	 */
+	private static <E> void splitAndCollect(final Spliterator<E> spliterator, final List<E> result,
+			final Random rnd, final int depth) {
+		final long size = spliterator.estimateSize();
+		if (depth < 12 && rnd.nextInt(8) != 0) {
+			final Spliterator<E> prefix = spliterator.trySplit();
+			if (prefix == null) {
+				assertTrue(size <= 1);
+			} else {
+				assertEquals(size, prefix.estimateSize() + spliterator.estimateSize());
+				assertTrue(prefix.hasCharacteristics(Spliterator.SUBSIZED));
+				splitAndCollect(prefix, result, rnd, depth + 1);
+				splitAndCollect(spliterator, result, rnd, depth + 1);
+				return;
+			}
+		}
+		final int before = result.size();
+		final Consumer<E> add = new Consumer<E>() {
+			@Override
+			public void accept(final E e) {
+				result.add(e);
+			}
+		};
+		while (rnd.nextBoolean() && spliterator.tryAdvance(add)) {
+		}
+		spliterator.forEachRemaining(add);
+		assertFalse(spliterator.tryAdvance(add));
+		assertEquals(0, spliterator.estimateSize());
+		assertEquals(size, result.size() - before);
+	}
+
+	private static <E> void assertExactCover(final List<E> expected, final Spliterator<E> spliterator,
+			final long seed) {
+		final List<E> result = new ArrayList<E>();
+		splitAndCollect(spliterator, result, new Random(seed), 0);
+		assertEquals(expected.size(), result.size());
+		final Map<E, Integer> count = new IdentityHashMap<E, Integer>();
+		for (int i = 0; i < result.size(); i++) {
+			assertSame("Element " + i, expected.get(i), result.get(i));
+			assertNull("Element " + i + " seen twice", count.put(result.get(i), i));
+		}
+	}
+
+	private static <E> List<E> byIndex(final int n, final IntFunction<E> get) {
+		final List<E> result = new ArrayList<E>();
+		for (int i = 0; i < n; i++) {
+			result.add(get.apply(i));
+		}
+		return result;
+	}
+
+	@Test
+	public void testSplitsCoverEveryElementOnce() {
+		final HE_Mesh mesh = mesh();
+		assertFalse(mesh.getUnpairedHalfedges().isEmpty());
+		final List<HE_Halfedge> halfedges = byIndex(mesh.getNumberOfHalfedges(), new IntFunction<HE_Halfedge>() {
+			@Override
+			public HE_Halfedge apply(final int i) {
+				return mesh.getHalfedgeWithIndex(i);
+			}
+		});
+		for (long seed = 0; seed < 50; seed++) {
+			assertExactCover(mesh.getVertices(), mesh.vertices.spliterator(), seed);
+			assertExactCover(mesh.getFaces(), mesh.faces.spliterator(), seed);
+			assertExactCover(mesh.getEdges(), mesh.edges.spliterator(), seed);
+			assertExactCover(halfedges, mesh.halfedgeStream().spliterator(), seed);
+		}
+		assertEquals(halfedges, mesh.halfedgeStream().collect(Collectors.toList()));
+		assertEquals(mesh.getVertices(), mesh.vertexStream().collect(Collectors.toList()));
+	}
+
+	/**
+	 * Several sets, some of them empty, including the first and the last.
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testSplitsAcrossEmptySets() {
+		final int[] sizes = { 0, 5, 0, 0, 17, 1, 0, 2, 0 };
+		final HE_RAS<HE_Vertex>[] sets = new HE_RAS[sizes.length];
+		final List<HE_Vertex> all = new ArrayList<HE_Vertex>();
+		for (int s = 0; s < sizes.length; s++) {
+			sets[s] = new HE_RASPrimitive<HE_Vertex>();
+			for (int i = 0; i < sizes[s]; i++) {
+				final HE_Vertex v = new HE_Vertex(s, i, 0);
+				sets[s].add(v);
+				all.add(v);
+			}
+		}
+		for (long seed = 0; seed < 200; seed++) {
+			assertExactCover(all, new HE_RASSpliterator<HE_Vertex>(sets), seed);
+		}
+		final HE_RAS<HE_Vertex>[] empty = new HE_RAS[] { new HE_RASPrimitive<HE_Vertex>(),
+				new HE_RASPrimitive<HE_Vertex>() };
+		final Spliterator<HE_Vertex> none = new HE_RASSpliterator<HE_Vertex>(empty);
+		assertNull(none.trySplit());
+		assertEquals(0, none.estimateSize());
+		assertExactCover(new ArrayList<HE_Vertex>(), none, 0);
+	}
+
+	/**
+	 * Run a pipeline on a pool with several workers, so the parts of the
+	 * split are processed concurrently even on a single core.
+	 */
+	private static <T> T inPool(final Callable<T> task) throws InterruptedException, ExecutionException {
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			return pool.submit(task).get();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testParallelMatchesSequential() throws InterruptedException, ExecutionException {
+		final HE_Mesh mesh = mesh();
+		final ToDoubleFunction<HE_Face> area = new ToDoubleFunction<HE_Face>() {
+			@Override
+			public double applyAsDouble(final HE_Face f) {
+				return f.getFaceArea();
+			}
+		};
+		final Predicate<HE_Halfedge> onBoundary = new Predicate<HE_Halfedge>() {
+			@Override
+			public boolean test(final HE_Halfedge he) {
+				return he.getFace() == null || he.getPair().getFace() == null;
+			}
+		};
+		long expectedBoundary = 0;
+		for (final HE_Halfedge he : mesh.getEdges()) {
+			if (onBoundary.test(he)) {
+				expectedBoundary++;
+			}
+		}
+		assertTrue(expectedBoundary > 0);
+		for (final boolean parallel : new boolean[] { false, true }) {
+			final List<HE_Vertex> vertices = inPool(new Callable<List<HE_Vertex>>() {
+				@Override
+				public List<HE_Vertex> call() {
+					final Stream<HE_Vertex> s = mesh.vertexStream();
+					return (parallel ? s.parallel() : s).collect(Collectors.toList());
+				}
+			});
+			assertEquals(mesh.getVertices(), vertices);
+			final List<HE_Halfedge> halfedges = inPool(new Callable<List<HE_Halfedge>>() {
+				@Override
+				public List<HE_Halfedge> call() {
+					final Stream<HE_Halfedge> s = mesh.halfedgeStream();
+					return (parallel ? s.parallel() : s).collect(Collectors.toList());
+				}
+			});
+			assertEquals(mesh.halfedgeStream().collect(Collectors.toList()), halfedges);
+			final double[] areas = inPool(new Callable<double[]>() {
+				@Override
+				public double[] call() {
+					final Stream<HE_Face> s = mesh.faceStream();
+					return (parallel ? s.parallel() : s).mapToDouble(area).toArray();
+				}
+			});
+			assertEquals(mesh.getNumberOfFaces(), areas.length);
+			for (int i = 0; i < areas.length; i++) {
+				assertEquals(mesh.getFaceWithIndex(i).getFaceArea(), areas[i], 0.0);
+			}
+			final long boundary = inPool(new Callable<Long>() {
+				@Override
+				public Long call() {
+					final Stream<HE_Halfedge> s = mesh.edgeStream();
+					return (parallel ? s.parallel() : s).filter(onBoundary).count();
+				}
+			});
+			assertEquals(expectedBoundary, boundary);
+			final int indexSum = inPool(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					return (parallel ? mesh.faceIndexStream().parallel() : mesh.faceIndexStream()).sum();
+				}
+			});
+			assertEquals(mesh.getNumberOfFaces() * (mesh.getNumberOfFaces() - 1) / 2, indexSum);
+		}
+		assertEquals(mesh.getNumberOfHalfedges(), mesh.halfedgeIndexStream().parallel().count());
+		assertEquals(mesh.getNumberOfEdges(), mesh.edgeIndexStream().count());
+		assertEquals(mesh.getNumberOfVertices(), mesh.vertexIndexStream().parallel().distinct().count());
+	}
+}
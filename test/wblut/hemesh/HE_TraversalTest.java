@@ -0,0 +1,140 @@
+/**
+ *
+ */
+package wblut.hemesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Generation stamps of {@link HE_Traversal}: marks of an earlier generation,
+ * an earlier use of a pooled traversal or another traversal never show up as
+ * marks of the current one, also when the generation counter wraps around.
+ */
+public class HE_TraversalTest {
+
+	private static HE_Mesh mesh() {
+		return new HE_Mesh(new HEC_Geodesic().setRadius(100).setB(2).setC(1));
+	}
+
+	private static void markAll(final HE_Traversal traversal, final HE_Mesh mesh) {
+		for (final HE_Vertex v : mesh.getVertices()) {
+			assertTrue(traversal.mark(v));
+			assertFalse(traversal.mark(v));
+		}
+		for (final HE_Face f : mesh.getFaces()) {
+			assertTrue(traversal.mark(f));
+		}
+		for (final HE_Halfedge he : mesh.getHalfedges()) {
+			assertTrue(traversal.mark(he));
+		}
+	}
+
+	private static void assertNoneMarked(final HE_Traversal traversal, final HE_Mesh mesh) {
+		for (final HE_Vertex v : mesh.getVertices()) {
+			assertFalse(traversal.isMarked(v));
+		}
+		for (final HE_Face f : mesh.getFaces()) {
+			assertFalse(traversal.isMarked(f));
+		}
+		for (final HE_Halfedge he : mesh.getHalfedges()) {
+			assertFalse(traversal.isMarked(he));
+		}
+	}
+
+	@Test
+	public void testMarksDontLeakIntoNextTraversal() {
+		final HE_Mesh mesh = mesh();
+		final HE_Traversal traversal = mesh.beginTraversal();
+		assertNoneMarked(traversal, mesh);
+		markAll(traversal, mesh);
+		final HE_Vertex v = mesh.getVertices().get(0);
+		traversal.unmark(v);
+		assertFalse(traversal.isMarked(v));
+		assertTrue(traversal.mark(v));
+		traversal.restart();
+		assertNoneMarked(traversal, mesh);
+		markAll(traversal, mesh);
+		// a second traversal at the same time has its own marks
+		final HE_Traversal other = mesh.beginTraversal();
+		assertNotSame(traversal, other);
+		assertNoneMarked(other, mesh);
+		other.mark(v);
+		other.end();
+		traversal.end();
+		try {
+			traversal.restart();
+			fail("Restart after end.");
+		} catch (final IllegalStateException e) {
+		}
+		// changes while the traversals are idle, then the pooled traversals
+		// are used again
+		HET_MeshOp.splitEdges(mesh);
+		mesh.remove(mesh.getFaces().get(3));
+		final HE_Traversal reused = mesh.beginTraversal();
+		assertSame(traversal, reused);
+		assertNoneMarked(reused, mesh);
+		final HE_Traversal reusedOther = mesh.beginTraversal();
+		assertSame(other, reusedOther);
+		assertNoneMarked(reusedOther, mesh);
+		reusedOther.end();
+		reused.end();
+	}
+
+	/**
+	 * Stamps from just before the wrap around are cleared, also those left
+	 * behind removed elements and reused by elements added later.
+	 */
+	@Test
+	public void testGenerationWrapAround() {
+		final HE_Mesh mesh = mesh();
+		final HE_Traversal traversal = mesh.beginTraversal();
+		traversal.setGeneration(Integer.MAX_VALUE - 1);
+		traversal.restart();
+		markAll(traversal, mesh);
+		// past Integer.MAX_VALUE the generations continue with negative values
+		traversal.restart();
+		assertNoneMarked(traversal, mesh);
+		markAll(traversal, mesh);
+		traversal.setGeneration(-2);
+		traversal.restart();
+		assertNoneMarked(traversal, mesh);
+		markAll(traversal, mesh);
+		// -1 to 0 wraps around and clears
+		traversal.restart();
+		assertNoneMarked(traversal, mesh);
+		// stamps of generation 2 left beyond the last vertex by removal
+		traversal.setGeneration(1);
+		traversal.restart();
+		markAll(traversal, mesh);
+		final int n = mesh.getNumberOfVertices();
+		final List<HE_Vertex> vertices = new ArrayList<HE_Vertex>(mesh.getVertices());
+		for (int i = 0; i < n / 2; i++) {
+			mesh.remove(vertices.get(2 * i));
+		}
+		traversal.setGeneration(-1);
+		traversal.restart();
+		assertNoneMarked(traversal, mesh);
+		traversal.end();
+		// vertices added while the traversal is idle take the freed positions
+		for (int i = 0; i < n / 2; i++) {
+			mesh.add(new HE_Vertex(i, 0, 0));
+		}
+		assertEquals(n, mesh.getNumberOfVertices());
+		final HE_Traversal reused = mesh.beginTraversal();
+		// back at generation 2
+		assertSame(traversal, reused);
+		assertNoneMarked(reused, mesh);
+		markAll(reused, mesh);
+		reused.end();
+	}
+}